@@ -0,0 +1,246 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio.silk;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the encoding and decoding of 20 ms SILK frames. Run with the
+ * <tt>gc</tt> profiler to see the allocation per frame as well, e.g.
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="-prof gc Silk"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class SilkBenchmark
+{
+    /**
+     * The number of frames of the input signal which the benchmarks cycle
+     * through.
+     */
+    private static final int FRAMES = 250;
+
+    /**
+     * The maximum number of bytes of an encoded frame.
+     */
+    private static final int MAX_BYTES = 1250;
+
+    /**
+     * The bit rate of the encoder in bits per second.
+     */
+    @Param({ "20000" })
+    public int bitRate;
+
+    /**
+     * The complexity of the encoder from <tt>0</tt> (lowest) to <tt>2</tt>
+     * (highest).
+     */
+    @Param({ "0", "2" })
+    public int complexity;
+
+    /**
+     * The SILK decoder.
+     */
+    private SKP_Silk_decoder_state dec;
+
+    /**
+     * The control of {@link #dec}.
+     */
+    private SKP_SILK_SDK_DecControlStruct decControl;
+
+    /**
+     * The SILK encoder.
+     */
+    private SKP_Silk_encoder_state_FLP enc;
+
+    /**
+     * The control of {@link #enc}.
+     */
+    private SKP_SILK_SDK_EncControlStruct encControl;
+
+    /**
+     * The encoded frames which {@link #decode()} decodes.
+     */
+    private byte[][] encoded;
+
+    /**
+     * The lengths of {@link #encoded}.
+     */
+    private short[] encodedLengths;
+
+    /**
+     * The index of the next frame to encode or decode.
+     */
+    private int frame;
+
+    /**
+     * The frames of the input signal which {@link #encode()} encodes.
+     */
+    private short[][] in;
+
+    /**
+     * The buffer into which {@link #encode()} encodes.
+     */
+    private final byte[] out = new byte[MAX_BYTES];
+
+    /**
+     * The number of bytes written into {@link #out}.
+     */
+    private final short[] outLength = new short[1];
+
+    /**
+     * The buffer into which {@link #decode()} decodes.
+     */
+    private final short[] pcm = new short[120 * 16];
+
+    /**
+     * The number of samples written into {@link #pcm}.
+     */
+    private final short[] pcmLength = new short[1];
+
+    /**
+     * The sample rate in Hz.
+     */
+    @Param({ "16000" })
+    public int sampleRate;
+
+    /**
+     * Whether the encoder produces in-band FEC (LBRR) data. The encoder
+     * produces it only if the packet loss percentage is non-zero.
+     */
+    @Param({ "false", "true" })
+    public boolean useInBandFEC;
+
+    /**
+     * Decodes the next encoded frame.
+     *
+     * @return the decoded samples
+     */
+    @Benchmark
+    public short[] decode()
+    {
+        int i = nextFrame();
+
+        do
+        {
+            pcmLength[0] = (short) pcm.length;
+            DecAPI.SKP_Silk_SDK_Decode(
+                    dec, decControl,
+                    0,
+                    encoded[i], 0, encodedLengths[i],
+                    pcm, 0, pcmLength);
+        }
+        while (decControl.moreInternalDecoderFrames != 0);
+        return pcm;
+    }
+
+    /**
+     * Encodes the next frame of the input signal.
+     *
+     * @return the encoded frame
+     */
+    @Benchmark
+    public byte[] encode()
+    {
+        short[] samples = in[nextFrame()];
+
+        outLength[0] = MAX_BYTES;
+        EncAPI.SKP_Silk_SDK_Encode(
+                enc, encControl,
+                samples, 0, samples.length,
+                out, 0, outLength);
+        return out;
+    }
+
+    /**
+     * Returns the index of the next frame and advances {@link #frame}.
+     *
+     * @return the index of the next frame
+     */
+    private int nextFrame()
+    {
+        int i = frame;
+
+        frame = (i + 1) % FRAMES;
+        return i;
+    }
+
+    /**
+     * Initializes the encoder, the decoder, the input signal and its encoded
+     * frames.
+     */
+    @Setup
+    public void setUp()
+    {
+        int frameLength = 20 * sampleRate / 1000;
+        Random random = new Random(42);
+        double phase = 0;
+
+        // A tone of varying pitch with noise and a periodically added
+        // overtone.
+        in = new short[FRAMES][frameLength];
+        for (int f = 0; f < FRAMES; f++)
+        {
+            for (int i = 0; i < frameLength; i++)
+            {
+                phase
+                    += 2 * Math.PI * (200 + 100 * Math.sin(f * 0.05))
+                        / sampleRate;
+                in[f][i]
+                    = (short)
+                        (6000 * Math.sin(phase)
+                            + random.nextGaussian() * 800
+                            + (((f / 25) % 2 == 0)
+                                ? 3000 * Math.sin(phase * 3.1)
+                                : 0));
+            }
+        }
+
+        enc = new SKP_Silk_encoder_state_FLP();
+        encControl = new SKP_SILK_SDK_EncControlStruct();
+        EncAPI.SKP_Silk_SDK_InitEncoder(enc, encControl);
+        encControl.API_sampleRate = sampleRate;
+        encControl.maxInternalSampleRate = sampleRate;
+        encControl.packetSize = frameLength;
+        encControl.bitRate = bitRate;
+        encControl.complexity = complexity;
+        encControl.useInBandFEC = useInBandFEC ? 1 : 0;
+        encControl.packetLossPercentage = useInBandFEC ? 10 : 0;
+        encControl.useDTX = 0;
+
+        encoded = new byte[FRAMES][];
+        encodedLengths = new short[FRAMES];
+        for (int f = 0; f < FRAMES; f++)
+        {
+            encode();
+            encoded[f] = Arrays.copyOf(out, outLength[0]);
+            encodedLengths[f] = outLength[0];
+        }
+
+        dec = new SKP_Silk_decoder_state();
+        DecAPI.SKP_Silk_SDK_InitDecoder(dec);
+        decControl = new SKP_SILK_SDK_DecControlStruct();
+        decControl.API_sampleRate = sampleRate;
+    }
+}
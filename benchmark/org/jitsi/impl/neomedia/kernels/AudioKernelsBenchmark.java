@@ -0,0 +1,217 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.kernels;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the {@link AudioKernels} against the per-sample loops which
+ * <tt>AudioLevelCalculator</tt> and the audio mixer used before, e.g.
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="AudioKernels"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class AudioKernelsBenchmark
+{
+    /**
+     * The <tt>int</tt> accumulator of mixed samples, some of which are out
+     * of the range of 16-bit samples.
+     */
+    private int[] accumulator;
+
+    /**
+     * The bytes of {@link #in} in little-endian order.
+     */
+    private byte[] bytes;
+
+    /**
+     * The samples which are mixed into {@link #out}.
+     */
+    private short[] in;
+
+    /**
+     * The samples into which {@link #in} is mixed.
+     */
+    private short[] out;
+
+    /**
+     * The samples which {@link #out} is reset to before every invocation.
+     */
+    private short[] outTemplate;
+
+    /**
+     * The number of samples per invocation i.e. 20 ms at 8 kHz and at 48 kHz,
+     * respectively.
+     */
+    @Param({ "160", "960" })
+    public int size;
+
+    /**
+     * Mixes {@link #in} into {@link #out} with the loop which
+     * <tt>AudioMixingPushBufferStream</tt> inlined before. The arithmetic is
+     * the same as the one of {@link AudioKernels#mix}.
+     *
+     * @return the mixed samples
+     */
+    @Benchmark
+    public short[] legacyMix()
+    {
+        short[] inStreamSamples = in;
+        short[] outSamples = out;
+        float maxOutSample = Short.MAX_VALUE;
+
+        System.arraycopy(outTemplate, 0, outSamples, 0, size);
+        for (int i = 0; i < size; i++)
+        {
+            int inStreamSample = inStreamSamples[i];
+            int outSample = outSamples[i];
+
+            outSamples[i]
+                = (short)
+                    (inStreamSample
+                        + outSample
+                        - Math.round(
+                                inStreamSample
+                                    * (outSample / maxOutSample)));
+        }
+        return outSamples;
+    }
+
+    /**
+     * Clips {@link #accumulator} with if/else branches per sample as
+     * <tt>AudioMixingPushBufferStream</tt> did before.
+     *
+     * @return the clipped samples
+     */
+    @Benchmark
+    public short[] legacySaturate()
+    {
+        int[] accumulator = this.accumulator;
+        short[] out = this.out;
+
+        for (int i = 0; i < size; i++)
+        {
+            int sample = accumulator[i];
+
+            if (sample > Short.MAX_VALUE)
+                sample = Short.MAX_VALUE;
+            else if (sample < Short.MIN_VALUE)
+                sample = Short.MIN_VALUE;
+            out[i] = (short) sample;
+        }
+        return out;
+    }
+
+    /**
+     * Calculates the root mean square of {@link #bytes} in floating point as
+     * <tt>AudioLevelCalculator</tt> did before.
+     *
+     * @return the root mean square of the samples
+     */
+    @Benchmark
+    public double legacySumOfSquares()
+    {
+        byte[] samples = bytes;
+        int length = samples.length;
+        double rms = 0;
+
+        for (int offset = 0; offset < length; offset += 2)
+        {
+            double sample
+                = (short) ((samples[offset + 1] << 8)
+                    | (samples[offset] & 0xFF));
+
+            sample /= Short.MAX_VALUE;
+            rms += sample * sample;
+        }
+
+        int sampleCount = length / 2;
+
+        return (sampleCount == 0) ? 0 : Math.sqrt(rms / sampleCount);
+    }
+
+    /**
+     * Mixes {@link #in} into {@link #out} with {@link AudioKernels#mix}.
+     *
+     * @return the mixed samples
+     */
+    @Benchmark
+    public short[] mix()
+    {
+        System.arraycopy(outTemplate, 0, out, 0, size);
+        AudioKernels.mix(out, in, size, Short.MAX_VALUE);
+        return out;
+    }
+
+    /**
+     * Clips {@link #accumulator} with {@link AudioKernels#saturate}.
+     *
+     * @return the clipped samples
+     */
+    @Benchmark
+    public short[] saturate()
+    {
+        AudioKernels.saturate(accumulator, out, size, Short.MAX_VALUE);
+        return out;
+    }
+
+    /**
+     * Initializes the samples.
+     */
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(0);
+
+        accumulator = new int[size];
+        bytes = new byte[2 * size];
+        in = new short[size];
+        out = new short[size];
+        outTemplate = new short[size];
+        for (int i = 0; i < size; i++)
+        {
+            // Two or three loud participants add up beyond 16 bits.
+            accumulator[i] = (int) (random.nextGaussian() * 30000);
+            in[i] = (short) (random.nextGaussian() * 8000);
+            outTemplate[i] = (short) (random.nextGaussian() * 8000);
+            bytes[2 * i] = (byte) in[i];
+            bytes[2 * i + 1] = (byte) (in[i] >> 8);
+        }
+    }
+
+    /**
+     * Calculates the root mean square of {@link #bytes} with
+     * {@link AudioKernels#sumOfSquares}.
+     *
+     * @return the root mean square of the samples
+     */
+    @Benchmark
+    public double sumOfSquares()
+    {
+        long sum = AudioKernels.sumOfSquares(bytes, 0, bytes.length);
+
+        return Math.sqrt(sum / (double) size) / Short.MAX_VALUE;
+    }
+}
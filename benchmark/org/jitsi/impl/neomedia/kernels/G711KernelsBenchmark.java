@@ -0,0 +1,263 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.kernels;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the {@link G711Kernels} against the per-sample loops which the
+ * A-law and mu-law <tt>JavaEncoder</tt>s and the mu-law <tt>JavaDecoder</tt>
+ * used before, e.g.
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="G711Kernels"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class G711KernelsBenchmark
+{
+    /**
+     * The A-law encodings of the 16-bit linear samples indexed by the
+     * unsigned value of the bits of the linear samples, as the A-law
+     * <tt>JavaEncoder</tt> kept them before.
+     */
+    private static final byte[] PCM_TO_ALAW = new byte[1 << 16];
+
+    /**
+     * The low bytes of the 16-bit linear samples of the mu-law samples, as
+     * the mu-law <tt>JavaDecoder</tt> kept them before.
+     */
+    private static final byte[] ULAW_TO_LINEAR_L = new byte[1 << 8];
+
+    /**
+     * The high bytes of the 16-bit linear samples of the mu-law samples, as
+     * the mu-law <tt>JavaDecoder</tt> kept them before.
+     */
+    private static final byte[] ULAW_TO_LINEAR_H = new byte[1 << 8];
+
+    static
+    {
+        for (int i = Short.MIN_VALUE; i <= Short.MAX_VALUE; i++)
+            PCM_TO_ALAW[i & 0xFFFF] = G711Kernels.linearToAlaw(i);
+
+        byte[] ulaw = new byte[ULAW_TO_LINEAR_L.length];
+        byte[] linear = new byte[2 * ulaw.length];
+
+        for (int i = 0; i < ulaw.length; i++)
+            ulaw[i] = (byte) i;
+        G711Kernels.ulawToLinear(ulaw, 0, ulaw.length, linear, 0);
+        for (int i = 0; i < ulaw.length; i++)
+        {
+            ULAW_TO_LINEAR_L[i] = linear[2 * i];
+            ULAW_TO_LINEAR_H[i] = linear[2 * i + 1];
+        }
+    }
+
+    /**
+     * The G.711 samples which are encoded into and decoded from.
+     */
+    private byte[] g711;
+
+    /**
+     * The bytes of the 16-bit little-endian linear samples which are encoded
+     * into and decoded from.
+     */
+    private byte[] linear;
+
+    /**
+     * The number of samples per invocation i.e. 20 ms at 8 kHz.
+     */
+    @Param({ "160" })
+    public int size;
+
+    /**
+     * Encodes {@link #linear} into A-law samples with
+     * {@link G711Kernels#linearToAlaw(byte[], int, int, boolean, byte[],
+     * int)}.
+     *
+     * @return the A-law samples
+     */
+    @Benchmark
+    public byte[] alawEncode()
+    {
+        G711Kernels.linearToAlaw(linear, 0, linear.length, false, g711, 0);
+        return g711;
+    }
+
+    /**
+     * Encodes {@link #linear} into A-law samples with a lookup per sample
+     * through a method call as the A-law <tt>JavaEncoder</tt> did before.
+     *
+     * @return the A-law samples
+     */
+    @Benchmark
+    public byte[] legacyAlawEncode()
+    {
+        byte[] data = linear;
+        byte[] target = g711;
+
+        for (int i = 0; i < size; i++)
+        {
+            target[i]
+                = legacyAlawEncode(
+                        ((data[2 * i + 1] & 0xff) << 8)
+                            | (data[2 * i]) & 0xff);
+        }
+        return target;
+    }
+
+    /**
+     * Encodes a 16-bit linear sample into an A-law sample as the A-law
+     * <tt>JavaEncoder</tt> did before.
+     *
+     * @param pcm the 16-bit linear sample to encode
+     * @return the A-law sample of <tt>pcm</tt>
+     */
+    private static byte legacyAlawEncode(int pcm)
+    {
+        return PCM_TO_ALAW[((short) (pcm & 0xffff)) & 0xffff];
+    }
+
+    /**
+     * Decodes {@link #g711} as mu-law samples with two lookups per sample as
+     * the mu-law <tt>JavaDecoder</tt> did before.
+     *
+     * @return the linear samples
+     */
+    @Benchmark
+    public byte[] legacyUlawDecode()
+    {
+        byte[] inData = g711;
+        byte[] outData = linear;
+        int outOffset = 0;
+
+        for (int i = 0; i < size; i++)
+        {
+            int temp = inData[i] & 0xff;
+
+            outData[outOffset++] = ULAW_TO_LINEAR_L[temp];
+            outData[outOffset++] = ULAW_TO_LINEAR_H[temp];
+        }
+        return outData;
+    }
+
+    /**
+     * Encodes {@link #linear} into mu-law samples with the comparisons per
+     * sample which the mu-law <tt>JavaEncoder</tt> did before.
+     *
+     * @return the mu-law samples
+     */
+    @Benchmark
+    public byte[] legacyUlawEncode()
+    {
+        byte[] input = linear;
+        byte[] outData = g711;
+        int outputOffset = 0;
+
+        for (int i = 1; i < input.length; i += 2)
+        {
+            int sample = (short) ((input[i] << 8) + (0xff & input[i - 1]));
+            int signBit;
+
+            if (sample >= 0)
+            {
+                signBit = 0x80;
+            }
+            else
+            {
+                sample = -sample;
+                signBit = 0x00;
+            }
+
+            sample = (132 + sample) >> 3;
+
+            outData[outputOffset++]
+                = (byte)
+                    ((sample < 0x0020)
+                        ? (signBit | (7 << 4) | (31 - (sample >> 0)))
+                        : (sample < 0x0040)
+                        ? (signBit | (6 << 4) | (31 - (sample >> 1)))
+                        : (sample < 0x0080)
+                        ? (signBit | (5 << 4) | (31 - (sample >> 2)))
+                        : (sample < 0x0100)
+                        ? (signBit | (4 << 4) | (31 - (sample >> 3)))
+                        : (sample < 0x0200)
+                        ? (signBit | (3 << 4) | (31 - (sample >> 4)))
+                        : (sample < 0x0400)
+                        ? (signBit | (2 << 4) | (31 - (sample >> 5)))
+                        : (sample < 0x0800)
+                        ? (signBit | (1 << 4) | (31 - (sample >> 6)))
+                        : (sample < 0x1000)
+                        ? (signBit | (0 << 4) | (31 - (sample >> 7)))
+                        : (signBit | (0 << 4) | (31 - (0xfff >> 7))));
+        }
+        return outData;
+    }
+
+    /**
+     * Initializes the samples.
+     */
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(0);
+
+        g711 = new byte[size];
+        linear = new byte[2 * size];
+        for (int i = 0; i < size; i++)
+        {
+            short sample = (short) (random.nextGaussian() * 8000);
+
+            linear[2 * i] = (byte) sample;
+            linear[2 * i + 1] = (byte) (sample >> 8);
+            g711[i] = (byte) random.nextInt();
+        }
+    }
+
+    /**
+     * Decodes {@link #g711} as mu-law samples with
+     * {@link G711Kernels#ulawToLinear}.
+     *
+     * @return the linear samples
+     */
+    @Benchmark
+    public byte[] ulawDecode()
+    {
+        G711Kernels.ulawToLinear(g711, 0, size, linear, 0);
+        return linear;
+    }
+
+    /**
+     * Encodes {@link #linear} into mu-law samples with
+     * {@link G711Kernels#linearToUlaw}.
+     *
+     * @return the mu-law samples
+     */
+    @Benchmark
+    public byte[] ulawEncode()
+    {
+        G711Kernels.linearToUlaw(
+                linear, 0, linear.length, false, true, g711, 0);
+        return g711;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import java.util.concurrent.*;
+
+import org.bouncycastle.crypto.*;
+import org.bouncycastle.crypto.digests.*;
+import org.bouncycastle.crypto.macs.*;
+import org.bouncycastle.crypto.params.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the HMAC-SHA1 implementations used for the authentication of
+ * SRTP and SRTCP packets.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class MacBenchmark
+{
+    /**
+     * The data to be authenticated.
+     */
+    private byte[] data;
+
+    /**
+     * The name of the HMAC-SHA1 implementation to benchmark: <tt>HMACSHA1</tt>
+     * (the <tt>Mac</tt> returned by {@link HMACSHA1#createMac()}),
+     * <tt>BouncyCastle</tt> or <tt>OpenSSL</tt> ({@link OpenSSLHMAC}).
+     */
+    @Param({ "HMACSHA1", "BouncyCastle", "OpenSSL" })
+    public String implementation;
+
+    /**
+     * The <tt>Mac</tt> being benchmarked.
+     */
+    private Mac mac;
+
+    /**
+     * The authentication tag computed by {@link #mac}.
+     */
+    private byte[] out;
+
+    /**
+     * The number of bytes to authenticate per invocation i.e. the length of
+     * an audio and a video RTP packet plus the ROC, respectively.
+     */
+    @Param({ "104", "1204" })
+    public int size;
+
+    /**
+     * Initializes {@link #mac} and the data to authenticate.
+     */
+    @Setup
+    public void setUp()
+    {
+        if ("HMACSHA1".equals(implementation))
+        {
+            mac = HMACSHA1.createMac();
+        }
+        else if ("BouncyCastle".equals(implementation))
+        {
+            mac = new HMac(new SHA1Digest());
+        }
+        else if ("OpenSSL".equals(implementation))
+        {
+            // Throws if the OpenSSL wrapper is not loaded.
+            mac = new OpenSSLHMAC(OpenSSLHMAC.SHA1);
+        }
+        else
+        {
+            throw new IllegalArgumentException(
+                    "implementation " + implementation);
+        }
+        mac.init(new KeyParameter(SRTPBenchmarks.randomBytes(20)));
+
+        data = SRTPBenchmarks.randomBytes(size);
+        out = new byte[mac.getMacSize()];
+    }
+
+    /**
+     * Computes the HMAC-SHA1 of {@link #size} bytes.
+     *
+     * @return the authentication tag
+     */
+    @Benchmark
+    public byte[] doFinal()
+    {
+        mac.update(data, 0, size);
+        mac.doFinal(out, 0);
+        return out;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import java.util.concurrent.*;
+
+import org.jitsi.service.neomedia.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the protection and the unprotection of RTCP packets by
+ * <tt>SRTCPCryptoContext</tt>. As with {@link SRTPCryptoContextBenchmark},
+ * the cost of the unprotection is the difference between
+ * {@link #transformAndReverseTransform()} and {@link #transform()}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class SRTCPCryptoContextBenchmark
+{
+    /**
+     * The packet transformed by the benchmarks.
+     */
+    private RawPacket pkt;
+
+    /**
+     * The name of the SRTP protection profile to benchmark.
+     */
+    @Param({
+        SRTPBenchmarks.AES_CM_128_HMAC_SHA1_80,
+        SRTPBenchmarks.AEAD_AES_128_GCM
+    })
+    public String profile;
+
+    /**
+     * The <tt>SRTCPCryptoContext</tt> which unprotects the packets protected
+     * by {@link #sender}.
+     */
+    private SRTCPCryptoContext receiver;
+
+    /**
+     * The <tt>SRTCPCryptoContext</tt> which protects the packets.
+     */
+    private SRTCPCryptoContext sender;
+
+    /**
+     * The length in bytes of the RTCP packets to benchmark with. Approximates
+     * a compound report and a large feedback packet, respectively.
+     */
+    @Param({ "100", "1200" })
+    public int size;
+
+    /**
+     * The RTCP packet which is copied into {@link #pkt} before each
+     * transformation.
+     */
+    private byte[] template;
+
+    /**
+     * Copies {@link #template} into {@link #pkt}.
+     */
+    private void reset()
+    {
+        System.arraycopy(template, 0, pkt.getBuffer(), 0, template.length);
+        pkt.setOffset(0);
+        pkt.setLength(template.length);
+    }
+
+    /**
+     * Initializes the <tt>SRTCPCryptoContext</tt>s and the packet.
+     */
+    @Setup
+    public void setUp()
+    {
+        SRTPPolicy policy = SRTPBenchmarks.createPolicy(profile);
+        byte[] key = SRTPBenchmarks.randomBytes(policy.getEncKeyLength());
+        byte[] salt = SRTPBenchmarks.randomBytes(policy.getSaltKeyLength());
+
+        sender
+            = new SRTCPCryptoContext(SRTPBenchmarks.SSRC, key, salt, policy);
+        sender.deriveSrtcpKeys();
+        receiver
+            = new SRTCPCryptoContext(SRTPBenchmarks.SSRC, key, salt, policy);
+        receiver.deriveSrtcpKeys();
+
+        // RTCP packets are made of 32-bit words.
+        template = SRTPBenchmarks.createRtcpPacket(size & ~3);
+        pkt
+            = new RawPacket(
+                    new byte[
+                            template.length
+                                + SRTPBenchmarks.MAX_TRAILER_LENGTH],
+                    0,
+                    template.length);
+    }
+
+    /**
+     * Protects one RTCP packet.
+     *
+     * @return the protected packet
+     */
+    @Benchmark
+    public RawPacket transform()
+    {
+        reset();
+        sender.transformPacket(pkt);
+        return pkt;
+    }
+
+    /**
+     * Protects one RTCP packet and unprotects it.
+     *
+     * @return the unprotected packet
+     */
+    @Benchmark
+    public RawPacket transformAndReverseTransform()
+    {
+        reset();
+        sender.transformPacket(pkt);
+        if (!receiver.reverseTransformPacket(pkt))
+            throw new IllegalStateException("reverseTransformPacket");
+        return pkt;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import java.util.*;
+
+/**
+ * Provides the SRTP protection profiles and the sample keys and packets which
+ * are shared by the JMH benchmarks of the SRTP pipeline.
+ *
+ * The benchmarks are not part of the regular build. They are compiled and run
+ * by the <tt>benchmark</tt> Maven profile, e.g.
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="-t 4 SRTPCryptoContext"
+ * </pre>
+ * where <tt>-t</tt> specifies the number of threads. Every benchmark keeps its
+ * state per thread (i.e. one SRTP stream per thread) so that multi-threaded
+ * runs measure the scalability of the crypto backends rather than the
+ * contention on a single crypto context.
+ */
+final class SRTPBenchmarks
+{
+    /**
+     * The name of the AES counter mode/HMAC-SHA1 protection profile with an
+     * 80-bit authentication tag.
+     */
+    static final String AES_CM_128_HMAC_SHA1_80 = "AES_CM_128_HMAC_SHA1_80";
+
+    /**
+     * The name of the AES-128 Galois/Counter Mode protection profile.
+     */
+    static final String AEAD_AES_128_GCM = "AEAD_AES_128_GCM";
+
+    /**
+     * The maximum number of bytes which SRTP/SRTCP appends to a packet (i.e.
+     * the SRTCP E flag and index and the longest authentication tag). The
+     * buffers of the sample packets reserve that much room so that the
+     * benchmarks do not measure the growing of <tt>RawPacket</tt>s.
+     */
+    static final int MAX_TRAILER_LENGTH = 4 + 16;
+
+    /**
+     * The SSRC of the sample packets.
+     */
+    static final int SSRC = 0x12345678;
+
+    /**
+     * Initializes a new <tt>SRTPPolicy</tt> for a specific protection profile.
+     *
+     * @param profile the name of the protection profile
+     * @return a new <tt>SRTPPolicy</tt> for <tt>profile</tt>
+     */
+    static SRTPPolicy createPolicy(String profile)
+    {
+        if (AES_CM_128_HMAC_SHA1_80.equals(profile))
+        {
+            return
+                new SRTPPolicy(
+                        SRTPPolicy.AESCM_ENCRYPTION, 16,
+                        SRTPPolicy.HMACSHA1_AUTHENTICATION, 20, 10,
+                        14);
+        }
+        else if (AEAD_AES_128_GCM.equals(profile))
+        {
+            return
+                new SRTPPolicy(
+                        SRTPPolicy.AESGCM_ENCRYPTION, 16,
+                        SRTPPolicy.NULL_AUTHENTICATION, 0, 16,
+                        12);
+        }
+        else
+        {
+            throw new IllegalArgumentException("profile " + profile);
+        }
+    }
+
+    /**
+     * Initializes a new <tt>byte</tt> array with a specific length and
+     * (reproducibly) random contents.
+     *
+     * @param length the length of the new array
+     * @return a new <tt>byte</tt> array of <tt>length</tt> random bytes
+     */
+    static byte[] randomBytes(int length)
+    {
+        byte[] bytes = new byte[length];
+
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Initializes a new RTCP receiver report with a specific length.
+     *
+     * @param length the length in bytes of the new packet (a multiple of 4)
+     * @return a new RTCP packet of <tt>length</tt> bytes
+     */
+    static byte[] createRtcpPacket(int length)
+    {
+        byte[] pkt = randomBytes(length);
+        int words = length / 4 - 1;
+
+        pkt[0] = (byte) 0x80;
+        pkt[1] = (byte) 201;
+        pkt[2] = (byte) (words >> 8);
+        pkt[3] = (byte) words;
+        writeInt(pkt, 4, SSRC);
+        return pkt;
+    }
+
+    /**
+     * Initializes a new RTP packet with a specific length.
+     *
+     * @param length the length in bytes of the new packet including the
+     * 12-byte RTP header
+     * @return a new RTP packet of <tt>length</tt> bytes
+     */
+    static byte[] createRtpPacket(int length)
+    {
+        byte[] pkt = randomBytes(length);
+
+        pkt[0] = (byte) 0x80;
+        pkt[1] = (byte) 100;
+        writeInt(pkt, 8, SSRC);
+        return pkt;
+    }
+
+    private static void writeInt(byte[] buf, int off, int value)
+    {
+        buf[off] = (byte) (value >> 24);
+        buf[off + 1] = (byte) (value >> 16);
+        buf[off + 2] = (byte) (value >> 8);
+        buf[off + 3] = (byte) value;
+    }
+
+    /**
+     * Prevents the initialization of <tt>SRTPBenchmarks</tt> instances.
+     */
+    private SRTPBenchmarks()
+    {
+    }
+}
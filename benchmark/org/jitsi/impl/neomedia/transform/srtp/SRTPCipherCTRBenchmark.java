@@ -0,0 +1,132 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import java.util.concurrent.*;
+
+import org.bouncycastle.crypto.engines.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the <tt>SRTPCipherCTR</tt> implementations, i.e. the AES counter
+ * mode encryption which dominates the cost of the AES_CM protection profiles.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class SRTPCipherCTRBenchmark
+{
+    /**
+     * The <tt>SRTPCipherCTR</tt> being benchmarked.
+     */
+    private SRTPCipherCTR cipher;
+
+    /**
+     * The data to be encrypted.
+     */
+    private byte[] data;
+
+    /**
+     * The name of the <tt>SRTPCipherCTR</tt> implementation to benchmark:
+     * <tt>Java</tt> ({@link SRTPCipherCTRJava} with the BouncyCastle AES
+     * engine), <tt>JCE</tt> ({@link SRTPCipherCTRJava} with the SunJCE AES
+     * implementation), <tt>OpenSSL</tt> ({@link SRTPCipherCTROpenSSL}) or
+     * <tt>AES</tt> ({@link SRTPCipherCTRJava} with the <tt>BlockCipher</tt>
+     * elected by {@link AES#createBlockCipher(int)}).
+     */
+    @Param({ "Java", "JCE", "OpenSSL", "AES" })
+    public String implementation;
+
+    /**
+     * The initialization vector passed to the cipher which is reset from
+     * {@link #ivTemplate} before each encryption because the cipher
+     * increments it.
+     */
+    private final byte[] iv = new byte[16];
+
+    /**
+     * The initialization vector which is copied into {@link #iv}.
+     */
+    private byte[] ivTemplate;
+
+    /**
+     * The number of bytes to encrypt per invocation i.e. the payload of an
+     * audio and a video RTP packet, respectively.
+     */
+    @Param({ "88", "1188" })
+    public int size;
+
+    /**
+     * Initializes {@link #cipher} and the data to encrypt.
+     *
+     * @throws Exception if the <tt>SRTPCipherCTR</tt> implementation is not
+     * available (e.g. the OpenSSL wrapper is not loaded)
+     */
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        if ("Java".equals(implementation))
+        {
+            cipher = new SRTPCipherCTRJava(new AESFastEngine());
+        }
+        else if ("JCE".equals(implementation))
+        {
+            cipher
+                = new SRTPCipherCTRJava(
+                        new AES.SunJCEBlockCipherFactory()
+                            .createBlockCipher(16));
+        }
+        else if ("OpenSSL".equals(implementation))
+        {
+            if (!OpenSSLWrapperLoader.isLoaded())
+            {
+                throw new IllegalStateException(
+                        "OpenSSL wrapper not loaded");
+            }
+            cipher = new SRTPCipherCTROpenSSL();
+        }
+        else if ("AES".equals(implementation))
+        {
+            cipher = new SRTPCipherCTRJava(AES.createBlockCipher(16));
+        }
+        else
+        {
+            throw new IllegalArgumentException(
+                    "implementation " + implementation);
+        }
+        cipher.init(SRTPBenchmarks.randomBytes(16));
+
+        data = SRTPBenchmarks.randomBytes(size);
+        ivTemplate = SRTPBenchmarks.randomBytes(iv.length);
+    }
+
+    /**
+     * Encrypts {@link #size} bytes.
+     *
+     * @return the encrypted data
+     */
+    @Benchmark
+    public byte[] process()
+    {
+        System.arraycopy(ivTemplate, 0, iv, 0, iv.length);
+        cipher.process(data, 0, size, iv);
+        return data;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import java.util.concurrent.*;
+
+import org.jitsi.service.neomedia.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the protection and the unprotection of RTP packets by
+ * <tt>SRTPCryptoContext</tt>.
+ *
+ * A receiving <tt>SRTPCryptoContext</tt> rejects replayed packets so the
+ * unprotection cannot be measured on its own without allocating a new packet
+ * per invocation. Instead, {@link #transformAndReverseTransform()} measures a
+ * round trip and the cost of the unprotection is its difference with
+ * {@link #transform()}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class SRTPCryptoContextBenchmark
+{
+    /**
+     * The number of packets transformed by {@link #transformPackets()}.
+     */
+    private static final int BATCH_SIZE = 16;
+
+    /**
+     * The packets transformed by {@link #transformPackets()}.
+     */
+    private final RawPacket[] batch = new RawPacket[BATCH_SIZE];
+
+    /**
+     * The packet transformed by {@link #transform()} and
+     * {@link #transformAndReverseTransform()}.
+     */
+    private RawPacket pkt;
+
+    /**
+     * The name of the SRTP protection profile to benchmark.
+     */
+    @Param({
+        SRTPBenchmarks.AES_CM_128_HMAC_SHA1_80,
+        SRTPBenchmarks.AEAD_AES_128_GCM
+    })
+    public String profile;
+
+    /**
+     * The <tt>SRTPCryptoContext</tt> which unprotects the packets protected
+     * by {@link #sender}.
+     */
+    private SRTPCryptoContext receiver;
+
+    /**
+     * The <tt>SRTPCryptoContext</tt> which protects the packets.
+     */
+    private SRTPCryptoContext sender;
+
+    /**
+     * The RTP sequence number of the next packet to be transformed.
+     */
+    private int seq;
+
+    /**
+     * The length in bytes of the RTP packets to benchmark with (including the
+     * RTP header). Approximates an audio and a video packet, respectively.
+     */
+    @Param({ "100", "1200" })
+    public int size;
+
+    /**
+     * The RTP packet which is copied into {@link #pkt} and {@link #batch}
+     * before each transformation.
+     */
+    private byte[] template;
+
+    /**
+     * Copies {@link #template} into a specific <tt>RawPacket</tt> and assigns
+     * the next sequence number to it.
+     *
+     * @param pkt the <tt>RawPacket</tt> to reset
+     */
+    private void reset(RawPacket pkt)
+    {
+        byte[] buf = pkt.getBuffer();
+
+        System.arraycopy(template, 0, buf, 0, size);
+        pkt.setOffset(0);
+        pkt.setLength(size);
+        pkt.setSequenceNumber(seq);
+        seq = (seq + 1) & 0xffff;
+    }
+
+    /**
+     * Initializes the <tt>SRTPCryptoContext</tt>s and the packets.
+     */
+    @Setup
+    public void setUp()
+    {
+        SRTPPolicy policy = SRTPBenchmarks.createPolicy(profile);
+        byte[] key = SRTPBenchmarks.randomBytes(policy.getEncKeyLength());
+        byte[] salt = SRTPBenchmarks.randomBytes(policy.getSaltKeyLength());
+
+        sender
+            = new SRTPCryptoContext(
+                    true, SRTPBenchmarks.SSRC, 0, 0, key, salt, policy);
+        sender.deriveSrtpKeys(0);
+        receiver
+            = new SRTPCryptoContext(
+                    false, SRTPBenchmarks.SSRC, 0, 0, key, salt, policy);
+        receiver.deriveSrtpKeys(0);
+
+        template = SRTPBenchmarks.createRtpPacket(size);
+
+        int capacity = size + SRTPBenchmarks.MAX_TRAILER_LENGTH;
+
+        pkt = new RawPacket(new byte[capacity], 0, size);
+        for (int i = 0; i < batch.length; i++)
+            batch[i] = new RawPacket(new byte[capacity], 0, size);
+    }
+
+    /**
+     * Protects one RTP packet.
+     *
+     * @return the protected packet
+     */
+    @Benchmark
+    public RawPacket transform()
+    {
+        reset(pkt);
+        if (!sender.transformPacket(pkt))
+            throw new IllegalStateException("transformPacket");
+        return pkt;
+    }
+
+    /**
+     * Protects one RTP packet and unprotects it.
+     *
+     * @return the unprotected packet
+     */
+    @Benchmark
+    public RawPacket transformAndReverseTransform()
+    {
+        reset(pkt);
+        if (!sender.transformPacket(pkt))
+            throw new IllegalStateException("transformPacket");
+        if (!receiver.reverseTransformPacket(pkt))
+            throw new IllegalStateException("reverseTransformPacket");
+        return pkt;
+    }
+
+    /**
+     * Protects {@link #BATCH_SIZE} RTP packets at once.
+     *
+     * @return the protected packets
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public RawPacket[] transformPackets()
+    {
+        for (int i = 0; i < batch.length; i++)
+        {
+            if (batch[i] == null)
+                throw new IllegalStateException("transformPackets");
+            reset(batch[i]);
+        }
+        sender.transformPackets(batch, 0, batch.length);
+        return batch;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright @ 2016 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "SRTPCipherGCMOpenSSL.h"
+
+#include <openssl/evp.h>
+#include <stdint.h>
+#include <stdlib.h>
+
+#define IV_LENGTH \
+    org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL_IV_LENGTH
+#define TAG_LENGTH \
+    org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL_TAG_LENGTH
+
+/*
+ * Class:     org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL
+ * Method:    AES_GCM_CTX_begin
+ * Signature: (JZ[B)Z
+ */
+JNIEXPORT jboolean JNICALL
+Java_org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL_AES_1GCM_1CTX_1begin
+  (JNIEnv *env, jclass clazz, jlong ctx, jboolean encrypt, jbyteArray iv)
+{
+    unsigned char iv_[IV_LENGTH];
+    (*env)->GetByteArrayRegion(env, iv, 0, IV_LENGTH, (jbyte *) iv_);
+
+    return
+        EVP_CipherInit_ex(
+                (EVP_CIPHER_CTX *) (intptr_t) ctx,
+                NULL,
+                NULL,
+                NULL,
+                iv_,
+                encrypt ? 1 : 0);
+}
+
+/*
+ * Class:     org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL
+ * Method:    AES_GCM_CTX_create
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL
+Java_org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL_AES_1GCM_1CTX_1create
+  (JNIEnv *env, jclass clazz)
+{
+    return (jlong) (intptr_t) EVP_CIPHER_CTX_new();
+}
+
+/*
+ * Class:     org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL
+ * Method:    AES_GCM_CTX_destroy
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL
+Java_org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL_AES_1GCM_1CTX_1destroy
+  (JNIEnv *env, jclass clazz, jlong ctx)
+{
+    if (ctx)
+        EVP_CIPHER_CTX_free((EVP_CIPHER_CTX *) (intptr_t) ctx);
+}
+
+/*
+ * Class:     org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL
+ * Method:    AES_GCM_CTX_finish
+ * Signature: (JZ[BII)I
+ *
+ * Returns the number of bytes written at offset, -1 if the authentication of
+ * the data which is being decrypted fails or -2 if OpenSSL fails otherwise.
+ */
+JNIEXPORT jint JNICALL
+Java_org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL_AES_1GCM_1CTX_1finish
+  (JNIEnv *env, jclass clazz, jlong ctx, jboolean encrypt, jbyteArray data,
+      jint offset, jint len)
+{
+    EVP_CIPHER_CTX *ctx_ = (EVP_CIPHER_CTX *) (intptr_t) ctx;
+    jint ret = -2;
+    unsigned char *data_;
+    unsigned char *p;
+    int outl = 0;
+    int finl = 0;
+
+    data_ = (*env)->GetPrimitiveArrayCritical(env, data, NULL);
+    if (!data_)
+        return ret;
+    p = data_ + offset;
+
+    if (encrypt)
+    {
+        /* The authentication tag follows the ciphertext. */
+        if (EVP_CipherUpdate(ctx_, p, &outl, p, len)
+                && EVP_CipherFinal_ex(ctx_, p + outl, &finl)
+                && EVP_CIPHER_CTX_ctrl(
+                        ctx_,
+                        EVP_CTRL_GCM_GET_TAG,
+                        TAG_LENGTH,
+                        p + outl + finl))
+        {
+            ret = outl + finl + TAG_LENGTH;
+        }
+    }
+    else if (len < TAG_LENGTH)
+    {
+        ret = -1;
+    }
+    else
+    {
+        int ciphertextLen = len - TAG_LENGTH;
+
+        if (EVP_CIPHER_CTX_ctrl(
+                    ctx_,
+                    EVP_CTRL_GCM_SET_TAG,
+                    TAG_LENGTH,
+                    p + ciphertextLen)
+                && EVP_CipherUpdate(ctx_, p, &outl, p, ciphertextLen))
+        {
+            /* EVP_CipherFinal_ex fails if the authentication tag mismatches. */
+            if (EVP_CipherFinal_ex(ctx_, p + outl, &finl) > 0)
+                ret = outl + finl;
+            else
+                ret = -1;
+        }
+    }
+
+    (*env)->ReleasePrimitiveArrayCritical(env, data, data_, 0);
+
+    return ret;
+}
+
+/*
+ * Class:     org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL
+ * Method:    AES_GCM_CTX_init
+ * Signature: (J[B)Z
+ */
+JNIEXPORT jboolean JNICALL
+Java_org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL_AES_1GCM_1CTX_1init
+  (JNIEnv *env, jclass clazz, jlong ctx, jbyteArray key)
+{
+    unsigned char key_[32];
+    jsize keyLen = (*env)->GetArrayLength(env, key);
+    const EVP_CIPHER *cipher;
+
+    switch (keyLen)
+    {
+    case 16:
+        cipher = EVP_aes_128_gcm();
+        break;
+    case 32:
+        cipher = EVP_aes_256_gcm();
+        break;
+    default:
+        return JNI_FALSE;
+    }
+
+    (*env)->GetByteArrayRegion(env, key, 0, keyLen, (jbyte *) key_);
+
+    /* The IV is set and the direction chosen per packet. */
+    return
+        EVP_CipherInit_ex(
+                (EVP_CIPHER_CTX *) (intptr_t) ctx,
+                cipher,
+                NULL,
+                key_,
+                NULL,
+                1);
+}
+
+/*
+ * Class:     org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL
+ * Method:    AES_GCM_CTX_processAAD
+ * Signature: (J[BII)Z
+ */
+JNIEXPORT jboolean JNICALL
+Java_org_jitsi_impl_neomedia_transform_srtp_SRTPCipherGCMOpenSSL_AES_1GCM_1CTX_1processAAD
+  (JNIEnv *env, jclass clazz, jlong ctx, jbyteArray data, jint offset,
+      jint len)
+{
+    int ok = 0;
+    int outl;
+    jbyte *data_;
+
+    data_ = (*env)->GetPrimitiveArrayCritical(env, data, NULL);
+    if (!data_)
+        return ok;
+
+    ok
+        = EVP_CipherUpdate(
+                (EVP_CIPHER_CTX *) (intptr_t) ctx,
+                NULL, &outl,
+                (unsigned char *) (data_ + offset), len);
+
+    (*env)->ReleasePrimitiveArrayCritical(env, data, data_, 0);
+
+    return ok;
+}
@@ -17,7 +17,10 @@
 
 import java.beans.*;
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.regex.*;
 
 import org.jitsi.impl.configuration.xml.*;
@@ -77,6 +80,17 @@
     private static final String DEFAULT_OVERRIDES_PROPS_FILE_NAME
                                              = "jitsi-default-overrides.properties";
 
+    /**
+     * The name of the system property which specifies the number of
+     * milliseconds by which the storing of the configuration file is delayed
+     * after a property change. All the changes made during that time are
+     * persisted at once by a background thread. The default value is
+     * <tt>0</tt> which means that the configuration file is stored
+     * synchronously after every change.
+     */
+    public static final String PNAME_WRITE_BEHIND_DELAY
+        = "org.jitsi.impl.configuration.WRITE_BEHIND_DELAY";
+
     /**
      * Specify names of command line arguments which are password, so that their
      * values will be masked when 'sun.java.command' is printed to the logs.
@@ -141,6 +155,49 @@
      */
     private ConfigurationStore store;
 
+    /**
+     * The index of the names of {@link #immutableDefaultProperties} and
+     * {@link #defaultProperties}.
+     */
+    private final PropertyNameIndex defaultPropertyNameIndex
+        = new PropertyNameIndex();
+
+    /**
+     * The index of the property names of {@link #store}. It is (re)built
+     * lazily whenever {@link #indexedStore} is not <tt>store</tt>.
+     */
+    private final PropertyNameIndex storePropertyNameIndex
+        = new PropertyNameIndex();
+
+    /**
+     * The <tt>ConfigurationStore</tt> whose property names are indexed by
+     * {@link #storePropertyNameIndex} or <tt>null</tt> if the index has to be
+     * rebuilt. Synchronized by <tt>storePropertyNameIndex</tt>.
+     */
+    private ConfigurationStore indexedStore;
+
+    /**
+     * The number of milliseconds by which the storing of the configuration
+     * file is delayed after a property change or <tt>0</tt> if it is stored
+     * synchronously.
+     *
+     * @see #PNAME_WRITE_BEHIND_DELAY
+     */
+    private final long writeBehindDelay;
+
+    /**
+     * The <tt>ScheduledExecutorService</tt> which stores the configuration
+     * file when {@link #writeBehindDelay} is positive.
+     */
+    private final ScheduledExecutorService storeExecutor;
+
+    /**
+     * The indicator which determines whether a store of the configuration
+     * file is pending on {@link #storeExecutor}. Property changes made while
+     * it is <tt>true</tt> are persisted by the pending store.
+     */
+    private final AtomicBoolean storeScheduled = new AtomicBoolean();
+
     public ConfigurationServiceImpl()
     {
         /*
@@ -162,6 +219,33 @@ public ConfigurationServiceImpl()
         {
             logger.error("Failed to load the configuration file", ex);
         }
+
+        // The system property files preloaded above may enable write-behind.
+        writeBehindDelay
+            = Math.max(0, Long.getLong(PNAME_WRITE_BEHIND_DELAY, 0));
+        if (writeBehindDelay > 0)
+        {
+            storeExecutor
+                = ExecutorUtils.newScheduledThreadPool(
+                        1,
+                        true,
+                        ConfigurationServiceImpl.class.getName(),
+                        Thread.NORM_PRIORITY);
+            // Do not lose the changes which are still pending on exit.
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            storeScheduledConfiguration();
+                        }
+                    });
+        }
+        else
+        {
+            storeExecutor = null;
+        }
     }
 
     /**
@@ -198,16 +282,7 @@ public void setProperty(String propertyName,
                      + ", newValue=" + property + ".");
 
         doSetProperty(propertyName, property, isSystem);
-
-        try
-        {
-            storeConfiguration();
-        }
-        catch (IOException ex)
-        {
-            logger.error(
-                "Failed to store configuration after a property change");
-        }
+        storeConfigurationAfterChange();
 
         if (changeEventDispatcher.hasPropertyChangeListeners(propertyName))
             changeEventDispatcher.firePropertyChange(
@@ -240,16 +315,7 @@ public void setProperties(Map<String, Object> properties)
 
         for (Map.Entry<String, Object> property : properties.entrySet())
             doSetProperty(property.getKey(), property.getValue(), false);
-
-        try
-        {
-            storeConfiguration();
-        }
-        catch (IOException ex)
-        {
-            logger.error(
-                "Failed to store configuration after property changes");
-        }
+        storeConfigurationAfterChange();
 
         for (Map.Entry<String, Object> property : properties.entrySet())
         {
@@ -293,6 +359,7 @@ private void doSetProperty(
         if (property == null)
         {
             store.removeProperty(propertyName);
+            removeFromStorePropertyNameIndex(propertyName);
 
             if (isSystem)
             {
@@ -313,6 +380,66 @@ private void doSetProperty(
             {
                 store.setNonSystemProperty(propertyName, property);
             }
+            addToStorePropertyNameIndex(propertyName);
+        }
+    }
+
+    /**
+     * Persists the configuration after a property change, either right away
+     * or, if write-behind is enabled, by scheduling a store on
+     * {@link #storeExecutor} unless one is pending already.
+     */
+    private void storeConfigurationAfterChange()
+    {
+        if (writeBehindDelay > 0)
+        {
+            if (storeScheduled.compareAndSet(false, true))
+            {
+                storeExecutor.schedule(
+                        new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                storeScheduledConfiguration();
+                            }
+                        },
+                        writeBehindDelay,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        else
+        {
+            try
+            {
+                storeConfiguration();
+            }
+            catch (IOException ex)
+            {
+                logger.error(
+                    "Failed to store configuration after property changes");
+            }
+        }
+    }
+
+    /**
+     * Stores the configuration if a store is pending on
+     * {@link #storeExecutor}.
+     */
+    private void storeScheduledConfiguration()
+    {
+        if (storeScheduled.getAndSet(false))
+        {
+            try
+            {
+                storeConfiguration();
+            }
+            catch (Throwable t)
+            {
+                logger.error(
+                    "Failed to store configuration after property changes",
+                    t);
+            }
         }
     }
 
@@ -331,15 +458,7 @@ public void removeProperty(String propertyName)
             removePropertyInternal(pName);
         }
 
-        try
-        {
-            storeConfiguration();
-        }
-        catch (IOException ex)
-        {
-            logger.error("Failed to store configuration after "
-                + "a property change");
-        }
+        storeConfigurationAfterChange();
     }
 
     /**
@@ -369,6 +488,7 @@ private void removePropertyInternal(String propertyName)
             logger.trace("Will remove prop: " + propertyName + ".");
 
         store.removeProperty(propertyName);
+        removeFromStorePropertyNameIndex(propertyName);
 
         if (changeEventDispatcher.hasPropertyChangeListeners(propertyName))
             changeEventDispatcher.firePropertyChange(
@@ -414,109 +534,98 @@ public List<String> getPropertyNamesByPrefix(String prefix,
     {
         HashSet<String> resultKeySet = new HashSet<>();
 
-        //first fill in the names from the immutable default property set
-        Set<String> propertyNameSet;
-        String[] namesArray;
+        // The names from the immutable and the mutable default property sets
+        // and then the ones from the current store.
+        defaultPropertyNameIndex.getByPrefix(
+                prefix,
+                exactPrefixMatch,
+                resultKeySet);
+        getStorePropertyNameIndex().getByPrefix(
+                prefix,
+                exactPrefixMatch,
+                resultKeySet);
 
-        if(immutableDefaultProperties.size() > 0)
-        {
-            propertyNameSet = immutableDefaultProperties.keySet();
-
-            namesArray
-                = propertyNameSet.toArray( new String[propertyNameSet.size()] );
-
-            getPropertyNamesByPrefix(prefix,
-                                     exactPrefixMatch,
-                                     namesArray,
-                                     resultKeySet);
-        }
-
-        //now get property names from the current store.
-        getPropertyNamesByPrefix(prefix,
-                                 exactPrefixMatch,
-                                 store.getPropertyNames(),
-                                 resultKeySet);
+        return new ArrayList<>(resultKeySet);
+    }
 
-        //finally, get property names from mutable default property set.
-        if(defaultProperties.size() > 0)
-        {
-            propertyNameSet = defaultProperties.keySet();
-            namesArray
-                = propertyNameSet.toArray(new String[propertyNameSet.size()]);
-
-            getPropertyNamesByPrefix(prefix,
-                                     exactPrefixMatch,
-                                     namesArray,
-                                     resultKeySet);
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getPropertyNamesBySuffix(String suffix)
+    {
+        List<String> resultKeySet = new LinkedList<>();
 
-        return new ArrayList<>(resultKeySet);
+        getStorePropertyNameIndex().getBySuffix(suffix, resultKeySet);
+        return resultKeySet;
     }
 
     /**
-     * Updates the specified <tt>String</tt> <tt>resulSet</tt> to contain all
-     * property names in the <tt>names</tt> array that partially or completely
-     * match the specified prefix. Depending on the value of the
-     * <tt>exactPrefixMatch</tt> parameter the method will (when false)
-     * or will not (when exactPrefixMatch is true) include property names that
-     * have prefixes longer than the specified <tt>prefix</tt> param.
-     *
-     * @param prefix a String containing the prefix (the non dotted non-caps
-     * part of a property name) that we're looking for.
-     * @param exactPrefixMatch a boolean indicating whether the returned
-     * property names should all have a prefix that is an exact match of the
-     * the <tt>prefix</tt> param or whether properties with prefixes that
-     * contain it but are longer than it are also accepted.
-     * @param names the list of names that we'd like to search.
+     * Gets the index of the property names of {@link #store}, rebuilding it
+     * if <tt>store</tt> has been replaced or reloaded since it was built.
      *
-     * @return a reference to the updated result set.
+     * @return the index of the property names of <tt>store</tt>
      */
-    private Set<String> getPropertyNamesByPrefix(
-                            String      prefix,
-                            boolean     exactPrefixMatch,
-                            String[]    names,
-                            Set<String> resultSet)
+    private PropertyNameIndex getStorePropertyNameIndex()
     {
-        for (String key : names)
+        synchronized (storePropertyNameIndex)
         {
-            if(exactPrefixMatch)
-            {
-                int ix = key.lastIndexOf('.');
-
-                if(ix == -1)
-                    continue;
+            ConfigurationStore store = this.store;
 
-                String keyPrefix = key.substring(0, ix);
-
-                if(prefix.equals(keyPrefix))
-                    resultSet.add(key);
-            }
-            else
+            if (indexedStore != store)
             {
-                if(key.startsWith(prefix))
-                    resultSet.add(key);
+                storePropertyNameIndex.reset(
+                        (store == null)
+                            ? Collections.<String>emptyList()
+                            : Arrays.asList(store.getPropertyNames()));
+                indexedStore = store;
             }
+            return storePropertyNameIndex;
         }
-
-        return resultSet;
     }
 
     /**
-     * {@inheritDoc}
+     * Adds a property name, which has just been set in {@link #store}, to
+     * {@link #storePropertyNameIndex} unless the index is to be rebuilt
+     * anyway.
+     *
+     * @param propertyName the name of the property set in <tt>store</tt>
      */
-    @Override
-    public List<String> getPropertyNamesBySuffix(String suffix)
+    private void addToStorePropertyNameIndex(String propertyName)
     {
-        List<String> resultKeySet = new LinkedList<>();
+        synchronized (storePropertyNameIndex)
+        {
+            if (indexedStore == store)
+                storePropertyNameIndex.add(propertyName);
+        }
+    }
 
-        for (String key : store.getPropertyNames())
+    /**
+     * Removes a property name, which has just been removed from
+     * {@link #store}, from {@link #storePropertyNameIndex} unless the index is
+     * to be rebuilt anyway.
+     *
+     * @param propertyName the name of the property removed from <tt>store</tt>
+     */
+    private void removeFromStorePropertyNameIndex(String propertyName)
+    {
+        synchronized (storePropertyNameIndex)
         {
-            int ix = key.lastIndexOf('.');
+            if (indexedStore == store)
+                storePropertyNameIndex.remove(propertyName);
+        }
+    }
 
-            if (ix != -1 && suffix.equals(key.substring(ix + 1)))
-                resultKeySet.add(key);
+    /**
+     * Forces {@link #storePropertyNameIndex} to be rebuilt the next time it
+     * is used because {@link #store} has been modified in bulk.
+     */
+    private void invalidateStorePropertyNameIndex()
+    {
+        synchronized (storePropertyNameIndex)
+        {
+            indexedStore = null;
         }
-        return resultKeySet;
     }
 
     /**
@@ -640,6 +749,10 @@ public void reloadConfiguration()
         {
             throw new IOException(xmle);
         }
+        finally
+        {
+            invalidateStorePropertyNameIndex();
+        }
     }
 
     /**
@@ -649,11 +762,44 @@ public void reloadConfiguration()
     public synchronized void storeConfiguration()
         throws IOException
     {
+        // A pending (write-behind) store has nothing left to do.
+        storeScheduled.set(false);
         storeConfiguration(getConfigurationFile());
     }
 
     /**
-     * Stores local properties in the specified configuration file.
+     * Sets the POSIX permissions of a specific file to those of another
+     * specific file. Does nothing if the latter does not exist or the file
+     * system does not support POSIX permissions.
+     *
+     * @param src the file to copy the POSIX permissions of
+     * @param dst the file to set the POSIX permissions of
+     * @throws IOException if reading or setting the POSIX permissions fails
+     */
+    private static void copyPosixFilePermissions(Path src, Path dst)
+        throws IOException
+    {
+        if (Files.exists(src))
+        {
+            try
+            {
+                Files.setPosixFilePermissions(
+                        dst,
+                        Files.getPosixFilePermissions(src));
+            }
+            catch (UnsupportedOperationException uoe)
+            {
+                // The file system does not support POSIX permissions.
+            }
+        }
+    }
+
+    /**
+     * Stores local properties in the specified configuration file. The
+     * properties are written into a temporary file next to it which then
+     * replaces it (atomically if the file system allows it) so that a failure
+     * or a crash while writing never leaves a truncated configuration file
+     * behind.
      *
      * @param file a reference to the configuration file where properties should
      * be stored.
@@ -671,28 +817,24 @@ private void storeConfiguration(File file)
             return;
 
         // write the file.
-        FailSafeTransaction trans = null;
-
-        if (file != null)
-        {
-            FileAccessService faService = getFileAccessService();
-
-            if (faService != null)
-                trans = faService.createFailSafeTransaction(file);
-        }
-
+        File tmpFile
+            = (file == null) ? null : new File(file.getPath() + ".tmp");
         Throwable exception = null;
 
         try
         {
-            if (trans != null)
-                trans.beginTransaction();
-
             OutputStream stream
-                = (file == null) ? null : new FileOutputStream(file);
+                = (tmpFile == null)
+                    ? null
+                    : new BufferedOutputStream(new FileOutputStream(tmpFile));
 
             try
             {
+                // The configuration file may contain secrets so do not
+                // write them into a file with looser permissions.
+                if (tmpFile != null)
+                    copyPosixFilePermissions(file.toPath(), tmpFile.toPath());
+
                 store.storeConfiguration(stream);
             }
             finally
@@ -701,8 +843,23 @@ private void storeConfiguration(File file)
                     stream.close();
             }
 
-            if (trans != null)
-                trans.commit();
+            if (tmpFile != null)
+            {
+                Path src = tmpFile.toPath();
+                Path dst = file.toPath();
+
+                try
+                {
+                    Files.move(src, dst, StandardCopyOption.ATOMIC_MOVE);
+                }
+                catch (AtomicMoveNotSupportedException amnse)
+                {
+                    Files.move(
+                            src,
+                            dst,
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
         }
         catch (IllegalStateException | IOException e)
         {
@@ -713,8 +870,8 @@ private void storeConfiguration(File file)
             logger.error(
                     "can't write data in the configuration file",
                     exception);
-            if (trans != null)
-                trans.rollback();
+            if (tmpFile != null)
+                tmpFile.delete();
         }
     }
 
@@ -877,7 +1034,10 @@ else if (getSystemProperty(PNAME_CONFIGURATION_FILE_NAME)
 
                         setConfigurationStore(defaultConfigurationStoreClass);
                         if (this.store != null)
+                        {
                             copy(xmlStore, this.store);
+                            invalidateStorePropertyNameIndex();
+                        }
 
                         Throwable exception = null;
                         try
@@ -953,6 +1113,7 @@ public String getScHomeDirLocation()
                 store.setNonSystemProperty(
                         PNAME_SC_HOME_DIR_LOCATION,
                         scHomeDirLocation);
+                addToStorePropertyNameIndex(PNAME_SC_HOME_DIR_LOCATION);
             }
         }
 
@@ -1370,6 +1531,7 @@ public void purgeStoredConfiguration()
         if (store != null)
             for (String name : store.getPropertyNames())
                 store.removeProperty(name);
+        invalidateStorePropertyNameIndex();
     }
 
     /**
@@ -1555,6 +1717,12 @@ private void loadDefaultProperties()
     {
         loadDefaultProperties(DEFAULT_PROPS_FILE_NAME);
         loadDefaultProperties(DEFAULT_OVERRIDES_PROPS_FILE_NAME);
+
+        List<String> names
+            = new ArrayList<>(immutableDefaultProperties.keySet());
+
+        names.addAll(defaultProperties.keySet());
+        defaultPropertyNameIndex.reset(names);
     }
 
     /**
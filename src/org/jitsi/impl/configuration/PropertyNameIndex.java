@@ -0,0 +1,163 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.configuration;
+
+import java.util.*;
+
+/**
+ * Indexes a set of (dotted) property names so that the names with a specific
+ * prefix or a specific last component can be found without scanning all of
+ * them. The names are kept sorted, which makes a prefix lookup a logarithmic
+ * search followed by the iteration of the matches only, and are additionally
+ * grouped by the component which follows their last dot.
+ *
+ * The methods of <tt>PropertyNameIndex</tt> are thread-safe.
+ */
+class PropertyNameIndex
+{
+    /**
+     * The property names, sorted.
+     */
+    private final TreeSet<String> names = new TreeSet<>();
+
+    /**
+     * Maps the component which follows the last dot of a property name to the
+     * property names which end with it.
+     */
+    private final Map<String, List<String>> namesBySuffix = new HashMap<>();
+
+    /**
+     * Adds a property name to this index.
+     *
+     * @param name the property name to add.
+     */
+    public synchronized void add(String name)
+    {
+        if (!names.add(name))
+            return;
+
+        String suffix = getSuffix(name);
+
+        if (suffix != null)
+        {
+            List<String> list = namesBySuffix.get(suffix);
+
+            if (list == null)
+            {
+                list = new ArrayList<>(1);
+                namesBySuffix.put(suffix, list);
+            }
+            list.add(name);
+        }
+    }
+
+    /**
+     * Adds the names of the properties of this index which start with a
+     * specific prefix to a specific <tt>Collection</tt>.
+     *
+     * @param prefix the prefix of the property names to get.
+     * @param exactPrefixMatch <tt>true</tt> to only get the property names
+     * which are made of <tt>prefix</tt>, a dot and a component without dots;
+     * <tt>false</tt> to get all the property names which start with
+     * <tt>prefix</tt>.
+     * @param result the <tt>Collection</tt> to add the property names to.
+     */
+    public synchronized void getByPrefix(
+            String prefix,
+            boolean exactPrefixMatch,
+            Collection<String> result)
+    {
+        String from = exactPrefixMatch ? prefix + '.' : prefix;
+
+        for (String name : names.tailSet(from, true))
+        {
+            if (!name.startsWith(from))
+                break;
+            if (!exactPrefixMatch || name.indexOf('.', from.length()) == -1)
+                result.add(name);
+        }
+    }
+
+    /**
+     * Adds the names of the properties of this index whose last component
+     * (i.e. the part which follows their last dot) is a specific string to a
+     * specific <tt>Collection</tt>.
+     *
+     * @param suffix the last component of the property names to get.
+     * @param result the <tt>Collection</tt> to add the property names to.
+     */
+    public synchronized void getBySuffix(
+            String suffix,
+            Collection<String> result)
+    {
+        List<String> list = namesBySuffix.get(suffix);
+
+        if (list != null)
+            result.addAll(list);
+    }
+
+    /**
+     * Removes a property name from this index.
+     *
+     * @param name the property name to remove.
+     */
+    public synchronized void remove(String name)
+    {
+        if (!names.remove(name))
+            return;
+
+        String suffix = getSuffix(name);
+
+        if (suffix != null)
+        {
+            List<String> list = namesBySuffix.get(suffix);
+
+            if (list != null)
+            {
+                list.remove(name);
+                if (list.isEmpty())
+                    namesBySuffix.remove(suffix);
+            }
+        }
+    }
+
+    /**
+     * Replaces the property names of this index with specific ones.
+     *
+     * @param names the property names to index.
+     */
+    public synchronized void reset(Collection<String> names)
+    {
+        this.names.clear();
+        namesBySuffix.clear();
+        for (String name : names)
+            add(name);
+    }
+
+    /**
+     * Gets the component which follows the last dot of a property name.
+     *
+     * @param name the property name.
+     * @return the component which follows the last dot of <tt>name</tt>, or
+     * <tt>null</tt> if <tt>name</tt> does not contain a dot.
+     */
+    private static String getSuffix(String name)
+    {
+        int ix = name.lastIndexOf('.');
+
+        return (ix == -1) ? null : name.substring(ix + 1);
+    }
+}
@@ -0,0 +1,661 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.util.*;
+
+/**
+ * Implements a process-wide pool of <tt>byte[]</tt>s (e.g. the buffers of
+ * <tt>RawPacket</tt>s) shared by all RTP connectors, translators and caches.
+ * The <tt>byte[]</tt>s are organized in size classes (powers of two from
+ * {@link #MIN_SIZE} to {@link #MAX_SIZE}). Each size class is served by a
+ * small cache local to the requesting thread in front of a number of striped,
+ * lock-free free-lists.
+ *
+ * A <tt>byte[]</tt> obtained through {@link #getBuffer(int)} should be given
+ * back through {@link #returnBuffer(byte[])} once it is no longer in use
+ * (and not referenced). A <tt>byte[]</tt> which is not given back is simply
+ * garbage collected; if leak detection is enabled through
+ * {@link #ENABLE_LEAK_DETECTION_PNAME}, this is reported along with the stack
+ * trace of the corresponding <tt>getBuffer</tt> invocation. A <tt>byte[]</tt>
+ * which was not obtained from the pool may be given back as well (e.g. the
+ * buffer of a <tt>RawPacket</tt> which was not created from the pool); it is
+ * then pooled or, if leak detection is enabled, quietly dropped.
+ */
+public final class ByteArrayPool
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>ByteArrayPool</tt> class to print
+     * debug information.
+     */
+    private static final Logger logger = Logger.getLogger(ByteArrayPool.class);
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * integer property which specifies the maximum number of <tt>byte[]</tt>s
+     * pooled (in all stripes combined) per size class.
+     */
+    public static final String CAPACITY_PNAME
+        = ByteArrayPool.class.getName() + ".CAPACITY";
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * boolean property which specifies whether <tt>byte[]</tt>s which are not
+     * returned to the pool are to be reported.
+     */
+    public static final String ENABLE_LEAK_DETECTION_PNAME
+        = ByteArrayPool.class.getName() + ".ENABLE_LEAK_DETECTION";
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * integer property which specifies the maximum number of <tt>byte[]</tt>s
+     * per size class cached by each thread.
+     */
+    public static final String THREAD_LOCAL_CAPACITY_PNAME
+        = ByteArrayPool.class.getName() + ".THREAD_LOCAL_CAPACITY";
+
+    /**
+     * The size in bytes of the smallest size class.
+     */
+    public static final int MIN_SIZE = 256;
+
+    /**
+     * The size in bytes of the largest size class. Requests for larger
+     * <tt>byte[]</tt>s are satisfied by allocations.
+     */
+    public static final int MAX_SIZE = 8 * 1024;
+
+    /**
+     * The binary logarithm of {@link #MIN_SIZE}.
+     */
+    private static final int MIN_SIZE_SHIFT
+        = Integer.numberOfTrailingZeros(MIN_SIZE);
+
+    /**
+     * The number of size classes.
+     */
+    private static final int NUM_SIZE_CLASSES
+        = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SIZE_SHIFT + 1;
+
+    /**
+     * The number of stripes (i.e. free-lists) per size class.
+     */
+    private static final int NUM_STRIPES;
+
+    /**
+     * The maximum number of <tt>byte[]</tt>s pooled per stripe.
+     */
+    private static final int STRIPE_CAPACITY;
+
+    /**
+     * The maximum number of <tt>byte[]</tt>s per size class cached by each
+     * thread.
+     */
+    private static final int THREAD_LOCAL_CAPACITY;
+
+    /**
+     * The free-lists of the size classes. The element at index <tt>i</tt>
+     * holds the stripes of size class <tt>i</tt>.
+     */
+    private static final Stripe[][] stripes;
+
+    /**
+     * The <tt>byte[]</tt>s cached by the current thread. Indexed by size
+     * class.
+     */
+    private static final ThreadLocal<ThreadLocalCache> threadLocalCache
+        = new ThreadLocal<ThreadLocalCache>()
+        {
+            @Override
+            protected ThreadLocalCache initialValue()
+            {
+                return new ThreadLocalCache();
+            }
+        };
+
+    /**
+     * The number of requests for a <tt>byte[]</tt> (i.e. invocations of
+     * {@link #getBuffer(int)}).
+     */
+    private static final AtomicLong numRequests = new AtomicLong();
+
+    /**
+     * The number of requests which were satisfied by pooled <tt>byte[]</tt>s.
+     */
+    private static final AtomicLong numHits = new AtomicLong();
+
+    /**
+     * The number of <tt>byte[]</tt>s given back through
+     * {@link #returnBuffer(byte[])}.
+     */
+    private static final AtomicLong numReturns = new AtomicLong();
+
+    /**
+     * The number of <tt>byte[]</tt>s given back through
+     * {@link #returnBuffer(byte[])} which were dropped because the pool was
+     * full or their size did not match any size class.
+     */
+    private static final AtomicLong numDiscardedReturns = new AtomicLong();
+
+    /**
+     * The <tt>ReferenceQueue</tt> to which the {@link LeakReference}s of the
+     * <tt>byte[]</tt>s which were garbage collected without having been
+     * returned are enqueued. <tt>null</tt> if leak detection is disabled.
+     */
+    private static final ReferenceQueue<byte[]> leakQueue;
+
+    /**
+     * Maps the <tt>byte[]</tt>s which are currently in use to their
+     * {@link LeakReference}s. Relies on the fact that arrays use identity
+     * equality. <tt>null</tt> if leak detection is disabled.
+     */
+    private static final Map<byte[], LeakReference> outstanding;
+
+    /**
+     * The <tt>byte[]</tt>s which are currently in the pool (i.e. have been
+     * returned and have not been obtained again). Allows a <tt>byte[]</tt>
+     * which is returned more than once to be told apart from a
+     * <tt>byte[]</tt> which was not obtained from the pool. <tt>null</tt> if
+     * leak detection is disabled.
+     */
+    private static final Map<byte[], Boolean> pooled;
+
+    static
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        int capacity = ConfigUtils.getInt(cfg, CAPACITY_PNAME, 1024);
+        int numStripes = 1;
+
+        // The number of stripes is the power of two closest to (but not
+        // greater than) twice the number of available processors, limited
+        // to 16.
+        while (numStripes < 16
+                && numStripes * 2
+                    <= 2 * Runtime.getRuntime().availableProcessors())
+        {
+            numStripes *= 2;
+        }
+        NUM_STRIPES = numStripes;
+        STRIPE_CAPACITY = Math.max(1, capacity / NUM_STRIPES);
+
+        THREAD_LOCAL_CAPACITY
+            = Math.max(
+                    0,
+                    ConfigUtils.getInt(cfg, THREAD_LOCAL_CAPACITY_PNAME, 4));
+
+        stripes = new Stripe[NUM_SIZE_CLASSES][NUM_STRIPES];
+        for (Stripe[] sizeClassStripes : stripes)
+        {
+            for (int i = 0; i < sizeClassStripes.length; i++)
+                sizeClassStripes[i] = new Stripe(STRIPE_CAPACITY);
+        }
+
+        if (ConfigUtils.getBoolean(cfg, ENABLE_LEAK_DETECTION_PNAME, false))
+        {
+            leakQueue = new ReferenceQueue<>();
+            outstanding
+                = Collections.synchronizedMap(
+                        new WeakHashMap<byte[], LeakReference>());
+            pooled
+                = Collections.synchronizedMap(
+                        new WeakHashMap<byte[], Boolean>());
+        }
+        else
+        {
+            leakQueue = null;
+            outstanding = null;
+            pooled = null;
+        }
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Initialized configuration. "
+                         + "Capacity per size class: " + capacity
+                         + ". Stripes: " + NUM_STRIPES
+                         + ". Thread-local capacity: " + THREAD_LOCAL_CAPACITY
+                         + ". Leak detection: " + (outstanding != null));
+        }
+    }
+
+    /**
+     * Checks for <tt>byte[]</tt>s which were garbage collected without having
+     * been returned to the pool and reports them.
+     */
+    private static void expungeLeaks()
+    {
+        Reference<? extends byte[]> ref;
+
+        while ((ref = leakQueue.poll()) != null)
+        {
+            logger.warn(
+                    "A byte[] was garbage collected without having been"
+                        + " returned to the pool.",
+                    ((LeakReference) ref).allocation);
+        }
+    }
+
+    /**
+     * Gets a <tt>byte[]</tt> with a length of at least <tt>len</tt>.
+     *
+     * @param len the minimum length of the <tt>byte[]</tt> to get
+     * @return a <tt>byte[]</tt> with a length of at least <tt>len</tt>
+     */
+    public static byte[] getBuffer(int len)
+    {
+        numRequests.incrementAndGet();
+
+        byte[] buf;
+
+        if (len > MAX_SIZE)
+        {
+            buf = new byte[len];
+        }
+        else
+        {
+            int sizeClass = getSizeClassForRequest(len);
+
+            buf = threadLocalCache.get().poll(sizeClass);
+            if (buf == null)
+            {
+                Stripe[] sizeClassStripes = stripes[sizeClass];
+                int stripe = getStripeIndex();
+
+                for (int i = 0; i < NUM_STRIPES && buf == null; i++)
+                {
+                    buf
+                        = sizeClassStripes[(stripe + i) & (NUM_STRIPES - 1)]
+                            .poll();
+                }
+            }
+            if (buf == null)
+                buf = new byte[MIN_SIZE << sizeClass];
+            else
+                numHits.incrementAndGet();
+        }
+
+        if (outstanding != null)
+        {
+            expungeLeaks();
+            pooled.remove(buf);
+            outstanding.put(buf, new LeakReference(buf, leakQueue));
+        }
+        return buf;
+    }
+
+    /**
+     * Gets the number of requests which were satisfied by pooled
+     * <tt>byte[]</tt>s.
+     *
+     * @return the number of requests which were satisfied by pooled
+     * <tt>byte[]</tt>s
+     */
+    public static long getNumberOfHits()
+    {
+        return numHits.get();
+    }
+
+    /**
+     * Gets the number of requests which were satisfied by allocating a new
+     * <tt>byte[]</tt>.
+     *
+     * @return the number of requests which were satisfied by allocating a new
+     * <tt>byte[]</tt>
+     */
+    public static long getNumberOfMisses()
+    {
+        return numRequests.get() - numHits.get();
+    }
+
+    /**
+     * Gets the number of <tt>byte[]</tt>s obtained through
+     * {@link #getBuffer(int)} which have not been returned. Note that
+     * <tt>byte[]</tt>s which are garbage collected instead of being returned
+     * are also counted.
+     *
+     * @return the number of <tt>byte[]</tt>s obtained from the pool which have
+     * not been returned
+     */
+    public static long getNumberOfOutstandingBuffers()
+    {
+        return numRequests.get() - numReturns.get();
+    }
+
+    /**
+     * Gets the number of requests for a <tt>byte[]</tt>.
+     *
+     * @return the number of requests for a <tt>byte[]</tt>
+     */
+    public static long getNumberOfRequests()
+    {
+        return numRequests.get();
+    }
+
+    /**
+     * Gets the index of the size class which satisfies a request for a
+     * <tt>byte[]</tt> with a specific minimum length.
+     *
+     * @param len the minimum length of the requested <tt>byte[]</tt>. Must
+     * not be greater than {@link #MAX_SIZE}.
+     * @return the index of the size class which satisfies a request for a
+     * <tt>byte[]</tt> with a length of at least <tt>len</tt>
+     */
+    private static int getSizeClassForRequest(int len)
+    {
+        if (len <= MIN_SIZE)
+            return 0;
+        else
+            return 32 - Integer.numberOfLeadingZeros(len - 1) - MIN_SIZE_SHIFT;
+    }
+
+    /**
+     * Gets the index of the size class into which a <tt>byte[]</tt> with a
+     * specific length is to be pooled.
+     *
+     * @param len the length of the <tt>byte[]</tt> to be pooled
+     * @return the index of the size class into which a <tt>byte[]</tt> with
+     * length <tt>len</tt> is to be pooled or <tt>-1</tt> if it is not to be
+     * pooled
+     */
+    private static int getSizeClassForReturn(int len)
+    {
+        if (len < MIN_SIZE || len > 2 * MAX_SIZE - 1)
+            return -1;
+        else
+        {
+            return
+                Math.min(
+                        31 - Integer.numberOfLeadingZeros(len) - MIN_SIZE_SHIFT,
+                        NUM_SIZE_CLASSES - 1);
+        }
+    }
+
+    /**
+     * Gets the index of the stripe which the current thread is to try first.
+     *
+     * @return the index of the stripe which the current thread is to try
+     * first
+     */
+    private static int getStripeIndex()
+    {
+        long id = Thread.currentThread().getId();
+
+        return (int) (id ^ (id >>> 16)) & (NUM_STRIPES - 1);
+    }
+
+    /**
+     * Gets the number of <tt>byte[]</tt>s given back through
+     * {@link #returnBuffer(byte[])} which were dropped instead of being
+     * pooled.
+     *
+     * @return the number of <tt>byte[]</tt>s given back through
+     * {@link #returnBuffer(byte[])} which were dropped instead of being pooled
+     */
+    public static long getNumberOfDiscardedReturns()
+    {
+        return numDiscardedReturns.get();
+    }
+
+    /**
+     * Determines whether leak detection is enabled (through
+     * {@link #ENABLE_LEAK_DETECTION_PNAME}).
+     *
+     * @return <tt>true</tt> if leak detection is enabled; otherwise,
+     * <tt>false</tt>
+     */
+    static boolean isLeakDetectionEnabled()
+    {
+        return outstanding != null;
+    }
+
+    /**
+     * Returns a <tt>byte[]</tt> to the pool. The <tt>byte[]</tt> should not
+     * be used (or referenced) by the caller afterwards.
+     *
+     * @param buf the <tt>byte[]</tt> to return to the pool. If <tt>null</tt>,
+     * the method does nothing.
+     */
+    public static void returnBuffer(byte[] buf)
+    {
+        if (buf == null)
+            return;
+
+        if (outstanding != null)
+        {
+            LeakReference ref = outstanding.remove(buf);
+
+            if (ref == null)
+            {
+                numDiscardedReturns.incrementAndGet();
+                if (pooled.containsKey(buf))
+                {
+                    // The byte[] was returned more than once. That is a
+                    // serious bug because the same byte[] may end up being
+                    // used by multiple owners.
+                    logger.warn(
+                            "Returning a byte[] which is already pooled.",
+                            new Throwable());
+                }
+                else if (logger.isDebugEnabled())
+                {
+                    // The byte[] was not obtained from the pool (e.g. it was
+                    // allocated by a RawPacket). It is not an error to give
+                    // it back but it is not tracked so it is not pooled.
+                    logger.debug(
+                            "Dropping a byte[] which was not obtained from"
+                                + " the pool.");
+                }
+                return;
+            }
+            ref.clear();
+        }
+
+        numReturns.incrementAndGet();
+
+        int sizeClass = getSizeClassForReturn(buf.length);
+
+        if (sizeClass < 0)
+        {
+            numDiscardedReturns.incrementAndGet();
+            return;
+        }
+
+        // Mark the byte[] as pooled before it becomes available to other
+        // threads.
+        if (pooled != null)
+            pooled.put(buf, Boolean.TRUE);
+
+        if (threadLocalCache.get().offer(sizeClass, buf))
+            return;
+
+        Stripe[] sizeClassStripes = stripes[sizeClass];
+        int stripe = getStripeIndex();
+
+        for (int i = 0; i < NUM_STRIPES; i++)
+        {
+            if (sizeClassStripes[(stripe + i) & (NUM_STRIPES - 1)].offer(buf))
+                return;
+        }
+        if (pooled != null)
+            pooled.remove(buf);
+        numDiscardedReturns.incrementAndGet();
+    }
+
+    /**
+     * Prevents the initialization of new <tt>ByteArrayPool</tt> instances.
+     */
+    private ByteArrayPool()
+    {
+    }
+
+    /**
+     * Associates the stack trace of an invocation of {@link #getBuffer(int)}
+     * with the returned <tt>byte[]</tt> in order to report it if the
+     * <tt>byte[]</tt> is garbage collected without having been returned.
+     */
+    private static class LeakReference
+        extends WeakReference<byte[]>
+    {
+        /**
+         * The stack trace of the invocation of {@link #getBuffer(int)}.
+         */
+        final Throwable allocation = new Throwable();
+
+        LeakReference(byte[] buf, ReferenceQueue<byte[]> queue)
+        {
+            super(buf, queue);
+        }
+    }
+
+    /**
+     * Implements a bounded, lock-free free-list of <tt>byte[]</tt>s of one size
+     * class. The <tt>byte[]</tt>s are kept in the slots of an
+     * <tt>AtomicReferenceArray</tt> which are claimed and released with
+     * compare-and-set so that neither offering nor polling allocates.
+     */
+    private static class Stripe
+    {
+        /**
+         * The slots which hold the pooled <tt>byte[]</tt>s.
+         */
+        private final AtomicReferenceArray<byte[]> slots;
+
+        /**
+         * The (approximate) number of non-<tt>null</tt> {@link #slots}. Allows
+         * {@link #poll()} and {@link #offer(byte[])} to not scan the slots of
+         * empty and full stripes, respectively.
+         */
+        private final AtomicInteger size = new AtomicInteger();
+
+        Stripe(int capacity)
+        {
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * Adds a <tt>byte[]</tt> to this free-list.
+         *
+         * @param buf the <tt>byte[]</tt> to add
+         * @return <tt>true</tt> if <tt>buf</tt> was added; <tt>false</tt> if
+         * this free-list is full
+         */
+        boolean offer(byte[] buf)
+        {
+            int capacity = slots.length();
+            int start = size.get();
+
+            if (start >= capacity)
+                return false;
+            // The occupied slots tend to be at the beginning of the array so
+            // start looking for a free slot right after them.
+            for (int i = 0; i < capacity; i++)
+            {
+                int slot = (start + i) % capacity;
+
+                if (slots.get(slot) == null
+                        && slots.compareAndSet(slot, null, buf))
+                {
+                    size.incrementAndGet();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Removes a <tt>byte[]</tt> from this free-list.
+         *
+         * @return a <tt>byte[]</tt> removed from this free-list or
+         * <tt>null</tt> if this free-list is empty
+         */
+        byte[] poll()
+        {
+            int capacity = slots.length();
+            int start = size.get() - 1;
+
+            if (start < 0)
+                return null;
+            // The occupied slots tend to be at the beginning of the array so
+            // start looking for an occupied slot at the end of them.
+            for (int i = 0; i < capacity; i++)
+            {
+                int slot = (start - i + capacity) % capacity;
+                byte[] buf = slots.get(slot);
+
+                if (buf != null && slots.compareAndSet(slot, buf, null))
+                {
+                    size.decrementAndGet();
+                    return buf;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Caches a few <tt>byte[]</tt>s per size class for the exclusive use of a
+     * single thread.
+     */
+    private static class ThreadLocalCache
+    {
+        /**
+         * The <tt>byte[]</tt>s cached per size class (used as stacks).
+         */
+        private final byte[][][] bufs
+            = new byte[NUM_SIZE_CLASSES][THREAD_LOCAL_CAPACITY][];
+
+        /**
+         * The number of <tt>byte[]</tt>s cached per size class.
+         */
+        private final int[] sizes = new int[NUM_SIZE_CLASSES];
+
+        boolean offer(int sizeClass, byte[] buf)
+        {
+            int size = sizes[sizeClass];
+
+            if (size < THREAD_LOCAL_CAPACITY)
+            {
+                bufs[sizeClass][size] = buf;
+                sizes[sizeClass] = size + 1;
+                return true;
+            }
+            return false;
+        }
+
+        byte[] poll(int sizeClass)
+        {
+            int size = sizes[sizeClass];
+
+            if (size > 0)
+            {
+                size--;
+
+                byte[] buf = bufs[sizeClass][size];
+
+                bufs[sizeClass][size] = null;
+                sizes[sizeClass] = size;
+                return buf;
+            }
+            return null;
+        }
+    }
+}
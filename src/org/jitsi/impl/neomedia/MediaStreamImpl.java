@@ -313,6 +313,19 @@ else if (MediaDeviceSession.SSRC_LIST.equals(propertyName))
      */
     private AbsSendTimeEngine absSendTimeEngine;
 
+    /**
+     * The <tt>TransformEngine</tt> instance registered in the
+     * <tt>RTPConnector</tt>'s transformer chain which wraps the transformer
+     * that adds transport-wide sequence numbers to outgoing RTP packets and
+     * generates and handles RTCP transport-cc feedback. The
+     * {@link TransportCCEngine} is shared by the streams which use the same
+     * {@link StreamConnector} and is only used while the transport-cc RTP
+     * header extension is enabled.
+     */
+    private final TransformEngineWrapper<TransportCCEngine>
+        transportCCEngineWrapper
+            = new TransformEngineWrapper<>();
+
     /**
      * The transformer which caches outgoing RTP packets for this
      * {@link MediaStream}.
@@ -466,6 +479,18 @@ else if (Constants.ULPFEC.equals(encoding))
                     fecTransformEngine.setOutgoingPT(rtpPayloadType);
                 }
             }
+            else if (Constants.FLEXFEC.equals(encoding))
+            {
+                FlexFecTransformEngine flexFecTransformEngine
+                    = getFlexFecTransformEngine();
+                if (flexFecTransformEngine != null)
+                {
+                    flexFecTransformEngine.setIncomingPT(rtpPayloadType);
+                    // Repair packets are only generated for the SSRCs which
+                    // have been associated with a FlexFEC SSRC.
+                    flexFecTransformEngine.setOutgoingPT(rtpPayloadType);
+                }
+            }
 
             if (rtpManager != null)
             {
@@ -504,6 +529,14 @@ public void clearDynamicRTPPayloadTypes()
                 fecTransformEngine.setIncomingPT((byte) -1);
                 fecTransformEngine.setOutgoingPT((byte) -1);
             }
+
+            FlexFecTransformEngine flexFecTransformEngine
+                = getFlexFecTransformEngine();
+            if (flexFecTransformEngine != null)
+            {
+                flexFecTransformEngine.setIncomingPT((byte) -1);
+                flexFecTransformEngine.setOutgoingPT((byte) -1);
+            }
         }
 
         this.onDynamicPayloadTypesChanged();
@@ -671,6 +704,10 @@ private void enableRTPExtension(byte extensionID, RTPExtension rtpExtension)
                 absSendTimeEngine.setExtensionID(effectiveId);
             }
         }
+        else if (RTPExtension.TRANSPORT_CC_URN.equals(uri))
+        {
+            setTransportCCExtensionID(effectiveId);
+        }
         else if (RTPExtension.FRAME_MARKING_URN.equals(uri))
         {
             frameMarkingsExtensionId = effectiveId;
@@ -719,6 +756,8 @@ public void close()
             retransmissionRequester.close();
         }
 
+        setTransportCCExtensionID(-1);
+
         if (transformEngineChain != null)
         {
             PacketTransformer t = transformEngineChain.getRTPTransformer();
@@ -818,6 +857,10 @@ protected void configureDataOutputStream(
             RTPConnectorOutputStream dataOutputStream)
     {
         dataOutputStream.setPriority(getPriority());
+        dataOutputStream.setDefaultPacingPriority(
+                MediaType.AUDIO.equals(getMediaType())
+                    ? RTPConnectorOutputStream.PacingPriority.AUDIO
+                    : RTPConnectorOutputStream.PacingPriority.VIDEO);
     }
 
     /**
@@ -977,6 +1020,76 @@ protected AbsSendTimeEngine createAbsSendTimeEngine()
         return new AbsSendTimeEngine();
     }
 
+    /**
+     * Notifies this instance that the {@link TransportCCEngine} which it uses
+     * has changed.
+     *
+     * @param oldValue the <tt>TransportCCEngine</tt> used by this instance
+     * before the change, or <tt>null</tt>.
+     * @param newValue the <tt>TransportCCEngine</tt> used by this instance
+     * after the change, or <tt>null</tt>.
+     */
+    protected void transportCCEngineChanged(
+            TransportCCEngine oldValue,
+            TransportCCEngine newValue)
+    {
+    }
+
+    /**
+     * Gets the {@link TransportCCEngine} of this {@code MediaStream}.
+     * @return the {@link TransportCCEngine} of this {@code MediaStream}, or
+     * <tt>null</tt> if the transport-cc RTP header extension is not enabled.
+     */
+    public TransportCCEngine getTransportCCEngine()
+    {
+        return transportCCEngineWrapper.getWrapped();
+    }
+
+    /**
+     * Sets the ID of the transport-cc RTP header extension. Acquires the
+     * {@link TransportCCEngine} of the {@link StreamConnector} of this
+     * {@code MediaStream} when the extension is enabled and releases it when
+     * the extension is disabled (or the {@code StreamConnector} changes), so
+     * that the transport-wide sequence numbers are shared by all streams of a
+     * transport and transports which do not use transport-cc do not keep the
+     * history and the periodic feedback task of the engine.
+     *
+     * @param id the ID of the extension, or -1 to disable it.
+     */
+    private void setTransportCCExtensionID(int id)
+    {
+        AbstractRTPConnector rtpConnector = this.rtpConnector;
+        StreamConnector connector
+            = (id == -1 || rtpConnector == null)
+                ? null
+                : rtpConnector.getConnector();
+        TransportCCEngine oldValue, newValue;
+
+        synchronized (transportCCEngineWrapper)
+        {
+            oldValue = transportCCEngineWrapper.getWrapped();
+            if (oldValue != null && oldValue.getConnector() == connector)
+            {
+                newValue = oldValue;
+            }
+            else
+            {
+                newValue
+                    = (connector == null)
+                        ? null
+                        : TransportCCEngine.acquire(connector, this);
+                transportCCEngineWrapper.setWrapped(newValue);
+                if (oldValue != null)
+                    oldValue.release(this);
+            }
+            if (newValue != null)
+                newValue.setExtensionID(id);
+        }
+
+        if (oldValue != newValue)
+            transportCCEngineChanged(oldValue, newValue);
+    }
+
     /**
      * Creates the {@link CachingTransformer} for this {@code MediaStream}.
      * @return the created {@link CachingTransformer}.
@@ -1101,6 +1214,17 @@ private TransformEngineChain createTransformEngineChain()
             engineChain.add(absSendTimeEngine);
         }
 
+        // The TransportCCEngine is acquired and released as the transport-cc
+        // RTP header extension is enabled and disabled.
+        engineChain.add(transportCCEngineWrapper);
+
+        // FlexFEC protects the packets exactly as they are sent (i.e. with
+        // their header extensions) and recovers them right after decryption.
+        FlexFecTransformEngine flexFecTransformEngine
+            = getFlexFecTransformEngine();
+        if (flexFecTransformEngine != null)
+            engineChain.add(flexFecTransformEngine);
+
         // Debug
         debugTransformEngine
             = DebugTransformEngine.createDebugTransformEngine(this);
@@ -1524,6 +1648,17 @@ protected FECTransformEngine getFecTransformEngine()
         return null;
     }
 
+    /**
+     * Gets the <tt>FlexFecTransformEngine</tt> of this <tt>MediaStream</tt>.
+     * By default none is created, allows extenders to implement it.
+     * @return the <tt>FlexFecTransformEngine</tt> of this
+     * <tt>MediaStream</tt> or <tt>null</tt>.
+     */
+    public FlexFecTransformEngine getFlexFecTransformEngine()
+    {
+        return null;
+    }
+
     /**
      * Gets the <tt>MediaFormat</tt> that this stream is currently transmitting
      * in.
@@ -3575,9 +3710,41 @@ public void setExternalTransformer(TransformEngine transformEngine)
      * {@inheritDoc}
      */
     @Override
-    @SuppressWarnings("unchecked")
     public void injectPacket(RawPacket pkt, boolean data, TransformEngine after)
         throws TransmissionFailedException
+    {
+        injectPacket(pkt, data, after, /* priority */ null);
+    }
+
+    /**
+     * Sends a given RTP or RTCP packet to the remote peer/side with a specific
+     * {@link RTPConnectorOutputStream.PacingPriority}, which determines the
+     * order in which it leaves relative to the other packets queued for
+     * sending.
+     *
+     * @param pkt the packet to send.
+     * @param data {@code true} to send an RTP packet or {@code false} to send
+     * an RTCP packet.
+     * @param after the {@code TransformEngine} in the {@code TransformEngine}
+     * chain of this {@code MediaStream} after which the injection is to begin.
+     * If the specified {@code after} is not in the {@code TransformEngine}
+     * chain of this {@code MediaStream}, {@code pkt} will be injected at the
+     * beginning of the {@code TransformEngine} chain of this
+     * {@code MediaStream}. Generally, the value of {@code after} should be
+     * {@code null} unless the injection is being performed by a
+     * {@code TransformEngine} itself (while executing {@code transform} or
+     * {@code reverseTransform} of a {@code PacketTransformer} of its own even).
+     * @param priority the {@code PacingPriority} of {@code pkt} or
+     * {@code null} to use the default one of the output stream.
+     * @throws TransmissionFailedException if the transmission failed.
+     */
+    @SuppressWarnings("unchecked")
+    public void injectPacket(
+            RawPacket pkt,
+            boolean data,
+            TransformEngine after,
+            RTPConnectorOutputStream.PacingPriority priority)
+        throws TransmissionFailedException
     {
         try
         {
@@ -3612,13 +3779,21 @@ public void injectPacket(RawPacket pkt, boolean data, TransformEngine after)
                 {
                     after = wrapper;
                 }
+                else
+                {
+                    // transportCCEngineWrapper
+                    wrapper = transportCCEngineWrapper;
+                    if (wrapper.contains(after))
+                        after = wrapper;
+                }
             }
 
             outputStream.write(
                     pkt.getBuffer(),
                     pkt.getOffset(),
                     pkt.getLength(),
-                    /* context */ after);
+                    /* context */ after,
+                    priority);
         }
         catch (IllegalStateException | IOException | NullPointerException e)
         {
@@ -1503,6 +1503,30 @@ public void nackReceived(NACKPacket nack)
         }
     }
 
+    /**
+     * Notifies this instance that an RTCP transport-cc packet was received.
+     * Only the listeners which implement {@link TransportCCPacketListener} are
+     * notified.
+     * @param tcc the packet.
+     */
+    public void tccReceived(RTCPTCCPacket tcc)
+    {
+        if (tcc != null)
+        {
+            synchronized (rtcpPacketListeners)
+            {
+                for (RTCPPacketListener listener : rtcpPacketListeners)
+                {
+                    if (listener instanceof TransportCCPacketListener)
+                    {
+                        ((TransportCCPacketListener) listener)
+                            .tccReceived(tcc);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Notifies this instance that an RTCP SR packet was received.
      * @param sr the packet.
@@ -181,6 +181,11 @@
             Constants.ULPFEC,
             MediaType.VIDEO,
             Constants.ULPFEC);
+        addMediaFormats(
+            MediaFormat.RTP_PAYLOAD_TYPE_UNKNOWN,
+            Constants.FLEXFEC,
+            MediaType.VIDEO,
+            Constants.FLEXFEC);
 
         ConfigurationService cfg = LibJitsi.getConfigurationService();
 
@@ -18,7 +18,6 @@
 import java.io.*;
 import java.net.*;
 import java.util.*;
-import java.util.concurrent.*;
 
 import javax.media.*;
 import javax.media.protocol.*;
@@ -104,11 +103,6 @@ public static void setThreadPriority(Thread thread, int priority)
         }
     }
 
-    /**
-     * Packet receive buffer
-     */
-    private final byte[] buffer = new byte[PACKET_RECEIVE_BUFFER_LENGTH];
-
     /**
      * Whether this stream is closed. Used to control the termination of worker
      * thread.
@@ -163,11 +157,13 @@ public static void setThreadPriority(Thread thread, int priority)
     private final PushBufferStream pushBufferStream;
 
     /**
-     * The pool of <tt>RawPacket</tt> instances to reduce their allocations and
-     * garbage collection.
+     * The pooled <tt>RawPacket</tt> into the buffer of which the
+     * <tt>DatagramPacket</tt> currently being handed to
+     * {@link #createRawPacket(DatagramPacket)} was received. Allows the packet
+     * data to be made available without copying it. Accessed by the receive
+     * thread only.
      */
-    private final Queue<RawPacket> rawPacketPool
-            = new LinkedBlockingQueue<>(RTPConnectorOutputStream.POOL_CAPACITY);
+    private RawPacket receivedPkt;
 
     /**
      * The background/daemon <tt>Thread</tt> which invokes
@@ -398,26 +394,27 @@ else if (socket instanceof Socket)
     protected RawPacket[] createRawPacket(DatagramPacket datagramPacket)
     {
         RawPacket[] pkts = new RawPacket[1];
-
-        RawPacket pkt = rawPacketPool.poll();
-        if (pkt == null)
-            pkt = new RawPacket();
-
-        byte[] buffer = pkt.getBuffer();
+        RawPacket pkt = receivedPkt;
         int length = datagramPacket.getLength();
-        if (buffer == null || buffer.length < length)
+
+        if (pkt != null && pkt.getBuffer() == datagramPacket.getData())
         {
-            buffer = new byte[length];
-            pkt.setBuffer(buffer);
+            // The packet data was received straight into the buffer of a
+            // pooled RawPacket so there is no need to copy it.
+            receivedPkt = null;
+            pkt.setOffset(datagramPacket.getOffset());
         }
+        else
+        {
+            byte[] buffer = ByteArrayPool.getBuffer(length);
 
-        System.arraycopy(
-                datagramPacket.getData(), datagramPacket.getOffset(),
-                buffer, 0,
-                length);
+            System.arraycopy(
+                    datagramPacket.getData(), datagramPacket.getOffset(),
+                    buffer, 0,
+                    length);
 
-        pkt.setBuffer(buffer);
-        pkt.setOffset(0);
+            pkt = new RawPacket(buffer, 0, length);
+        }
         pkt.setLength(length);
         pkt.setFlags(0);
 
@@ -550,6 +547,22 @@ protected PacketLoggingService getPacketLoggingService()
         return pktLogging;
     }
 
+    /**
+     * Gets a <tt>RawPacket</tt> with a buffer from {@link ByteArrayPool} large
+     * enough to receive any datagram.
+     *
+     * @return a <tt>RawPacket</tt> with a buffer of at least
+     * {@link #PACKET_RECEIVE_BUFFER_LENGTH} bytes
+     */
+    private RawPacket getReceivePacket()
+    {
+        return
+            new RawPacket(
+                    ByteArrayPool.getBuffer(PACKET_RECEIVE_BUFFER_LENGTH),
+                    0,
+                    0);
+    }
+
     private synchronized void maybeStartReceiveThread()
     {
         if (receiveThread == null)
@@ -584,17 +597,17 @@ public void run()
     }
 
     /**
-     * Pools the specified <tt>RawPacket</tt> in order to avoid future
-     * allocations and to reduce the effects of garbage collection.
+     * Returns the buffer of the specified <tt>RawPacket</tt> to
+     * {@link ByteArrayPool} in order to avoid future allocations and to reduce
+     * the effects of garbage collection.
      *
-     * @param pkt the <tt>RawPacket</tt> to be offered to {@link #rawPacketPool}
+     * @param pkt the <tt>RawPacket</tt> the buffer of which is to be returned
+     * to <tt>ByteArrayPool</tt>
      */
     private void poolRawPacket(RawPacket pkt)
     {
-        pkt.setFlags(0);
-        pkt.setLength(0);
-        pkt.setOffset(0);
-        rawPacketPool.offer(pkt);
+        // The RawPacket itself is not reused, it merely wraps the buffer.
+        ByteArrayPool.returnBuffer(pkt.getBuffer());
     }
 
     /**
@@ -734,48 +747,84 @@ protected abstract void receive(DatagramPacket p)
     /**
      * Listens for incoming datagram packets, stores them for reading by the
      * <tt>read</tt> method and notifies the local <tt>transferHandler</tt>
-     * that there's data to be read.
+     * that there's data to be read. The datagrams are received directly into
+     * the buffers of pooled <tt>RawPacket</tt>s.
      */
     private void runInReceiveThread()
     {
+        RawPacket receivePkt = getReceivePacket();
         DatagramPacket p
-            = new DatagramPacket(buffer, 0, PACKET_RECEIVE_BUFFER_LENGTH);
+            = new DatagramPacket(
+                    receivePkt.getBuffer(),
+                    0,
+                    PACKET_RECEIVE_BUFFER_LENGTH);
 
-        while (!closed)
+        try
         {
-            // http://code.google.com/p/android/issues/detail?id=24765
-            if (OSUtils.IS_ANDROID)
-                p.setLength(PACKET_RECEIVE_BUFFER_LENGTH);
-
-            try
+            while (!closed)
             {
-                receive(p);
-            }
-            catch (IOException e)
-            {
-                ioError = true;
-                break;
-            }
+                if (receivePkt == null)
+                    receivePkt = getReceivePacket();
 
-            numberOfReceivedBytes += (long) p.getLength();
+                // Resetting the length also takes care of
+                // http://code.google.com/p/android/issues/detail?id=24765
+                p.setData(
+                        receivePkt.getBuffer(),
+                        0,
+                        PACKET_RECEIVE_BUFFER_LENGTH);
 
-            try
-            {
-                // Do the DatagramPacketFilters accept the received DatagramPacket?
+                try
+                {
+                    receive(p);
+                }
+                catch (IOException e)
+                {
+                    ioError = true;
+                    break;
+                }
 
-                if (accept(p))
+                numberOfReceivedBytes += (long) p.getLength();
+
+                try
                 {
-                    RawPacket[] pkts = createRawPacket(p);
-                    transferData(pkts);
+                    // Do the DatagramPacketFilters accept the received
+                    // DatagramPacket?
+                    if (accept(p))
+                    {
+                        RawPacket[] pkts;
+
+                        receivedPkt = receivePkt;
+                        try
+                        {
+                            pkts = createRawPacket(p);
+                        }
+                        finally
+                        {
+                            // If createRawPacket took over the pooled
+                            // RawPacket, a new one is to be used next time.
+                            if (receivedPkt == null)
+                                receivePkt = null;
+                            receivedPkt = null;
+                        }
+                        transferData(pkts);
+                    }
+                }
+                catch (Exception e)
+                {
+                    // The receive thread should not die as a result of a
+                    // failure in the packetization (converting to RawPacket[]
+                    // and transforming) or a failure in any of the
+                    // DatagramPacketFilters.
+                    logger.error("Failed to receive a packet: ", e);
                 }
             }
-            catch (Exception e)
-            {
-                // The receive thread should not die as a result of a failure in
-                // the packetization (converting to RawPacket[] and transforming)
-                // or a failure in any of the DatagramPacketFilters.
-                logger.error("Failed to receive a packet: ", e);
-            }
+        }
+        finally
+        {
+            // The buffer which has not received a datagram is no longer
+            // needed.
+            if (receivePkt != null)
+                poolRawPacket(receivePkt);
         }
     }
 
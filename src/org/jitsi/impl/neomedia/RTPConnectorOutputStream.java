@@ -19,7 +19,7 @@
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.*;
+import java.util.concurrent.atomic.*;
 
 import javax.media.rtp.*;
 
@@ -90,6 +90,67 @@
     private static final String USE_SEND_THREAD_PNAME
         = RTPConnectorOutputStream.class.getName() + ".USE_SEND_THREAD";
 
+    /**
+     * The number of threads of the {@link #sendExecutor} shared by all
+     * <tt>RTPConnectorOutputStream</tt>s. If positive (and
+     * {@link #USE_SEND_THREAD} is enabled), the queues of all instances are
+     * serviced by a fixed number of shared threads instead of a dedicated
+     * send thread per instance.
+     */
+    private static final int SEND_EXECUTOR_THREADS;
+
+    /**
+     * The name of the property which controls the value of {@link
+     * #SEND_EXECUTOR_THREADS}.
+     */
+    private static final String SEND_EXECUTOR_THREADS_PNAME
+        = RTPConnectorOutputStream.class.getName() + ".SEND_EXECUTOR_THREADS";
+
+    /**
+     * The maximum number of {@link Queue.Buffer}s which are sent by
+     * {@link #sendExecutor} from one {@link Queue} before it moves on to
+     * other {@link Queue}s (in order to not let a busy instance starve the
+     * rest).
+     */
+    private static final int SEND_EXECUTOR_BATCH_SIZE = 32;
+
+    /**
+     * The executor which services the queues of all
+     * <tt>RTPConnectorOutputStream</tt>s if {@link #SEND_EXECUTOR_THREADS}
+     * is positive; otherwise, <tt>null</tt>.
+     */
+    private static final ScheduledExecutorService sendExecutor;
+
+    /**
+     * The factor by which the target bitrate set through
+     * {@link #setTargetBitrate(long)} is multiplied in order to obtain the
+     * rate at which the pacer drains the queue. Pacing at a rate higher than
+     * the target allows the queue to drain after bursts (e.g. key frames)
+     * while still spreading them over time.
+     */
+    private static final double PACING_FACTOR;
+
+    /**
+     * The name of the property which specifies the value of {@link
+     * #PACING_FACTOR}.
+     */
+    private static final String PACING_FACTOR_PNAME
+        = RTPConnectorOutputStream.class.getName() + ".PACING_FACTOR";
+
+    /**
+     * The maximum number of milliseconds of the pacing rate which the pacer
+     * accumulates while idle, i.e. the size of the burst which it lets
+     * through without delay.
+     */
+    private static final int PACING_MAX_BURST_MS;
+
+    /**
+     * The name of the property which specifies the value of {@link
+     * #PACING_MAX_BURST_MS}.
+     */
+    private static final String PACING_MAX_BURST_MS_PNAME
+        = RTPConnectorOutputStream.class.getName() + ".PACING_MAX_BURST_MS";
+
     /**
      * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
      * integer property which specifies the value of
@@ -123,9 +184,42 @@
 
         POOL_CAPACITY = ConfigUtils.getInt(cfg, POOL_CAPACITY_PNAME, 100);
 
+        SEND_EXECUTOR_THREADS
+            = ConfigUtils.getInt(cfg, SEND_EXECUTOR_THREADS_PNAME, 0);
+        sendExecutor
+            = (USE_SEND_THREAD && SEND_EXECUTOR_THREADS > 0)
+                ? ExecutorUtils.newScheduledThreadPool(
+                        SEND_EXECUTOR_THREADS,
+                        true,
+                        RTPConnectorOutputStream.class.getName()
+                            + ".sendExecutor",
+                        MediaThread.getNetworkPriority())
+                : null;
+
         AVERAGE_BITRATE_WINDOW_MS
             = ConfigUtils.getInt(cfg, AVERAGE_BITRATE_WINDOW_MS_PNAME, 5000);
 
+        double pacingFactor = 2.5;
+        String pacingFactorStr
+            = ConfigUtils.getString(cfg, PACING_FACTOR_PNAME, null);
+
+        if (pacingFactorStr != null)
+        {
+            try
+            {
+                pacingFactor = Double.parseDouble(pacingFactorStr);
+            }
+            catch (NumberFormatException nfe)
+            {
+                logger.warn("Invalid " + PACING_FACTOR_PNAME + ": "
+                                + pacingFactorStr);
+            }
+        }
+        PACING_FACTOR = pacingFactor > 0 ? pacingFactor : 2.5;
+
+        PACING_MAX_BURST_MS
+            = ConfigUtils.getInt(cfg, PACING_MAX_BURST_MS_PNAME, 5);
+
         // Set PACKET_QUEUE_CAPACITY
         int packetQueueCapacity
             = ConfigUtils.getInt(cfg, PACKET_QUEUE_CAPACITY_PNAME, -1);
@@ -147,9 +241,12 @@
         {
             logger.debug("Initialized configuration. "
                          + "Send thread: " + USE_SEND_THREAD
+                         + ". Send executor threads: " + SEND_EXECUTOR_THREADS
                          + ". Pool capacity: " + POOL_CAPACITY
                          + ". Queue capacity: " + PACKET_QUEUE_CAPACITY
-                         + ". Avg bitrate window: " + AVERAGE_BITRATE_WINDOW_MS);
+                         + ". Avg bitrate window: " + AVERAGE_BITRATE_WINDOW_MS
+                         + ". Pacing factor: " + PACING_FACTOR
+                         + ". Pacing max burst: " + PACING_MAX_BURST_MS);
 
         }
     }
@@ -189,6 +286,42 @@ static boolean logPacket(long numOfPacket)
                 || ((numOfPacket % 5000) == 0);
     }
 
+    /**
+     * The priority classes of the packets written into an
+     * <tt>RTPConnectorOutputStream</tt>. When a send thread is used, queued
+     * packets of a class are sent before any queued packets of the classes
+     * declared after it.
+     */
+    public enum PacingPriority
+    {
+        /**
+         * Audio packets. They are not delayed by the pacer.
+         */
+        AUDIO,
+
+        /**
+         * Retransmitted packets (plain or encapsulated in RTX).
+         */
+        RETRANSMISSION,
+
+        /**
+         * Video packets.
+         */
+        VIDEO,
+
+        /**
+         * Padding-only packets, e.g. generated in order to probe for
+         * bandwidth.
+         */
+        PADDING
+    }
+
+    /**
+     * The {@link PacingPriority} of the packets which are written without
+     * an explicit priority.
+     */
+    private PacingPriority defaultPacingPriority = PacingPriority.VIDEO;
+
     /**
      * Whether this <tt>RTPConnectorOutputStream</tt> is enabled or disabled.
      * While the stream is disabled, it suppresses actually sending any packets
@@ -220,13 +353,6 @@ static boolean logPacket(long numOfPacket)
      */
     private PacketLoggingService pktLogging;
 
-    /**
-     * The pool of <tt>RawPacket</tt> instances which reduces the number of
-     * allocations performed by {@link #packetize(byte[], int, int, Object)}.
-     */
-    private final LinkedBlockingQueue<RawPacket> rawPacketPool
-        = new LinkedBlockingQueue<>(POOL_CAPACITY);
-
     /**
      * Stream targets' IP addresses and ports.
      */
@@ -320,34 +446,8 @@ protected RawPacket[] packetize(
             Object context)
     {
         RawPacket[] pkts = new RawPacket[1];
-
-        RawPacket pkt = rawPacketPool.poll();
-        byte[] pktBuffer;
-
-        if (pkt == null)
-        {
-            pktBuffer = new byte[len];
-            pkt = new RawPacket();
-        }
-        else
-        {
-            pktBuffer = pkt.getBuffer();
-        }
-
-        if (pktBuffer.length < len)
-        {
-            /*
-             * XXX It may be argued that if the buffer length is insufficient
-             * once, it will be insufficient more than once. That is why we
-             * recreate it without returning a packet to the pool.
-             */
-            pktBuffer = new byte[len];
-        }
-
-        pkt.setBuffer(pktBuffer);
-        pkt.setFlags(0);
-        pkt.setLength(len);
-        pkt.setOffset(0);
+        byte[] pktBuffer = ByteArrayPool.getBuffer(len);
+        RawPacket pkt = new RawPacket(pktBuffer, 0, len);
 
         System.arraycopy(buf, off, pktBuffer, 0, len);
 
@@ -448,7 +548,7 @@ private boolean send(RawPacket packet)
     {
         if(!isSocketValid())
         {
-            rawPacketPool.offer(packet);
+            ByteArrayPool.returnBuffer(packet.getBuffer());
             return false;
         }
 
@@ -477,13 +577,13 @@ private boolean send(RawPacket packet)
             }
             catch (IOException ioe)
             {
-                rawPacketPool.offer(packet);
+                ByteArrayPool.returnBuffer(packet.getBuffer());
                 logger.error(
                     "Failed to send a packet to target " + target + ":" + ioe);
                 return false;
             }
         }
-        rawPacketPool.offer(packet);
+        ByteArrayPool.returnBuffer(packet.getBuffer());
         return true;
     }
 
@@ -548,6 +648,68 @@ public boolean setMaxPacketsPerMillis(int maxPackets, long perMillis)
         return queue != null;
     }
 
+    /**
+     * Sets the target bitrate of this <tt>OutputDataStream</tt>. Packets are
+     * paced (with the exception of {@link PacingPriority#AUDIO} packets) so
+     * that they leave at a rate of {@link #PACING_FACTOR} times the target,
+     * which spreads bursts such as key frames over time.
+     *
+     * @param targetBitrateBps the target bitrate in bits per second, or a
+     * non-positive value to disable pacing by bitrate.
+     * @return <tt>true</tt> if pacing is supported by this instance (i.e. it
+     * uses a send thread); otherwise, <tt>false</tt>
+     */
+    public boolean setTargetBitrate(long targetBitrateBps)
+    {
+        if (queue != null)
+        {
+            queue.setPacingBitrate(
+                    targetBitrateBps > 0
+                        ? (long) (targetBitrateBps * PACING_FACTOR)
+                        : -1);
+        }
+        else if (targetBitrateBps > 0)
+        {
+            logger.error("Cannot enable pacing: send thread disabled.");
+        }
+
+        return queue != null;
+    }
+
+    /**
+     * Sets the {@link PacingPriority} of the packets which are written into
+     * this instance without an explicit priority.
+     *
+     * @param defaultPacingPriority the default {@code PacingPriority}.
+     */
+    public void setDefaultPacingPriority(PacingPriority defaultPacingPriority)
+    {
+        if (defaultPacingPriority == null)
+            throw new NullPointerException("defaultPacingPriority");
+
+        this.defaultPacingPriority = defaultPacingPriority;
+    }
+
+    /**
+     * @return the average time in milliseconds that the packets sent so far
+     * spent in the queue of this instance, or <tt>0</tt> if this instance
+     * does not use a send thread.
+     */
+    public double getAverageQueueDelayMs()
+    {
+        return queue == null ? 0 : queue.getAverageDelayMs();
+    }
+
+    /**
+     * @return the maximum time in milliseconds that a packet sent so far
+     * spent in the queue of this instance, or <tt>0</tt> if this instance
+     * does not use a send thread.
+     */
+    public long getMaxQueueDelayMs()
+    {
+        return queue == null ? 0 : queue.getMaxDelayMs();
+    }
+
     /**
      * Changes current thread priority.
      * @param priority the new priority.
@@ -635,6 +797,31 @@ private int syncWrite(byte[] buf, int off, int len, Object context)
      * {@code OutputDataStream}
      */
     protected int write(byte[] buf, int off, int len, Object context)
+    {
+        return write(buf, off, len, context, /* priority */ null);
+    }
+
+    /**
+     * Writes a specific packet into this {@code OutputDataStream} with a
+     * specific {@link PacingPriority}.
+     *
+     * @param buf the {@code byte[]} to write into this {@code OutputDataStream}
+     * @param off the offset in {@code buf} at which the {@code byte}s to be
+     * written into this {@code OutputDataStream} start
+     * @param len the number of {@code byte}s in {@code buf} starting at
+     * {@code off} to be written into this {@code OutputDataStream}
+     * @param context the {@code Object} to provide to invoked overridable
+     * methods such as {@link #packetize(byte[],int,int,Object)}
+     * @param priority the {@code PacingPriority} of the packet or
+     * {@code null} to use the default one of this instance.
+     * @return the number of {@code byte}s read from {@code buf} starting at
+     * {@code off} and not exceeding {@code len} and written into this
+     * {@code OutputDataStream}
+     */
+    protected int write(
+            byte[] buf, int off, int len,
+            Object context,
+            PacingPriority priority)
     {
         if (enabled)
         {
@@ -647,7 +834,10 @@ protected int write(byte[] buf, int off, int len, Object context)
 
             if (queue != null)
             {
-                queue.write(buf, off, len, context);
+                queue.write(
+                        buf, off, len,
+                        context,
+                        priority == null ? defaultPacingPriority : priority);
             }
             else
             {
@@ -698,7 +888,7 @@ private boolean write(RawPacket[] pkts)
                 }
                 else
                 {
-                    rawPacketPool.offer(pkt);
+                    ByteArrayPool.returnBuffer(pkt.getBuffer());
                 }
             }
         }
@@ -726,11 +916,17 @@ public long getOutputBitrate(long now)
     private class Queue
     {
         /**
-         * The {@link java.util.Queue} which holds {@link Buffer}s to be
-         * processed by {@link #sendThread}.
+         * The queues (one per {@link PacingPriority}, indexed by ordinal)
+         * which hold {@link Buffer}s to be processed by {@link #sendThread}
+         * or {@link #sendTask}. Also used to synchronize the access to the
+         * state of this instance.
          */
-        final ArrayBlockingQueue<Buffer> queue
-            = new ArrayBlockingQueue<>(PACKET_QUEUE_CAPACITY);
+        final ArrayDeque<Buffer>[] queues;
+
+        /**
+         * The total number of {@link Buffer}s in {@link #queues}.
+         */
+        int size = 0;
 
         /**
          * A pool of {@link
@@ -765,13 +961,84 @@ public long getOutputBitrate(long now)
          */
         long intervalStartTimeNanos = 0;
 
+        /**
+         * The rate in bits per second at which the pacer (i.e. the leaky
+         * bucket) lets packets out, or <tt>-1</tt> if pacing by bitrate is
+         * disabled.
+         */
+        long pacingBitrateBps = -1;
+
+        /**
+         * The number of bytes which the pacer may send without delay. Becomes
+         * negative when a packet larger than the budget is sent, in which
+         * case the following packets wait until the debt is paid back.
+         */
+        double budgetBytes = 0;
+
+        /**
+         * The time stamp in nanoseconds at which {@link #budgetBytes} was
+         * last updated.
+         */
+        long budgetTimeNanos = -1;
+
+        /**
+         * The number of {@link Buffer}s which have been taken out of
+         * {@link #queues} in order to be sent.
+         */
+        long delayCount = 0;
+
+        /**
+         * The sum of the times in nanoseconds which the {@link Buffer}s taken
+         * out of {@link #queues} spent in it.
+         */
+        long delaySumNanos = 0;
+
+        /**
+         * The maximum time in nanoseconds which a {@link Buffer} taken out of
+         * {@link #queues} spent in it.
+         */
+        long maxDelayNanos = 0;
+
         /**
          * The {@link Thread} which is to read {@link Buffer}s from this
          * {@link Queue} and send them to this {@link
-         * RTPConnectorOutputStream}'s targets.
+         * RTPConnectorOutputStream}'s targets. <tt>null</tt> if this
+         * {@link Queue} is serviced by {@link #sendExecutor}.
          */
         final Thread sendThread;
 
+        /**
+         * The task which reads {@link Buffer}s from this {@link Queue} and
+         * sends them to this {@link RTPConnectorOutputStream}'s targets in
+         * {@link #sendExecutor}. <tt>null</tt> if this {@link Queue} has its
+         * own {@link #sendThread}.
+         */
+        final Runnable sendTask;
+
+        /**
+         * Whether {@link #sendTask} has been submitted to
+         * {@link #sendExecutor} and has not completed yet. Guarantees that at
+         * most one thread services this {@link Queue} at a time (and, thus,
+         * that packets are sent in order).
+         */
+        final AtomicBoolean sendTaskScheduled = new AtomicBoolean();
+
+        /**
+         * The {@link #sendTask} which has been scheduled to run after a delay
+         * because the pacing policies delayed the {@link Buffer}s of
+         * {@link #delayedPriority}, or <tt>null</tt>. Allows a {@link Buffer}
+         * of a higher {@link PacingPriority} to be sent without waiting for
+         * the delay. Guarded by {@link #queues}.
+         */
+        ScheduledFuture<?> delayedSendTask = null;
+
+        /**
+         * The ordinal of the {@link PacingPriority} of the {@link Buffer}s
+         * which were last delayed by the pacing policies. Guarded by
+         * {@link #queues}.
+         */
+        int delayedPriority = 0;
+
         /**
          * The instance optionally used to gather and print statistics about
          * this queue.
@@ -779,16 +1046,39 @@ public long getOutputBitrate(long now)
         QueueStatistics queueStats = null;
 
         /**
-         * Initializes a new {@link Queue} instance and starts its send thread.
+         * Initializes a new {@link Queue} instance and starts its send thread
+         * (unless it is to be serviced by {@link #sendExecutor}).
          */
         private Queue()
         {
+            PacingPriority[] priorities = PacingPriority.values();
+
+            queues = createQueues(priorities.length);
+            for (int i = 0; i < queues.length; i++)
+                queues[i] = new ArrayDeque<>();
+
             if (logger.isTraceEnabled())
             {
                 queueStats = new QueueStatistics(
                     getClass().getSimpleName() + "-" + hashCode());
             }
 
+            if (sendExecutor != null)
+            {
+                sendThread = null;
+                sendTask
+                    = new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            runInSendExecutor();
+                        }
+                    };
+                return;
+            }
+
+            sendTask = null;
             sendThread
                 = new Thread()
             {
@@ -809,13 +1099,33 @@ public void run()
         }
 
         /**
-         * Adds the given buffer (and its context) to this queue.
+         * Initializes a new array of {@link ArrayDeque}s of {@link Buffer}s.
+         * Java does not allow the creation of arrays of a generic type.
+         *
+         * @param length the length of the array.
+         * @return the new array (of <tt>null</tt> elements).
+         */
+        @SuppressWarnings("unchecked")
+        private ArrayDeque<Buffer>[] createQueues(int length)
+        {
+            return (ArrayDeque<Buffer>[]) new ArrayDeque<?>[length];
+        }
+
+        /**
+         * Adds the given buffer (and its context) to this queue. If the queue
+         * is full, drops the oldest {@link Buffer} of the lowest
+         * {@link PacingPriority} (which may be the given one).
+         *
          * @param buf
          * @param off
          * @param len
          * @param context
+         * @param priority the {@link PacingPriority} of the buffer.
          */
-        private void write(byte[] buf, int off, int len, Object context)
+        private void write(
+                byte[] buf, int off, int len,
+                Object context,
+                PacingPriority priority)
         {
             if (closed)
                 return;
@@ -824,48 +1134,370 @@ private void write(byte[] buf, int off, int len, Object context)
             System.arraycopy(buf, off, buffer.buf, 0, len);
             buffer.len = len;
             buffer.context = context;
+            buffer.priority = priority;
+            buffer.enqueueTimeNanos = System.nanoTime();
 
-            long now = System.currentTimeMillis();
-            if (queue.size() >= PACKET_QUEUE_CAPACITY)
+            Buffer dropped = null;
+
+            synchronized (queues)
             {
-                // Drop from the head of the queue.
-                Buffer b = queue.poll();
-                if (b != null)
+                if (size >= PACKET_QUEUE_CAPACITY)
                 {
-                    if (queueStats != null)
+                    int lowest = queues.length - 1;
+
+                    while (lowest > 0 && queues[lowest].isEmpty())
+                        lowest--;
+                    if (lowest < priority.ordinal())
                     {
-                        queueStats.remove(now);
+                        dropped = buffer;
                     }
-                    pool.offer(b);
-                    numDroppedPackets++;
-                    if (logDroppedPacket(numDroppedPackets))
+                    else
                     {
-                        logger.warn(
-                                "Packets dropped (hashCode=" + hashCode() + "): "
-                                        + numDroppedPackets);
+                        dropped = queues[lowest].poll();
+                        if (dropped != null)
+                            size--;
                     }
                 }
+                if (dropped != buffer)
+                {
+                    queues[priority.ordinal()].add(buffer);
+                    size++;
+                    queues.notifyAll();
+                }
             }
 
-            if (queue.offer(buffer) && queueStats != null)
+            long now = System.currentTimeMillis();
+
+            if (dropped != null)
+            {
+                if (queueStats != null && dropped != buffer)
+                {
+                    queueStats.remove(now);
+                }
+                returnBuffer(dropped);
+                numDroppedPackets++;
+                if (logDroppedPacket(numDroppedPackets))
+                {
+                    logger.warn(
+                            "Packets dropped (hashCode=" + hashCode() + "): "
+                                    + numDroppedPackets);
+                }
+            }
+            if (dropped != buffer && queueStats != null)
             {
                 queueStats.add(now);
             }
+
+            if (sendTask != null)
+            {
+                if (dropped != buffer)
+                    cancelDelayedSendTask(priority.ordinal());
+                scheduleSendTask(0);
+            }
         }
 
         /**
-         * Reads {@link Buffer}s from {@link #queue}, "packetizes" them through
+         * Takes the next {@link Buffer} to be sent out of {@link #queues},
+         * i.e. the oldest one of the highest {@link PacingPriority}, unless
+         * the pacing policies require that it be delayed.
+         *
+         * @param delayNanos an array of one element in which the time in
+         * nanoseconds to wait before the next attempt is stored if a non-empty
+         * queue is being delayed by the pacing policies.
+         * @return the {@link Buffer} to be sent or <tt>null</tt> if there is
+         * no {@link Buffer} to be sent at this time.
+         */
+        private Buffer poll(long[] delayNanos)
+        {
+            delayNanos[0] = 0;
+
+            synchronized (queues)
+            {
+                if (size == 0)
+                    return null;
+
+                int i = 0;
+
+                while (queues[i].isEmpty())
+                    i++;
+
+                long now = System.nanoTime();
+                long delay = getPacingDelayNanos(i, now);
+
+                if (delay > 0)
+                {
+                    delayNanos[0] = delay;
+                    delayedPriority = i;
+                    return null;
+                }
+
+                Buffer buffer = queues[i].poll();
+
+                size--;
+
+                long delayInQueueNanos = now - buffer.enqueueTimeNanos;
+
+                delayCount++;
+                delaySumNanos += delayInQueueNanos;
+                if (maxDelayNanos < delayInQueueNanos)
+                    maxDelayNanos = delayInQueueNanos;
+
+                // Account for the buffer in the pacing policies.
+                buffersProcessedInCurrentInterval++;
+                if (pacingBitrateBps > 0)
+                    budgetBytes -= buffer.len;
+
+                return buffer;
+            }
+        }
+
+        /**
+         * Determines how long a {@link Buffer} of a specific
+         * {@link PacingPriority} is to wait before it may be sent in
+         * accord with the pacing policies (i.e. the maximum number of packets
+         * per interval and the bitrate of the leaky bucket). Should be called
+         * while holding the lock of {@link #queues}.
+         *
+         * @param priority the ordinal of the {@link PacingPriority}.
+         * @param now the current time in nanoseconds.
+         * @return the time in nanoseconds to wait, or <tt>0</tt> if the
+         * {@link Buffer} may be sent now.
+         */
+        private long getPacingDelayNanos(int priority, long now)
+        {
+            long delay = 0;
+
+            if (perNanos > 0 && maxBuffers > 0)
+            {
+                long elapsedNanos = now - intervalStartTimeNanos;
+
+                if (elapsedNanos >= perNanos)
+                {
+                    intervalStartTimeNanos = now;
+                    buffersProcessedInCurrentInterval = 0;
+                }
+                else if (buffersProcessedInCurrentInterval >= maxBuffers)
+                {
+                    delay = perNanos - elapsedNanos;
+                }
+            }
+
+            long bitrateBps = pacingBitrateBps;
+
+            if (bitrateBps > 0)
+            {
+                // Fill the bucket with what has leaked since the last time
+                // but do not let it accumulate more than a short burst.
+                if (budgetTimeNanos != -1)
+                {
+                    double maxBudgetBytes
+                        = bitrateBps * PACING_MAX_BURST_MS / 8000D;
+
+                    budgetBytes
+                        = Math.min(
+                                maxBudgetBytes,
+                                budgetBytes
+                                    + (now - budgetTimeNanos)
+                                        * bitrateBps / 8E9);
+                }
+                budgetTimeNanos = now;
+
+                // Audio is never delayed by the leaky bucket (but it does
+                // consume from it).
+                if (budgetBytes < 0
+                        && priority != PacingPriority.AUDIO.ordinal())
+                {
+                    delay
+                        = Math.max(
+                                delay,
+                                (long) (-budgetBytes * 8E9 / bitrateBps));
+                }
+            }
+
+            return delay;
+        }
+
+        /**
+         * Submits {@link #sendTask} to {@link #sendExecutor} unless it has
+         * already been submitted and has not completed yet.
+         *
+         * @param delayNanos the time in nanoseconds from now to delay the
+         * execution of <tt>sendTask</tt>
+         */
+        private void scheduleSendTask(long delayNanos)
+        {
+            if (sendTaskScheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    if (delayNanos > 0)
+                    {
+                        // Schedule while holding the lock so that the task
+                        // cannot run (and reschedule itself) before it is
+                        // recorded.
+                        synchronized (queues)
+                        {
+                            delayedSendTask
+                                = sendExecutor.schedule(
+                                        sendTask,
+                                        delayNanos, TimeUnit.NANOSECONDS);
+                        }
+                    }
+                    else
+                    {
+                        sendExecutor.execute(sendTask);
+                    }
+                }
+                catch (RejectedExecutionException ree)
+                {
+                    sendTaskScheduled.set(false);
+                    logger.error("Failed to schedule sending.", ree);
+                }
+            }
+        }
+
+        /**
+         * Cancels {@link #delayedSendTask} if the pacing policies delayed
+         * {@link Buffer}s of a lower {@link PacingPriority} than a specific
+         * one, so that a {@link Buffer} of that priority (e.g. audio, which
+         * the leaky bucket never delays) does not wait for them. The caller
+         * is expected to schedule {@link #sendTask} to run now afterwards.
+         *
+         * @param priority the ordinal of the {@link PacingPriority} of a
+         * {@link Buffer} which has just been added, or <tt>-1</tt> to cancel
+         * any delayed {@link #sendTask}.
+         */
+        private void cancelDelayedSendTask(int priority)
+        {
+            ScheduledFuture<?> delayedSendTask;
+
+            synchronized (queues)
+            {
+                delayedSendTask = this.delayedSendTask;
+                if (delayedSendTask == null || priority >= delayedPriority)
+                    return;
+                this.delayedSendTask = null;
+            }
+
+            // If the task has started already, it will send the new Buffer
+            // (or reschedule itself for it) anyway.
+            if (delayedSendTask.cancel(false))
+                sendTaskScheduled.set(false);
+        }
+
+        /**
+         * Reads {@link Buffer}s from {@link #queues}, "packetizes" them and
+         * sends the resulting packets to this
+         * {@link RTPConnectorOutputStream}'s targets in a thread of
+         * {@link #sendExecutor}. Returns after at most
+         * {@link #SEND_EXECUTOR_BATCH_SIZE} {@link Buffer}s (rescheduling
+         * itself if necessary) in order to allow the other {@link Queue}s
+         * serviced by <tt>sendExecutor</tt> to make progress. If the pacing
+         * policies delay the next {@link Buffer}, rather than blocking the
+         * shared thread, reschedules itself for when it may be sent.
+         */
+        private void runInSendExecutor()
+        {
+            long[] delayNanos = new long[1];
+
+            synchronized (queues)
+            {
+                delayedSendTask = null;
+            }
+
+            try
+            {
+                for (int i = 0; i < SEND_EXECUTOR_BATCH_SIZE && !closed; i++)
+                {
+                    Buffer buffer = poll(delayNanos);
+
+                    if (buffer == null)
+                        break;
+                    if (queueStats != null)
+                        queueStats.remove(System.currentTimeMillis());
+
+                    send(buffer);
+                }
+            }
+            finally
+            {
+                sendTaskScheduled.set(false);
+            }
+
+            if (closed)
+            {
+                clear();
+            }
+            else
+            {
+                boolean empty;
+
+                synchronized (queues)
+                {
+                    empty = (size == 0);
+                }
+                if (!empty)
+                    scheduleSendTask(delayNanos[0]);
+            }
+        }
+
+        /**
+         * "Packetizes" a specific {@link Buffer} through
          * {@link RTPConnectorOutputStream#packetize(byte[], int, int, Object)}
          * and sends the resulting packets to this
          * {@link RTPConnectorOutputStream}'s targets.
          *
-         * If a pacing policy is configured, makes sure that it is respected.
-         * Note that this pacing is done on the basis of the number of
-         * {@link Buffer}s read from the queue, which technically could be
-         * different than the number of {@link RawPacket}s sent. This is done
-         * in order to keep the implementation simpler, and because in the
-         * majority of the cases (and in all current cases where pacing is
-         * enabled) the numbers do match.
+         * @param buffer the {@link Buffer} to send. It is returned to
+         * {@link #pool}.
+         */
+        private void send(Buffer buffer)
+        {
+            RawPacket[] pkts;
+
+            try
+            {
+                pkts = packetize(buffer.buf, 0, buffer.len, buffer.context);
+            }
+            catch (Exception e)
+            {
+                // The sending thread must not die because of a failure in the
+                // conversion to RawPacket[] or any of the transformations
+                // (because of e.g. parsing errors).
+                logger.error("Failed to handle an outgoing packet: ", e);
+                return;
+            }
+            finally
+            {
+                returnBuffer(buffer);
+            }
+
+            try
+            {
+                RTPConnectorOutputStream.this.write(pkts);
+            }
+            catch (Exception e)
+            {
+                logger.error("Failed to send a packet: ", e);
+            }
+        }
+
+        /**
+         * Reads {@link Buffer}s from {@link #queues}, "packetizes" them through
+         * {@link RTPConnectorOutputStream#packetize(byte[], int, int, Object)}
+         * and sends the resulting packets to this
+         * {@link RTPConnectorOutputStream}'s targets.
+         *
+         * If pacing policies are configured, makes sure that they are
+         * respected. The waiting happens before a {@link Buffer} is taken out
+         * of the queue (and "packetized") so that a {@link Buffer} of a higher
+         * {@link PacingPriority} written in the meantime is sent first and the
+         * transformations (e.g. the stamping of transport-wide sequence
+         * numbers) take place close to the time the packet leaves. Note that
+         * pacing is done on the basis of the {@link Buffer}s read from the
+         * queue, which technically could be different than the
+         * {@link RawPacket}s sent. This is done in order to keep the
+         * implementation simpler, and because in the majority of the cases the
+         * numbers and sizes do (nearly) match.
          */
         private void runInSendThread()
         {
@@ -878,29 +1510,38 @@ private void runInSendThread()
                 return;
             }
 
+            long[] delayNanos = new long[1];
+
             try
             {
                 while (!closed)
                 {
                     Buffer buffer;
-                    try
-                    {
-                        buffer = queue.poll(500, TimeUnit.MILLISECONDS);
-                    }
-                    catch (InterruptedException iex)
-                    {
-                        continue;
-                    }
-
-                    // The current thread has potentially waited.
-                    if (closed)
-                    {
-                        break;
-                    }
 
-                    if (buffer == null)
+                    synchronized (queues)
                     {
-                        continue;
+                        buffer = poll(delayNanos);
+                        if (buffer == null)
+                        {
+                            long waitNanos
+                                = delayNanos[0] > 0
+                                    ? delayNanos[0]
+                                    : TimeUnit.MILLISECONDS.toNanos(500);
+
+                            try
+                            {
+                                // A write notifies the queues, so a Buffer
+                                // of a higher priority will be considered as
+                                // soon as it arrives.
+                                queues.wait(
+                                        waitNanos / 1000000,
+                                        (int) (waitNanos % 1000000));
+                            }
+                            catch (InterruptedException iex)
+                            {
+                            }
+                            continue;
+                        }
                     }
 
                     if (queueStats != null)
@@ -908,83 +1549,103 @@ private void runInSendThread()
                         queueStats.remove(System.currentTimeMillis());
                     }
 
-                    RawPacket[] pkts;
-                    try
-                    {
-                        // We will sooner or later process the Buffer. Since this
-
-                        // may take a non-negligible amount of time, do it
-                        // before
-                        // taking pacing into account.
-                        pkts
-                            = packetize(
-                                buffer.buf, 0, buffer.len,
-                                buffer.context);
-                    }
-                    catch (Exception e)
-                    {
-                        // The sending thread must not die because of a failure
-                        // in the conversion to RawPacket[] or any of the
-                        // transformations (because of e.g. parsing errors).
-                        logger.error("Failed to handle an outgoing packet: ", e);
-                        continue;
-                    }
-                    finally
-                    {
-                        pool.offer(buffer);
-                    }
-
-                    if (perNanos > 0 && maxBuffers > 0)
-                    {
-                        long time = System.nanoTime();
-                        long nanosRemainingTime = time - intervalStartTimeNanos;
+                    send(buffer);
+                }
+            }
+            finally
+            {
+                clear();
+            }
+        }
 
-                        if (nanosRemainingTime >= perNanos)
-                        {
-                            intervalStartTimeNanos = time;
-                            buffersProcessedInCurrentInterval = 0;
-                        }
-                        else if (buffersProcessedInCurrentInterval >= maxBuffers)
-                        {
-                            LockSupport.parkNanos(nanosRemainingTime);
-                        }
-                    }
+        /**
+         * Removes all {@link Buffer}s from {@link #queues}.
+         */
+        private void clear()
+        {
+            synchronized (queues)
+            {
+                for (ArrayDeque<Buffer> q : queues)
+                    q.clear();
+                size = 0;
+            }
+        }
 
-                    try
-                    {
-                        RTPConnectorOutputStream.this.write(pkts);
-                    }
-                    catch (Exception e)
-                    {
-                        logger.error("Failed to send a packet: ", e);
-                        continue;
-                    }
+        public void setMaxPacketsPerMillis(int maxPackets, long perMillis)
+        {
+            synchronized (queues)
+            {
+                if (maxPackets < 1)
+                {
+                    // This doesn't make sense. Disable pacing.
+                    this.maxBuffers = -1;
+                    this.perNanos = -1;
+                }
+                else
+                {
+                    if (perMillis < 1)
+                        throw new IllegalArgumentException("perMillis");
 
-                    buffersProcessedInCurrentInterval++;
+                    this.maxBuffers = maxPackets;
+                    this.perNanos = perMillis * 1000000;
+                }
+            }
+        }
 
+        /**
+         * Sets the rate at which the pacer lets packets out.
+         *
+         * @param pacingBitrateBps the rate in bits per second, or a
+         * non-positive value to disable pacing by bitrate.
+         */
+        private void setPacingBitrate(long pacingBitrateBps)
+        {
+            synchronized (queues)
+            {
+                if (pacingBitrateBps > 0)
+                {
+                    this.pacingBitrateBps = pacingBitrateBps;
                 }
+                else
+                {
+                    this.pacingBitrateBps = -1;
+                    budgetBytes = 0;
+                    budgetTimeNanos = -1;
+                }
+                // The wait of the send thread may have been computed with the
+                // previous rate.
+                queues.notifyAll();
             }
-            finally
+            if (sendTask != null)
             {
-                queue.clear();
+                // Likewise, the delay of the send task.
+                cancelDelayedSendTask(-1);
+                scheduleSendTask(0);
             }
         }
 
-        public void setMaxPacketsPerMillis(int maxPackets, long perMillis)
+        /**
+         * @return the average time in milliseconds which the {@link Buffer}s
+         * taken out of this queue spent in it.
+         */
+        private double getAverageDelayMs()
         {
-            if (maxPackets < 1)
+            synchronized (queues)
             {
-                // This doesn't make sense. Disable pacing.
-                this.maxBuffers = -1;
-                this.perNanos = -1;
+                return
+                    delayCount == 0 ? 0 : delaySumNanos / 1E6 / delayCount;
             }
-            else
-            {
-                if (perMillis < 1)
-                    throw new IllegalArgumentException("perMillis");
+        }
 
-                this.maxBuffers = maxPackets;
-                this.perNanos = perMillis * 1000000;
+        /**
+         * @return the maximum time in milliseconds which a {@link Buffer}
+         * taken out of this queue spent in it.
+         */
+        private long getMaxDelayMs()
+        {
+            synchronized (queues)
+            {
+                return TimeUnit.NANOSECONDS.toMillis(maxDelayNanos);
             }
         }
 
@@ -998,16 +1659,38 @@ private Buffer getBuffer(int len)
             if (buffer == null)
                 buffer = new Buffer();
             if (buffer.buf == null || buffer.buf.length < len)
-                buffer.buf = new byte[len];
+            {
+                ByteArrayPool.returnBuffer(buffer.buf);
+                buffer.buf = ByteArrayPool.getBuffer(len);
+            }
 
             return buffer;
         }
 
+        /**
+         * Returns a {@link Buffer} instance to {@link #pool} or, if the pool
+         * is full, its byte array to {@link ByteArrayPool}.
+         *
+         * @param buffer the {@link Buffer} to return.
+         */
+        private void returnBuffer(Buffer buffer)
+        {
+            buffer.context = null;
+            buffer.priority = null;
+            if (!pool.offer(buffer))
+            {
+                ByteArrayPool.returnBuffer(buffer.buf);
+                buffer.buf = null;
+            }
+        }
+
         private class Buffer
         {
             byte[] buf;
             int len;
             Object context;
+            PacingPriority priority;
+            long enqueueTimeNanos;
             private Buffer() {}
         }
     }
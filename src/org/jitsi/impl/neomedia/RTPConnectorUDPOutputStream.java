@@ -30,6 +30,31 @@
 public class RTPConnectorUDPOutputStream
     extends RTPConnectorOutputStream
 {
+    /**
+     * The <tt>byte[]</tt> set as the data of the <tt>DatagramPacket</tt>s of
+     * {@link #threadLocalSendPacket} while they are not in use.
+     */
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+
+    /**
+     * The <tt>DatagramPacket</tt> per thread which is (re)used to send
+     * <tt>RawPacket</tt>s. Reusing it avoids the allocation of one
+     * <tt>DatagramPacket</tt> per packet and target. It is per thread (rather
+     * than per stream and guarded by a lock) so that threads which send
+     * through the same or different streams do not wait for one another. It
+     * points to the buffer of a <tt>RawPacket</tt> only for the duration of
+     * a send and may, consequently, be shared by all streams.
+     */
+    private static final ThreadLocal<DatagramPacket> threadLocalSendPacket
+        = new ThreadLocal<DatagramPacket>()
+        {
+            @Override
+            protected DatagramPacket initialValue()
+            {
+                return new DatagramPacket(EMPTY_BUFFER, 0);
+            }
+        };
+
     /**
      * UDP socket used to send packet data
      */
@@ -61,13 +86,23 @@ public RTPConnectorUDPOutputStream(DatagramSocket socket)
     protected void sendToTarget(RawPacket packet, InetSocketAddress target)
         throws IOException
     {
-        socket.send(
-                new DatagramPacket(
-                        packet.getBuffer(),
-                        packet.getOffset(),
-                        packet.getLength(),
-                        target.getAddress(),
-                        target.getPort()));
+        DatagramPacket sendPacket = threadLocalSendPacket.get();
+
+        sendPacket.setData(
+                packet.getBuffer(),
+                packet.getOffset(),
+                packet.getLength());
+        sendPacket.setSocketAddress(target);
+        try
+        {
+            socket.send(sendPacket);
+        }
+        finally
+        {
+            // Do not retain a reference to the (pooled) buffer of the
+            // RawPacket.
+            sendPacket.setData(EMPTY_BUFFER);
+        }
     }
 
     /**
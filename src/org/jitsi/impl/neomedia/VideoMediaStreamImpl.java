@@ -16,6 +16,7 @@
 package org.jitsi.impl.neomedia;
 
 import java.awt.*;
+import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.List;
@@ -34,6 +35,7 @@
 import org.jitsi.impl.neomedia.rtp.sendsidebandwidthestimation.*;
 import org.jitsi.impl.neomedia.rtp.translator.*;
 import org.jitsi.impl.neomedia.transform.*;
+import org.jitsi.impl.neomedia.transform.fec.*;
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.neomedia.*;
@@ -66,6 +68,14 @@
     private static final Logger logger
         = Logger.getLogger(VideoMediaStreamImpl.class);
 
+    /**
+     * The name of the property which determines whether the packets sent by
+     * a <tt>VideoMediaStreamImpl</tt> are paced at a bitrate derived from
+     * its bandwidth estimation.
+     */
+    public static final String PACE_TO_BANDWIDTH_ESTIMATE_PNAME
+        = VideoMediaStreamImpl.class.getName() + ".PACE_TO_BANDWIDTH_ESTIMATE";
+
     /**
      * The indicator which determines whether RTCP feedback Picture Loss
      * Indication messages are to be used.
@@ -492,6 +502,20 @@ public void onReceiveBitrateChanged(
      */
     private CachingTransformer cachingTransformer;
 
+    /**
+     * The {@link FlexFecTransformEngine} which protects the outgoing packets
+     * of this {@link VideoMediaStreamImpl} and recovers the lost incoming
+     * ones. Created with the transform engine chain of every video stream; it
+     * passes packets through until a FlexFEC payload type is set.
+     */
+    private FlexFecTransformEngine flexFecTransformEngine;
+
+    /**
+     * The <tt>Object</tt> which synchronizes the creation of
+     * {@link #flexFecTransformEngine}.
+     */
+    private final Object flexFecTransformEngineSyncRoot = new Object();
+
     /**
      * Initializes a new <tt>VideoMediaStreamImpl</tt> instance which will use
      * the specified <tt>MediaDevice</tt> for both capture and playback of video
@@ -1316,6 +1340,20 @@ protected RetransmissionRequesterImpl createRetransmissionRequester()
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FlexFecTransformEngine getFlexFecTransformEngine()
+    {
+        synchronized (flexFecTransformEngineSyncRoot)
+        {
+            if (flexFecTransformEngine == null)
+                flexFecTransformEngine = new FlexFecTransformEngine(this);
+            return flexFecTransformEngine;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1333,6 +1371,56 @@ protected PaddingTermination getPaddingTermination()
         return paddingTermination;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Moves the <tt>BandwidthEstimator</tt> of this instance (if any) to
+     * receive the packet feedback of the new engine.
+     */
+    @Override
+    protected void transportCCEngineChanged(
+            TransportCCEngine oldValue,
+            TransportCCEngine newValue)
+    {
+        super.transportCCEngineChanged(oldValue, newValue);
+
+        if (bandwidthEstimator != null)
+        {
+            if (oldValue != null)
+                oldValue.removePacketFeedbackListener(bandwidthEstimator);
+            if (newValue != null)
+                newValue.addPacketFeedbackListener(bandwidthEstimator);
+        }
+    }
+
+    /**
+     * Sets the target bitrate of the pacer of the data output stream of this
+     * instance.
+     *
+     * @param targetBitrateBps the target bitrate in bits per second.
+     */
+    private void setPacingTargetBitrate(long targetBitrateBps)
+    {
+        AbstractRTPConnector rtpConnector = getRTPConnector();
+
+        if (rtpConnector != null)
+        {
+            RTPConnectorOutputStream dataOutputStream;
+
+            try
+            {
+                dataOutputStream = rtpConnector.getDataOutputStream(false);
+            }
+            catch (IOException ioe)
+            {
+                logger.error("Failed to get the data output stream.", ioe);
+                return;
+            }
+            if (dataOutputStream != null)
+                dataOutputStream.setTargetBitrate(targetBitrateBps);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1342,6 +1430,28 @@ public BandwidthEstimator getOrCreateBandwidthEstimator()
         if (bandwidthEstimator == null)
         {
             bandwidthEstimator = new BandwidthEstimatorImpl(this);
+
+            TransportCCEngine transportCCEngine = getTransportCCEngine();
+            if (transportCCEngine != null)
+            {
+                transportCCEngine.addPacketFeedbackListener(bandwidthEstimator);
+            }
+
+            ConfigurationService cfg = LibJitsi.getConfigurationService();
+            if (cfg != null
+                    && cfg.getBoolean(PACE_TO_BANDWIDTH_ESTIMATE_PNAME, false))
+            {
+                bandwidthEstimator.addListener(
+                        new BandwidthEstimator.Listener()
+                        {
+                            @Override
+                            public void bandwidthEstimationChanged(
+                                    long newValueBps)
+                            {
+                                setPacingTargetBitrate(newValueBps);
+                            }
+                        });
+            }
             logger.info("Creating a BandwidthEstimator for stream " + this);
         }
         return bandwidthEstimator;
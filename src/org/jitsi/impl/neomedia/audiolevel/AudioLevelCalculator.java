@@ -15,7 +15,7 @@
  */
 package org.jitsi.impl.neomedia.audiolevel;
 
-import org.jitsi.util.*;
+import org.jitsi.impl.neomedia.kernels.*;
 
 /**
  * Implements the calculation of audio level as defined by RFC 6465 &quot;A
@@ -49,20 +49,23 @@ public static byte calculateAudioLevel(
             byte[] samples,
             int offset,
             int length)
-    { 
-        double rms = 0; // root mean square (RMS) amplitude
+    {
+        int sampleCount = length / 2;
+        double rms; // root mean square (RMS) amplitude
 
-        for (; offset < length; offset += 2)
+        if (sampleCount == 0)
         {
-            double sample = ArrayIOUtils.readShort(samples, offset);
-
-            sample /= Short.MAX_VALUE;
-            rms += sample * sample;
+            rms = 0;
         }
+        else
+        {
+            long sumOfSquares
+                = AudioKernels.sumOfSquares(samples, offset, length);
 
-        int sampleCount = length / 2;
-
-        rms = (sampleCount == 0) ? 0 : Math.sqrt(rms / sampleCount);
+            rms
+                = Math.sqrt(sumOfSquares / (double) sampleCount)
+                    / Short.MAX_VALUE;
+        }
 
         double db;
 
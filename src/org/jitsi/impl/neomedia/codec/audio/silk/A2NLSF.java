@@ -143,26 +143,24 @@ else if( QPoly == 16 )
      * @param NLSF Normalized Line Spectral Frequencies, Q15 (0 - (2^15-1)), [d]
      * @param a_Q16 Monic whitening filter coefficients in Q16 [d]
      * @param d Filter order (must be even)
+     * @param scratch scratch memory
      */
     static void SKP_Silk_A2NLSF(
         int[]        NLSF,                 /* O    Normalized Line Spectral Frequencies, Q15 (0 - (2^15-1)), [d]    */
         int[]        a_Q16,                /* I/O  Monic whitening filter coefficients in Q16 [d]                   */
-        final int    d                     /* I    Filter order (must be even)                                      */
+        final int    d,                    /* I    Filter order (must be even)                                      */
+        SKP_Silk_LPC_scratch_struct scratch /* -    scratch memory                                                  */
     )
     {
         int      i, k, m, dd, root_ix, ffrac;
         int xlo, xhi, xmid;
         int ylo, yhi, ymid;
         int nom, den;
-        int[] P = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC / 2 + 1 ];
-        int[] Q = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC / 2 + 1 ];
-        int[][] PQ = new int[ 2 ][   ];
+        int[] P = scratch.P;
+        int[] Q = scratch.Q;
+        int[][] PQ = scratch.PQ;
         int[] p;
 
-        /* Store pointers to array */
-        PQ[ 0 ] = P;
-        PQ[ 1 ] = Q;
-
         dd =  d >> 1;
 
         SKP_Silk_A2NLSF_init( a_Q16, P, Q, dd );
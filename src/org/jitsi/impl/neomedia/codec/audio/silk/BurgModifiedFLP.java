@@ -15,6 +15,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  * Calculates the reflection coefficients from the input vector
  * Input vector contains nb_subfr sub vectors of length L_sub + D
@@ -35,6 +37,11 @@
      * @param nb_subfr number of subframes stacked in x.
      * @param WhiteNoiseFrac fraction added to zero-lag autocorrelation.
      * @param D order.
+     * @param C_first_row scratch memory [SKP_Silk_MAX_ORDER_LPC].
+     * @param C_last_row scratch memory [SKP_Silk_MAX_ORDER_LPC].
+     * @param CAf scratch memory [SKP_Silk_MAX_ORDER_LPC + 1].
+     * @param CAb scratch memory [SKP_Silk_MAX_ORDER_LPC + 1].
+     * @param Af scratch memory [SKP_Silk_MAX_ORDER_LPC].
      * @return
      */
     static float SKP_Silk_burg_modified_FLP(     /* O    returns residual energy                                         */
@@ -44,22 +51,25 @@ static float SKP_Silk_burg_modified_FLP(     /* O    returns residual energy
             final int   subfr_length,       /* I    input signal subframe length (including D preceeding samples)   */
             final int   nb_subfr,           /* I    number of subframes stacked in x                                */
             final float WhiteNoiseFrac,     /* I    fraction added to zero-lag autocorrelation                      */
-            final int   D                   /* I    order                                                           */
+            final int   D,                  /* I    order                                                           */
+            double      C_first_row[],      /* -    scratch memory                                                  */
+            double      C_last_row[],       /* -    scratch memory                                                  */
+            double      CAf[],              /* -    scratch memory                                                  */
+            double      CAb[],              /* -    scratch memory                                                  */
+            double      Af[]                /* -    scratch memory                                                  */
     )
     {
         int         k, n, s;
         double          C0, num, nrg_f, nrg_b, rc, Atmp, tmp1, tmp2;
         float []x_ptr;
         int x_ptr_offset;
-        double          C_first_row[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ],
-                        C_last_row[]  = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
-        double          CAf[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ],
-                        CAb[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
-        double          Af[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
 
         assert( subfr_length * nb_subfr <= MAX_FRAME_SIZE );
         assert( nb_subfr <= MAX_NB_SUBFR );
 
+        /* The autocorrelations are accumulated into C_first_row */
+        Arrays.fill( C_first_row, 0, SigProcFIX.SKP_Silk_MAX_ORDER_LPC, 0.0 );
+
         /* Compute autocorrelations, added over subframes */
         C0 = EnergyFLP.SKP_Silk_energy_FLP( x, x_offset, nb_subfr * subfr_length );
         for( s = 0; s < nb_subfr; s++ ) {
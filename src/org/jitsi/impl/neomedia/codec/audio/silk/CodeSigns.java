@@ -25,6 +25,22 @@
  */
 public class CodeSigns
 {
+    /**
+     * The CDFs of the signs, one per entry of
+     * <tt>TablesSign.SKP_Silk_sign_CDF</tt>, built once so that coding the
+     * signs of a frame does not allocate.
+     */
+    private static final int[][] SIGN_CDFS;
+
+    static
+    {
+        SIGN_CDFS = new int[ TablesSign.SKP_Silk_sign_CDF.length ][];
+        for( int i = 0; i < SIGN_CDFS.length; i++ )
+        {
+            SIGN_CDFS[ i ] = new int[] { 0, TablesSign.SKP_Silk_sign_CDF[ i ], 65535 };
+        }
+    }
+
     /* shifting avoids if-statement */
 //    #define SKP_enc_map(a)                  ( SKP_RSHIFT( (a), 15 ) + 1 )
     static int SKP_enc_map(int a)
@@ -58,12 +74,10 @@ static void SKP_Silk_encode_signs(
     {
         int i;
         int inData;
-        int[] cdf = new int[3];
+        int[] cdf;
 
         i = SKP_SMULBB( N_RATE_LEVELS - 1, ( sigtype << 1 ) + QuantOffsetType ) + RateLevelIndex;
-        cdf[ 0 ] = 0;
-        cdf[ 1 ] = TablesSign.SKP_Silk_sign_CDF[ i ];
-        cdf[ 2 ] = 65535;
+        cdf = SIGN_CDFS[ i ];
 
         for( i = 0; i < length; i++ )
         {
@@ -95,19 +109,19 @@ static void SKP_Silk_decode_signs(
         )
     {
         int i;
-        int data;
-        int data_ptr[] = new int[1];
-        int[] cdf = new int[3];
+        int data, abs_q;
+        int[] cdf;
 
         i = SKP_SMULBB( N_RATE_LEVELS - 1, ( sigtype << 1 ) + QuantOffsetType ) + RateLevelIndex;
-        cdf[ 0 ] = 0;
-        cdf[ 1 ] = TablesSign.SKP_Silk_sign_CDF[ i ];
-        cdf[ 2 ] = 65535;
+        cdf = SIGN_CDFS[ i ];
 
         for( i = 0; i < length; i++ ) {
             if( q[ i ] > 0 ) {
-                RangeCoder.SKP_Silk_range_decoder( data_ptr, 0, sRC, cdf, 0, 1 );
-                data = data_ptr[0];
+                /* Decode the sign in place of the magnitude, then restore it */
+                abs_q = q[ i ];
+                RangeCoder.SKP_Silk_range_decoder( q, i, sRC, cdf, 0, 1 );
+                data = q[ i ];
+                q[ i ] = abs_q;
                 /* attach sign */
                 /* implementation with shift, subtraction, multiplication */
 //                q[ i ] *= SKP_dec_map( data );
@@ -99,7 +99,7 @@ static int SKP_Silk_SDK_Decode(
         prev_fs_kHz = psDec.fs_kHz;
 
         /* Call decoder for one frame */
-        int[] used_bytes_ptr =new int[1];
+        int[] used_bytes_ptr = psDec.used_bytes_ptr;
         ret += DecodeFrame.SKP_Silk_decode_frame( psDec, samplesOut, samplesOut_offset, nSamplesOut, inData, inData_offset,
                 nBytesIn, lostFlag, used_bytes_ptr );
         used_bytes = used_bytes_ptr[0];
@@ -140,7 +140,7 @@ static int SKP_Silk_SDK_Decode(
 
         /* Resample if needed */
         if( psDec.fs_kHz * 1000 != decControl.API_sampleRate ) {
-            short[] samplesOut_tmp = new short[MAX_API_FS_KHZ * FRAME_LENGTH_MS];
+            short[] samplesOut_tmp = psDec.samplesOut_tmp;
             SKP_assert( psDec.fs_kHz <= MAX_API_FS_KHZ );
 
             /* Copy to a tmp buffer as the resampling writes to samplesOut */
@@ -189,9 +189,41 @@ static void SKP_Silk_SDK_search_for_LBRR(
             short[]                         nLBRRBytes     /* O:   Number of LBRR Bytes                            */
     )
     {
-        SKP_Silk_decoder_state   sDec = new SKP_Silk_decoder_state(); // Local decoder state to avoid interfering with running decoder */
-        SKP_Silk_decoder_control sDecCtrl = new SKP_Silk_decoder_control();
-        int[] TempQ = new int[ MAX_FRAME_LENGTH ];
+        SKP_Silk_SDK_search_for_LBRR(
+                inData, inData_offset, nBytesIn,
+                lost_offset,
+                LBRRData, LBRRData_offset, nLBRRBytes,
+                new SKP_Silk_decoder_state());
+    }
+
+    /**
+     * Find LBRR information in a packet using a specific decoder state as
+     * work memory. The state is reset as needed and is not otherwise
+     * interpreted so it may be reused across calls in order to not allocate.
+     *
+     * @param inData encoded input vector.
+     * @param inData_offset offset of the valid data.
+     * @param nBytesIn number of input bytes.
+     * @param lost_offset offset from lost packet.
+     * @param LBRRData LBRR payload.
+     * @param LBRRData_offset offset of the valid data.
+     * @param nLBRRBytes number of LBRR bytes.
+     * @param sDec the decoder state to use as work memory. It must not be the
+     * state of a running decoder.
+     */
+    static void SKP_Silk_SDK_search_for_LBRR(
+            byte[]                          inData,        /* I:   Encoded input vector                            */
+            int                             inData_offset,
+            final short                     nBytesIn,       /* I:   Number of input Bytes                           */
+            int                             lost_offset,    /* I:   Offset from lost packet                         */
+            byte[]                          LBRRData,      /* O:   LBRR payload                                    */
+            int                                LBRRData_offset,
+            short[]                         nLBRRBytes,    /* O:   Number of LBRR Bytes                            */
+            SKP_Silk_decoder_state          sDec           /* -    Local decoder state to avoid interfering with running decoder */
+    )
+    {
+        SKP_Silk_decoder_control sDecCtrl = sDec.sDecCtrl;
+        int[] TempQ = sDec.Pulses;
 
         if( lost_offset < 1 || lost_offset > MAX_LBRR_DELAY ) {
             /* No useful FEC in this packet */
@@ -205,6 +237,8 @@ static void SKP_Silk_SDK_search_for_LBRR(
 
         for(int i=0; i<MAX_LPC_ORDER; i++)
             sDec.prevNLSF_Q15[i] = 0;
+        sDec.lossCnt        = 0;
+        sDecCtrl.memZero();
 
         RangeCoder.SKP_Silk_range_dec_init( sDec.sRC, inData, inData_offset, nBytesIn );
 
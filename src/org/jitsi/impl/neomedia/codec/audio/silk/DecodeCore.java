@@ -53,9 +53,9 @@ static void SKP_Silk_decode_core(
 
         short[] pxq;
         int     pxq_offset;
-        short[] A_Q12_tmp = new short[MAX_LPC_ORDER];
+        short[] A_Q12_tmp = psDec.A_Q12_tmp;
 
-        short[]   sLTP = new short[ MAX_FRAME_LENGTH ];
+        short[]   sLTP = psDec.sLTP;
 
         int   Gain_Q16;
         int[] pred_lag_ptr;
@@ -68,9 +68,9 @@ static void SKP_Silk_decode_core(
         int   LPC_pred_Q10;
 
         int   rand_seed, offset_Q10, dither;
-        int[]   vec_Q10 = new int[ MAX_FRAME_LENGTH / NB_SUBFR ];
+        int[]   vec_Q10 = psDec.vec_Q10;
         int   inv_gain_Q16, inv_gain_Q32, gain_adj_Q16;
-        int[] FiltState = new int[ MAX_LPC_ORDER ];
+        int[] FiltState = psDec.FiltState;
         int j;
 
         SKP_assert( psDec.prev_inv_gain_Q16 != 0 );
@@ -52,13 +52,13 @@ static int SKP_Silk_decode_frame(
         int[]                         decBytes           /* O    Used bytes to decode this frame             */
     )
     {
-        SKP_Silk_decoder_control sDecCtrl = new SKP_Silk_decoder_control();
+        SKP_Silk_decoder_control sDecCtrl = psDec.sDecCtrl;
         int         L, fs_Khz_old, LPC_order_old, ret = 0;
-        int[]         Pulses = new int[ MAX_FRAME_LENGTH ];
+        int[]         Pulses = psDec.Pulses;
 
 
         L = psDec.frame_length;
-        sDecCtrl.LTP_scale_Q14 = 0;
+        sDecCtrl.memZero();
 
         /* Safety checks */
         SKP_assert( L > 0 && L <= MAX_FRAME_LENGTH );
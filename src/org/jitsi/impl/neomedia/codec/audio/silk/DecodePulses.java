@@ -30,33 +30,34 @@
 {
     /**
      * Decode quantization indices of excitation.
-     * @param psRC Range coder state.
+     * @param psDec Decoder state.
      * @param psDecCtrl Decoder control.
      * @param q Excitation signal.
      * @param frame_length Frame length (preliminary).
      */
     static void SKP_Silk_decode_pulses(
-            SKP_Silk_range_coder_state      psRC,              /* I/O  Range coder state                           */
+            SKP_Silk_decoder_state          psDec,             /* I/O  Decoder state                               */
             SKP_Silk_decoder_control        psDecCtrl,         /* I/O  Decoder control                             */
             int                             q[],               /* O    Excitation signal                           */
             final int                       frame_length       /* I    Frame length (preliminary)                  */
     )
     {
         int   i, j, k, iter, abs_q, nLS, bit;
-        int[]   sum_pulses = new int[ MAX_NB_SHELL_BLOCKS ];
-        int[]   nLshifts = new int[ MAX_NB_SHELL_BLOCKS ];
+        int[]   sum_pulses = psDec.sum_pulses;
+        int[]   nLshifts = psDec.nLshifts;
         int[]   pulses_ptr;
         int     pulses_ptr_offset;
         int[]   cdf_ptr;
+        int[]   bit_ptr = psDec.Ix_ptr;
+
+        SKP_Silk_range_coder_state psRC = psDec.sRC;
 
         /*********************/
         /* Decode rate level */
         /*********************/
-        int RateLevelIndex_ptr[] = new int[1];
-        RateLevelIndex_ptr[0] = psDecCtrl.RateLevelIndex;
-        RangeCoder.SKP_Silk_range_decoder( RateLevelIndex_ptr, 0, psRC,
+        RangeCoder.SKP_Silk_range_decoder( bit_ptr, 0, psRC,
                 TablesPulsesPerBlock.SKP_Silk_rate_levels_CDF[ psDecCtrl.sigtype ], 0, TablesPulsesPerBlock.SKP_Silk_rate_levels_CDF_offset );
-        psDecCtrl.RateLevelIndex = RateLevelIndex_ptr[0];
+        psDecCtrl.RateLevelIndex = bit_ptr[0];
 
         /* Calculate number of shell blocks */
         iter = frame_length / SHELL_CODEC_FRAME_LENGTH;
@@ -83,7 +84,8 @@ static void SKP_Silk_decode_pulses(
         /***************************************************/
         for( i = 0; i < iter; i++ ) {
             if( sum_pulses[ i ] > 0 ) {
-                ShellCoder.SKP_Silk_shell_decoder( q, SKP_SMULBB( i, SHELL_CODEC_FRAME_LENGTH ), psRC, sum_pulses[ i ] );
+                ShellCoder.SKP_Silk_shell_decoder( q, SKP_SMULBB( i, SHELL_CODEC_FRAME_LENGTH ), psRC, sum_pulses[ i ],
+                        psDec.pulses1, psDec.pulses2, psDec.pulses3 );
             } else {
                 Arrays.fill(q, (SKP_SMULBB(i, SHELL_CODEC_FRAME_LENGTH)),
                         ((SKP_SMULBB(i, SHELL_CODEC_FRAME_LENGTH)) + SHELL_CODEC_FRAME_LENGTH), 0);
@@ -103,7 +105,6 @@ static void SKP_Silk_decode_pulses(
                     abs_q = pulses_ptr[pulses_ptr_offset + k];
                     for( j = 0; j < nLS; j++ ) {
                         abs_q = abs_q << 1;
-                        int bit_ptr[] = new int[1];
                         RangeCoder.SKP_Silk_range_decoder( bit_ptr, 0, psRC, TablesOther.SKP_Silk_lsb_CDF, 0, 1 );
                         bit = bit_ptr[0];
                         abs_q += bit;
@@ -52,23 +52,24 @@ static int SKP_Silk_encode_frame_FLP(
               int                       pIn_offset
     )
     {
-        SKP_Silk_encoder_control_FLP sEncCtrl = new SKP_Silk_encoder_control_FLP();
-        int     k, nBytes[] = new int[1], ret = 0;
+        SKP_Silk_encoder_control_FLP sEncCtrl = psEnc.sEncCtrl;
+        int     k, nBytes, ret = 0;
         float[]   x_frame, res_pitch_frame;
         int x_frame_offset, res_pitch_frame_offset;
-        short[]   pIn_HP = new short[    MAX_FRAME_LENGTH ];
-        short[]   pIn_HP_LP = new short[ MAX_FRAME_LENGTH ];
-        float[]   xfw = new float[       MAX_FRAME_LENGTH ];
-        float[]   res_pitch = new float[ 2 * MAX_FRAME_LENGTH + LA_PITCH_MAX ];
+        short[]   pIn_HP = psEnc.pIn_HP;
+        short[]   pIn_HP_LP = psEnc.pIn_HP_LP;
+        float[]   xfw = psEnc.xfw;
+        float[]   res_pitch = psEnc.res_pitch;
         int     LBRR_idx, frame_terminator;
 
         /* Low bitrate redundancy parameters */
-        byte[] LBRRpayload = new byte[MAX_ARITHM_BYTES];
-        short[]   nBytesLBRR = new short[1];
+        byte[] LBRRpayload = psEnc.LBRRpayload;
+        short[]   nBytesLBRR = psEnc.nBytesLBRR;
 
         int[] FrameTermination_CDF;
 
 
+        sEncCtrl.memZero();
         sEncCtrl.sCmn.Seed = psEnc.sCmn.frameCounter++ & 3;
         /**************************************************************/
         /* Setup Input Pointers, and insert frame in input buffer    */
@@ -506,21 +507,21 @@ static int SKP_Silk_encode_frame_FLP(
             RangeCoder.SKP_Silk_range_encoder( psEnc.sCmn.sRC, frame_terminator, FrameTermination_CDF,0 );
 
             /* Payload length so far */
-            RangeCoder.SKP_Silk_range_coder_get_length( psEnc.sCmn.sRC, nBytes );
+            nBytes = ( RangeCoder.SKP_Silk_range_coder_get_length( psEnc.sCmn.sRC ) + 7 ) >> 3;
 
             /* Check that there is enough space in external output buffer, and move data */
-            if( pnBytesOut[0] >= nBytes[0] ) {
+            if( pnBytesOut[0] >= nBytes ) {
                 RangeCoder.SKP_Silk_range_enc_wrap_up( psEnc.sCmn.sRC );
-                System.arraycopy(psEnc.sCmn.sRC.buffer, 0, pCode, pCode_offset, nBytes[0]);
+                System.arraycopy(psEnc.sCmn.sRC.buffer, 0, pCode, pCode_offset, nBytes);
 
                 if( frame_terminator > SKP_SILK_MORE_FRAMES &&
-                        pnBytesOut[0] >= nBytes[0] + psEnc.sCmn.LBRR_buffer[ LBRR_idx ].nBytes ) {
+                        pnBytesOut[0] >= nBytes + psEnc.sCmn.LBRR_buffer[ LBRR_idx ].nBytes ) {
                     /* Get old packet and add to payload. */
                     System.arraycopy(psEnc.sCmn.LBRR_buffer[ LBRR_idx ].payload, 0,
-                            pCode, pCode_offset+nBytes[0], psEnc.sCmn.LBRR_buffer[ LBRR_idx ].nBytes);
-                    nBytes[0] += psEnc.sCmn.LBRR_buffer[ LBRR_idx ].nBytes;
+                            pCode, pCode_offset+nBytes, psEnc.sCmn.LBRR_buffer[ LBRR_idx ].nBytes);
+                    nBytes += psEnc.sCmn.LBRR_buffer[ LBRR_idx ].nBytes;
                 }
-                pnBytesOut[0] = (short) nBytes[0];
+                pnBytesOut[0] = (short) nBytes;
 
                 /* Update FEC buffer */
                 System.arraycopy(LBRRpayload, 0,
@@ -535,7 +536,7 @@ static int SKP_Silk_encode_frame_FLP(
             } else {
                 /* Not enough space: Payload will be discarded */
                 pnBytesOut[0] = 0;
-                nBytes[0]      = 0;
+                nBytes      = 0;
                 psEnc.sCmn.nFramesInPayloadBuf = 0;
                 ret = Errors.SKP_SILK_ENC_PAYLOAD_BUF_TOO_SHORT;
             }
@@ -548,7 +549,7 @@ static int SKP_Silk_encode_frame_FLP(
             RangeCoder.SKP_Silk_range_encoder( psEnc.sCmn.sRC, frame_terminator, FrameTermination_CDF, 0);
 
             /* Payload length so far */
-            RangeCoder.SKP_Silk_range_coder_get_length( psEnc.sCmn.sRC, nBytes );
+            nBytes = ( RangeCoder.SKP_Silk_range_coder_get_length( psEnc.sCmn.sRC ) + 7 ) >> 3;
         }
 
         /* Check for arithmetic coder errors */
@@ -557,10 +558,10 @@ static int SKP_Silk_encode_frame_FLP(
         }
 
         /* simulate number of ms buffered in channel because of exceeding TargetRate */
-        psEnc.BufferedInChannel_ms   += ( 8.0f * 1000.0f * ( nBytes[0] - psEnc.sCmn.nBytesInPayloadBuf ) ) / psEnc.sCmn.TargetRate_bps;
+        psEnc.BufferedInChannel_ms   += ( 8.0f * 1000.0f * ( nBytes - psEnc.sCmn.nBytesInPayloadBuf ) ) / psEnc.sCmn.TargetRate_bps;
         psEnc.BufferedInChannel_ms   -= FRAME_LENGTH_MS;
         psEnc.BufferedInChannel_ms    = SigProcFLP.SKP_LIMIT_float( psEnc.BufferedInChannel_ms, 0.0f, 100.0f );
-        psEnc.sCmn.nBytesInPayloadBuf = nBytes[0];
+        psEnc.sCmn.nBytesInPayloadBuf = nBytes;
 
         if( psEnc.speech_activity > DefineFLP.WB_DETECT_ACTIVE_SPEECH_LEVEL_THRES ) {
             psEnc.sCmn.sSWBdetect.ActiveSpeech_ms = SigProcFIX.SKP_ADD_POS_SAT32( psEnc.sCmn.sSWBdetect.ActiveSpeech_ms, FRAME_LENGTH_MS );
@@ -585,10 +586,10 @@ static void SKP_Silk_LBRR_encode_FLP(
               float                     xfw[]               /* I    Input signal                            */
     )
     {
-        int[]   Gains_Q16 = new int[ NB_SUBFR ];
-        int     k, TempGainsIndices[] = new int[ NB_SUBFR ], frame_terminator;
-        int     nBytes[] = new int[1], nFramesInPayloadBuf;
-        float   TempGains[] = new float[ NB_SUBFR ];
+        int[]   Gains_Q16 = psEnc.LBRR_Gains_Q16;
+        int     k, TempGainsIndices[] = psEnc.TempGainsIndices, frame_terminator;
+        int     nBytes, nFramesInPayloadBuf;
+        float   TempGains[] = psEnc.TempGains;
         int     typeOffset, LTP_scaleIndex, Rate_only_parameters = 0;
         /* Control use of inband LBRR */
         ControlCodecFLP.SKP_Silk_LBRR_ctrl_FLP( psEnc, psEncCtrl.sCmn );
@@ -617,8 +618,7 @@ static void SKP_Silk_LBRR_encode_FLP(
             if( psEnc.sCmn.Complexity > 0 && psEnc.sCmn.TargetRate_bps > Rate_only_parameters ) {
                 if( psEnc.sCmn.nFramesInPayloadBuf == 0 ) {
                     /* First frame in packet copy everything */
-//TODO:use clone rather than memory copy.
-                    psEnc.sNSQ_LBRR = (SKP_Silk_nsq_state) psEnc.sNSQ.clone();
+                    psEnc.sNSQ_LBRR.copyFrom( psEnc.sNSQ );
 
                     psEnc.sCmn.LBRRprevLastGainIndex = psEnc.sShape.LastGainIndex;
                     /* Increase Gains to get target LBRR rate */
@@ -626,7 +626,7 @@ static void SKP_Silk_LBRR_encode_FLP(
                     psEncCtrl.sCmn.GainsIndices[ 0 ]  = SigProcFIX.SKP_LIMIT( psEncCtrl.sCmn.GainsIndices[ 0 ], 0, N_LEVELS_QGAIN - 1 );
                 }
                 /* Decode to get Gains in sync with decoder */
-                int LBRRprevLastGainIndex_ptr[] = new int[1];
+                int LBRRprevLastGainIndex_ptr[] = psEnc.LBRRprevLastGainIndex_ptr;
                 LBRRprevLastGainIndex_ptr[0] = psEnc.sCmn.LBRRprevLastGainIndex;
                 GainQuant.SKP_Silk_gains_dequant( Gains_Q16, psEncCtrl.sCmn.GainsIndices,
                     LBRRprevLastGainIndex_ptr, psEnc.sCmn.nFramesInPayloadBuf );
@@ -679,14 +679,14 @@ static void SKP_Silk_LBRR_encode_FLP(
                 RangeCoder.SKP_Silk_range_encoder( psEnc.sCmn.sRC_LBRR, frame_terminator, TablesOther.SKP_Silk_FrameTermination_CDF, 0 );
 
                 /* Payload length so far */
-                RangeCoder.SKP_Silk_range_coder_get_length( psEnc.sCmn.sRC_LBRR, nBytes );
+                nBytes = ( RangeCoder.SKP_Silk_range_coder_get_length( psEnc.sCmn.sRC_LBRR ) + 7 ) >> 3;
 
                 /* Check that there is enough space in external output buffer and move data */
-                if( pnBytesOut[0] >= nBytes[0] ) {
+                if( pnBytesOut[0] >= nBytes ) {
                     RangeCoder.SKP_Silk_range_enc_wrap_up( psEnc.sCmn.sRC_LBRR );
-                    System.arraycopy(psEnc.sCmn.sRC_LBRR.buffer, 0, pCode, 0, nBytes[0]);
+                    System.arraycopy(psEnc.sCmn.sRC_LBRR.buffer, 0, pCode, 0, nBytes);
 
-                    pnBytesOut[0] = (short) nBytes[0];
+                    pnBytesOut[0] = (short) nBytes;
                 } else {
                     /* Not enough space: Payload will be discarded */
                     pnBytesOut[0] = 0;
@@ -153,7 +153,7 @@ static void SKP_Silk_encode_parameters(
         /*********************************************/
         /* Encode quantization indices of excitation */
         /*********************************************/
-        EncodePulses.SKP_Silk_encode_pulses( psRC, psEncCtrlC.sigtype, psEncCtrlC.QuantOffsetType, q, psEncC.frame_length );
+        EncodePulses.SKP_Silk_encode_pulses( psEncC, psRC, psEncCtrlC.sigtype, psEncCtrlC.QuantOffsetType, q, psEncC.frame_length );
 
 
         /*********************************************/
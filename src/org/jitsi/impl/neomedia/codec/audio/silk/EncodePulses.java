@@ -55,6 +55,7 @@ static int combine_and_check(       /* return ok */
 
     /**
      * Encode quantization indices of excitation.
+     * @param psEncC Encoder state
      * @param psRC Range coder state
      * @param sigtype Sigtype
      * @param QuantOffsetType QuantOffsetType
@@ -62,6 +63,7 @@ static int combine_and_check(       /* return ok */
      * @param frame_length Frame length
      */
     static void SKP_Silk_encode_pulses(
+            SKP_Silk_encoder_state      psEncC,         /* I/O  Encoder state                   */
             SKP_Silk_range_coder_state  psRC,           /* I/O  Range coder state               */
             final int                   sigtype,        /* I    Sigtype                         */
             final int                   QuantOffsetType,/* I    QuantOffsetType                 */
@@ -71,10 +73,10 @@ static void SKP_Silk_encode_pulses(
     {
         int   i, k, j, iter, bit, nLS, scale_down, RateLevelIndex = 0;
         int abs_q, minSumBits_Q6, sumBits_Q6;
-        int[]   abs_pulses = new int[ MAX_FRAME_LENGTH ];
-        int[]   sum_pulses = new int[ MAX_NB_SHELL_BLOCKS ];
-        int[]   nRshifts   = new int[ MAX_NB_SHELL_BLOCKS ];
-        int[]   pulses_comb = new int[ 8 ];
+        int[]   abs_pulses = psEncC.abs_pulses;
+        int[]   sum_pulses = psEncC.sum_pulses;
+        int[]   nRshifts   = psEncC.nRshifts;
+        int[]   pulses_comb = psEncC.pulses_comb;
         int   []abs_pulses_ptr;
         int abs_pulses_ptr_offset;
         byte []pulses_ptr;
@@ -182,7 +184,8 @@ static void SKP_Silk_encode_pulses(
         /******************/
         for( i = 0; i < iter; i++ ) {
             if( sum_pulses[ i ] > 0 ) {
-                ShellCoder.SKP_Silk_shell_encoder( psRC, abs_pulses, i * SHELL_CODEC_FRAME_LENGTH);
+                ShellCoder.SKP_Silk_shell_encoder( psRC, abs_pulses, i * SHELL_CODEC_FRAME_LENGTH,
+                        psEncC.pulses1, psEncC.pulses2, psEncC.pulses3, psEncC.pulses4 );
             }
         }
 
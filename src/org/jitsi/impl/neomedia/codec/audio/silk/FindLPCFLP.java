@@ -25,6 +25,7 @@
 {
     /**
      *
+     * @param psEnc Encoder state FLP.
      * @param NLSF NLSFs.
      * @param interpIndex NLSF interp. index for NLSF interp.
      * @param prev_NLSFq Previous NLSFs, for NLSF interpolation.
@@ -34,6 +35,7 @@
      * @param subfr_length Subframe length incl preceeding samples.
      */
     static void SKP_Silk_find_LPC_FLP(
+              SKP_Silk_encoder_state_FLP psEnc, /* I/O  Encoder state FLP                     */
               float                 NLSF[],             /* O    NLSFs                                   */
               int                   []interpIndex,      /* O    NLSF interp. index for NLSF interp.     */
         final float                 prev_NLSFq[],       /* I    Previous NLSFs, for NLSF interpolation  */
@@ -44,38 +46,40 @@ static void SKP_Silk_find_LPC_FLP(
     )
     {
         int     k;
-        float[]   a = new float[ MAX_LPC_ORDER ];
+        float[]   a = psEnc.LPC_a;
 
         /* Used only for NLSF interpolation */
         double      res_nrg, res_nrg_2nd, res_nrg_interp;
-        float   a_tmp[] = new float[ MAX_LPC_ORDER ], NLSF0[] = new float[ MAX_LPC_ORDER ];
-        float   LPC_res[] = new float[ ( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2 ];
+        float   a_tmp[] = psEnc.LPC_a_tmp, NLSF0[] = psEnc.LPC_NLSF0;
+        float   LPC_res[] = psEnc.LPC_res;
 
         /* Default: No interpolation */
         interpIndex[0] = 4;
 
         /* Burg AR analysis for the full frame */
         res_nrg = BurgModifiedFLP.SKP_Silk_burg_modified_FLP( a, x, 0, subfr_length, NB_SUBFR,
-                DefineFLP.FIND_LPC_COND_FAC, LPC_order );
+                DefineFLP.FIND_LPC_COND_FAC, LPC_order,
+                psEnc.C_first_row, psEnc.C_last_row, psEnc.CAf, psEnc.CAb, psEnc.Af );
 
         if( useInterpNLSFs == 1 ) {
 
             /* Optimal solution for last 10 ms; subtract residual energy here, as that's easier than        */
             /* adding it to the residual energy of the first 10 ms in each iteration of the search below    */
             res_nrg -= BurgModifiedFLP.SKP_Silk_burg_modified_FLP( a_tmp, x, ( NB_SUBFR / 2 ) * subfr_length,
-                subfr_length, NB_SUBFR / 2, DefineFLP.FIND_LPC_COND_FAC, LPC_order );
+                subfr_length, NB_SUBFR / 2, DefineFLP.FIND_LPC_COND_FAC, LPC_order,
+                psEnc.C_first_row, psEnc.C_last_row, psEnc.CAf, psEnc.CAb, psEnc.Af );
 
             /* Convert to NLSFs */
-            WrappersFLP.SKP_Silk_A2NLSF_FLP( NLSF, a_tmp, LPC_order );
+            WrappersFLP.SKP_Silk_A2NLSF_FLP( psEnc, NLSF, a_tmp, LPC_order );
 
             /* Search over interpolation indices to find the one with lowest residual energy */
             res_nrg_2nd = Float.MAX_VALUE;
             for( k = 3; k >= 0; k-- ) {
                 /* Interpolate NLSFs for first half */
-                WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( NLSF0, prev_NLSFq, NLSF, 0.25f * k, LPC_order );
+                WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( psEnc, NLSF0, prev_NLSFq, NLSF, 0.25f * k, LPC_order );
 
                 /* Convert to LPC for residual energy evaluation */
-                WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( a_tmp, NLSF0, LPC_order );
+                WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEnc, a_tmp, NLSF0, LPC_order );
 
                 /* Calculate residual energy with LSF interpolation */
                 LPCAnalysisFilterFLP.SKP_Silk_LPC_analysis_filter_FLP( LPC_res, a_tmp, x, 0, 2 * subfr_length, LPC_order );
@@ -98,7 +102,7 @@ static void SKP_Silk_find_LPC_FLP(
 
         if( interpIndex[0] == 4 ) {
             /* NLSF interpolation is currently inactive, calculate NLSFs from full frame AR coefficients */
-            WrappersFLP.SKP_Silk_A2NLSF_FLP( NLSF, a, LPC_order );
+            WrappersFLP.SKP_Silk_A2NLSF_FLP( psEnc, NLSF, a, LPC_order );
         }
     }
 }
@@ -26,6 +26,7 @@
 {
     /**
      *
+     * @param psEnc Encoder state FLP.
      * @param b LTP coefs.
      * @param WLTP Weight for LTP quantization.
      * @param LTPredCodGain LTP coding gain.
@@ -38,6 +39,7 @@
      * @param mem_offset Number of samples in LTP memory.
      */
     static void SKP_Silk_find_LTP_FLP(
+        SKP_Silk_encoder_state_FLP psEnc, /* I/O  Encoder state FLP                     */
         float b[],                      /* O    LTP coefs                               */
         float WLTP[],                   /* O    Weight for LTP quantization             */
         float LTPredCodGain[],          /* O    LTP coding gain                         */
@@ -53,9 +55,9 @@ static void SKP_Silk_find_LTP_FLP(
         int i,k;
         float b_ptr[], temp, WLTP_ptr[];
         float LPC_res_nrg, LPC_LTP_res_nrg;
-        float d[] = new float[NB_SUBFR], m, g, delta_b[]=new float[LTP_ORDER];
-        float w[] = new float[NB_SUBFR], nrg[] = new float[NB_SUBFR], regu;
-        float Rr[] = new float[LTP_ORDER], rr[] = new float[NB_SUBFR];
+        float d[] = psEnc.LTP_d, m, g, delta_b[] = psEnc.LTP_delta_b;
+        float w[] = psEnc.LTP_w, nrg[] = psEnc.LTP_nrg, regu;
+        float Rr[] = psEnc.LTP_Rr, rr[] = psEnc.LTP_rr;
         float r_ptr[], lag_ptr[];
         int r_ptr_offset, lag_ptr_offset;
 
@@ -83,7 +85,8 @@ static void SKP_Silk_find_LTP_FLP(
             regu = DefineFLP.LTP_DAMPING * ( rr[ k ] + 1.0f );
 
             RegularizeCorrelationsFLP.SKP_Silk_regularize_correlations_FLP(WLTP_ptr, WLTP_ptr_offset, rr, k, regu, LTP_ORDER);
-            SolveLSFLP.SKP_Silk_solve_LDL_FLP( WLTP_ptr, WLTP_ptr_offset, LTP_ORDER, Rr, b_ptr, b_ptr_offset );
+            SolveLSFLP.SKP_Silk_solve_LDL_FLP( WLTP_ptr, WLTP_ptr_offset, LTP_ORDER, Rr, b_ptr, b_ptr_offset,
+                psEnc.LDL_L_tmp, psEnc.LDL_T, psEnc.LDL_Dinv, psEnc.LDL_v, psEnc.LDL_D );
 
             /* Calculate residual energy */
             nrg[ k ] = ResidualEnergyFLP.SKP_Silk_residual_energy_covar_FLP( b_ptr, b_ptr_offset,
@@ -44,10 +44,10 @@ static void SKP_Silk_find_pitch_lags_FLP(
 //            const SKP_float *x_buf_ptr, *x_buf;
             float[] x_buf_ptr, x_buf;
             int x_buf_ptr_offset, x_buf_offset;
-            float[] auto_corr = new float[ FIND_PITCH_LPC_ORDER_MAX + 1 ];
-            float[] A = new float[         FIND_PITCH_LPC_ORDER_MAX ];
-            float[] refl_coef = new float[ FIND_PITCH_LPC_ORDER_MAX ];
-            float[] Wsig = new float[      FIND_PITCH_LPC_WIN_MAX ];
+            float[] auto_corr = psEnc.pitch_auto_corr;
+            float[] A = psEnc.pitch_A;
+            float[] refl_coef = psEnc.refl_coef;
+            float[] Wsig = psEnc.Wsig;
             float thrhld;
             float[] Wsig_ptr;
             int Wsig_ptr_offset;
@@ -98,10 +98,10 @@ static void SKP_Silk_find_pitch_lags_FLP(
             auto_corr[ 0 ] += auto_corr[ 0 ] * DefineFLP.FIND_PITCH_WHITE_NOISE_FRACTION;
 
             /* Calculate the reflection coefficients using Schur */
-            SchurFLP.SKP_Silk_schur_FLP( refl_coef,0, auto_corr,0, psEnc.sCmn.pitchEstimationLPCOrder );
+            SchurFLP.SKP_Silk_schur_FLP( refl_coef,0, auto_corr,0, psEnc.sCmn.pitchEstimationLPCOrder, psEnc.schur_C );
 
             /* Convert reflection coefficients to prediction coefficients */
-            K2aFLP.SKP_Silk_k2a_FLP( A, refl_coef, psEnc.sCmn.pitchEstimationLPCOrder );
+            K2aFLP.SKP_Silk_k2a_FLP( A, refl_coef, psEnc.sCmn.pitchEstimationLPCOrder, psEnc.k2a_Atmp );
 
             /* Bandwidth expansion */
             BwexpanderFLP.SKP_Silk_bwexpander_FLP( A,0, psEnc.sCmn.pitchEstimationLPCOrder, DefineFLP.FIND_PITCH_BANDWITH_EXPANSION );
@@ -124,12 +124,15 @@ static void SKP_Silk_find_pitch_lags_FLP(
             /*****************************************/
             /* Call Pitch estimator */
             /*****************************************/
-            int[] lagIndex_djinnaddress = {psEncCtrl.sCmn.lagIndex};
-            int[] contourIndex_djinnaddress = {psEncCtrl.sCmn.contourIndex};
-            float[] LTPCorr_djinnaddress = {psEnc.LTPCorr};
+            int[] lagIndex_djinnaddress = psEnc.lagIndex_ptr;
+            int[] contourIndex_djinnaddress = psEnc.contourIndex_ptr;
+            float[] LTPCorr_djinnaddress = psEnc.LTPCorr_ptr;
+            lagIndex_djinnaddress[0] = psEncCtrl.sCmn.lagIndex;
+            contourIndex_djinnaddress[0] = psEncCtrl.sCmn.contourIndex;
+            LTPCorr_djinnaddress[0] = psEnc.LTPCorr;
             psEncCtrl.sCmn.sigtype = PitchAnalysisCoreFLP.SKP_Silk_pitch_analysis_core_FLP( res, psEncCtrl.sCmn.pitchL, lagIndex_djinnaddress,
                     contourIndex_djinnaddress, LTPCorr_djinnaddress, psEnc.sCmn.prevLag, psEnc.pitchEstimationThreshold,
-                thrhld, psEnc.sCmn.fs_kHz, psEnc.sCmn.pitchEstimationComplexity );
+                thrhld, psEnc.sCmn.fs_kHz, psEnc.sCmn.pitchEstimationComplexity, psEnc.sPitchScratch );
             psEncCtrl.sCmn.lagIndex = lagIndex_djinnaddress[0];
             psEncCtrl.sCmn.contourIndex = contourIndex_djinnaddress[0];
             psEnc.LTPCorr = LTPCorr_djinnaddress[0];
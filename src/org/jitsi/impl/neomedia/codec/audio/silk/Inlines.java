@@ -68,17 +68,18 @@ static void SKP_Silk_CLZ_FRAC(int in,            /* I: input */
      */
     static int SKP_Silk_SQRT_APPROX(int x)
     {
-        int y;
-        int[] lz = new int[1], frac_Q7 = new int[1];
+        int y, lz, frac_Q7;
 
         if( x <= 0 )
         {
             return 0;
         }
 
-        SKP_Silk_CLZ_FRAC(x, lz, frac_Q7);
+        /* SKP_Silk_CLZ_FRAC without the out-parameters */
+        lz = Integer.numberOfLeadingZeros(x);
+        frac_Q7 = SigProcFIX.SKP_ROR32(x, 24 - lz) & 0x7f;
 
-        if( (lz[0] & 1) != 0 )
+        if( (lz & 1) != 0 )
         {
             y = 32768;
         }
@@ -88,10 +89,10 @@ static int SKP_Silk_SQRT_APPROX(int x)
         }
 
         /* get scaling right */
-        y >>= (lz[0]>>1);
+        y >>= (lz>>1);
 
         /* increment using fractional part of input */
-        y = SKP_SMLAWB(y, y, SKP_SMULBB(213, frac_Q7[0]));
+        y = SKP_SMLAWB(y, y, SKP_SMULBB(213, frac_Q7));
 
         return y;
     }
@@ -128,6 +128,12 @@ public Component getControlComponent()
      */
     private byte[] lbrrData = new byte[JavaEncoder.MAX_BYTES_PER_FRAME];
 
+    /**
+     * The SILK decoder state used as work memory when searching for FEC.
+     * Defined here to avoid using <tt>new</tt> in <tt>doProcess</tt>.
+     */
+    private SKP_Silk_decoder_state lbrrDecState;
+
     /**
      * The <tt>Logger</tt> used by this <tt>JavaDecoder</tt> instance
      * for logging output.
@@ -194,6 +200,7 @@ protected void doClose()
 
         decState = null;
         decControl = null;
+        lbrrDecState = null;
     }
 
     @Override
@@ -201,6 +208,7 @@ protected void doOpen()
         throws ResourceUnavailableException
     {
         decState = new SKP_Silk_decoder_state();
+        lbrrDecState = new SKP_Silk_decoder_state();
         if (DecAPI.SKP_Silk_SDK_InitDecoder(decState) != 0)
         {
             throw new ResourceUnavailableException(
@@ -267,7 +275,8 @@ protected int doProcess(Buffer inBuf, Buffer outBuf)
             DecAPI.SKP_Silk_SDK_search_for_LBRR(
                     in, inOffset, (short) inLength,
                     /* lost_offset */ lostSeqNoCount,
-                    lbrrData, 0, lbrrBytes);
+                    lbrrData, 0, lbrrBytes,
+                    lbrrDecState);
             if (logger.isTraceEnabled())
             {
                 logger.trace(
@@ -30,15 +30,16 @@
      * @param A prediction coefficients [order].
      * @param rc reflection coefficients [order].
      * @param order prediction order.
+     * @param Atmp scratch memory [SKP_Silk_MAX_ORDER_LPC].
      */
     static void SKP_Silk_k2a_FLP(
         float[]       A,                 /* O:   prediction coefficients [order]             */
         float[] rc,                /* I:   reflection coefficients [order]             */
-        int       order               /* I:   prediction order                            */
+        int       order,              /* I:   prediction order                            */
+        float[]   Atmp                /* -    scratch memory                              */
     )
     {
         int   k, n;
-        float[] Atmp = new float[SigProcFIX.SKP_Silk_MAX_ORDER_LPC];
 
         for( k = 0; k < order; k++ )
         {
@@ -36,18 +36,20 @@
      * @param invGain_Q30 Inverse prediction gain, Q30 energy domain
      * @param A_Q12 Prediction coefficients, Q12 [order]
      * @param order  Prediction order
+     * @param scratch scratch memory
      * @return Returns 1 if unstable, otherwise 0
      */
     static int SKP_Silk_LPC_inverse_pred_gain
     (       /* O:   Returns 1 if unstable, otherwise 0          */
             int       []invGain_Q30,           /* O:   Inverse prediction gain, Q30 energy domain  */
             short     []A_Q12,                 /* I:   Prediction coefficients, Q12 [order]        */
-            final int order                   /* I:   Prediction order                            */
+            final int order,                  /* I:   Prediction order                            */
+            SKP_Silk_LPC_scratch_struct scratch /* -    scratch memory                             */
     )
     {
         int   k, n, headrm;
         int rc_Q31, rc_mult1_Q30, rc_mult2_Q16;
-        int[][] Atmp_QA = new int[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+        int[][] Atmp_QA = scratch.Atmp_QA;
         int tmp_QA;
         int []Aold_QA, Anew_QA;
 
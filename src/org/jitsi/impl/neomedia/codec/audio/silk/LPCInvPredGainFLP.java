@@ -34,18 +34,19 @@
      * @param A prediction coefficients [order]
      * @param A_offset offset of valid data.
      * @param order prediction order
+     * @param Atmp scratch memory [2][SKP_Silk_MAX_ORDER_LPC]
      * @return returns 1 if unstable, otherwise 0
      */
     static int SKP_Silk_LPC_inverse_pred_gain_FLP(   /* O:   returns 1 if unstable, otherwise 0      */
         float[]       invGain,               /* O:   inverse prediction gain, energy domain  */
         float[]       A,                     /* I:   prediction coefficients [order]         */
         int A_offset,
-        int           order                  /* I:   prediction order                        */
+        int           order,                 /* I:   prediction order                        */
+        float[][]     Atmp                   /* -    scratch memory                          */
     )
     {
         int   k, n;
         double    rc, rc_mult1, rc_mult2;
-        float[][] Atmp = new float[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
         float[] Aold, Anew;
 
         Anew = Atmp[ order & 1 ];
@@ -80,7 +80,7 @@ static void SKP_Silk_LPC_stabilize(
         /**********************/
         int invGain_Q30_ptr[] = new int[1];
         invGain_Q30_ptr[0] = invGain_Q30;
-        while( LPCInvPredGain.SKP_Silk_LPC_inverse_pred_gain( invGain_Q30_ptr, a_Q12, L ) == 1 ) {
+        while( LPCInvPredGain.SKP_Silk_LPC_inverse_pred_gain( invGain_Q30_ptr, a_Q12, L, new SKP_Silk_LPC_scratch_struct() ) == 1 ) {
             invGain_Q30 = invGain_Q30_ptr[0];
             Bwexpander.SKP_Silk_bwexpander( a_Q12, L, 65339 ); // 0.997 in Q16
         }
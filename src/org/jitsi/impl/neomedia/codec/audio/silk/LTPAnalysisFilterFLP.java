@@ -45,7 +45,7 @@ static void SKP_Silk_LTP_analysis_filter_FLP(
         float [] x_lag_ptr;
         int x_ptr_offset, x_lag_ptr_offset;
 
-        float   Btmp[] = new float[ LTP_ORDER ];
+        int     B_offset;
         float   []LTP_res_ptr;
         int     LTP_res_ptr_offset;
         float   inv_gain;
@@ -59,16 +59,14 @@ static void SKP_Silk_LTP_analysis_filter_FLP(
             x_lag_ptr = x_ptr;
             x_lag_ptr_offset = x_ptr_offset - pitchL[ k ];
             inv_gain = invGains[ k ];
-            for( i = 0; i < LTP_ORDER; i++ ) {
-                Btmp[ i ] = B[ k * LTP_ORDER + i ];
-            }
+            B_offset = k * LTP_ORDER;
 
             /* LTP analysis FIR filter */
             for( i = 0; i < subfr_length + pre_length; i++ ) {
                 LTP_res_ptr[ LTP_res_ptr_offset + i ] = x_ptr[ x_ptr_offset + i ];
                 /* Subtract long-term prediction */
                 for( j = 0; j < LTP_ORDER; j++ ) {
-                    LTP_res_ptr[ LTP_res_ptr_offset + i ] -= Btmp[ j ] * x_lag_ptr[ x_lag_ptr_offset + LTP_ORDER / 2 - j ];
+                    LTP_res_ptr[ LTP_res_ptr_offset + i ] -= B[ B_offset + j ] * x_lag_ptr[ x_lag_ptr_offset + LTP_ORDER / 2 - j ];
                 }
                 LTP_res_ptr[ LTP_res_ptr_offset + i ] *= inv_gain;
                 x_lag_ptr_offset++;
@@ -67,24 +67,26 @@ static void SKP_Silk_NLSF2A_find_poly(
      * @param a monic whitening filter coefficients in Q12,  [d].
      * @param NLSF normalized line spectral frequencies in Q15, [d].
      * @param d filter order (should be even).
+     * @param scratch scratch memory.
      */
     static void SKP_Silk_NLSF2A(
             short       []a,               /* o    monic whitening filter coefficients in Q12,  [d]    */
             int         []NLSF,           /* i    normalized line spectral frequencies in Q15, [d]    */
-            final int   d                /* i    filter order (should be even)                       */
+            final int   d,               /* i    filter order (should be even)                       */
+            SKP_Silk_LPC_scratch_struct scratch /* -    scratch memory                                  */
         )
     {
         int k, i, dd;
-        int[] cos_LSF_Q20=new int[SigProcFIX.SKP_Silk_MAX_ORDER_LPC];
+        int[] cos_LSF_Q20 = scratch.cos_LSF_Q20;
 
-        int[] P = new int[SigProcFIX.SKP_Silk_MAX_ORDER_LPC/2+1];
-        int[] Q = new int[SigProcFIX.SKP_Silk_MAX_ORDER_LPC/2+1];
+        int[] P = scratch.P;
+        int[] Q = scratch.Q;
 
         int Ptmp, Qtmp;
         int f_int;
         int f_frac;
         int cos_val, delta;
-        int[] a_int32 = new int[SigProcFIX.SKP_Silk_MAX_ORDER_LPC];
+        int[] a_int32 = scratch.a_int32;
 
         int maxabs, absval, idx=0, sc_Q16;
 
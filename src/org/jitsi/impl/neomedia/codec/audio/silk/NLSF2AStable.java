@@ -31,22 +31,24 @@
      * @param pAR_Q12 Stabilized AR coefs [LPC_order].
      * @param pNLSF NLSF vector [LPC_order].
      * @param LPC_order LPC/LSF order.
+     * @param scratch scratch memory.
      */
     static void SKP_Silk_NLSF2A_stable(
             short                       pAR_Q12[],   /* O    Stabilized AR coefs [LPC_order]     */
             int                         pNLSF[],     /* I    NLSF vector         [LPC_order]     */
-            final int                   LPC_order                   /* I    LPC/LSF order                       */
+            final int                   LPC_order,                  /* I    LPC/LSF order                       */
+            SKP_Silk_LPC_scratch_struct scratch      /* -    scratch memory                      */
     )
     {
         int   i;
         int invGain_Q30;
-        int invGain_Q30_ptr[] = new int[1];
-        NLSF2A.SKP_Silk_NLSF2A( pAR_Q12, pNLSF, LPC_order );
+        int invGain_Q30_ptr[] = scratch.invGain_Q30;
+        NLSF2A.SKP_Silk_NLSF2A( pAR_Q12, pNLSF, LPC_order, scratch );
 
 
         /* Ensure stable LPCs */
         for( i = 0; i < MAX_LPC_STABILIZE_ITERATIONS; i++ ) {
-            if( LPCInvPredGain.SKP_Silk_LPC_inverse_pred_gain( invGain_Q30_ptr, pAR_Q12, LPC_order ) == 1 ) {
+            if( LPCInvPredGain.SKP_Silk_LPC_inverse_pred_gain( invGain_Q30_ptr, pAR_Q12, LPC_order, scratch ) == 1 ) {
                 invGain_Q30 = invGain_Q30_ptr[0];
                 Bwexpander.SKP_Silk_bwexpander( pAR_Q12, LPC_order, 65536 - SKP_SMULBB( 66, i ) ); /* 66_Q16 = 0.001 */
             } else {
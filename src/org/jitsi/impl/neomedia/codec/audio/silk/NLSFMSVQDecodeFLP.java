@@ -24,6 +24,7 @@
 {
     /**
      * NLSF vector decoder.
+     * @param psEnc Encoder state FLP.
      * @param pNLSF
      * @param psNLSF_CB_FLP
      * @param NLSFIndices
@@ -31,6 +32,7 @@
      * @param LPC_order
      */
     static void SKP_Silk_NLSF_MSVQ_decode_FLP(
+              SKP_Silk_encoder_state_FLP psEnc, /* I/O  Encoder state FLP                     */
               float                 []pNLSF,             /* O    Decoded output vector [ LPC_ORDER ]     */
         final  SKP_Silk_NLSF_CB_FLP psNLSF_CB_FLP,     /* I    NLSF codebook struct                    */
         final int                   []NLSFIndices,       /* I    NLSF indices [ nStages ]                */
@@ -93,6 +95,6 @@ static void SKP_Silk_NLSF_MSVQ_decode_FLP(
         }
 
         /* NLSF stabilization */
-        WrappersFLP.SKP_Silk_NLSF_stabilize_FLP( pNLSF, psNLSF_CB_FLP.NDeltaMin, LPC_order );
+        WrappersFLP.SKP_Silk_NLSF_stabilize_FLP( psEnc, pNLSF, psNLSF_CB_FLP.NDeltaMin, LPC_order );
     }
 }
@@ -28,6 +28,7 @@
 {
     /**
      * NLSF vector encoder.
+     * @param psEnc Encoder state FLP
      * @param NLSFIndices Codebook path vector [ CB_STAGES ]
      * @param pNLSF Quantized NLSF vector [ LPC_ORDER ]
      * @param psNLSF_CB_FLP Codebook object
@@ -41,6 +42,7 @@
      */
     @SuppressWarnings("unused")
     static void SKP_Silk_NLSF_MSVQ_encode_FLP(
+              SKP_Silk_encoder_state_FLP psEnc, /* I/O  Encoder state FLP                     */
               int                   []NLSFIndices,       /* O    Codebook path vector [ CB_STAGES ]      */
               float                 []pNLSF,             /* I/O  Quantized NLSF vector [ LPC_ORDER ]     */
         final SKP_Silk_NLSF_CB_FLP  psNLSF_CB_FLP,     /* I    Codebook object                         */
@@ -55,37 +57,17 @@ static void SKP_Silk_NLSF_MSVQ_encode_FLP(
     {
         int     i, s, k, cur_survivors, prev_survivors, input_index, cb_index, bestIndex;
         float   se, wsse, rateDistThreshold, bestRateDist;
-        float   pNLSF_in[] = new float[ MAX_LPC_ORDER ];
-
-        float   pRateDist[];
-        float   pRate[];
-        float   pRate_new[];
-        int     pTempIndices[];
-        int     pPath[];
-        int     pPath_new[];
-        float   pRes[];
-        float   pRes_new[];
-        if(LOW_COMPLEXITY_ONLY)
-        {
-            pRateDist =    new float[NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED_LC_MODE()];
-            pRate =        new float[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pRate_new =    new float[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pTempIndices = new int[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pPath =        new int[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * NLSF_MSVQ_MAX_CB_STAGES];
-            pPath_new =    new int[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * NLSF_MSVQ_MAX_CB_STAGES];
-            pRes =         new float[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * MAX_LPC_ORDER ];
-            pRes_new =     new float[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * MAX_LPC_ORDER ];
-        }else
-        {
-            pRateDist =    new float[NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED() ];
-            pRate =        new float[MAX_NLSF_MSVQ_SURVIVORS ];
-            pRate_new =    new float[MAX_NLSF_MSVQ_SURVIVORS ];
-            pTempIndices = new int[MAX_NLSF_MSVQ_SURVIVORS ];
-            pPath =        new int[MAX_NLSF_MSVQ_SURVIVORS * NLSF_MSVQ_MAX_CB_STAGES ];
-            pPath_new =    new int[MAX_NLSF_MSVQ_SURVIVORS * NLSF_MSVQ_MAX_CB_STAGES ];
-            pRes =         new float[MAX_NLSF_MSVQ_SURVIVORS * MAX_LPC_ORDER ];
-            pRes_new =     new float[MAX_NLSF_MSVQ_SURVIVORS * MAX_LPC_ORDER ];
-        }
+        float   pNLSF_in[] = psEnc.pNLSF_in;
+
+        /* The scratch memory is sized for MAX_NLSF_MSVQ_SURVIVORS, which also covers LOW_COMPLEXITY_ONLY */
+        float   pRateDist[]    = psEnc.pRateDist;
+        float   pRate[]        = psEnc.pRate;
+        float   pRate_new[]    = psEnc.pRate_new;
+        int     pTempIndices[] = psEnc.pTempIndices;
+        int     pPath[]        = psEnc.pPath;
+        int     pPath_new[]    = psEnc.pPath_new;
+        float   pRes[]         = psEnc.pRes;
+        float   pRes_new[]     = psEnc.pRes_new;
 
         float[] pConstFloat;int pConstFloat_offset;
         float[] pFloat; int pFloat_offset;
@@ -217,7 +199,7 @@ static void SKP_Silk_NLSF_MSVQ_encode_FLP(
                 bestRateDist = Float.MAX_VALUE;
                 for( s = 0; s < cur_survivors; s++ ) {
                     /* Decode survivor to compare with previous quantized NLSF vector */
-                    NLSFMSVQDecodeFLP.SKP_Silk_NLSF_MSVQ_decode_FLP( pNLSF, psNLSF_CB_FLP,
+                    NLSFMSVQDecodeFLP.SKP_Silk_NLSF_MSVQ_decode_FLP( psEnc, pNLSF, psNLSF_CB_FLP,
                             pPath_new, s * psNLSF_CB_FLP.nStages, LPC_order );
 
                     /* Compare decoded NLSF vector with the previously quantized vector */
@@ -248,6 +230,6 @@ static void SKP_Silk_NLSF_MSVQ_encode_FLP(
         System.arraycopy(pPath_new, bestIndex * psNLSF_CB_FLP.nStages, NLSFIndices, 0, psNLSF_CB_FLP.nStages);
 
         /* Decode and stabilize the best survivor */
-        NLSFMSVQDecodeFLP.SKP_Silk_NLSF_MSVQ_decode_FLP( pNLSF, psNLSF_CB_FLP, NLSFIndices, 0, LPC_order );
+        NLSFMSVQDecodeFLP.SKP_Silk_NLSF_MSVQ_decode_FLP( psEnc, pNLSF, psNLSF_CB_FLP, NLSFIndices, 0, LPC_order );
     }
 }
@@ -57,7 +57,7 @@ public void FieldsInit()
  *
  * @author Dingxin Xu
  */
-class NSQ_sample_struct implements Cloneable
+class NSQ_sample_struct
 {
     int Q_Q10;
     int RD_Q10;
@@ -65,17 +65,21 @@ class NSQ_sample_struct implements Cloneable
     int LF_AR_Q12;
     int sLTP_shp_Q10;
     int LPC_exc_Q16;
-    @Override
-    public Object clone()
+
+    /**
+     * Copies the values of another sample state into this one, which is what
+     * the C code does with <tt>SKP_memcpy</tt>.
+     *
+     * @param src the sample state to copy from
+     */
+    void copyFrom(NSQ_sample_struct src)
     {
-        NSQ_sample_struct clone = null;
-        try {
-            clone = (NSQ_sample_struct) super.clone();
-        } catch (CloneNotSupportedException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        return clone;
+        this.Q_Q10 = src.Q_Q10;
+        this.RD_Q10 = src.RD_Q10;
+        this.xq_Q14 = src.xq_Q14;
+        this.LF_AR_Q12 = src.LF_AR_Q12;
+        this.sLTP_shp_Q10 = src.sLTP_shp_Q10;
+        this.LPC_exc_Q16 = src.LPC_exc_Q16;
     }
 }
 
@@ -111,22 +115,13 @@ static void SKP_Silk_NSQ_del_dec(
         int           A_Q12_offset, B_Q14_offset, AR_shp_Q13_offset;
         short[] pxq;
         int     pxq_offset;
-        int   sLTP_Q16[] = new int[ 2 * MAX_FRAME_LENGTH ];
-        short   sLTP[] = new short[ 2 * MAX_FRAME_LENGTH ];
+        int   sLTP_Q16[] = psEncC.sLTP_Q16;
+        short   sLTP[] = psEncC.sLTP;
         int   HarmShapeFIRPacked_Q14;
         int     offset_Q10;
-        int   FiltState[] = new int[ MAX_LPC_ORDER ], RDmin_Q10;
-        int   x_sc_Q10[] = new int[ MAX_FRAME_LENGTH / NB_SUBFR ];
-        NSQDelDecStruct psDelDec[] = new NSQDelDecStruct[ DEL_DEC_STATES_MAX ];
-        /*
-         * psDelDec is an array of references, which has to be created manually.
-         */
-        {
-            for(int psDelDecIni_i=0; psDelDecIni_i<DEL_DEC_STATES_MAX; psDelDecIni_i++)
-            {
-                psDelDec[psDelDecIni_i] = new NSQDelDecStruct();
-            }
-        }
+        int   FiltState[] = psEncC.FiltState, RDmin_Q10;
+        int   x_sc_Q10[] = psEncC.x_sc_Q10;
+        NSQDelDecStruct psDelDec[] = psEncC.psDelDec;
         NSQDelDecStruct psDD;
 
         subfr_length = psEncC.frame_length / NB_SUBFR;
@@ -136,12 +131,8 @@ static void SKP_Silk_NSQ_del_dec(
 
         assert( NSQ.prev_inv_gain_Q16 != 0 );
 
-      //TODO: use a local copy of the parameter short x[], which is supposed to be input;
-        short[] x_tmp = x.clone();
-        int     x_tmp_offset = 0;
-//TODO: use a local copy of the parameter byte[] q, which is supposed to be output;
-        byte[]  q_tmp = q.clone();
-        int     q_tmp_offset = 0;
+        int     x_offset = 0;
+        int     q_offset = 0;
 
         /* Initialize delayed decision states */
 //        SKP_memset( psDelDec, 0, psEncC.nStatesDelayedDecision * sizeof( NSQ_del_dec_struct ) );
@@ -225,7 +216,7 @@ static void SKP_Silk_NSQ_del_dec(
                         for( i = 0; i < decisionDelay; i++ ) {
                             last_smple_idx = ( last_smple_idx - 1 ) & DECISION_DELAY_MASK;
 //                            q[   i - decisionDelay ] = ( SKP_int )SKP_RSHIFT( psDD.Q_Q10[ last_smple_idx ], 10 );
-                            q_tmp[   q_tmp_offset + i - decisionDelay ] = (byte) ( psDD.Q_Q10[ last_smple_idx ] >> 10 );
+                            q[   q_offset + i - decisionDelay ] = (byte) ( psDD.Q_Q10[ last_smple_idx ] >> 10 );
 
 //                            pxq[ i - decisionDelay ] = ( SKP_int16 )SKP_SAT16( SKP_RSHIFT_ROUND(
 //                                SKP_SMULWW( psDD.Xq_Q10[ last_smple_idx ],
@@ -258,20 +249,20 @@ static void SKP_Silk_NSQ_del_dec(
             HarmShapeFIRPacked_Q14  =                        ( HarmShapeGain_Q14[ k ] >> 2 );
             HarmShapeFIRPacked_Q14 |= ( ( HarmShapeGain_Q14[ k ] >> 1 ) << 16 );
 
-            SKP_Silk_nsq_del_dec_scale_states( NSQ, psDelDec, x_tmp, x_tmp_offset, x_sc_Q10,
+            SKP_Silk_nsq_del_dec_scale_states( NSQ, psDelDec, x, x_offset, x_sc_Q10,
                 subfr_length, sLTP, sLTP_Q16, k, psEncC.nStatesDelayedDecision, smpl_buf_idx,
                 LTP_scale_Q14, Gains_Q16, psEncCtrlC.pitchL );
 
-            int smpl_buf_idx_ptr[] = new int[1];
+            int smpl_buf_idx_ptr[] = psEncC.smpl_buf_idx_ptr;
             smpl_buf_idx_ptr[0] = smpl_buf_idx;
-            SKP_Silk_noise_shape_quantizer_del_dec( NSQ, psDelDec, psEncCtrlC.sigtype, x_sc_Q10, q_tmp, q_tmp_offset, pxq, pxq_offset,
+            SKP_Silk_noise_shape_quantizer_del_dec( NSQ, psDelDec, psEncCtrlC.sigtype, x_sc_Q10, q, q_offset, pxq, pxq_offset,
                     sLTP_Q16, A_Q12, A_Q12_offset, B_Q14, B_Q14_offset, AR_shp_Q13, AR_shp_Q13_offset, lag, HarmShapeFIRPacked_Q14, Tilt_Q14[ k ],
                     LF_shp_Q14[ k ], Gains_Q16[ k ], Lambda_Q10, offset_Q10, psEncC.subfr_length, subfr++, psEncC.shapingLPCOrder, psEncC.predictLPCOrder,
-                psEncC.nStatesDelayedDecision, smpl_buf_idx_ptr, decisionDelay );
+                psEncC.nStatesDelayedDecision, smpl_buf_idx_ptr, decisionDelay, psEncC.psSampleState );
             smpl_buf_idx = smpl_buf_idx_ptr[0];
 
-            x_tmp_offset   += psEncC.subfr_length;
-            q_tmp_offset   += psEncC.subfr_length;
+            x_offset   += psEncC.subfr_length;
+            q_offset   += psEncC.subfr_length;
             pxq_offset += psEncC.subfr_length;
         }
 
@@ -291,7 +282,7 @@ static void SKP_Silk_NSQ_del_dec(
         last_smple_idx = smpl_buf_idx + decisionDelay;
         for( i = 0; i < decisionDelay; i++ ) {
             last_smple_idx = ( last_smple_idx - 1 ) & DECISION_DELAY_MASK;
-            q_tmp[q_tmp_offset + i - decisionDelay] = ( byte )( psDD.Q_Q10[ last_smple_idx ] >> 10 );
+            q[q_offset + i - decisionDelay] = ( byte )( psDD.Q_Q10[ last_smple_idx ] >> 10 );
             pxq[ pxq_offset + i - decisionDelay ] = ( short )SigProcFIX.SKP_SAT16( SigProcFIX.SKP_RSHIFT_ROUND(
                 SKP_SMULWW( psDD.Xq_Q10[ last_smple_idx ], psDD.Gain_Q16[ last_smple_idx ] ), 10 ) );
             NSQ.sLTP_shp_Q10[ NSQ.sLTP_shp_buf_idx - decisionDelay + i ] = psDD.Shape_Q10[ last_smple_idx ];
@@ -311,8 +302,6 @@ static void SKP_Silk_NSQ_del_dec(
 //        SKP_memcpy( NSQ.sLTP_shp_Q10, &NSQ.sLTP_shp_Q10[ psEncC.frame_length ], psEncC.frame_length * sizeof( SKP_int32 ) );
         System.arraycopy(NSQ.xq, psEncC.frame_length, NSQ.xq, 0, psEncC.frame_length);
         System.arraycopy(NSQ.sLTP_shp_Q10, psEncC.frame_length, NSQ.sLTP_shp_Q10, 0, psEncC.frame_length);
-//TODO: copy back the q_tmp to the output parameter q;
-        System.arraycopy(q_tmp, 0, q, 0, q.length);
     }
 
     /**
@@ -346,6 +335,7 @@ static void SKP_Silk_NSQ_del_dec(
      * @param nStatesDelayedDecision Number of states in decision tree
      * @param smpl_buf_idx Index to newest samples in buffers
      * @param decisionDelay
+     * @param psSampleState scratch memory [DEL_DEC_STATES_MAX][2]
      */
     static void SKP_Silk_noise_shape_quantizer_del_dec(
         SKP_Silk_nsq_state  NSQ,                   /* I/O  NSQ state                           */
@@ -376,7 +366,8 @@ static void SKP_Silk_noise_shape_quantizer_del_dec(
         int                 predictLPCOrder,        /* I    Prediction LPC filter order         */
         int                 nStatesDelayedDecision, /* I    Number of states in decision tree   */
         int                 []smpl_buf_idx,          /* I    Index to newest samples in buffers  */
-        int                 decisionDelay           /* I                                        */
+        int                 decisionDelay,          /* I                                        */
+        NSQ_sample_struct   psSampleState[][]       /* -    scratch memory                      */
     )
     {
         int     i, j, k, Winner_ind, RDmin_ind, RDmax_ind, last_smple_idx;
@@ -391,19 +382,6 @@ static void SKP_Silk_noise_shape_quantizer_del_dec(
         int   pred_lag_ptr[], shp_lag_ptr[];
         int   pred_lag_ptr_offset, shp_lag_ptr_offset;
         int   []psLPC_Q14; int psLPC_Q14_offset;
-        NSQ_sample_struct  psSampleState[][] = new NSQ_sample_struct[ DEL_DEC_STATES_MAX ][ 2 ];
-        /*
-         * psSampleState is an two-dimension array of reference, which should be created manually.
-         */
-        {
-            for(int Ini_i=0; Ini_i<DEL_DEC_STATES_MAX; Ini_i++)
-            {
-                for(int Ini_j=0; Ini_j<2; Ini_j++)
-                {
-                    psSampleState[Ini_i][Ini_j] = new NSQ_sample_struct();
-                }
-            }
-        }
         NSQDelDecStruct psDD;
         NSQ_sample_struct[]  psSS;
 
@@ -636,9 +614,8 @@ static void SKP_Silk_noise_shape_quantizer_del_dec(
             if( RDmin_Q10 < RDmax_Q10 ) {
 //                SKP_Silk_copy_del_dec_state( &psDelDec[ RDmax_ind ], &psDelDec[ RDmin_ind ], i );
                 SKP_Silk_copy_del_dec_state( psDelDec[ RDmax_ind ], psDelDec[ RDmin_ind ], i );
-//TODO:how to copy a struct ???
 //                SKP_memcpy( &psSampleState[ RDmax_ind ][ 0 ], &psSampleState[ RDmin_ind ][ 1 ], sizeof( NSQ_sample_struct ) );
-                psSampleState[ RDmax_ind ][ 0 ] = (NSQ_sample_struct) psSampleState[ RDmin_ind ][ 1 ].clone();
+                psSampleState[ RDmax_ind ][ 0 ].copyFrom( psSampleState[ RDmin_ind ][ 1 ] );
             }
 
             /* Write samples from winner to output and long-term filter states */
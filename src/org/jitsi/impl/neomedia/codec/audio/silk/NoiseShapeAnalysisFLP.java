@@ -48,8 +48,8 @@
         float   SNR_adj_dB, HarmBoost, HarmShapeGain, Tilt;
         float   nrg, pre_nrg=0, log_energy, log_energy_prev, energy_variation;
         float   delta, BWExp1, BWExp2, gain_mult, gain_add, strength, b;
-        float[]   x_windowed = new float[ SHAPE_LPC_WIN_MAX ];
-        float[]   auto_corr = new float[ SHAPE_LPC_ORDER_MAX + 1 ];
+        float[]   x_windowed = psEnc.x_windowed;
+        float[]   auto_corr = psEnc.shape_auto_corr;
         float[] x_ptr, pitch_res_ptr;
         int x_ptr_offset, pitch_res_ptr_offset=0;
 
@@ -178,7 +178,8 @@
             BwexpanderFLP.SKP_Silk_bwexpander_FLP( psEncCtrl.AR2,k * SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder, BWExp2 );
 
             /* Make sure to fit in Q13 SKP_int16 */
-            LPC_fit_int16( psEncCtrl.AR2,k * SHAPE_LPC_ORDER_MAX, 1.0f, psEnc.sCmn.shapingLPCOrder, 3.999f );
+            LPC_fit_int16( psEncCtrl.AR2,k * SHAPE_LPC_ORDER_MAX, 1.0f, psEnc.sCmn.shapingLPCOrder, 3.999f,
+                psEnc.invGain_ptr, psEnc.inv_pred_gain_Atmp );
 
             /* Compute noise shaping filter coefficients */
 //            SKP_memcpy(
@@ -196,11 +197,14 @@
             psEncCtrl.Gains[ k ] = ( float )Math.sqrt( nrg );
 
             /* Ratio of prediction gains, in energy domain */
-            float[] pre_nrg_djinnaddress = {pre_nrg};
-            LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( pre_nrg_djinnaddress, psEncCtrl.AR2,k * SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder );
-            pre_nrg = pre_nrg_djinnaddress[0];
-            float[] nrg_djinnaddress = {nrg};
-            LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( nrg_djinnaddress,     psEncCtrl.AR1,k * SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder );
+            float[] nrg_djinnaddress = psEnc.invGain_ptr;
+            nrg_djinnaddress[0] = pre_nrg;
+            LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( nrg_djinnaddress, psEncCtrl.AR2,k * SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder,
+                psEnc.inv_pred_gain_Atmp );
+            pre_nrg = nrg_djinnaddress[0];
+            nrg_djinnaddress[0] = nrg;
+            LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( nrg_djinnaddress, psEncCtrl.AR1,k * SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder,
+                psEnc.inv_pred_gain_Atmp );
             nrg = nrg_djinnaddress[0];
             psEncCtrl.GainsPre[ k ] = ( float )Math.sqrt( pre_nrg / nrg );
             //psEncCtrl->GainsPre[ k ] = 1.0f - 0.7f * ( 1.0f - pre_nrg / nrg );
@@ -324,18 +328,21 @@ else if( psEnc.sCmn.fs_kHz == 16 )
      * @param bwe Bandwidth expansion factor.
      * @param L Number of LPC parameters in the input vector.
      * @param maxVal Maximum value allowed.
+     * @param invGain scratch memory [1].
+     * @param Atmp scratch memory [2][SKP_Silk_MAX_ORDER_LPC].
      */
     static void LPC_fit_int16(
               float[] a,                    /* I/O: Unstable/stabilized LPC vector [L]              */
               int a_offset,
         final float  bwe,                   /* I:   Bandwidth expansion factor                      */
         final int    L,                     /* I:   Number of LPC parameters in the input vector    */
-        float       maxVal                  /* I    Maximum value allowed                           */
+        float       maxVal,                 /* I    Maximum value allowed                           */
+        float[]     invGain,                /* -    scratch memory                                  */
+        float[][]   Atmp                    /* -    scratch memory                                  */
     )
     {
         float   maxabs, absval, sc;
         int     k, i, idx = 0;
-        float[]   invGain = new float[1];
 
         BwexpanderFLP.SKP_Silk_bwexpander_FLP( a,a_offset, L, bwe );
 
@@ -378,7 +385,7 @@ static void LPC_fit_int16(
         /**********************/
         for( k = 0; k < 1000; k++ )
         {
-            if( LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( invGain, a,a_offset, L ) == 1 )
+            if( LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( invGain, a,a_offset, L, Atmp ) == 1 )
             {
                 BwexpanderFLP.SKP_Silk_bwexpander_FLP( a,a_offset, L, 0.997f );
             }
@@ -17,8 +17,6 @@
 
 import static org.jitsi.impl.neomedia.codec.audio.silk.Define.*;
 
-import java.util.*;
-
 /**
  *
  * @author Dingxin Xu
@@ -44,15 +42,15 @@ static void SKP_Silk_prefilter_FLP(
         SKP_Silk_prefilter_state_FLP P = psEnc.sPrefilt;
         int   j, k, lag;
         float HarmShapeGain, Tilt, LF_MA_shp, LF_AR_shp;
-        float[] B = new float[ 2 ];
-        float[] AR1_shp = new float[ NB_SUBFR * SHAPE_LPC_ORDER_MAX ];
+        float[] B = psEnc.prefilt_B;
+        float[] AR1_shp = psEnc.AR1_shp;
         float[] px;
         int px_offset;
         float[] pxw, pst_res;
         int pxw_offset;
         int pst_res_offset;
-        float[] HarmShapeFIR = new float[ 3 ];
-        float[] st_res = new float[ MAX_FRAME_LENGTH / NB_SUBFR + MAX_LPC_ORDER ];
+        float[] HarmShapeFIR = psEnc.HarmShapeFIR;
+        float[] st_res = psEnc.st_res;
 
         /* Setup pointers */
         px  = x;
@@ -79,9 +77,8 @@ static void SKP_Silk_prefilter_FLP(
 //TODO: copy the psEncCtrl.AR1 to a local buffer or use a reference(pointer) to the struct???
 //            AR1_shp   = psEncCtrl.AR1;
 //            AR1_shp_offset = k * SHAPE_LPC_ORDER_MAX;
-            Arrays.fill(AR1_shp, 0);
             System.arraycopy(psEncCtrl.AR1,  k * SHAPE_LPC_ORDER_MAX,
-                    AR1_shp, 0, psEncCtrl.AR1.length-k * SHAPE_LPC_ORDER_MAX);
+                    AR1_shp, 0, psEnc.sCmn.shapingLPCOrder);
 
             /* Short term FIR filtering*/
             LPCAnalysisFilterFLP.SKP_Silk_LPC_analysis_filter_FLP( st_res, AR1_shp,
@@ -36,7 +36,7 @@ static void SKP_Silk_process_gains_FLP(
     {
         SKP_Silk_shape_state_FLP psShapeSt = psEnc.sShape;
         int     k;
-        int     pGains_Q16[] = new int[ NB_SUBFR ];
+        int     pGains_Q16[] = psEnc.pGains_Q16;
         float   s, InvMaxSqrVal, gain;
 
         /* Gain reduction when LTP coding gain is high */
@@ -63,7 +63,7 @@ static void SKP_Silk_process_gains_FLP(
         }
 
         /* Noise shaping quantization */
-        int[] LastGainIndex_ptr = new int[1];
+        int[] LastGainIndex_ptr = psEnc.LastGainIndex_ptr;
         LastGainIndex_ptr[0] = psShapeSt.LastGainIndex;
         GainQuant.SKP_Silk_gains_quant( psEncCtrl.sCmn.GainsIndices, pGains_Q16,
                 LastGainIndex_ptr, psEnc.sCmn.nFramesInPayloadBuf );
@@ -37,14 +37,14 @@ static void SKP_Silk_process_NLSFs_FLP(
     )
     {
         boolean     doInterpolate;
-        float   pNLSFW[] = new float[ MAX_LPC_ORDER ];
+        float   pNLSFW[] = psEnc.pNLSFW;
         float   NLSF_mu, NLSF_mu_fluc_red, i_sqr, NLSF_interpolation_factor = 0.0f;
         final SKP_Silk_NLSF_CB_FLP psNLSF_CB_FLP;
 
 
         /* Used only for NLSF interpolation */
-        float   pNLSF0_temp[] = new float[  MAX_LPC_ORDER ];
-        float   pNLSFW0_temp[] = new float[ MAX_LPC_ORDER ];
+        float   pNLSF0_temp[] = psEnc.pNLSF0_temp;
+        float   pNLSFW0_temp[] = psEnc.pNLSFW0_temp;
         int     i;
 
         assert( psEncCtrl.sCmn.sigtype == SIG_TYPE_VOICED || psEncCtrl.sCmn.sigtype == SIG_TYPE_UNVOICED );
@@ -69,7 +69,7 @@ static void SKP_Silk_process_NLSFs_FLP(
 
             /* Calculate the interpolated NLSF vector for the first half */
             NLSF_interpolation_factor = 0.25f * psEncCtrl.sCmn.NLSFInterpCoef_Q2;
-            WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( pNLSF0_temp, psEnc.sPred.prev_NLSFq, pNLSF,
+            WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( psEnc, pNLSF0_temp, psEnc.sPred.prev_NLSFq, pNLSF,
                 NLSF_interpolation_factor, psEnc.sCmn.predictLPCOrder );
 
             /* Calculate first half NLSF weights for the interpolated NLSFs */
@@ -86,20 +86,20 @@ static void SKP_Silk_process_NLSFs_FLP(
         psNLSF_CB_FLP = psEnc.psNLSF_CB_FLP[ psEncCtrl.sCmn.sigtype ];
 
         /* Quantize NLSF parameters given the trained NLSF codebooks */
-        NLSFMSVQEncodeFLP.SKP_Silk_NLSF_MSVQ_encode_FLP( psEncCtrl.sCmn.NLSFIndices, pNLSF, psNLSF_CB_FLP, psEnc.sPred.prev_NLSFq,
+        NLSFMSVQEncodeFLP.SKP_Silk_NLSF_MSVQ_encode_FLP( psEnc, psEncCtrl.sCmn.NLSFIndices, pNLSF, psNLSF_CB_FLP, psEnc.sPred.prev_NLSFq,
                 pNLSFW, NLSF_mu, NLSF_mu_fluc_red, psEnc.sCmn.NLSF_MSVQ_Survivors,
                 psEnc.sCmn.predictLPCOrder, psEnc.sCmn.first_frame_after_reset );
 
         /* Convert quantized NLSFs back to LPC coefficients */
-        WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEncCtrl.PredCoef[ 1 ], pNLSF, psEnc.sCmn.predictLPCOrder );
+        WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEnc, psEncCtrl.PredCoef[ 1 ], pNLSF, psEnc.sCmn.predictLPCOrder );
 
         if( doInterpolate ) {
             /* Calculate the interpolated, quantized NLSF vector for the first half */
-            WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( pNLSF0_temp, psEnc.sPred.prev_NLSFq, pNLSF,
+            WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( psEnc, pNLSF0_temp, psEnc.sPred.prev_NLSFq, pNLSF,
                 NLSF_interpolation_factor, psEnc.sCmn.predictLPCOrder );
 
             /* Convert back to LPC coefficients */
-            WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEncCtrl.PredCoef[ 0 ], pNLSF0_temp, psEnc.sCmn.predictLPCOrder );
+            WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEnc, psEncCtrl.PredCoef[ 0 ], pNLSF0_temp, psEnc.sCmn.predictLPCOrder );
 
         } else {
             /* Copy LPC coefficients for first half from second half */
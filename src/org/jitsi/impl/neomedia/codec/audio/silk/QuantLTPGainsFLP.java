@@ -32,6 +32,8 @@
      * @param W Error weights
      * @param mu Mu value (R/D tradeoff)
      * @param lowComplexity Flag for low complexity
+     * @param temp_idx scratch memory [NB_SUBFR]
+     * @param rate_dist_subfr_ptr scratch memory [1]
      */
     static void SKP_Silk_quant_LTP_gains_FLP(
               float        B[],                                 /* I/O  (Un-)quantized LTP gains                */
@@ -39,7 +41,9 @@ static void SKP_Silk_quant_LTP_gains_FLP(
               int          []periodicity_index,                 /* O    Periodicity index                       */
               final float  W[],                                 /* I    Error weights                           */
               final float  mu,                                  /* I    Mu value (R/D tradeoff)                 */
-              final int    lowComplexity                        /* I    Flag for low complexity                 */
+              final int    lowComplexity,                       /* I    Flag for low complexity                 */
+              int          temp_idx[],                          /* -    scratch memory                          */
+              float        rate_dist_subfr_ptr[]                /* -    scratch memory                          */
     )
     {
 //        SKP_int             j, k, temp_idx[ NB_SUBFR ], cbk_size;
@@ -49,7 +53,6 @@ static void SKP_Silk_quant_LTP_gains_FLP(
 //        const SKP_float     *b_ptr, *W_ptr;
 //        SKP_float           rate_dist_subfr, rate_dist, min_rate_dist;
         int j,k,cbk_size;
-        int[] temp_idx = new int[NB_SUBFR];
         int[] cdf_ptr; int cdf_ptr_offset;
         short[] cl_ptr; int cl_ptr_offset;
         short[] cbk_ptr_Q14; int cbk_ptr_Q14_offset;
@@ -81,7 +84,6 @@ static void SKP_Silk_quant_LTP_gains_FLP(
             rate_dist = 0.0f;
             for( j = 0; j < NB_SUBFR; j++ ) {
 
-                float [] rate_dist_subfr_ptr = new float[1];
                 rate_dist_subfr_ptr[0] = rate_dist_subfr;
 
                 VQNearestNeighborFLP.SKP_Silk_VQ_WMat_EC_FLP(
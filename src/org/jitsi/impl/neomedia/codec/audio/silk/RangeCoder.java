@@ -367,14 +367,13 @@ static void SKP_Silk_range_dec_init(
     }
 
     /**
-     * Determine length of bitstream.
+     * Determine length of bitstream. The number of BYTES in the stream is
+     * <tt>( nBits + 7 ) &gt;&gt; 3</tt>.
      * @param psRC compressed data structure.
-     * @param nBytes number of BYTES in stream.
      * @return returns number of BITS in stream.
      */
     static int SKP_Silk_range_coder_get_length(                /* O    returns number of BITS in stream            */
-            SKP_Silk_range_coder_state    psRC,          /* I    compressed data structure                   */
-            int[]                         nBytes         /* O    number of BYTES in stream                   */
+            SKP_Silk_range_coder_state    psRC           /* I    compressed data structure                   */
         )
     {
         int nBits;
@@ -382,7 +381,6 @@ static int SKP_Silk_range_coder_get_length(                /* O    returns numbe
         /* Number of bits in stream */
         nBits = ( psRC.bufferIx << 3 ) + SKP_Silk_CLZ32((int) (psRC.range_Q16 - 1) ) - 14;
 
-        nBytes [0] = (( nBits + 7)>> 3 );
         /* Return number of bits in bitstream */
         return nBits;
     }
@@ -401,9 +399,8 @@ static void SKP_Silk_range_enc_wrap_up(
         /* Lower limit of interval, shifted 8 bits to the right */
         base_Q24 = psRC.base_Q32 >>> 8;
 
-        int[] nBytes_ptr = new int[1];
-        bits_in_stream = SKP_Silk_range_coder_get_length( psRC, nBytes_ptr );
-        nBytes = nBytes_ptr[0];
+        bits_in_stream = SKP_Silk_range_coder_get_length( psRC );
+        nBytes = ( bits_in_stream + 7 ) >> 3;
 
         /* Number of additional bits (1..9) required to be stored to stream */
 //TODO:        bits_to_store = bits_in_stream - psRC.bufferIx << 3 ;
@@ -459,10 +456,9 @@ static void SKP_Silk_range_coder_check_after_decoding(
     )
     {
         int bits_in_stream, nBytes, mask;
-        int nBytes_ptr[] = new int[1];
 
-        bits_in_stream = SKP_Silk_range_coder_get_length( psRC, nBytes_ptr );
-        nBytes = nBytes_ptr[0];
+        bits_in_stream = SKP_Silk_range_coder_get_length( psRC );
+        nBytes = ( bits_in_stream + 7 ) >> 3;
 
         /* Make sure not to read beyond buffer */
         if( nBytes - 1 >= psRC.bufferLength ) {
@@ -83,6 +83,17 @@ void up_post_function ( int[] state, short[] out, int out_offset, short[] in, in
     int       nPostUpsamplers;
     int magic_number;
 
+    /* Scratch memory of SKP_Silk_resampler */
+    short[]   in_buf = new short[ 480 ];
+    short[]   out_buf = new short[ 480 ];
+
+    /* Scratch memory of SKP_Silk_resampler_private_down_FIR */
+    short[]   down_FIR_buf1 = new short[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN / 2 ];
+    int[]     down_FIR_buf2 = new int[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ResamplerRom.RESAMPLER_DOWN_ORDER_FIR ];
+
+    /* Scratch memory of SKP_Silk_resampler_private_IIR_FIR */
+    short[]   IIR_FIR_buf = new short[ 2 * ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ResamplerRom.RESAMPLER_ORDER_FIR_144 ];
+
     /**
      * set all fields of the instance to zero.
      */
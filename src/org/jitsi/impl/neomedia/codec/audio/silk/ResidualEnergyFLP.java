@@ -106,6 +106,7 @@ static float SKP_Silk_residual_energy_covar_FLP(           /* O    Weighted resi
      * @param gains Quantization gains
      * @param subfr_length Subframe length
      * @param LPC_order LPC order
+     * @param LPC_res scratch memory [( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2]
      */
     static void SKP_Silk_residual_energy_FLP(
               float nrgs[],                     /* O    Residual energy per subframe    */
@@ -113,12 +114,13 @@ static void SKP_Silk_residual_energy_FLP(
         final float a[][ ],    /* I    AR coefs for each frame half    */
         final float gains[],                    /* I    Quantization gains              */
         final int   subfr_length,               /* I    Subframe length                 */
-        final int   LPC_order                   /* I    LPC order                       */
+        final int   LPC_order,                  /* I    LPC order                       */
+              float LPC_res[]                   /* -    scratch memory                  */
     )
     {
         int         shift;
 //        SKP_float       *LPC_res_ptr, LPC_res[ ( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2 ];
-        float       LPC_res_ptr[], LPC_res[] = new float[ ( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2 ];
+        float       LPC_res_ptr[];
 
 //        LPC_res_ptr = LPC_res + LPC_order;
         LPC_res_ptr = LPC_res;
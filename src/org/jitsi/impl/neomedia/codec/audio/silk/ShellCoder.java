@@ -118,14 +118,21 @@ static  void decode_split(
      * @param sRC compressor data structure.
      * @param pulses0 data: nonnegative pulse amplitudes.
      * @param pulses0_offset valid data
+     * @param pulses1 scratch memory for 8 pulse sums.
+     * @param pulses2 scratch memory for 4 pulse sums.
+     * @param pulses3 scratch memory for 2 pulse sums.
+     * @param pulses4 scratch memory for 1 pulse sum.
      */
     static void SKP_Silk_shell_encoder(
         SKP_Silk_range_coder_state sRC,               /* I/O  compressor data structure                   */
         int[]                      pulses0,           /* I    data: nonnegative pulse amplitudes          */
-        int                        pulses0_offset
+        int                        pulses0_offset,
+        int[]                      pulses1,           /* -    scratch memory [ 8 ]                        */
+        int[]                      pulses2,           /* -    scratch memory [ 4 ]                        */
+        int[]                      pulses3,           /* -    scratch memory [ 2 ]                        */
+        int[]                      pulses4            /* -    scratch memory [ 1 ]                        */
     )
     {
-        int[] pulses1 = new int[ 8 ], pulses2 = new int[ 4 ], pulses3 = new int[ 2 ], pulses4 = new int[ 1 ];
 
         /* this function operates on one shell code frame of 16 pulses */
         assert( SHELL_CODEC_FRAME_LENGTH == 16 );
@@ -165,15 +172,20 @@ static void SKP_Silk_shell_encoder(
      * @param pulses0_offset offset of valid data.
      * @param sRC compressor data structure
      * @param pulses4 number of pulses per pulse-subframe
+     * @param pulses1 scratch memory for 8 pulse sums.
+     * @param pulses2 scratch memory for 4 pulse sums.
+     * @param pulses3 scratch memory for 2 pulse sums.
      */
     static void SKP_Silk_shell_decoder(
             int                         []pulses0,           /* O    data: nonnegative pulse amplitudes          */
             int                         pulses0_offset,
             SKP_Silk_range_coder_state  sRC,               /* I/O  compressor data structure                   */
-            final int                   pulses4             /* I    number of pulses per pulse-subframe         */
+            final int                   pulses4,            /* I    number of pulses per pulse-subframe         */
+            int                         []pulses1,           /* -    scratch memory [ 8 ]                        */
+            int                         []pulses2,           /* -    scratch memory [ 4 ]                        */
+            int                         []pulses3            /* -    scratch memory [ 2 ]                        */
     )
     {
-        int[] pulses3 = new int[ 2 ], pulses2 = new int[ 4 ], pulses1 = new int[ 8 ];
 
         /* this function operates on one shell code frame of 16 pulses */
         SKP_assert( SHELL_CODEC_FRAME_LENGTH == 16 );
@@ -28,6 +28,11 @@
      * @param b Pointer to b vector
      * @param x Pointer to x solution vector
      * @param x_offset offset of valid data.
+     * @param L_tmp scratch memory [MAX_MATRIX_SIZE*MAX_MATRIX_SIZE].
+     * @param T scratch memory [MAX_MATRIX_SIZE].
+     * @param Dinv scratch memory [MAX_MATRIX_SIZE].
+     * @param v scratch memory [MAX_MATRIX_SIZE].
+     * @param D scratch memory [MAX_MATRIX_SIZE].
      */
     static void SKP_Silk_solve_LDL_FLP(
               float                 []A,                 /* I/O  Symmetric square matrix, out: reg.      */
@@ -35,15 +40,16 @@ static void SKP_Silk_solve_LDL_FLP(
         final int                   M,                  /* I    Size of matrix                          */
         final float                 []b,                 /* I    Pointer to b vector                     */
               float                 []x,                  /* O    Pointer to x solution vector            */
-              int                   x_offset
+              int                   x_offset,
+              float                 []L_tmp,              /* -    scratch memory                          */
+              float                 []T,                  /* -    scratch memory                          */
+              float                 []Dinv,               /* -    inverse diagonal elements of D          */
+              float                 []v,                  /* -    scratch memory                          */
+              float                 []D                   /* -    scratch memory                          */
     )
     {
         int i;
 //        float L[][] = new float[MAX_MATRIX_SIZE][MAX_MATRIX_SIZE];
-//TODO:change L from two dimension to one dimension.
-        float L_tmp[] = new float[MAX_MATRIX_SIZE*MAX_MATRIX_SIZE];
-        float T[] = new float[MAX_MATRIX_SIZE];
-        float Dinv[] = new float[MAX_MATRIX_SIZE];// inverse diagonal elements of D
 
         assert( M <= MAX_MATRIX_SIZE );
 
@@ -52,7 +58,7 @@ static void SKP_Silk_solve_LDL_FLP(
         where L is lower triangular with ones on diagonal
         ****************************************************/
 //        SKP_Silk_LDL_FLP( A, M, &L[ 0 ][ 0 ], Dinv );
-        SKP_Silk_LDL_FLP(A, A_offset, M, L_tmp, Dinv);
+        SKP_Silk_LDL_FLP(A, A_offset, M, L_tmp, Dinv, v, D);
 
         /****************************************************
         * substitute D*(L^T) = T. ie:
@@ -161,13 +167,17 @@ static void SKP_Silk_SolveWithLowerTriangularWdiagOnes_FLP(
      * @param M Size of Matrix
      * @param L Pointer to Square Upper triangular Matrix
      * @param Dinv Pointer to vector holding the inverse diagonal elements of D
+     * @param v scratch memory [MAX_MATRIX_SIZE]
+     * @param D scratch memory [MAX_MATRIX_SIZE]
      */
     static void SKP_Silk_LDL_FLP(
         float           []A,      /* (I/O) Pointer to Symetric Square Matrix */
         int             A_offset,
         int             M,       /* (I) Size of Matrix */
         float           []L,      /* (I/O) Pointer to Square Upper triangular Matrix */
-        float           []Dinv    /* (I/O) Pointer to vector holding the inverse diagonal elements of D */
+        float           []Dinv,   /* (I/O) Pointer to vector holding the inverse diagonal elements of D */
+        float           []v,      /* (-) scratch memory */
+        float           []D       /* (-) scratch memory */
     )
     {
 /*        SKP_int i, j, k, loop_count, err = 1;
@@ -179,7 +189,6 @@ static void SKP_Silk_LDL_FLP(
         float ptr1[], ptr2[];
         int ptr1_offset, ptr2_offset;
         double temp, diag_min_value;
-        float v[] = new float[ MAX_MATRIX_SIZE ], D[] = new float[ MAX_MATRIX_SIZE ]; // temp arrays
 
         assert( M <= MAX_MATRIX_SIZE );
 
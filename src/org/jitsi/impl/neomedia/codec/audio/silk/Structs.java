@@ -34,7 +34,7 @@
  * @author Jing Dai
  * @author Dingxin Xu
  */
-class SKP_Silk_nsq_state implements Cloneable
+class SKP_Silk_nsq_state
 {
     short[] xq = new short[2 * MAX_FRAME_LENGTH]; /* Buffer for quantized output signal */
     int[]   sLTP_shp_Q10 = new int[ 2 * MAX_FRAME_LENGTH ];
@@ -49,20 +49,28 @@ class SKP_Silk_nsq_state implements Cloneable
     int     rewhite_flag;
 
     /**
-     * override clone mthod.
+     * Copies all fields of another instance into this instance, as a
+     * <tt>memcpy</tt> of the state would.
+     *
+     * @param src the instance to copy from.
      */
-    //TODO:
-    @Override
-    public Object clone()
+    public void copyFrom(SKP_Silk_nsq_state src)
     {
-        SKP_Silk_nsq_state clone = null;
-        try {
-            clone = (SKP_Silk_nsq_state) super.clone();
-        } catch (CloneNotSupportedException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        return clone;
+        System.arraycopy(src.xq, 0, this.xq, 0, this.xq.length);
+        System.arraycopy(
+                src.sLTP_shp_Q10, 0,
+                this.sLTP_shp_Q10, 0,
+                this.sLTP_shp_Q10.length);
+        System.arraycopy(src.sLPC_Q14, 0, this.sLPC_Q14, 0, this.sLPC_Q14.length);
+        System.arraycopy(src.sAR2_Q14, 0, this.sAR2_Q14, 0, this.sAR2_Q14.length);
+
+        this.sLF_AR_shp_Q12 = src.sLF_AR_shp_Q12;
+        this.lagPrev = src.lagPrev;
+        this.sLTP_buf_idx = src.sLTP_buf_idx;
+        this.sLTP_shp_buf_idx = src.sLTP_shp_buf_idx;
+        this.rand_seed = src.rand_seed;
+        this.prev_inv_gain_Q16 = src.prev_inv_gain_Q16;
+        this.rewhite_flag = src.rewhite_flag;
     }
 
     /**
@@ -123,6 +131,18 @@ public void memZero()
     int[]     inv_NL = new int[ VAD_N_BANDS ];          /* Inverse noise energy level in each band                  */
     int[]     NoiseLevelBias = new int[ VAD_N_BANDS ];  /* Noise level estimator bias/offset                        */
     int   counter;                        /* Frame counter used in the initial phase                  */
+
+    /*
+     * Scratch memory of the functions which encode/decode a frame. The C code
+     * keeps it on the stack; it is kept in the state here so that
+     * encoding/decoding does not allocate.
+     */
+
+    /* SKP_Silk_VAD_GetSA_Q8 */
+    int[]     scratch = new int[ 3 * MAX_FRAME_LENGTH / 2 ];
+    short[][] X = new short[ VAD_N_BANDS ][ MAX_FRAME_LENGTH / 2 ];
+    int[]     Xnrg = new int[ VAD_N_BANDS ];
+    int[]     NrgToNoiseRatio_Q8 = new int[ VAD_N_BANDS ];
 }
 
 /**
@@ -328,6 +348,44 @@ public SKP_Silk_NLSF_CB_struct()
     /* Buffers */
     byte[]                      q = new byte[ MAX_FRAME_LENGTH ];      /* pulse signal buffer */
     byte[]                      q_LBRR = new byte[ MAX_FRAME_LENGTH ]; /* pulse signal buffer */
+
+    /*
+     * Scratch memory of the functions which encode a frame. The C code keeps
+     * it on the stack; it is kept in the state here so that encoding does not
+     * allocate.
+     */
+    /* SKP_Silk_NSQ and SKP_Silk_NSQ_del_dec */
+    int[]                       sLTP_Q16 = new int[ 2 * MAX_FRAME_LENGTH ];
+    short[]                     sLTP = new short[ 2 * MAX_FRAME_LENGTH ];
+    int[]                       FiltState = new int[ MAX_LPC_ORDER ];
+    int[]                       x_sc_Q10 = new int[ MAX_FRAME_LENGTH / NB_SUBFR ];
+
+    /* SKP_Silk_NSQ_del_dec */
+    NSQDelDecStruct[]           psDelDec = new NSQDelDecStruct[ DEL_DEC_STATES_MAX ];
+    NSQ_sample_struct[][]       psSampleState = new NSQ_sample_struct[ DEL_DEC_STATES_MAX ][ 2 ];
+    int[]                       smpl_buf_idx_ptr = new int[ 1 ];
+    /*
+     * psDelDec and psSampleState are arrays of references, which have to be
+     * created manually.
+     */
+    {
+        for(int i = 0; i < DEL_DEC_STATES_MAX; i++)
+        {
+            psDelDec[i] = new NSQDelDecStruct();
+            psSampleState[i][0] = new NSQ_sample_struct();
+            psSampleState[i][1] = new NSQ_sample_struct();
+        }
+    }
+
+    /* SKP_Silk_encode_pulses */
+    int[]                       abs_pulses = new int[ MAX_FRAME_LENGTH ];
+    int[]                       sum_pulses = new int[ MAX_NB_SHELL_BLOCKS ];
+    int[]                       nRshifts = new int[ MAX_NB_SHELL_BLOCKS ];
+    int[]                       pulses_comb = new int[ 8 ];
+    int[]                       pulses1 = new int[ 8 ];
+    int[]                       pulses2 = new int[ 4 ];
+    int[]                       pulses3 = new int[ 2 ];
+    int[]                       pulses4 = new int[ 1 ];
 }
 
 /**
@@ -356,6 +414,28 @@ public SKP_Silk_NLSF_CB_struct()
     int[]   pitchL = new int[ NB_SUBFR ];
 
     int     LBRR_usage;                     /* Low bitrate redundancy usage                             */
+
+    /**
+     * set all fields of the instance to zero
+     */
+    public void memZero()
+    {
+        Arrays.fill(this.GainsIndices, 0);
+        Arrays.fill(this.LTPIndex, 0);
+        Arrays.fill(this.NLSFIndices, 0);
+        Arrays.fill(this.pitchL, 0);
+
+        this.contourIndex = 0;
+        this.lagIndex = 0;
+        this.LBRR_usage = 0;
+        this.LTP_scaleIndex = 0;
+        this.NLSFInterpCoef_Q2 = 0;
+        this.PERIndex = 0;
+        this.QuantOffsetType = 0;
+        this.RateLevelIndex = 0;
+        this.Seed = 0;
+        this.sigtype = 0;
+    }
 }
 
 /**
@@ -447,6 +527,56 @@ public SKP_Silk_NLSF_CB_struct()
     SKP_Silk_PLC_struct sPLC = new SKP_Silk_PLC_struct();
     int         lossCnt;
     int         prev_sigtype;                               /* Previous sigtype                                                     */
+
+    /*
+     * Scratch memory of the functions which decode a frame. The C code keeps
+     * it on the stack; it is kept in the state here so that decoding does not
+     * allocate.
+     */
+    /* SKP_Silk_SDK_Decode */
+    int[]                       used_bytes_ptr = new int[ 1 ];
+    short[]                     samplesOut_tmp = new short[ MAX_API_FS_KHZ * FRAME_LENGTH_MS ];
+
+    /* SKP_Silk_decode_frame */
+    SKP_Silk_decoder_control    sDecCtrl = new SKP_Silk_decoder_control();
+    int[]                       Pulses = new int[ MAX_FRAME_LENGTH ];
+
+    /* SKP_Silk_decode_parameters */
+    int[]                       Ix_ptr = new int[ 1 ];
+    int[]                       Ixs = new int[ NB_SUBFR ];
+    int[]                       GainsIndices = new int[ NB_SUBFR ];
+    int[]                       NLSFIndices = new int[ NLSF_MSVQ_MAX_CB_STAGES ];
+    int[]                       pNLSF_Q15 = new int[ MAX_LPC_ORDER ];
+    int[]                       pNLSF0_Q15 = new int[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_decode_pulses */
+    int[]                       sum_pulses = new int[ MAX_NB_SHELL_BLOCKS ];
+    int[]                       nLshifts = new int[ MAX_NB_SHELL_BLOCKS ];
+    int[]                       pulses1 = new int[ 8 ];
+    int[]                       pulses2 = new int[ 4 ];
+    int[]                       pulses3 = new int[ 2 ];
+
+    /* SKP_Silk_decode_core and SKP_Silk_PLC_conceal */
+    short[]                     A_Q12_tmp = new short[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_decode_core */
+    short[]                     sLTP = new short[ MAX_FRAME_LENGTH ];
+    int[]                       vec_Q10 = new int[ MAX_FRAME_LENGTH / NB_SUBFR ];
+    int[]                       FiltState = new int[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_PLC_conceal and SKP_Silk_PLC_glue_frames */
+    short[]                     exc_buf = new short[ MAX_FRAME_LENGTH ];
+    int[]                       sig_Q10 = new int[ MAX_FRAME_LENGTH ];
+    int[]                       energy_ptr = new int[ 1 ];
+    int[]                       shift_ptr = new int[ 1 ];
+
+    /* SKP_Silk_CNG */
+    short[]                     LPC_buf = new short[ MAX_LPC_ORDER ];
+    short[]                     CNG_sig = new short[ MAX_FRAME_LENGTH ];
+    int[]                       CNG_rand_seed_ptr = new int[ 1 ];
+
+    /* SKP_Silk_NLSF2A_stable and SKP_Silk_LPC_inverse_pred_gain */
+    SKP_Silk_LPC_scratch_struct sLPCScratch = new SKP_Silk_LPC_scratch_struct();
 }
 
  /**
@@ -475,4 +605,44 @@ public SKP_Silk_NLSF_CB_struct()
     int             QuantOffsetType;
     int             sigtype;
     int             NLSFInterpCoef_Q2;
+
+    /**
+     * set all fields of the instance to zero
+     */
+    public void memZero()
+    {
+        Arrays.fill(this.Gains_Q16, 0);
+        Arrays.fill(this.LTPCoef_Q14, (short)0);
+        Arrays.fill(this.PredCoef_Q12[0], (short)0);
+        Arrays.fill(this.PredCoef_Q12[1], (short)0);
+        Arrays.fill(this.pitchL, 0);
+
+        this.LTP_scale_Q14 = 0;
+        this.NLSFInterpCoef_Q2 = 0;
+        this.PERIndex = 0;
+        this.QuantOffsetType = 0;
+        this.RateLevelIndex = 0;
+        this.Seed = 0;
+        this.sigtype = 0;
+    }
+}
+
+/**
+ * Scratch memory of the conversions between LPC coefficients and NLSFs, which
+ * both the encoder and the decoder use while coding a frame.
+ */
+class SKP_Silk_LPC_scratch_struct
+{
+    /* SKP_Silk_NLSF2A and SKP_Silk_A2NLSF */
+    int[]   P = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC / 2 + 1 ];
+    int[]   Q = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC / 2 + 1 ];
+    int[][] PQ = { P, Q };
+
+    /* SKP_Silk_NLSF2A */
+    int[]   cos_LSF_Q20 = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    int[]   a_int32 = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+
+    /* SKP_Silk_LPC_inverse_pred_gain */
+    int[][] Atmp_QA = new int[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    int[]   invGain_Q30 = new int[ 1 ];
 }
@@ -248,6 +248,140 @@ void    NoiseShapingQuantizer( SKP_Silk_encoder_state psEnc, SKP_Silk_encoder_co
     float                           inBandFEC_SNR_comp;         /* Compensation to SNR_DB when using inband FEC Voiced */
 
     SKP_Silk_NLSF_CB_FLP[]  psNLSF_CB_FLP = new SKP_Silk_NLSF_CB_FLP[ 2 ];        /* Pointers to voiced/unvoiced NLSF codebooks */
+
+    /*
+     * Scratch memory of the functions which encode a frame. The C code keeps
+     * it on the stack; it is kept in the state here so that encoding does not
+     * allocate.
+     */
+    /* SKP_Silk_SDK_Encode */
+    short[]                         MaxBytesOut_ptr = new short[ 1 ];
+
+    /* SKP_Silk_encode_frame_FLP */
+    SKP_Silk_encoder_control_FLP    sEncCtrl = new SKP_Silk_encoder_control_FLP();
+    short[]                         pIn_HP = new short[ MAX_FRAME_LENGTH ];
+    short[]                         pIn_HP_LP = new short[ MAX_FRAME_LENGTH ];
+    float[]                         xfw = new float[ MAX_FRAME_LENGTH ];
+    float[]                         res_pitch = new float[ 2 * MAX_FRAME_LENGTH + LA_PITCH_MAX ];
+    byte[]                          LBRRpayload = new byte[ MAX_ARITHM_BYTES ];
+    short[]                         nBytesLBRR = new short[ 1 ];
+
+    /* SKP_Silk_LBRR_encode_FLP */
+    int[]                           LBRR_Gains_Q16 = new int[ NB_SUBFR ];
+    int[]                           TempGainsIndices = new int[ NB_SUBFR ];
+    float[]                         TempGains = new float[ NB_SUBFR ];
+    int[]                           LBRRprevLastGainIndex_ptr = new int[ 1 ];
+
+    /* SKP_Silk_find_pitch_lags_FLP */
+    float[]                         pitch_auto_corr = new float[ FIND_PITCH_LPC_ORDER_MAX + 1 ];
+    float[]                         pitch_A = new float[ FIND_PITCH_LPC_ORDER_MAX ];
+    float[]                         refl_coef = new float[ FIND_PITCH_LPC_ORDER_MAX ];
+    float[]                         Wsig = new float[ FIND_PITCH_LPC_WIN_MAX ];
+    float[][]                       schur_C = new float[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ][ 2 ];
+    float[]                         k2a_Atmp = new float[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    int[]                           lagIndex_ptr = new int[ 1 ];
+    int[]                           contourIndex_ptr = new int[ 1 ];
+    float[]                         LTPCorr_ptr = new float[ 1 ];
+    SKP_Silk_pitch_analysis_scratch_FLP sPitchScratch = new SKP_Silk_pitch_analysis_scratch_FLP();
+
+    /* SKP_Silk_noise_shape_analysis_FLP */
+    float[]                         x_windowed = new float[ SHAPE_LPC_WIN_MAX ];
+    float[]                         shape_auto_corr = new float[ SHAPE_LPC_ORDER_MAX + 1 ];
+    float[]                         invGain_ptr = new float[ 1 ];
+    float[][]                       inv_pred_gain_Atmp = new float[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+
+    /* SKP_Silk_prefilter_FLP */
+    float[]                         prefilt_B = new float[ 2 ];
+    float[]                         AR1_shp = new float[ NB_SUBFR * SHAPE_LPC_ORDER_MAX ];
+    float[]                         HarmShapeFIR = new float[ 3 ];
+    float[]                         st_res = new float[ MAX_FRAME_LENGTH / NB_SUBFR + MAX_LPC_ORDER ];
+
+    /* SKP_Silk_process_gains_FLP */
+    int[]                           pGains_Q16 = new int[ NB_SUBFR ];
+    int[]                           LastGainIndex_ptr = new int[ 1 ];
+
+    /* SKP_Silk_find_pred_coefs_FLP */
+    float[]                         WLTP = new float[ NB_SUBFR * LTP_ORDER * LTP_ORDER ];
+    float[]                         invGains = new float[ NB_SUBFR ];
+    float[]                         Wght = new float[ NB_SUBFR ];
+    float[]                         NLSF = new float[ MAX_LPC_ORDER ];
+    float[]                         LPC_in_pre = new float[ NB_SUBFR * MAX_LPC_ORDER + MAX_FRAME_LENGTH ];
+    float[]                         LTPredCodGain_ptr = new float[ 1 ];
+    int[]                           PERIndex_ptr = new int[ 1 ];
+    int[]                           NLSFInterpCoef_Q2_ptr = new int[ 1 ];
+
+    /* SKP_Silk_find_LTP_FLP */
+    float[]                         LTP_d = new float[ NB_SUBFR ];
+    float[]                         LTP_delta_b = new float[ LTP_ORDER ];
+    float[]                         LTP_w = new float[ NB_SUBFR ];
+    float[]                         LTP_nrg = new float[ NB_SUBFR ];
+    float[]                         LTP_Rr = new float[ LTP_ORDER ];
+    float[]                         LTP_rr = new float[ NB_SUBFR ];
+
+    /* SKP_Silk_solve_LDL_FLP */
+    float[]                         LDL_L_tmp = new float[ MAX_MATRIX_SIZE * MAX_MATRIX_SIZE ];
+    float[]                         LDL_T = new float[ MAX_MATRIX_SIZE ];
+    float[]                         LDL_Dinv = new float[ MAX_MATRIX_SIZE ];
+    float[]                         LDL_v = new float[ MAX_MATRIX_SIZE ];
+    float[]                         LDL_D = new float[ MAX_MATRIX_SIZE ];
+
+    /* SKP_Silk_quant_LTP_gains_FLP */
+    int[]                           temp_idx = new int[ NB_SUBFR ];
+    float[]                         rate_dist_subfr_ptr = new float[ 1 ];
+
+    /* SKP_Silk_find_LPC_FLP, SKP_Silk_residual_energy_FLP */
+    float[]                         LPC_a = new float[ MAX_LPC_ORDER ];
+    float[]                         LPC_a_tmp = new float[ MAX_LPC_ORDER ];
+    float[]                         LPC_NLSF0 = new float[ MAX_LPC_ORDER ];
+    float[]                         LPC_res = new float[ ( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2 ];
+
+    /* SKP_Silk_burg_modified_FLP */
+    double[]                        C_first_row = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    double[]                        C_last_row = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    double[]                        CAf = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
+    double[]                        CAb = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
+    double[]                        Af = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+
+    /* SKP_Silk_process_NLSFs_FLP */
+    float[]                         pNLSFW = new float[ MAX_LPC_ORDER ];
+    float[]                         pNLSF0_temp = new float[ MAX_LPC_ORDER ];
+    float[]                         pNLSFW0_temp = new float[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_NLSF_MSVQ_encode_FLP */
+    float[]                         pNLSF_in = new float[ MAX_LPC_ORDER ];
+    float[]                         pRateDist = new float[ NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED() ];
+    float[]                         pRate = new float[ MAX_NLSF_MSVQ_SURVIVORS ];
+    float[]                         pRate_new = new float[ MAX_NLSF_MSVQ_SURVIVORS ];
+    int[]                           pTempIndices = new int[ MAX_NLSF_MSVQ_SURVIVORS ];
+    int[]                           pPath = new int[ MAX_NLSF_MSVQ_SURVIVORS * NLSF_MSVQ_MAX_CB_STAGES ];
+    int[]                           pPath_new = new int[ MAX_NLSF_MSVQ_SURVIVORS * NLSF_MSVQ_MAX_CB_STAGES ];
+    float[]                         pRes = new float[ MAX_NLSF_MSVQ_SURVIVORS * MAX_LPC_ORDER ];
+    float[]                         pRes_new = new float[ MAX_NLSF_MSVQ_SURVIVORS * MAX_LPC_ORDER ];
+
+    /* SKP_Silk_A2NLSF_FLP, SKP_Silk_NLSF2A_stable_FLP, SKP_Silk_NLSF_stabilize_FLP, SKP_Silk_interpolate_wrapper_FLP */
+    SKP_Silk_LPC_scratch_struct     sLPCScratch = new SKP_Silk_LPC_scratch_struct();
+    int[]                           NLSF_fix = new int[ MAX_LPC_ORDER ];
+    int[]                           a_fix_Q16 = new int[ MAX_LPC_ORDER ];
+    short[]                         a_fix_Q12 = new short[ MAX_LPC_ORDER ];
+    int[]                           ndelta_min_Q15 = new int[ MAX_LPC_ORDER + 1 ];
+    int[]                           x0_int = new int[ MAX_LPC_ORDER ];
+    int[]                           x1_int = new int[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_VAD_FLP */
+    int[]                           SA_Q8 = new int[ 1 ];
+    int[]                           SNR_dB_Q7 = new int[ 1 ];
+    int[]                           Tilt_Q15 = new int[ 1 ];
+    int[]                           Quality_Bands_Q15 = new int[ VAD_N_BANDS ];
+
+    /* SKP_Silk_NSQ_wrapper_FLP */
+    short[]                         x_16 = new short[ MAX_FRAME_LENGTH ];
+    int[]                           NSQ_Gains_Q16 = new int[ NB_SUBFR ];
+    short[]                         NSQ_PredCoef_Q12 = new short[ 2 * MAX_LPC_ORDER ];
+    short[]                         NSQ_LTPCoef_Q14 = new short[ LTP_ORDER * NB_SUBFR ];
+    short[]                         NSQ_AR2_Q13 = new short[ NB_SUBFR * SHAPE_LPC_ORDER_MAX ];
+    int[]                           NSQ_LF_shp_Q14 = new int[ NB_SUBFR ];
+    int[]                           NSQ_Tilt_Q14 = new int[ NB_SUBFR ];
+    int[]                           NSQ_HarmShapeGain_Q14 = new int[ NB_SUBFR ];
 }
 
 /**
@@ -307,6 +441,49 @@ void    NoiseShapingQuantizer( SKP_Silk_encoder_state psEnc, SKP_Silk_encoder_co
     float[]                   input_quality_bands = new float[ VAD_N_BANDS ];
     float                   input_tilt;
     float[]                   ResNrg = new float[ NB_SUBFR ];                 /* Residual energy per subframe */
+
+    /**
+     * set all fields of the instance to zero
+     */
+    public void memZero()
+    {
+        sCmn.memZero();
+
+        Arrays.fill(this.AR1, 0);
+        Arrays.fill(this.AR2, 0);
+        Arrays.fill(this.AR2_Q13, (short)0);
+        Arrays.fill(this.Gains, 0);
+        Arrays.fill(this.Gains_Q16, 0);
+        Arrays.fill(this.GainsPre, 0);
+        Arrays.fill(this.HarmBoost, 0);
+        Arrays.fill(this.HarmShapeGain, 0);
+        Arrays.fill(this.HarmShapeGain_Q14, 0);
+        Arrays.fill(this.input_quality_bands, 0);
+        Arrays.fill(this.LF_AR_shp, 0);
+        Arrays.fill(this.LF_MA_shp, 0);
+        Arrays.fill(this.LF_shp_Q14, 0);
+        Arrays.fill(this.LTPCoef, 0);
+        Arrays.fill(this.LTPCoef_Q14, (short)0);
+        Arrays.fill(this.PredCoef[0], 0);
+        Arrays.fill(this.PredCoef[1], 0);
+        Arrays.fill(this.PredCoef_Q12[0], (short)0);
+        Arrays.fill(this.PredCoef_Q12[1], (short)0);
+        Arrays.fill(this.ResNrg, 0);
+        Arrays.fill(this.Tilt, 0);
+        Arrays.fill(this.Tilt_Q14, 0);
+
+        this.coding_quality = 0;
+        this.current_SNR_dB = 0;
+        this.input_quality = 0;
+        this.input_tilt = 0;
+        this.Lambda = 0;
+        this.Lambda_Q10 = 0;
+        this.LTP_scale = 0;
+        this.LTP_scale_Q14 = 0;
+        this.LTPredCodGain = 0;
+        this.pitch_freq_low_Hz = 0;
+        this.sparseness = 0;
+    }
 }
 
 interface NoiseShapingQuantizerFP
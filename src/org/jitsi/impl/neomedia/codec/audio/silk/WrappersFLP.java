@@ -31,20 +31,21 @@
 
     /* Convert AR filter coefficients to NLSF parameters */
     static void SKP_Silk_A2NLSF_FLP(
+        SKP_Silk_encoder_state_FLP  psEnc,             /* I/O  Encoder state FLP                       */
               float[]               pNLSF,             /* O    NLSF vector      [ LPC_order ]          */
               float[]               pAR,               /* I    LPC coefficients [ LPC_order ]          */
         final int                   LPC_order          /* I    LPC order                               */
     )
     {
         int   i;
-        int[]   NLSF_fix = new int[  MAX_LPC_ORDER ];
-        int[] a_fix_Q16 = new int[ MAX_LPC_ORDER ];
+        int[]   NLSF_fix = psEnc.NLSF_fix;
+        int[] a_fix_Q16 = psEnc.a_fix_Q16;
 
         for( i = 0; i < LPC_order; i++ )
         {
             a_fix_Q16[ i ] = SigProcFLP.SKP_float2int( pAR[ i ] * 65536.0f );
         }
-        A2NLSF.SKP_Silk_A2NLSF( NLSF_fix, a_fix_Q16, LPC_order );
+        A2NLSF.SKP_Silk_A2NLSF( NLSF_fix, a_fix_Q16, LPC_order, psEnc.sLPCScratch );
 
         for( i = 0; i < LPC_order; i++ )
         {
@@ -54,21 +55,22 @@ static void SKP_Silk_A2NLSF_FLP(
 
     /* Convert LSF parameters to AR prediction filter coefficients */
     static void SKP_Silk_NLSF2A_stable_FLP(
+        SKP_Silk_encoder_state_FLP  psEnc,             /* I/O  Encoder state FLP                       */
               float []                pAR,               /* O    LPC coefficients [ LPC_order ]          */
               float[]                 pNLSF,             /* I    NLSF vector      [ LPC_order ]          */
         final int                     LPC_order          /* I    LPC order                               */
     )
     {
         int   i;
-        int[]   NLSF_fix = new int[  MAX_LPC_ORDER ];
-        short[] a_fix_Q12 = new short[ MAX_LPC_ORDER ];
+        int[]   NLSF_fix = psEnc.NLSF_fix;
+        short[] a_fix_Q12 = psEnc.a_fix_Q12;
 
         for( i = 0; i < LPC_order; i++ )
         {
             NLSF_fix[ i ] = SigProcFLP.SKP_float2int( pNLSF[ i ] * 32768.0f );
         }
 
-        NLSF2AStable.SKP_Silk_NLSF2A_stable( a_fix_Q12, NLSF_fix, LPC_order );
+        NLSF2AStable.SKP_Silk_NLSF2A_stable( a_fix_Q12, NLSF_fix, LPC_order, psEnc.sLPCScratch );
 
         for( i = 0; i < LPC_order; i++ )
         {
@@ -79,13 +81,14 @@ static void SKP_Silk_NLSF2A_stable_FLP(
 
     /* LSF stabilizer, for a single input data vector */
     static void SKP_Silk_NLSF_stabilize_FLP(
+        SKP_Silk_encoder_state_FLP  psEnc,             /* I/O  Encoder state FLP                       */
               float[]                 pNLSF,             /* I/O  (Un)stable NLSF vector [ LPC_order ]    */
               float[]                 pNDelta_min,       /* I    Normalized delta min vector[LPC_order+1]*/
         final int                     LPC_order          /* I    LPC order                               */
     )
     {
         int   i;
-        int[]   NLSF_Q15 = new int[ MAX_LPC_ORDER ], ndelta_min_Q15 = new int[ MAX_LPC_ORDER + 1 ];
+        int[]   NLSF_Q15 = psEnc.NLSF_fix, ndelta_min_Q15 = psEnc.ndelta_min_Q15;
 
         for( i = 0; i < LPC_order; i++ )
         {
@@ -105,6 +108,7 @@ static void SKP_Silk_NLSF_stabilize_FLP(
 
     /* Interpolation function with fixed point rounding */
     static void SKP_Silk_interpolate_wrapper_FLP(
+        SKP_Silk_encoder_state_FLP  psEnc,             /* I/O  Encoder state FLP                       */
               float                 xi[],               /* O    Interpolated vector                     */
               float                 x0[],               /* I    First vector                            */
               float                 x1[],               /* I    Second vector                           */
@@ -112,7 +116,7 @@ static void SKP_Silk_interpolate_wrapper_FLP(
         final int                   d                   /* I    Number of parameters                    */
     )
     {
-        int[] x0_int = new int[ MAX_LPC_ORDER ], x1_int = new int[ MAX_LPC_ORDER ], xi_int = new int[ MAX_LPC_ORDER ];
+        int[] x0_int = psEnc.x0_int, x1_int = psEnc.x1_int, xi_int = psEnc.NLSF_fix;
         int ifact_Q2 = ( int )( ifact * 4.0f );
         int i;
 
@@ -143,8 +147,8 @@ static int SKP_Silk_VAD_FLP(
     )
     {
         int i, ret;
-        int[] SA_Q8 = new int[1], SNR_dB_Q7 = new int[1], Tilt_Q15 = new int[1];
-        int[] Quality_Bands_Q15 = new int[ VAD_N_BANDS ];
+        int[] SA_Q8 = psEnc.SA_Q8, SNR_dB_Q7 = psEnc.SNR_dB_Q7, Tilt_Q15 = psEnc.Tilt_Q15;
+        int[] Quality_Bands_Q15 = psEnc.Quality_Bands_Q15;
 
         ret = VAD.SKP_Silk_VAD_GetSA_Q8( psEnc.sCmn.sVAD, SA_Q8, SNR_dB_Q7, Quality_Bands_Q15, Tilt_Q15,
             pIn,pIn_offset, psEnc.sCmn.frame_length );
@@ -174,20 +178,21 @@ static void SKP_Silk_NSQ_wrapper_FLP(
     {
         int     i, j;
         float   tmp_float;
-        short[]   x_16 = new short[ MAX_FRAME_LENGTH ];
+        short[]   x_16 = psEnc.x_16;
         /* Prediction and coding parameters */
-        int[]   Gains_Q16 = new int[ NB_SUBFR ];
-        short[][] PredCoef_Q12 = new short[ 2 ][ MAX_LPC_ORDER ];
-        short[]   LTPCoef_Q14 = new short[ LTP_ORDER * NB_SUBFR ];
+        int[]   Gains_Q16 = psEnc.NSQ_Gains_Q16;
+        /* Both sets of coefficients, one after the other, as NSQ takes them */
+        short[]   PredCoef_Q12 = psEnc.NSQ_PredCoef_Q12;
+        short[]   LTPCoef_Q14 = psEnc.NSQ_LTPCoef_Q14;
         int     LTP_scale_Q14;
 
         /* Noise shaping parameters */
         /* Testing */
-        short[] AR2_Q13 = new short[ NB_SUBFR * SHAPE_LPC_ORDER_MAX ];
-        int[]   LF_shp_Q14 = new int[ NB_SUBFR ];         /* Packs two int16 coefficients per int32 value             */
+        short[] AR2_Q13 = psEnc.NSQ_AR2_Q13;
+        int[]   LF_shp_Q14 = psEnc.NSQ_LF_shp_Q14;         /* Packs two int16 coefficients per int32 value             */
         int     Lambda_Q10;
-        int[]     Tilt_Q14 = new int[ NB_SUBFR ];
-        int[]     HarmShapeGain_Q14 = new int[ NB_SUBFR ];
+        int[]     Tilt_Q14 = psEnc.NSQ_Tilt_Q14;
+        int[]     HarmShapeGain_Q14 = psEnc.NSQ_HarmShapeGain_Q14;
 
         /* Convert control struct to fix control struct */
         /* Noise shape parameters */
@@ -352,7 +357,7 @@ static void SKP_Silk_NSQ_wrapper_FLP(
         {
             for( i = 0; i < MAX_LPC_ORDER; i++ )
             {
-                PredCoef_Q12[ j ][ i ] = ( short )SigProcFLP.SKP_float2int( psEncCtrl.PredCoef[ j ][ i ] * 4096.0f );
+                PredCoef_Q12[ j * MAX_LPC_ORDER + i ] = ( short )SigProcFLP.SKP_float2int( psEncCtrl.PredCoef[ j ][ i ] * 4096.0f );
             }
         }
 
@@ -512,20 +517,13 @@ static void SKP_Silk_NSQ_wrapper_FLP(
         /*TEST END************************************************************************/
 
         /* Call NSQ */
-        short[] PredCoef_Q12_dim1_tmp= new short[PredCoef_Q12.length * PredCoef_Q12[0].length];
-        int PredCoef_Q12_offset = 0;
-        for(int PredCoef_Q12_i = 0; PredCoef_Q12_i < PredCoef_Q12.length; PredCoef_Q12_i++)
-        {
-            System.arraycopy(PredCoef_Q12[PredCoef_Q12_i],0, PredCoef_Q12_dim1_tmp, PredCoef_Q12_offset, PredCoef_Q12[PredCoef_Q12_i].length);
-            PredCoef_Q12_offset += PredCoef_Q12[PredCoef_Q12_i].length;
-        }
         if( useLBRR!=0 )
         {
 //            psEnc.NoiseShapingQuantizer( psEnc.sCmn, psEncCtrl.sCmn, psEnc.sNSQ_LBRR,
 //                x_16, q, psEncCtrl.sCmn.NLSFInterpCoef_Q2, PredCoef_Q12[ 0 ], LTPCoef_Q14, AR2_Q13,
 //                HarmShapeGain_Q14, Tilt_Q14, LF_shp_Q14, Gains_Q16, Lambda_Q10, LTP_scale_Q14 );\
                psEnc.NoiseShapingQuantizer( psEnc.sCmn, psEncCtrl.sCmn, psEnc.sNSQ_LBRR,
-                    x_16, q, psEncCtrl.sCmn.NLSFInterpCoef_Q2, PredCoef_Q12_dim1_tmp, LTPCoef_Q14, AR2_Q13,
+                    x_16, q, psEncCtrl.sCmn.NLSFInterpCoef_Q2, PredCoef_Q12, LTPCoef_Q14, AR2_Q13,
                     HarmShapeGain_Q14, Tilt_Q14, LF_shp_Q14, Gains_Q16, Lambda_Q10, LTP_scale_Q14 );
 //             psEnc.NoiseShapingQuantizer( &psEnc->sCmn, &psEncCtrl->sCmn, &psEnc->sNSQ_LBRR,
 //          x_16, q, psEncCtrl->sCmn.NLSFInterpCoef_Q2, PredCoef_Q12[ 0 ], LTPCoef_Q14, AR2_Q13,
@@ -537,7 +535,7 @@ static void SKP_Silk_NSQ_wrapper_FLP(
 //                x_16, q, psEncCtrl.sCmn.NLSFInterpCoef_Q2, PredCoef_Q12[ 0 ], LTPCoef_Q14, AR2_Q13,
 //                HarmShapeGain_Q14, Tilt_Q14, LF_shp_Q14, Gains_Q16, Lambda_Q10, LTP_scale_Q14 );
                psEnc.NoiseShapingQuantizer( psEnc.sCmn, psEncCtrl.sCmn, psEnc.sNSQ,
-                    x_16, q, psEncCtrl.sCmn.NLSFInterpCoef_Q2, PredCoef_Q12_dim1_tmp, LTPCoef_Q14, AR2_Q13,
+                    x_16, q, psEncCtrl.sCmn.NLSFInterpCoef_Q2, PredCoef_Q12, LTPCoef_Q14, AR2_Q13,
                     HarmShapeGain_Q14, Tilt_Q14, LF_shp_Q14, Gains_Q16, Lambda_Q10, LTP_scale_Q14 );
 //               psEnc.NoiseShapingQuantizer( &psEnc->sCmn, &psEncCtrl->sCmn, &psEnc->sNSQ,
 //                    x_16, q, psEncCtrl->sCmn.NLSFInterpCoef_Q2, PredCoef_Q12[ 0 ], LTPCoef_Q14, AR2_Q13,
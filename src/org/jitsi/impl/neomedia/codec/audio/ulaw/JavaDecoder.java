@@ -20,13 +20,11 @@
 
 import com.sun.media.controls.*;
 
+import org.jitsi.impl.neomedia.kernels.*;
+
 public class JavaDecoder
     extends com.ibm.media.codec.audio.AudioCodec
 {
-    static private final byte[] lutTableH = new byte[256];
-
-    static private final byte[] lutTableL = new byte[256];
-
     public JavaDecoder()
     {
         supportedInputFormats = new AudioFormat[]
@@ -64,32 +62,6 @@ protected Format[] getMatchingOutputFormats(Format in)
         return supportedOutputFormats;
     }
 
-    private void initTables()
-    {
-        for (int i = 0; i < 256; i++)
-        {
-            int input = ~i;
-            int mantissa = ((input & 0xf) << 3) + 0x84;
-            int segment = (input & 0x70) >> 4;
-            int value = mantissa << segment;
-
-            value -= 0x84;
-
-            if ((input & 0x80) != 0)
-                value = -value;
-
-            lutTableL[i] = (byte) value;
-            lutTableH[i] = (byte) (value >> 8);
-        }
-    }
-
-    /** Initializes the codec. */
-    @Override
-    public void open()
-    {
-        initTables();
-    }
-
     /** Decodes the buffer */
     public int process(Buffer inputBuffer, Buffer outputBuffer)
     {
@@ -107,14 +79,9 @@ public int process(Buffer inputBuffer, Buffer outputBuffer)
         int inpLength = inputBuffer.getLength();
         int outLength = 2 * inpLength;
 
-        int inOffset = inputBuffer.getOffset();
-        int outOffset = outputBuffer.getOffset();
-        for (int i = 0; i < inpLength; i++)
-        {
-            int temp = inData[inOffset++] & 0xff;
-            outData[outOffset++] = lutTableL[temp];
-            outData[outOffset++] = lutTableH[temp];
-        }
+        G711Kernels.ulawToLinear(
+                inData, inputBuffer.getOffset(), inpLength,
+                outData, outputBuffer.getOffset());
 
         updateOutput(outputBuffer, outputFormat, outLength,
             outputBuffer.getOffset());
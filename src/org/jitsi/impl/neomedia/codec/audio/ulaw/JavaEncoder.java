@@ -18,6 +18,8 @@
 import javax.media.*;
 import javax.media.format.*;
 
+import org.jitsi.impl.neomedia.kernels.*;
+
 public class JavaEncoder
     extends com.ibm.media.codec.audio.AudioCodec
 {
@@ -77,6 +79,16 @@ private int calculateOutputSize(int inputLength)
     private void convert(byte[] input, int inputOffset, int inputLength,
             byte[] outData, int outputOffset)
     {
+        if ((16 == inputSampleSize) && !downmix)
+        {
+            G711Kernels.linearToUlaw(
+                    input, inputOffset, inputLength,
+                    /* bigEndian */ msbOffset == 0,
+                    /* signed */ inputBias == 0,
+                    outData, outputOffset);
+            return;
+        }
+
         int sample, signBit, inputSample;
         int i;
 
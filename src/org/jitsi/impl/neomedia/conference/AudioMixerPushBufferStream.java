@@ -25,7 +25,9 @@
 import javax.media.protocol.*;
 
 import org.jitsi.impl.neomedia.control.*;
+import org.jitsi.impl.neomedia.kernels.*;
 import org.jitsi.impl.neomedia.protocol.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.util.*;
 
 /**
@@ -51,6 +53,29 @@
     private static final Logger logger
         = Logger.getLogger(AudioMixerPushBufferStream.class);
 
+    /**
+     * The name of the <tt>boolean</tt> <tt>ConfigurationService</tt> property
+     * which indicates whether {@link #MIX_MINUS} is enabled.
+     */
+    private static final String MIX_MINUS_PNAME
+        = AudioMixer.class.getName() + ".MIX_MINUS";
+
+    /**
+     * Whether the audio is mixed in mix-minus mode. In it, the input audio
+     * samples are summed once per read into a full mix and the output of each
+     * <tt>AudioMixingPushBufferStream</tt> is derived from the full mix by
+     * subtracting the contributions which are to be excluded from it, i.e. the
+     * mixing is linear in the number of streams rather than quadratic. The
+     * sum is clipped rather than mixed with the saturating formula of
+     * {@link AudioMixingPushBufferStream}. The default value is
+     * <tt>false</tt>.
+     */
+    private static final boolean MIX_MINUS
+        = ConfigUtils.getBoolean(
+                LibJitsi.getConfigurationService(),
+                MIX_MINUS_PNAME,
+                false);
+
     /**
      * The <tt>AudioMixer</tt> which created this
      * <tt>AudioMixerPushBufferStream</tt>.
@@ -84,6 +109,13 @@
      */
     private AudioFormat lastReadInFormat;
 
+    /**
+     * The sum of the input audio samples computed by the last invocation of
+     * {@link #mix(short[][], int)} in mix-minus mode. Cached in order to reduce
+     * allocations and garbage collection.
+     */
+    private int[] mix;
+
     /**
      * The <tt>AudioFormat</tt> of the data this instance outputs.
      */
@@ -897,6 +929,38 @@ void removeOutStream(AudioMixingPushBufferStream outStream)
         }
     }
 
+    /**
+     * Sums a specific set of audio samples into a full mix for the purposes of
+     * mix-minus. The returned array is reused by subsequent invocations and
+     * its elements beyond <tt>maxInSampleCount</tt> are zero.
+     *
+     * @param inSamples the set of audio samples to sum
+     * @param maxInSampleCount the maximum number of audio samples available
+     * in <tt>inSamples</tt>
+     * @return the sum of <tt>inSamples</tt> which is not clipped
+     */
+    private int[] mix(short[][] inSamples, int maxInSampleCount)
+    {
+        int[] mix = this.mix;
+
+        if ((mix == null) || (mix.length < maxInSampleCount))
+            this.mix = mix = new int[maxInSampleCount];
+        else
+            Arrays.fill(mix, 0);
+
+        for (short[] inStreamSamples : inSamples)
+        {
+            if (inStreamSamples == null)
+                continue;
+
+            int inStreamSampleCount
+                = Math.min(inStreamSamples.length, maxInSampleCount);
+
+            AudioKernels.add(mix, inStreamSamples, inStreamSampleCount);
+        }
+        return mix;
+    }
+
     /**
      * Pushes a copy of a specific set of input audio samples to a specific
      * <tt>AudioMixingPushBufferStream</tt> for audio mixing. Audio samples read
@@ -912,16 +976,27 @@ void removeOutStream(AudioMixingPushBufferStream outStream)
      * <tt>outStream</tt> for audio mixing
      * @param maxInSampleCount the maximum number of audio samples available
      * in <tt>inSamples</tt>
+     * @param mix the sum of all audio samples of <tt>inSampleDesc</tt> if
+     * the audio is mixed in mix-minus mode; otherwise, <tt>null</tt>. In
+     * mix-minus mode, <tt>outStream</tt> is pushed <tt>mix</tt> and the
+     * audio samples to be subtracted from and added to it instead of the
+     * audio samples to be mixed.
      */
     private void setInSamples(
             AudioMixingPushBufferStream outStream,
             InSampleDesc inSampleDesc,
-            int maxInSampleCount)
+            int maxInSampleCount,
+            int[] mix)
     {
         short[][] inSamples = inSampleDesc.inSamples;
         InStreamDesc[] inStreams = inSampleDesc.inStreams;
+        short[][] minusSamples = null;
+        int minusCount = 0;
+        short[] plusSamples = null;
 
-        inSamples = inSamples.clone();
+        // In mix-minus mode, inSamples are only read.
+        if (mix == null)
+            inSamples = inSamples.clone();
 
         CaptureDevice captureDevice = audioMixer.captureDevice;
         AudioMixingPushBufferDataSource outDataSource
@@ -949,14 +1024,39 @@ private void setInSamples(
                             inStreamFormat.getSampleRate(),
                             inStreamFormat.getSampleSizeInBits());
 
-                inSamples[i] = nextToneSignal;
+                if (mix == null)
+                {
+                    inSamples[i] = nextToneSignal;
+                }
+                else if (inSamples[i] != null)
+                {
+                    if (minusSamples == null)
+                    {
+                        minusSamples
+                            = outStream.allocateMinusSamples(inSamples.length);
+                    }
+                    minusSamples[minusCount++] = inSamples[i];
+                }
+                plusSamples = nextToneSignal;
                 if (maxInSampleCount < nextToneSignal.length)
                     maxInSampleCount = nextToneSignal.length;
             }
             else if (outDataSource.equals(inStreamDesc.getOutDataSource())
                     || (outDataSourceIsMute && (inDataSource == captureDevice)))
             {
-                inSamples[i] = null;
+                if (mix == null)
+                {
+                    inSamples[i] = null;
+                }
+                else if (inSamples[i] != null)
+                {
+                    if (minusSamples == null)
+                    {
+                        minusSamples
+                            = outStream.allocateMinusSamples(inSamples.length);
+                    }
+                    minusSamples[minusCount++] = inSamples[i];
+                }
             }
 
             /*
@@ -965,7 +1065,7 @@ else if (outDataSource.equals(inStreamDesc.getOutDataSource())
              * optimize determining the number of contributing streams later on
              * and, consequently, the mixing.
              */
-            short[] inStreamSamples = inSamples[i];
+            short[] inStreamSamples = (mix == null) ? inSamples[i] : null;
 
             if (inStreamSamples != null)
             {
@@ -978,10 +1078,30 @@ else if (outDataSource.equals(inStreamDesc.getOutDataSource())
             }
         }
 
-        outStream.setInSamples(
-                inSamples,
-                maxInSampleCount,
-                inSampleDesc.getTimeStamp());
+        if (mix == null)
+        {
+            outStream.setInSamples(
+                    inSamples,
+                    maxInSampleCount,
+                    inSampleDesc.getTimeStamp());
+        }
+        else
+        {
+            // The array of minusSamples is reused so terminate them.
+            if (minusSamples != null)
+            {
+                Arrays.fill(
+                        minusSamples,
+                        minusCount, minusSamples.length,
+                        null);
+            }
+            outStream.setInSamples(
+                    mix,
+                    minusSamples,
+                    plusSamples,
+                    maxInSampleCount,
+                    inSampleDesc.getTimeStamp());
+        }
     }
 
     /**
@@ -1201,8 +1321,13 @@ protected void transferData(Buffer buffer)
                                         this.outStreams.size()]);
             }
         }
+
+        // In mix-minus mode, the full mix is computed once and each output
+        // stream subtracts the contributions excluded from it.
+        int[] mix = MIX_MINUS ? mix(inSamples, maxInSampleCount) : null;
+
         for (AudioMixingPushBufferStream outStream : outStreams)
-            setInSamples(outStream, inSampleDesc, maxInSampleCount);
+            setInSamples(outStream, inSampleDesc, maxInSampleCount, mix);
 
         /*
          * The input samples have already been delivered to the output streams
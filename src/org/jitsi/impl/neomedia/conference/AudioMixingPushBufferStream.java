@@ -23,6 +23,7 @@
 import javax.media.protocol.*;
 
 import org.jitsi.impl.neomedia.control.*;
+import org.jitsi.impl.neomedia.kernels.*;
 import org.jitsi.util.*;
 
 /**
@@ -105,6 +106,32 @@ private static int getMaxOutSample(AudioFormat outFormat)
      */
     private int maxInSampleCount;
 
+    /**
+     * The sum of all input audio samples from which the output of this
+     * instance is derived in mix-minus mode or <tt>null</tt>.
+     */
+    private int[] mix;
+
+    /**
+     * The accumulator of
+     * {@link #mixMinus(int[], short[][], short[], AudioFormat, int)}.
+     * Cached in order to reduce allocations and garbage collection.
+     */
+    private int[] mixMinusAccumulator;
+
+    /**
+     * The input audio samples to be subtracted from {@link #mix} in order to
+     * derive the output of this instance in mix-minus mode or <tt>null</tt>.
+     */
+    private short[][] minusSamples;
+
+    /**
+     * The array returned by the last invocation of
+     * {@link #allocateMinusSamples(int)}. Cached in order to reduce
+     * allocations and garbage collection.
+     */
+    private short[][] minusSamplesArray;
+
     /**
      * The audio samples output by the last invocation of
      * {@link #mix(int[][], AudioFormat, int)}. Cached in order to reduce
@@ -112,9 +139,16 @@ private static int getMaxOutSample(AudioFormat outFormat)
      */
     private short[] outSamples;
 
+    /**
+     * The audio samples to be added to {@link #mix} in order to derive the
+     * output of this instance in mix-minus mode or <tt>null</tt>.
+     */
+    private short[] plusSamples;
+
     /**
      * The <tt>Object</tt> which synchronizes the access to the data to be read
      * from this <tt>PushBufferStream</tt> i.e. to {@link #inSamples},
+     * {@link #mix}, {@link #minusSamples}, {@link #plusSamples},
      * {@link #maxInSampleCount} and {@link #timeStamp}.
      */
     private final Object readSyncRoot = new Object();
@@ -153,6 +187,24 @@ private static int getMaxOutSample(AudioFormat outFormat)
         this.dataSource = dataSource;
     }
 
+    /**
+     * Gets an array to hold the input audio samples which are to be pushed to
+     * this instance as <tt>minusSamples</tt> in mix-minus mode. The array is
+     * reused across invocations, the same way as the samples read from the
+     * input streams are.
+     *
+     * @param minSize the minimum length of the array
+     * @return an array of at least <tt>minSize</tt> elements
+     */
+    short[][] allocateMinusSamples(int minSize)
+    {
+        short[][] minusSamples = this.minusSamplesArray;
+
+        if ((minusSamples == null) || (minusSamples.length < minSize))
+            this.minusSamplesArray = minusSamples = new short[minSize][];
+        return minusSamples;
+    }
+
     private short[] allocateOutSamples(int minSize)
     {
         short[] outSamples = this.outSamples;
@@ -318,20 +370,105 @@ else if (inStreamSamples.length < outSampleCount)
             if (inStreamSampleCount == 0)
                 continue;
 
-            for (int i = 0; i < inStreamSampleCount; i++)
+            AudioKernels.mix(
+                    outSamples,
+                    inStreamSamples,
+                    inStreamSampleCount,
+                    maxOutSample);
+        }
+        return outSamples;
+    }
+
+    /**
+     * Derives the output audio samples of this instance in mix-minus mode from
+     * the sum of all input audio samples by subtracting the ones which are
+     * not to be mixed in the output of this instance and adding the ones
+     * which are to be mixed in the output of this instance only. The result
+     * is clipped once to the range of the samples of <tt>outFormat</tt>.
+     *
+     * @param mix the sum of all input audio samples
+     * @param minusSamples the audio samples to subtract from <tt>mix</tt>, the
+     * first <tt>null</tt> element (if any) terminating them, or <tt>null</tt>
+     * @param plusSamples the audio samples to add to <tt>mix</tt> or
+     * <tt>null</tt>
+     * @param outFormat the <tt>AudioFormat</tt> in which the resulting audio
+     * sample set is to be produced
+     * @param outSampleCount the size of the resulting audio sample set to be
+     * produced
+     * @return the resulting audio sample set
+     */
+    private short[] mixMinus(
+            int[] mix,
+            short[][] minusSamples,
+            short[] plusSamples,
+            AudioFormat outFormat,
+            int outSampleCount)
+    {
+        int maxOutSample;
+
+        try
+        {
+            maxOutSample
+                = Math.min(getMaxOutSample(outFormat), Short.MAX_VALUE);
+        }
+        catch (UnsupportedFormatException ufex)
+        {
+            throw new UnsupportedOperationException(ufex);
+        }
+
+        short[] outSamples = allocateOutSamples(outSampleCount);
+        int[] accumulator;
+
+        if (minusSamples == null && plusSamples == null)
+        {
+            accumulator = mix;
+        }
+        else
+        {
+            accumulator = mixMinusAccumulator;
+            if (accumulator == null || accumulator.length < outSampleCount)
+                mixMinusAccumulator = accumulator = new int[outSampleCount];
+
+            int mixSampleCount = Math.min(mix.length, outSampleCount);
+
+            System.arraycopy(mix, 0, accumulator, 0, mixSampleCount);
+            if (mixSampleCount < outSampleCount)
+                Arrays.fill(accumulator, mixSampleCount, outSampleCount, 0);
+
+            if (minusSamples != null)
             {
-                int inStreamSample = inStreamSamples[i];
-                int outSample = outSamples[i];
-
-                outSamples[i]
-                    = (short)
-                        (inStreamSample
-                            + outSample
-                            - Math.round(
-                                    inStreamSample
-                                        * (outSample / maxOutSample)));
+                for (short[] inStreamSamples : minusSamples)
+                {
+                    if (inStreamSamples == null)
+                        break;
+
+                    int inStreamSampleCount
+                        = Math.min(inStreamSamples.length, outSampleCount);
+
+                    AudioKernels.subtract(
+                            accumulator,
+                            inStreamSamples,
+                            inStreamSampleCount);
+                }
+            }
+            if (plusSamples != null)
+            {
+                int inStreamSampleCount
+                    = Math.min(plusSamples.length, outSampleCount);
+
+                AudioKernels.add(accumulator, plusSamples, inStreamSampleCount);
             }
         }
+
+        int sampleCount = Math.min(accumulator.length, outSampleCount);
+
+        AudioKernels.saturate(
+                accumulator,
+                outSamples,
+                sampleCount,
+                maxOutSample);
+        if (sampleCount < outSampleCount)
+            Arrays.fill(outSamples, sampleCount, outSampleCount, (short) 0);
         return outSamples;
     }
 
@@ -349,16 +486,25 @@ public void read(Buffer buffer)
         throws IOException
     {
         short[][] inSamples;
+        int[] mix;
+        short[][] minusSamples;
+        short[] plusSamples;
         int maxInSampleCount;
         long timeStamp;
 
         synchronized (readSyncRoot)
         {
             inSamples = this.inSamples;
+            mix = this.mix;
+            minusSamples = this.minusSamples;
+            plusSamples = this.plusSamples;
             maxInSampleCount = this.maxInSampleCount;
             timeStamp = this.timeStamp;
 
             this.inSamples = null;
+            this.mix = null;
+            this.minusSamples = null;
+            this.plusSamples = null;
             this.maxInSampleCount = 0;
             // For the purposes of debugging, we want to have the last known
             // value of the field timeStamp at all times. The reset of the
@@ -367,8 +513,8 @@ public void read(Buffer buffer)
             // this.timeStamp = Buffer.TIME_UNKNOWN;
         }
 
-        if ((inSamples == null)
-                || (inSamples.length == 0)
+        if (((mix == null)
+                    && ((inSamples == null) || (inSamples.length == 0)))
                 || (maxInSampleCount <= 0))
         {
             buffer.setDiscard(true);
@@ -376,7 +522,15 @@ public void read(Buffer buffer)
         }
 
         AudioFormat outFormat = getFormat();
-        short[] outSamples = mix(inSamples, outFormat, maxInSampleCount);
+        short[] outSamples
+            = (mix == null)
+                ? mix(inSamples, outFormat, maxInSampleCount)
+                : mixMinus(
+                        mix,
+                        minusSamples,
+                        plusSamples,
+                        outFormat,
+                        maxInSampleCount);
         int outSampleCount = Math.min(maxInSampleCount, outSamples.length);
 
         if (Format.byteArray.equals(outFormat.getDataType()))
@@ -437,6 +591,49 @@ void setInSamples(short[][] inSamples, int maxInSampleCount, long timeStamp)
         synchronized (readSyncRoot)
         {
             this.inSamples = inSamples;
+            this.mix = null;
+            this.minusSamples = null;
+            this.plusSamples = null;
+            this.maxInSampleCount = maxInSampleCount;
+            this.timeStamp = timeStamp;
+        }
+
+        BufferTransferHandler transferHandler = this.transferHandler;
+
+        if (transferHandler != null)
+            transferHandler.transferData(this);
+    }
+
+    /**
+     * Sets the audio samples from which the output of this stream is derived
+     * in mix-minus mode when data is read from it. Triggers a push to the
+     * clients of this stream.
+     *
+     * @param mix the sum of all input audio samples
+     * @param minusSamples the input audio samples which are not to be mixed
+     * in the output of this stream, the first <tt>null</tt> element (if any)
+     * terminating them, or <tt>null</tt>
+     * @param plusSamples the audio samples which are to be mixed in the
+     * output of this stream only or <tt>null</tt>
+     * @param maxInSampleCount the maximum number of per-stream audio samples
+     * available through <tt>mix</tt>, <tt>minusSamples</tt> and
+     * <tt>plusSamples</tt>
+     * @param timeStamp the time stamp of the audio samples to be reported in
+     * the specified <tt>Buffer</tt> when data is read from this instance
+     */
+    void setInSamples(
+            int[] mix,
+            short[][] minusSamples,
+            short[] plusSamples,
+            int maxInSampleCount,
+            long timeStamp)
+    {
+        synchronized (readSyncRoot)
+        {
+            this.inSamples = null;
+            this.mix = mix;
+            this.minusSamples = minusSamples;
+            this.plusSamples = plusSamples;
             this.maxInSampleCount = maxInSampleCount;
             this.timeStamp = timeStamp;
         }
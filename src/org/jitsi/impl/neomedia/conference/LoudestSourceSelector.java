@@ -0,0 +1,241 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.conference;
+
+import java.util.*;
+
+import org.jitsi.util.*;
+
+/**
+ * Selects the loudest audio sources of an <tt>AudioMixer</tt> by the audio
+ * levels which they report in the RTP header extension of RFC 6464, so that
+ * only the selected sources are decoded and mixed. The packets of the sources
+ * which are not selected are marked with <tt>Buffer.FLAG_SILENCE</tt> which
+ * makes the decoders skip them while still taking note of their sequence
+ * numbers (i.e. they are not concealed as lost when their source is selected
+ * again) and the <tt>AudioMixer</tt> leave them out of the mix.
+ * <p>
+ * The levels of a source are smoothed and a selected source has its level
+ * boosted by a hysteresis when ranked so that the selection does not flap
+ * between sources of similar levels. The selection is recomputed at most once
+ * per {@link #SELECTION_INTERVAL_MS} and when a new source appears.
+ * </p>
+ */
+public class LoudestSourceSelector
+{
+    /**
+     * The name of the <tt>int</tt> <tt>ConfigurationService</tt> property
+     * which specifies the number of the loudest sources to be decoded and
+     * mixed by an <tt>AudioMixer</tt>. The default value is <tt>0</tt>, i.e.
+     * all sources are decoded and mixed.
+     */
+    public static final String LOUDEST_N_PNAME
+        = AudioMixer.class.getName() + ".LOUDEST_N";
+
+    /**
+     * The boost to the smoothed level of a selected source when the sources
+     * are ranked, in the scale of {@link Source#level}.
+     */
+    private static final int HYSTERESIS = 6 << Source.LEVEL_SHIFT;
+
+    /**
+     * The minimum number of milliseconds between two computations of the
+     * selection.
+     */
+    private static final long SELECTION_INTERVAL_MS = 20;
+
+    /**
+     * The number of milliseconds after its last packet a source stops
+     * competing for selection.
+     */
+    private static final long SOURCE_TIMEOUT_MS = 2000;
+
+    /**
+     * The <tt>Comparator</tt> which orders <tt>Source</tt>s by descending
+     * {@link Source#score}.
+     */
+    private static final Comparator<Source> SCORE_COMPARATOR
+        = new Comparator<Source>()
+        {
+            @Override
+            public int compare(Source s1, Source s2)
+            {
+                return s2.score - s1.score;
+            }
+        };
+
+    /**
+     * The time in milliseconds of the last computation of the selection.
+     */
+    private long lastSelectionTime = -1;
+
+    /**
+     * The maximum number of selected sources.
+     */
+    private final int n;
+
+    /**
+     * The scratch array in which the sources are ranked.
+     */
+    private Source[] ranking = new Source[0];
+
+    /**
+     * The sources which compete for selection by SSRC.
+     */
+    private final LongObjectHashMap<Source> sources
+        = new LongObjectHashMap<>();
+
+    /**
+     * Initializes a new <tt>LoudestSourceSelector</tt> which is to select a
+     * specific number of the loudest sources.
+     *
+     * @param n the maximum number of sources to select
+     */
+    public LoudestSourceSelector(int n)
+    {
+        if (n < 1)
+            throw new IllegalArgumentException("n");
+        this.n = n;
+    }
+
+    /**
+     * Gets the maximum number of sources selected by this instance.
+     *
+     * @return the maximum number of sources selected by this instance
+     */
+    public int getN()
+    {
+        return n;
+    }
+
+    /**
+     * Ranks the sources and selects the loudest {@link #n}, dropping the ones
+     * which have timed out.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void select(long now)
+    {
+        lastSelectionTime = now;
+
+        int size = sources.size();
+
+        if (ranking.length < size)
+            ranking = new Source[size];
+
+        int count = 0;
+
+        for (long ssrc : sources.keys())
+        {
+            Source source = sources.get(ssrc);
+
+            if (now - source.lastUpdateTime > SOURCE_TIMEOUT_MS)
+            {
+                sources.remove(ssrc);
+                continue;
+            }
+            source.score
+                = source.selected ? source.level + HYSTERESIS : source.level;
+            ranking[count++] = source;
+        }
+
+        if (count > n)
+            Arrays.sort(ranking, 0, count, SCORE_COMPARATOR);
+        for (int i = 0; i < count; i++)
+        {
+            ranking[i].selected = (i < n);
+            ranking[i] = null;
+        }
+    }
+
+    /**
+     * Notifies this instance about the audio level of a packet of a specific
+     * source and determines whether the packet is to be decoded and mixed.
+     *
+     * @param ssrc the SSRC of the source
+     * @param level the audio level of the packet in -dBov as carried in the
+     * RTP header extension of RFC 6464, i.e. <tt>0</tt> is the loudest and
+     * <tt>127</tt> is silence
+     * @param now the current time in milliseconds
+     * @return <tt>true</tt> if the source is selected and the packet is to
+     * be decoded and mixed; otherwise, <tt>false</tt>
+     */
+    public synchronized boolean update(long ssrc, int level, long now)
+    {
+        Source source = sources.get(ssrc);
+        boolean select = false;
+
+        if (source == null)
+        {
+            source = new Source();
+            sources.put(ssrc, source);
+            select = true;
+        }
+        source.update(127 - level);
+        source.lastUpdateTime = now;
+
+        if (select || now - lastSelectionTime >= SELECTION_INTERVAL_MS)
+            select(now);
+        return source.selected;
+    }
+
+    /**
+     * The state of a source which competes for selection.
+     */
+    private static class Source
+    {
+        /**
+         * The number of fractional bits of {@link #level}.
+         */
+        static final int LEVEL_SHIFT = 4;
+
+        /**
+         * The time in milliseconds of the last packet of this source.
+         */
+        long lastUpdateTime;
+
+        /**
+         * The smoothed loudness of this source with {@link #LEVEL_SHIFT}
+         * fractional bits, i.e. <tt>127</tt> minus the level in -dBov.
+         */
+        int level;
+
+        /**
+         * The score by which this source is ranked.
+         */
+        int score;
+
+        /**
+         * Whether this source is selected.
+         */
+        boolean selected;
+
+        /**
+         * Smooths a specific loudness into {@link #level}. The smoothing
+         * rises faster than it falls so that a source which starts speaking
+         * is selected quickly and one which pauses briefly is not dropped.
+         *
+         * @param loudness the loudness of a packet of this source, i.e.
+         * <tt>127</tt> minus the level in -dBov
+         */
+        void update(int loudness)
+        {
+            int delta = (loudness << LEVEL_SHIFT) - level;
+
+            level += (delta > 0) ? (delta >> 1) : (delta >> 4);
+        }
+    }
+}
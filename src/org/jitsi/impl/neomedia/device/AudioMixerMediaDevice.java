@@ -28,6 +28,7 @@
 import org.jitsi.impl.neomedia.audiolevel.*;
 import org.jitsi.impl.neomedia.conference.*;
 import org.jitsi.impl.neomedia.protocol.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.service.neomedia.codec.*;
 import org.jitsi.service.neomedia.device.*;
@@ -120,6 +121,13 @@ public void audioLevelChanged(int level)
      */
     private final Object localUserAudioLevelListenersSyncRoot = new Object();
 
+    /**
+     * The <tt>LoudestSourceSelector</tt> which selects the remote audio
+     * sources to be decoded and mixed by this instance or <tt>null</tt> if all
+     * of them are to be decoded and mixed.
+     */
+    private final LoudestSourceSelector loudestSourceSelector;
+
     /**
      * The levels map that we use to cache last measured audio levels for all
      * streams associated with this mixer.
@@ -164,6 +172,15 @@ public AudioMixerMediaDevice(AudioMediaDeviceImpl device)
                 new IllegalArgumentException("device must be able to capture");
 
         this.device = device;
+
+        int loudestN
+            = ConfigUtils.getInt(
+                    LibJitsi.getConfigurationService(),
+                    LoudestSourceSelector.LOUDEST_N_PNAME,
+                    0);
+
+        loudestSourceSelector
+            = (loudestN > 0) ? new LoudestSourceSelector(loudestN) : null;
     }
 
     /**
@@ -291,6 +308,19 @@ private void fireLocalUserAudioLevelChanged(int level)
         }
     }
 
+    /**
+     * Gets the <tt>LoudestSourceSelector</tt> which selects the remote audio
+     * sources to be decoded and mixed by this instance.
+     *
+     * @return the <tt>LoudestSourceSelector</tt> which selects the remote
+     * audio sources to be decoded and mixed by this instance or <tt>null</tt>
+     * if all of them are to be decoded and mixed
+     */
+    public LoudestSourceSelector getLoudestSourceSelector()
+    {
+        return loudestSourceSelector;
+    }
+
     /**
      * Gets the <tt>AudioMixer</tt> which performs audio mixing in this
      * <tt>MediaDevice</tt> (and rather the session it represents). If it still
@@ -0,0 +1,532 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.jmfext.media.protocol.rtpdumpfile;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Represents the RTP packets of one stream (i.e. SSRC) recorded in an rtpdump
+ * or a pcap file. The file is memory-mapped and the offsets, the lengths and
+ * the capture times of the packets are indexed once so that the packets may be
+ * replayed by any number of {@link ReplayEngine} streams without reading the
+ * file again and without allocating per packet.
+ * <p>
+ * Only RTP packets are indexed, RTCP packets are skipped. In pcap files, only
+ * UDP over IPv4 (unfragmented) and IPv6 (without extension headers) captured
+ * on Ethernet, BSD loopback, raw IP or Linux cooked links are recognized.
+ * </p>
+ */
+public class MappedPacketFile
+{
+    /**
+     * The link-layer header type of BSD loopback encapsulation in pcap files.
+     */
+    private static final int LINKTYPE_NULL = 0;
+
+    /**
+     * The link-layer header type of Ethernet in pcap files.
+     */
+    private static final int LINKTYPE_ETHERNET = 1;
+
+    /**
+     * The link-layer header type of raw IP in pcap files.
+     */
+    private static final int LINKTYPE_RAW = 101;
+
+    /**
+     * The link-layer header type of Linux cooked capture in pcap files.
+     */
+    private static final int LINKTYPE_LINUX_SLL = 113;
+
+    /**
+     * The magic number of pcap files with microsecond timestamps.
+     */
+    private static final int PCAP_MAGIC = 0xA1B2C3D4;
+
+    /**
+     * The magic number of pcap files with nanosecond timestamps.
+     */
+    private static final int PCAP_MAGIC_NANOS = 0xA1B23C4D;
+
+    /**
+     * The length in bytes of the header of an rtpdump packet record.
+     */
+    private static final int RTPDUMP_RECORD_HEADER_LENGTH = 8;
+
+    /**
+     * The memory-mapped file.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The number of indexed packets.
+     */
+    private int count = 0;
+
+    /**
+     * The length in bytes of the indexed packets.
+     */
+    private int[] lengths = new int[1024];
+
+    /**
+     * The number of nanoseconds after which the replay of the packets of the
+     * file may start over, i.e. the capture time of the last packet plus the
+     * interval between the last two packets.
+     */
+    private long loopDuration;
+
+    /**
+     * The number by which the RTP sequence numbers of the packets of the file
+     * are to be advanced when the replay starts over.
+     */
+    private int loopSequenceNumberDelta;
+
+    /**
+     * The number by which the RTP timestamps of the packets of the file are
+     * to be advanced when the replay starts over.
+     */
+    private long loopTimestampDelta;
+
+    /**
+     * The maximum length in bytes of the indexed packets.
+     */
+    private int maxLength = 0;
+
+    /**
+     * The offsets in {@link #buffer} of the indexed packets.
+     */
+    private int[] offsets = new int[1024];
+
+    /**
+     * The SSRC of the indexed packets.
+     */
+    private long ssrc;
+
+    /**
+     * The capture times of the indexed packets in nanoseconds relative to
+     * the capture time of the first indexed packet.
+     */
+    private long[] times = new long[1024];
+
+    /**
+     * Initializes a new <tt>MappedPacketFile</tt> which is to index the RTP
+     * packets of a specific SSRC in a specific rtpdump or pcap file.
+     *
+     * @param path the path of the rtpdump or pcap file
+     * @param ssrc the SSRC of the RTP packets to index or <tt>-1</tt> to
+     * index the RTP packets of the first SSRC in the file
+     * @throws IOException if the file cannot be read, is too large to be
+     * mapped or does not contain RTP packets
+     */
+    public MappedPacketFile(String path, long ssrc)
+        throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r"))
+        {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File too large to map: " + path);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        this.ssrc = ssrc;
+
+        if (buffer.limit() >= 4
+                && (isPcapMagic(buffer.getInt(0))
+                    || isPcapMagic(Integer.reverseBytes(buffer.getInt(0)))))
+        {
+            indexPcap();
+        }
+        else
+        {
+            indexRtpdump();
+        }
+        if (count == 0)
+            throw new IOException("No RTP packets in " + path);
+        indexLoop();
+    }
+
+    /**
+     * Adds a packet to the index if it is an RTP packet of {@link #ssrc}.
+     *
+     * @param offset the offset in {@link #buffer} of the packet
+     * @param length the length in bytes of the packet
+     * @param time the capture time of the packet in nanoseconds
+     */
+    private void add(int offset, int length, long time)
+    {
+        if (length < 12
+                || offset + length > buffer.limit()
+                || (buffer.get(offset) & 0xC0) != 0x80)
+        {
+            return;
+        }
+
+        // RTCP packet types 200-204 look like RTP payload types 72-76 with the
+        // marker bit set.
+        int pt = buffer.get(offset + 1) & 0x7F;
+
+        if (pt >= 72 && pt <= 76)
+            return;
+
+        long packetSsrc = buffer.getInt(offset + 8) & 0xFFFFFFFFL;
+
+        if (ssrc == -1)
+            ssrc = packetSsrc;
+        else if (ssrc != packetSsrc)
+            return;
+
+        if (count == offsets.length)
+        {
+            int newLength = 2 * count;
+
+            offsets = Arrays.copyOf(offsets, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+            times = Arrays.copyOf(times, newLength);
+        }
+        offsets[count] = offset;
+        lengths[count] = length;
+        times[count] = time;
+        count++;
+        if (maxLength < length)
+            maxLength = length;
+    }
+
+    /**
+     * Gets an <tt>int</tt> from {@link #buffer} in a specific byte order.
+     *
+     * @param offset the offset in {@link #buffer} of the <tt>int</tt>
+     * @param swapped <tt>true</tt> if the <tt>int</tt> is little-endian or
+     * <tt>false</tt> if it is big-endian
+     * @return the <tt>int</tt> at <tt>offset</tt> in {@link #buffer}
+     */
+    private int getInt(int offset, boolean swapped)
+    {
+        int i = buffer.getInt(offset);
+
+        return swapped ? Integer.reverseBytes(i) : i;
+    }
+
+    /**
+     * Reads the bytes of a specific indexed packet.
+     *
+     * @param index the index of the packet
+     * @param buf the array to read the packet into
+     * @param off the offset in <tt>buf</tt> at which the packet is to be
+     * written
+     * @return the length in bytes of the packet
+     */
+    public int get(int index, byte[] buf, int off)
+    {
+        int length = lengths[index];
+
+        // Java 7 has no absolute bulk get so the position of the shared
+        // buffer is used (which does not allocate per packet).
+        synchronized (buffer)
+        {
+            buffer.position(offsets[index]);
+            buffer.get(buf, off, length);
+        }
+        return length;
+    }
+
+    /**
+     * Gets the number of indexed packets.
+     *
+     * @return the number of indexed packets
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Gets the number of nanoseconds after which the replay of the packets
+     * may start over.
+     *
+     * @return the number of nanoseconds after which the replay of the packets
+     * may start over
+     */
+    public long getLoopDuration()
+    {
+        return loopDuration;
+    }
+
+    /**
+     * Gets the number by which the RTP sequence numbers of the packets are to
+     * be advanced when the replay starts over.
+     *
+     * @return the number by which the RTP sequence numbers of the packets are
+     * to be advanced when the replay starts over
+     */
+    public int getLoopSequenceNumberDelta()
+    {
+        return loopSequenceNumberDelta;
+    }
+
+    /**
+     * Gets the number by which the RTP timestamps of the packets are to be
+     * advanced when the replay starts over.
+     *
+     * @return the number by which the RTP timestamps of the packets are to be
+     * advanced when the replay starts over
+     */
+    public long getLoopTimestampDelta()
+    {
+        return loopTimestampDelta;
+    }
+
+    /**
+     * Gets the maximum length in bytes of the indexed packets.
+     *
+     * @return the maximum length in bytes of the indexed packets
+     */
+    public int getMaxLength()
+    {
+        return maxLength;
+    }
+
+    /**
+     * Gets the SSRC of the indexed packets.
+     *
+     * @return the SSRC of the indexed packets
+     */
+    public long getSSRC()
+    {
+        return ssrc;
+    }
+
+    /**
+     * Gets the capture time of a specific indexed packet.
+     *
+     * @param index the index of the packet
+     * @return the capture time of the packet in nanoseconds relative to the
+     * capture time of the first indexed packet
+     */
+    public long getTime(int index)
+    {
+        return times[index];
+    }
+
+    /**
+     * Computes the values by which the replay of the packets is advanced when
+     * it starts over so that the RTP sequence numbers and timestamps remain
+     * continuous across repetitions.
+     */
+    private void indexLoop()
+    {
+        long first = times[0];
+
+        for (int i = 0; i < count; i++)
+            times[i] -= first;
+
+        int lastOffset = offsets[count - 1];
+        int firstSeq = buffer.getShort(offsets[0] + 2) & 0xFFFF;
+        int lastSeq = buffer.getShort(lastOffset + 2) & 0xFFFF;
+        long firstTs = buffer.getInt(offsets[0] + 4) & 0xFFFFFFFFL;
+        long lastTs = buffer.getInt(lastOffset + 4) & 0xFFFFFFFFL;
+
+        // The interval between the last two distinct timestamps stands for
+        // the duration of the last packet.
+        long tsStep = 0;
+        long timeStep = 0;
+
+        for (int i = count - 1; i > 0; i--)
+        {
+            long ts = buffer.getInt(offsets[i - 1] + 4) & 0xFFFFFFFFL;
+
+            if (ts != lastTs)
+            {
+                tsStep = (lastTs - ts) & 0xFFFFFFFFL;
+                timeStep = times[count - 1] - times[i - 1];
+                break;
+            }
+        }
+
+        loopSequenceNumberDelta = ((lastSeq - firstSeq) & 0xFFFF) + 1;
+        loopTimestampDelta = ((lastTs - firstTs) & 0xFFFFFFFFL) + tsStep;
+        loopDuration = times[count - 1] + Math.max(timeStep, 0);
+    }
+
+    /**
+     * Indexes the RTP packets of a pcap file.
+     */
+    private void indexPcap()
+    {
+        // The pcap headers are in the byte order of the capturing host.
+        boolean swapped = !isPcapMagic(buffer.getInt(0));
+        int magic = getInt(0, swapped);
+        boolean nanos = (magic == PCAP_MAGIC_NANOS);
+        int linkType = getInt(20, swapped);
+        int limit = buffer.limit();
+        int position = 24;
+
+        while (position + 16 <= limit)
+        {
+            long sec = getInt(position, swapped) & 0xFFFFFFFFL;
+            long frac = getInt(position + 4, swapped) & 0xFFFFFFFFL;
+            int inclLen = getInt(position + 8, swapped);
+
+            position += 16;
+            if (inclLen < 0 || position + inclLen > limit)
+                break;
+
+            long time = sec * 1000000000L + (nanos ? frac : frac * 1000L);
+
+            indexPcapPacket(linkType, position, inclLen, time);
+            position += inclLen;
+        }
+    }
+
+    /**
+     * Indexes the UDP payload of a pcap packet record if it is an RTP packet.
+     *
+     * @param linkType the link-layer header type of the pcap file
+     * @param offset the offset in {@link #buffer} of the captured bytes
+     * @param length the number of captured bytes
+     * @param time the capture time in nanoseconds
+     */
+    private void indexPcapPacket(
+            int linkType,
+            int offset,
+            int length,
+            long time)
+    {
+        int end = offset + length;
+        int ip;
+
+        switch (linkType)
+        {
+        case LINKTYPE_NULL:
+            ip = offset + 4;
+            break;
+        case LINKTYPE_ETHERNET:
+            ip = offset + 14;
+            // 802.1Q VLAN tag
+            if (ip <= end
+                    && (buffer.getShort(offset + 12) & 0xFFFF) == 0x8100)
+            {
+                ip += 4;
+            }
+            break;
+        case LINKTYPE_RAW:
+            ip = offset;
+            break;
+        case LINKTYPE_LINUX_SLL:
+            ip = offset + 16;
+            break;
+        default:
+            return;
+        }
+        if (ip >= end)
+            return;
+
+        int udp;
+        int version = (buffer.get(ip) & 0xF0) >> 4;
+
+        if (version == 4)
+        {
+            if (ip + 20 > end
+                    || buffer.get(ip + 9) != 17 /* UDP */
+                    // more fragments or fragment offset
+                    || (buffer.getShort(ip + 6) & 0x3FFF) != 0)
+            {
+                return;
+            }
+            udp = ip + ((buffer.get(ip) & 0x0F) << 2);
+        }
+        else if (version == 6)
+        {
+            if (ip + 40 > end || buffer.get(ip + 6) != 17 /* UDP */)
+                return;
+            udp = ip + 40;
+        }
+        else
+        {
+            return;
+        }
+        if (udp + 8 > end)
+            return;
+
+        int udpLength = buffer.getShort(udp + 4) & 0xFFFF;
+        int payload = udp + 8;
+        int payloadLength = Math.min(udpLength - 8, end - payload);
+
+        add(payload, payloadLength, time);
+    }
+
+    /**
+     * Indexes the RTP packets of an rtpdump file.
+     *
+     * @throws IOException if the file is not an rtpdump file
+     */
+    private void indexRtpdump()
+        throws IOException
+    {
+        int limit = buffer.limit();
+        int position = 0;
+
+        // Skip the first line which is in ASCII and the file header.
+        while (position < limit && buffer.get(position) != '\n')
+            position++;
+        position += 1 + RtpdumpFileReader.FILE_HEADER_LENGTH;
+        if (position > limit)
+            throw new IOException("Not an rtpdump or pcap file");
+
+        while (position + RTPDUMP_RECORD_HEADER_LENGTH <= limit)
+        {
+            int length = buffer.getShort(position) & 0xFFFF;
+            int plen = buffer.getShort(position + 2) & 0xFFFF;
+            long time = buffer.getInt(position + 4) & 0xFFFFFFFFL;
+
+            if (length < RTPDUMP_RECORD_HEADER_LENGTH
+                    || position + length > limit)
+            {
+                break;
+            }
+
+            int dataLength = length - RTPDUMP_RECORD_HEADER_LENGTH;
+
+            // A plen of zero denotes an RTCP packet.
+            if (plen != 0)
+            {
+                add(
+                        position + RTPDUMP_RECORD_HEADER_LENGTH,
+                        Math.min(plen, dataLength),
+                        time * 1000000L);
+            }
+            position += length;
+        }
+    }
+
+    /**
+     * Determines whether a specific <tt>int</tt> is the magic number of a
+     * pcap file in the byte order in which it was read.
+     *
+     * @param magic the <tt>int</tt> to check
+     * @return <tt>true</tt> if <tt>magic</tt> is the magic number of a pcap
+     * file; otherwise, <tt>false</tt>
+     */
+    private static boolean isPcapMagic(int magic)
+    {
+        return magic == PCAP_MAGIC || magic == PCAP_MAGIC_NANOS;
+    }
+}
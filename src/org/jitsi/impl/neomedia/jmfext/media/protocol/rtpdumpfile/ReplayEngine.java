@@ -0,0 +1,565 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.jmfext.media.protocol.rtpdumpfile;
+
+import java.util.*;
+
+import org.jitsi.util.*;
+
+/**
+ * Replays the RTP packets of {@link MappedPacketFile}s as any number of
+ * virtual streams from a single scheduler thread for the purposes of load
+ * generation. Each virtual stream rewrites the SSRC, the sequence numbers and
+ * the timestamps of the packets which it replays so that many virtual streams
+ * may replay the same file concurrently and, when looping, the replay remains
+ * a continuous RTP stream. The capture times of the packets are respected and
+ * may be scaled (e.g. 1x or 10x) or ignored (as fast as possible).
+ * <p>
+ * The packets are handed to a {@link PacketSink} per virtual stream in a
+ * buffer which is reused by the scheduler thread, i.e. a <tt>PacketSink</tt>
+ * must copy the bytes which it is to keep after it returns.
+ * </p>
+ */
+public class ReplayEngine
+{
+    /**
+     * The speed at which the packets are replayed as fast as possible, i.e.
+     * without respecting their capture times.
+     */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>ReplayEngine</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(ReplayEngine.class);
+
+    /**
+     * The buffer into which the scheduler thread reads the packets to be
+     * rewritten and sent.
+     */
+    private byte[] buf = new byte[1500];
+
+    /**
+     * The media time of the last sent packet in nanoseconds, i.e. the time at
+     * which a virtual stream added when replaying as fast as possible starts.
+     */
+    private long mediaTime = 0;
+
+    /**
+     * The virtual streams ordered by the media time of their next packets.
+     */
+    private final PriorityQueue<VirtualStream> queue
+        = new PriorityQueue<>(
+                11,
+                new Comparator<VirtualStream>()
+                {
+                    @Override
+                    public int compare(VirtualStream s1, VirtualStream s2)
+                    {
+                        return
+                            Long.compare(s1.nextMediaTime, s2.nextMediaTime);
+                    }
+                });
+
+    /**
+     * The <tt>Random</tt> which generates the initial RTP sequence numbers
+     * and timestamps of the virtual streams.
+     */
+    private final Random random = new Random();
+
+    /**
+     * The speed at which the packets are replayed relative to their capture
+     * times.
+     */
+    private final double speed;
+
+    /**
+     * The number of virtual streams which have not completed or been closed,
+     * including the one which is being sent by the scheduler thread.
+     */
+    private int streamCount = 0;
+
+    /**
+     * The value of {@link System#nanoTime()} at which this instance started.
+     */
+    private long startTime;
+
+    /**
+     * The scheduler thread or <tt>null</tt> if this instance is not started.
+     */
+    private Thread thread;
+
+    /**
+     * The total number of packets sent by this instance.
+     */
+    private volatile long totalPacketsSent = 0;
+
+    /**
+     * Initializes a new <tt>ReplayEngine</tt> which is to replay packets at a
+     * specific speed.
+     *
+     * @param speed the speed at which the packets are to be replayed relative
+     * to their capture times, e.g. <tt>1</tt> for real time, <tt>10</tt> for
+     * ten times faster than real time or {@link #AS_FAST_AS_POSSIBLE}
+     */
+    public ReplayEngine(double speed)
+    {
+        if (!(speed > 0))
+            throw new IllegalArgumentException("speed");
+        this.speed = speed;
+    }
+
+    /**
+     * Adds a new virtual stream which is to replay the packets of a specific
+     * <tt>MappedPacketFile</tt>.
+     *
+     * @param file the <tt>MappedPacketFile</tt> to replay
+     * @param ssrc the SSRC to write into the replayed packets
+     * @param loops the number of times to replay <tt>file</tt> or <tt>-1</tt>
+     * to replay it until the new virtual stream is closed
+     * @param sink the <tt>PacketSink</tt> to send the replayed packets to
+     * @return the new virtual stream
+     */
+    public VirtualStream addStream(
+            MappedPacketFile file,
+            long ssrc,
+            int loops,
+            PacketSink sink)
+    {
+        synchronized (queue)
+        {
+            VirtualStream stream
+                = new VirtualStream(
+                        file,
+                        ssrc,
+                        loops,
+                        sink,
+                        random.nextInt(0x10000),
+                        random.nextInt() & 0xFFFFFFFFL,
+                        (thread == null) ? mediaTime : getMediaTime());
+
+            if (buf.length < file.getMaxLength())
+                buf = new byte[file.getMaxLength()];
+            queue.add(stream);
+            streamCount++;
+            queue.notifyAll();
+            return stream;
+        }
+    }
+
+    /**
+     * Gets the current media time of this instance.
+     *
+     * @return the current media time of this instance in nanoseconds
+     */
+    private long getMediaTime()
+    {
+        if (speed == AS_FAST_AS_POSSIBLE)
+            return mediaTime;
+        else
+            return (long) ((System.nanoTime() - startTime) * speed);
+    }
+
+    /**
+     * Gets the number of virtual streams of this instance which have not
+     * completed or been closed.
+     *
+     * @return the number of virtual streams of this instance which have not
+     * completed or been closed
+     */
+    public int getStreamCount()
+    {
+        synchronized (queue)
+        {
+            return streamCount;
+        }
+    }
+
+    /**
+     * Gets the total number of packets sent by this instance.
+     *
+     * @return the total number of packets sent by this instance
+     */
+    public long getTotalPacketsSent()
+    {
+        return totalPacketsSent;
+    }
+
+    /**
+     * Runs the scheduler loop in the scheduler thread.
+     */
+    private void runInThread()
+    {
+        Thread currentThread = Thread.currentThread();
+
+        while (true)
+        {
+            VirtualStream stream;
+            byte[] buf;
+
+            synchronized (queue)
+            {
+                if (thread != currentThread)
+                    break;
+
+                stream = queue.peek();
+                if (stream == null)
+                {
+                    try
+                    {
+                        queue.wait();
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        currentThread.interrupt();
+                        break;
+                    }
+                    continue;
+                }
+
+                long delay
+                    = (speed == AS_FAST_AS_POSSIBLE)
+                        ? 0
+                        : stream.nextMediaTime - getMediaTime();
+
+                if (delay > 0)
+                {
+                    long nanos = Math.max((long) (delay / speed), 1);
+
+                    try
+                    {
+                        queue.wait(nanos / 1000000, (int) (nanos % 1000000));
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        currentThread.interrupt();
+                        break;
+                    }
+                    continue;
+                }
+
+                queue.poll();
+                if (mediaTime < stream.nextMediaTime)
+                    mediaTime = stream.nextMediaTime;
+                buf = this.buf;
+            }
+
+            boolean more;
+
+            try
+            {
+                more = stream.sendNext(buf);
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+                logger.error("Failed to replay packet", t);
+                more = false;
+            }
+
+            synchronized (queue)
+            {
+                if (more && !stream.closed)
+                    queue.add(stream);
+                else
+                    streamCount--;
+            }
+        }
+    }
+
+    /**
+     * Starts the scheduler thread of this instance.
+     */
+    public void start()
+    {
+        synchronized (queue)
+        {
+            if (thread != null)
+                return;
+
+            // The media time continues from where a previous start left it.
+            startTime
+                = (speed == AS_FAST_AS_POSSIBLE)
+                    ? System.nanoTime()
+                    : System.nanoTime() - (long) (mediaTime / speed);
+            thread
+                = new Thread(ReplayEngine.class.getName())
+                {
+                    @Override
+                    public void run()
+                    {
+                        runInThread();
+                    }
+                };
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the scheduler thread of this instance and waits for it to exit so
+     * that it does not share {@link #buf} and the counters with a scheduler
+     * thread started afterwards. The virtual streams are kept and continue to
+     * be replayed if this instance is started again. If invoked by a
+     * <tt>PacketSink</tt> (i.e. by the scheduler thread), returns without
+     * waiting and the scheduler thread exits once the <tt>PacketSink</tt>
+     * returns.
+     */
+    public void stop()
+    {
+        Thread thread;
+
+        synchronized (queue)
+        {
+            thread = this.thread;
+            if (thread == null)
+                return;
+
+            mediaTime = Math.max(mediaTime, getMediaTime());
+            this.thread = null;
+            queue.notifyAll();
+        }
+
+        if (thread != Thread.currentThread())
+        {
+            boolean interrupted = false;
+
+            while (thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Receives the packets replayed by a virtual stream.
+     */
+    public interface PacketSink
+    {
+        /**
+         * Sends a packet replayed by a virtual stream. The bytes of the packet
+         * are only valid until the method returns.
+         *
+         * @param buf the array which contains the packet
+         * @param off the offset in <tt>buf</tt> at which the packet starts
+         * @param len the length in bytes of the packet
+         * @throws Exception if sending the packet fails, which completes the
+         * virtual stream
+         */
+        void send(byte[] buf, int off, int len)
+            throws Exception;
+    }
+
+    /**
+     * Represents a replay of the packets of a <tt>MappedPacketFile</tt> with
+     * a specific SSRC.
+     */
+    public class VirtualStream
+    {
+        /**
+         * Whether this virtual stream has been closed.
+         */
+        private boolean closed = false;
+
+        /**
+         * The <tt>MappedPacketFile</tt> replayed by this virtual stream.
+         */
+        private final MappedPacketFile file;
+
+        /**
+         * The number of times this virtual stream has replayed {@link #file}
+         * completely.
+         */
+        private int loop = 0;
+
+        /**
+         * The number of times to replay {@link #file} or <tt>-1</tt>.
+         */
+        private final int loops;
+
+        /**
+         * The index in {@link #file} of the next packet to replay.
+         */
+        private int next = 0;
+
+        /**
+         * The media time of the next packet to replay in nanoseconds.
+         */
+        private long nextMediaTime;
+
+        /**
+         * The number of packets sent by this virtual stream.
+         */
+        private volatile long packetsSent = 0;
+
+        /**
+         * The number to add to the RTP sequence numbers of the packets of
+         * {@link #file}.
+         */
+        private int sequenceNumberDelta;
+
+        /**
+         * The <tt>PacketSink</tt> to which this virtual stream sends the
+         * replayed packets.
+         */
+        private final PacketSink sink;
+
+        /**
+         * The SSRC written into the replayed packets.
+         */
+        private final long ssrc;
+
+        /**
+         * The media time of this instance at which this virtual stream
+         * started in nanoseconds.
+         */
+        private final long startMediaTime;
+
+        /**
+         * The number to add to the RTP timestamps of the packets of
+         * {@link #file}.
+         */
+        private long timestampDelta;
+
+        /**
+         * Initializes a new <tt>VirtualStream</tt> instance.
+         *
+         * @param file the <tt>MappedPacketFile</tt> to replay
+         * @param ssrc the SSRC to write into the replayed packets
+         * @param loops the number of times to replay <tt>file</tt> or
+         * <tt>-1</tt>
+         * @param sink the <tt>PacketSink</tt> to send the replayed packets to
+         * @param sequenceNumberDelta the number to add to the RTP sequence
+         * numbers of the packets of <tt>file</tt>
+         * @param timestampDelta the number to add to the RTP timestamps of the
+         * packets of <tt>file</tt>
+         * @param startMediaTime the media time of the <tt>ReplayEngine</tt>
+         * at which the new instance is to start
+         */
+        private VirtualStream(
+                MappedPacketFile file,
+                long ssrc,
+                int loops,
+                PacketSink sink,
+                int sequenceNumberDelta,
+                long timestampDelta,
+                long startMediaTime)
+        {
+            this.file = file;
+            this.ssrc = ssrc;
+            this.loops = loops;
+            this.sink = sink;
+            this.sequenceNumberDelta = sequenceNumberDelta;
+            this.timestampDelta = timestampDelta;
+            this.startMediaTime = startMediaTime;
+
+            nextMediaTime = startMediaTime;
+        }
+
+        /**
+         * Closes this virtual stream, i.e. stops the replay of its packets.
+         */
+        public void close()
+        {
+            synchronized (queue)
+            {
+                closed = true;
+                // The scheduler thread drops this virtual stream if it is
+                // sending it.
+                if (queue.remove(this))
+                    streamCount--;
+            }
+        }
+
+        /**
+         * Gets the number of packets sent by this virtual stream.
+         *
+         * @return the number of packets sent by this virtual stream
+         */
+        public long getPacketsSent()
+        {
+            return packetsSent;
+        }
+
+        /**
+         * Gets the SSRC written into the packets replayed by this virtual
+         * stream.
+         *
+         * @return the SSRC written into the packets replayed by this virtual
+         * stream
+         */
+        public long getSSRC()
+        {
+            return ssrc;
+        }
+
+        /**
+         * Reads the next packet of {@link #file} into a specific buffer,
+         * rewrites its SSRC, sequence number and timestamp, sends it to
+         * {@link #sink} and advances to the packet after it.
+         *
+         * @param buf the buffer to read the packet into
+         * @return <tt>true</tt> if this virtual stream has more packets to
+         * send; otherwise, <tt>false</tt>
+         * @throws Exception if {@link #sink} fails to send the packet
+         */
+        private boolean sendNext(byte[] buf)
+            throws Exception
+        {
+            int len = file.get(next, buf, 0);
+            int seq = RTPUtils.readUint16AsInt(buf, 2);
+            long ts = RTPUtils.readUint32AsLong(buf, 4);
+
+            RTPUtils.writeShort(
+                    buf, 2,
+                    (short) (seq + sequenceNumberDelta));
+            RTPUtils.writeInt(buf, 4, (int) (ts + timestampDelta));
+            RTPUtils.writeInt(buf, 8, (int) ssrc);
+
+            sink.send(buf, 0, len);
+            // Only the scheduler thread writes the counters.
+            packetsSent++;
+            totalPacketsSent++;
+
+            next++;
+            if (next == file.getCount())
+            {
+                next = 0;
+                loop++;
+                if (loops >= 0 && loop >= loops)
+                    return false;
+                sequenceNumberDelta += file.getLoopSequenceNumberDelta();
+                timestampDelta += file.getLoopTimestampDelta();
+            }
+            nextMediaTime
+                = startMediaTime
+                    + loop * file.getLoopDuration()
+                    + file.getTime(next);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.kernels;
+
+/**
+ * Implements the inner loops over 16-bit linear audio samples which run for
+ * every frame of every participant (e.g. audio level calculation and audio
+ * mixing). The loops are kept free of calls, of floating-point arithmetic and
+ * of data-dependent branches where possible, and operate on primitive arrays
+ * with simple induction variables so that the JIT compiler may unroll and
+ * auto-vectorize them.
+ */
+public final class AudioKernels
+{
+    /**
+     * Adds a specific number of 16-bit samples to the respective elements of
+     * an <tt>int</tt> accumulator without clipping.
+     *
+     * @param accumulator the <tt>int</tt> accumulator to add to
+     * @param samples the samples to add to <tt>accumulator</tt>
+     * @param length the number of samples to add
+     */
+    public static void add(int[] accumulator, short[] samples, int length)
+    {
+        for (int i = 0; i < length; i++)
+            accumulator[i] += samples[i];
+    }
+
+    /**
+     * Mixes a specific number of 16-bit samples into a set of 16-bit samples
+     * in the non-linear fashion in which <tt>AudioMixingPushBufferStream</tt>
+     * mixes its input, i.e. <tt>a + b - a * b / max</tt> which does not
+     * require clipping.
+     *
+     * @param outSamples the samples to mix into
+     * @param inSamples the samples to mix into <tt>outSamples</tt>
+     * @param length the number of samples to mix
+     * @param maxOutSample the maximum value of a sample
+     */
+    public static void mix(
+            short[] outSamples,
+            short[] inSamples,
+            int length,
+            float maxOutSample)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            int inSample = inSamples[i];
+            int outSample = outSamples[i];
+
+            outSamples[i]
+                = (short)
+                    (inSample
+                        + outSample
+                        - Math.round(inSample * (outSample / maxOutSample)));
+        }
+    }
+
+    /**
+     * Clips a specific number of <tt>int</tt> samples to the range of the
+     * samples of a specific size i.e. to
+     * <tt>[-maxOutSample - 1, maxOutSample]</tt>.
+     *
+     * @param in the <tt>int</tt> samples to clip
+     * @param out the samples to write the clipped <tt>in</tt> into
+     * @param length the number of samples to clip
+     * @param maxOutSample the maximum value of a sample. Must not be greater
+     * than <tt>Short.MAX_VALUE</tt>.
+     */
+    public static void saturate(
+            int[] in,
+            short[] out,
+            int length,
+            int maxOutSample)
+    {
+        int minOutSample = -maxOutSample - 1;
+
+        for (int i = 0; i < length; i++)
+        {
+            out[i]
+                = (short) Math.max(minOutSample, Math.min(maxOutSample, in[i]));
+        }
+    }
+
+    /**
+     * Subtracts a specific number of 16-bit samples from the respective
+     * elements of an <tt>int</tt> accumulator without clipping.
+     *
+     * @param accumulator the <tt>int</tt> accumulator to subtract from
+     * @param samples the samples to subtract from <tt>accumulator</tt>
+     * @param length the number of samples to subtract
+     */
+    public static void subtract(int[] accumulator, short[] samples, int length)
+    {
+        for (int i = 0; i < length; i++)
+            accumulator[i] -= samples[i];
+    }
+
+    /**
+     * Calculates the sum of the squares of signed 16-bit little-endian
+     * samples. The squares are summed as integers so the result is exact.
+     *
+     * @param samples the bytes of the samples
+     * @param offset the offset in <tt>samples</tt> at which the samples start
+     * @param length the number of bytes of the samples in <tt>samples</tt>
+     * starting at <tt>offset</tt>
+     * @return the sum of the squares of the specified samples
+     */
+    public static long sumOfSquares(byte[] samples, int offset, int length)
+    {
+        int end = offset + (length & ~1);
+        long sum = 0;
+
+        for (int i = offset; i < end; i += 2)
+        {
+            int sample = (samples[i + 1] << 8) | (samples[i] & 0xFF);
+
+            sum += sample * sample;
+        }
+        return sum;
+    }
+
+    /**
+     * Prevents the initialization of <tt>AudioKernels</tt> instances.
+     */
+    private AudioKernels()
+    {
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.kernels;
+
+/**
+ * Implements the conversions between 16-bit linear samples and G.711 A-law
+ * and mu-law samples by table lookup. Each conversion of a sample is a single
+ * array access indexed by the bits of the sample.
+ */
+public final class G711Kernels
+{
+    /**
+     * The A-law encodings of the 16-bit linear samples indexed by the
+     * unsigned value of the bits of the linear samples.
+     */
+    private static final byte[] LINEAR_TO_ALAW = new byte[1 << 16];
+
+    /**
+     * The mu-law encodings of the 16-bit linear samples indexed by the
+     * unsigned value of the bits of the linear samples.
+     */
+    private static final byte[] LINEAR_TO_ULAW = new byte[1 << 16];
+
+    /**
+     * The 16-bit linear samples of the mu-law samples indexed by the unsigned
+     * value of the mu-law samples.
+     */
+    private static final short[] ULAW_TO_LINEAR = new short[1 << 8];
+
+    static
+    {
+        for (int i = Short.MIN_VALUE; i <= Short.MAX_VALUE; i++)
+        {
+            LINEAR_TO_ALAW[i & 0xFFFF] = encodeAlaw(i);
+            LINEAR_TO_ULAW[i & 0xFFFF] = encodeUlaw((short) i);
+        }
+        for (int i = 0; i < ULAW_TO_LINEAR.length; i++)
+            ULAW_TO_LINEAR[i] = decodeUlaw(i);
+    }
+
+    /**
+     * Decodes a mu-law sample into a 16-bit linear sample.
+     *
+     * @param ulaw the mu-law sample to decode
+     * @return the 16-bit linear sample of <tt>ulaw</tt>
+     */
+    private static short decodeUlaw(int ulaw)
+    {
+        int input = ~ulaw;
+        int mantissa = ((input & 0xf) << 3) + 0x84;
+        int segment = (input & 0x70) >> 4;
+        int value = mantissa << segment;
+
+        value -= 0x84;
+        if ((input & 0x80) != 0)
+            value = -value;
+        return (short) value;
+    }
+
+    /**
+     * Encodes a 16-bit linear sample into an A-law sample.
+     *
+     * @param pcm the 16-bit linear sample to encode
+     * @return the A-law sample of <tt>pcm</tt>
+     */
+    private static byte encodeAlaw(int pcm)
+    {
+        // Get the sign bit. Shift it for later use without further
+        // modification.
+        int sign = (pcm & 0x8000) >> 8;
+
+        // If the number is negative, make it positive (now it's a magnitude).
+        if (sign != 0)
+            pcm = -pcm;
+        // The magnitude must fit in 15 bits to avoid overflow.
+        if (pcm > Short.MAX_VALUE)
+            pcm = Short.MAX_VALUE;
+
+        // Move to the right and decrement the exponent until we hit the 1 or
+        // the exponent hits 0.
+        int exponent = 7;
+
+        for (int expMask = 0x4000;
+                (pcm & expMask) == 0 && exponent > 0;
+                exponent--, expMask >>= 1);
+
+        int mantissa = (pcm >> ((exponent == 0) ? 4 : (exponent + 3))) & 0x0f;
+        // The A-law byte bit arrangement is SEEEMMMM (Sign, Exponent, and
+        // Mantissa.)
+        byte alaw = (byte) (sign | exponent << 4 | mantissa);
+
+        // Last is to flip every other bit, and the sign bit (0xD5 = 1101 0101).
+        return (byte) (alaw ^ 0xD5);
+    }
+
+    /**
+     * Encodes a 16-bit linear sample into a mu-law sample.
+     *
+     * @param sample the 16-bit linear sample to encode
+     * @return the mu-law sample of <tt>sample</tt>
+     */
+    private static byte encodeUlaw(short sample)
+    {
+        int magnitude = sample;
+        int signBit;
+
+        if (magnitude >= 0)
+        {
+            signBit = 0x80;
+        }
+        else
+        {
+            magnitude = -magnitude;
+            signBit = 0x00;
+        }
+
+        // bias
+        magnitude = (132 + magnitude) >> 3;
+
+        int segment;
+
+        if (magnitude < 0x0020)
+            segment = 0;
+        else if (magnitude < 0x0040)
+            segment = 1;
+        else if (magnitude < 0x0080)
+            segment = 2;
+        else if (magnitude < 0x0100)
+            segment = 3;
+        else if (magnitude < 0x0200)
+            segment = 4;
+        else if (magnitude < 0x0400)
+            segment = 5;
+        else if (magnitude < 0x0800)
+            segment = 6;
+        else if (magnitude < 0x1000)
+            segment = 7;
+        else
+            return (byte) (signBit | (31 - (0xfff >> 7)));
+
+        return
+            (byte)
+                (signBit
+                    | ((7 - segment) << 4)
+                    | (31 - (magnitude >> segment)));
+    }
+
+    /**
+     * Encodes a 16-bit linear sample into an A-law sample.
+     *
+     * @param pcm the 16-bit linear sample to encode in the lower 16 bits
+     * @return the A-law sample of <tt>pcm</tt>
+     */
+    public static byte linearToAlaw(int pcm)
+    {
+        return LINEAR_TO_ALAW[pcm & 0xFFFF];
+    }
+
+    /**
+     * Encodes 16-bit linear samples into A-law samples.
+     *
+     * @param in the bytes of the 16-bit linear samples
+     * @param inOffset the offset in <tt>in</tt> at which the linear samples
+     * start
+     * @param inLength the number of bytes of the linear samples in <tt>in</tt>
+     * @param bigEndian <tt>true</tt> if the linear samples are big-endian or
+     * <tt>false</tt> if they are little-endian
+     * @param out the array to write the A-law samples into
+     * @param outOffset the offset in <tt>out</tt> at which the writing of the
+     * A-law samples is to start
+     */
+    public static void linearToAlaw(
+            byte[] in, int inOffset, int inLength,
+            boolean bigEndian,
+            byte[] out, int outOffset)
+    {
+        linearToG711(
+                LINEAR_TO_ALAW,
+                in, inOffset, inLength,
+                bigEndian, 0,
+                out, outOffset);
+    }
+
+    /**
+     * Encodes 16-bit linear samples into G.711 samples using a specific
+     * lookup table.
+     *
+     * @param table the table which maps the unsigned value of the bits of
+     * the linear samples to G.711 samples
+     * @param in the bytes of the 16-bit linear samples
+     * @param inOffset the offset in <tt>in</tt> at which the linear samples
+     * start
+     * @param inLength the number of bytes of the linear samples in <tt>in</tt>
+     * @param bigEndian <tt>true</tt> if the linear samples are big-endian or
+     * <tt>false</tt> if they are little-endian
+     * @param bias the value to add to the linear samples before encoding,
+     * e.g. <tt>32768</tt> for unsigned samples
+     * @param out the array to write the G.711 samples into
+     * @param outOffset the offset in <tt>out</tt> at which the writing of the
+     * G.711 samples is to start
+     */
+    private static void linearToG711(
+            byte[] table,
+            byte[] in, int inOffset, int inLength,
+            boolean bigEndian, int bias,
+            byte[] out, int outOffset)
+    {
+        int msbOffset = bigEndian ? 0 : 1;
+        int lsbOffset = 1 - msbOffset;
+        int end = inOffset + (inLength & ~1);
+
+        for (int i = inOffset, o = outOffset; i < end; i += 2, o++)
+        {
+            int sample
+                = ((in[i + msbOffset] & 0xFF) << 8)
+                    | (in[i + lsbOffset] & 0xFF);
+
+            out[o] = table[(sample + bias) & 0xFFFF];
+        }
+    }
+
+    /**
+     * Encodes 16-bit linear samples into mu-law samples.
+     *
+     * @param in the bytes of the 16-bit linear samples
+     * @param inOffset the offset in <tt>in</tt> at which the linear samples
+     * start
+     * @param inLength the number of bytes of the linear samples in <tt>in</tt>
+     * @param bigEndian <tt>true</tt> if the linear samples are big-endian or
+     * <tt>false</tt> if they are little-endian
+     * @param signed <tt>true</tt> if the linear samples are signed or
+     * <tt>false</tt> if they are unsigned
+     * @param out the array to write the mu-law samples into
+     * @param outOffset the offset in <tt>out</tt> at which the writing of the
+     * mu-law samples is to start
+     */
+    public static void linearToUlaw(
+            byte[] in, int inOffset, int inLength,
+            boolean bigEndian, boolean signed,
+            byte[] out, int outOffset)
+    {
+        linearToG711(
+                LINEAR_TO_ULAW,
+                in, inOffset, inLength,
+                bigEndian, signed ? 0 : 0x8000,
+                out, outOffset);
+    }
+
+    /**
+     * Decodes mu-law samples into 16-bit little-endian linear samples.
+     *
+     * @param in the mu-law samples
+     * @param inOffset the offset in <tt>in</tt> at which the mu-law samples
+     * start
+     * @param inLength the number of mu-law samples in <tt>in</tt>
+     * @param out the array to write the bytes of the linear samples into
+     * @param outOffset the offset in <tt>out</tt> at which the writing of the
+     * linear samples is to start
+     */
+    public static void ulawToLinear(
+            byte[] in, int inOffset, int inLength,
+            byte[] out, int outOffset)
+    {
+        int end = inOffset + inLength;
+
+        for (int i = inOffset, o = outOffset; i < end; i++, o += 2)
+        {
+            short sample = ULAW_TO_LINEAR[in[i] & 0xFF];
+
+            out[o] = (byte) sample;
+            out[o + 1] = (byte) (sample >> 8);
+        }
+    }
+
+    /**
+     * Prevents the initialization of <tt>G711Kernels</tt> instances.
+     */
+    private G711Kernels()
+    {
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.recording;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * The EBML element IDs used by the Matroska/WebM files written by
+ * {@link WebmWriter} and utility methods for encoding and decoding EBML
+ * variable-length integers.
+ */
+final class Ebml
+{
+    static final int EBML = 0x1A45DFA3;
+    static final int EBML_VERSION = 0x4286;
+    static final int EBML_READ_VERSION = 0x42F7;
+    static final int EBML_MAX_ID_LENGTH = 0x42F2;
+    static final int EBML_MAX_SIZE_LENGTH = 0x42F3;
+    static final int DOC_TYPE = 0x4282;
+    static final int DOC_TYPE_VERSION = 0x4287;
+    static final int DOC_TYPE_READ_VERSION = 0x4285;
+
+    static final int SEGMENT = 0x18538067;
+
+    static final int SEEK_HEAD = 0x114D9B74;
+    static final int SEEK = 0x4DBB;
+    static final int SEEK_ID = 0x53AB;
+    static final int SEEK_POSITION = 0x53AC;
+
+    static final int INFO = 0x1549A966;
+    static final int TIMECODE_SCALE = 0x2AD7B1;
+    static final int DURATION = 0x4489;
+    static final int MUXING_APP = 0x4D80;
+    static final int WRITING_APP = 0x5741;
+
+    static final int TRACKS = 0x1654AE6B;
+    static final int TRACK_ENTRY = 0xAE;
+    static final int TRACK_NUMBER = 0xD7;
+    static final int TRACK_UID = 0x73C5;
+    static final int TRACK_TYPE = 0x83;
+    static final int CODEC_ID = 0x86;
+    static final int VIDEO = 0xE0;
+    static final int PIXEL_WIDTH = 0xB0;
+    static final int PIXEL_HEIGHT = 0xBA;
+
+    static final int CLUSTER = 0x1F43B675;
+    static final int TIMECODE = 0xE7;
+    static final int SIMPLE_BLOCK = 0xA3;
+
+    static final int CUES = 0x1C53BB6B;
+    static final int CUE_POINT = 0xBB;
+    static final int CUE_TIME = 0xB3;
+    static final int CUE_TRACK_POSITIONS = 0xB7;
+    static final int CUE_TRACK = 0xF7;
+    static final int CUE_CLUSTER_POSITION = 0xF1;
+
+    static final int VOID = 0xEC;
+
+    /**
+     * The 8-byte encoding of an element size which is unknown. It is used
+     * for the <tt>Segment</tt> and <tt>Cluster</tt> elements while they are
+     * being written, so that a file which was not finalized remains readable
+     * up to its last complete block.
+     */
+    static final long UNKNOWN_SIZE = 0x01FFFFFFFFFFFFFFL;
+
+    /**
+     * The value of a size whose all value bits are set, which denotes an
+     * unknown size irrespective of the length of its encoding.
+     */
+    static final long UNKNOWN = -1;
+
+    /**
+     * Returns the number of bytes in the encoding of the element ID
+     * <tt>id</tt>. The length marker is part of EBML element IDs so the
+     * length follows from the magnitude of the ID.
+     *
+     * @param id the element ID
+     * @return the number of bytes in the encoding of <tt>id</tt>
+     */
+    static int idLength(int id)
+    {
+        if ((id & 0xFF000000) != 0)
+            return 4;
+        else if ((id & 0xFF0000) != 0)
+            return 3;
+        else if ((id & 0xFF00) != 0)
+            return 2;
+        else
+            return 1;
+    }
+
+    /**
+     * Returns the minimum number of bytes in which an unsigned integer may be
+     * stored.
+     *
+     * @param value the unsigned integer
+     * @return the minimum number of bytes in which <tt>value</tt> may be
+     * stored
+     */
+    static int uintLength(long value)
+    {
+        int length = 1;
+
+        while (length < 8 && (value >>> (8 * length)) != 0)
+            length++;
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes in the shortest encoding of the element
+     * size <tt>size</tt>.
+     *
+     * @param size the element size
+     * @return the number of bytes in the shortest encoding of <tt>size</tt>
+     */
+    static int sizeLength(long size)
+    {
+        int length = 1;
+
+        // All value bits set is reserved for the unknown size.
+        while (length < 8 && size >= (1L << (7 * length)) - 1)
+            length++;
+        return length;
+    }
+
+    /**
+     * Puts an element ID into a <tt>ByteBuffer</tt>.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put <tt>id</tt> into
+     * @param id the element ID to put into <tt>buf</tt>
+     */
+    static void putId(ByteBuffer buf, int id)
+    {
+        for (int i = idLength(id) - 1; i >= 0; i--)
+            buf.put((byte) (id >>> (8 * i)));
+    }
+
+    /**
+     * Puts an element size into a <tt>ByteBuffer</tt> using a specific number
+     * of bytes.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put <tt>size</tt> into
+     * @param size the element size to put into <tt>buf</tt>
+     * @param length the number of bytes to encode <tt>size</tt> in
+     */
+    static void putSize(ByteBuffer buf, long size, int length)
+    {
+        long value = size | (1L << (7 * length));
+
+        for (int i = length - 1; i >= 0; i--)
+            buf.put((byte) (value >>> (8 * i)));
+    }
+
+    /**
+     * Puts an element size into a <tt>ByteBuffer</tt> using the shortest
+     * encoding.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put <tt>size</tt> into
+     * @param size the element size to put into <tt>buf</tt>
+     */
+    static void putSize(ByteBuffer buf, long size)
+    {
+        putSize(buf, size, sizeLength(size));
+    }
+
+    /**
+     * Puts an unsigned integer into a <tt>ByteBuffer</tt> using a specific
+     * number of bytes.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put <tt>value</tt> into
+     * @param value the unsigned integer to put into <tt>buf</tt>
+     * @param length the number of bytes to encode <tt>value</tt> in
+     */
+    static void putUInt(ByteBuffer buf, long value, int length)
+    {
+        for (int i = length - 1; i >= 0; i--)
+            buf.put((byte) (value >>> (8 * i)));
+    }
+
+    /**
+     * Puts a complete unsigned integer element into a <tt>ByteBuffer</tt>.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put the element into
+     * @param id the ID of the element
+     * @param value the value of the element
+     */
+    static void putUIntElement(ByteBuffer buf, int id, long value)
+    {
+        int length = uintLength(value);
+
+        putId(buf, id);
+        putSize(buf, length);
+        putUInt(buf, value, length);
+    }
+
+    /**
+     * Puts a complete string element into a <tt>ByteBuffer</tt>.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put the element into
+     * @param id the ID of the element
+     * @param value the value of the element, which is expected to be ASCII
+     */
+    static void putStringElement(ByteBuffer buf, int id, String value)
+    {
+        int length = value.length();
+
+        putId(buf, id);
+        putSize(buf, length);
+        for (int i = 0; i < length; i++)
+            buf.put((byte) value.charAt(i));
+    }
+
+    /**
+     * Reads the header (i.e. the ID and the size) of an EBML element from a
+     * <tt>FileChannel</tt>.
+     *
+     * @param channel the <tt>FileChannel</tt> to read from
+     * @param position the position in <tt>channel</tt> at which the element
+     * starts
+     * @param header the <tt>ElementHeader</tt> to read into
+     * @return <tt>true</tt> if a complete and well-formed header was read;
+     * otherwise, <tt>false</tt>
+     * @throws IOException if reading from <tt>channel</tt> fails
+     */
+    static boolean readHeader(
+            FileChannel channel,
+            long position,
+            ElementHeader header)
+        throws IOException
+    {
+        ByteBuffer buf = header.buf;
+
+        buf.clear();
+        while (buf.hasRemaining())
+        {
+            int read = channel.read(buf, position + buf.position());
+
+            if (read <= 0)
+                break;
+        }
+        buf.flip();
+
+        int limit = buf.limit();
+
+        if (limit < 1)
+            return false;
+
+        // The ID keeps its length marker.
+        int b = buf.get(0) & 0xFF;
+        int idLength = Integer.numberOfLeadingZeros(b) - 23;
+
+        if (idLength > 4 || limit < idLength + 1)
+            return false;
+
+        int id = 0;
+
+        for (int i = 0; i < idLength; i++)
+            id = (id << 8) | (buf.get(i) & 0xFF);
+
+        // The size drops its length marker.
+        b = buf.get(idLength) & 0xFF;
+
+        int sizeLength = Integer.numberOfLeadingZeros(b) - 23;
+
+        if (sizeLength > 8 || limit < idLength + sizeLength)
+            return false;
+
+        long size = b & (0xFF >> sizeLength);
+        boolean unknown = (size == (0xFF >> sizeLength));
+
+        for (int i = 1; i < sizeLength; i++)
+        {
+            b = buf.get(idLength + i) & 0xFF;
+            size = (size << 8) | b;
+            unknown &= (b == 0xFF);
+        }
+
+        header.id = id;
+        header.size = unknown ? UNKNOWN : size;
+        header.headerLength = idLength + sizeLength;
+        header.sizeLength = sizeLength;
+        return true;
+    }
+
+    /**
+     * Prevents the initialization of <tt>Ebml</tt> instances.
+     */
+    private Ebml()
+    {
+    }
+
+    /**
+     * The ID and the size of an EBML element as read by
+     * {@link #readHeader(FileChannel, long, ElementHeader)}.
+     */
+    static class ElementHeader
+    {
+        /**
+         * The buffer into which the bytes of the header are read.
+         */
+        private final ByteBuffer buf = ByteBuffer.allocate(12);
+
+        /**
+         * The number of bytes in the encoding of the ID and the size of the
+         * element.
+         */
+        int headerLength;
+
+        /**
+         * The ID of the element.
+         */
+        int id;
+
+        /**
+         * The size of the data of the element or {@link #UNKNOWN}.
+         */
+        long size;
+
+        /**
+         * The number of bytes in the encoding of the size of the element.
+         */
+        int sizeLength;
+    }
+}
@@ -21,6 +21,7 @@
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
 
 /**
  * A <tt>TransformEngine</tt> and <tt>PacketTransformer</tt> which implement
@@ -35,42 +36,10 @@
                PacketTransformer
 {
     /**
-     * A <tt>Comparator</tt> implementation for RTP sequence numbers.
-     * Compares the sequence numbers <tt>a</tt> and <tt>b</tt>
-     * of <tt>pkt1</tt> and <tt>pkt2</tt>, taking into account the wrap at 2^16.
-     *
-     * IMPORTANT: This is a valid <tt>Comparator</tt> implementation only if
-     * used for subsets of [0, 2^16) which don't span more than 2^15 elements.
-     *
-     * E.g. it works for: [0, 2^15-1] and ([50000, 2^16) u [0, 10000])
-     * Doesn't work for: [0, 2^15] and ([0, 2^15-1] u {2^16-1}) and [0, 2^16)
+     * The maximum number of slots of the ring of a <tt>Buffer</tt>. Sequence
+     * numbers can only be ordered (modulo 2^16) within half of their space.
      */
-    private static final Comparator<? super RawPacket> seqNumComparator
-            = new Comparator<RawPacket>() {
-        @Override
-        public int compare(RawPacket pkt1, RawPacket pkt2)
-        {
-            long a = pkt1.getSequenceNumber();
-            long b = pkt2.getSequenceNumber();
-
-            if (a == b)
-                return 0;
-            else if (a > b)
-            {
-                if (a - b < 32768)
-                    return 1;
-                else
-                    return -1;
-            }
-            else //a < b
-            {
-                if (b - a < 32768)
-                    return -1;
-                else
-                    return 1;
-            }
-        }
-    };
+    private static final int MAX_RING_SIZE = 1 << 15;
 
     /**
      * The <tt>ConfigurationService</tt> used to load buffering configuration.
@@ -96,9 +65,18 @@ else if (a > b)
 
     /**
      * The map of actual <tt>Buffer</tt> instances, one for each SSRC that this
-     * <tt>PacketBuffer</tt> buffers in each instant.
+     * <tt>PacketBuffer</tt> buffers in each instant. Never modified once
+     * published: writers (synchronized on {@link #buffersSyncRoot}) publish a
+     * modified copy so that the lookup of every packet is lock-free.
+     */
+    private volatile LongObjectHashMap<Buffer> buffers
+        = new LongObjectHashMap<>();
+
+    /**
+     * The <tt>Object</tt> which synchronizes the modifications of
+     * {@link #buffers}.
      */
-    private final Map<Long, Buffer> buffers = new HashMap<>();
+    private final Object buffersSyncRoot = new Object();
 
     /**
      * Implements
@@ -123,6 +101,10 @@ public void close()
     @Override
     public RawPacket[] reverseTransform(RawPacket[] pkts)
     {
+        // The packets to return if a Buffer had to release more than one
+        // packet (which is rare), otherwise pkts is modified in place.
+        List<RawPacket> out = null;
+
         for (int i = 0; i<pkts.length; i++)
         {
             RawPacket pkt = pkts[i];
@@ -130,17 +112,41 @@ public RawPacket[] reverseTransform(RawPacket[] pkts)
             // Drop padding packets. We assume that any packets with padding
             // are no-payload probing packets.
             if (pkt != null && pkt.getPaddingSize() != 0)
-                pkts[i] = null;
-            pkt = pkts[i];
+                pkt = null;
 
             if (willBuffer(pkt))
             {
                 Buffer buffer = getBuffer(pkt.getSSRCAsLong());
-                pkts[i] = buffer.insert(pkt);
+
+                synchronized (buffer)
+                {
+                    int seq = pkt.getSequenceNumber();
+
+                    if (!buffer.disabled && !buffer.fits(seq))
+                    {
+                        // The packets which are too old to share the ring
+                        // with pkt precede it in the output.
+                        if (out == null)
+                        {
+                            out = new ArrayList<>(pkts.length + buffer.count);
+                            out.addAll(Arrays.asList(pkts).subList(0, i));
+                        }
+                        do
+                        {
+                            out.add(buffer.pollFirst());
+                        }
+                        while (!buffer.fits(seq));
+                    }
+                    pkt = buffer.insert(pkt);
+                }
             }
 
+            if (out == null)
+                pkts[i] = pkt;
+            else
+                out.add(pkt);
         }
-        return pkts;
+        return (out == null) ? pkts : out.toArray(new RawPacket[out.size()]);
     }
 
     /**
@@ -198,9 +204,16 @@ void disable(long ssrc)
      */
     void reset(long ssrc)
     {
-        synchronized (buffers)
+        synchronized (buffersSyncRoot)
         {
-            buffers.remove(ssrc);
+            if (buffers.containsKey(ssrc))
+            {
+                LongObjectHashMap<Buffer> newBuffers
+                    = new LongObjectHashMap<>(buffers);
+
+                newBuffers.remove(ssrc);
+                buffers = newBuffers;
+            }
         }
     }
 
@@ -213,16 +226,25 @@ void reset(long ssrc)
      */
     private Buffer getBuffer(long ssrc)
     {
-        synchronized (buffers)
+        Buffer buffer = buffers.get(ssrc);
+
+        if (buffer == null)
         {
-            Buffer buffer = buffers.get(ssrc);
-            if (buffer == null)
+            synchronized (buffersSyncRoot)
             {
-                buffer = new Buffer(SIZE, ssrc);
-                buffers.put(ssrc, buffer);
+                buffer = buffers.get(ssrc);
+                if (buffer == null)
+                {
+                    LongObjectHashMap<Buffer> newBuffers
+                        = new LongObjectHashMap<>(buffers);
+
+                    buffer = new Buffer(SIZE, ssrc);
+                    newBuffers.put(ssrc, buffer);
+                    buffers = newBuffers;
+                }
             }
-            return buffer;
         }
+        return buffer;
     }
 
     /**
@@ -234,11 +256,8 @@ private Buffer getBuffer(long ssrc)
      */
     RawPacket[] emptyBuffer(long ssrc)
     {
-        Buffer buffer;
-        synchronized (buffers)
-        {
-            buffer = buffers.get(ssrc);
-        }
+        Buffer buffer = buffers.get(ssrc);
+
         if (buffer != null)
         {
             return buffer.empty();
@@ -248,19 +267,50 @@ RawPacket[] emptyBuffer(long ssrc)
     }
 
     /**
-     * Represents a buffer for <tt>RawPacket</tt>s.
+     * Represents a buffer for <tt>RawPacket</tt>s. The packets are stored in a
+     * ring indexed by their RTP sequence numbers (modulo the size of the ring,
+     * a power of two), so that they are inserted in constant time and drained
+     * in order without sorting. The ring is larger than the capacity so that
+     * the buffered packets may span (e.g. because of losses) more sequence
+     * numbers than the capacity.
+     *
+     * Except for {@link #empty()}, the methods are to be invoked while
+     * synchronized on the <tt>Buffer</tt>.
      */
     private static class Buffer
     {
         /**
-         * The actual contents of this <tt>Buffer</tt>.
+         * The maximum capacity of this <tt>Buffer</tt>.
+         */
+        private final int capacity;
+
+        /**
+         * The number of packets in this <tt>Buffer</tt>.
          */
-        private final SortedSet<RawPacket> buffer;
+        private int count = 0;
 
         /**
-         * The maximum capacity of this <tt>Buffer</tt>.
+         * The sequence number of the oldest packet in this <tt>Buffer</tt>.
+         * Valid only if {@link #count} is positive.
          */
-        private final int capacity;
+        private int first;
+
+        /**
+         * The sequence number of the newest packet in this <tt>Buffer</tt>.
+         * Valid only if {@link #count} is positive.
+         */
+        private int last;
+
+        /**
+         * The mask which maps sequence numbers to indices in {@link #ring}.
+         */
+        private final int mask;
+
+        /**
+         * The actual contents of this <tt>Buffer</tt>. The packet with
+         * sequence number <tt>seq</tt> is at index <tt>seq & mask</tt>.
+         */
+        private final RawPacket[] ring;
 
         /**
          * The SSRC that this <tt>Buffer</tt> is associated with.
@@ -280,16 +330,46 @@ RawPacket[] emptyBuffer(long ssrc)
          */
         Buffer(int capacity, long ssrc)
         {
-            buffer = new TreeSet<RawPacket>(seqNumComparator);
-            this.capacity = capacity;
+            // Leave as much room for gaps as there is for packets.
+            int ringSize = 1;
+
+            while (ringSize < 2 * capacity && ringSize < MAX_RING_SIZE)
+                ringSize <<= 1;
+
+            ring = new RawPacket[ringSize];
+            mask = ringSize - 1;
+            this.capacity = Math.min(capacity, ringSize);
             this.ssrc = ssrc;
         }
 
+        /**
+         * Determines whether a packet with a specific sequence number fits in
+         * the ring of this <tt>Buffer</tt> along with the packets which are
+         * already in it.
+         *
+         * @param seq the sequence number of the packet.
+         * @return <tt>true</tt> if a packet with sequence number <tt>seq</tt>
+         * can be inserted without releasing other packets first.
+         */
+        boolean fits(int seq)
+        {
+            if (count == 0)
+                return true;
+
+            int diff = RTPUtils.sequenceNumberDiff(seq, first);
+
+            if (diff >= 0)
+                return diff < ring.length;
+            else
+                return RTPUtils.sequenceNumberDiff(last, seq) < ring.length;
+        }
+
         /**
          * Inserts a specific <tt>RawPacket</tt> in this <tt>Buffer</tt>. If,
          * after the insertion, the number of elements stored in the buffer
          * is more than <tt>this.capacity</tt>, removes from the buffer and
          * returns the 'first' packet in the buffer. Otherwise, return null.
+         * The packet must {@link #fits(int)} in this <tt>Buffer</tt>.
          *
          * @param pkt the packet to insert.
          * @return Either the 'first' packet in the buffer, or null, according
@@ -301,34 +381,70 @@ RawPacket insert(RawPacket pkt)
             if (disabled)
                 return null;
 
-            RawPacket ret = null;
-            synchronized (buffer)
+            int seq = pkt.getSequenceNumber();
+            int index = seq & mask;
+
+            if (count == 0)
+            {
+                first = last = seq;
+            }
+            else if (ring[index] != null)
+            {
+                // A duplicate.
+                return null;
+            }
+            else if (RTPUtils.sequenceNumberDiff(seq, first) < 0)
+            {
+                first = seq;
+            }
+            else if (RTPUtils.sequenceNumberDiff(seq, last) > 0)
+            {
+                last = seq;
+            }
+            ring[index] = pkt;
+            count++;
+
+            return (count > capacity) ? pollFirst() : null;
+        }
+
+        /**
+         * Removes and returns the oldest packet in this <tt>Buffer</tt>.
+         *
+         * @return the oldest packet in this <tt>Buffer</tt>, or null if this
+         * <tt>Buffer</tt> is empty.
+         */
+        RawPacket pollFirst()
+        {
+            if (count == 0)
+                return null;
+
+            int index = first & mask;
+            RawPacket pkt = ring[index];
+
+            ring[index] = null;
+            if (--count > 0)
             {
-                buffer.add(pkt);
-                if (buffer.size() > capacity)
+                // Skip the gap (if any) to the next packet.
+                do
                 {
-                    ret = buffer.first();
-                    buffer.remove(ret);
+                    first = (first + 1) & 0xFFFF;
                 }
+                while (ring[first & mask] == null);
             }
-
-            return ret;
+            return pkt;
         }
 
         /**
          * Empties this <tt>Buffer</tt>, returning all its contents.
          * @return the contents of this <tt>Buffer</tt>.
          */
-        RawPacket[] empty()
+        synchronized RawPacket[] empty()
         {
-            synchronized (buffer)
-            {
-                RawPacket[] ret = buffer.toArray(new RawPacket[buffer.size()]);
-                buffer.clear();
-
-                return ret;
-            }
+            RawPacket[] ret = new RawPacket[count];
 
+            for (int i = 0; i < ret.length; i++)
+                ret[i] = pollFirst();
+            return ret;
         }
     }
 }
@@ -16,14 +16,40 @@
 package org.jitsi.impl.neomedia.recording;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
 import org.jitsi.util.*;
 
+/**
+ * Writes VP8 frames into a WebM (Matroska) file.
+ * <p>
+ * The file is streamed through a <tt>FileChannel</tt>: frames are copied
+ * once into a write buffer which is written out whenever it fills up and
+ * whenever a <tt>Cluster</tt> is complete. The <tt>Segment</tt> and the
+ * <tt>Cluster</tt> which is being written carry the unknown size, the sizes
+ * being filled in when they are complete. The <tt>CuePoint</tt>s are
+ * collected as clusters start (at most {@link #MAX_CUE_POINTS} of them, see
+ * {@link #addCuePoint(long, long)}) and the <tt>Cues</tt> are appended when
+ * the file is closed. Consequently, a file which was not closed (e.g.
+ * because the process crashed) contains at least all the <tt>Cluster</tt>s
+ * but the one which was being written, and may be finalized by
+ * {@link #recover(String)}.
+ * </p>
+ * <p>
+ * Like the native implementation which it replaces, the methods which write
+ * to the file do not throw <tt>IOException</tt>. The first error is logged
+ * and the frames written after it are dropped.
+ * </p>
+ */
 public class WebmWriter
 {
-    static
-    {
-        JNIUtils.loadLibrary("jnvpx", WebmWriter.class.getClassLoader());
-    }
+    /**
+     * The <tt>Logger</tt> used by the <tt>WebmWriter</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(WebmWriter.class);
 
     /**
      * Constant corresponding to <tt>VPX_FRAME_IS_KEY</tt> from libvpx's
@@ -37,52 +63,1117 @@
      */
     public static int FLAG_FRAME_IS_INVISIBLE = 0x04;
 
-    private long glob;
+    /**
+     * The default size in bytes of the buffer through which the file is
+     * written.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
 
-    private native long allocCfg();
+    /**
+     * The maximum number of <tt>CuePoint</tt>s which a <tt>WebmWriter</tt>
+     * keeps in memory in order to write them in the <tt>Cues</tt>.
+     */
+    static final int MAX_CUE_POINTS = 4096;
 
     /**
-     * Free-s <tt>glob</tt> and closes the file opened for writing.
-     * @param glob
+     * The value of the <tt>MuxingApp</tt> and <tt>WritingApp</tt> elements.
      */
-    private native void freeCfg(long glob);
+    private static final String APP = "libjitsi";
 
-    private native boolean openFile(long glob, String fileName);
-    private native void writeWebmFileHeader(long glob, int width, int height);
-    public void writeWebmFileHeader(int width, int height)
+    /**
+     * The number of the only track in the written files.
+     */
+    private static final int TRACK_NUMBER = 1;
+
+    /**
+     * The number of bytes of a <tt>Seek</tt> element as written by
+     * {@link #putSeek(ByteBuffer, int, long)}.
+     */
+    private static final int SEEK_LENGTH = 21;
+
+    /**
+     * The number of bytes reserved at the start of the <tt>Segment</tt> for
+     * the <tt>SeekHead</tt>. It fits entries for <tt>Info</tt>,
+     * <tt>Tracks</tt> and <tt>Cues</tt>; the space of the last is taken by a
+     * <tt>Void</tt> element until the file is finalized.
+     */
+    private static final int SEEK_HEAD_LENGTH = 5 + 3 * SEEK_LENGTH;
+
+    /**
+     * The flag of <tt>SimpleBlock</tt> which indicates a keyframe.
+     */
+    private static final int SIMPLE_BLOCK_KEYFRAME = 0x80;
+
+    /**
+     * The flag of <tt>SimpleBlock</tt> which indicates an invisible frame.
+     */
+    private static final int SIMPLE_BLOCK_INVISIBLE = 0x08;
+
+    /**
+     * Finalizes a WebM file which was written by a <tt>WebmWriter</tt> that
+     * was not closed, e.g. because the process crashed. The incomplete block
+     * at the end of the file (if any) is dropped, the sizes of the last
+     * <tt>Cluster</tt> and the <tt>Segment</tt> are filled in and the
+     * <tt>Cues</tt> and the duration are written.
+     *
+     * @param filename the name of the file to recover
+     * @return <tt>true</tt> if the file was modified; <tt>false</tt> if it was
+     * already finalized
+     * @throws IOException if reading or writing the file fails or it is not a
+     * file written by a <tt>WebmWriter</tt>
+     */
+    public static boolean recover(String filename)
+        throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        boolean recovered = false;
+
+        try
+        {
+            WebmWriter writer
+                = new WebmWriter(file, filename, DEFAULT_BUFFER_SIZE);
+
+            if (writer.scan())
+            {
+                writer.finish();
+                recovered = true;
+            }
+        }
+        finally
+        {
+            file.close();
+        }
+        return recovered;
+    }
+
+    /**
+     * Puts the header of a master element with a one-byte size into a
+     * <tt>ByteBuffer</tt>. The size is filled in by
+     * {@link #endMaster(ByteBuffer, int)}.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put the header into
+     * @param id the ID of the master element
+     * @return the index in <tt>buf</tt> of the size of the master element
+     */
+    private static int startMaster(ByteBuffer buf, int id)
+    {
+        Ebml.putId(buf, id);
+
+        int sizeIndex = buf.position();
+
+        buf.put((byte) 0);
+        return sizeIndex;
+    }
+
+    /**
+     * Fills in the size of a master element started by
+     * {@link #startMaster(ByteBuffer, int)} and completed by the data put
+     * into <tt>buf</tt> since.
+     *
+     * @param buf the <tt>ByteBuffer</tt> which contains the master element
+     * @param sizeIndex the index in <tt>buf</tt> of the size of the master
+     * element
+     */
+    private static void endMaster(ByteBuffer buf, int sizeIndex)
     {
-        writeWebmFileHeader(glob, width, height);
+        int size = buf.position() - sizeIndex - 1;
+
+        if (size >= 0x7F)
+            throw new IllegalStateException("size");
+        buf.put(sizeIndex, (byte) (0x80 | size));
+    }
+
+    /**
+     * Puts a <tt>Seek</tt> element into a <tt>ByteBuffer</tt>.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put the element into
+     * @param id the ID of the element to which the <tt>Seek</tt> points
+     * @param position the position relative to the data of the
+     * <tt>Segment</tt> to which the <tt>Seek</tt> points
+     */
+    private static void putSeek(ByteBuffer buf, int id, long position)
+    {
+        Ebml.putId(buf, Ebml.SEEK);
+        Ebml.putSize(buf, SEEK_LENGTH - 3, 1);
+        Ebml.putId(buf, Ebml.SEEK_ID);
+        Ebml.putSize(buf, 4, 1);
+        Ebml.putUInt(buf, id, 4);
+        Ebml.putId(buf, Ebml.SEEK_POSITION);
+        Ebml.putSize(buf, 8, 1);
+        Ebml.putUInt(buf, position, 8);
     }
-    private native void writeWebmBlock(long glob, FrameDescriptor fd);
-    private native void writeWebmFileFooter(long glob, long hash);
 
+    /**
+     * The buffer through which the file is written.
+     */
+    private final ByteBuffer buf;
+
+    /**
+     * The position in the file of the first byte of {@link #buf}.
+     */
+    private long bufPosition;
+
+    /**
+     * The <tt>FileChannel</tt> of {@link #file}.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Whether this <tt>WebmWriter</tt> has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * The position in the file of the <tt>Cluster</tt> which is being written
+     * or <tt>-1</tt>.
+     */
+    private long clusterPosition = -1;
+
+    /**
+     * The timecode in milliseconds of the <tt>Cluster</tt> which is being
+     * written.
+     */
+    private long clusterTimecode;
+
+    /**
+     * The positions relative to the data of the <tt>Segment</tt> of the
+     * <tt>Cluster</tt>s of the <tt>CuePoint</tt>s to be written when the file
+     * is finalized.
+     */
+    private long[] cueClusterPositions = new long[64];
+
+    /**
+     * The number of <tt>CuePoint</tt>s in {@link #cueTimes} and
+     * {@link #cueClusterPositions}.
+     */
+    private int cueCount = 0;
+
+    /**
+     * The minimum interval in milliseconds between two <tt>CuePoint</tt>s.
+     * Grows whenever {@link #MAX_CUE_POINTS} is reached.
+     */
+    private long cueInterval = 0;
+
+    /**
+     * The timecodes in milliseconds of the <tt>CuePoint</tt>s to be written
+     * when the file is finalized.
+     */
+    private long[] cueTimes = new long[64];
+
+    /**
+     * The position in the file of the value of the <tt>Duration</tt> element
+     * or <tt>-1</tt>.
+     */
+    private long durationPosition = -1;
+
+    /**
+     * Whether writing to the file has failed.
+     */
+    private boolean failed = false;
+
+    /**
+     * The file which is written.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * The name of {@link #file}.
+     */
+    private final String filename;
+
+    /**
+     * Whether the header of the file has been written.
+     */
+    private boolean headerWritten = false;
+
+    /**
+     * The position relative to the data of the <tt>Segment</tt> of the
+     * <tt>Info</tt> element.
+     */
+    private long infoPosition;
+
+    /**
+     * The largest timecode in milliseconds of a written frame or <tt>-1</tt>.
+     */
+    private long lastPts = -1;
+
+    /**
+     * The buffer into which the headers of elements are put before they are
+     * written through {@link #buf}.
+     */
+    private final ByteBuffer scratch = ByteBuffer.allocate(64);
+
+    /**
+     * The position in the file of the data of the <tt>Segment</tt>.
+     */
+    private long segmentDataPosition;
+
+    /**
+     * The position in the file of the <tt>Segment</tt>.
+     */
+    private long segmentPosition;
+
+    /**
+     * The position in the file of the <tt>SeekHead</tt> or <tt>-1</tt>.
+     */
+    private long seekHeadPosition = -1;
+
+    /**
+     * The position relative to the data of the <tt>Segment</tt> of the
+     * <tt>Tracks</tt> element.
+     */
+    private long tracksPosition;
+
+    /**
+     * Initializes a new <tt>WebmWriter</tt> which is to write a specific file.
+     *
+     * @param filename the name of the file to write
+     * @throws IOException if the file cannot be opened for writing
+     */
     public WebmWriter(String filename)
-            throws IOException
+        throws IOException
+    {
+        this(filename, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Initializes a new <tt>WebmWriter</tt> which is to write a specific file
+     * through a buffer of a specific size.
+     *
+     * @param filename the name of the file to write
+     * @param bufferSize the size in bytes of the buffer through which the file
+     * is to be written
+     * @throws IOException if the file cannot be opened for writing
+     */
+    public WebmWriter(String filename, int bufferSize)
+        throws IOException
     {
-        glob = allocCfg();
+        RandomAccessFile file;
 
-        if (glob == 0)
+        try
+        {
+            file = new RandomAccessFile(filename, "rw");
+            file.setLength(0);
+        }
+        catch (IOException ioe)
         {
-            throw new IOException("allocCfg() failed");
+            throw new IOException(
+                    "Can not open " + filename + " for writing",
+                    ioe);
         }
 
-        if (openFile(glob, filename))
+        this.file = file;
+        this.filename = filename;
+        channel = file.getChannel();
+        buf = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Initializes a new <tt>WebmWriter</tt> which is to finalize an existing
+     * file.
+     *
+     * @param file the file to finalize
+     * @param filename the name of <tt>file</tt>
+     * @param bufferSize the size in bytes of the buffer through which the file
+     * is to be written
+     */
+    private WebmWriter(RandomAccessFile file, String filename, int bufferSize)
+    {
+        this.file = file;
+        this.filename = filename;
+        channel = file.getChannel();
+        buf = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Adds a <tt>CuePoint</tt> to the <tt>Cues</tt> to be written when the
+     * file is finalized. In order to bound the memory taken by long
+     * recordings, every other <tt>CuePoint</tt> is dropped once there are
+     * {@link #MAX_CUE_POINTS} of them, and the following ones are spaced
+     * further apart.
+     *
+     * @param time the timecode in milliseconds of the <tt>CuePoint</tt>
+     * @param clusterPosition the position in the file of the
+     * <tt>Cluster</tt> which starts with the keyframe at <tt>time</tt>
+     */
+    private void addCuePoint(long time, long clusterPosition)
+    {
+        // The CuePoints are to be sorted by time.
+        if (cueCount != 0 && time - cueTimes[cueCount - 1] < cueInterval)
+            return;
+
+        if (cueCount == MAX_CUE_POINTS)
         {
-            throw new IOException("Can not open " + filename + " for writing");
+            int count = 0;
+
+            for (int i = 0; i < cueCount; i += 2, count++)
+            {
+                cueTimes[count] = cueTimes[i];
+                cueClusterPositions[count] = cueClusterPositions[i];
+            }
+            cueCount = count;
+            cueInterval
+                = Math.max(
+                        2 * cueInterval,
+                        (time - cueTimes[0]) / cueCount);
+            if (time - cueTimes[cueCount - 1] < cueInterval)
+                return;
+        }
+        else if (cueCount == cueTimes.length)
+        {
+            int length = Math.min(2 * cueCount, MAX_CUE_POINTS);
+
+            cueTimes = Arrays.copyOf(cueTimes, length);
+            cueClusterPositions = Arrays.copyOf(cueClusterPositions, length);
         }
+
+        cueTimes[cueCount] = time;
+        cueClusterPositions[cueCount] = clusterPosition - segmentDataPosition;
+        cueCount++;
     }
 
+    /**
+     * Finalizes the file and closes it. Frames may not be written after the
+     * method returns. If writing to the file has failed, the file is closed
+     * as it is and may be finalized later by {@link #recover(String)}.
+     */
     public void close()
     {
-        writeWebmFileFooter(glob, 0);
-        freeCfg(glob); //also closes the file
+        if (closed)
+            return;
+        closed = true;
+
+        try
+        {
+            if (headerWritten && !failed)
+                finish();
+        }
+        catch (IOException ioe)
+        {
+            writeFailed(ioe);
+        }
+        finally
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException ioe)
+            {
+                logger.error("Failed to close " + filename, ioe);
+            }
+        }
     }
 
+    /**
+     * Fills in the size of the <tt>Cluster</tt> which is being written (if
+     * any).
+     *
+     * @throws IOException if writing to the file fails
+     */
+    private void endCluster()
+        throws IOException
+    {
+        if (clusterPosition != -1)
+        {
+            long idAndSizeLength = 4 + 8;
+
+            patchSize(
+                    clusterPosition + 4,
+                    position() - clusterPosition - idAndSizeLength);
+            clusterPosition = -1;
+        }
+    }
+
+    /**
+     * Writes the <tt>Cues</tt>, fills in the <tt>SeekHead</tt>, the duration
+     * and the size of the <tt>Segment</tt>, and writes out {@link #buf}.
+     *
+     * @throws IOException if writing to the file fails
+     */
+    private void finish()
+        throws IOException
+    {
+        endCluster();
+
+        long cuesPosition = -1;
+
+        if (cueCount != 0)
+        {
+            cuesPosition = position() - segmentDataPosition;
+
+            ByteBuffer buf = scratch;
+            long cuesSize = 0;
+
+            for (int i = 0; i < cueCount; i++)
+            {
+                buf.clear();
+                putCuePoint(buf, i);
+                cuesSize += buf.position();
+            }
+
+            buf.clear();
+            Ebml.putId(buf, Ebml.CUES);
+            Ebml.putSize(buf, cuesSize);
+            write(buf);
+            for (int i = 0; i < cueCount; i++)
+            {
+                buf.clear();
+                putCuePoint(buf, i);
+                write(buf);
+            }
+        }
+
+        long end = position();
+
+        flush();
+        channel.truncate(end);
+
+        if (seekHeadPosition != -1)
+        {
+            ByteBuffer buf = ByteBuffer.allocate(SEEK_HEAD_LENGTH);
+
+            putSeekHead(buf, cuesPosition);
+            buf.flip();
+            patch(seekHeadPosition, buf);
+        }
+        if (durationPosition != -1 && lastPts != -1)
+        {
+            ByteBuffer buf = scratch;
+
+            buf.clear();
+            buf.putDouble(lastPts);
+            buf.flip();
+            patch(durationPosition, buf);
+        }
+        patchSize(segmentPosition + 4, end - segmentDataPosition);
+    }
+
+    /**
+     * Writes out the contents of {@link #buf} to the file.
+     *
+     * @throws IOException if writing to the file fails
+     */
+    private void flush()
+        throws IOException
+    {
+        buf.flip();
+        while (buf.hasRemaining())
+            channel.write(buf, bufPosition + buf.position());
+        bufPosition += buf.limit();
+        buf.clear();
+    }
+
+    /**
+     * Overwrites bytes which have already been written, either to the file or
+     * to {@link #buf}.
+     *
+     * @param position the position in the file of the bytes to overwrite
+     * @param src the bytes to write at <tt>position</tt>
+     * @throws IOException if writing to the file fails
+     */
+    private void patch(long position, ByteBuffer src)
+        throws IOException
+    {
+        int length = src.remaining();
+        int onDisk
+            = (int) Math.max(0, Math.min(length, bufPosition - position));
+
+        if (onDisk > 0)
+        {
+            ByteBuffer disk = src.duplicate();
+
+            disk.limit(disk.position() + onDisk);
+            while (disk.hasRemaining())
+                channel.write(disk, position + onDisk - disk.remaining());
+        }
+        for (int i = onDisk; i < length; i++)
+        {
+            buf.put(
+                    (int) (position + i - bufPosition),
+                    src.get(src.position() + i));
+        }
+    }
+
+    /**
+     * Fills in an 8-byte element size which has already been written.
+     *
+     * @param position the position in the file of the size
+     * @param size the size to write at <tt>position</tt>
+     * @throws IOException if writing to the file fails
+     */
+    private void patchSize(long position, long size)
+        throws IOException
+    {
+        ByteBuffer buf = scratch;
+
+        buf.clear();
+        Ebml.putSize(buf, size, 8);
+        buf.flip();
+        patch(position, buf);
+    }
+
+    /**
+     * Returns the position in the file at which the next byte is to be
+     * written.
+     *
+     * @return the position in the file at which the next byte is to be
+     * written
+     */
+    private long position()
+    {
+        return bufPosition + buf.position();
+    }
+
+    /**
+     * Puts a <tt>CuePoint</tt> added by {@link #addCuePoint(long, long)} into
+     * a <tt>ByteBuffer</tt>.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put the <tt>CuePoint</tt> into
+     * @param index the index of the <tt>CuePoint</tt> in {@link #cueTimes}
+     */
+    private void putCuePoint(ByteBuffer buf, int index)
+    {
+        int cuePoint = startMaster(buf, Ebml.CUE_POINT);
+
+        Ebml.putUIntElement(buf, Ebml.CUE_TIME, cueTimes[index]);
+
+        int cueTrackPositions = startMaster(buf, Ebml.CUE_TRACK_POSITIONS);
+
+        Ebml.putUIntElement(buf, Ebml.CUE_TRACK, TRACK_NUMBER);
+        Ebml.putUIntElement(
+                buf,
+                Ebml.CUE_CLUSTER_POSITION,
+                cueClusterPositions[index]);
+        endMaster(buf, cueTrackPositions);
+        endMaster(buf, cuePoint);
+    }
+
+    /**
+     * Puts the <tt>SeekHead</tt> into a <tt>ByteBuffer</tt>, padded with a
+     * <tt>Void</tt> to {@link #SEEK_HEAD_LENGTH} if the position of the
+     * <tt>Cues</tt> is not known.
+     *
+     * @param buf the <tt>ByteBuffer</tt> to put the <tt>SeekHead</tt> into
+     * @param cuesPosition the position relative to the data of the
+     * <tt>Segment</tt> of the <tt>Cues</tt> or <tt>-1</tt>
+     */
+    private void putSeekHead(ByteBuffer buf, long cuesPosition)
+    {
+        int seekCount = (cuesPosition == -1) ? 2 : 3;
+
+        Ebml.putId(buf, Ebml.SEEK_HEAD);
+        Ebml.putSize(buf, seekCount * SEEK_LENGTH, 1);
+        putSeek(buf, Ebml.INFO, infoPosition);
+        putSeek(buf, Ebml.TRACKS, tracksPosition);
+        if (cuesPosition == -1)
+        {
+            Ebml.putId(buf, Ebml.VOID);
+            Ebml.putSize(buf, SEEK_LENGTH - 2, 1);
+            for (int i = 2; i < SEEK_LENGTH; i++)
+                buf.put((byte) 0);
+        }
+        else
+        {
+            putSeek(buf, Ebml.CUES, cuesPosition);
+        }
+    }
+
+    /**
+     * Reads an unsigned integer from the file.
+     *
+     * @param position the position in the file of the integer
+     * @param length the number of bytes of the integer
+     * @return the unsigned integer read from the file or <tt>-1</tt> if the
+     * file ends before it
+     * @throws IOException if reading from the file fails
+     */
+    private long readUInt(long position, int length)
+        throws IOException
+    {
+        ByteBuffer buf = scratch;
+
+        buf.clear();
+        buf.limit(length);
+        while (buf.hasRemaining())
+        {
+            if (channel.read(buf, position + buf.position()) <= 0)
+                return -1;
+        }
+
+        long value = 0;
+
+        for (int i = 0; i < length; i++)
+            value = (value << 8) | (buf.get(i) & 0xFF);
+        return value;
+    }
+
+    /**
+     * Reads the state of a file which was written by a <tt>WebmWriter</tt>
+     * that was not closed, so that it may be finalized by {@link #close()}.
+     * Fills in the sizes of the clusters which were not complete and drops the
+     * bytes after the last complete element.
+     *
+     * @return <tt>true</tt> if the file is to be finalized; <tt>false</tt> if
+     * it was already finalized
+     * @throws IOException if reading from the file fails or it is not a file
+     * written by a <tt>WebmWriter</tt>
+     */
+    private boolean scan()
+        throws IOException
+    {
+        Ebml.ElementHeader header = new Ebml.ElementHeader();
+
+        if (!Ebml.readHeader(channel, 0, header)
+                || header.id != Ebml.EBML
+                || header.size == Ebml.UNKNOWN)
+        {
+            throw new IOException("Not a WebM file");
+        }
+
+        segmentPosition = header.headerLength + header.size;
+        if (!Ebml.readHeader(channel, segmentPosition, header)
+                || header.id != Ebml.SEGMENT
+                || header.sizeLength != 8)
+        {
+            throw new IOException("Not a WebM file written by WebmWriter");
+        }
+        if (header.size != Ebml.UNKNOWN)
+            return false;
+
+        segmentDataPosition = segmentPosition + header.headerLength;
+
+        long fileSize = channel.size();
+        long position = segmentDataPosition;
+
+        // Nothing is buffered while scanning so patches go to the file.
+        bufPosition = fileSize;
+        boolean clusterSeen = false;
+
+        while (Ebml.readHeader(channel, position, header))
+        {
+            long dataPosition = position + header.headerLength;
+
+            if (header.id == Ebml.CLUSTER)
+            {
+                long limit
+                    = (header.size == Ebml.UNKNOWN)
+                        ? fileSize
+                        : Math.min(fileSize, dataPosition + header.size);
+                long end = scanCluster(position, dataPosition, limit);
+
+                if (header.size != end - dataPosition)
+                {
+                    ByteBuffer buf = ByteBuffer.allocate(8);
+
+                    Ebml.putSize(buf, end - dataPosition, header.sizeLength);
+                    buf.flip();
+                    patch(dataPosition - header.sizeLength, buf);
+                }
+                position = end;
+                clusterSeen = true;
+            }
+            else
+            {
+                long end = dataPosition + header.size;
+
+                // Only Clusters follow the first Cluster until the Cues. If
+                // the Cues are there, the writer was interrupted while
+                // finalizing the file and they are rewritten. Anything else
+                // is the incomplete tail of the last Cluster.
+                if (header.size == Ebml.UNKNOWN
+                        || end > fileSize
+                        || header.id == Ebml.CUES
+                        || clusterSeen)
+                {
+                    break;
+                }
+
+                if (header.id == Ebml.SEEK_HEAD
+                        && position == segmentDataPosition)
+                {
+                    long length = header.headerLength + header.size;
+
+                    if (length == SEEK_HEAD_LENGTH
+                            || length == SEEK_HEAD_LENGTH - SEEK_LENGTH)
+                    {
+                        seekHeadPosition = position;
+                    }
+                }
+                else if (header.id == Ebml.INFO)
+                {
+                    infoPosition = position - segmentDataPosition;
+                    scanInfo(dataPosition, end);
+                }
+                else if (header.id == Ebml.TRACKS)
+                {
+                    tracksPosition = position - segmentDataPosition;
+                }
+                position = end;
+            }
+        }
+
+        bufPosition = position;
+        headerWritten = true;
+        return true;
+    }
+
+    /**
+     * Reads the children of a <tt>Cluster</tt> in order to determine where it
+     * ends, its <tt>CuePoint</tt> and the timecode of its last frame.
+     *
+     * @param clusterPosition the position in the file of the
+     * <tt>Cluster</tt>
+     * @param dataPosition the position in the file of the data of the
+     * <tt>Cluster</tt>
+     * @param limit the position in the file beyond which the
+     * <tt>Cluster</tt> may not extend
+     * @return the position in the file of the end of the last complete child
+     * of the <tt>Cluster</tt>
+     * @throws IOException if reading from the file fails
+     */
+    private long scanCluster(
+            long clusterPosition,
+            long dataPosition,
+            long limit)
+        throws IOException
+    {
+        Ebml.ElementHeader header = new Ebml.ElementHeader();
+        long position = dataPosition;
+        long timecode = -1;
+        boolean firstBlock = true;
+
+        while (position < limit
+                && Ebml.readHeader(channel, position, header))
+        {
+            long childDataPosition = position + header.headerLength;
+            long end = childDataPosition + header.size;
+
+            // A Cluster of unknown size ends at the next top-level element.
+            if (header.id == Ebml.CLUSTER
+                    || header.id == Ebml.CUES
+                    || header.size == Ebml.UNKNOWN
+                    || end > limit)
+            {
+                break;
+            }
+
+            if (header.id == Ebml.TIMECODE && header.size <= 8)
+            {
+                timecode = readUInt(childDataPosition, (int) header.size);
+            }
+            else if (header.id == Ebml.SIMPLE_BLOCK
+                    && header.size >= 4
+                    && timecode != -1)
+            {
+                // Track number (a single byte for track 1), the signed
+                // timecode relative to the Cluster and the flags.
+                long block = readUInt(childDataPosition, 4);
+                long pts = timecode + (short) (block >>> 8);
+
+                if (firstBlock && (block & SIMPLE_BLOCK_KEYFRAME) != 0)
+                {
+                    addCuePoint(pts, clusterPosition);
+                }
+                firstBlock = false;
+                if (pts > lastPts)
+                    lastPts = pts;
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    /**
+     * Reads the children of the <tt>Info</tt> element in order to find the
+     * <tt>Duration</tt> element.
+     *
+     * @param dataPosition the position in the file of the data of the
+     * <tt>Info</tt> element
+     * @param end the position in the file of the end of the <tt>Info</tt>
+     * element
+     * @throws IOException if reading from the file fails
+     */
+    private void scanInfo(long dataPosition, long end)
+        throws IOException
+    {
+        Ebml.ElementHeader header = new Ebml.ElementHeader();
+        long position = dataPosition;
+
+        while (position < end && Ebml.readHeader(channel, position, header))
+        {
+            if (header.size == Ebml.UNKNOWN)
+                break;
+            if (header.id == Ebml.DURATION && header.size == 8)
+                durationPosition = position + header.headerLength;
+            position += header.headerLength + header.size;
+        }
+    }
+
+    /**
+     * Starts a new <tt>Cluster</tt>, completing the one which is being
+     * written (if any).
+     *
+     * @param timecode the timecode in milliseconds of the new
+     * <tt>Cluster</tt>
+     * @param key whether the first frame of the new <tt>Cluster</tt> is a
+     * keyframe
+     * @throws IOException if writing to the file fails
+     */
+    private void startCluster(long timecode, boolean key)
+        throws IOException
+    {
+        endCluster();
+        // Write out the complete Clusters so that they survive a crash.
+        flush();
+
+        clusterPosition = position();
+        clusterTimecode = timecode;
+
+        ByteBuffer buf = scratch;
+
+        buf.clear();
+        Ebml.putId(buf, Ebml.CLUSTER);
+        Ebml.putUInt(buf, Ebml.UNKNOWN_SIZE, 8);
+        Ebml.putUIntElement(buf, Ebml.TIMECODE, timecode);
+        write(buf);
+
+        if (key)
+            addCuePoint(timecode, clusterPosition);
+    }
+
+    /**
+     * Copies bytes into {@link #buf}, writing it out to the file whenever it
+     * fills up.
+     *
+     * @param data the array which contains the bytes to write
+     * @param offset the offset in <tt>data</tt> of the bytes to write
+     * @param length the number of bytes to write
+     * @throws IOException if writing to the file fails
+     */
+    private void write(byte[] data, int offset, int length)
+        throws IOException
+    {
+        while (length > 0)
+        {
+            if (!buf.hasRemaining())
+                flush();
+
+            int n = Math.min(length, buf.remaining());
+
+            buf.put(data, offset, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Copies the bytes put into {@link #scratch} into {@link #buf}.
+     *
+     * @param scratch the <tt>ByteBuffer</tt> which contains the bytes to
+     * write from its start to its position
+     * @throws IOException if writing to the file fails
+     */
+    private void write(ByteBuffer scratch)
+        throws IOException
+    {
+        write(scratch.array(), 0, scratch.position());
+    }
+
+    /**
+     * Writes a <tt>SimpleBlock</tt> with a specific frame into the file,
+     * starting a new <tt>Cluster</tt> if necessary.
+     *
+     * @param fd the frame to write
+     * @throws IOException if writing to the file fails
+     */
+    private void writeBlock(FrameDescriptor fd)
+        throws IOException
+    {
+        boolean key = (fd.flags & FLAG_FRAME_IS_KEY) != 0;
+        long pts = fd.pts;
+
+        // A new Cluster starts with each keyframe so that each may be seeked
+        // to, or when the timecode of the frame does not fit in the 16-bit
+        // signed timecode of SimpleBlock relative to the Cluster.
+        if (clusterPosition == -1
+                || key
+                || pts - clusterTimecode > Short.MAX_VALUE
+                || pts < clusterTimecode)
+        {
+            startCluster(pts, key);
+        }
+
+        int length = (int) fd.length;
+        int flags = 0;
+
+        if (key)
+            flags |= SIMPLE_BLOCK_KEYFRAME;
+        if ((fd.flags & FLAG_FRAME_IS_INVISIBLE) != 0)
+            flags |= SIMPLE_BLOCK_INVISIBLE;
+
+        ByteBuffer buf = scratch;
+
+        buf.clear();
+        Ebml.putId(buf, Ebml.SIMPLE_BLOCK);
+        Ebml.putSize(buf, 4 + length);
+        Ebml.putSize(buf, TRACK_NUMBER);
+        buf.putShort((short) (pts - clusterTimecode));
+        buf.put((byte) flags);
+        write(buf);
+        write(fd.buffer, fd.offset, length);
+
+        if (pts > lastPts)
+            lastPts = pts;
+    }
+
+    /**
+     * Logs a failure to write to the file. The frames written after it are
+     * dropped.
+     *
+     * @param ioe the <tt>IOException</tt> which was thrown
+     */
+    private void writeFailed(IOException ioe)
+    {
+        if (!failed)
+        {
+            failed = true;
+            logger.error("Failed to write to " + filename, ioe);
+        }
+    }
+
+    /**
+     * Writes a frame into the file. The header of the file must have been
+     * written with {@link #writeWebmFileHeader(int, int)} before.
+     *
+     * @param fd the frame to write
+     */
     public void writeFrame(FrameDescriptor fd)
     {
-        writeWebmBlock(glob, fd);
+        if (closed || failed)
+            return;
+        if (!headerWritten)
+        {
+            logger.warn("Dropping a frame written before the file header.");
+            return;
+        }
+
+        try
+        {
+            writeBlock(fd);
+        }
+        catch (IOException ioe)
+        {
+            writeFailed(ioe);
+        }
     }
 
+    /**
+     * Writes the header of the file i.e. the EBML header, the start of the
+     * <tt>Segment</tt>, the <tt>SeekHead</tt>, the <tt>Info</tt> and the
+     * <tt>Tracks</tt>.
+     *
+     * @param width the width in pixels of the video
+     * @param height the height in pixels of the video
+     */
+    public void writeWebmFileHeader(int width, int height)
+    {
+        if (headerWritten || closed || failed)
+            return;
+
+        try
+        {
+            writeHeader(width, height);
+        }
+        catch (IOException ioe)
+        {
+            writeFailed(ioe);
+        }
+    }
+
+    /**
+     * Writes the header of the file.
+     *
+     * @param width the width in pixels of the video
+     * @param height the height in pixels of the video
+     * @throws IOException if writing to the file fails
+     * @see #writeWebmFileHeader(int, int)
+     */
+    private void writeHeader(int width, int height)
+        throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(512);
+        long base = position();
+
+        int ebml = startMaster(buf, Ebml.EBML);
+
+        Ebml.putUIntElement(buf, Ebml.EBML_VERSION, 1);
+        Ebml.putUIntElement(buf, Ebml.EBML_READ_VERSION, 1);
+        Ebml.putUIntElement(buf, Ebml.EBML_MAX_ID_LENGTH, 4);
+        Ebml.putUIntElement(buf, Ebml.EBML_MAX_SIZE_LENGTH, 8);
+        Ebml.putStringElement(buf, Ebml.DOC_TYPE, "webm");
+        Ebml.putUIntElement(buf, Ebml.DOC_TYPE_VERSION, 2);
+        Ebml.putUIntElement(buf, Ebml.DOC_TYPE_READ_VERSION, 2);
+        endMaster(buf, ebml);
+
+        segmentPosition = base + buf.position();
+        Ebml.putId(buf, Ebml.SEGMENT);
+        Ebml.putUInt(buf, Ebml.UNKNOWN_SIZE, 8);
+        segmentDataPosition = base + buf.position();
+
+        // The SeekHead is put once the positions of Info and Tracks are
+        // known.
+        int seekHead = buf.position();
+
+        seekHeadPosition = base + seekHead;
+        buf.position(seekHead + SEEK_HEAD_LENGTH);
+
+        infoPosition = base + buf.position() - segmentDataPosition;
+
+        int info = startMaster(buf, Ebml.INFO);
+
+        // The timecodes are in milliseconds.
+        Ebml.putUIntElement(buf, Ebml.TIMECODE_SCALE, 1000000);
+        Ebml.putId(buf, Ebml.DURATION);
+        Ebml.putSize(buf, 8);
+        durationPosition = base + buf.position();
+        buf.putDouble(0);
+        Ebml.putStringElement(buf, Ebml.MUXING_APP, APP);
+        Ebml.putStringElement(buf, Ebml.WRITING_APP, APP);
+        endMaster(buf, info);
+
+        tracksPosition = base + buf.position() - segmentDataPosition;
+
+        int tracks = startMaster(buf, Ebml.TRACKS);
+        int trackEntry = startMaster(buf, Ebml.TRACK_ENTRY);
+
+        Ebml.putUIntElement(buf, Ebml.TRACK_NUMBER, TRACK_NUMBER);
+        Ebml.putUIntElement(buf, Ebml.TRACK_UID, TRACK_NUMBER);
+        // 1 is video.
+        Ebml.putUIntElement(buf, Ebml.TRACK_TYPE, 1);
+        Ebml.putStringElement(buf, Ebml.CODEC_ID, "V_VP8");
+
+        int video = startMaster(buf, Ebml.VIDEO);
+
+        Ebml.putUIntElement(buf, Ebml.PIXEL_WIDTH, width);
+        Ebml.putUIntElement(buf, Ebml.PIXEL_HEIGHT, height);
+        endMaster(buf, video);
+        endMaster(buf, trackEntry);
+        endMaster(buf, tracks);
+
+        int end = buf.position();
+
+        buf.position(seekHead);
+        putSeekHead(buf, -1);
+        buf.position(end);
+
+        write(buf.array(), 0, end);
+        headerWritten = true;
+    }
+
+    /**
+     * Describes a frame to be written by {@link #writeFrame(FrameDescriptor)}.
+     */
     public static class FrameDescriptor
     {
         public byte[] buffer;
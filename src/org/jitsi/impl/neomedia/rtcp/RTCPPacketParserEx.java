@@ -228,6 +228,8 @@ private RTCPFBPacket parseRTCPFBPacket(
         int fmt = firstbyte & 0x1f;
         if (type == RTCPFBPacket.RTPFB && fmt == NACKPacket.FMT)
             fb = new NACKPacket(base);
+        else if (type == RTCPFBPacket.RTPFB && fmt == RTCPTCCPacket.FMT)
+            fb = new RTCPTCCPacket(base);
         else
             fb = new RTCPFBPacket(base);
 
@@ -309,6 +311,9 @@ private RTCPFBPacket parseRTCPFBPacket(
                     }
                     detailStr = tmmbnFciEntryStr.toString();
                     break;
+                case RTCPTCCPacket.FMT:
+                    fmtStr = "transport-cc";
+                    break;
                 }
                 break;
             default:
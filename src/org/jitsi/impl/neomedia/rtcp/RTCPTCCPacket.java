@@ -0,0 +1,489 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtcp;
+
+import java.io.*;
+
+import net.sf.fmj.media.rtp.*;
+
+import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
+
+/**
+ * A class which represents an RTCP transport-wide congestion control feedback
+ * message, as defined in
+ * https://tools.ietf.org/html/draft-holmer-rmcat-transport-wide-cc-extensions-01
+ *
+ * The RTCP packet structure is:
+ *
+ * 0                   1                   2                   3
+ * 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |V=2|P| FMT=15  |   PT=205      |             length            |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                  SSRC of packet sender                        |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                  SSRC of media source                         |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |      base sequence number     |      packet status count      |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                 reference time                | fb pkt. count |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |          packet chunk         |         packet chunk          |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * .                                                               .
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |         packet chunk          |  recv delta   |  recv delta   |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * .                                                               .
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |           recv delta          |  recv delta   | zero padding  |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *
+ * The arrival times of the packets are exposed in microseconds of the clock
+ * of the sender of the feedback, starting at the reference time.
+ */
+public class RTCPTCCPacket
+    extends RTCPFBPacket
+{
+    /**
+     * The value of the "fmt" field for a transport-cc packet.
+     */
+    public static final int FMT = 15;
+
+    /**
+     * The value which {@link #getArrivalTimesUs()} uses for packets which were
+     * reported as not received. Arrival times are always multiples of
+     * {@link #DELTA_UNIT_US} so this value cannot be taken by a valid time.
+     */
+    public static final long NOT_RECEIVED = -1L;
+
+    /**
+     * The maximum number of packets that can be described by a single
+     * transport-cc packet.
+     */
+    public static final int MAX_PACKET_STATUS_COUNT = 0xFFFF;
+
+    /**
+     * The resolution of the "reference time" field, in microseconds.
+     */
+    private static final long REFERENCE_TIME_UNIT_US = 64000L;
+
+    /**
+     * The resolution of the "recv delta" fields, in microseconds.
+     */
+    private static final long DELTA_UNIT_US = 250L;
+
+    /**
+     * The packet status symbol for a packet which was not received.
+     */
+    private static final int SYMBOL_NOT_RECEIVED = 0;
+
+    /**
+     * The packet status symbol for a packet which was received with a delta
+     * which fits in one unsigned byte.
+     */
+    private static final int SYMBOL_SMALL_DELTA = 1;
+
+    /**
+     * The packet status symbol for a packet which was received with a delta
+     * which needs two signed bytes.
+     */
+    private static final int SYMBOL_LARGE_DELTA = 2;
+
+    /**
+     * The maximum run length of a run length chunk.
+     */
+    private static final int MAX_RUN_LENGTH = 0x1FFF;
+
+    /**
+     * Gets a boolean indicating whether or not the RTCP packet specified in the
+     * {@link ByteArrayBuffer} that is passed as an argument is a transport-cc
+     * packet or not.
+     *
+     * @param baf the {@link ByteArrayBuffer}
+     * @return true if the byte array buffer holds a transport-cc packet,
+     * otherwise false.
+     */
+    public static boolean isTCCPacket(ByteArrayBuffer baf)
+    {
+        int rc = RTCPHeaderUtils.getReportCount(baf);
+        return isRTPFBPacket(baf) && rc == FMT;
+    }
+
+    /**
+     * Encodes the FCI of a transport-cc packet.
+     *
+     * @param baseSeq the transport-wide sequence number of the first packet.
+     * @param arrivalTimesUs the arrival times in microseconds of the packets
+     * starting at <tt>baseSeq</tt>, or {@link #NOT_RECEIVED}.
+     * @param feedbackPacketCount the feedback packet count.
+     * @return the encoded FCI.
+     */
+    private static byte[] encodeFCI(
+            int baseSeq, long[] arrivalTimesUs, int feedbackPacketCount)
+    {
+        int count = arrivalTimesUs.length;
+        int[] symbols = new int[count];
+        int[] deltas = new int[count];
+        long referenceTime = 0;
+
+        for (long arrivalTimeUs : arrivalTimesUs)
+        {
+            if (arrivalTimeUs != NOT_RECEIVED)
+            {
+                referenceTime = arrivalTimeUs / REFERENCE_TIME_UNIT_US;
+                break;
+            }
+        }
+
+        // Compute the symbols and deltas. The deltas accumulate relative to
+        // the rounded values which the receiver reconstructs so that rounding
+        // errors do not drift.
+        long prevUs = referenceTime * REFERENCE_TIME_UNIT_US;
+        int deltasLength = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            long arrivalTimeUs = arrivalTimesUs[i];
+
+            if (arrivalTimeUs == NOT_RECEIVED)
+                continue;
+
+            long diffUs = arrivalTimeUs - prevUs;
+            long delta
+                = (diffUs + (diffUs < 0 ? -DELTA_UNIT_US : DELTA_UNIT_US) / 2)
+                    / DELTA_UNIT_US;
+
+            if (delta >= 0 && delta <= 0xFF)
+            {
+                symbols[i] = SYMBOL_SMALL_DELTA;
+                deltasLength += 1;
+            }
+            else if (delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE)
+            {
+                symbols[i] = SYMBOL_LARGE_DELTA;
+                deltasLength += 2;
+            }
+            else
+            {
+                // The delta cannot be represented so the packet is reported
+                // as not received.
+                continue;
+            }
+            deltas[i] = (int) delta;
+            prevUs += delta * DELTA_UNIT_US;
+        }
+
+        // Encode the packet status chunks. A chunk takes 2 bytes and at most
+        // one chunk per symbol is needed.
+        byte[] chunks = new byte[2 * Math.max(1, count)];
+        int chunksLength = 0;
+
+        for (int i = 0; i < count;)
+        {
+            int symbol = symbols[i];
+            int run = 1;
+
+            while (i + run < count
+                    && symbols[i + run] == symbol
+                    && run < MAX_RUN_LENGTH)
+            {
+                run++;
+            }
+
+            int chunk;
+
+            if (run >= 14)
+            {
+                // Run length chunk.
+                chunk = (symbol << 13) | run;
+                i += run;
+            }
+            else
+            {
+                boolean oneBit = true;
+
+                for (int j = i; j < i + 14 && j < count; j++)
+                {
+                    if (symbols[j] > SYMBOL_SMALL_DELTA)
+                    {
+                        oneBit = false;
+                        break;
+                    }
+                }
+                if (oneBit)
+                {
+                    // Status vector chunk with 14 one-bit symbols.
+                    chunk = 0x8000;
+                    for (int j = 0; j < 14 && i < count; j++, i++)
+                        chunk |= symbols[i] << (13 - j);
+                }
+                else
+                {
+                    // Status vector chunk with 7 two-bit symbols.
+                    chunk = 0xC000;
+                    for (int j = 0; j < 7 && i < count; j++, i++)
+                        chunk |= symbols[i] << (2 * (6 - j));
+                }
+            }
+            chunksLength
+                += RTPUtils.writeShort(chunks, chunksLength, (short) chunk);
+        }
+
+        // The FCI is padded with zeros to a multiple of 32 bits.
+        int len = 8 + chunksLength + deltasLength;
+        byte[] fci = new byte[(len + 3) & ~3];
+        int off = 0;
+
+        off += RTPUtils.writeShort(fci, off, (short) baseSeq);
+        off += RTPUtils.writeShort(fci, off, (short) count);
+        fci[off++] = (byte) (referenceTime >> 16);
+        fci[off++] = (byte) (referenceTime >> 8);
+        fci[off++] = (byte) referenceTime;
+        fci[off++] = (byte) feedbackPacketCount;
+        System.arraycopy(chunks, 0, fci, off, chunksLength);
+        off += chunksLength;
+        for (int i = 0; i < count; i++)
+        {
+            if (symbols[i] == SYMBOL_SMALL_DELTA)
+            {
+                fci[off++] = (byte) deltas[i];
+            }
+            else if (symbols[i] == SYMBOL_LARGE_DELTA)
+            {
+                off += RTPUtils.writeShort(fci, off, (short) deltas[i]);
+            }
+        }
+
+        return fci;
+    }
+
+    /**
+     * The arrival times (in microseconds) of the packets described by this
+     * packet, or {@link #NOT_RECEIVED}. Initialized lazily from {@link #fci}.
+     */
+    private long[] arrivalTimesUs = null;
+
+    /**
+     * Initializes a new <tt>RTCPTCCPacket</tt> instance.
+     * @param base
+     */
+    public RTCPTCCPacket(RTCPCompoundPacket base)
+    {
+        super(base);
+    }
+
+    /**
+     * Initializes a new <tt>RTCPTCCPacket</tt> instance with specific "packet
+     * sender SSRC" and "media source SSRC" values and which describes the
+     * arrival of a specific range of transport-wide sequence numbers.
+     *
+     * @param senderSSRC the value to use for the "packet sender SSRC" field.
+     * @param sourceSSRC the value to use for the "media source SSRC" field.
+     * @param baseSeq the transport-wide sequence number of the first packet
+     * described by the new packet.
+     * @param arrivalTimesUs the arrival times in microseconds of the packets
+     * with transport-wide sequence numbers starting at <tt>baseSeq</tt>, or
+     * {@link #NOT_RECEIVED} for packets which were not received. Packets whose
+     * arrival time cannot be expressed relative to the preceding packet are
+     * reported as not received.
+     * @param feedbackPacketCount the value to use for the "feedback packet
+     * count" field.
+     */
+    public RTCPTCCPacket(
+            long senderSSRC,
+            long sourceSSRC,
+            int baseSeq,
+            long[] arrivalTimesUs,
+            int feedbackPacketCount)
+    {
+        super(FMT, RTPFB, senderSSRC, sourceSSRC);
+
+        if (arrivalTimesUs.length > MAX_PACKET_STATUS_COUNT)
+        {
+            throw new IllegalArgumentException(
+                    "arrivalTimesUs.length " + arrivalTimesUs.length);
+        }
+
+        fci = encodeFCI(baseSeq, arrivalTimesUs, feedbackPacketCount);
+    }
+
+    /**
+     * Gets the transport-wide sequence number of the first packet described
+     * by this packet.
+     *
+     * @return the base sequence number, or -1 if the FCI is malformed.
+     */
+    public int getBaseSeq()
+    {
+        if (fci == null || fci.length < 8)
+            return -1;
+
+        return RTPUtils.readUint16AsInt(fci, 0);
+    }
+
+    /**
+     * Gets the value of the "feedback packet count" field of this packet.
+     *
+     * @return the feedback packet count, or -1 if the FCI is malformed.
+     */
+    public int getFeedbackPacketCount()
+    {
+        if (fci == null || fci.length < 8)
+            return -1;
+
+        return fci[7] & 0xFF;
+    }
+
+    /**
+     * Gets the arrival times of the packets described by this packet.
+     *
+     * @return an array whose element at index <tt>i</tt> is the arrival time
+     * in microseconds of the packet with transport-wide sequence number
+     * <tt>getBaseSeq() + i</tt> (modulo 2^16), or {@link #NOT_RECEIVED}.
+     */
+    synchronized public long[] getArrivalTimesUs()
+    {
+        if (arrivalTimesUs == null)
+        {
+            arrivalTimesUs = parseArrivalTimesUs(fci);
+        }
+
+        return arrivalTimesUs;
+    }
+
+    /**
+     * Parses the arrival times described by the FCI of a transport-cc packet.
+     * A truncated FCI results in the remaining packets being reported as not
+     * received.
+     *
+     * @param fci the FCI to parse.
+     * @return the arrival times described by <tt>fci</tt>.
+     */
+    private static long[] parseArrivalTimesUs(byte[] fci)
+    {
+        if (fci == null || fci.length < 8)
+            return new long[0];
+
+        int len = fci.length;
+        int count = RTPUtils.readUint16AsInt(fci, 2);
+        long referenceTime
+            = (fci[4] & 0xFF) << 16 | (fci[5] & 0xFF) << 8 | fci[6] & 0xFF;
+        int[] symbols = new int[count];
+        int off = 8;
+
+        for (int i = 0; i < count && off + 2 <= len;)
+        {
+            int chunk = RTPUtils.readUint16AsInt(fci, off);
+
+            off += 2;
+            if ((chunk & 0x8000) == 0)
+            {
+                // Run length chunk.
+                int symbol = (chunk >> 13) & 0x3;
+
+                for (int run = chunk & MAX_RUN_LENGTH; run > 0 && i < count;
+                        run--)
+                {
+                    symbols[i++] = symbol;
+                }
+            }
+            else if ((chunk & 0x4000) == 0)
+            {
+                // Status vector chunk with 14 one-bit symbols.
+                for (int j = 13; j >= 0 && i < count; j--)
+                    symbols[i++] = (chunk >> j) & 0x1;
+            }
+            else
+            {
+                // Status vector chunk with 7 two-bit symbols.
+                for (int j = 6; j >= 0 && i < count; j--)
+                    symbols[i++] = (chunk >> (2 * j)) & 0x3;
+            }
+        }
+
+        long[] arrivalTimesUs = new long[count];
+        long timeUs = referenceTime * REFERENCE_TIME_UNIT_US;
+
+        for (int i = 0; i < count; i++)
+        {
+            int delta;
+
+            if (symbols[i] == SYMBOL_SMALL_DELTA && off + 1 <= len)
+            {
+                delta = fci[off] & 0xFF;
+                off += 1;
+            }
+            else if (symbols[i] == SYMBOL_LARGE_DELTA && off + 2 <= len)
+            {
+                delta = (short) RTPUtils.readUint16AsInt(fci, off);
+                off += 2;
+            }
+            else
+            {
+                arrivalTimesUs[i] = NOT_RECEIVED;
+                continue;
+            }
+            timeUs += delta * DELTA_UNIT_US;
+            arrivalTimesUs[i] = timeUs;
+        }
+
+        return arrivalTimesUs;
+    }
+
+    private void writeSsrc(DataOutputStream dataOutputStream, long ssrc)
+        throws IOException
+    {
+        dataOutputStream.writeByte((byte) (ssrc >> 24));
+        dataOutputStream.writeByte((byte) ((ssrc >> 16) & 0xFF));
+        dataOutputStream.writeByte((byte) ((ssrc >> 8) & 0xFF));
+        dataOutputStream.writeByte((byte) (ssrc & 0xFF));
+    }
+
+    @Override
+    public void assemble(DataOutputStream dataoutputstream)
+        throws IOException
+    {
+        dataoutputstream.writeByte((byte) (0x80 /* version */ | FMT));
+        dataoutputstream.writeByte((byte) RTPFB);
+        dataoutputstream.writeShort(2 + (fci.length / 4));
+        writeSsrc(dataoutputstream, senderSSRC);
+        writeSsrc(dataoutputstream, sourceSSRC);
+        dataoutputstream.write(fci);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RTCP transport-cc packet; packet sender: " + senderSSRC
+                + "; media source: " + sourceSSRC
+                + "; base seq: " + getBaseSeq()
+                + "; fb pkt count: " + getFeedbackPacketCount();
+    }
+
+    /**
+     * Returns a <tt>RawPacket</tt> representation of this
+     * <tt>RTCPTCCPacket</tt>.
+     * @return
+     * @throws IOException
+     */
+    public RawPacket toRawPacket()
+        throws IOException
+    {
+        return RTCPPacketParserEx.toRawPacket(this);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp;
+
+import org.jitsi.util.*;
+
+/**
+ * Holds the most recent {@link FrameDesc}s of an {@link RTPEncodingDesc} in a
+ * fixed-capacity ring sorted by RTP timestamp (modulo 2^32). When the ring is
+ * full, the oldest frame is evicted to make room for the new one, unless the
+ * new one is older than all the frames in the ring, in which case it is not
+ * kept track of. Evicted
+ * frames are never reused because other code (e.g. the start frame of a
+ * <tt>SimulcastController</tt> or {@link RTPEncodingDesc#getLastReceivedFrame})
+ * may still hold references to them, so each new frame is a new
+ * {@link FrameDesc}.
+ *
+ * Frames normally arrive in timestamp order so insertions are appends and
+ * lookups of the current frame hit the newest slot. Out-of-order frames are
+ * found with a binary search and inserted by shifting the newer slots.
+ *
+ * Instances are not thread-safe, with the exception of {@link #getNewest()}.
+ */
+class FrameDescRing
+{
+    /**
+     * The maximum distance between the RTP timestamps of the frames in a ring.
+     * A frame further away from the newest one indicates a discontinuity of
+     * the RTP timestamps (e.g. a restarted sender), in which case the ring is
+     * cleared because its frames cannot be ordered relative to the new one.
+     */
+    private static final long MAX_TS_SPAN = 1L << 30;
+
+    /**
+     * The {@link RTPEncodingDesc} that the frames in this ring belong to.
+     */
+    private final RTPEncodingDesc rtpEncoding;
+
+    /**
+     * The slots of this ring. The frames occupy the <tt>size</tt> slots which
+     * start at <tt>head</tt> in ascending timestamp order. The rest of the
+     * slots are <tt>null</tt>.
+     */
+    private final FrameDesc[] slots;
+
+    /**
+     * The index in {@link #slots} of the oldest frame.
+     */
+    private int head;
+
+    /**
+     * The frame with the greatest RTP timestamp in this ring. Volatile so that
+     * the frame which most packets belong to can be looked up without
+     * synchronization.
+     */
+    private volatile FrameDesc newest;
+
+    /**
+     * The number of frames in this ring.
+     */
+    private int size;
+
+    /**
+     * Initializes a new <tt>FrameDescRing</tt> instance.
+     *
+     * @param rtpEncoding the {@link RTPEncodingDesc} that the frames in the new
+     * instance belong to.
+     * @param capacity the maximum number of frames to keep.
+     */
+    FrameDescRing(RTPEncodingDesc rtpEncoding, int capacity)
+    {
+        this.rtpEncoding = rtpEncoding;
+        this.slots = new FrameDesc[capacity];
+    }
+
+    /**
+     * Gets the frame at a specific position in timestamp order.
+     *
+     * @param i the position (from the oldest frame) of the frame to get.
+     * @return the frame at position <tt>i</tt>.
+     */
+    private FrameDesc at(int i)
+    {
+        return slots[slot(i)];
+    }
+
+    /**
+     * Gets the frame with a specific RTP timestamp.
+     *
+     * @param ts the RTP timestamp of the frame to get.
+     * @return the frame with RTP timestamp <tt>ts</tt>, or null.
+     */
+    FrameDesc get(long ts)
+    {
+        int i = indexOf(ts);
+
+        return i < 0 ? null : at(i);
+    }
+
+    /**
+     * Gets the frame with the greatest RTP timestamp in this ring. Unlike the
+     * other methods of this class, may be invoked without synchronization.
+     *
+     * @return the frame with the greatest RTP timestamp in this ring, or null.
+     */
+    FrameDesc getNewest()
+    {
+        return newest;
+    }
+
+    /**
+     * Gets the frame with the smallest RTP timestamp that is (modulo 2^32)
+     * greater than the timestamp of a specific frame of this ring.
+     *
+     * @param frame a frame of this ring.
+     * @return the frame that follows <tt>frame</tt>, or null.
+     */
+    FrameDesc higher(FrameDesc frame)
+    {
+        int i = indexOf(frame.getTimestamp());
+
+        return (i < 0 || i + 1 >= size) ? null : at(i + 1);
+    }
+
+    /**
+     * Finds the position of the frame with a specific RTP timestamp.
+     *
+     * @param ts the RTP timestamp to look for.
+     * @return the position of the frame with RTP timestamp <tt>ts</tt> or,
+     * if there is no such frame, <tt>(-(insertion point) - 1)</tt>.
+     */
+    private int indexOf(long ts)
+    {
+        if (size == 0)
+        {
+            return -1;
+        }
+
+        // Fast path: a packet most likely belongs to the newest frame.
+        long diff = TimeUtils.rtpDiff(ts, at(size - 1).getTimestamp());
+
+        if (diff == 0)
+        {
+            return size - 1;
+        }
+        else if (diff > 0)
+        {
+            return -size - 1;
+        }
+
+        int lo = 0, hi = size - 2;
+
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+
+            diff = TimeUtils.rtpDiff(at(mid).getTimestamp(), ts);
+            if (diff < 0)
+            {
+                lo = mid + 1;
+            }
+            else if (diff > 0)
+            {
+                hi = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    /**
+     * Gets the frame with the greatest RTP timestamp that is (modulo 2^32)
+     * less than the timestamp of a specific frame of this ring.
+     *
+     * @param frame a frame of this ring.
+     * @return the frame that precedes <tt>frame</tt>, or null.
+     */
+    FrameDesc lower(FrameDesc frame)
+    {
+        int i = indexOf(frame.getTimestamp());
+
+        return i <= 0 ? null : at(i - 1);
+    }
+
+    /**
+     * Adds a new frame with a specific RTP timestamp to this ring, evicting
+     * the oldest frame if this ring is full.
+     *
+     * @param ts the RTP timestamp of the new frame. This ring must not contain
+     * a frame with the same timestamp.
+     * @param receivedMs the time (in millis) when the first packet of the new
+     * frame was received.
+     * @return the new frame, or null if this ring is full and the new frame
+     * would be older than all the frames in it.
+     */
+    FrameDesc put(long ts, long receivedMs)
+    {
+        if (size != 0
+            && Math.abs(TimeUtils.rtpDiff(ts, at(size - 1).getTimestamp()))
+                > MAX_TS_SPAN)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                slots[slot(i)] = null;
+            }
+            size = 0;
+            newest = null;
+        }
+
+        int pos = indexOf(ts);
+
+        if (pos >= 0)
+        {
+            throw new IllegalStateException("ts=" + ts);
+        }
+        pos = -pos - 1;
+
+        if (size == slots.length)
+        {
+            if (pos == 0)
+            {
+                // Evicting the oldest frame would make room for an even older
+                // one, which is of no interest.
+                return null;
+            }
+
+            // Evict the oldest frame.
+            slots[head] = null;
+            head = slot(1);
+            size--;
+            pos--;
+        }
+
+        // The slot right after the newest frame is free. Make room for the new
+        // frame at pos by shifting the newer frames into it.
+        for (int i = size; i > pos; i--)
+        {
+            slots[slot(i)] = slots[slot(i - 1)];
+        }
+
+        FrameDesc frame = new FrameDesc(rtpEncoding, ts, receivedMs);
+
+        slots[slot(pos)] = frame;
+        size++;
+        if (pos == size - 1)
+        {
+            newest = frame;
+        }
+
+        return frame;
+    }
+
+    /**
+     * Gets the index in {@link #slots} of the frame at a specific position.
+     *
+     * @param i the position (from the oldest frame).
+     * @return the index in {@link #slots} of the frame at position <tt>i</tt>.
+     */
+    private int slot(int i)
+    {
+        int slot = head + i;
+
+        return slot < slots.length ? slot : slot - slots.length;
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.jitsi.impl.neomedia.rtp;
 
+import java.util.*;
+
 import net.sf.fmj.media.rtp.*;
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.transform.*;
@@ -35,11 +37,21 @@
      */
     private final MediaStreamImpl stream;
 
+    /**
+     * The {@link RTPEncodingDesc}s of {@link #tracks} indexed by their primary
+     * and RTX SSRCs. Multiple encodings share an SSRC when they are temporal
+     * layers of one another, in which case they appear in the order in which
+     * they appear in {@link #tracks}. Never modified once published; it is
+     * rebuilt whenever {@link #tracks} changes.
+     */
+    private volatile LongObjectHashMap<RTPEncodingDesc[]> encodingsBySSRC
+        = new LongObjectHashMap<>();
+
     /**
      * The {@link MediaStreamTrackDesc}s that this instance is configured to
      * receive.
      */
-    private MediaStreamTrackDesc[] tracks;
+    private volatile MediaStreamTrackDesc[] tracks;
 
     /**
      * Ctor.
@@ -129,16 +141,23 @@ public RTPEncodingDesc findRTPEncodingDesc(ByteArrayBuffer buf)
      */
     public RTPEncodingDesc findRTPEncodingDesc(byte[] buf, int off, int len)
     {
-        MediaStreamTrackDesc[] localTracks = tracks;
-        if (ArrayUtils.isNullOrEmpty(localTracks))
+        if (buf == null || buf.length < off + len)
         {
             return null;
         }
 
-        for (MediaStreamTrackDesc track : localTracks)
+        RTPEncodingDesc[] encodings
+            = encodingsBySSRC.get(RawPacket.getSSRCAsLong(buf, off, len));
+        if (encodings == null)
         {
-            RTPEncodingDesc encoding = track.findRTPEncodingDesc(buf, off, len);
-            if (encoding != null)
+            return null;
+        }
+
+        // The encodings share the SSRC of the packet so only their temporal
+        // layers remain to be matched.
+        for (RTPEncodingDesc encoding : encodings)
+        {
+            if (encoding.matches(buf, off, len))
             {
                 return encoding;
             }
@@ -158,22 +177,9 @@ public RTPEncodingDesc findRTPEncodingDesc(byte[] buf, int off, int len)
      */
     public RTPEncodingDesc findRTPEncodingDesc(long ssrc)
     {
-        MediaStreamTrackDesc[] localTracks = tracks;
-        if (ArrayUtils.isNullOrEmpty(localTracks))
-        {
-            return null;
-        }
-
-        for (MediaStreamTrackDesc track : localTracks)
-        {
-            RTPEncodingDesc encoding = track.findRTPEncodingDesc(ssrc);
-            if (encoding != null)
-            {
-                return encoding;
-            }
-        }
+        RTPEncodingDesc[] encodings = encodingsBySSRC.get(ssrc);
 
-        return null;
+        return encodings == null ? null : encodings[0];
     }
 
     /**
@@ -223,7 +229,8 @@ public MediaStreamTrackDesc[] getMediaStreamTracks()
      * will receive.
      * @return true if the MSTs have changed, otherwise false.
      */
-    public boolean setMediaStreamTracks(MediaStreamTrackDesc[] newTracks)
+    public synchronized boolean setMediaStreamTracks(
+        MediaStreamTrackDesc[] newTracks)
     {
         MediaStreamTrackDesc[] oldTracks = tracks;
         int oldTracksLen = oldTracks == null ? 0 : oldTracks.length;
@@ -231,7 +238,7 @@ public boolean setMediaStreamTracks(MediaStreamTrackDesc[] newTracks)
 
         if (oldTracksLen == 0 || newTracksLen == 0)
         {
-            tracks = newTracks;
+            setTracks(newTracks);
             return oldTracksLen != newTracksLen;
         }
         else
@@ -261,13 +268,91 @@ public boolean setMediaStreamTracks(MediaStreamTrackDesc[] newTracks)
                 }
             }
 
-            tracks = mergedTracks;
+            setTracks(mergedTracks);
 
             return
                 oldTracksLen != newTracksLen || cntMatched != oldTracks.length;
         }
     }
 
+    /**
+     * Sets the {@link MediaStreamTrackDesc}s that this instance is configured
+     * to receive and rebuilds {@link #encodingsBySSRC} from them.
+     *
+     * @param tracks the {@link MediaStreamTrackDesc}s that this instance is to
+     * receive.
+     */
+    private void setTracks(MediaStreamTrackDesc[] tracks)
+    {
+        LongObjectHashMap<List<RTPEncodingDesc>> lists
+            = new LongObjectHashMap<>();
+
+        if (tracks != null)
+        {
+            for (MediaStreamTrackDesc track : tracks)
+            {
+                RTPEncodingDesc[] encodings
+                    = track == null ? null : track.getRTPEncodings();
+
+                if (ArrayUtils.isNullOrEmpty(encodings))
+                {
+                    continue;
+                }
+                for (RTPEncodingDesc encoding : encodings)
+                {
+                    long primarySSRC = encoding.getPrimarySSRC();
+                    long rtxSSRC = encoding.getRTXSSRC();
+
+                    index(lists, primarySSRC, encoding);
+                    if (rtxSSRC != -1 && rtxSSRC != primarySSRC)
+                    {
+                        index(lists, rtxSSRC, encoding);
+                    }
+                }
+            }
+        }
+
+        LongObjectHashMap<RTPEncodingDesc[]> encodingsBySSRC
+            = new LongObjectHashMap<>(lists.size());
+
+        for (long ssrc : lists.keys())
+        {
+            List<RTPEncodingDesc> list = lists.get(ssrc);
+
+            encodingsBySSRC.put(
+                ssrc, list.toArray(new RTPEncodingDesc[list.size()]));
+        }
+
+        // Readers may observe the new index with the old tracks (or vice
+        // versa) for a moment, which is harmless because the index is what
+        // the per-packet lookups use.
+        this.encodingsBySSRC = encodingsBySSRC;
+        this.tracks = tracks;
+    }
+
+    /**
+     * Adds a specific {@link RTPEncodingDesc} to the list of encodings of a
+     * specific SSRC.
+     *
+     * @param lists the lists of encodings indexed by SSRC
+     * @param ssrc the SSRC to index <tt>encoding</tt> by
+     * @param encoding the {@link RTPEncodingDesc} to add
+     */
+    private static void index(
+        LongObjectHashMap<List<RTPEncodingDesc>> lists,
+        long ssrc,
+        RTPEncodingDesc encoding)
+    {
+        List<RTPEncodingDesc> list = lists.get(ssrc);
+
+        if (list == null)
+        {
+            list = new ArrayList<>(1);
+            lists.put(ssrc, list);
+        }
+        list.add(encoding);
+    }
+
     /**
      * Gets the {@code RtpChannel} that owns this instance.
      *
@@ -287,14 +372,18 @@ public MediaStreamImpl getStream()
      */
     public MediaStreamTrackDesc findMediaStreamTrackDesc(long ssrc)
     {
-        MediaStreamTrackDesc[] localTracks = tracks;
-        if (ArrayUtils.isNullOrEmpty(localTracks))
+        // A track matches the primary SSRC of its first encoding which is
+        // indexed in encodingsBySSRC.
+        RTPEncodingDesc[] encodings = encodingsBySSRC.get(ssrc);
+        if (encodings == null)
         {
             return null;
         }
 
-        for (MediaStreamTrackDesc track : localTracks)
+        for (RTPEncodingDesc encoding : encodings)
         {
+            MediaStreamTrackDesc track = encoding.getMediaStreamTrack();
+
             if (track.matches(ssrc))
             {
                 return track;
@@ -23,7 +23,8 @@
  * @author George Politis
  */
 public class RTCPPacketListenerAdapter
-    implements RTCPPacketListener
+    implements RTCPPacketListener,
+               TransportCCPacketListener
 {
     /**
      * {@inheritDoc}
@@ -51,4 +52,13 @@ public void srReceived(RTCPSRPacket srPacket)
     {
 
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tccReceived(RTCPTCCPacket tccPacket)
+    {
+
+    }
 }
@@ -20,8 +20,6 @@
 import org.jitsi.util.*;
 import org.jitsi.util.Logger;
 
-import java.util.*;
-
 /**
  * Keeps track of how many channels receive it, its subjective quality index,
  * its last stable bitrate and other useful things for adaptivity/routing.
@@ -78,33 +76,15 @@
         = new RateStatistics(AVERAGE_BITRATE_WINDOW_MS);
 
     /**
-     * The {@link TreeMap} that holds the seen {@link FrameDesc}, keyed
-     * by their RTP timestamps.
+     * The maximum number of {@link FrameDesc}s to keep track of.
      */
-    private final TreeMap<Long, FrameDesc> frames
-        = new TreeMap<Long, FrameDesc>()
-    {
-        /**
-         * A helper {@link LinkedList} that is used to cleanup the map.
-         */
-        private LinkedList<Long> tsl = new LinkedList<>();
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public FrameDesc put(Long key, FrameDesc value)
-        {
-            FrameDesc previous = super.put(key, value);
-            if (tsl.add(key) && tsl.size() > 300)
-            {
-                Long first = tsl.removeFirst();
-                this.remove(first);
-            }
+    private static final int FRAMES_CAPACITY = 300;
 
-            return previous;
-        }
-    };
+    /**
+     * The {@link FrameDescRing} that holds the seen {@link FrameDesc}s, sorted
+     * by their RTP timestamps.
+     */
+    private final FrameDescRing frames;
 
     /**
      * The {@link RTPEncodingDesc} on which this layer depends.
@@ -177,6 +157,7 @@ public RTPEncodingDesc(
         this.idx = idx;
         this.temporalId = temporalId;
         this.dependencyEncodings = dependencyEncodings;
+        this.frames = new FrameDescRing(this, FRAMES_CAPACITY);
     }
 
     /**
@@ -423,15 +404,33 @@ void update(RawPacket pkt, long nowMs)
         rateStatistics.update(pkt.getLength(), nowMs);
 
         long ts = pkt.getTimestamp();
-        FrameDesc frame = frames.get(ts);
+        FrameDesc frame = frames.getNewest();
+        boolean isNewFrame = false;
 
-        if (frame == null)
+        // Most packets belong to the newest frame, which does not require
+        // synchronization.
+        if (frame == null || frame.getTimestamp() != ts)
         {
             synchronized (frames)
             {
-                frames.put(ts, frame = new FrameDesc(this, ts, nowMs));
+                frame = frames.get(ts);
+                isNewFrame = (frame == null);
+                if (isNewFrame)
+                {
+                    frame = frames.put(ts, nowMs);
+                }
             }
 
+            if (frame == null)
+            {
+                // The frame is older than all the frames that we keep track
+                // of.
+                return;
+            }
+        }
+
+        if (isNewFrame)
+        {
             // We measure the stable bitrate on every new frame.
             lastStableBitrateBps = getBitrateBps(nowMs);
 
@@ -448,22 +447,22 @@ void update(RawPacket pkt, long nowMs)
         {
             // Frame boundaries heuristics.
 
-            // Find the closest next frame.
-            Map.Entry<Long, FrameDesc> ceilingEntry
-                = frames.ceilingEntry((ts + 1) & 0xFFFFFFFFL);
+            FrameDesc next, previous;
 
-            if (ceilingEntry != null)
+            synchronized (frames)
             {
-                applyFrameBoundsHeuristics(frame, ceilingEntry.getValue());
+                // Find the closest next and previous frames.
+                next = frames.higher(frame);
+                previous = frames.lower(frame);
             }
 
-            // Find the closest previous frame.
-            Map.Entry<Long, FrameDesc> floorEntry
-                = frames.floorEntry((ts - 1) & 0xFFFFFFFFL);
-
-            if (floorEntry != null)
+            if (next != null)
             {
-                applyFrameBoundsHeuristics(floorEntry.getValue(), frame);
+                applyFrameBoundsHeuristics(frame, next);
+            }
+            if (previous != null)
+            {
+                applyFrameBoundsHeuristics(previous, frame);
             }
         }
 
@@ -537,6 +536,15 @@ private void getBitrateBps(long nowMs, long[] rates)
     public FrameDesc findFrameDesc(byte[] buf, int off, int len)
     {
         long ts = RawPacket.getTimestamp(buf, off, len);
+        FrameDesc frame = frames.getNewest();
+
+        // Most packets belong to the newest frame, which does not require
+        // synchronization.
+        if (frame != null && frame.getTimestamp() == ts)
+        {
+            return frame;
+        }
+
         synchronized (frames)
         {
             return frames.get(ts);
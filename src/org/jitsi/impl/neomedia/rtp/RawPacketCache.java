@@ -15,6 +15,7 @@
  */
 package org.jitsi.impl.neomedia.rtp;
 
+import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.transform.*;
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
@@ -94,11 +95,6 @@
      */
     private static int MAX_SIZE_PACKETS = cfg.getInt(NACK_CACHE_SIZE_PACKETS, 200);
 
-    /**
-     * The size of {@link #pool} and {@link #containersPool}.
-     */
-    private static int POOL_SIZE = 100;
-
     /**
      * The amount of time, after which the cache for an SSRC will be cleared,
      * unless new packets have been inserted.
@@ -118,18 +114,6 @@ else if (a > b)
             return b - a < (1L << 31);
     }
 
-    /**
-     * The pool of <tt>RawPacket</tt>s which we use to avoid allocation and GC.
-     */
-    private final Queue<RawPacket> pool
-        = new LinkedBlockingQueue<>(POOL_SIZE);
-
-    /**
-     * A cache of unused {@link Container} instances.
-     */
-    private final Queue<Container> containersPool
-        = new LinkedBlockingQueue<>(POOL_SIZE);
-
     /**
      * An object used to synchronize access to {@link #sizeInBytes},
      * {@link #maxSizeInBytes}, {@link #sizeInPackets} and
@@ -176,9 +160,19 @@ else if (a > b)
     private AtomicInteger totalPacketsAdded = new AtomicInteger(0);
 
     /**
-     * Contains a <tt>Cache</tt> instance for each SSRC.
+     * Contains a <tt>Cache</tt> instance for each SSRC. Never modified once
+     * assigned (copy-on-write) so that it can be read without
+     * synchronization. Modifications are synchronized on
+     * {@link #cachesSyncRoot}.
+     */
+    private volatile LongObjectHashMap<Cache> caches
+        = new LongObjectHashMap<>();
+
+    /**
+     * The <tt>Object</tt> which synchronizes the modifications of
+     * {@link #caches}.
      */
-    private final Map<Long, Cache> caches = new HashMap<>();
+    private final Object cachesSyncRoot = new Object();
 
     /**
      * The age in milliseconds of the oldest packet retrieved from any of the
@@ -220,12 +214,10 @@ public void close()
                     + ",oldest_hit_ms=" + oldestHit);
         }
 
-        synchronized (caches)
+        synchronized (cachesSyncRoot)
         {
-            caches.clear();
+            caches = new LongObjectHashMap<>();
         }
-        pool.clear();
-        containersPool.clear();
     }
 
     /**
@@ -285,15 +277,24 @@ public RawPacket get(long ssrc, int seq)
      */
     private Cache getCache(long ssrc, boolean create)
     {
-        synchronized (caches)
+        Cache cache = caches.get(ssrc);
+
+        if (cache != null || !create)
+            return cache;
+
+        synchronized (cachesSyncRoot)
         {
-            Cache cache = caches.get(ssrc);
-            if (cache == null && create)
+            LongObjectHashMap<Cache> caches = this.caches;
+
+            cache = caches.get(ssrc);
+            if (cache == null)
             {
                 if (caches.size() < MAX_SSRC_COUNT)
                 {
                     cache = new Cache();
+                    caches = new LongObjectHashMap<>(caches);
                     caches.put(ssrc, cache);
+                    this.caches = caches;
                 }
                 else
                 {
@@ -330,36 +331,14 @@ public void cachePacket(RawPacket pkt)
 
     /**
      * Gets an unused <tt>RawPacket</tt> with at least <tt>len</tt> bytes of
-     * buffer space.
+     * buffer space (taken from {@link ByteArrayPool}).
      * @param len the minimum available length
      * @return An unused <tt>RawPacket</tt> with at least <tt>len</tt> bytes of
      * buffer space.
      */
     private RawPacket getFreePacket(int len)
     {
-        RawPacket pkt = pool.poll();
-        if (pkt == null)
-            pkt = new RawPacket(new byte[len], 0, 0);
-
-        if (pkt.getBuffer() == null || pkt.getBuffer().length < len)
-            pkt.setBuffer(new byte[len]);
-        pkt.setOffset(0);
-        pkt.setLength(0);
-
-        return pkt;
-    }
-
-    /**
-     * @return  an unused {@link Container} instance.
-     */
-    private Container getFreeContainer()
-    {
-        Container container = containersPool.poll();
-        if (container == null)
-        {
-            container = new Container();
-        }
-        return container;
+        return new RawPacket(ByteArrayPool.getBuffer(len), 0, 0);
     }
 
     /**
@@ -368,68 +347,86 @@ private Container getFreeContainer()
      */
     public void clean(long now)
     {
-        synchronized (caches)
+        synchronized (cachesSyncRoot)
         {
             if (logger.isDebugEnabled())
             {
                 logger.debug("Cleaning CachingTransformer " + hashCode());
             }
 
-            Iterator<Map.Entry<Long,Cache>> iter
-                = caches.entrySet().iterator();
-            while (iter.hasNext())
+            LongObjectHashMap<Cache> caches = null;
+
+            for (long ssrc : this.caches.keys())
             {
-                Map.Entry<Long,Cache> entry = iter.next();
-                Cache cache = entry.getValue();
+                Cache cache = this.caches.get(ssrc);
+
                 if (cache.lastInsertTime + SSRC_TIMEOUT_MILLIS < now)
                 {
                     if (logger.isDebugEnabled())
                     {
-                        logger.debug("Removing cache for SSRC " + entry
-                            .getKey());
+                        logger.debug("Removing cache for SSRC " + ssrc);
                     }
                     cache.empty();
-                    iter.remove();
+                    if (caches == null)
+                        caches = new LongObjectHashMap<>(this.caches);
+                    caches.remove(ssrc);
                 }
             }
+            if (caches != null)
+                this.caches = caches;
         }
     }
 
     /**
-     * Returns a {@link Container} and its {@link RawPacket} to the list of
-     * free containers (and packets).
-     * @param container the container to return.
+     * Returns the buffer of the {@link RawPacket} of a {@link Container} which
+     * has been removed from its {@link Cache} to {@link ByteArrayPool}.
+     * @param container the container to release.
      */
-    private void returnContainer(Container container)
+    private void releaseContainer(Container container)
     {
         if (container != null)
         {
-            if (container.pkt != null)
+            RawPacket pkt;
+
+            // Wait for a concurrent Cache#get to finish copying the packet.
+            synchronized (container)
             {
-                pool.offer(container.pkt);
+                pkt = container.pkt;
+                container.pkt = null;
+            }
+            if (pkt != null)
+            {
+                ByteArrayPool.returnBuffer(pkt.getBuffer());
             }
-
-            container.pkt = null;
-            containersPool.offer(container);
         }
     }
 
     /**
-     * Implements a cache for the packets of a specific SSRC.
+     * Implements a cache for the packets of a specific SSRC. The packets are
+     * kept in a ring indexed by their RTP sequence numbers. The ring is
+     * modified by a single thread at a time (insertions are synchronized) but
+     * it is read without synchronization so that retransmission requests
+     * (handled in the RTCP path) do not contend with the RTP path which
+     * inserts packets.
      */
     private class Cache
     {
         /**
-         * The underlying container. It maps a packet index (based on its RTP
-         * sequence number, in the same way as used in SRTP (RFC3711)) to the
-         * <tt>RawPacket</tt> with the packet contents.
+         * The ring of containers. The {@link Container} of the packet with
+         * index <tt>i</tt> (based on its RTP sequence number, in the same way
+         * as used in SRTP (RFC3711)) is at position <tt>i & mask</tt>.
+         */
+        private final AtomicReferenceArray<Container> ring;
+
+        /**
+         * The mask which maps a packet index to a position in {@link #ring}.
          */
-        private TreeMap<Integer, Container> cache = new TreeMap<>();
+        private final int mask;
 
         /**
          * Last system time of insertion of a packet in this cache.
          */
-        private long lastInsertTime = -1;
+        private volatile long lastInsertTime = -1;
 
         /**
          * A Roll Over Counter (as in by RFC3711).
@@ -441,12 +438,44 @@ private void returnContainer(Container container)
          */
         private int s_l = -1;
 
+        /**
+         * The highest index of a packet in this cache.
+         */
+        private int head;
+
+        /**
+         * The lowest index of a packet which may still be in this cache or
+         * <tt>-1</tt> if no packet has been inserted yet.
+         */
+        private int tail = -1;
+
+        /**
+         * Initializes a new empty {@link Cache} instance.
+         */
+        private Cache()
+        {
+            int size = 1;
+
+            while (size < MAX_SIZE_PACKETS && size < (1 << 15))
+                size <<= 1;
+            ring = new AtomicReferenceArray<>(size);
+            mask = size - 1;
+        }
+
         /**
          * Inserts a packet into this <tt>Cache</tt>.
          * @param pkt the packet to insert.
          */
         private synchronized void insert(RawPacket pkt)
         {
+            int index = calculateIndex(pkt.getSequenceNumber());
+
+            if (tail != -1 && head - index >= ring.length())
+            {
+                // The packet is too old to fit in the cache.
+                return;
+            }
+
             int len = pkt.getLength();
             RawPacket cachePacket = getFreePacket(len);
             System.arraycopy(pkt.getBuffer(), pkt.getOffset(),
@@ -454,15 +483,31 @@ private synchronized void insert(RawPacket pkt)
                 len);
             cachePacket.setLength(len);
 
-            int index = calculateIndex(pkt.getSequenceNumber());
-            Container container = getFreeContainer();
+            Container container = new Container();
             container.pkt = cachePacket;
             container.timeAdded = System.currentTimeMillis();
+            container.index = index;
+            container.length = len;
+            container.timestamp = pkt.getTimestamp();
 
             // If the packet is already in the cache, we want to update the
             // timeAdded field for retransmission purposes. This is implemented
-            // by simply replacing the old packet.
-            Container oldContainer = cache.put(index, container);
+            // by simply replacing the old packet. If the position is taken by
+            // an older packet, that older packet is dropped.
+            Container oldContainer = ring.getAndSet(index & mask, container);
+
+            if (tail == -1)
+            {
+                head = tail = index;
+            }
+            else if (index > head)
+            {
+                head = index;
+            }
+            else if (index < tail)
+            {
+                tail = index;
+            }
 
             synchronized (sizesSyncRoot)
             {
@@ -471,7 +516,7 @@ private synchronized void insert(RawPacket pkt)
                 if (oldContainer != null)
                 {
                     sizeInPackets--;
-                    sizeInBytes -= oldContainer.pkt.getLength();
+                    sizeInBytes -= oldContainer.length;
                 }
 
                 if (sizeInPackets > maxSizeInPackets)
@@ -480,8 +525,8 @@ private synchronized void insert(RawPacket pkt)
                     maxSizeInBytes = sizeInBytes;
             }
 
-            returnContainer(oldContainer);
-            lastInsertTime = System.currentTimeMillis();
+            releaseContainer(oldContainer);
+            lastInsertTime = container.timeAdded;
             clean();
         }
 
@@ -524,35 +569,41 @@ else if (v == ((ROC + 1) % (1L<<32)))
         /**
          * Returns the RTP packet with sequence number <tt>seq</tt> from the
          * cache, or <tt>null</tt> if the cache does not contain a packet with
-         * this sequence number.
+         * this sequence number. Does not synchronize with {@link #insert}.
          * @param seq the RTP sequence number of the packet to get.
          * @return the RTP packet with sequence number <tt>seq</tt> from the
          * cache, or <tt>null</tt> if the cache does not contain a packet with
          * this sequence number.
          */
-        private synchronized Container get(int seq)
+        private Container get(int seq)
         {
             // Since sequence numbers wrap at 2^16, we can't know with absolute
-            // certainty which packet the request refers to. We assume that it
+            // certainty which packet the request refers to. The ring only
+            // holds the latest packet for each position, so we assume that it
             // is for the latest packet (i.e. the one with the highest index).
-            Container pkt = cache.get(seq + ROC * (1 << 16));
-
-            // Maybe the ROC was just bumped recently.
-            if (pkt == null && ROC > 0)
-                pkt = cache.get(seq + (ROC-1)*(1<<16));
-
-            // Since the cache only stores <tt>SIZE_MILLIS</tt> milliseconds of
-            // packets, we assume that it doesn't contain packets spanning
-            // more than one ROC.
-
-            return
-                pkt == null
-                    ? null
-                    : new Container(
-                    new RawPacket(pkt.pkt.getBuffer().clone(),
-                        pkt.pkt.getOffset(),
-                        pkt.pkt.getLength()),
-                    pkt.timeAdded);
+            Container container = ring.get(seq & mask);
+
+            if (container == null || (container.index & 0xffff) != seq)
+                return null;
+
+            // The packet may be removed from the cache and its buffer reused
+            // concurrently, so copy it while preventing that.
+            synchronized (container)
+            {
+                RawPacket pkt = container.pkt;
+
+                if (pkt == null)
+                    return null;
+
+                int len = pkt.getLength();
+                byte[] buf = new byte[len];
+
+                System.arraycopy(pkt.getBuffer(), pkt.getOffset(), buf, 0, len);
+                return
+                    new Container(
+                            new RawPacket(buf, 0, len),
+                            container.timeAdded);
+            }
         }
 
         /**
@@ -563,41 +614,62 @@ private synchronized Container get(int seq)
          */
         private synchronized void clean()
         {
-            int size = cache.size();
-            if (size <= 0)
+            if (tail == -1)
+                return;
+
+            Container newest = ring.get(head & mask);
+
+            if (newest == null || newest.index != head)
                 return;
 
-            long lastTimestamp
-                = 0xffffffffL & cache.lastEntry().getValue().pkt.getTimestamp();
-            long cleanBefore = getCleanBefore(lastTimestamp);
+            long cleanBefore = getCleanBefore(newest.timestamp);
+            int minIndex = head - MAX_SIZE_PACKETS + 1;
 
-            Iterator<Map.Entry<Integer,Container>> iter
-                = cache.entrySet().iterator();
             int removedPackets = 0;
             int removedBytes = 0;
-            while (iter.hasNext())
+
+            if (head - tail >= ring.length())
             {
-                Container container = iter.next().getValue();
-                RawPacket pkt = container.pkt;
+                // Only the last ring.length() indices can still be in the
+                // ring. Drop whatever older packets have not been overwritten
+                // yet and skip over the rest of the gap.
+                tail = head - ring.length() + 1;
+                for (int i = 0; i < ring.length(); i++)
+                {
+                    Container container = ring.get(i);
+
+                    if (container != null && container.index < tail)
+                    {
+                        ring.set(i, null);
+                        removedBytes += container.length;
+                        removedPackets++;
+                        releaseContainer(container);
+                    }
+                }
+            }
+
+            for (; tail < head; tail++)
+            {
+                int position = tail & mask;
+                Container container = ring.get(position);
 
-                if (size > MAX_SIZE_PACKETS)
+                if (container == null || container.index != tail)
                 {
-                    // Remove until we go under the max size, regardless of the
-                    // timestamps.
-                    size--;
+                    continue;
                 }
-                else if (lessThanTS(cleanBefore,
-                    0xffffffffL & pkt.getTimestamp()))
+                if (tail >= minIndex
+                        && !lessThanTS(container.timestamp, cleanBefore))
                 {
-                    // We reached a packet with a timestamp after 'cleanBefore'.
-                    // The rest of the packets are even more recent.
+                    // We reached a packet with a timestamp after
+                    // 'cleanBefore'. The rest of the packets are even more
+                    // recent.
                     break;
                 }
 
-                iter.remove();
-                removedBytes += pkt.getLength();
+                ring.set(position, null);
+                removedBytes += container.length;
                 removedPackets++;
-                returnContainer(container);
+                releaseContainer(container);
             }
 
             synchronized (sizesSyncRoot)
@@ -610,20 +682,28 @@ else if (lessThanTS(cleanBefore,
 
         synchronized private void empty()
         {
+            int removedPackets = 0;
             int removedBytes = 0;
-            for (Container container : cache.values())
+
+            for (int i = 0; i < ring.length(); i++)
             {
-                removedBytes += container.pkt.getBuffer().length;
-                returnContainer(container);
+                Container container = ring.getAndSet(i, null);
+
+                if (container != null)
+                {
+                    removedBytes += container.length;
+                    removedPackets++;
+                    releaseContainer(container);
+                }
             }
 
             synchronized (sizesSyncRoot)
             {
-                sizeInPackets -= cache.size();
+                sizeInPackets -= removedPackets;
                 sizeInBytes -= removedBytes;
             }
 
-            cache.clear();
+            tail = -1;
         }
 
         /**
@@ -654,6 +734,23 @@ private long getCleanBefore(long ts)
          */
         public long timeAdded;
 
+        /**
+         * The index (based on the RTP sequence number) of the packet in the
+         * {@link Cache} which holds this container.
+         */
+        private int index;
+
+        /**
+         * The length of the packet when it was added to the cache.
+         */
+        private int length;
+
+        /**
+         * The RTP timestamp of the packet (as an unsigned 32-bit value) when
+         * it was added to the cache.
+         */
+        private long timestamp;
+
         /**
          * Initializes a new empty {@link Container} instance.
          */
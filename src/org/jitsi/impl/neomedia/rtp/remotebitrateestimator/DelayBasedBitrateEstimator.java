@@ -0,0 +1,192 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp.remotebitrateestimator;
+
+import org.ice4j.util.*;
+import org.jitsi.service.neomedia.rtp.*;
+
+/**
+ * Implements the delay-based part of send-side bandwidth estimation. Unlike
+ * {@link RemoteBitrateEstimatorSingleStream}, it runs at the sender and is fed
+ * with the local send times and the remote arrival times of the packets
+ * reported in RTCP transport-cc feedback, so a single instance covers all
+ * streams sent over a transport.
+ *
+ * webrtc/modules/congestion_controller/delay_based_bwe.cc
+ * webrtc/modules/congestion_controller/delay_based_bwe.h
+ */
+public class DelayBasedBitrateEstimator
+{
+    /**
+     * Reduces the effects of allocations and garbage collection of the method
+     * {@code incomingPacketFeedback}.
+     */
+    private final long[] deltas = new long[3];
+
+    /**
+     * The bitrate at which the reported packets were received.
+     */
+    private final RateStatistics receivedBitrate
+        = new RateStatistics(
+                RemoteBitrateEstimator.kBitrateWindowMs, 8000F);
+
+    /**
+     * Reused across invocations of {@code incomingPacketFeedback} in order to
+     * reduce allocations.
+     */
+    private final RateControlInput input
+        = new RateControlInput(BandwidthUsage.kBwNormal, 0L, 0D);
+
+    /**
+     * Groups the packets by send time. The send times are in milliseconds.
+     */
+    private final InterArrival interArrival
+        = new InterArrival(
+                RemoteBitrateEstimator.kTimestampGroupLengthMs, 1.0, true);
+
+    private final OveruseEstimator estimator;
+
+    private final OveruseDetector detector;
+
+    private final AimdRateControl rateControl = new AimdRateControl();
+
+    /**
+     * Initializes a new {@link DelayBasedBitrateEstimator} instance.
+     */
+    public DelayBasedBitrateEstimator()
+    {
+        OverUseDetectorOptions options = new OverUseDetectorOptions();
+
+        estimator = new OveruseEstimator(options);
+        detector = new OveruseDetector(options);
+    }
+
+    /**
+     * Updates the estimate with the packets reported in a transport-cc
+     * feedback packet.
+     *
+     * @param sendTimesMs the local times in milliseconds at which the packets
+     * were sent.
+     * @param arrivalTimesMs the remote times in milliseconds at which the
+     * packets arrived.
+     * @param sizes the sizes in bytes of the packets.
+     * @param nowMs the current local time in milliseconds.
+     * @return the new estimate in bits per second, or -1 if the estimate was
+     * not updated.
+     */
+    public synchronized long incomingPacketFeedback(
+            long[] sendTimesMs,
+            long[] arrivalTimesMs,
+            int[] sizes,
+            long nowMs)
+    {
+        int count = sendTimesMs.length;
+
+        if (count == 0)
+            return -1;
+
+        BandwidthUsage priorState = detector.getState();
+        boolean overusing = false;
+        long[] deltas = this.deltas;
+
+        for (int i = 0; i < count; i++)
+        {
+            long arrivalTimeMs = arrivalTimesMs[i];
+
+            receivedBitrate.update(sizes[i], arrivalTimeMs);
+
+            /* long sendTimeDelta */ deltas[0] = 0;
+            /* long arrivalTimeDelta */ deltas[1] = 0;
+            /* int sizeDelta */ deltas[2] = 0;
+
+            if (interArrival.computeDeltas(
+                    sendTimesMs[i], arrivalTimeMs, sizes[i], deltas))
+            {
+                double sendTimeDeltaMs = /* sendTimeDelta */ deltas[0];
+
+                estimator.update(
+                        /* arrivalTimeDelta */ deltas[1],
+                        sendTimeDeltaMs,
+                        /* sizeDelta */ (int) deltas[2],
+                        detector.getState());
+                detector.detect(
+                        estimator.getOffset(),
+                        sendTimeDeltaMs,
+                        estimator.getNumOfDeltas(),
+                        arrivalTimeMs);
+            }
+            if (detector.getState() == BandwidthUsage.kBwOverusing)
+                overusing = true;
+        }
+
+        long receivedBitrateBps
+            = receivedBitrate.getRate(arrivalTimesMs[count - 1]);
+
+        // The first over-use should immediately trigger a new estimate. While
+        // over-using, further reductions are limited to one per RTT unless the
+        // estimate is too high compared to what is being received.
+        if (overusing
+                && priorState == BandwidthUsage.kBwOverusing
+                && !rateControl.isTimeToReduceFurther(
+                        nowMs, receivedBitrateBps))
+        {
+            return -1;
+        }
+
+        RateControlInput input = this.input;
+
+        input.bwState
+            = overusing ? BandwidthUsage.kBwOverusing : detector.getState();
+        input.incomingBitRate = receivedBitrateBps;
+        input.noiseVar = estimator.getVarNoise();
+        rateControl.update(input, nowMs);
+
+        long bitrateBps = rateControl.updateBandwidthEstimate(nowMs);
+
+        return rateControl.isValidEstimate() ? bitrateBps : -1;
+    }
+
+    /**
+     * Sets the bitrate from which the estimation starts.
+     *
+     * @param bitrateBps the start bitrate in bits per second.
+     * @param nowMs the current time in milliseconds.
+     */
+    public synchronized void setStartBitrate(int bitrateBps, long nowMs)
+    {
+        rateControl.setEstimate(bitrateBps, nowMs);
+    }
+
+    /**
+     * Sets the minimum bitrate that this instance may output.
+     *
+     * @param minBitrateBps the minimum bitrate in bits per second.
+     */
+    public synchronized void setMinBitrate(int minBitrateBps)
+    {
+        rateControl.setMinBitrate(minBitrateBps);
+    }
+
+    /**
+     * Sets the round trip time used by the rate control.
+     *
+     * @param rttMs the round trip time in milliseconds.
+     */
+    public synchronized void setRtt(long rttMs)
+    {
+        rateControl.setRtt(rttMs);
+    }
+}
@@ -16,6 +16,8 @@
 package org.jitsi.impl.neomedia.rtp.sendsidebandwidthestimation;
 
 import net.sf.fmj.media.rtp.*;
+import org.jitsi.impl.neomedia.rtp.remotebitrateestimator.*;
+import org.jitsi.impl.neomedia.transform.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.service.neomedia.rtp.*;
 
@@ -33,7 +35,8 @@
  */
 public class BandwidthEstimatorImpl
     extends RTCPReportAdapter
-    implements BandwidthEstimator
+    implements BandwidthEstimator,
+               TransportCCEngine.PacketFeedbackListener
 {
     /**
      * The minimum value to be output by this estimator, in bits per second.
@@ -63,6 +66,18 @@
      */
     private final SendSideBandwidthEstimation sendSideBandwidthEstimation;
 
+    /**
+     * The delay-based estimator which is fed with transport-cc feedback and
+     * whose estimate caps the loss-based one.
+     */
+    private final DelayBasedBitrateEstimator delayBasedBitrateEstimator
+        = new DelayBasedBitrateEstimator();
+
+    /**
+     * The {@link MediaStream} which owns this instance.
+     */
+    private final MediaStream stream;
+
     /**
      * Initializes a new instance which is to belong to a particular
      * {@link MediaStream}.
@@ -70,10 +85,14 @@
      */
     public BandwidthEstimatorImpl(MediaStream stream)
     {
+        this.stream = stream;
         sendSideBandwidthEstimation
             = new SendSideBandwidthEstimation(stream, START_BITRATE_BPS);
         sendSideBandwidthEstimation.setMinMaxBitrate(
                 MIN_BITRATE_BPS, MAX_BITRATE_BPS);
+        delayBasedBitrateEstimator.setMinBitrate(MIN_BITRATE_BPS);
+        delayBasedBitrateEstimator.setStartBitrate(
+                START_BITRATE_BPS, System.currentTimeMillis());
 
         // Hook us up to receive Report Blocks and REMBs.
         MediaStreamStats stats = stream.getMediaStreamStats();
@@ -152,6 +171,36 @@ public void rtcpReportReceived(RTCPReport report)
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Updates the delay-based estimate, which caps the estimate of this
+     * instance.
+     */
+    @Override
+    public void packetFeedbackReceived(
+            long[] sendTimesMs, long[] arrivalTimesMs, int[] sizes)
+    {
+        long rtt = stream.getMediaStreamStats().getSendStats().getRtt();
+
+        if (rtt > 0)
+        {
+            delayBasedBitrateEstimator.setRtt(rtt);
+        }
+
+        long bitrate
+            = delayBasedBitrateEstimator.incomingPacketFeedback(
+                    sendTimesMs,
+                    arrivalTimesMs,
+                    sizes,
+                    System.currentTimeMillis());
+
+        if (bitrate > 0)
+        {
+            sendSideBandwidthEstimation.updateDelayBasedEstimate(bitrate);
+        }
+    }
+
     @Override
     public void addListener(Listener listener)
     {
@@ -124,6 +124,11 @@
      */
     private long bwe_incoming_ = 0;
 
+    /**
+     * send_side_bandwidth_estimation.h
+     */
+    private long delay_based_bitrate_bps_ = 0;
+
     /**
      * send_side_bandwidth_estimation.h
      */
@@ -166,6 +171,10 @@ private synchronized long capBitrateToThresholds(long bitrate)
         {
             bitrate = bwe_incoming_;
         }
+        if (delay_based_bitrate_bps_ > 0 && bitrate > delay_based_bitrate_bps_)
+        {
+            bitrate = delay_based_bitrate_bps_;
+        }
         if (bitrate > max_bitrate_configured_)
         {
             bitrate = max_bitrate_configured_;
@@ -184,12 +193,15 @@ protected synchronized void updateEstimate(long now)
     {
         long bitrate = bitrate_;
 
-        // We trust the REMB during the first 2 seconds if we haven't had any
-        // packet loss reported, to allow startup bitrate probing.
+        // We trust the REMB and/or delay-based estimate during the first 2
+        // seconds if we haven't had any packet loss reported, to allow startup
+        // bitrate probing.
         if (last_fraction_loss_ == 0 && isInStartPhase(now) &&
-                bwe_incoming_ > bitrate)
+                (bwe_incoming_ > bitrate || delay_based_bitrate_bps_ > bitrate))
         {
-            setBitrate(capBitrateToThresholds(bwe_incoming_));
+            setBitrate(
+                capBitrateToThresholds(
+                    Math.max(bwe_incoming_, delay_based_bitrate_bps_)));
             min_bitrate_history_.clear();
             min_bitrate_history_.addLast(new Pair<>(now, bitrate));
             return;
@@ -339,6 +351,15 @@ private synchronized void updateReceiverEstimate(long bandwidth)
         setBitrate(capBitrateToThresholds(bitrate_));
     }
 
+    /**
+     * void SendSideBandwidthEstimation::UpdateDelayBasedEstimate
+     */
+    synchronized void updateDelayBasedEstimate(long bitrate_bps)
+    {
+        delay_based_bitrate_bps_ = bitrate_bps;
+        setBitrate(capBitrateToThresholds(bitrate_));
+    }
+
     /**
      * void SendSideBandwidthEstimation::SetMinMaxBitrate
      */
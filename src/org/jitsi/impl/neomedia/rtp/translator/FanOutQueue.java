@@ -0,0 +1,313 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp.translator;
+
+import java.util.concurrent.*;
+
+import javax.media.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.util.*;
+
+/**
+ * The queue of the packets which an <tt>OutputDataStreamImpl</tt> is to write
+ * into one endpoint <tt>OutputDataStream</tt> when the writes are fanned out
+ * to {@link OutputDataStreamImpl#fanOutExecutor}. The queue is drained by at
+ * most one task at a time so the packets are written into the endpoint in the
+ * order in which they were added. When the endpoint does not keep up, the
+ * oldest packets of its queue are dropped without affecting the other
+ * endpoints.
+ */
+class FanOutQueue
+    implements Runnable
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>FanOutQueue</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(FanOutQueue.class);
+
+    /**
+     * The maximum number of packets which are written by a task of
+     * {@link OutputDataStreamImpl#fanOutExecutor} from one
+     * <tt>FanOutQueue</tt> before it moves on to other <tt>FanOutQueue</tt>s
+     * (in order to not let a busy endpoint starve the rest).
+     */
+    private static final int BATCH_SIZE = 32;
+
+    /**
+     * Whether this <tt>FanOutQueue</tt> has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * The endpoint <tt>OutputDataStream</tt> into which the packets of this
+     * queue are written.
+     */
+    private final OutputDataStreamDesc destination;
+
+    /**
+     * The executor which drains this queue.
+     */
+    private final Executor executor;
+
+    /**
+     * The index in {@link #queue} of the oldest packet.
+     */
+    private int head;
+
+    /**
+     * The number of packets in {@link #queue}.
+     */
+    private int length;
+
+    /**
+     * The number of packets dropped because a packet was added while
+     * {@link #queue} was full.
+     */
+    private int numDroppedPackets = 0;
+
+    /**
+     * The <tt>OutputDataStreamImpl</tt> which writes the packets of this
+     * queue.
+     */
+    private final OutputDataStreamImpl owner;
+
+    /**
+     * The circular buffer of the packets to be written.
+     */
+    private final RTPTranslatorBuffer[] queue;
+
+    /**
+     * Whether this instance has been submitted to {@link #executor} and has
+     * not completed yet.
+     */
+    private boolean scheduled = false;
+
+    /**
+     * Initializes a new <tt>FanOutQueue</tt> instance.
+     *
+     * @param owner the <tt>OutputDataStreamImpl</tt> which is to write the
+     * packets of the new instance
+     * @param destination the endpoint <tt>OutputDataStream</tt> into which the
+     * packets of the new instance are to be written
+     * @param executor the executor which is to drain the new instance
+     * @param capacity the maximum number of packets in the new instance
+     */
+    FanOutQueue(
+            OutputDataStreamImpl owner,
+            OutputDataStreamDesc destination,
+            Executor executor,
+            int capacity)
+    {
+        this.owner = owner;
+        this.destination = destination;
+        this.executor = executor;
+        queue = new RTPTranslatorBuffer[capacity];
+    }
+
+    /**
+     * Adds a copy of a packet to this queue, dropping the oldest packet if the
+     * queue is full.
+     *
+     * @param buf the <tt>byte</tt>s of the packet
+     * @param off the offset in <tt>buf</tt> at which the packet starts
+     * @param len the number of <tt>byte</tt>s of the packet
+     * @param format the FMJ <tt>Format</tt> of the packet
+     * @param exclusion the <tt>StreamRTPManagerDesc</tt> which is the source
+     * of the packet
+     */
+    void add(
+            byte[] buf, int off, int len,
+            Format format,
+            StreamRTPManagerDesc exclusion)
+    {
+        boolean schedule = false;
+
+        synchronized (this)
+        {
+            if (closed)
+                return;
+
+            int index;
+
+            if (length < queue.length)
+            {
+                index = (head + length) % queue.length;
+            }
+            else
+            {
+                index = head;
+                head++;
+                if (head >= queue.length)
+                    head = 0;
+                length--;
+
+                numDroppedPackets++;
+                if (RTPConnectorOutputStream.logDroppedPacket(
+                        numDroppedPackets))
+                {
+                    logger.warn(
+                            "Dropped " + numDroppedPackets + " packets"
+                                + " (hashCode=" + hashCode() + ").");
+                }
+            }
+
+            RTPTranslatorBuffer write = queue[index];
+
+            if (write == null)
+                queue[index] = write = new RTPTranslatorBuffer();
+
+            byte[] data = write.data;
+
+            if (data == null || data.length < len)
+                write.data = data = new byte[len];
+            System.arraycopy(buf, off, data, 0, len);
+
+            write.exclusion = exclusion;
+            write.format = format;
+            write.length = len;
+
+            length++;
+            if (!scheduled)
+                scheduled = schedule = true;
+        }
+
+        if (schedule)
+            schedule();
+    }
+
+    /**
+     * Closes this queue, discarding the packets which it contains.
+     */
+    synchronized void close()
+    {
+        closed = true;
+        for (int i = 0; i < queue.length; i++)
+            queue[i] = null;
+        length = 0;
+    }
+
+    /**
+     * Writes up to {@link #BATCH_SIZE} packets of this queue into
+     * {@link #destination} and resubmits this instance to {@link #executor}
+     * if packets remain.
+     */
+    @Override
+    public void run()
+    {
+        boolean schedule = false;
+
+        try
+        {
+            for (int i = 0; i < BATCH_SIZE; i++)
+            {
+                int index;
+                byte[] data;
+                StreamRTPManagerDesc exclusion;
+                Format format;
+                int len;
+
+                synchronized (this)
+                {
+                    if (closed || length < 1)
+                        break;
+
+                    index = head;
+
+                    RTPTranslatorBuffer write = queue[index];
+
+                    data = write.data;
+                    write.data = null;
+                    exclusion = write.exclusion;
+                    write.exclusion = null;
+                    format = write.format;
+                    write.format = null;
+                    len = write.length;
+                    write.length = 0;
+
+                    head++;
+                    if (head >= queue.length)
+                        head = 0;
+                    length--;
+                }
+
+                try
+                {
+                    owner.writeTo(destination, data, 0, len, format, exclusion);
+                }
+                catch (Exception e)
+                {
+                    // The other endpoints served by the executor must not
+                    // suffer because of a failure to write into this one.
+                    logger.error("Failed to translate RTP packet", e);
+                }
+                finally
+                {
+                    synchronized (this)
+                    {
+                        RTPTranslatorBuffer write = queue[index];
+
+                        if (write != null && write.data == null)
+                            write.data = data;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                if (closed || length < 1)
+                    scheduled = false;
+                else
+                    schedule = true;
+            }
+        }
+
+        if (schedule)
+            schedule();
+    }
+
+    /**
+     * Submits this instance to {@link #executor}.
+     */
+    private void schedule()
+    {
+        try
+        {
+            executor.execute(this);
+        }
+        catch (RejectedExecutionException ree)
+        {
+            synchronized (this)
+            {
+                scheduled = false;
+            }
+            logger.error("Failed to schedule translation.", ree);
+        }
+    }
+
+    /**
+     * Returns the number of packets in this queue.
+     *
+     * @return the number of packets in this queue
+     */
+    synchronized int size()
+    {
+        return length;
+    }
+}
@@ -19,6 +19,7 @@
 
 import javax.media.rtp.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Describes an <tt>OutputDataStream</tt> associated with an endpoint to which
@@ -33,6 +34,13 @@
      */
     public final RTPConnectorDesc connectorDesc;
 
+    /**
+     * The queue of the packets to be written into {@link #stream} by the
+     * executor which fans out the writes of an <tt>OutputDataStreamImpl</tt>
+     * or <tt>null</tt> if the writes are not fanned out.
+     */
+    public final FanOutQueue fanOutQueue;
+
     /**
      * The <tt>OutputDataStream</tt> associated with an endpoint to which an
      * <tt>RTPTranslatorImpl</tt> is translating.
@@ -52,8 +60,38 @@
     public OutputDataStreamDesc(
             RTPConnectorDesc connectorDesc,
             OutputDataStream stream)
+    {
+        this(connectorDesc, stream, null, null, 0);
+    }
+
+    /**
+     * Initializes a new <tt>OutputDataStreamDesc</tt> instance which is to
+     * describe an endpoint <tt>OutputDataStream</tt> for an
+     * <tt>RTPTranslatorImpl</tt> into which writes are fanned out to a
+     * specific executor.
+     *
+     * @param connectorDesc the endpoint <tt>RTPConnector</tt> which owns the
+     * specified <tt>stream</tt>
+     * @param stream the endpoint <tt>OutputDataStream</tt> to be described by
+     * the new instance for an <tt>RTPTranslatorImpl</tt>
+     * @param owner the <tt>OutputDataStreamImpl</tt> which writes into
+     * <tt>stream</tt> or <tt>null</tt> if the writes are not fanned out
+     * @param executor the executor to fan the writes out to
+     * @param capacity the maximum number of packets queued for
+     * <tt>stream</tt>
+     */
+    public OutputDataStreamDesc(
+            RTPConnectorDesc connectorDesc,
+            OutputDataStream stream,
+            OutputDataStreamImpl owner,
+            Executor executor,
+            int capacity)
     {
         this.connectorDesc = connectorDesc;
         this.stream = stream;
+        fanOutQueue
+            = (owner == null)
+                ? null
+                : new FanOutQueue(owner, this, executor, capacity);
     }
 }
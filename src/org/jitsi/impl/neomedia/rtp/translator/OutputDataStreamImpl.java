@@ -16,17 +16,20 @@
 package org.jitsi.impl.neomedia.rtp.translator;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.media.*;
 import javax.media.rtp.*;
 
 import net.sf.fmj.media.rtp.*;
 import net.sf.fmj.media.rtp.RTPHeader;
+import net.sf.fmj.media.util.*;
 
 import org.ice4j.util.*;
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.rtcp.*;
 import org.jitsi.impl.neomedia.rtp.*;
+import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.util.*;
@@ -65,6 +68,66 @@
     private static final int WRITE_Q_CAPACITY
         = RTPConnectorOutputStream.PACKET_QUEUE_CAPACITY;
 
+    /**
+     * The name of the <tt>int</tt> <tt>ConfigurationService</tt> property
+     * which specifies the value of {@link #FAN_OUT_THREADS}.
+     */
+    private static final String FAN_OUT_THREADS_PNAME
+        = RTPTranslatorImpl.class.getName() + ".FAN_OUT_THREADS";
+
+    /**
+     * The number of threads of the {@link #fanOutExecutor} shared by all
+     * <tt>OutputDataStreamImpl</tt>s. If positive, the writing of a packet
+     * into the endpoint <tt>OutputDataStream</tt>s (i.e. the filtering, the
+     * copying and, depending on the configuration of the endpoint, the
+     * transformation and the sending) is fanned out to the threads instead of
+     * being carried out for one endpoint after another in the write thread.
+     * The default value is <tt>0</tt>, i.e. the writing is not fanned out.
+     */
+    private static final int FAN_OUT_THREADS;
+
+    /**
+     * The name of the <tt>int</tt> <tt>ConfigurationService</tt> property
+     * which specifies the value of {@link #FAN_OUT_QUEUE_CAPACITY}.
+     */
+    private static final String FAN_OUT_QUEUE_CAPACITY_PNAME
+        = RTPTranslatorImpl.class.getName() + ".FAN_OUT_QUEUE_CAPACITY";
+
+    /**
+     * The maximum number of packets queued for an endpoint
+     * <tt>OutputDataStream</tt> when the writing is fanned out. When an
+     * endpoint does not keep up, its oldest packets are dropped.
+     */
+    private static final int FAN_OUT_QUEUE_CAPACITY;
+
+    /**
+     * The executor to which the writing into the endpoint
+     * <tt>OutputDataStream</tt>s of all <tt>OutputDataStreamImpl</tt>s is
+     * fanned out if {@link #FAN_OUT_THREADS} is positive; otherwise,
+     * <tt>null</tt>. The packets of an endpoint are written in order but the
+     * packets of different endpoints may be written (and, consequently, the
+     * <tt>WriteFilter</tt>s of the translator invoked) concurrently.
+     */
+    private static final ScheduledExecutorService fanOutExecutor;
+
+    static
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        FAN_OUT_THREADS = ConfigUtils.getInt(cfg, FAN_OUT_THREADS_PNAME, 0);
+        FAN_OUT_QUEUE_CAPACITY
+            = ConfigUtils.getInt(cfg, FAN_OUT_QUEUE_CAPACITY_PNAME, 256);
+        fanOutExecutor
+            = (FAN_OUT_THREADS > 0 && FAN_OUT_QUEUE_CAPACITY > 0)
+                ? ExecutorUtils.newScheduledThreadPool(
+                        FAN_OUT_THREADS,
+                        true,
+                        OutputDataStreamImpl.class.getName()
+                            + ".fanOutExecutor",
+                        MediaThread.getNetworkPriority())
+                : null;
+    }
+
     private boolean closed;
 
     private final RTPConnectorImpl connector;
@@ -169,16 +232,35 @@ public void addStream(
                 = new ArrayList<>(_streams.size() * 3 / 2 + 1);
 
             newStreams.addAll(_streams);
-            newStreams.add(new OutputDataStreamDesc(connectorDesc, stream));
+            newStreams.add(
+                    new OutputDataStreamDesc(
+                            connectorDesc,
+                            stream,
+                            (fanOutExecutor == null) ? null : this,
+                            fanOutExecutor,
+                            FAN_OUT_QUEUE_CAPACITY));
             _streams = newStreams;
         }
     }
 
-    public synchronized void close()
+    public void close()
     {
-        closed = true;
-        writeThread = null;
-        notify();
+        synchronized (this)
+        {
+            closed = true;
+            writeThread = null;
+            notify();
+        }
+
+        List<OutputDataStreamDesc> streams = _streams;
+
+        for (int i = 0, end = streams.size(); i < end; ++i)
+        {
+            FanOutQueue fanOutQueue = streams.get(i).fanOutQueue;
+
+            if (fanOutQueue != null)
+                fanOutQueue.close();
+        }
     }
 
     private synchronized void createWriteThread()
@@ -209,65 +291,72 @@ private int doWrite(
         for (int i = 0, end = streams.size(); i < end; ++i)
         {
             OutputDataStreamDesc s = streams.get(i);
-            StreamRTPManagerDesc streamRTPManager
-                = s.connectorDesc.streamRTPManagerDesc;
 
-            if (streamRTPManager == exclusion)
+            if (s.connectorDesc.streamRTPManagerDesc == exclusion)
                 continue;
 
-            boolean write;
-
-            if (_data)
+            // TODO The removal of the RTP header extensions is an
+            // experiment inspired by
+            // https://code.google.com/p/webrtc/issues/detail?id=1095
+            // "Chrom WebRTC VP8 RTP packet retransmission does not
+            // follow RFC 4588"
+            if (_data && removeRTPHeaderExtensions)
             {
-                // TODO The removal of the RTP header extensions is an
-                // experiment inspired by
-                // https://code.google.com/p/webrtc/issues/detail?id=1095
-                // "Chrom WebRTC VP8 RTP packet retransmission does not
-                // follow RFC 4588"
-                if (removeRTPHeaderExtensions)
-                {
-                    removeRTPHeaderExtensions = false;
-                    len = removeRTPHeaderExtensions(buf, off, len);
-                }
+                removeRTPHeaderExtensions = false;
+                len = removeRTPHeaderExtensions(buf, off, len);
+            }
+
+            FanOutQueue fanOutQueue = s.fanOutQueue;
+            int w;
 
-                write
-                    = willWriteData(
-                            streamRTPManager,
-                            buf, off, len,
-                            format,
-                            exclusion);
+            if (fanOutQueue == null)
+            {
+                w = writeTo(s, buf, off, len, format, exclusion);
             }
             else
             {
-                write
-                    = willWriteControl(
-                            streamRTPManager,
-                            buf, off, len,
-                            format,
-                            exclusion);
+                // The filtering modifies the packet for the destination so
+                // each destination gets its own copy.
+                fanOutQueue.add(buf, off, len, format, exclusion);
+                w = len;
             }
+            if (written < w)
+                written = w;
+        }
+        return written;
+    }
 
-            if (write)
-            {
-                // Allow the RTPTranslatorImpl a final chance to filter out the
-                // packet on a source-destination basis.
-                write
-                    = translator.willWrite(
-                        /* source */ exclusion,
-                    buf, off, len,
-                        /* destination */ streamRTPManager,
-                    _data);
-            }
+    /**
+     * Returns the number of packets queued for a specific destination when
+     * the writing is fanned out.
+     *
+     * @param destination the <tt>MediaStream</tt> which identifies the
+     * destination
+     * @return the number of packets queued for <tt>destination</tt> or
+     * <tt>0</tt> if the writing is not fanned out or <tt>destination</tt> is
+     * not known to this instance
+     */
+    int getFanOutQueueSize(MediaStream destination)
+    {
+        // XXX The field _streams is explicitly implemented as a copy-on-write
+        // storage in order to avoid synchronization.
+        List<OutputDataStreamDesc> streams = _streams;
 
-            if (write)
+        // XXX I do NOT want to use an Iterator.
+        for (int i = 0, end = streams.size(); i < end; ++i)
+        {
+            OutputDataStreamDesc s = streams.get(i);
+
+            if (destination
+                    == s.connectorDesc.streamRTPManagerDesc.streamRTPManager
+                            .getMediaStream())
             {
-                int w = s.stream.write(buf, off, len);
+                FanOutQueue fanOutQueue = s.fanOutQueue;
 
-                if (written < w)
-                    written = w;
+                return (fanOutQueue == null) ? 0 : fanOutQueue.size();
             }
         }
-        return written;
+        return 0;
     }
 
     private RTPTranslatorImpl getTranslator()
@@ -354,8 +443,14 @@ public void removeStreams(RTPConnectorDesc connectorDesc)
             for (Iterator<OutputDataStreamDesc> i = newStreams.iterator();
                     i.hasNext();)
             {
-                if (i.next().connectorDesc == connectorDesc)
+                OutputDataStreamDesc streamDesc = i.next();
+
+                if (streamDesc.connectorDesc == connectorDesc)
+                {
                     i.remove();
+                    if (streamDesc.fanOutQueue != null)
+                        streamDesc.fanOutQueue.close();
+                }
             }
             _streams = newStreams;
         }
@@ -698,6 +793,68 @@ public synchronized void write(
             notify();
     }
 
+    /**
+     * Writes a packet into a specific endpoint <tt>OutputDataStream</tt> if
+     * the filtering allows it.
+     *
+     * @param s the endpoint <tt>OutputDataStream</tt> to write into
+     * @param buf the <tt>byte</tt>s of the packet
+     * @param off the offset in <tt>buf</tt> at which the packet starts
+     * @param len the number of <tt>byte</tt>s of the packet
+     * @param format the FMJ <tt>Format</tt> of the packet
+     * @param exclusion the <tt>StreamRTPManagerDesc</tt> which is the source
+     * of the packet
+     * @return the number of <tt>byte</tt>s written into <tt>s</tt>
+     */
+    int writeTo(
+            OutputDataStreamDesc s,
+            byte[] buf, int off, int len,
+            Format format,
+            StreamRTPManagerDesc exclusion)
+    {
+        RTPTranslatorImpl translator = getTranslator();
+
+        if (translator == null)
+            return 0;
+
+        StreamRTPManagerDesc streamRTPManager
+            = s.connectorDesc.streamRTPManagerDesc;
+        boolean write;
+
+        if (_data)
+        {
+            write
+                = willWriteData(
+                        streamRTPManager,
+                        buf, off, len,
+                        format,
+                        exclusion);
+        }
+        else
+        {
+            write
+                = willWriteControl(
+                        streamRTPManager,
+                        buf, off, len,
+                        format,
+                        exclusion);
+        }
+
+        if (write)
+        {
+            // Allow the RTPTranslatorImpl a final chance to filter out the
+            // packet on a source-destination basis.
+            write
+                = translator.willWrite(
+                    /* source */ exclusion,
+                    buf, off, len,
+                    /* destination */ streamRTPManager,
+                    _data);
+        }
+
+        return write ? s.stream.write(buf, off, len) : 0;
+    }
+
     /**
      * Writes an <tt>RTCPFeedbackMessage</tt> into a destination identified by
      * a specific <tt>MediaStream</tt>.
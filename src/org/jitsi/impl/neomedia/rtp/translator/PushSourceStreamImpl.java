@@ -81,13 +81,6 @@
      */
     private int numDroppedPackets = 0;
 
-    /**
-     * The pool of <tt>SourcePacket</tt> instances to reduce their
-     * allocations and garbage collection.
-     */
-    private final Queue<SourcePacket> sourcePacketPool
-        = new LinkedBlockingQueue<>(RTPConnectorOutputStream.POOL_CAPACITY);
-
     private final List<PushSourceStreamDesc> streams = new LinkedList<>();
 
     /**
@@ -142,7 +135,6 @@ public synchronized void addStream(
     public void close()
     {
         closed = true;
-        sourcePacketPool.clear();
     }
 
     /**
@@ -259,7 +251,7 @@ public int read(byte[] buffer, int offset, int length)
         int flags = pkt.getFlags();
 
         pkt.streamDesc = null;
-        sourcePacketPool.offer(pkt);
+        ByteArrayPool.returnBuffer(pkt.getBuffer());
 
         if (read > 0)
         {
@@ -399,21 +391,10 @@ public void transferData(PushSourceStream stream)
         if (len < 1)
             len = 2 * 1024;
 
-        SourcePacket pkt = sourcePacketPool.poll();
-        byte[] buf;
+        byte[] buf = ByteArrayPool.getBuffer(len);
+        SourcePacket pkt = new SourcePacket(buf, 0, 0);
 
-        if (pkt == null || (buf = pkt.getBuffer()).length < len)
-        {
-            buf = new byte[len];
-            pkt = new SourcePacket(buf, 0, 0);
-        }
-        else
-        {
-            len = buf.length;
-            pkt.setFlags(0);
-            pkt.setLength(0);
-            pkt.setOffset(0);
-        }
+        len = buf.length;
 
         int read = 0;
 
@@ -479,7 +460,8 @@ else if (readQSize < readQCapacity)
                     long now = System.currentTimeMillis();
                     if (readQ.size() >= readQCapacity)
                     {
-                        readQ.remove();
+                        ByteArrayPool.returnBuffer(
+                                readQ.remove().getBuffer());
                         if (readQStats != null)
                         {
                             readQStats.remove(now);
@@ -511,7 +493,7 @@ else if (readQSize < readQCapacity)
             else
             {
                 pkt.streamDesc = null;
-                sourcePacketPool.offer(pkt);
+                ByteArrayPool.returnBuffer(buf);
             }
         }
     }
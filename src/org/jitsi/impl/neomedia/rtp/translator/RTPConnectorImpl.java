@@ -266,6 +266,28 @@ public synchronized OutputDataStreamImpl getDataOutputStream()
         return this.dataOutputStream;
     }
 
+    /**
+     * Returns the number of packets which are queued to be written into a
+     * specific <tt>MediaStream</tt> when the writing is fanned out.
+     *
+     * @param destination the <tt>MediaStream</tt> to get the number of queued
+     * packets of
+     * @return the number of RTP and RTCP packets queued to be written into
+     * <tt>destination</tt>
+     */
+    int getFanOutQueueSize(MediaStream destination)
+    {
+        OutputDataStreamImpl dataOutputStream = this.dataOutputStream;
+        OutputDataStreamImpl controlOutputStream = this.controlOutputStream;
+        int size = 0;
+
+        if (dataOutputStream != null)
+            size += dataOutputStream.getFanOutQueueSize(destination);
+        if (controlOutputStream != null)
+            size += controlOutputStream.getFanOutQueueSize(destination);
+        return size;
+    }
+
     /**
      * Not implemented because there are currently no uses of the underlying
      * functionality.
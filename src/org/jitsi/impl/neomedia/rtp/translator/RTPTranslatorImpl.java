@@ -782,6 +782,28 @@ public Object getControl(
         return manager.getControl(controlType);
     }
 
+    /**
+     * Returns the number of packets which are queued to be written into a
+     * specific <tt>MediaStream</tt> when the writing into the endpoints of
+     * this translator is fanned out to multiple threads. A destination which
+     * does not keep up accumulates packets in its queue (and eventually
+     * drops its oldest ones) without delaying the other destinations.
+     *
+     * @param destination the <tt>MediaStream</tt> to get the number of queued
+     * packets of
+     * @return the number of RTP and RTCP packets queued to be written into
+     * <tt>destination</tt> or <tt>0</tt> if the writing is not fanned out
+     */
+    public int getFanOutQueueSize(MediaStream destination)
+    {
+        RTPConnectorImpl connector = this.connector;
+
+        return
+            (connector == null)
+                ? 0
+                : connector.getFanOutQueueSize(destination);
+    }
+
     /**
      * Exposes {@link RTPManager#getGlobalReceptionStats()} on the
      * internal/underlying <tt>RTPManager</tt>.
@@ -17,8 +17,7 @@
 
 import org.ice4j.util.*;
 import org.jitsi.service.neomedia.stats.*;
-
-import java.util.concurrent.atomic.*;
+import org.jitsi.util.*;
 
 /**
  * Media stream statistics per send or receive SSRC.
@@ -27,7 +26,8 @@
  * @author Boris Grozev
  */
 public abstract class AbstractTrackStats
-    implements TrackStats
+    implements TrackStats,
+               TrackStatsSnapshotProvider
 {
     /**
      * The last jitter (in milliseconds).
@@ -44,40 +44,45 @@
     /**
      * The total number of bytes.
      */
-    protected final AtomicLong bytes = new AtomicLong();
+    protected final StripedLongCounter bytes = new StripedLongCounter();
 
     /**
      * The total number of bytes.
      */
-    protected final AtomicLong packets = new AtomicLong();
+    protected final StripedLongCounter packets = new StripedLongCounter();
 
     /**
      * Number of bytes retransmitted.
      */
-    protected final AtomicLong bytesRetransmitted = new AtomicLong();
+    protected final StripedLongCounter bytesRetransmitted
+        = new StripedLongCounter();
 
     /**
      * Number of bytes for packets which were requested and found in the
      * cache, but were intentionally not retransmitted.
      */
-    protected final AtomicLong bytesNotRetransmitted = new AtomicLong();
+    protected final StripedLongCounter bytesNotRetransmitted
+        = new StripedLongCounter();
 
     /**
      * Number of packets retransmitted.
      */
-    protected final AtomicLong packetsRetransmitted = new AtomicLong();
+    protected final StripedLongCounter packetsRetransmitted
+        = new StripedLongCounter();
 
     /**
      * Number of packets which were requested and found in the cache, but
      * were intentionally not retransmitted.
      */
-    protected final AtomicLong packetsNotRetransmitted = new AtomicLong();
+    protected final StripedLongCounter packetsNotRetransmitted
+        = new StripedLongCounter();
 
     /**
      * The number of packets for which retransmission was requested, but
      * they were missing from the cache.
      */
-    protected final AtomicLong packetsMissingFromCache = new AtomicLong();
+    protected final StripedLongCounter packetsMissingFromCache
+        = new StripedLongCounter();
 
 
     /**
@@ -101,6 +106,13 @@
      */
     private final long ssrc;
 
+    /**
+     * The most recent immutable snapshot of this instance, refreshed by
+     * {@link #packetProcessed(int, long, boolean)} at most once per
+     * {@link #interval} so that readers do not contend with the packet path.
+     */
+    private volatile TrackStatsSnapshot snapshot;
+
     /**
      * Initializes a new {@code AbstractTrackStats} instance.
      */
@@ -131,16 +143,40 @@ public long getSSRC()
      */
     protected void packetProcessed(int length, long now, boolean rtp)
     {
-        bytes.addAndGet(length);
+        bytes.add(length);
         bitrate.update(length, now);
 
         // Don't count RTCP packets towards the packet rate since it is used to
         // calculate the number of lost packets.
         if (rtp)
         {
-            packets.addAndGet(1);
+            packets.increment();
             packetRate.update(1, now);
         }
+
+        TrackStatsSnapshot snapshot = this.snapshot;
+
+        if (snapshot == null || now - snapshot.getTimestampMs() >= interval)
+            this.snapshot = new TrackStatsSnapshot(this, now);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Returns the snapshot most recently taken by the thread(s) which process
+     * the packets. If no packets have been processed during the last two
+     * intervals, takes a new snapshot so that idle streams do not report stale
+     * rates.
+     */
+    @Override
+    public TrackStatsSnapshot getSnapshot()
+    {
+        long now = System.currentTimeMillis();
+        TrackStatsSnapshot snapshot = this.snapshot;
+
+        if (snapshot == null || now - snapshot.getTimestampMs() >= 2 * interval)
+            this.snapshot = snapshot = new TrackStatsSnapshot(this, now);
+        return snapshot;
     }
 
     /**
@@ -167,7 +203,7 @@ public long getRtt()
     @Override
     public long getBytes()
     {
-        return bytes.get();
+        return bytes.sum();
     }
 
     /**
@@ -176,7 +212,7 @@ public long getBytes()
     @Override
     public long getPackets()
     {
-        return packets.get();
+        return packets.sum();
     }
 
     /**
@@ -254,7 +290,7 @@ protected void setRtt(long rtt)
      */
     public long getBytesRetransmitted()
     {
-        return bytesRetransmitted.get();
+        return bytesRetransmitted.sum();
     }
 
     /**
@@ -266,7 +302,7 @@ public long getBytesRetransmitted()
      */
     public long getBytesNotRetransmitted()
     {
-        return bytesNotRetransmitted.get();
+        return bytesNotRetransmitted.sum();
     }
 
     /**
@@ -277,7 +313,7 @@ public long getBytesNotRetransmitted()
     @Override
     public long getPacketsRetransmitted()
     {
-        return packetsRetransmitted.get();
+        return packetsRetransmitted.sum();
     }
 
     /**
@@ -289,7 +325,7 @@ public long getPacketsRetransmitted()
      */
     public long getPacketsNotRetransmitted()
     {
-        return packetsNotRetransmitted.get();
+        return packetsNotRetransmitted.sum();
     }
 
     /**
@@ -300,7 +336,7 @@ public long getPacketsNotRetransmitted()
      */
     public long getPacketsMissingFromCache()
     {
-        return packetsMissingFromCache.get();
+        return packetsMissingFromCache.sum();
     }
 
     /**
@@ -311,8 +347,8 @@ public long getPacketsMissingFromCache()
      */
     protected void rtpPacketRetransmitted(long length)
     {
-        packetsRetransmitted.incrementAndGet();
-        bytesRetransmitted.addAndGet(length);
+        packetsRetransmitted.increment();
+        bytesRetransmitted.add(length);
     }
 
     /**
@@ -322,8 +358,8 @@ protected void rtpPacketRetransmitted(long length)
      */
     protected void rtpPacketNotRetransmitted(long length)
     {
-        packetsNotRetransmitted.incrementAndGet();
-        bytesNotRetransmitted.addAndGet(length);
+        packetsNotRetransmitted.increment();
+        bytesNotRetransmitted.add(length);
     }
 
     /**
@@ -332,6 +368,6 @@ protected void rtpPacketNotRetransmitted(long length)
      */
     void rtpPacketCacheMiss()
     {
-        packetsMissingFromCache.incrementAndGet();
+        packetsMissingFromCache.increment();
     }
 }
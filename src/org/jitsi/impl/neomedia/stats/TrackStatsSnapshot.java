@@ -0,0 +1,358 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.stats;
+
+import org.jitsi.service.neomedia.stats.*;
+
+/**
+ * An immutable copy of the values of a {@link TrackStats} taken at a specific
+ * time. Implements both {@link ReceiveTrackStats} and {@link SendTrackStats}
+ * so that it may stand for either; the values specific to the direction which
+ * the original instance does not describe are <tt>-1</tt>.
+ */
+public final class TrackStatsSnapshot
+    implements ReceiveTrackStats,
+               SendTrackStats
+{
+    /**
+     * The value of {@link TrackStats#getBitrate()}.
+     */
+    private final long bitrate;
+
+    /**
+     * The value of {@link TrackStats#getBytes()}.
+     */
+    private final long bytes;
+
+    /**
+     * The value of {@link TrackStats#getBytesNotRetransmitted()}.
+     */
+    private final long bytesNotRetransmitted;
+
+    /**
+     * The value of {@link TrackStats#getBytesRetransmitted()}.
+     */
+    private final long bytesRetransmitted;
+
+    /**
+     * The value of {@link TrackStats#getCurrentBytes()}.
+     */
+    private final long currentBytes;
+
+    /**
+     * The value of {@link TrackStats#getCurrentPackets()}.
+     */
+    private final long currentPackets;
+
+    /**
+     * The value of {@link ReceiveTrackStats#getCurrentPacketsLost()}.
+     */
+    private final long currentPacketsLost;
+
+    /**
+     * The value of {@link SendTrackStats#getHighestSent()}.
+     */
+    private final int highestSent;
+
+    /**
+     * The value of {@link TrackStats#getInterval()}.
+     */
+    private final long interval;
+
+    /**
+     * The value of {@link TrackStats#getJitter()}.
+     */
+    private final double jitter;
+
+    /**
+     * The value of {@link TrackStats#getLossRate()}.
+     */
+    private final double lossRate;
+
+    /**
+     * The value of {@link TrackStats#getPacketRate()}.
+     */
+    private final long packetRate;
+
+    /**
+     * The value of {@link TrackStats#getPackets()}.
+     */
+    private final long packets;
+
+    /**
+     * The value of {@link ReceiveTrackStats#getPacketsLost()}.
+     */
+    private final long packetsLost;
+
+    /**
+     * The value of {@link TrackStats#getPacketsMissingFromCache()}.
+     */
+    private final long packetsMissingFromCache;
+
+    /**
+     * The value of {@link TrackStats#getPacketsNotRetransmitted()}.
+     */
+    private final long packetsNotRetransmitted;
+
+    /**
+     * The value of {@link TrackStats#getPacketsRetransmitted()}.
+     */
+    private final long packetsRetransmitted;
+
+    /**
+     * The value of {@link TrackStats#getRtt()}.
+     */
+    private final long rtt;
+
+    /**
+     * The value of {@link TrackStats#getSSRC()}.
+     */
+    private final long ssrc;
+
+    /**
+     * The time in milliseconds at which this snapshot was taken.
+     */
+    private final long timestampMs;
+
+    /**
+     * Initializes a new <tt>TrackStatsSnapshot</tt> with the current values of
+     * a specific {@link TrackStats}.
+     *
+     * @param stats the {@link TrackStats} to take a snapshot of.
+     * @param timestampMs the time in milliseconds at which the snapshot is
+     * taken.
+     */
+    TrackStatsSnapshot(TrackStats stats, long timestampMs)
+    {
+        this.timestampMs = timestampMs;
+
+        bitrate = stats.getBitrate();
+        bytes = stats.getBytes();
+        bytesNotRetransmitted = stats.getBytesNotRetransmitted();
+        bytesRetransmitted = stats.getBytesRetransmitted();
+        currentBytes = stats.getCurrentBytes();
+        currentPackets = stats.getCurrentPackets();
+        interval = stats.getInterval();
+        jitter = stats.getJitter();
+        lossRate = stats.getLossRate();
+        packetRate = stats.getPacketRate();
+        packets = stats.getPackets();
+        packetsMissingFromCache = stats.getPacketsMissingFromCache();
+        packetsNotRetransmitted = stats.getPacketsNotRetransmitted();
+        packetsRetransmitted = stats.getPacketsRetransmitted();
+        rtt = stats.getRtt();
+        ssrc = stats.getSSRC();
+
+        if (stats instanceof ReceiveTrackStats)
+        {
+            ReceiveTrackStats receiveStats = (ReceiveTrackStats) stats;
+
+            currentPacketsLost = receiveStats.getCurrentPacketsLost();
+            packetsLost = receiveStats.getPacketsLost();
+        }
+        else
+        {
+            currentPacketsLost = -1;
+            packetsLost = -1;
+        }
+
+        highestSent
+            = (stats instanceof SendTrackStats)
+                ? ((SendTrackStats) stats).getHighestSent()
+                : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBitrate()
+    {
+        return bitrate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBytesNotRetransmitted()
+    {
+        return bytesNotRetransmitted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBytesRetransmitted()
+    {
+        return bytesRetransmitted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCurrentBytes()
+    {
+        return currentBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCurrentPackets()
+    {
+        return currentPackets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCurrentPacketsLost()
+    {
+        return currentPacketsLost;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getHighestSent()
+    {
+        return highestSent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getInterval()
+    {
+        return interval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getJitter()
+    {
+        return jitter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLossRate()
+    {
+        return lossRate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPacketRate()
+    {
+        return packetRate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPackets()
+    {
+        return packets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPacketsLost()
+    {
+        return packetsLost;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPacketsMissingFromCache()
+    {
+        return packetsMissingFromCache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPacketsNotRetransmitted()
+    {
+        return packetsNotRetransmitted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPacketsRetransmitted()
+    {
+        return packetsRetransmitted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRtt()
+    {
+        return rtt;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getSSRC()
+    {
+        return ssrc;
+    }
+
+    /**
+     * Gets the time in milliseconds at which this snapshot was taken.
+     *
+     * @return the time in milliseconds at which this snapshot was taken.
+     */
+    public long getTimestampMs()
+    {
+        return timestampMs;
+    }
+}
@@ -25,17 +25,20 @@
 import org.jitsi.service.neomedia.codec.*;
 import org.jitsi.service.neomedia.format.*;
 import org.jitsi.util.*;
+import org.jitsi.util.concurrent.*;
 
 /**
  * Detects lost RTP packets for a particular <tt>RtpChannel</tt> and requests
- * their retransmission by sending RTCP NACK packets.
+ * their retransmission by sending RTCP NACK packets. The requests of all
+ * instances are sent by a single thread of a {@link RecurringRunnableExecutor}
+ * shared by all instances.
  *
  * @author Boris Grozev
  * @author George Politis
  */
 public class RetransmissionRequesterImpl
     extends SinglePacketTransformerAdapter
-    implements TransformEngine, RetransmissionRequester
+    implements TransformEngine, RetransmissionRequester, RecurringRunnable
 {
     /**
      * If more than <tt>MAX_MISSING</tt> consecutive packets are lost, we will
@@ -56,6 +59,26 @@
      */
     private static final int RE_REQUEST_AFTER = 150;
 
+    /**
+     * The number of RTP sequence numbers (ending with the highest received
+     * one) for which a {@link Requester} keeps track of missing packets. A
+     * power of two, larger than {@link #MAX_MISSING}. Packets which are still
+     * missing when they fall out of the window are no longer requested.
+     */
+    private static final int WINDOW_SIZE = 1 << 9;
+
+    /**
+     * The mask which maps an RTP sequence number to its index in the window
+     * of a {@link Requester}.
+     */
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    /**
+     * The time in milliseconds to report from {@link #getTimeUntilNextRun()}
+     * when there is no request scheduled.
+     */
+    private static final long IDLE_WAIT_MS = 1000;
+
     /**
      * The <tt>Logger</tt> used by the <tt>RetransmissionRequesterImpl</tt> class
      * and its instances to print debug information.
@@ -63,26 +86,45 @@
     private static final Logger logger
         = Logger.getLogger(RetransmissionRequesterImpl.class);
 
+    /**
+     * The <tt>RecurringRunnableExecutor</tt> which sends the requests of all
+     * <tt>RetransmissionRequesterImpl</tt> instances.
+     */
+    private static final RecurringRunnableExecutor recurringRunnableExecutor
+        = new RecurringRunnableExecutor(
+                RetransmissionRequesterImpl.class.getSimpleName());
+
     /**
      * Maps an SSRC to the <tt>Requester</tt> instance corresponding to it.
+     * Never modified once published; a copy with the new mapping is published
+     * instead (synchronized on {@link #requestersSyncRoot}).
      * TODO: purge these somehow (RTCP BYE? Timeout?)
      */
-    private final Map<Long, Requester> requesters = new HashMap<>();
+    private volatile LongObjectHashMap<Requester> requesters
+        = new LongObjectHashMap<>();
 
     /**
-     * Whether this {@link RetransmissionRequester} is enabled or not.
+     * The <tt>Requester</tt>s of {@link #requesters} in an array, so that they
+     * can be iterated without allocations. Published together with
+     * {@link #requesters}.
      */
-    private boolean enabled = true;
+    private volatile Requester[] requesterArray = new Requester[0];
 
     /**
-     * The thread which requests retransmissions by sending RTCP NACK packets.
+     * The object which synchronizes the modifications of
+     * {@link #requesters}.
      */
-    private final Thread thread;
+    private final Object requestersSyncRoot = new Object();
+
+    /**
+     * Whether this {@link RetransmissionRequester} is enabled or not.
+     */
+    private boolean enabled = true;
 
     /**
      * Whether this <tt>PacketTransformer</tt> has been closed.
      */
-    private boolean closed = false;
+    private volatile boolean closed = false;
 
     /**
      * The {@link MediaStream} that this instance belongs to.
@@ -105,18 +147,7 @@ public RetransmissionRequesterImpl(MediaStream stream)
         super(RTPPacketPredicate.INSTANCE);
         this.stream = stream;
 
-        thread
-            = new Thread()
-            {
-                @Override
-                public void run()
-                {
-                    runInRequesterThread();
-                }
-            };
-        thread.setDaemon(true);
-        thread.setName(RetransmissionRequesterImpl.class.getName());
-        thread.start();
+        recurringRunnableExecutor.registerRecurringRunnable(this);
     }
 
     /**
@@ -129,13 +160,13 @@ public RawPacket reverseTransform(RawPacket pkt)
     {
         if (enabled && !closed)
         {
-            Long ssrc;
+            long ssrc;
             int seq;
 
             MediaFormat format = stream.getFormat(pkt.getPayloadType());
             if (format == null)
             {
-                ssrc = null;
+                ssrc = -1;
                 seq = -1;
 
                 logger.warn("format_not_found" +
@@ -155,7 +186,7 @@ else if (Constants.RTX.equalsIgnoreCase(format.getEncoding()))
                 }
                 else
                 {
-                    ssrc = null;
+                    ssrc = -1;
                     seq = -1;
 
                     logger.warn("encoding_not_found" +
@@ -169,31 +200,61 @@ else if (Constants.RTX.equalsIgnoreCase(format.getEncoding()))
             }
 
 
-            if (ssrc != null)
+            if (ssrc != -1)
             {
                 // TODO(gp) Don't NACK higher temporal layers.
-                Requester requester;
-                synchronized (requesters)
+                if (getRequester(ssrc).received(seq))
                 {
-                    requester = requesters.get(ssrc);
-                    if (requester == null)
-                    {
-                        if (logger.isDebugEnabled())
-                        {
-                            logger.debug(
-                                "Creating new Requester for SSRC " + ssrc);
-                        }
-                        requester = new Requester(ssrc);
-                        requesters.put(ssrc, requester);
-                    }
+                    // A request has just become due.
+                    recurringRunnableExecutor.wakeUp();
                 }
-                requester.received(seq);
             }
         }
 
         return pkt;
     }
 
+    /**
+     * Gets the <tt>Requester</tt> for a specific SSRC, creating it if it does
+     * not exist yet.
+     *
+     * @param ssrc the SSRC.
+     * @return the <tt>Requester</tt> for <tt>ssrc</tt>.
+     */
+    private Requester getRequester(long ssrc)
+    {
+        Requester requester = requesters.get(ssrc);
+
+        if (requester == null)
+        {
+            synchronized (requestersSyncRoot)
+            {
+                requester = requesters.get(ssrc);
+                if (requester == null)
+                {
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug(
+                            "Creating new Requester for SSRC " + ssrc);
+                    }
+
+                    LongObjectHashMap<Requester> map
+                        = new LongObjectHashMap<>(requesters);
+                    Requester[] array
+                        = Arrays.copyOf(
+                                requesterArray, requesterArray.length + 1);
+
+                    requester = new Requester(ssrc);
+                    map.put(ssrc, requester);
+                    array[array.length - 1] = requester;
+                    requesterArray = array;
+                    requesters = map;
+                }
+            }
+        }
+        return requester;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -201,6 +262,7 @@ else if (Constants.RTX.equalsIgnoreCase(format.getEncoding()))
     public void close()
     {
         closed = true;
+        recurringRunnableExecutor.deRegisterRecurringRunnable(this);
     }
 
     /**
@@ -213,123 +275,94 @@ public void enable(boolean enable)
     }
 
     /**
-     * Runs a loop which checks for any pending requests to be sent, sends them
-     * and then waits until another request is available or due.
+     * {@inheritDoc}
+     *
+     * Returns the time until the earliest request of the <tt>Requester</tt>s
+     * of this instance is due.
      */
-    private void runInRequesterThread()
+    @Override
+    public long getTimeUntilNextRun()
     {
-        if (Thread.currentThread() != thread)
-            return;
+        if (closed || !enabled || senderSsrc == -1)
+            return IDLE_WAIT_MS;
 
-        Map<Long, Set<Integer>> packetsToRequest = new HashMap<>();
+        // Check when the next request is due. -1 means there is no request
+        // scheduled.
+        long nextRequestAt = -1;
 
-        while (true)
+        for (Requester requester : requesterArray)
         {
-            if (closed)
+            long requesterNextRequestAt = requester.nextRequestAt;
+
+            if (requesterNextRequestAt != -1
+                    && (nextRequestAt == -1
+                            || nextRequestAt > requesterNextRequestAt))
             {
-                break;
+                nextRequestAt = requesterNextRequestAt;
             }
+        }
 
-            synchronized (thread)
-            {
-                // Check when the next request is due. -1 means there is no
-                // request scheduled.
-                long nextRequestAt = -1;
-                synchronized (requesters)
-                {
-                    for (Requester requester : requesters.values())
-                    {
-                        if (requester.nextRequestAt != -1)
-                        {
-                            if (nextRequestAt == -1
-                                    || nextRequestAt > requester.nextRequestAt)
-                            {
-                                nextRequestAt = requester.nextRequestAt;
-                            }
-                        }
-                    }
-                }
+        return
+            nextRequestAt == -1
+                ? IDLE_WAIT_MS
+                : Math.max(0, nextRequestAt - System.currentTimeMillis());
+    }
 
-                long now = System.currentTimeMillis();
-                if (nextRequestAt == -1 || nextRequestAt - now > 0)
-                {
-                    try
-                    {
-                        if (nextRequestAt == -1)
-                        {
-                            thread.wait(1000);
-                            continue;
-                        }
-                        else
-                        {
-                            thread.wait(nextRequestAt - now);
-                        }
-                    }
-                    catch (InterruptedException ie)
-                    {
-                        break;
-                    }
-                }
-                //else the time has already come
-            }
+    /**
+     * {@inheritDoc}
+     *
+     * Sends the requests which are due. Invoked by
+     * {@link #recurringRunnableExecutor}.
+     */
+    @Override
+    public void run()
+    {
+        if (closed || !enabled || senderSsrc == -1)
+            return;
 
-            if (!enabled || senderSsrc == -1)
+        long now = System.currentTimeMillis();
+
+        for (Requester requester : requesterArray)
+        {
+            Collection<Integer> missingPackets = requester.getMissing(now);
+
+            if (missingPackets == null || missingPackets.isEmpty())
                 continue;
 
-            synchronized (requesters)
+            NACKPacket nack
+                = new NACKPacket(senderSsrc, requester.ssrc, missingPackets);
+            RawPacket pkt;
+
+            try
             {
-                for (Map.Entry<Long, Requester> entry : requesters.entrySet())
-                {
-                    Requester requester = entry.getValue();
-                    Set<Integer> missingPackets = requester.getMissing();
-                    if (missingPackets != null && !missingPackets.isEmpty())
-                    {
-                        packetsToRequest.put(requester.ssrc, missingPackets);
-                    }
-                }
+                pkt = nack.toRawPacket();
             }
-
-            for (Map.Entry<Long, Set<Integer>> entry : packetsToRequest.entrySet())
+            catch (IOException ioe)
             {
-                long sourceSsrc = entry.getKey();
-                NACKPacket nack
-                    = new NACKPacket(senderSsrc, sourceSsrc, entry.getValue());
-                RawPacket pkt;
+                pkt = null;
+                logger.warn("Failed to create a NACK packet: " + ioe);
+            }
 
+            if (pkt != null)
+            {
                 try
                 {
-                    pkt = nack.toRawPacket();
-                }
-                catch (IOException ioe)
-                {
-                    pkt = null;
-                    logger.warn("Failed to create a NACK packet: " + ioe);
-                }
-
-                if (pkt != null)
-                {
-                    try
+                    if (logger.isTraceEnabled())
                     {
-                        if (logger.isTraceEnabled())
-                        {
-                            logger.trace("Sending a NACK: " + nack);
-                        }
-                        stream.injectPacket(
-                                pkt,
-                                /* data */ false,
-                                /* after */ null);
-                    }
-                    catch (TransmissionFailedException e)
-                    {
-                        logger.warn(
-                                "Failed to inject packet in MediaStream: " + e);
+                        logger.trace("Sending a NACK: " + nack);
                     }
+                    stream.injectPacket(
+                            pkt,
+                            /* data */ false,
+                            /* after */ null);
+                }
+                catch (TransmissionFailedException e)
+                {
+                    logger.warn(
+                            "Failed to inject packet in MediaStream: " + e);
                 }
             }
-
-            packetsToRequest.clear();
         }
-
     }
 
 
@@ -352,9 +385,12 @@ public PacketTransformer getRTCPTransformer()
     }
 
     /**
-     * Handles packets for a single SSRC.
+     * Handles packets for a single SSRC. Keeps track of the missing packets
+     * among the last {@link #WINDOW_SIZE} sequence numbers in a bitmap, and of
+     * the state of their requests in arrays indexed the same way.
+     * Package-private for the purposes of testing.
      */
-    private class Requester
+    class Requester
     {
         /**
          * The SSRC for this instance.
@@ -369,106 +405,167 @@ public PacketTransformer getRTCPTransformer()
         /**
          * The time that the next request for this SSRC should be sent.
          */
-        private long nextRequestAt = -1;
+        private volatile long nextRequestAt = -1;
+
+        /**
+         * The bitmap of the sequence numbers in the window which are missing
+         * and are to be requested. The bit of a sequence number is at index
+         * {@code seq & WINDOW_MASK}.
+         */
+        private final long[] missing = new long[WINDOW_SIZE / 64];
+
+        /**
+         * The number of bits set in {@link #missing}.
+         */
+        private int numMissing = 0;
+
+        /**
+         * The number of times that a retransmission request has been sent for
+         * each missing sequence number in the window.
+         */
+        private final byte[] timesRequested = new byte[WINDOW_SIZE];
 
         /**
-         * The set of active requests for this SSRC. The keys are the sequence
-         * numbers.
+         * The system time at the moment a retransmission request was first
+         * sent for each missing sequence number in the window.
          */
-        private final Map<Integer, Request> requests = new HashMap<>();
+        private final long[] firstRequestSentAt = new long[WINDOW_SIZE];
 
         /**
          * Initializes a new <tt>Requester</tt> instance for the given SSRC.
          */
-        private Requester(long ssrc)
+        Requester(long ssrc)
         {
             this.ssrc = ssrc;
         }
 
+        /**
+         * Determines whether the sequence number at a specific index of the
+         * window is missing.
+         *
+         * @param index the index in the window.
+         * @return <tt>true</tt> if the sequence number is missing.
+         */
+        private boolean isMissing(int index)
+        {
+            return (missing[index >>> 6] & (1L << index)) != 0;
+        }
+
+        /**
+         * Marks the sequence number at a specific index of the window as no
+         * longer missing.
+         *
+         * @param index the index in the window.
+         */
+        private void clearMissing(int index)
+        {
+            if (isMissing(index))
+            {
+                missing[index >>> 6] &= ~(1L << index);
+                numMissing--;
+            }
+        }
+
         /**
          * Handles a received RTP packet with a specific sequence number.
          * @param seq the RTP sequence number of the received packet.
+         * @return <tt>true</tt> if new packets have been found missing and a
+         * request is to be sent immediately; otherwise, <tt>false</tt>.
          */
-        synchronized private void received(int seq)
+        synchronized boolean received(int seq)
         {
             if (lastReceivedSeq == -1)
             {
                 lastReceivedSeq = seq;
-                return;
+                return false;
             }
 
             int diff = RTPUtils.sequenceNumberDiff(seq, lastReceivedSeq);
             if (diff <= 0)
             {
                 // An older packet, possibly already requested.
-                // We don't update nextRequestAt here. The reading thread might
+                // We don't update nextRequestAt here. The sending thread might
                 // wake up unnecessarily and do some extra work, but that's OK.
-                Request r = requests.remove(seq);
-                if (r != null && logger.isDebugEnabled())
+                int index = seq & WINDOW_MASK;
+
+                if (-diff < WINDOW_SIZE && isMissing(index))
                 {
-                    long rtt
-                        = stream.getMediaStreamStats().getSendStats().getRtt();
-                    if (rtt > 0)
+                    clearMissing(index);
+                    if (logger.isDebugEnabled())
                     {
-
-                        // firstRequestSentAt is if we created a Request, but
-                        // haven't yet sent a NACK. Assume a delta of 0 in that
-                        // case.
-                        long firstRequestSentAt = r.firstRequestSentAt;
-                        long delta
-                            = firstRequestSentAt > 0
-                                ? System.currentTimeMillis()
-                                        - r.firstRequestSentAt
-                                : 0;
-
-                        logger.debug(Logger.Category.STATISTICS,
-                                     "retr_received,stream=" + stream
-                                         .hashCode() +
-                                         " delay=" + delta +
-                                         ",rtt=" + rtt);
+                        long rtt
+                            = stream.getMediaStreamStats().getSendStats()
+                                .getRtt();
+                        if (rtt > 0)
+                        {
+                            // firstRequestSentAt is -1 if we haven't yet sent
+                            // a NACK. Assume a delta of 0 in that case.
+                            long firstRequestSentAt
+                                = this.firstRequestSentAt[index];
+                            long delta
+                                = firstRequestSentAt > 0
+                                    ? System.currentTimeMillis()
+                                            - firstRequestSentAt
+                                    : 0;
+
+                            logger.debug(Logger.Category.STATISTICS,
+                                         "retr_received,stream=" + stream
+                                             .hashCode() +
+                                             " delay=" + delta +
+                                             ",rtt=" + rtt);
+                        }
                     }
                 }
-            }
-            else if (diff == 1)
-            {
-                // The very next packet, as expected.
-                lastReceivedSeq = seq;
+                return false;
             }
             else if (diff <= MAX_MISSING)
             {
-                for (int missing = (lastReceivedSeq + 1) % (1<<16);
-                     missing != seq;
-                     missing = (missing + 1) % (1<<16))
+                // The sequence numbers between lastReceivedSeq and seq
+                // (exclusive) are missing. Their indices may still hold the
+                // state of sequence numbers which have fallen out of the
+                // window.
+                for (int i = 1; i <= diff; i++)
                 {
-                    Request request = new Request(missing);
-                    requests.put(missing, request);
+                    int index = (lastReceivedSeq + i) & WINDOW_MASK;
+
+                    clearMissing(index);
+                    if (i != diff)
+                    {
+                        missing[index >>> 6] |= 1L << index;
+                        numMissing++;
+                        timesRequested[index] = 0;
+                        firstRequestSentAt[index] = -1;
+                    }
                 }
 
                 lastReceivedSeq = seq;
-                nextRequestAt = 0;
-
-                synchronized (thread)
+                if (diff == 1)
                 {
-                    thread.notifyAll();
+                    // The very next packet, as expected.
+                    return false;
                 }
+
+                nextRequestAt = 0;
+                return true;
             }
             else // if (diff > MAX_MISSING)
             {
                 // Too many packets missing. Reset.
-                lastReceivedSeq = seq;
                 if (logger.isDebugEnabled())
                 {
                     logger.debug("Resetting retransmission requester state. "
                                  + "SSRC: " + ssrc
                                  + ", last received: " + lastReceivedSeq
                                  + ", current: " + seq
-                                 + ". Removing " + requests.size()
+                                 + ". Removing " + numMissing
                                  + " unsatisfied requests.");
                 }
-                requests.clear();
+                lastReceivedSeq = seq;
+                Arrays.fill(missing, 0L);
+                numMissing = 0;
                 nextRequestAt = -1;
+                return false;
             }
-
         }
 
         /**
@@ -478,87 +575,56 @@ else if (diff <= MAX_MISSING)
          * immediately and updates the state accordingly (i.e. increments the
          * timesRequested counters and sets the time of next request).
          *
+         * @param now the current system time.
          * @return a set of RTP sequence numbers which are considered still MIA,
          * and for which a retransmission request needs to be sent.
          */
-        synchronized private Set<Integer> getMissing()
+        synchronized Collection<Integer> getMissing(long now)
         {
-            long now = System.currentTimeMillis();
-            Set<Integer> missingPackets = null;
-
             if (nextRequestAt == -1 || nextRequestAt > now)
                 return null;
 
-            for (Iterator<Map.Entry<Integer,Request>> iter
-                        = requests.entrySet().iterator();
-                    iter.hasNext();)
-            {
-                Request request = iter.next().getValue();
+            List<Integer> missingPackets = new ArrayList<>(numMissing);
 
-                if (missingPackets == null)
-                    missingPackets = new HashSet<>();
+            for (int word = 0; word < missing.length; word++)
+            {
+                for (long bits = missing[word]; bits != 0; bits &= bits - 1)
+                {
+                    int index
+                        = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    int seq
+                        = (lastReceivedSeq
+                                - ((lastReceivedSeq - index) & WINDOW_MASK))
+                            & 0xFFFF;
 
-                missingPackets.add(request.seq);
-                request.timesRequested++;
+                    missingPackets.add(seq);
+                    timesRequested[index]++;
 
-                if (request.timesRequested == 1)
-                {
-                    request.firstRequestSentAt = now;
-                }
-                else if (request.timesRequested == MAX_REQUESTS)
-                {
-                    if (logger.isDebugEnabled())
+                    if (timesRequested[index] == 1)
                     {
-                        logger.debug(
-                            "Sending the last NACK for SSRC=" + ssrc + " seq="
-                                + request.seq + ". "
-                                + "Time since the first request: "
-                                + (now - request.firstRequestSentAt));
+                        firstRequestSentAt[index] = now;
+                    }
+                    else if (timesRequested[index] == MAX_REQUESTS)
+                    {
+                        if (logger.isDebugEnabled())
+                        {
+                            logger.debug(
+                                "Sending the last NACK for SSRC=" + ssrc
+                                    + " seq=" + seq + ". "
+                                    + "Time since the first request: "
+                                    + (now - firstRequestSentAt[index]));
+                        }
+                        clearMissing(index);
                     }
-                    iter.remove();
                 }
-
             }
 
-            nextRequestAt = (requests.size() > 0) ? now + RE_REQUEST_AFTER : -1;
+            nextRequestAt = (numMissing > 0) ? now + RE_REQUEST_AFTER : -1;
 
             return missingPackets;
         }
     }
 
-    /**
-     * Represents a request for the retransmission of a specific RTP packet.
-     */
-    private static class Request
-    {
-        /**
-         * The RTP sequence number.
-         */
-        final int seq;
-
-        /**
-         * The system time at the moment a retransmission request for this
-         * packet was first sent.
-         */
-        long firstRequestSentAt = -1;
-
-        /**
-         * The number of times that a retransmission request for this packet
-         * has been sent.
-         */
-        int timesRequested = 0;
-
-        /**
-         * Initializes a new <tt>Request</tt> instance with the given RTP
-         * sequence number.
-         * @param seq the RTP sequence number.
-         */
-        Request(int seq)
-        {
-            this.seq = seq;
-        }
-    }
-
     /**
      * {@inheritDoc}
      */
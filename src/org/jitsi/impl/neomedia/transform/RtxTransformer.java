@@ -320,7 +320,12 @@ private boolean retransmit(RawPacket pkt, TransformEngine after)
             {
                 try
                 {
-                    mediaStream.injectPacket(pkt, /* data */ true, after);
+                    mediaStream.injectPacket(
+                            pkt,
+                            /* data */ true,
+                            after,
+                            RTPConnectorOutputStream.PacingPriority
+                                .RETRANSMISSION);
                 }
                 catch (TransmissionFailedException tfe)
                 {
@@ -415,7 +420,9 @@ private boolean encapsulateInRtxAndTransmit(
                 mediaStream.injectPacket(
                         rtxPkt,
                         /* data */ true,
-                        after);
+                        after,
+                        RTPConnectorOutputStream.PacingPriority
+                            .RETRANSMISSION);
             }
             catch (TransmissionFailedException tfe)
             {
@@ -607,7 +614,11 @@ public void sendPadding(long ssrc, long bytes)
         {
             try
             {
-                mediaStream.injectPacket(pkts[i], /* data */ true, this);
+                mediaStream.injectPacket(
+                        pkts[i],
+                        /* data */ true,
+                        this,
+                        RTPConnectorOutputStream.PacingPriority.PADDING);
             }
             catch (TransmissionFailedException tfe)
             {
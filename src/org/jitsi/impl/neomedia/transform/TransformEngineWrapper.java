@@ -29,7 +29,7 @@
     /**
      * The wrapped instance.
      */
-    private T wrapped;
+    private volatile T wrapped;
 
     /**
      * Determines whether this {@code TransformEngineWrapper} contains a
@@ -0,0 +1,741 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.rtcp.*;
+import org.jitsi.impl.neomedia.rtp.*;
+import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
+import org.jitsi.util.concurrent.*;
+
+/**
+ * Implements a <tt>TransformEngine</tt> for transport-wide congestion control
+ * as described in
+ * https://tools.ietf.org/html/draft-holmer-rmcat-transport-wide-cc-extensions-01
+ *
+ * For outgoing RTP packets it adds a transport-wide sequence number header
+ * extension and remembers when each packet was sent. When RTCP transport-cc
+ * feedback for these packets is received, the send and arrival times are
+ * handed to the registered {@link PacketFeedbackListener}s, which may use
+ * them for send-side bandwidth estimation.
+ *
+ * For incoming RTP packets it records the arrival times of the transport-wide
+ * sequence numbers. The RTCP transport-cc feedback is sent periodically by a
+ * thread of a {@link RecurringRunnableExecutor} shared by all instances, so
+ * that it does not depend on the arrival of further packets.
+ *
+ * The sequence numbers are transport-wide, so there is a single instance per
+ * {@link StreamConnector} which is shared by all <tt>MediaStream</tt>s using
+ * that <tt>StreamConnector</tt> (e.g. the audio and the video streams of a
+ * BUNDLE transport). They share one sequence number counter, one history of
+ * sent and received packets and one feedback generator. Instances are
+ * obtained with {@link #acquire(StreamConnector, MediaStreamImpl)} and closed
+ * when the last <tt>MediaStream</tt> releases them.
+ */
+public class TransportCCEngine
+    extends SinglePacketTransformerAdapter
+    implements TransformEngine, RecurringRunnable
+{
+    /**
+     * The <tt>Logger</tt> used by the {@link TransportCCEngine} class and its
+     * instances.
+     */
+    private static final Logger logger
+        = Logger.getLogger(TransportCCEngine.class);
+
+    /**
+     * The interval in milliseconds at which this instance sends RTCP
+     * transport-cc packets (if there are received packets to report).
+     */
+    private static final long FEEDBACK_INTERVAL_MS = 100;
+
+    /**
+     * The maximum size in bytes of an RTCP transport-cc packet sent by this
+     * instance. Packets which do not fit are reported in further feedback
+     * packets so that the feedback never exceeds the MTU.
+     */
+    private static final int MAX_FEEDBACK_SIZE = 1200;
+
+    /**
+     * The size in bytes of the fixed part of an RTCP transport-cc packet (the
+     * RTCP feedback header, the base sequence number, the packet status count,
+     * the reference time and the feedback packet count) plus the maximum
+     * padding.
+     */
+    private static final int FEEDBACK_OVERHEAD = 12 + 8 + 3;
+
+    /**
+     * The <tt>RecurringRunnableExecutor</tt> which sends the feedback of all
+     * <tt>TransportCCEngine</tt> instances.
+     */
+    private static final RecurringRunnableExecutor recurringRunnableExecutor
+        = new RecurringRunnableExecutor(
+                TransportCCEngine.class.getSimpleName());
+
+    /**
+     * The number of sent and received packets that this instance remembers. A
+     * power of two.
+     */
+    private static final int HISTORY_SIZE = 1 << 13;
+
+    /**
+     * The mask that maps transport-wide sequence numbers to indices in the
+     * history arrays.
+     */
+    private static final int HISTORY_MASK = HISTORY_SIZE - 1;
+
+    /**
+     * The <tt>TransportCCEngine</tt> instances which are in use, by the
+     * <tt>StreamConnector</tt> which they are for.
+     */
+    private static final Map<StreamConnector, TransportCCEngine> engines
+        = new HashMap<>();
+
+    /**
+     * The {@link StreamConnector} of the transport which this instance is for.
+     */
+    private final StreamConnector connector;
+
+    /**
+     * The {@link MediaStream}s which use this instance. Modified only while
+     * {@link #engines} is held.
+     */
+    private final List<MediaStreamImpl> streams
+        = new CopyOnWriteArrayList<>();
+
+    /**
+     * The ID of the transport-wide sequence number RTP header extension, or
+     * -1 if the extension is disabled.
+     */
+    private int extensionID = -1;
+
+    /**
+     * The listeners to be notified about packet feedback.
+     */
+    private final List<PacketFeedbackListener> listeners
+        = new CopyOnWriteArrayList<>();
+
+    /**
+     * The object used to synchronize access to the history of sent packets.
+     */
+    private final Object sentSyncRoot = new Object();
+
+    /**
+     * The transport-wide sequence number to be used for the next outgoing
+     * packet.
+     */
+    private int outgoingSeq = 0;
+
+    /**
+     * The transport-wide sequence numbers of the sent packets, indexed by
+     * sequence number modulo {@link #HISTORY_SIZE}, or -1 for empty slots.
+     */
+    private final int[] sentSeqs = new int[HISTORY_SIZE];
+
+    /**
+     * The times in milliseconds at which the packets in {@link #sentSeqs} were
+     * sent.
+     */
+    private final long[] sentTimesMs = new long[HISTORY_SIZE];
+
+    /**
+     * The sizes in bytes of the packets in {@link #sentSeqs}.
+     */
+    private final int[] sentSizes = new int[HISTORY_SIZE];
+
+    /**
+     * The object used to synchronize access to the history of received
+     * packets.
+     */
+    private final Object receivedSyncRoot = new Object();
+
+    /**
+     * The transport-wide sequence numbers of the received packets which have
+     * not been reported yet, indexed by sequence number modulo
+     * {@link #HISTORY_SIZE}, or -1 for empty slots.
+     */
+    private final int[] receivedSeqs = new int[HISTORY_SIZE];
+
+    /**
+     * The times in microseconds at which the packets in {@link #receivedSeqs}
+     * were received.
+     */
+    private final long[] receivedTimesUs = new long[HISTORY_SIZE];
+
+    /**
+     * The first transport-wide sequence number to be reported in the next
+     * feedback packet, or -1 if no packet has been received.
+     */
+    private int firstUnreportedSeq = -1;
+
+    /**
+     * The highest transport-wide sequence number received.
+     */
+    private int highestReceivedSeq = -1;
+
+    /**
+     * The SSRC of the last received packet which carried a transport-wide
+     * sequence number.
+     */
+    private long mediaSourceSSRC = -1;
+
+    /**
+     * The time in milliseconds at which {@link #run()} last checked for
+     * feedback to be sent, or -1.
+     */
+    private long lastFeedbackTimeMs = -1;
+
+    /**
+     * The number of feedback packets sent by this instance (modulo 256).
+     */
+    private int feedbackPacketCount = 0;
+
+    /**
+     * Whether this instance has been released by all of its
+     * <tt>MediaStream</tt>s.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * The listener which receives the RTCP transport-cc packets of
+     * {@link #streams}.
+     */
+    private final RTCPPacketListenerAdapter rtcpPacketListener
+        = new RTCPPacketListenerAdapter()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void tccReceived(RTCPTCCPacket tccPacket)
+            {
+                TransportCCEngine.this.tccReceived(tccPacket);
+            }
+        };
+
+    /**
+     * Gets the {@link TransportCCEngine} of a specific transport, creating it
+     * if it does not exist yet, and adds a {@link MediaStream} to the streams
+     * which use it. Every invocation has to be paired with an invocation of
+     * {@link #release(MediaStreamImpl)}.
+     *
+     * @param connector the <tt>StreamConnector</tt> of the transport.
+     * @param stream the <tt>MediaStream</tt> which is to use the returned
+     * instance.
+     * @return the <tt>TransportCCEngine</tt> of <tt>connector</tt>.
+     */
+    public static TransportCCEngine acquire(
+            StreamConnector connector,
+            MediaStreamImpl stream)
+    {
+        synchronized (engines)
+        {
+            TransportCCEngine engine = engines.get(connector);
+
+            if (engine == null)
+            {
+                engine = new TransportCCEngine(connector);
+                engines.put(connector, engine);
+            }
+            if (!engine.streams.contains(stream))
+            {
+                engine.streams.add(stream);
+                stream.getMediaStreamStats().addRTCPPacketListener(
+                        engine.rtcpPacketListener);
+            }
+            return engine;
+        }
+    }
+
+    /**
+     * Initializes a new {@link TransportCCEngine} instance.
+     *
+     * @param connector the {@link StreamConnector} of the transport which the
+     * new instance is for.
+     */
+    private TransportCCEngine(StreamConnector connector)
+    {
+        super(RTPPacketPredicate.INSTANCE);
+
+        this.connector = connector;
+        Arrays.fill(sentSeqs, -1);
+        Arrays.fill(receivedSeqs, -1);
+        recurringRunnableExecutor.registerRecurringRunnable(this);
+    }
+
+    /**
+     * Removes a {@link MediaStream} from the streams which use this instance
+     * and closes this instance if no stream uses it anymore.
+     *
+     * @param stream the <tt>MediaStream</tt> which no longer uses this
+     * instance.
+     */
+    public void release(MediaStreamImpl stream)
+    {
+        synchronized (engines)
+        {
+            if (!streams.remove(stream))
+                return;
+
+            stream.getMediaStreamStats().removeRTCPPacketListener(
+                    rtcpPacketListener);
+            if (streams.isEmpty())
+            {
+                if (engines.get(connector) == this)
+                    engines.remove(connector);
+                closed = true;
+                recurringRunnableExecutor.deRegisterRecurringRunnable(this);
+            }
+        }
+    }
+
+    /**
+     * Gets the {@link StreamConnector} of the transport which this instance
+     * is for.
+     *
+     * @return the <tt>StreamConnector</tt> of this instance.
+     */
+    public StreamConnector getConnector()
+    {
+        return connector;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Does nothing because this instance is shared by the
+     * <tt>MediaStream</tt>s of a transport and the transformer chain of one
+     * of them may be closed while the others still use it. This instance
+     * stops sending feedback when the last <tt>MediaStream</tt> releases it.
+     */
+    @Override
+    public void close()
+    {
+    }
+
+    /**
+     * Adds a listener to be notified about packet feedback.
+     *
+     * @param listener the listener to add.
+     */
+    public void addPacketFeedbackListener(PacketFeedbackListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener to remove.
+     */
+    public void removePacketFeedbackListener(PacketFeedbackListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets the ID of the transport-wide sequence number RTP extension. Set to
+     * -1 to effectively disable this transformer. The ID applies to all
+     * <tt>MediaStream</tt>s which use this instance.
+     * @param id the ID to set.
+     */
+    public void setExtensionID(int id)
+    {
+        extensionID = id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PacketTransformer getRTPTransformer()
+    {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This <tt>TransformEngine</tt> does not transform RTCP packets. The
+     * transport-cc feedback is received from the <tt>MediaStreamStats</tt>.
+     */
+    @Override
+    public PacketTransformer getRTCPTransformer()
+    {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Sets the transport-wide sequence number of an outgoing packet.
+     */
+    @Override
+    public RawPacket transform(RawPacket pkt)
+    {
+        int extensionID = this.extensionID;
+
+        if (extensionID == -1)
+            return pkt;
+
+        RawPacket.HeaderExtension he
+            = pkt.getHeaderExtension((byte) extensionID);
+
+        if (he != null && he.getExtLength() != 2)
+        {
+            logger.warn("An existing extension with ID " + extensionID
+                            + " was found, but it doesn't look like "
+                            + "transport-cc: len=" + he.getExtLength());
+            return pkt;
+        }
+
+        // The sequence number is only taken once it is known that it will be
+        // written, otherwise the remote endpoint would report it as lost.
+        int seq;
+
+        synchronized (sentSyncRoot)
+        {
+            seq = outgoingSeq;
+            outgoingSeq = (outgoingSeq + 1) & 0xFFFF;
+        }
+
+        if (he == null)
+        {
+            // One byte for ID and length (see RFC5285), two bytes for the
+            // sequence number and one byte of padding.
+            byte[] extensionBytes = new byte[4];
+
+            extensionBytes[0] = (byte) ((extensionID << 4) | 1);
+            RTPUtils.writeShort(extensionBytes, 1, (short) seq);
+            pkt.addExtension(extensionBytes, extensionBytes.length);
+        }
+        else
+        {
+            RTPUtils.writeShort(
+                    he.getBuffer(), he.getOffset() + 1, (short) seq);
+        }
+
+        synchronized (sentSyncRoot)
+        {
+            int index = seq & HISTORY_MASK;
+
+            sentSeqs[index] = seq;
+            sentTimesMs[index] = System.currentTimeMillis();
+            sentSizes[index] = pkt.getLength();
+        }
+
+        return pkt;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Records the arrival time of an incoming packet.
+     */
+    @Override
+    public RawPacket reverseTransform(RawPacket pkt)
+    {
+        int extensionID = this.extensionID;
+
+        if (extensionID == -1)
+            return pkt;
+
+        RawPacket.HeaderExtension he
+            = pkt.getHeaderExtension((byte) extensionID);
+
+        if (he != null && he.getExtLength() == 2)
+        {
+            int seq
+                = RTPUtils.readUint16AsInt(he.getBuffer(), he.getOffset() + 1);
+
+            packetReceived(
+                    seq, pkt.getSSRCAsLong(), System.nanoTime() / 1000L);
+        }
+
+        return pkt;
+    }
+
+    /**
+     * Records the arrival of a packet with a specific transport-wide sequence
+     * number.
+     *
+     * @param seq the transport-wide sequence number of the packet.
+     * @param ssrc the SSRC of the packet.
+     * @param arrivalTimeUs the time in microseconds at which the packet
+     * arrived.
+     */
+    private void packetReceived(int seq, long ssrc, long arrivalTimeUs)
+    {
+        synchronized (receivedSyncRoot)
+        {
+            if (firstUnreportedSeq == -1)
+            {
+                firstUnreportedSeq = seq;
+                highestReceivedSeq = seq;
+            }
+            else if (RTPUtils.sequenceNumberDiff(seq, firstUnreportedSeq) < 0)
+            {
+                // The packet has already been reported (as lost) or is too
+                // old to be reported.
+                return;
+            }
+            else if (RTPUtils.sequenceNumberDiff(seq, highestReceivedSeq) > 0)
+            {
+                highestReceivedSeq = seq;
+
+                // Drop the oldest unreported packets if they no longer fit
+                // in the history.
+                int window
+                    = RTPUtils.subtractNumber(
+                            highestReceivedSeq, firstUnreportedSeq) + 1;
+
+                for (; window > HISTORY_SIZE; window--)
+                {
+                    receivedSeqs[firstUnreportedSeq & HISTORY_MASK] = -1;
+                    firstUnreportedSeq = (firstUnreportedSeq + 1) & 0xFFFF;
+                }
+            }
+
+            int index = seq & HISTORY_MASK;
+
+            receivedSeqs[index] = seq;
+            receivedTimesUs[index] = arrivalTimeUs;
+            mediaSourceSSRC = ssrc;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Returns the time until the next feedback packet is due.
+     */
+    @Override
+    public long getTimeUntilNextRun()
+    {
+        long lastFeedbackTimeMs = this.lastFeedbackTimeMs;
+
+        return
+            lastFeedbackTimeMs == -1
+                ? FEEDBACK_INTERVAL_MS
+                : Math.max(
+                        0,
+                        lastFeedbackTimeMs + FEEDBACK_INTERVAL_MS
+                            - System.currentTimeMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Sends a feedback packet which reports the packets received since the
+     * previous one. Invoked by {@link #recurringRunnableExecutor}.
+     */
+    @Override
+    public void run()
+    {
+        lastFeedbackTimeMs = System.currentTimeMillis();
+        if (closed || extensionID == -1)
+            return;
+
+        // The feedback describes the whole transport, so it is sent through
+        // any of the streams which use this instance and know their SSRC.
+        MediaStreamImpl stream = null;
+        long senderSSRC = -1;
+
+        for (MediaStreamImpl s : streams)
+        {
+            senderSSRC = s.getLocalSourceID();
+            if (senderSSRC != -1)
+            {
+                stream = s;
+                break;
+            }
+        }
+        if (stream == null)
+            return;
+
+        // A single feedback packet is limited to MAX_FEEDBACK_SIZE so after
+        // a stall or a burst of losses the unreported packets are described
+        // by several packets in a row.
+        while (true)
+        {
+            RTCPTCCPacket feedback;
+
+            synchronized (receivedSyncRoot)
+            {
+                if (firstUnreportedSeq == -1
+                        || RTPUtils.sequenceNumberDiff(
+                                highestReceivedSeq, firstUnreportedSeq) < 0)
+                {
+                    // Nothing has been received since the last feedback.
+                    return;
+                }
+                feedback = createFeedback(senderSSRC);
+            }
+
+            try
+            {
+                stream.injectPacket(feedback.toRawPacket(), false, this);
+            }
+            catch (IOException | TransmissionFailedException e)
+            {
+                logger.error("Failed to send transport-cc feedback.", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Creates a feedback packet which describes the oldest unreported packets
+     * and clears them from the history. The packet describes as many packets
+     * as fit in {@link #MAX_FEEDBACK_SIZE}; the rest remain unreported. Must
+     * be called with {@link #receivedSyncRoot} held.
+     *
+     * @param senderSSRC the SSRC of the sender of the feedback packet.
+     * @return the created packet.
+     */
+    private RTCPTCCPacket createFeedback(long senderSSRC)
+    {
+        int count
+            = RTPUtils.subtractNumber(highestReceivedSeq, firstUnreportedSeq)
+                + 1;
+        long[] arrivalTimesUs = new long[count];
+        // The size is estimated for the worst case: a 2-byte chunk for every
+        // 7 packet statuses and a 2-byte delta for every received packet.
+        int size = FEEDBACK_OVERHEAD;
+        int i = 0;
+
+        for (; i < count; i++)
+        {
+            int seq = (firstUnreportedSeq + i) & 0xFFFF;
+            int index = seq & HISTORY_MASK;
+            boolean received = receivedSeqs[index] == seq;
+            int packetSize = (i % 7 == 0 ? 2 : 0) + (received ? 2 : 0);
+
+            if (i != 0 && size + packetSize > MAX_FEEDBACK_SIZE)
+                break;
+
+            size += packetSize;
+            if (received)
+            {
+                arrivalTimesUs[i] = receivedTimesUs[index];
+                receivedSeqs[index] = -1;
+            }
+            else
+            {
+                arrivalTimesUs[i] = RTCPTCCPacket.NOT_RECEIVED;
+            }
+        }
+
+        if (i < count)
+            arrivalTimesUs = Arrays.copyOf(arrivalTimesUs, i);
+
+        RTCPTCCPacket feedback
+            = new RTCPTCCPacket(
+                    senderSSRC,
+                    mediaSourceSSRC,
+                    firstUnreportedSeq,
+                    arrivalTimesUs,
+                    feedbackPacketCount);
+
+        feedbackPacketCount = (feedbackPacketCount + 1) & 0xFF;
+        firstUnreportedSeq = (firstUnreportedSeq + i) & 0xFFFF;
+        return feedback;
+    }
+
+    /**
+     * Handles a received RTCP transport-cc packet by matching the reported
+     * packets with the history of sent packets and notifying the listeners.
+     *
+     * @param tccPacket the received packet.
+     */
+    private void tccReceived(RTCPTCCPacket tccPacket)
+    {
+        if (listeners.isEmpty())
+            return;
+
+        int baseSeq = tccPacket.getBaseSeq();
+        long[] arrivalTimesUs = tccPacket.getArrivalTimesUs();
+        long[] sendTimesMs = new long[arrivalTimesUs.length];
+        long[] arrivalTimesMs = new long[arrivalTimesUs.length];
+        int[] sizes = new int[arrivalTimesUs.length];
+        int count = 0;
+
+        synchronized (sentSyncRoot)
+        {
+            for (int i = 0; i < arrivalTimesUs.length; i++)
+            {
+                if (arrivalTimesUs[i] == RTCPTCCPacket.NOT_RECEIVED)
+                    continue;
+
+                int seq = (baseSeq + i) & 0xFFFF;
+                int index = seq & HISTORY_MASK;
+
+                if (sentSeqs[index] != seq)
+                    continue;
+
+                sendTimesMs[count] = sentTimesMs[index];
+                arrivalTimesMs[count] = arrivalTimesUs[i] / 1000L;
+                sizes[count] = sentSizes[index];
+                count++;
+
+                // Ignore the packet if it is reported again.
+                sentSeqs[index] = -1;
+            }
+        }
+
+        if (count == 0)
+            return;
+
+        if (count < arrivalTimesUs.length)
+        {
+            sendTimesMs = Arrays.copyOf(sendTimesMs, count);
+            arrivalTimesMs = Arrays.copyOf(arrivalTimesMs, count);
+            sizes = Arrays.copyOf(sizes, count);
+        }
+
+        for (PacketFeedbackListener listener : listeners)
+        {
+            listener.packetFeedbackReceived(
+                    sendTimesMs, arrivalTimesMs, sizes);
+        }
+    }
+
+    /**
+     * A listener which is notified about the send and arrival times of the
+     * packets sent with a transport-wide sequence number.
+     */
+    public interface PacketFeedbackListener
+    {
+        /**
+         * Notifies this listener about the packets reported as received in
+         * a transport-cc feedback packet, in transport-wide sequence number
+         * order.
+         *
+         * @param sendTimesMs the local times in milliseconds at which the
+         * packets were sent.
+         * @param arrivalTimesMs the times in milliseconds at which the packets
+         * arrived, according to the clock of the remote endpoint.
+         * @param sizes the sizes in bytes of the packets.
+         */
+        void packetFeedbackReceived(
+                long[] sendTimesMs, long[] arrivalTimesMs, int[] sizes);
+    }
+}
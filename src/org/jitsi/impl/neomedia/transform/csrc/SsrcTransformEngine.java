@@ -22,10 +22,13 @@
 import net.sf.fmj.media.rtp.*;
 
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.conference.*;
+import org.jitsi.impl.neomedia.device.*;
 import org.jitsi.impl.neomedia.transform.*;
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.neomedia.*;
+import org.jitsi.service.neomedia.device.*;
 
 /**
  * Implements read-only support for &quot;A Real-Time Transport Protocol (RTP)
@@ -72,6 +75,11 @@
      */
     private final CsrcAudioLevelDispatcher csrcAudioLevelDispatcher;
 
+    /**
+     * The <tt>MediaStreamImpl</tt> which utilizes this instance.
+     */
+    private final MediaStreamImpl mediaStream;
+
     /**
      * The <tt>MediaDirection</tt> in which this RTP header extension is active.
      */
@@ -91,6 +99,8 @@
      */
     public SsrcTransformEngine(MediaStreamImpl mediaStream)
     {
+        this.mediaStream = mediaStream;
+
         /*
          * Take into account that RTPExtension.SSRC_AUDIO_LEVEL_URN may have
          * already been activated.
@@ -230,6 +240,23 @@ public RawPacket reverseTransform(RawPacket pkt)
                 }
             }
 
+            /*
+             * A muted audio source competes for selection as well so that it
+             * gives up its place to the sources which are speaking.
+             */
+            if (level >= 0
+                    && !isSelected(pkt.getSSRCAsLong(), level)
+                    && !dropPkt)
+            {
+                /*
+                 * The source is not among the loudest in the conference. Do
+                 * not decode and mix its packet but still let the decoder take
+                 * note of its sequence number so that it does not conceal it
+                 * as lost when the source is selected again.
+                 */
+                pkt.setFlags(Buffer.FLAG_SILENCE | pkt.getFlags());
+            }
+
             /*
              * Notify the AudioMediaStream associated with this instance about
              * the received audio level.
@@ -251,6 +278,34 @@ public RawPacket reverseTransform(RawPacket pkt)
         return pkt;
     }
 
+    /**
+     * Determines whether a packet of a specific remote audio source is to be
+     * decoded and mixed in accord with the <tt>LoudestSourceSelector</tt> of
+     * the <tt>AudioMixerMediaDevice</tt> of {@link #mediaStream}, if any.
+     *
+     * @param ssrc the SSRC of the remote audio source
+     * @param level the audio level of the packet in -dBov
+     * @return <tt>true</tt> if the packet is to be decoded and mixed;
+     * otherwise, <tt>false</tt>
+     */
+    private boolean isSelected(long ssrc, int level)
+    {
+        if (csrcAudioLevelDispatcher == null)
+            return true;
+
+        MediaDevice device = mediaStream.getDevice();
+
+        if (device instanceof AudioMixerMediaDevice)
+        {
+            LoudestSourceSelector selector
+                = ((AudioMixerMediaDevice) device).getLoudestSourceSelector();
+
+            if (selector != null)
+                return selector.update(ssrc, level, System.currentTimeMillis());
+        }
+        return true;
+    }
+
     public void setSsrcAudioLevelExtensionID(byte extID, MediaDirection dir)
     {
         this.ssrcAudioLevelExtID = extID;
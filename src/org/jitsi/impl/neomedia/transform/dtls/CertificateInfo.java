@@ -16,6 +16,7 @@
 package org.jitsi.impl.neomedia.transform.dtls;
 
 import org.bouncycastle.crypto.*;
+import org.bouncycastle.crypto.params.*;
 import org.bouncycastle.crypto.tls.*;
 
 /**
@@ -102,4 +103,20 @@ public AsymmetricCipherKeyPair getKeyPair()
     {
         return keyPair;
     }
+
+    /**
+     * Gets the TLS <tt>SignatureAlgorithm</tt> which the private key of
+     * {@link #certificate} signs with.
+     *
+     * @return <tt>SignatureAlgorithm.ecdsa</tt> if the key pair of
+     * {@link #certificate} is an ECDSA one; otherwise,
+     * <tt>SignatureAlgorithm.rsa</tt>
+     */
+    public short getSignatureAlgorithm()
+    {
+        return
+            (keyPair.getPrivate() instanceof ECPrivateKeyParameters)
+                ? SignatureAlgorithm.ecdsa
+                : SignatureAlgorithm.rsa;
+    }
 }
@@ -21,9 +21,11 @@
 import java.util.*;
 
 import org.bouncycastle.asn1.*;
+import org.bouncycastle.asn1.sec.*;
 import org.bouncycastle.asn1.x500.*;
 import org.bouncycastle.asn1.x500.style.*;
 import org.bouncycastle.asn1.x509.*;
+import org.bouncycastle.asn1.x9.*;
 import org.bouncycastle.cert.*;
 import org.bouncycastle.crypto.*;
 import org.bouncycastle.crypto.generators.*;
@@ -33,6 +35,7 @@
 import org.bouncycastle.operator.*;
 import org.bouncycastle.operator.bc.*;
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.transform.srtp.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.service.version.*;
@@ -80,11 +83,41 @@
     /**
      * The name of the property which specifies the signature algorithm used
      * during certificate creation. When a certificate is created and this
-     * property is not set, a default value of "SHA1withRSA" will be used.
+     * property is not set, a default value of "SHA1withRSA" (or
+     * "SHA256withECDSA" if {@link #KEY_TYPE} is {@link #KEY_TYPE_ECDSA}) will
+     * be used.
      */
     public static final String PROP_SIGNATURE_ALGORITHM =
         "org.jitsi.impl.neomedia.transform.dtls.SIGNATURE_ALGORITHM";
 
+    /**
+     * The name of the property to specify the type of the key pair of the
+     * certificate i.e. either {@link #KEY_TYPE_RSA} or
+     * {@link #KEY_TYPE_ECDSA}.
+     */
+    public static final String KEY_TYPE_PNAME =
+        "org.jitsi.impl.neomedia.transform.dtls.KEY_TYPE";
+
+    /**
+     * The value of {@link #KEY_TYPE_PNAME} which selects an RSA key pair.
+     */
+    public static final String KEY_TYPE_RSA = "RSA";
+
+    /**
+     * The value of {@link #KEY_TYPE_PNAME} which selects an ECDSA key pair on
+     * the NIST P-256 curve. Much faster to generate and to sign with than an
+     * RSA key pair of comparable strength.
+     */
+    public static final String KEY_TYPE_ECDSA = "ECDSA";
+
+    /**
+     * The type of the key pair of the certificate to use.
+     * The default value is {@link #KEY_TYPE_RSA} but may be overridden by the
+     * {@code ConfigurationService} and/or {@code System} property
+     * {@code KEY_TYPE_PNAME}.
+     */
+    public static final String KEY_TYPE;
+
     /**
      * The name of the property to specify RSA Key length.
      */
@@ -153,15 +186,41 @@
     public static final BigInteger RSA_KEY_PUBLIC_EXPONENT
         = new BigInteger("10001", 16);
 
+    /**
+     * The <tt>SRTPProtectionProfile</tt> AEAD_AES_128_GCM defined by RFC 7714
+     * (and not by the BouncyCastle version in use).
+     */
+    static final int SRTP_AEAD_AES_128_GCM = 0x0007;
+
+    /**
+     * The <tt>SRTPProtectionProfile</tt> AEAD_AES_256_GCM defined by RFC 7714
+     * (and not by the BouncyCastle version in use).
+     */
+    static final int SRTP_AEAD_AES_256_GCM = 0x0008;
+
     /**
      * The <tt>SRTPProtectionProfile</tt>s supported by
-     * <tt>DtlsControlImpl</tt>.
+     * <tt>DtlsControlImpl</tt> in the order of preference. AES-GCM is
+     * preferred only if it is implemented by OpenSSL because the Java
+     * implementations of AES-GCM are not necessarily faster than AES-CM with
+     * HMAC-SHA1.
      */
     static final int[] SRTP_PROTECTION_PROFILES
-        = {
-            SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_80,
-            SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_32
-        };
+        = AES.isGCMNative()
+            ? new int[]
+                {
+                    SRTP_AEAD_AES_128_GCM,
+                    SRTP_AEAD_AES_256_GCM,
+                    SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_80,
+                    SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_32
+                }
+            : new int[]
+                {
+                    SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_80,
+                    SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_32,
+                    SRTP_AEAD_AES_128_GCM,
+                    SRTP_AEAD_AES_256_GCM
+                };
 
     /**
      * The indicator which specifies whether {@code DtlsControlImpl} is to tear
@@ -197,6 +256,17 @@
                     VERIFY_AND_VALIDATE_CERTIFICATE_PNAME,
                     true);
 
+        String keyType
+            = ConfigUtils.getString(
+                    LibJitsi.getConfigurationService(),
+                    KEY_TYPE_PNAME,
+                    KEY_TYPE_RSA);
+
+        KEY_TYPE
+            = KEY_TYPE_ECDSA.equalsIgnoreCase(keyType)
+                ? KEY_TYPE_ECDSA
+                : KEY_TYPE_RSA;
+
         RSA_KEY_SIZE
             = ConfigUtils.getInt(
                     LibJitsi.getConfigurationService(),
@@ -441,12 +511,35 @@ private static X500Name generateCN()
     }
 
     /**
-     * Return a pair of RSA private and public keys.
+     * Return a pair of private and public keys of type {@link #KEY_TYPE}.
      *
      * @return a pair of private and public keys
      */
     private static AsymmetricCipherKeyPair generateKeyPair()
     {
+        if (KEY_TYPE_ECDSA.equals(KEY_TYPE))
+        {
+            X9ECParameters curve = SECNamedCurves.getByName("secp256r1");
+            // The curve has to be named so that the certificate refers to it
+            // by its OID (rather than by explicit parameters which are not
+            // accepted by all DTLS implementations).
+            ECDomainParameters domainParameters
+                = new ECNamedDomainParameters(
+                        SECObjectIdentifiers.secp256r1,
+                        curve.getCurve(),
+                        curve.getG(),
+                        curve.getN(),
+                        curve.getH(),
+                        curve.getSeed());
+            ECKeyPairGenerator generator = new ECKeyPairGenerator();
+
+            generator.init(
+                    new ECKeyGenerationParameters(
+                            domainParameters,
+                            new SecureRandom()));
+            return generator.generateKeyPair();
+        }
+
         RSAKeyPairGenerator generator = new RSAKeyPairGenerator();
 
         generator.init(
@@ -474,14 +567,15 @@ private static AsymmetricCipherKeyPair generateKeyPair()
                 X500Name subject,
                 AsymmetricCipherKeyPair keyPair)
     {
+        boolean ecdsa = keyPair.getPrivate() instanceof ECPrivateKeyParameters;
         // The signature algorithm of the generated certificate defaults to
-        // SHA1. However, allow the overriding of the default via the
-        // ConfigurationService.
+        // SHA1 (SHA256 with ECDSA). However, allow the overriding of the
+        // default via the ConfigurationService.
         String signatureAlgorithm
             = ConfigUtils.getString(
                     LibJitsi.getConfigurationService(),
                     PROP_SIGNATURE_ALGORITHM,
-                    "SHA1withRSA");
+                    ecdsa ? "SHA256withECDSA" : "SHA1withRSA");
 
         if (logger.isDebugEnabled())
             logger.debug("Signature algorithm: " + signatureAlgorithm);
@@ -508,7 +602,9 @@ private static AsymmetricCipherKeyPair generateKeyPair()
             AlgorithmIdentifier digAlgId
                 = new DefaultDigestAlgorithmIdentifierFinder().find(sigAlgId);
             ContentSigner signer
-                = new BcRSAContentSignerBuilder(sigAlgId, digAlgId)
+                = (ecdsa
+                        ? new BcECContentSignerBuilder(sigAlgId, digAlgId)
+                        : new BcRSAContentSignerBuilder(sigAlgId, digAlgId))
                     .build(keyPair.getPrivate());
 
             return builder.build(signer).toASN1Structure();
@@ -19,6 +19,7 @@
 import java.io.*;
 import java.security.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.bouncycastle.crypto.tls.*;
 import org.ice4j.ice.*;
@@ -61,6 +62,70 @@
      */
     private static final int CONNECT_TRIES = 3;
 
+    /**
+     * The maximum number of DTLS handshakes which wait for a <tt>Thread</tt>
+     * of {@link #connectExecutor}. Further handshakes fail to start.
+     */
+    private static final int CONNECT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * The pool of <tt>Thread</tt>s which perform the DTLS handshakes of all
+     * <tt>DtlsPacketTransformer</tt>s. Bouncy Castle drives a handshake
+     * (including the retransmission of flights) from within a blocking call,
+     * so a <tt>Thread</tt> is occupied for the duration of the handshake only
+     * and is then reused for other handshakes instead of being created anew
+     * for each <tt>DtlsPacketTransformer</tt>. The number of <tt>Thread</tt>s
+     * is bounded (by the number of available processors unless
+     * {@link #MAX_CONNECT_THREADS_PNAME} says otherwise) and the handshakes
+     * in excess wait in a queue bounded by {@link #CONNECT_QUEUE_CAPACITY}.
+     * Because of the bound, the handshakes always have a deadline (see
+     * {@link #HANDSHAKE_TIMEOUT}).
+     */
+    private static final ExecutorService connectExecutor;
+
+    /**
+     * The default value of {@link #HANDSHAKE_TIMEOUT} when
+     * {@link #connectExecutor} is bounded.
+     */
+    private static final long DEFAULT_HANDSHAKE_TIMEOUT = 60 * 1000;
+
+    /**
+     * The maximum number of milliseconds a DTLS handshake may take before its
+     * <tt>DatagramTransport</tt> is closed in order to make the blocking
+     * handshake fail and release its <tt>Thread</tt>, or <tt>0</tt> for no
+     * limit.
+     *
+     * @see #HANDSHAKE_TIMEOUT_PNAME
+     */
+    private static final long HANDSHAKE_TIMEOUT;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * property which specifies the maximum number of milliseconds a DTLS
+     * handshake may take. The default value is
+     * {@link #DEFAULT_HANDSHAKE_TIMEOUT}. A handshake occupies a
+     * <tt>Thread</tt> of the bounded {@link #connectExecutor} for as long as
+     * it lasts, so the limit keeps unresponsive peers from holding all of
+     * them and from delaying the handshakes which wait in the queue forever.
+     * Consequently, a value of <tt>0</tt> or less removes the limit only if
+     * {@link #MAX_CONNECT_THREADS_PNAME} removes the bound of the pool as
+     * well.
+     */
+    private static final String HANDSHAKE_TIMEOUT_PNAME
+        = DtlsPacketTransformer.class.getName() + ".HANDSHAKE_TIMEOUT";
+
+    /**
+     * The <tt>ScheduledExecutorService</tt> which enforces
+     * {@link #HANDSHAKE_TIMEOUT} on the DTLS handshakes of all
+     * <tt>DtlsPacketTransformer</tt>s.
+     */
+    private static final ScheduledExecutorService handshakeTimer
+        = ExecutorUtils.newScheduledThreadPool(
+                1,
+                true,
+                DtlsPacketTransformer.class.getName() + ".handshakeTimer",
+                Thread.NORM_PRIORITY);
+
     /**
      * The indicator which determines whether unencrypted packets sent or
      * received through <tt>DtlsPacketTransformer</tt> are to be dropped. The
@@ -79,6 +144,17 @@
     private static final String DROP_UNENCRYPTED_PKTS_PNAME
         = DtlsPacketTransformer.class.getName() + ".dropUnencryptedPkts";
 
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * property which specifies the maximum number of <tt>Thread</tt>s which
+     * perform DTLS handshakes at the same time. The default value is the
+     * number of available processors. A value of <tt>0</tt> or less removes
+     * the bound, i.e. a <tt>Thread</tt> is started for every handshake which
+     * finds no idle one.
+     */
+    private static final String MAX_CONNECT_THREADS_PNAME
+        = DtlsPacketTransformer.class.getName() + ".MAX_CONNECT_THREADS";
+
     /**
      * The length of the header of a DTLS record.
      */
@@ -112,6 +188,42 @@
 
         DROP_UNENCRYPTED_PKTS
             = ConfigUtils.getBoolean(cfg, DROP_UNENCRYPTED_PKTS_PNAME, false);
+
+        int maxConnectThreads
+            = ConfigUtils.getInt(
+                    cfg,
+                    MAX_CONNECT_THREADS_PNAME,
+                    Runtime.getRuntime().availableProcessors());
+        long handshakeTimeout
+            = ConfigUtils.getLong(
+                    cfg,
+                    HANDSHAKE_TIMEOUT_PNAME,
+                    DEFAULT_HANDSHAKE_TIMEOUT);
+
+        if (handshakeTimeout <= 0 && maxConnectThreads > 0)
+        {
+            // Without a deadline, peers which never answer would hold every
+            // Thread of the bounded pool and the queued handshakes would
+            // wait forever.
+            logger.warn(
+                    "Ignoring " + HANDSHAKE_TIMEOUT_PNAME + "="
+                        + handshakeTimeout + " because "
+                        + MAX_CONNECT_THREADS_PNAME + "=" + maxConnectThreads
+                        + " bounds the DTLS handshake threads.");
+            handshakeTimeout = DEFAULT_HANDSHAKE_TIMEOUT;
+        }
+        HANDSHAKE_TIMEOUT = Math.max(0, handshakeTimeout);
+        String connectThreadName
+            = DtlsPacketTransformer.class.getName() + ".connect";
+
+        connectExecutor
+            = (maxConnectThreads > 0)
+                ? ExecutorUtils.newBoundedThreadPool(
+                        maxConnectThreads,
+                        CONNECT_QUEUE_CAPACITY,
+                        true,
+                        connectThreadName)
+                : ExecutorUtils.newCachedThreadPool(true, connectThreadName);
     }
 
     /**
@@ -184,10 +296,17 @@ public static boolean isDtlsRecord(byte[] buf, int off, int len)
     private AbstractRTPConnector connector;
 
     /**
-     * The background <tt>Thread</tt> which initializes {@link #dtlsTransport}.
+     * The <tt>Thread</tt> of {@link #connectExecutor} which is currently
+     * running {@link #connectTask}, if any.
      */
     private Thread connectThread;
 
+    /**
+     * The task scheduled on {@link #connectExecutor} which initializes
+     * {@link #dtlsTransport}.
+     */
+    private Runnable connectTask;
+
     /**
      * The <tt>DatagramTransport</tt> implementation which adapts
      * {@link #connector} and this <tt>PacketTransformer</tt> to the terms of
@@ -431,7 +550,7 @@ private SinglePacketTransformer getSRTPTransformer()
                 if (srtpTransformer != null)
                     break; // _srtpTransformer is initialized
 
-                if (connectThread == null)
+                if (connectTask == null)
                 {
                     // Though _srtpTransformer is NOT initialized, there is no
                     // point in waiting because there is no one to initialize
@@ -618,6 +737,22 @@ private SinglePacketTransformer initializeSRTPTransformer(
             auth_key_length = 160 / 8;
             RTCP_auth_tag_length = RTP_auth_tag_length = 80 / 8;
             break;
+        case DtlsControlImpl.SRTP_AEAD_AES_128_GCM:
+            cipher_key_length = 128 / 8;
+            cipher_salt_length = 96 / 8;
+            cipher = SRTPPolicy.AESGCM_ENCRYPTION;
+            auth_function = SRTPPolicy.NULL_AUTHENTICATION;
+            auth_key_length = 0;
+            RTCP_auth_tag_length = RTP_auth_tag_length = 128 / 8;
+            break;
+        case DtlsControlImpl.SRTP_AEAD_AES_256_GCM:
+            cipher_key_length = 256 / 8;
+            cipher_salt_length = 96 / 8;
+            cipher = SRTPPolicy.AESGCM_ENCRYPTION;
+            auth_function = SRTPPolicy.NULL_AUTHENTICATION;
+            auth_key_length = 0;
+            RTCP_auth_tag_length = RTP_auth_tag_length = 128 / 8;
+            break;
         case SRTPProtectionProfile.SRTP_NULL_HMAC_SHA1_32:
             cipher_key_length = 0;
             cipher_salt_length = 0;
@@ -957,7 +1092,8 @@ private void reverseTransformDtls(RawPacket pkt, List<RawPacket> outPkts)
     }
 
     /**
-     * Runs in {@link #connectThread} to initialize {@link #dtlsTransport}.
+     * Runs in {@link #connectThread} (i.e. a <tt>Thread</tt> of
+     * {@link #connectExecutor}) to initialize {@link #dtlsTransport}.
      *
      * @param dtlsProtocol
      * @param tlsPeer
@@ -1072,6 +1208,39 @@ else if (dtlsProtocol instanceof DTLSServerProtocol)
             srtpTransformer.close();
     }
 
+    /**
+     * Notifies this instance that its DTLS handshake over a specific
+     * <tt>DatagramTransport</tt> has not completed within
+     * {@link #HANDSHAKE_TIMEOUT}. Closes the <tt>DatagramTransport</tt> so
+     * that the blocking handshake fails and releases its <tt>Thread</tt> of
+     * {@link #connectExecutor}.
+     *
+     * @param datagramTransport the <tt>DatagramTransport</tt> of the handshake
+     * which has timed out
+     */
+    private synchronized void handshakeTimedOut(
+            DatagramTransportImpl datagramTransport)
+    {
+        // The handshake may have completed or been stopped in the meantime.
+        if (dtlsTransport != null
+                || !datagramTransport.equals(this.datagramTransport))
+        {
+            return;
+        }
+
+        logger.error(
+                "Failed to complete the DTLS handshake within "
+                    + HANDSHAKE_TIMEOUT + " ms. Giving up.");
+        try
+        {
+            datagramTransport.close();
+        }
+        catch (IOException ioe)
+        {
+            // DatagramTransportImpl.close() does not throw.
+        }
+    }
+
     /**
      * Sends the data contained in a specific byte array as application data
      * through the DTLS connection of this <tt>DtlsPacketTransformer</tt>.
@@ -1199,7 +1368,7 @@ private synchronized void start()
     {
         if (this.datagramTransport != null)
         {
-            if (this.connectThread == null && dtlsTransport == null)
+            if (this.connectTask == null && dtlsTransport == null)
             {
                 logger.warn(
                         getClass().getName()
@@ -1245,12 +1414,41 @@ private synchronized void start()
 
         datagramTransport.setConnector(connector);
 
-        Thread connectThread
-            = new Thread()
+        Runnable connectTask
+            = new Runnable()
             {
                 @Override
                 public void run()
                 {
+                    DtlsPacketTransformer transformer
+                        = DtlsPacketTransformer.this;
+                    Thread currentThread = Thread.currentThread();
+
+                    synchronized (transformer)
+                    {
+                        // This task may have been stopped before it got a
+                        // chance to run.
+                        if (transformer.connectTask != this)
+                            return;
+                        transformer.connectThread = currentThread;
+                    }
+
+                    ScheduledFuture<?> deadline
+                        = (HANDSHAKE_TIMEOUT > 0)
+                            ? handshakeTimer.schedule(
+                                    new Runnable()
+                                    {
+                                        @Override
+                                        public void run()
+                                        {
+                                            handshakeTimedOut(
+                                                    datagramTransport);
+                                        }
+                                    },
+                                    HANDSHAKE_TIMEOUT,
+                                    TimeUnit.MILLISECONDS)
+                            : null;
+
                     try
                     {
                         runInConnectThread(
@@ -1260,35 +1458,44 @@ public void run()
                     }
                     finally
                     {
-                        if (Thread.currentThread().equals(
-                                DtlsPacketTransformer.this.connectThread))
+                        if (deadline != null)
+                            deadline.cancel(false);
+                        synchronized (transformer)
                         {
-                            DtlsPacketTransformer.this.connectThread = null;
+                            if (currentThread.equals(
+                                    transformer.connectThread))
+                            {
+                                transformer.connectThread = null;
+                                transformer.connectTask = null;
+                            }
                         }
                     }
                 }
             };
 
-        connectThread.setDaemon(true);
-        connectThread.setName(
-                DtlsPacketTransformer.class.getName() + ".connectThread");
-
-        this.connectThread = connectThread;
+        this.connectTask = connectTask;
         this.datagramTransport = datagramTransport;
 
         boolean started = false;
 
         try
         {
-            connectThread.start();
+            connectExecutor.execute(connectTask);
             started = true;
         }
+        catch (RejectedExecutionException ree)
+        {
+            logger.error(
+                    "Failed to start a DTLS handshake: too many handshakes"
+                        + " in progress.",
+                    ree);
+        }
         finally
         {
             if (!started)
             {
-                if (connectThread.equals(this.connectThread))
-                    this.connectThread = null;
+                if (connectTask.equals(this.connectTask))
+                    this.connectTask = null;
                 if (datagramTransport.equals(this.datagramTransport))
                     this.datagramTransport = null;
             }
@@ -1303,8 +1510,8 @@ public void run()
     private synchronized void stop()
     {
         started = false;
-        if (connectThread != null)
-            connectThread = null;
+        connectThread = null;
+        connectTask = null;
         try
         {
             // The dtlsTransport and _srtpTransformer SHOULD be closed, of
@@ -343,21 +343,67 @@ public TlsCredentials getClientCredentials(
             {
                 CertificateInfo certificateInfo
                     = getDtlsControl().getCertificateInfo();
+                short signatureAlgorithm
+                    = certificateInfo.getSignatureAlgorithm();
 
-                // FIXME The signature and hash algorithms should be retrieved
-                // from the certificate.
                 clientCredentials
                     = new DefaultTlsSignerCredentials(
                             context,
                             certificateInfo.getCertificate(),
                             certificateInfo.getKeyPair().getPrivate(),
                             new SignatureAndHashAlgorithm(
-                                    HashAlgorithm.sha1,
-                                    SignatureAlgorithm.rsa));
+                                    selectHashAlgorithm(
+                                            certificateRequest,
+                                            signatureAlgorithm),
+                                    signatureAlgorithm));
             }
             return clientCredentials;
         }
 
+        /**
+         * Selects the hash algorithm to sign with a specific signature
+         * algorithm. Prefers SHA-256 (which <tt>TlsServerImpl</tt> uses as
+         * well) and otherwise picks the first hash algorithm which the server
+         * lists for the signature algorithm in the
+         * supported_signature_algorithms of its CertificateRequest.
+         *
+         * @param certificateRequest the CertificateRequest of the server
+         * @param signatureAlgorithm the signature algorithm of the local
+         * certificate
+         * @return the hash algorithm to sign with
+         */
+        private short selectHashAlgorithm(
+                CertificateRequest certificateRequest,
+                short signatureAlgorithm)
+        {
+            Vector<?> supportedSignatureAlgorithms
+                = (certificateRequest == null)
+                    ? null
+                    : certificateRequest.getSupportedSignatureAlgorithms();
+
+            if (supportedSignatureAlgorithms == null
+                    || supportedSignatureAlgorithms.isEmpty())
+            {
+                return HashAlgorithm.sha256;
+            }
+
+            short hashAlgorithm = -1;
+
+            for (Object o : supportedSignatureAlgorithms)
+            {
+                SignatureAndHashAlgorithm algorithm
+                    = (SignatureAndHashAlgorithm) o;
+
+                if (algorithm.getSignature() != signatureAlgorithm)
+                    continue;
+                if (algorithm.getHash() == HashAlgorithm.sha256)
+                    return HashAlgorithm.sha256;
+                if (hashAlgorithm == -1)
+                    hashAlgorithm = algorithm.getHash();
+            }
+            return (hashAlgorithm == -1) ? HashAlgorithm.sha256 : hashAlgorithm;
+        }
+
         /**
          * {@inheritDoc}
          */
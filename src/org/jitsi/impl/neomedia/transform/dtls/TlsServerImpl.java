@@ -41,7 +41,11 @@
      */
     private final CertificateRequest certificateRequest
         = new CertificateRequest(
-                new short[] { ClientCertificateType.rsa_sign },
+                new short[]
+                {
+                    ClientCertificateType.rsa_sign,
+                    ClientCertificateType.ecdsa_sign
+                },
                 /* supportedSignatureAlgorithms */ null,
                 /* certificateAuthorities */ null);
 
@@ -56,6 +60,12 @@
      */
     private final DtlsPacketTransformer packetTransformer;
 
+    /**
+     *
+     * @see DefaultTlsServer#getECDSASignerCredentials()
+     */
+    private TlsSignerCredentials ecdsaSignerCredentials;
+
     /**
      *
      * @see DefaultTlsServer#getRSAEncryptionCredentials()
@@ -105,11 +115,25 @@ int getChosenProtectionProfile()
      *
      * Overrides the super implementation to explicitly specify cipher suites
      * which we know to be supported by Bouncy Castle and provide Perfect
-     * Forward Secrecy.
+     * Forward Secrecy. Only the cipher suites which can be authenticated with
+     * the certificate of the local endpoint are specified.
      */
     @Override
     protected int[] getCipherSuites()
     {
+        if (getDtlsControl().getCertificateInfo().getSignatureAlgorithm()
+                == SignatureAlgorithm.ecdsa)
+        {
+            return new int[]
+            {
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384,
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256,
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA384,
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256,
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA,
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA
+            };
+        }
         return new int[]
         {
 /* core/src/main/java/org/bouncycastle/crypto/tls/DefaultTlsServer.java */
@@ -180,6 +204,34 @@ private Properties getProperties()
         return packetTransformer.getProperties();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <tt>DefaultTlsServer</tt> requires <tt>ecdsaSignerCredentials</tt> for
+     * the ECDHE_ECDSA cipher suites which are selected when the certificate of
+     * the local endpoint has an ECDSA key pair.
+     */
+    @Override
+    protected TlsSignerCredentials getECDSASignerCredentials()
+        throws IOException
+    {
+        if (ecdsaSignerCredentials == null)
+        {
+            CertificateInfo certificateInfo
+                = getDtlsControl().getCertificateInfo();
+
+            ecdsaSignerCredentials
+                = new DefaultTlsSignerCredentials(
+                        context,
+                        certificateInfo.getCertificate(),
+                        certificateInfo.getKeyPair().getPrivate(),
+                        new SignatureAndHashAlgorithm(
+                                HashAlgorithm.sha256,
+                                SignatureAlgorithm.ecdsa));
+        }
+        return ecdsaSignerCredentials;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -0,0 +1,263 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.fec;
+
+import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
+
+/**
+ * Utility methods for the FlexFEC (RFC 8627) repair packet format with a
+ * flexible mask (i.e. R=0 and F=0).
+ *
+ * The SSRC of the protected (source) stream is the single entry of the CSRC
+ * list of the RTP header of a repair packet, which is followed by the FEC
+ * header:
+ * <pre>
+ *  0                   1                   2                   3
+ *  0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |0|0|P|X|  CC   |M| PT recovery |        length recovery        |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                          TS recovery                          |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |           SN base_i           |k|          Mask [0-14]        |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |k|                   Mask [15-45] (optional)                   |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |k|                                                             |
+ * +-+                   Mask [46-108] (optional)                  |
+ * |                                                               |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * </pre>
+ * The repair payload, which is the XOR of everything which follows the fixed
+ * RTP headers of the protected packets, comes next. Bit <tt>i</tt> of the
+ * mask indicates that the packet with sequence number <tt>SN base + i</tt> is
+ * protected. The mask is represented as two <tt>long</tt>s, the first one
+ * holding bits 0 to 63.
+ */
+final class FlexFec
+{
+    /**
+     * The maximum number of packets that a single repair packet can protect,
+     * i.e. the number of bits in the longest mask.
+     */
+    static final int MAX_MASK_BITS = 109;
+
+    /**
+     * The length of the part of the FEC header which precedes the mask.
+     */
+    static final int FEC_HEADER_FIXED_LEN = 10;
+
+    /**
+     * The length of the RTP header of the repair packets written by this
+     * implementation (with one CSRC).
+     */
+    static final int RTP_HEADER_LEN = RawPacket.FIXED_HEADER_SIZE + 4;
+
+    /**
+     * Gets the length in bytes of the mask which can describe a specific
+     * mask.
+     *
+     * @param mask the mask.
+     * @return 2, 6 or 14.
+     */
+    static int getMaskLength(long[] mask)
+    {
+        if (mask[1] == 0 && (mask[0] & ~0x7FFFL) == 0)
+            return 2;
+        else if (mask[1] == 0 && (mask[0] & ~0x3FFFFFFFFFFFL) == 0)
+            return 6;
+        else
+            return 14;
+    }
+
+    /**
+     * Writes a mask in the FEC header format.
+     *
+     * @param mask the mask to write.
+     * @param buf the buffer to write into.
+     * @param off the offset in <tt>buf</tt> at which to write.
+     * @return the number of bytes written.
+     */
+    static int writeMask(long[] mask, byte[] buf, int off)
+    {
+        int maskLen = getMaskLength(mask);
+        // Bits [0, 15) go into the first chunk.
+        long chunk = reverse(mask[0] & 0x7FFFL, 15);
+
+        if (maskLen == 2)
+            chunk |= 0x8000;
+        buf[off] = (byte) (chunk >> 8);
+        buf[off + 1] = (byte) chunk;
+        if (maskLen == 2)
+            return 2;
+
+        // Bits [15, 46) go into the second chunk.
+        chunk = reverse((mask[0] >>> 15) & 0x7FFFFFFFL, 31);
+        if (maskLen == 6)
+            chunk |= 0x80000000L;
+        RTPUtils.writeInt(buf, off + 2, (int) chunk);
+        if (maskLen == 6)
+            return 6;
+
+        // Bits [46, 109) go into the third chunk.
+        chunk
+            = reverse(
+                    ((mask[0] >>> 46) | (mask[1] << 18)) & 0x7FFFFFFFFFFFFFFFL,
+                    63);
+        chunk |= 0x8000000000000000L;
+        RTPUtils.writeInt(buf, off + 6, (int) (chunk >>> 32));
+        RTPUtils.writeInt(buf, off + 10, (int) chunk);
+        return 14;
+    }
+
+    /**
+     * Reads a mask in the FEC header format.
+     *
+     * @param buf the buffer to read from.
+     * @param off the offset in <tt>buf</tt> at which the mask starts.
+     * @param len the number of bytes available in <tt>buf</tt> starting at
+     * <tt>off</tt>.
+     * @param mask the array of two elements to read the mask into.
+     * @return the number of bytes read, or <tt>-1</tt> if the mask is
+     * malformed.
+     */
+    static int readMask(byte[] buf, int off, int len, long[] mask)
+    {
+        mask[0] = 0;
+        mask[1] = 0;
+
+        if (len < 2)
+            return -1;
+
+        long chunk = RTPUtils.readUint16AsInt(buf, off);
+
+        mask[0] = reverse(chunk & 0x7FFF, 15);
+        if ((chunk & 0x8000) != 0)
+            return 2;
+
+        if (len < 6)
+            return -1;
+        chunk = RTPUtils.readUint32AsLong(buf, off + 2);
+        mask[0] |= reverse(chunk & 0x7FFFFFFFL, 31) << 15;
+        if ((chunk & 0x80000000L) != 0)
+            return 6;
+
+        if (len < 14)
+            return -1;
+        chunk
+            = (RTPUtils.readUint32AsLong(buf, off + 6) << 32)
+                | RTPUtils.readUint32AsLong(buf, off + 10);
+        if ((chunk & 0x8000000000000000L) == 0)
+            return -1;
+
+        long bits = reverse(chunk & 0x7FFFFFFFFFFFFFFFL, 63);
+
+        mask[0] |= bits << 46;
+        mask[1] = bits >>> 18;
+        return 14;
+    }
+
+    /**
+     * Determines whether a bit of a mask is set.
+     *
+     * @param mask the mask.
+     * @param i the index of the bit.
+     * @return <tt>true</tt> if bit <tt>i</tt> of <tt>mask</tt> is set.
+     */
+    static boolean isSet(long[] mask, int i)
+    {
+        return i >= 0 && i < MAX_MASK_BITS
+            && (mask[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Sets a bit of a mask.
+     *
+     * @param mask the mask.
+     * @param i the index of the bit.
+     */
+    static void set(long[] mask, int i)
+    {
+        mask[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * XORs the first 8 bytes of the FEC bit string of an RTP packet (i.e. its
+     * first 8 bytes with the sequence number replaced by the length of what
+     * follows the fixed RTP header) into a specific buffer.
+     *
+     * @param dst the buffer to XOR into.
+     * @param dstOff the offset in <tt>dst</tt>.
+     * @param buf the buffer of the RTP packet.
+     * @param off the offset of the RTP packet in <tt>buf</tt>.
+     * @param len the length of the RTP packet.
+     */
+    static void xorHeader(byte[] dst, int dstOff, byte[] buf, int off, int len)
+    {
+        int lengthRecovery = len - RawPacket.FIXED_HEADER_SIZE;
+
+        dst[dstOff] ^= buf[off];
+        dst[dstOff + 1] ^= buf[off + 1];
+        dst[dstOff + 2] ^= (byte) (lengthRecovery >> 8);
+        dst[dstOff + 3] ^= (byte) lengthRecovery;
+        for (int i = 4; i < 8; i++)
+            dst[dstOff + i] ^= buf[off + i];
+    }
+
+    /**
+     * XORs what follows the fixed RTP header of an RTP packet into a specific
+     * buffer.
+     *
+     * @param dst the buffer to XOR into.
+     * @param dstOff the offset in <tt>dst</tt>.
+     * @param dstLen the maximum number of bytes to XOR into <tt>dst</tt>.
+     * @param buf the buffer of the RTP packet.
+     * @param off the offset of the RTP packet in <tt>buf</tt>.
+     * @param len the length of the RTP packet.
+     */
+    static void xorPayload(
+            byte[] dst, int dstOff, int dstLen,
+            byte[] buf, int off, int len)
+    {
+        int n = Math.min(dstLen, len - RawPacket.FIXED_HEADER_SIZE);
+
+        off += RawPacket.FIXED_HEADER_SIZE;
+        for (int i = 0; i < n; i++)
+            dst[dstOff + i] ^= buf[off + i];
+    }
+
+    /**
+     * Reverses the order of the lowest <tt>n</tt> bits of a value, so that
+     * the lowest bit of the mask ends up as the most significant bit on the
+     * wire.
+     *
+     * @param v the value.
+     * @param n the number of bits.
+     * @return the reversed value.
+     */
+    private static long reverse(long v, int n)
+    {
+        return Long.reverse(v) >>> (64 - n);
+    }
+
+    /**
+     * Prevents the initialization of new <tt>FlexFec</tt> instances.
+     */
+    private FlexFec()
+    {
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.fec;
+
+import java.util.*;
+
+import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
+
+/**
+ * Recovers lost media packets of a single protected SSRC from FlexFEC repair
+ * packets. Copies of the recently received media packets are kept in a ring
+ * indexed by sequence number, and every pending repair packet keeps track of
+ * how many of the packets which it protects are still missing. A repair packet
+ * is used as soon as exactly one of them is missing. Since a recovered packet
+ * may complete other repair packets (e.g. a column after a row), recovery
+ * cascades until no more packets can be recovered.
+ */
+class FlexFecReceiver
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>FlexFecReceiver</tt> class and its
+     * instances to print debug information.
+     */
+    private static final Logger logger
+        = Logger.getLogger(FlexFecReceiver.class);
+
+    /**
+     * The number of media packets kept for recovery. A power of 2.
+     */
+    private static final int MEDIA_WINDOW = 256;
+
+    /**
+     * The maximum number of pending repair packets.
+     */
+    private static final int REPAIR_WINDOW = 64;
+
+    /**
+     * The SSRC of the protected stream.
+     */
+    private final long ssrc;
+
+    /**
+     * Copies of the recently received media packets, indexed by sequence
+     * number modulo {@link #MEDIA_WINDOW}.
+     */
+    private final RawPacket[] media = new RawPacket[MEDIA_WINDOW];
+
+    /**
+     * The sequence numbers of the packets in {@link #media}, or <tt>-1</tt>
+     * for empty slots.
+     */
+    private final int[] mediaSeqs = new int[MEDIA_WINDOW];
+
+    /**
+     * The pending repair packets.
+     */
+    private final Repair[] repairs = new Repair[REPAIR_WINDOW];
+
+    /**
+     * The index in {@link #repairs} of the slot to be reused when all slots
+     * hold active repair packets.
+     */
+    private int nextRepair = 0;
+
+    /**
+     * The repair packets which can be used to recover a packet.
+     */
+    private final Repair[] recoverable = new Repair[REPAIR_WINDOW];
+
+    /**
+     * The number of elements of {@link #recoverable}.
+     */
+    private int numRecoverable = 0;
+
+    /**
+     * The packets recovered during the current call.
+     */
+    private final List<RawPacket> recovered = new ArrayList<>();
+
+    /**
+     * The highest sequence number of a received media packet, or
+     * <tt>-1</tt>.
+     */
+    private int highestSeq = -1;
+
+    /**
+     * The number of repair packets received.
+     */
+    private int nbFec = 0;
+
+    /**
+     * The number of media packets recovered.
+     */
+    private int nbRecovered = 0;
+
+    /**
+     * The time in milliseconds at which the last media or repair packet was
+     * received.
+     */
+    private volatile long lastActivityMs;
+
+    /**
+     * Initializes a new <tt>FlexFecReceiver</tt> instance.
+     *
+     * @param ssrc the SSRC of the protected stream.
+     * @param now the current time in milliseconds.
+     */
+    FlexFecReceiver(long ssrc, long now)
+    {
+        this.ssrc = ssrc;
+        this.lastActivityMs = now;
+        Arrays.fill(mediaSeqs, -1);
+        for (int i = 0; i < REPAIR_WINDOW; i++)
+            repairs[i] = new Repair();
+    }
+
+    /**
+     * Accounts for a received media packet of the protected stream.
+     *
+     * @param pkt the media packet.
+     * @param now the current time in milliseconds.
+     * @return the packets which could be recovered because of <tt>pkt</tt>,
+     * or <tt>null</tt> if none.
+     */
+    synchronized RawPacket[] addMedia(RawPacket pkt, long now)
+    {
+        lastActivityMs = now;
+        store(pkt);
+        return recover();
+    }
+
+    /**
+     * Accounts for a received repair packet which protects the stream of
+     * this instance.
+     *
+     * @param pkt the repair packet.
+     * @param now the current time in milliseconds.
+     * @return the packets which could be recovered because of <tt>pkt</tt>,
+     * or <tt>null</tt> if none.
+     */
+    synchronized RawPacket[] addRepair(RawPacket pkt, long now)
+    {
+        lastActivityMs = now;
+        nbFec++;
+
+        Repair repair = null;
+
+        for (Repair r : repairs)
+        {
+            if (!r.active)
+            {
+                repair = r;
+                break;
+            }
+        }
+        if (repair == null)
+        {
+            repair = repairs[nextRepair];
+            nextRepair = (nextRepair + 1) % REPAIR_WINDOW;
+        }
+        if (!repair.parse(pkt))
+            return null;
+
+        int numMissing = 0;
+
+        for (int i = 0; i < FlexFec.MAX_MASK_BITS; i++)
+        {
+            if (FlexFec.isSet(repair.mask, i)
+                    && !contains((repair.base + i) & 0xFFFF))
+            {
+                numMissing++;
+            }
+        }
+        repair.numMissing = numMissing;
+        if (numMissing == 0)
+            return null;
+        repair.active = true;
+        if (numMissing == 1)
+            enqueue(repair);
+        return recover();
+    }
+
+    /**
+     * Stores a copy of a media packet and updates the pending repair packets
+     * which protect it.
+     *
+     * @param pkt the media packet.
+     */
+    private void store(RawPacket pkt)
+    {
+        int seq = pkt.getSequenceNumber();
+        int slot = seq & (MEDIA_WINDOW - 1);
+
+        if (mediaSeqs[slot] == seq)
+            return;
+
+        RawPacket copy = media[slot];
+        int len = pkt.getLength();
+
+        if (copy == null || copy.getBuffer().length < len)
+        {
+            copy = new RawPacket(new byte[Math.max(len, 1500)], 0, 0);
+            media[slot] = copy;
+        }
+        System.arraycopy(
+                pkt.getBuffer(), pkt.getOffset(),
+                copy.getBuffer(), 0,
+                len);
+        copy.setLength(len);
+        mediaSeqs[slot] = seq;
+
+        if (highestSeq == -1
+                || RTPUtils.sequenceNumberDiff(seq, highestSeq) > 0)
+        {
+            highestSeq = seq;
+        }
+
+        for (Repair r : repairs)
+        {
+            if (!r.active)
+                continue;
+
+            // A repair packet may protect packets which are no longer in
+            // media once they have been overwritten by newer ones.
+            if (RTPUtils.sequenceNumberDiff(highestSeq, r.base)
+                    >= MEDIA_WINDOW - FlexFec.MAX_MASK_BITS)
+            {
+                r.active = false;
+                continue;
+            }
+            if (FlexFec.isSet(r.mask, RTPUtils.subtractNumber(seq, r.base)))
+            {
+                r.numMissing--;
+                if (r.numMissing == 1)
+                    enqueue(r);
+                else if (r.numMissing <= 0)
+                    r.active = false;
+            }
+        }
+    }
+
+    /**
+     * Determines whether a specific media packet is stored.
+     *
+     * @param seq the sequence number of the media packet.
+     * @return <tt>true</tt> if the media packet with sequence number
+     * <tt>seq</tt> is stored.
+     */
+    private boolean contains(int seq)
+    {
+        return mediaSeqs[seq & (MEDIA_WINDOW - 1)] == seq;
+    }
+
+    /**
+     * Adds a repair packet to {@link #recoverable}.
+     *
+     * @param r the repair packet.
+     */
+    private void enqueue(Repair r)
+    {
+        if (!r.queued && numRecoverable < recoverable.length)
+        {
+            r.queued = true;
+            recoverable[numRecoverable++] = r;
+        }
+    }
+
+    /**
+     * Recovers all the packets which can be recovered.
+     *
+     * @return the recovered packets, or <tt>null</tt> if none.
+     */
+    private RawPacket[] recover()
+    {
+        while (numRecoverable > 0)
+        {
+            Repair r = recoverable[--numRecoverable];
+
+            recoverable[numRecoverable] = null;
+            r.queued = false;
+            if (!r.active || r.numMissing != 1)
+                continue;
+
+            r.active = false;
+
+            RawPacket pkt = r.recover();
+
+            if (pkt != null)
+            {
+                nbRecovered++;
+                recovered.add(pkt);
+                store(pkt);
+            }
+        }
+
+        if (recovered.isEmpty())
+            return null;
+
+        RawPacket[] res = recovered.toArray(new RawPacket[recovered.size()]);
+
+        recovered.clear();
+        return res;
+    }
+
+    /**
+     * Gets the time in milliseconds at which the last media or repair packet
+     * was received.
+     *
+     * @return the time in milliseconds at which the last media or repair
+     * packet was received.
+     */
+    long getLastActivityMs()
+    {
+        return lastActivityMs;
+    }
+
+    /**
+     * Logs the statistics of this instance.
+     */
+    synchronized void close()
+    {
+        if (logger.isInfoEnabled())
+        {
+            logger.info(
+                    "Closing FlexFecReceiver for ssrc=" + ssrc
+                        + ". Received " + nbFec + " repair packets, recovered "
+                        + nbRecovered + " packets.");
+        }
+    }
+
+    /**
+     * A pending repair packet.
+     */
+    private class Repair
+    {
+        /**
+         * A copy of the FEC header and the repair payload. Allocated when
+         * the first repair packet is parsed into this instance.
+         */
+        private byte[] buf;
+
+        /**
+         * The offset in {@link #buf} of the repair payload.
+         */
+        private int payloadOff;
+
+        /**
+         * The length of the repair payload.
+         */
+        private int payloadLen;
+
+        /**
+         * The sequence number base.
+         */
+        private int base;
+
+        /**
+         * The mask of the protected packets relative to {@link #base}.
+         */
+        private final long[] mask = new long[2];
+
+        /**
+         * The number of protected packets which are missing.
+         */
+        private int numMissing;
+
+        /**
+         * Whether this instance holds a repair packet which may still be
+         * used.
+         */
+        private boolean active = false;
+
+        /**
+         * Whether this instance is in {@link #recoverable}.
+         */
+        private boolean queued = false;
+
+        /**
+         * Initializes this instance from a repair packet.
+         *
+         * @param pkt the repair packet.
+         * @return <tt>true</tt> if <tt>pkt</tt> is a well-formed repair packet
+         * with a flexible mask; otherwise, <tt>false</tt>.
+         */
+        boolean parse(RawPacket pkt)
+        {
+            active = false;
+
+            int hdrLen = pkt.getHeaderLength();
+            int len = pkt.getLength() - hdrLen - pkt.getPaddingSize();
+
+            if (len < FlexFec.FEC_HEADER_FIXED_LEN + 2)
+                return false;
+
+            byte[] pktBuf = pkt.getBuffer();
+            int off = pkt.getOffset() + hdrLen;
+
+            // Retransmissions (R) and fixed masks (F) are not supported.
+            if ((pktBuf[off] & 0xC0) != 0)
+                return false;
+
+            int maskLen
+                = FlexFec.readMask(
+                        pktBuf, off + FlexFec.FEC_HEADER_FIXED_LEN,
+                        len - FlexFec.FEC_HEADER_FIXED_LEN,
+                        mask);
+
+            if (maskLen == -1)
+                return false;
+
+            if (buf == null || buf.length < len)
+                buf = new byte[Math.max(len, 1500)];
+            System.arraycopy(pktBuf, off, buf, 0, len);
+            base = RTPUtils.readUint16AsInt(buf, 8);
+            payloadOff = FlexFec.FEC_HEADER_FIXED_LEN + maskLen;
+            payloadLen = len - payloadOff;
+            return true;
+        }
+
+        /**
+         * Recovers the single missing packet protected by this instance.
+         *
+         * @return the recovered packet, or <tt>null</tt> if it cannot be
+         * recovered.
+         */
+        RawPacket recover()
+        {
+            int missingSeq = -1;
+
+            for (int i = 0; i < FlexFec.MAX_MASK_BITS; i++)
+            {
+                if (!FlexFec.isSet(mask, i))
+                    continue;
+
+                int seq = (base + i) & 0xFFFF;
+
+                if (!contains(seq))
+                {
+                    if (missingSeq != -1)
+                        return null;
+                    missingSeq = seq;
+                }
+            }
+            if (missingSeq == -1)
+                return null;
+
+            byte[] header = Arrays.copyOf(buf, 8);
+
+            for (int i = 0; i < FlexFec.MAX_MASK_BITS; i++)
+            {
+                int seq = (base + i) & 0xFFFF;
+
+                if (seq != missingSeq && FlexFec.isSet(mask, i))
+                {
+                    RawPacket p = media[seq & (MEDIA_WINDOW - 1)];
+
+                    FlexFec.xorHeader(
+                            header, 0,
+                            p.getBuffer(), p.getOffset(), p.getLength());
+                }
+            }
+
+            int lengthRecovery = RTPUtils.readUint16AsInt(header, 2);
+
+            if (lengthRecovery > payloadLen)
+                return null;
+
+            byte[] pktBuf
+                = new byte[RawPacket.FIXED_HEADER_SIZE + lengthRecovery];
+
+            pktBuf[0] = (byte) ((header[0] & 0x3F) | 0x80);
+            pktBuf[1] = header[1];
+            RTPUtils.writeShort(pktBuf, 2, (short) missingSeq);
+            System.arraycopy(header, 4, pktBuf, 4, 4);
+            RTPUtils.writeInt(pktBuf, 8, (int) ssrc);
+            System.arraycopy(
+                    buf, payloadOff,
+                    pktBuf, RawPacket.FIXED_HEADER_SIZE,
+                    lengthRecovery);
+
+            for (int i = 0; i < FlexFec.MAX_MASK_BITS; i++)
+            {
+                int seq = (base + i) & 0xFFFF;
+
+                if (seq != missingSeq && FlexFec.isSet(mask, i))
+                {
+                    RawPacket p = media[seq & (MEDIA_WINDOW - 1)];
+
+                    FlexFec.xorPayload(
+                            pktBuf, RawPacket.FIXED_HEADER_SIZE,
+                            lengthRecovery,
+                            p.getBuffer(), p.getOffset(), p.getLength());
+                }
+            }
+
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(
+                        "Recovered packet ssrc=" + ssrc + ", seq="
+                            + missingSeq);
+            }
+            return new RawPacket(pktBuf, 0, pktBuf.length);
+        }
+    }
+}
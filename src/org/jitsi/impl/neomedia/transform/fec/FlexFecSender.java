@@ -0,0 +1,489 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.fec;
+
+import java.util.*;
+
+import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
+
+/**
+ * Generates FlexFEC repair packets for a single protected SSRC. The media
+ * packets are grouped in blocks of <tt>rows</tt> rows of <tt>columns</tt>
+ * consecutive packets. A row repair packet is generated at the end of every
+ * row and, if there is more than one row, a column repair packet for every
+ * column is generated at the end of the block. The parity is accumulated as the
+ * media packets go by, so that no reference to them is retained (they are
+ * encrypted in place later on).
+ *
+ * The protection level is either fixed or adapted to the fraction of lost
+ * packets reported by the remote endpoint. A new level takes effect at the
+ * start of the next block.
+ */
+class FlexFecSender
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>FlexFecSender</tt> class and its
+     * instances to print debug information.
+     */
+    private static final Logger logger = Logger.getLogger(FlexFecSender.class);
+
+    /**
+     * The protection levels used in adaptive mode as
+     * <tt>{ fraction lost upper bound, columns, rows }</tt> (in percent for the
+     * bound), ordered by increasing fraction lost.
+     */
+    private static final int[][] ADAPTIVE_LEVELS
+        = {
+            { 1, 0, 0 },
+            { 5, 10, 1 },
+            { 10, 5, 1 },
+            { 20, 5, 5 },
+            { 101, 4, 4 }
+        };
+
+    /**
+     * The weight of a new fraction lost report in the smoothed fraction lost.
+     */
+    private static final double LOSS_SMOOTHING = 0.5;
+
+    /**
+     * The SSRC of the media stream protected by this instance.
+     */
+    private final long mediaSsrc;
+
+    /**
+     * The SSRC of the repair packets generated by this instance.
+     */
+    private final long fecSsrc;
+
+    /**
+     * The payload type of the repair packets.
+     */
+    private byte payloadType;
+
+    /**
+     * The RTP sequence number of the next repair packet.
+     */
+    private int fecSeq = new Random().nextInt(0x10000);
+
+    /**
+     * The number of packets in a row of the current block, or <tt>0</tt> if
+     * no repair packets are currently generated.
+     */
+    private int columns = 0;
+
+    /**
+     * The number of rows of the current block.
+     */
+    private int rows = 0;
+
+    /**
+     * The number of columns which will take effect at the start of the next
+     * block.
+     */
+    private int nextColumns = 0;
+
+    /**
+     * The number of rows which will take effect at the start of the next
+     * block.
+     */
+    private int nextRows = 0;
+
+    /**
+     * Whether the protection level is adapted to the reported loss.
+     */
+    private boolean adaptive = true;
+
+    /**
+     * The smoothed fraction of lost packets reported by the remote endpoint,
+     * or <tt>-1</tt> if no report was received yet.
+     */
+    private double lossFraction = -1;
+
+    /**
+     * The index of the next media packet in the current block.
+     */
+    private int position = 0;
+
+    /**
+     * The RTP sequence number of the last media packet which was protected,
+     * or <tt>-1</tt>.
+     */
+    private int lastSeq = -1;
+
+    /**
+     * The parity of the current row.
+     */
+    private final Accumulator row = new Accumulator();
+
+    /**
+     * The parities of the columns of the current block.
+     */
+    private Accumulator[] cols = new Accumulator[0];
+
+    /**
+     * The number of repair packets generated by this instance.
+     */
+    private int nbFec = 0;
+
+    /**
+     * Initializes a new <tt>FlexFecSender</tt> instance.
+     *
+     * @param mediaSsrc the SSRC of the media stream to protect.
+     * @param fecSsrc the SSRC of the repair packets.
+     * @param payloadType the payload type of the repair packets.
+     */
+    FlexFecSender(long mediaSsrc, long fecSsrc, byte payloadType)
+    {
+        this.mediaSsrc = mediaSsrc;
+        this.fecSsrc = fecSsrc;
+        this.payloadType = payloadType;
+    }
+
+    /**
+     * Sets the payload type of the repair packets.
+     *
+     * @param payloadType the payload type.
+     */
+    synchronized void setPayloadType(byte payloadType)
+    {
+        this.payloadType = payloadType;
+    }
+
+    /**
+     * Fixes the protection level of this instance.
+     *
+     * @param columns the number of packets in a row, or <tt>0</tt> to disable
+     * the generation of repair packets.
+     * @param rows the number of rows in a block. Column repair packets are
+     * only generated when there is more than one row.
+     */
+    synchronized void setProtection(int columns, int rows)
+    {
+        adaptive = false;
+        setNextLevel(columns, rows);
+    }
+
+    /**
+     * Enables the adaptation of the protection level to the reported loss.
+     */
+    synchronized void setAdaptive()
+    {
+        adaptive = true;
+        if (lossFraction >= 0)
+            setLossFraction(lossFraction);
+    }
+
+    /**
+     * Notifies this instance of the fraction of lost packets of the protected
+     * stream reported by the remote endpoint.
+     *
+     * @param fraction the fraction of lost packets in <tt>[0, 1]</tt>.
+     */
+    synchronized void setLossFraction(double fraction)
+    {
+        lossFraction
+            = lossFraction < 0
+                ? fraction
+                : LOSS_SMOOTHING * fraction
+                    + (1 - LOSS_SMOOTHING) * lossFraction;
+
+        if (!adaptive)
+            return;
+
+        double percent = lossFraction * 100;
+
+        for (int[] level : ADAPTIVE_LEVELS)
+        {
+            if (percent < level[0])
+            {
+                if (level[1] != nextColumns || level[2] != nextRows)
+                {
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug(
+                                "Changing the FlexFEC protection of ssrc="
+                                    + mediaSsrc + " to " + level[1] + "x"
+                                    + level[2] + " (loss=" + percent + "%)");
+                    }
+                    setNextLevel(level[1], level[2]);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Sets the protection level which is to take effect at the start of the
+     * next block.
+     *
+     * @param columns the number of packets in a row.
+     * @param rows the number of rows.
+     */
+    private void setNextLevel(int columns, int rows)
+    {
+        if (columns <= 0 || rows <= 0)
+        {
+            columns = 0;
+            rows = 0;
+        }
+        else
+        {
+            columns = Math.min(columns, FlexFec.MAX_MASK_BITS);
+            // A column mask spans (rows - 1) * columns + 1 packets.
+            rows
+                = Math.min(
+                        rows,
+                        (FlexFec.MAX_MASK_BITS - 1) / columns + 1);
+        }
+        nextColumns = columns;
+        nextRows = rows;
+    }
+
+    /**
+     * Accounts for a media packet of the protected stream and generates the
+     * repair packets which it completes.
+     *
+     * @param pkt the media packet.
+     * @return the generated repair packets, or <tt>null</tt> if none.
+     */
+    synchronized RawPacket[] protect(RawPacket pkt)
+    {
+        int seq = pkt.getSequenceNumber();
+        RawPacket[] fec = null;
+
+        if (lastSeq != -1 && RTPUtils.subtractNumber(seq, lastSeq) != 1)
+        {
+            // The block can only protect consecutive packets.
+            fec = flush();
+        }
+        lastSeq = seq;
+
+        if (position == 0)
+        {
+            columns = nextColumns;
+            rows = nextRows;
+            if (rows > 1 && cols.length < columns)
+            {
+                cols = Arrays.copyOf(cols, columns);
+                for (int i = 0; i < columns; i++)
+                {
+                    if (cols[i] == null)
+                        cols[i] = new Accumulator();
+                }
+            }
+        }
+        if (columns == 0)
+            return fec;
+
+        row.add(pkt);
+        if (rows > 1)
+            cols[position % columns].add(pkt);
+        position++;
+
+        if (position % columns == 0)
+            fec = append(fec, row.toPacket());
+        if (position == columns * rows)
+        {
+            if (rows > 1)
+            {
+                for (int i = 0; i < columns; i++)
+                    fec = append(fec, cols[i].toPacket());
+            }
+            position = 0;
+        }
+        return fec;
+    }
+
+    /**
+     * Terminates the current block early, generating the repair packets of
+     * the rows and columns which protect more than one packet.
+     *
+     * @return the generated repair packets, or <tt>null</tt> if none.
+     */
+    private RawPacket[] flush()
+    {
+        RawPacket[] fec = null;
+
+        if (row.count > 1)
+            fec = append(fec, row.toPacket());
+        else
+            row.reset();
+        for (Accumulator col : cols)
+        {
+            if (col.count > 1)
+                fec = append(fec, col.toPacket());
+            else
+                col.reset();
+        }
+        position = 0;
+        return fec;
+    }
+
+    /**
+     * Appends a repair packet to an array of repair packets.
+     *
+     * @param fec the array of repair packets, or <tt>null</tt>.
+     * @param pkt the repair packet to append.
+     * @return the array of repair packets with <tt>pkt</tt> appended.
+     */
+    private RawPacket[] append(RawPacket[] fec, RawPacket pkt)
+    {
+        nbFec++;
+        if (fec == null)
+            return new RawPacket[] { pkt };
+
+        RawPacket[] res = Arrays.copyOf(fec, fec.length + 1);
+
+        res[fec.length] = pkt;
+        return res;
+    }
+
+    /**
+     * Gets the number of repair packets generated by this instance.
+     *
+     * @return the number of repair packets generated by this instance.
+     */
+    synchronized int getNumberOfFecPackets()
+    {
+        return nbFec;
+    }
+
+    /**
+     * Accumulates the parity of a set of media packets.
+     */
+    private class Accumulator
+    {
+        /**
+         * The XOR of the first 8 bytes of the FEC bit strings of the
+         * packets.
+         */
+        private final byte[] header = new byte[8];
+
+        /**
+         * The XOR of what follows the fixed RTP headers of the packets.
+         */
+        private byte[] payload = new byte[1500];
+
+        /**
+         * The length of the longest protected payload.
+         */
+        private int payloadLen = 0;
+
+        /**
+         * The sequence number of the first protected packet, or <tt>-1</tt>.
+         */
+        private int base = -1;
+
+        /**
+         * The mask of the protected packets relative to {@link #base}.
+         */
+        private final long[] mask = new long[2];
+
+        /**
+         * The number of protected packets.
+         */
+        private int count = 0;
+
+        /**
+         * The RTP timestamp of the last protected packet.
+         */
+        private long timestamp;
+
+        /**
+         * Adds a media packet to the set of protected packets.
+         *
+         * @param pkt the media packet.
+         */
+        void add(RawPacket pkt)
+        {
+            byte[] buf = pkt.getBuffer();
+            int off = pkt.getOffset();
+            int len = pkt.getLength();
+            int seq = pkt.getSequenceNumber();
+
+            if (base == -1)
+                base = seq;
+            FlexFec.set(mask, RTPUtils.subtractNumber(seq, base));
+
+            int l = len - RawPacket.FIXED_HEADER_SIZE;
+
+            if (payload.length < l)
+                payload = Arrays.copyOf(payload, l);
+            if (payloadLen < l)
+                payloadLen = l;
+            FlexFec.xorHeader(header, 0, buf, off, len);
+            FlexFec.xorPayload(payload, 0, payload.length, buf, off, len);
+            timestamp = pkt.getTimestamp();
+            count++;
+        }
+
+        /**
+         * Generates the repair packet of the protected packets and resets
+         * this instance.
+         *
+         * @return the repair packet.
+         */
+        RawPacket toPacket()
+        {
+            int maskLen = FlexFec.getMaskLength(mask);
+            int hdrLen = FlexFec.RTP_HEADER_LEN;
+            byte[] buf
+                = new byte[
+                        hdrLen + FlexFec.FEC_HEADER_FIXED_LEN + maskLen
+                            + payloadLen];
+
+            // RTP header: V=2, CC=1 and the protected SSRC as the CSRC.
+            buf[0] = (byte) 0x81;
+            buf[1] = (byte) (payloadType & 0x7F);
+            RTPUtils.writeShort(buf, 2, (short) fecSeq);
+            RTPUtils.writeInt(buf, 4, (int) timestamp);
+            RTPUtils.writeInt(buf, 8, (int) fecSsrc);
+            RTPUtils.writeInt(buf, 12, (int) mediaSsrc);
+            fecSeq = (fecSeq + 1) & 0xFFFF;
+
+            // FEC header with R=0 and F=0.
+            System.arraycopy(header, 0, buf, hdrLen, header.length);
+            buf[hdrLen] &= 0x3F;
+            RTPUtils.writeShort(buf, hdrLen + 8, (short) base);
+            FlexFec.writeMask(
+                    mask,
+                    buf, hdrLen + FlexFec.FEC_HEADER_FIXED_LEN);
+            System.arraycopy(
+                    payload, 0,
+                    buf, hdrLen + FlexFec.FEC_HEADER_FIXED_LEN + maskLen,
+                    payloadLen);
+
+            reset();
+            return new RawPacket(buf, 0, buf.length);
+        }
+
+        /**
+         * Forgets the protected packets.
+         */
+        void reset()
+        {
+            Arrays.fill(header, (byte) 0);
+            Arrays.fill(payload, 0, payloadLen, (byte) 0);
+            payloadLen = 0;
+            base = -1;
+            mask[0] = 0;
+            mask[1] = 0;
+            count = 0;
+        }
+    }
+}
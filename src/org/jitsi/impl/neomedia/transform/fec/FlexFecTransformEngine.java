@@ -0,0 +1,708 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.fec;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.sf.fmj.media.rtp.*;
+
+import org.jitsi.impl.neomedia.transform.*;
+import org.jitsi.service.neomedia.*;
+import org.jitsi.service.neomedia.rtp.*;
+import org.jitsi.util.*;
+
+/**
+ * Implements a {@link PacketTransformer} and {@link TransformEngine} for
+ * FlexFEC (RFC 8627) sent in a separate RTP stream. Repair packets are only
+ * generated for the media SSRCs which have been associated with a FlexFEC SSRC
+ * using {@link #addFecSsrc(long, long)}. Unless fixed with
+ * {@link #setProtection(int, int)}, the amount of protection of every media
+ * SSRC follows the fraction of lost packets in the RTCP receiver reports of
+ * the remote endpoint, going from no protection at all up to 2-D (row and
+ * column) parity under heavy loss.
+ *
+ * Repair packets are only consumed for the media SSRCs which are signalled
+ * with {@link #addReceiveSsrc(long)} or which have recently been seen on the
+ * media path. The number of such SSRCs which are recovered at a time is
+ * limited, and their state is dropped once they go idle.
+ *
+ * The association of a media SSRC with a FlexFEC SSRC is signalled outside of
+ * libjitsi (e.g. with an "a=ssrc-group:FEC-FR" line in SDP). The application
+ * which does the signalling is expected to call {@link #addFecSsrc(long, long)}
+ * for the local SSRC groups and {@link #addReceiveSsrc(long)} for the remote
+ * ones.
+ */
+public class FlexFecTransformEngine
+    implements TransformEngine,
+               PacketTransformer
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>FlexFecTransformEngine</tt> class
+     * and its instances to print debug information.
+     */
+    private static final Logger logger
+        = Logger.getLogger(FlexFecTransformEngine.class);
+
+    /**
+     * The interval in milliseconds at which the idle receivers and media
+     * SSRCs are expired.
+     */
+    private static final long EXPIRE_INTERVAL_MS = 1000;
+
+    /**
+     * The maximum number of media SSRCs which are recovered at a time.
+     */
+    private static final int MAX_RECEIVERS = 16;
+
+    /**
+     * The maximum number of media SSRCs without a receiver which are
+     * remembered as seen on the media path.
+     */
+    private static final int MAX_SEEN_SSRCS = 64;
+
+    /**
+     * The time in milliseconds after which a receiver or a media SSRC which
+     * has not seen any packet is expired.
+     */
+    private static final long TIMEOUT_MS = 10000;
+
+    /**
+     * The payload type of incoming FlexFEC packets. The special value
+     * <tt>-1</tt> disables reverse-transforming packets.
+     */
+    private byte incomingPT = -1;
+
+    /**
+     * The payload type of outgoing FlexFEC packets. The special value
+     * <tt>-1</tt> disables transforming packets.
+     */
+    private byte outgoingPT = -1;
+
+    /**
+     * The number of packets in a row of the fixed protection level, or
+     * <tt>-1</tt> if the protection level is adaptive.
+     */
+    private int fixedColumns = -1;
+
+    /**
+     * The number of rows of the fixed protection level.
+     */
+    private int fixedRows = -1;
+
+    /**
+     * Maps a protected media SSRC to its <tt>FlexFecSender</tt>. Copied on
+     * write.
+     */
+    private volatile LongObjectHashMap<FlexFecSender> senders
+        = new LongObjectHashMap<>();
+
+    /**
+     * Maps a protected media SSRC to its <tt>FlexFecReceiver</tt>. Holds at
+     * most {@link #MAX_RECEIVERS} entries.
+     */
+    private final Map<Long, FlexFecReceiver> receivers
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The signalled media SSRCs whose lost packets are to be recovered.
+     */
+    private final Set<Long> receiveSsrcs = new HashSet<>();
+
+    /**
+     * Maps a media SSRC which has been seen on the media path but which has
+     * no <tt>FlexFecReceiver</tt> to the time at which it was last seen. Holds
+     * at most {@link #MAX_SEEN_SSRCS} entries, the least recently seen one
+     * being dropped first. Copied on write so that the media path only takes
+     * {@link #syncRoot} the first time that it sees an SSRC.
+     */
+    private volatile LongObjectHashMap<SeenSsrc> seenSsrcs
+        = new LongObjectHashMap<>();
+
+    /**
+     * The time in milliseconds at which the idle receivers and media SSRCs
+     * are to be expired next.
+     */
+    private volatile long nextExpireMs;
+
+    /**
+     * The <tt>Object</tt> which synchronizes the modifications of
+     * {@link #senders}, {@link #receivers}, {@link #receiveSsrcs} and
+     * {@link #seenSsrcs}.
+     */
+    private final Object syncRoot = new Object();
+
+    /**
+     * The <tt>MediaStream</tt> whose RTCP receiver reports drive the
+     * protection level, or <tt>null</tt>.
+     */
+    private final MediaStream stream;
+
+    /**
+     * The listener which receives the RTCP reports of {@link #stream}.
+     */
+    private final RTCPReportListener rtcpReportListener
+        = new RTCPReportAdapter()
+        {
+            @Override
+            public void rtcpReportReceived(RTCPReport report)
+            {
+                FlexFecTransformEngine.this.rtcpReportReceived(report);
+            }
+        };
+
+    /**
+     * Initializes a new <tt>FlexFecTransformEngine</tt> instance.
+     *
+     * @param stream the <tt>MediaStream</tt> whose RTCP receiver reports are
+     * to drive the protection level, or <tt>null</tt>.
+     */
+    public FlexFecTransformEngine(MediaStream stream)
+    {
+        this.stream = stream;
+        if (stream != null)
+        {
+            stream.getMediaStreamStats().getRTCPReports().addRTCPReportListener(
+                    rtcpReportListener);
+        }
+    }
+
+    /**
+     * Protects a media SSRC with FlexFEC packets sent with a specific SSRC.
+     *
+     * @param mediaSsrc the SSRC to protect.
+     * @param fecSsrc the SSRC of the FlexFEC packets.
+     */
+    public void addFecSsrc(long mediaSsrc, long fecSsrc)
+    {
+        synchronized (syncRoot)
+        {
+            FlexFecSender sender
+                = new FlexFecSender(mediaSsrc, fecSsrc, outgoingPT);
+
+            if (fixedColumns != -1)
+                sender.setProtection(fixedColumns, fixedRows);
+
+            LongObjectHashMap<FlexFecSender> map
+                = new LongObjectHashMap<>(senders);
+
+            map.put(mediaSsrc, sender);
+            senders = map;
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    "Protecting ssrc=" + mediaSsrc + " with FlexFEC ssrc="
+                        + fecSsrc);
+        }
+    }
+
+    /**
+     * Stops protecting a media SSRC with FlexFEC packets.
+     *
+     * @param mediaSsrc the SSRC to stop protecting.
+     */
+    public void removeFecSsrc(long mediaSsrc)
+    {
+        synchronized (syncRoot)
+        {
+            if (senders.containsKey(mediaSsrc))
+            {
+                LongObjectHashMap<FlexFecSender> map
+                    = new LongObjectHashMap<>(senders);
+
+                map.remove(mediaSsrc);
+                senders = map;
+            }
+        }
+    }
+
+    /**
+     * Recovers the lost packets of a signalled media SSRC from the FlexFEC
+     * packets which protect it. The lost packets of the media SSRCs which are
+     * not signalled are recovered only after they have been seen on the media
+     * path.
+     *
+     * @param mediaSsrc the SSRC to recover.
+     */
+    public void addReceiveSsrc(long mediaSsrc)
+    {
+        synchronized (syncRoot)
+        {
+            receiveSsrcs.add(mediaSsrc);
+        }
+    }
+
+    /**
+     * Stops treating a media SSRC as signalled and drops the state kept to
+     * recover its lost packets.
+     *
+     * @param mediaSsrc the SSRC to stop recovering.
+     */
+    public void removeReceiveSsrc(long mediaSsrc)
+    {
+        FlexFecReceiver receiver;
+
+        synchronized (syncRoot)
+        {
+            receiveSsrcs.remove(mediaSsrc);
+            receiver = receivers.remove(mediaSsrc);
+        }
+        if (receiver != null)
+            receiver.close();
+    }
+
+    /**
+     * Fixes the protection level of the protected SSRCs.
+     *
+     * @param columns the number of media packets protected by a row repair
+     * packet, <tt>0</tt> to disable the generation of repair packets or
+     * <tt>-1</tt> to adapt the protection level to the reported loss.
+     * @param rows the number of rows of a block. Column repair packets are
+     * only generated when there is more than one row.
+     */
+    public void setProtection(int columns, int rows)
+    {
+        synchronized (syncRoot)
+        {
+            fixedColumns = columns < 0 ? -1 : columns;
+            fixedRows = rows;
+            for (FlexFecSender sender : senders.values())
+            {
+                if (fixedColumns == -1)
+                    sender.setAdaptive();
+                else
+                    sender.setProtection(fixedColumns, fixedRows);
+            }
+        }
+    }
+
+    /**
+     * Sets the payload type of incoming FlexFEC packets.
+     *
+     * @param incomingPT the payload type, or <tt>-1</tt> to disable the
+     * recovery of packets.
+     */
+    public void setIncomingPT(byte incomingPT)
+    {
+        this.incomingPT = incomingPT;
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    "Setting payload type for incoming flexfec: "
+                        + incomingPT);
+        }
+    }
+
+    /**
+     * Sets the payload type of outgoing FlexFEC packets.
+     *
+     * @param outgoingPT the payload type, or <tt>-1</tt> to disable the
+     * generation of repair packets.
+     */
+    public void setOutgoingPT(byte outgoingPT)
+    {
+        synchronized (syncRoot)
+        {
+            this.outgoingPT = outgoingPT;
+            for (FlexFecSender sender : senders.values())
+                sender.setPayloadType(outgoingPT);
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    "Setting payload type for outgoing flexfec: "
+                        + outgoingPT);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Adds FlexFEC repair packets after the media packets which complete
+     * them.
+     */
+    @Override
+    public RawPacket[] transform(RawPacket[] pkts)
+    {
+        LongObjectHashMap<FlexFecSender> senders = this.senders;
+
+        if (outgoingPT == -1 || pkts == null || senders.isEmpty())
+            return pkts;
+
+        RawPacket[] fec = null;
+
+        for (RawPacket pkt : pkts)
+        {
+            if (pkt == null || pkt.getVersion() != RTPHeader.VERSION)
+                continue;
+
+            FlexFecSender sender = senders.get(pkt.getSSRCAsLong());
+
+            if (sender != null)
+                fec = concat(fec, sender.protect(pkt));
+        }
+        return concat(pkts, fec);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Consumes the FlexFEC repair packets and adds the media packets which
+     * they allow to recover.
+     */
+    @Override
+    public RawPacket[] reverseTransform(RawPacket[] pkts)
+    {
+        if (incomingPT == -1 || pkts == null)
+            return pkts;
+
+        long now = System.currentTimeMillis();
+
+        if (now >= nextExpireMs)
+            expire(now);
+
+        RawPacket[] recovered = null;
+
+        for (int i = 0; i < pkts.length; i++)
+        {
+            RawPacket pkt = pkts[i];
+
+            if (pkt == null || pkt.getVersion() != RTPHeader.VERSION)
+                continue;
+
+            if (pkt.getPayloadType() == incomingPT)
+            {
+                pkts[i] = null;
+                if (pkt.getCsrcCount() < 1)
+                    continue;
+
+                long ssrc
+                    = RTPUtils.readUint32AsLong(
+                            pkt.getBuffer(),
+                            pkt.getOffset() + RawPacket.FIXED_HEADER_SIZE);
+
+                FlexFecReceiver receiver = getReceiver(ssrc, now);
+
+                if (receiver != null)
+                {
+                    recovered
+                        = concat(recovered, receiver.addRepair(pkt, now));
+                }
+            }
+            else
+            {
+                long ssrc = pkt.getSSRCAsLong();
+                FlexFecReceiver receiver = receivers.get(ssrc);
+
+                if (receiver != null)
+                {
+                    recovered
+                        = concat(recovered, receiver.addMedia(pkt, now));
+                }
+                else
+                {
+                    SeenSsrc seen = seenSsrcs.get(ssrc);
+
+                    if (seen != null)
+                        seen.lastSeenMs = now;
+                    else
+                        addSeenSsrc(ssrc, now);
+                }
+            }
+        }
+        return concat(pkts, recovered);
+    }
+
+    /**
+     * Gets the <tt>FlexFecReceiver</tt> of a protected SSRC, creating it if
+     * it does not exist yet and the SSRC is signalled or has recently been
+     * seen on the media path.
+     *
+     * @param ssrc the protected SSRC.
+     * @param now the current time in milliseconds.
+     * @return the <tt>FlexFecReceiver</tt> of <tt>ssrc</tt>, or <tt>null</tt>
+     * if the repair packets for <tt>ssrc</tt> are to be dropped.
+     */
+    private FlexFecReceiver getReceiver(long ssrc, long now)
+    {
+        FlexFecReceiver receiver = receivers.get(ssrc);
+
+        if (receiver != null)
+            return receiver;
+
+        synchronized (syncRoot)
+        {
+            receiver = receivers.get(ssrc);
+            if (receiver != null)
+                return receiver;
+
+            SeenSsrc seen = seenSsrcs.get(ssrc);
+            boolean known
+                = (seen != null && now - seen.lastSeenMs < TIMEOUT_MS)
+                    || receiveSsrcs.contains(ssrc);
+
+            if (!known || receivers.size() >= MAX_RECEIVERS)
+                return null;
+
+            receiver = new FlexFecReceiver(ssrc, now);
+            receivers.put(ssrc, receiver);
+            if (seen != null)
+            {
+                LongObjectHashMap<SeenSsrc> map
+                    = new LongObjectHashMap<>(seenSsrcs);
+
+                map.remove(ssrc);
+                seenSsrcs = map;
+            }
+        }
+        if (logger.isDebugEnabled())
+            logger.debug("Recovering ssrc=" + ssrc + " with FlexFEC.");
+        return receiver;
+    }
+
+    /**
+     * Remembers that a media SSRC without a <tt>FlexFecReceiver</tt> has been
+     * seen on the media path. Drops the least recently seen SSRC if
+     * {@link #MAX_SEEN_SSRCS} are remembered already.
+     *
+     * @param ssrc the SSRC which has been seen.
+     * @param now the current time in milliseconds.
+     */
+    private void addSeenSsrc(long ssrc, long now)
+    {
+        synchronized (syncRoot)
+        {
+            LongObjectHashMap<SeenSsrc> seenSsrcs = this.seenSsrcs;
+            SeenSsrc seen = seenSsrcs.get(ssrc);
+
+            if (seen != null)
+            {
+                seen.lastSeenMs = now;
+                return;
+            }
+
+            LongObjectHashMap<SeenSsrc> map
+                = new LongObjectHashMap<>(seenSsrcs);
+
+            if (map.size() >= MAX_SEEN_SSRCS)
+            {
+                long eldestSsrc = -1;
+                long eldestMs = Long.MAX_VALUE;
+
+                for (long key : map.keys())
+                {
+                    long lastSeenMs = map.get(key).lastSeenMs;
+
+                    if (lastSeenMs < eldestMs)
+                    {
+                        eldestSsrc = key;
+                        eldestMs = lastSeenMs;
+                    }
+                }
+                map.remove(eldestSsrc);
+            }
+            map.put(ssrc, new SeenSsrc(now));
+            this.seenSsrcs = map;
+        }
+    }
+
+    /**
+     * Drops the receivers and the seen media SSRCs which have not seen any
+     * packet for {@link #TIMEOUT_MS}.
+     *
+     * @param now the current time in milliseconds.
+     */
+    private void expire(long now)
+    {
+        List<FlexFecReceiver> expired = null;
+
+        synchronized (syncRoot)
+        {
+            if (now < nextExpireMs)
+                return;
+            nextExpireMs = now + EXPIRE_INTERVAL_MS;
+
+            for (Iterator<FlexFecReceiver> i = receivers.values().iterator();
+                    i.hasNext();)
+            {
+                FlexFecReceiver receiver = i.next();
+
+                if (now - receiver.getLastActivityMs() >= TIMEOUT_MS)
+                {
+                    i.remove();
+                    if (expired == null)
+                        expired = new ArrayList<>();
+                    expired.add(receiver);
+                }
+            }
+            LongObjectHashMap<SeenSsrc> map = null;
+
+            for (long ssrc : seenSsrcs.keys())
+            {
+                if (now - seenSsrcs.get(ssrc).lastSeenMs >= TIMEOUT_MS)
+                {
+                    if (map == null)
+                        map = new LongObjectHashMap<>(seenSsrcs);
+                    map.remove(ssrc);
+                }
+            }
+            if (map != null)
+                seenSsrcs = map;
+        }
+        if (expired != null)
+        {
+            for (FlexFecReceiver receiver : expired)
+                receiver.close();
+        }
+    }
+
+    /**
+     * Notifies this instance that an RTCP report was received and adapts the
+     * protection level of the protected SSRCs which it reports on.
+     *
+     * @param report the received RTCP report.
+     */
+    private void rtcpReportReceived(RTCPReport report)
+    {
+        List<RTCPFeedback> feedbacks = report.getFeedbackReports();
+
+        if (feedbacks == null || feedbacks.isEmpty())
+            return;
+
+        LongObjectHashMap<FlexFecSender> senders = this.senders;
+
+        for (RTCPFeedback feedback : feedbacks)
+        {
+            FlexFecSender sender = senders.get(feedback.getSSRC());
+
+            if (sender != null)
+                sender.setLossFraction(feedback.getFractionLost() / 256D);
+        }
+    }
+
+    /**
+     * Places the elements of an array into the <tt>null</tt> slots of
+     * another array, growing it if necessary.
+     *
+     * @param pkts the array to add to, or <tt>null</tt>.
+     * @param extra the elements to add, or <tt>null</tt>.
+     * @return an array with the elements of both <tt>pkts</tt> and
+     * <tt>extra</tt>.
+     */
+    private static RawPacket[] concat(RawPacket[] pkts, RawPacket[] extra)
+    {
+        if (extra == null || extra.length == 0)
+            return pkts;
+        if (pkts == null)
+            return extra;
+
+        int j = 0;
+
+        for (int i = 0; i < pkts.length && j < extra.length; i++)
+        {
+            if (pkts[i] == null)
+                pkts[i] = extra[j++];
+        }
+        if (j == extra.length)
+            return pkts;
+
+        RawPacket[] res
+            = Arrays.copyOf(pkts, pkts.length + extra.length - j);
+
+        System.arraycopy(extra, j, res, pkts.length, extra.length - j);
+        return res;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close()
+    {
+        if (stream != null)
+        {
+            stream.getMediaStreamStats().getRTCPReports()
+                .removeRTCPReportListener(rtcpReportListener);
+        }
+
+        List<FlexFecReceiver> receivers;
+
+        synchronized (syncRoot)
+        {
+            receivers = new ArrayList<>(this.receivers.values());
+            this.receivers.clear();
+            receiveSsrcs.clear();
+            seenSsrcs = new LongObjectHashMap<>();
+        }
+        for (FlexFecReceiver receiver : receivers)
+            receiver.close();
+
+        if (logger.isInfoEnabled())
+        {
+            for (long ssrc : senders.keys())
+            {
+                logger.info(
+                        "Closing FlexFEC for ssrc=" + ssrc + ". Sent "
+                            + senders.get(ssrc).getNumberOfFecPackets()
+                            + " repair packets.");
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PacketTransformer getRTPTransformer()
+    {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * FlexFEC does not touch RTCP.
+     */
+    @Override
+    public PacketTransformer getRTCPTransformer()
+    {
+        return null;
+    }
+
+    /**
+     * The time at which a media SSRC without a <tt>FlexFecReceiver</tt> was
+     * last seen on the media path.
+     */
+    private static class SeenSsrc
+    {
+        /**
+         * The time in milliseconds at which the SSRC was last seen.
+         */
+        volatile long lastSeenMs;
+
+        /**
+         * Initializes a new <tt>SeenSsrc</tt> instance.
+         *
+         * @param lastSeenMs the time in milliseconds at which the SSRC was
+         * seen.
+         */
+        SeenSsrc(long lastSeenMs)
+        {
+            this.lastSeenMs = lastSeenMs;
+        }
+    }
+}
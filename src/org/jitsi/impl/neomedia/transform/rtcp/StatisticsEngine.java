@@ -140,15 +140,24 @@ private static boolean isRTCP(RawPacket pkt)
 
     /**
      * The number of RTCP sender reports (SR) and/or receiver reports (RR) sent.
-     * Mapped per ssrc.
      */
-    private final Map<Long,Long> numberOfRTCPReportsMap = new HashMap<>();
+    private final StripedLongCounter numberOfRTCPReports
+        = new StripedLongCounter();
+
+    /**
+     * The number of RTCP sender reports (SR) and/or receiver reports (RR) sent.
+     * Mapped per ssrc. Never modified once published: a modified copy is
+     * published instead (synchronized on {@link #numberOfRTCPReports}).
+     */
+    private volatile LongObjectHashMap<StripedLongCounter>
+        numberOfRTCPReportsMap
+            = new LongObjectHashMap<>();
 
     /**
      * The sum of the jitter values we have reported in RTCP reports, in RTP
      * timestamp units.
      */
-    private final Map<Long,Long> jitterSumMap = new HashMap<>();
+    private final StripedLongCounter jitterSum = new StripedLongCounter();
 
     /**
      * The {@link RTCPPacketParserEx} which this instance will use to parse
@@ -779,8 +788,8 @@ public long getMaxInterArrivalJitter()
      */
     public double getAvgInterArrivalJitter()
     {
-        long numberOfRTCPReports = getCumulativeValue(numberOfRTCPReportsMap);
-        long jitterSum = getCumulativeValue(jitterSumMap);
+        long numberOfRTCPReports = this.numberOfRTCPReports.sum();
+        long jitterSum = this.jitterSum.sum();
 
         return
             numberOfRTCPReports == 0
@@ -923,7 +932,8 @@ public RawPacket reverseTransform(RawPacket pkt)
 
             try
             {
-                updateReceivedMediaStreamStats(compound.packets);
+                updateReceivedMediaStreamStats(
+                        compound.packets, pkt.getBuffer(), pkt.getOffset());
             }
             catch (Throwable t)
             {
@@ -953,9 +963,12 @@ else if (t instanceof ThreadDeath)
      * packets and updates the {@link MediaStreamStats}. Adds to {@code out} the
      * ones which were not consumed and should be output from this instance.
      * @param in the array of received RTCP packets
+     * @param buf the buffer from which the packets in {@code in} were parsed
+     * @param off the offset in {@code buf} at which the compound RTCP packet
+     * starts
      */
     private void updateReceivedMediaStreamStats(
-            RTCPPacket[] in)
+            RTCPPacket[] in, byte[] buf, int off)
     {
         MediaStreamStatsImpl streamStats = mediaStream.getMediaStreamStats();
 
@@ -990,17 +1003,16 @@ private void updateReceivedMediaStreamStats(
 
                 try
                 {
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-                    rtcp.assemble(new DataOutputStream(baos));
-
-                    byte[] buf = baos.toByteArray();
-
-                    report = parseRTCPReport(rtcp.type, buf, 0, buf.length);
+                    // The parser records the offset of each packet relative
+                    // to the compound packet so the report can be read from
+                    // the received bytes rather than re-assembled.
+                    report
+                        = parseRTCPReport(
+                                rtcp.type, buf, off + rtcp.offset, rtcp.length);
                 }
                 catch (IOException ioe)
                 {
-                    logger.error("Failed to assemble an RTCP report: " + ioe);
+                    logger.error("Failed to parse an RTCP report: " + ioe);
                     report = null;
                 }
                 if (report != null)
@@ -1018,6 +1030,12 @@ private void updateReceivedMediaStreamStats(
 
                     streamStats.nackReceived(nack);
                 }
+                else if (rtcp instanceof RTCPTCCPacket)
+                {
+                    RTCPTCCPacket tcc = (RTCPTCCPacket) rtcp;
+
+                    streamStats.tccReceived(tcc);
+                }
                 break;
 
             case RTCPExtendedReport.XR:
@@ -1138,7 +1156,11 @@ private void updateSentMediaStreamStats(RawPacket pkt)
                 long ssrc = feedback.getSSRC();
                 long jitter = feedback.getJitter();
 
-                incrementSSRCCounter(numberOfRTCPReportsMap, ssrc, 1);
+                StripedLongCounter numberOfSSRCReports
+                    = getNumberOfRTCPReports(ssrc);
+
+                numberOfSSRCReports.increment();
+                numberOfRTCPReports.increment();
 
                 if (jitter < getMinInterArrivalJitter()
                         || getMinInterArrivalJitter() == -1)
@@ -1148,12 +1170,11 @@ private void updateSentMediaStreamStats(RawPacket pkt)
                 if (getMaxInterArrivalJitter() < jitter)
                     maxInterArrivalJitter = jitter;
 
-                incrementSSRCCounter(jitterSumMap, ssrc, jitter);
+                jitterSum.add(jitter);
 
                 if(logger.isTraceEnabled())
                 {
-                    long numberOfRTCPReports
-                        = getMapValue(numberOfRTCPReportsMap, ssrc);
+                    long numberOfRTCPReports = numberOfSSRCReports.sum();
                     // As sender reports are sent on every 5 seconds, print
                     // every 4th packet, on every 20 seconds.
                     if(numberOfRTCPReports % 4 == 1)
@@ -1189,68 +1210,33 @@ private void updateSentMediaStreamStats(RawPacket pkt)
     }
 
     /**
-     * Computes the sum of the values of a specific {@code Map} with
-     * {@code Long} values.
+     * Gets the counter of the RTCP reports sent about a specific SSRC.
+     * Creates it if necessary.
      *
-     * @param map the {@code Map} with {@code Long} values to sum up. Note that
-     * we synchronize on this object!
-     * @return the sum of the values of the specified {@code map}
+     * @param ssrc the SSRC
+     * @return the counter of the RTCP reports sent about <tt>ssrc</tt>
      */
-    private static long getCumulativeValue(Map<?,Long> map)
+    private StripedLongCounter getNumberOfRTCPReports(long ssrc)
     {
-        long cumulativeValue = 0;
+        StripedLongCounter counter = numberOfRTCPReportsMap.get(ssrc);
 
-        synchronized (map)
+        if (counter == null)
         {
-            for (Long value : map.values())
+            synchronized (numberOfRTCPReports)
             {
-                if (value == null)
-                    continue;
+                counter = numberOfRTCPReportsMap.get(ssrc);
+                if (counter == null)
+                {
+                    LongObjectHashMap<StripedLongCounter> map
+                        = new LongObjectHashMap<>(numberOfRTCPReportsMap);
 
-                cumulativeValue += value;
+                    counter = new StripedLongCounter();
+                    map.put(ssrc, counter);
+                    numberOfRTCPReportsMap = map;
+                }
             }
         }
-        return cumulativeValue;
-    }
-
-    /**
-     * Utility method to return a value from a map and perform unboxing only if
-     * the result value is not null.
-     * @param map the map to get the value. Note that we synchronize on that
-     * object!
-     * @param ssrc the key
-     * @return the result value or 0 if nothing is found.
-     */
-    private static long getMapValue(Map<?,Long> map, long ssrc)
-    {
-        synchronized (map)
-        {
-            // there can be no entry, or the value can be null
-            Long res = map.get(ssrc);
-            return res == null ? 0 : res;
-        }
-    }
-
-    /**
-     * Utility method to increment map value with specified step. If entry is
-     * missing add it.
-     *
-     * @param map the map holding the values. Note that we synchronize on that
-     * object!
-     * @param ssrc the key of the value to increment
-     * @param step increment step value
-     */
-    private static void incrementSSRCCounter(
-            Map<Long,Long> map,
-            long ssrc,
-            long step)
-    {
-        synchronized(map)
-        {
-            Long count = map.get(ssrc);
-
-            map.put(ssrc, (count == null) ? step : (count + step));
-        }
+        return counter;
     }
 
     private class RTPPacketTransformer
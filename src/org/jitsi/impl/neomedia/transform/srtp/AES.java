@@ -137,6 +137,62 @@
      */
     private static final Random random = new Random();
 
+    /**
+     * The index in {@link #GCM_IMPLS} of the AES-GCM implementation which
+     * implements {@link SRTPCipherGCMJava} i.e. GCM on top of the
+     * <tt>BlockCipher</tt> elected by {@link #createBlockCipher(int)}. It is
+     * always functional and, consequently, the fallback.
+     */
+    private static final int GCM_JAVA = 2;
+
+    /**
+     * The index in {@link #GCM_IMPLS} of the AES-GCM implementation which
+     * implements {@link SRTPCipherGCMJCE}.
+     */
+    private static final int GCM_JCE = 1;
+
+    /**
+     * The index in {@link #GCM_IMPLS} of the AES-GCM implementation which
+     * implements {@link SRTPCipherGCMOpenSSL}.
+     */
+    private static final int GCM_OPENSSL = 0;
+
+    /**
+     * The (simple) names of the AES-GCM implementations which are benchmarked
+     * by the class <tt>AES</tt> and among which the fastest-performing one is
+     * elected by {@link #createGCMCipher(int)}.
+     */
+    private static final String[] GCM_IMPLS = { "OpenSSL", "JCE", "Java" };
+
+    /**
+     * The indicators which determine whether the respective elements of
+     * {@link #GCM_IMPLS} may be benchmarked. An AES-GCM implementation which
+     * fails to initialize is not benchmarked again because the failure may
+     * persist.
+     */
+    private static final boolean[] gcmImplsFunctional
+        = { true, true, true };
+
+    /**
+     * The index in {@link #GCM_IMPLS} of the AES-GCM implementation elected by
+     * {@link #createGCMCipher(int)} or <tt>-1</tt> if none has been elected
+     * yet.
+     */
+    private static int gcmImpl = -1;
+
+    /**
+     * The time in milliseconds at which the AES-GCM implementations were
+     * benchmarked and {@link #gcmImpl} was elected.
+     */
+    private static long gcmImplTimestamp;
+
+    /**
+     * The indicator which determines whether AES in GCM mode is implemented by
+     * OpenSSL (i.e. {@link SRTPCipherGCMOpenSSL} is usable). <tt>null</tt>
+     * until determined by {@link #isGCMNative()}.
+     */
+    private static Boolean gcmNative;
+
     static
     {
         ConfigurationService cfg = LibJitsi.getConfigurationService();
@@ -323,6 +379,212 @@ else if (t instanceof ThreadDeath)
         }
     }
 
+    /**
+     * Initializes a new <tt>SRTPCipherGCM</tt> instance for AES in GCM mode
+     * (RFC 7714). Like the <tt>BlockCipherFactory</tt> of
+     * {@link #createBlockCipher(int)}, the AES-GCM implementation is elected
+     * among OpenSSL, the Java Cryptography Extension and GCM on top of the
+     * elected <tt>BlockCipher</tt> by a benchmark which is repeated after
+     * {@link #FACTORY_TIMEOUT}.
+     *
+     * @param keySize AES key size (16, 24, 32 bytes)
+     * @return a new <tt>SRTPCipherGCM</tt> instance
+     */
+    static SRTPCipherGCM createGCMCipher(int keySize)
+    {
+        int gcmImpl;
+
+        synchronized (AES.class)
+        {
+            long now = System.currentTimeMillis();
+
+            gcmImpl = AES.gcmImpl;
+            if ((gcmImpl == -1) || (now > gcmImplTimestamp + FACTORY_TIMEOUT))
+            {
+                gcmImpl = benchmarkGCM(keySize);
+                if (gcmImpl == -1)
+                    gcmImpl = GCM_JAVA;
+
+                AES.gcmImplTimestamp = now;
+                if (AES.gcmImpl != gcmImpl)
+                {
+                    AES.gcmImpl = gcmImpl;
+                    logger.info(
+                            "Will employ AES-GCM implemented by "
+                                + GCM_IMPLS[gcmImpl] + ".");
+                }
+            }
+        }
+
+        if (gcmImpl != GCM_JAVA)
+        {
+            try
+            {
+                return createGCMCipher(gcmImpl, keySize);
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof InterruptedException)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                else if (t instanceof ThreadDeath)
+                {
+                    throw (ThreadDeath) t;
+                }
+                else
+                {
+                    logger.warn(
+                            "Failed to initialize the " + GCM_IMPLS[gcmImpl]
+                                + " AES-GCM implementation: "
+                                + t.getLocalizedMessage());
+                }
+            }
+        }
+        return new SRTPCipherGCMJava(createBlockCipher(keySize));
+    }
+
+    /**
+     * Initializes a new <tt>SRTPCipherGCM</tt> instance of a specific AES-GCM
+     * implementation.
+     *
+     * @param gcmImpl the index in {@link #GCM_IMPLS} of the AES-GCM
+     * implementation to initialize a new instance of
+     * @param keySize AES key size (16, 24, 32 bytes)
+     * @return a new <tt>SRTPCipherGCM</tt> instance of the AES-GCM
+     * implementation specified by <tt>gcmImpl</tt>
+     * @throws Exception if the specified AES-GCM implementation is not
+     * functional
+     */
+    private static SRTPCipherGCM createGCMCipher(int gcmImpl, int keySize)
+        throws Exception
+    {
+        switch (gcmImpl)
+        {
+        case GCM_OPENSSL:
+            return new SRTPCipherGCMOpenSSL();
+        case GCM_JCE:
+            return new SRTPCipherGCMJCE();
+        default:
+            return new SRTPCipherGCMJava(createBlockCipher(keySize));
+        }
+    }
+
+    /**
+     * Benchmarks the AES-GCM implementations which have not failed so far and
+     * returns the fastest-performing one.
+     *
+     * @param keySize AES key size (16, 24, 32 bytes)
+     * @return the index in {@link #GCM_IMPLS} of the fastest-performing
+     * AES-GCM implementation or <tt>-1</tt> if none is functional
+     */
+    private static int benchmarkGCM(int keySize)
+    {
+        Random random = AES.random;
+        byte[] key = new byte[keySize];
+        byte[] iv = new byte[SRTPCipherGCM.IV_LENGTH];
+        // The authentication tag is written at the end of in.
+        byte[] in = AES.in;
+        int aadLen = 12;
+        int len = in.length - aadLen - SRTPCipherGCM.TAG_LENGTH;
+        long minTime = Long.MAX_VALUE;
+        int minGCMImpl = -1;
+
+        StringBuilder log = new StringBuilder();
+
+        for (int i = 0; i < GCM_IMPLS.length; ++i)
+        {
+            if (!gcmImplsFunctional[i])
+                continue;
+
+            random.nextBytes(key);
+            random.nextBytes(iv);
+            random.nextBytes(in);
+
+            try
+            {
+                SRTPCipherGCM cipher = createGCMCipher(i, keySize);
+
+                cipher.init(key);
+
+                long startTime = System.nanoTime();
+
+                cipher.begin(true, iv);
+                cipher.processAAD(in, 0, aadLen);
+                cipher.finish(in, aadLen, len);
+
+                long endTime = System.nanoTime();
+                long time = endTime - startTime;
+
+                if (time < minTime)
+                {
+                    minTime = time;
+                    minGCMImpl = i;
+                }
+
+                if (log.length() != 0)
+                    log.append(", ");
+
+                log.append(GCM_IMPLS[i]).append(' ').append(time);
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof InterruptedException)
+                    Thread.currentThread().interrupt();
+                else if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+                else if (i != GCM_JAVA)
+                    gcmImplsFunctional[i] = false;
+            }
+        }
+
+        if (log.length() != 0)
+        {
+            logger.info(
+                    "AES-GCM benchmark"
+                        + " (of execution times expressed in nanoseconds): "
+                        + log);
+        }
+
+        return minGCMImpl;
+    }
+
+    /**
+     * Determines whether AES in GCM mode is implemented by OpenSSL in the
+     * current runtime i.e. whether AES-GCM is available without the overhead
+     * of the Java implementations.
+     *
+     * @return <tt>true</tt> if AES in GCM mode is implemented by OpenSSL;
+     * otherwise, <tt>false</tt>
+     */
+    public static boolean isGCMNative()
+    {
+        synchronized (AES.class)
+        {
+            if (gcmNative == null)
+            {
+                boolean b = false;
+
+                try
+                {
+                    new SRTPCipherGCMOpenSSL().init(new byte[16]);
+                    b = true;
+                }
+                catch (Throwable t)
+                {
+                    // The (prebuilt) OpenSSL wrapper may be unavailable or may
+                    // predate AES-GCM.
+                    if (t instanceof InterruptedException)
+                        Thread.currentThread().interrupt();
+                    else if (t instanceof ThreadDeath)
+                        throw (ThreadDeath) t;
+                }
+                gcmNative = Boolean.valueOf(b);
+            }
+            return gcmNative.booleanValue();
+        }
+    }
+
     /**
      * Initializes the <tt>BlockCipherFactory</tt> instances to be benchmarked
      * by the class <tt>AES</tt> and among which the fastest-performing one is
@@ -87,6 +87,11 @@
      */
     protected final SRTPCipherF8 cipherF8;
 
+    /**
+     * implements the authenticated encryption of the GCM mode (RFC 7714)
+     */
+    protected final SRTPCipherGCM cipherGcm;
+
     /**
      * Derived session encryption key
      */
@@ -160,6 +165,7 @@ protected BaseSRTPCryptoContext(int ssrc)
         authKey = null;
         cipherCtr = null;
         cipherF8 = null;
+        cipherGcm = null;
         encKey = null;
         mac = null;
         masterKey = null;
@@ -186,11 +192,18 @@ protected BaseSRTPCryptoContext(
 
         int saltKeyLength = policy.getSaltKeyLength();
 
-        masterSalt = new byte[saltKeyLength];
+        // RFC 7714 uses a 96-bit master salt which the AES-CM key derivation
+        // function of RFC 3711 pads with zeros to 112 bits.
+        masterSalt
+            = new byte[
+                    (policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION)
+                        ? Math.max(saltKeyLength, 14)
+                        : saltKeyLength];
         System.arraycopy(masterS, 0, masterSalt, 0, saltKeyLength);
 
         SRTPCipherCTR cipherCtr = null;
         SRTPCipherF8 cipherF8 = null;
+        SRTPCipherGCM cipherGcm = null;
         byte[] encKey = null;
         byte[] saltKey = null;
 
@@ -219,6 +232,15 @@ protected BaseSRTPCryptoContext(
             saltKey = new byte[saltKeyLength];
             break;
 
+        case SRTPPolicy.AESGCM_ENCRYPTION:
+            cipherGcm = AES.createGCMCipher(encKeyLength);
+            // The session keys are derived using AES in Counter Mode.
+            cipherCtr
+                = new SRTPCipherCTRJava(AES.createBlockCipher(encKeyLength));
+            encKey = new byte[encKeyLength];
+            saltKey = new byte[saltKeyLength];
+            break;
+
         case SRTPPolicy.TWOFISHF8_ENCRYPTION:
             cipherF8 = new SRTPCipherF8(new TwofishEngine());
             //$FALL-THROUGH$
@@ -231,6 +253,7 @@ protected BaseSRTPCryptoContext(
         }
         this.cipherCtr = cipherCtr;
         this.cipherF8 = cipherF8;
+        this.cipherGcm = cipherGcm;
         this.encKey = encKey;
         this.saltKey = saltKey;
 
@@ -200,6 +200,8 @@ synchronized public void deriveSrtcpKeys()
         // As last step: initialize cipher with derived encryption key.
         if (cipherF8 != null)
             cipherF8.init(encKey, saltKey);
+        if (cipherGcm != null)
+            cipherGcm.init(encKey);
         cipherCtr.init(encKey);
         Arrays.fill(encKey, (byte) 0);
     }
@@ -252,6 +254,113 @@ public void processPacketAESCM(RawPacket pkt, int index)
                 ivStore);
     }
 
+    /**
+     * Performs Galois/Counter Mode AES authenticated encryption/decryption
+     * (RFC 7714). When encrypting, the authentication tag and the SRTCP index
+     * are appended to the packet. When decrypting, they are removed from it.
+     *
+     * @param pkt the RTCP packet to be encrypted/decrypted
+     * @param indexEflag the SRTCP index of <tt>pkt</tt> and the E flag
+     * @param encrypt <tt>true</tt> to encrypt <tt>pkt</tt> or <tt>false</tt>
+     * to decrypt it
+     * @return <tt>false</tt> if <tt>pkt</tt> is to be decrypted and fails
+     * authentication; otherwise, <tt>true</tt>
+     */
+    private boolean processPacketAESGCM(
+            RawPacket pkt,
+            int indexEflag,
+            boolean encrypt)
+    {
+        int ssrc = (int) pkt.getRTCPSSRC();
+        int index = indexEflag & ~0x80000000;
+
+        /* Compute the GCM IV (refer to chapter 9.1 in RFC 7714):
+         *
+         * IV    00 00 SSRC------- 00 00 index------
+         * salt  XX XX XX XX XX XX XX XX XX XX XX XX
+         * ------------------------------------------XOR
+         *        0  1  2  3  4  5  6  7  8  9 10 11
+         */
+        ivStore[0] = saltKey[0];
+        ivStore[1] = saltKey[1];
+        ivStore[2] = (byte) ((ssrc >> 24) ^ saltKey[2]);
+        ivStore[3] = (byte) ((ssrc >> 16) ^ saltKey[3]);
+        ivStore[4] = (byte) ((ssrc >> 8) ^ saltKey[4]);
+        ivStore[5] = (byte) (ssrc ^ saltKey[5]);
+        ivStore[6] = saltKey[6];
+        ivStore[7] = saltKey[7];
+        ivStore[8] = (byte) ((index >> 24) ^ saltKey[8]);
+        ivStore[9] = (byte) ((index >> 16) ^ saltKey[9]);
+        ivStore[10] = (byte) ((index >> 8) ^ saltKey[10]);
+        ivStore[11] = (byte) (index ^ saltKey[11]);
+
+        // The E flag and the SRTCP index are additional authenticated data.
+        rbStore[0] = (byte) (indexEflag >> 24);
+        rbStore[1] = (byte) (indexEflag >> 16);
+        rbStore[2] = (byte) (indexEflag >> 8);
+        rbStore[3] = (byte) indexEflag;
+
+        int tagLength = SRTPCipherGCM.TAG_LENGTH;
+
+        if (encrypt)
+        {
+            // Grow packet storage in one step
+            pkt.grow(tagLength + 4);
+
+            byte[] buf = pkt.getBuffer();
+            int off = pkt.getOffset();
+            int len = pkt.getLength();
+
+            // Encrypted part excludes fixed header (8 bytes)
+            cipherGcm.begin(true, ivStore);
+            cipherGcm.processAAD(buf, off, 8);
+            cipherGcm.processAAD(rbStore, 0, 4);
+            len = 8 + cipherGcm.finish(buf, off + 8, len - 8);
+            pkt.setLength(len);
+            pkt.append(rbStore, 4);
+            return true;
+        }
+        else
+        {
+            // The SRTCP index follows the authentication tag.
+            pkt.shrink(4);
+
+            byte[] buf = pkt.getBuffer();
+            int off = pkt.getOffset();
+            int len = pkt.getLength();
+
+            if (len < 8 + tagLength)
+                return false;
+
+            cipherGcm.begin(false, ivStore);
+            if ((indexEflag & 0x80000000) == 0x80000000)
+            {
+                cipherGcm.processAAD(buf, off, 8);
+                cipherGcm.processAAD(rbStore, 0, 4);
+
+                int payloadLength = cipherGcm.finish(buf, off + 8, len - 8);
+
+                if (payloadLength < 0)
+                    return false;
+                pkt.setLength(8 + payloadLength);
+            }
+            else
+            {
+                // The packet is not encrypted so all of it is additional
+                // authenticated data (refer to chapter 9.3 in RFC 7714).
+                cipherGcm.processAAD(buf, off, len - tagLength);
+                cipherGcm.processAAD(rbStore, 0, 4);
+                if (cipherGcm.finish(buf, off + len - tagLength, tagLength)
+                        < 0)
+                {
+                    return false;
+                }
+                pkt.shrink(tagLength);
+            }
+            return true;
+        }
+    }
+
     /**
      * Performs F8 Mode AES encryption/decryption
      *
@@ -306,8 +415,10 @@ public void processPacketAESF8(RawPacket pkt, int index)
     synchronized public boolean reverseTransformPacket(RawPacket pkt)
     {
         boolean decrypt = false;
+        boolean gcm = policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION;
         int tagLength = policy.getAuthTagLength();
-        int indexEflag = pkt.getSRTCPIndex(tagLength);
+        // With GCM, the SRTCP index follows the authentication tag.
+        int indexEflag = pkt.getSRTCPIndex(gcm ? 0 : tagLength);
 
         if ((indexEflag & 0x80000000) == 0x80000000)
             decrypt = true;
@@ -320,6 +431,15 @@ synchronized public boolean reverseTransformPacket(RawPacket pkt)
             return false;
         }
 
+        /* Authenticate and decrypt the packet using GCM */
+        if (gcm)
+        {
+            if (!processPacketAESGCM(pkt, indexEflag, false))
+                return false;
+            update(index);
+            return true;
+        }
+
         /* Authenticate the packet */
         if (policy.getAuthType() != SRTPPolicy.NULL_AUTHENTICATION)
         {
@@ -382,6 +502,15 @@ else if (policy.getEncType() == SRTPPolicy.AESF8_ENCRYPTION
      */
     synchronized public void transformPacket(RawPacket pkt)
     {
+        /* Encrypt and authenticate the packet using GCM */
+        if (policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION)
+        {
+            processPacketAESGCM(pkt, sentIndex | 0x80000000, true);
+            sentIndex++;
+            sentIndex &= ~0x80000000;       // clear possible overflow
+            return;
+        }
+
         boolean encrypt = false;
         /* Encrypt the packet using Counter Mode encryption */
         if (policy.getEncType() == SRTPPolicy.AESCM_ENCRYPTION ||
@@ -29,6 +29,12 @@
 {
     protected static final int BLKLEN = 16;
 
+    /**
+     * The counter used by {@link #process(byte[][], int[], int[], byte[], int)}
+     * for the region which is being processed.
+     */
+    private final byte[] batchIv = new byte[BLKLEN];
+
     /**
      * (Re)Initialize the cipher with key
      *
@@ -48,6 +54,32 @@
      */
     public abstract void process(byte[] data, int off, int len, byte[] iv);
 
+    /**
+     * Process (encrypt/decrypt) several regions of data, each with its own
+     * initial value of the counter, in one call. The default implementation
+     * invokes {@link #process(byte[], int, int, byte[])} for each region.
+     * Implementations which pay a fixed cost per call (e.g. a native
+     * crossing) are expected to override it.
+     *
+     * @param data the byte arrays to be processed
+     * @param off the offsets of the regions in the respective <tt>data</tt>
+     * @param len the lengths of the regions
+     * @param ivs the initial values of the counters of the regions,
+     *            <tt>BLKLEN</tt> bytes per region (can be modified)
+     * @param count the number of regions to process
+     */
+    public void process(
+            byte[][] data, int[] off, int[] len, byte[] ivs, int count)
+    {
+        checkProcessArgs(ivs, count);
+
+        for (int i = 0; i < count; i++)
+        {
+            System.arraycopy(ivs, i * BLKLEN, batchIv, 0, BLKLEN);
+            process(data[i], off[i], len[i], batchIv);
+        }
+    }
+
     /**
      * Check the validity of process function arguments
      */
@@ -55,6 +87,26 @@ protected static void checkProcessArgs(byte[] data, int off, int len, byte[] iv)
     {
         if (iv.length != BLKLEN)
             throw new IllegalArgumentException("iv.length != BLKLEN");
+        checkProcessArgs(data, off, len);
+    }
+
+    /**
+     * Check the validity of the arguments of the batch process function which
+     * are not specific to a region
+     */
+    protected static void checkProcessArgs(byte[] ivs, int count)
+    {
+        if (count < 0)
+            throw new IllegalArgumentException("count < 0");
+        if (ivs.length < count * BLKLEN)
+            throw new IllegalArgumentException("ivs.length < count * BLKLEN");
+    }
+
+    /**
+     * Check the validity of the region arguments of process functions
+     */
+    protected static void checkProcessArgs(byte[] data, int off, int len)
+    {
         if (off < 0)
             throw new IllegalArgumentException("off < 0");
         if (len < 0)
@@ -0,0 +1,80 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+/**
+ * SRTPCipherGCM implementations implement the AEAD_AES_128_GCM and
+ * AEAD_AES_256_GCM authenticated encryption algorithms for SRTP and SRTCP as
+ * defined in RFC 7714. A packet is processed in place: its additional
+ * authenticated data is supplied with {@link #processAAD(byte[], int, int)}
+ * and its plaintext (respectively ciphertext and authentication tag) with
+ * {@link #finish(byte[], int, int)}.
+ */
+abstract class SRTPCipherGCM
+{
+    /**
+     * The length in bytes of the initialization vector (i.e. nonce).
+     */
+    public static final int IV_LENGTH = 12;
+
+    /**
+     * The length in bytes of the authentication tag which RFC 7714 mandates.
+     */
+    public static final int TAG_LENGTH = 16;
+
+    /**
+     * (Re)Initialize the cipher with key
+     *
+     * @param key the key. key.length == 16 or key.length == 32
+     */
+    public abstract void init(byte[] key);
+
+    /**
+     * Starts the processing of a packet.
+     *
+     * @param encrypt <tt>true</tt> to encrypt and <tt>false</tt> to decrypt
+     * @param iv the initialization vector of the packet in its first
+     *           <tt>IV_LENGTH</tt> bytes
+     */
+    public abstract void begin(boolean encrypt, byte[] iv);
+
+    /**
+     * Supplies additional authenticated data of the packet which is being
+     * processed. May be invoked multiple times after {@link #begin} and
+     * before {@link #finish}.
+     *
+     * @param data byte array with the additional authenticated data
+     * @param off the offset
+     * @param len the length
+     */
+    public abstract void processAAD(byte[] data, int off, int len);
+
+    /**
+     * Encrypts or decrypts in place the data of the packet which is being
+     * processed. When encrypting, the authentication tag is written after the
+     * ciphertext so <tt>data</tt> must have <tt>TAG_LENGTH</tt> more bytes
+     * after the plaintext. When decrypting, the authentication tag is expected
+     * to be the last <tt>TAG_LENGTH</tt> bytes of the region.
+     *
+     * @param data byte array to be processed
+     * @param off the offset
+     * @param len the length of the plaintext when encrypting or the length of
+     *            the ciphertext and authentication tag when decrypting
+     * @return the number of bytes written at <tt>off</tt> or <tt>-1</tt> if
+     * the authentication of a packet which is being decrypted fails
+     */
+    public abstract int finish(byte[] data, int off, int len);
+}
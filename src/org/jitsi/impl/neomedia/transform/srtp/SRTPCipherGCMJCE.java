@@ -0,0 +1,102 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import java.security.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+/**
+ * @see SRTPCipherGCM
+ * SRTPCipherGCM implementation using the AES/GCM/NoPadding <tt>Cipher</tt> of
+ * the Java Cryptography Extension. Recent JREs implement it with the AES and
+ * carry-less multiplication instructions of the CPU.
+ */
+public class SRTPCipherGCMJCE extends SRTPCipherGCM
+{
+    /**
+     * The transformation of the <tt>Cipher</tt>s used by
+     * <tt>SRTPCipherGCMJCE</tt>.
+     */
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private final Cipher cipher;
+
+    private SecretKeySpec key;
+
+    public SRTPCipherGCMJCE()
+        throws GeneralSecurityException
+    {
+        cipher = Cipher.getInstance(TRANSFORMATION);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void init(byte[] key)
+    {
+        if (key.length != 16 && key.length != 32)
+            throw new IllegalArgumentException("Not an AES-GCM key length");
+
+        this.key = new SecretKeySpec(key, "AES");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void begin(boolean encrypt, byte[] iv)
+    {
+        try
+        {
+            cipher.init(
+                    encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE,
+                    key,
+                    new GCMParameterSpec(TAG_LENGTH * 8, iv, 0, IV_LENGTH));
+        }
+        catch (GeneralSecurityException gse)
+        {
+            throw new RuntimeException(gse);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void processAAD(byte[] data, int off, int len)
+    {
+        cipher.updateAAD(data, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int finish(byte[] data, int off, int len)
+    {
+        try
+        {
+            return cipher.doFinal(data, off, len, data, off);
+        }
+        catch (AEADBadTagException abte)
+        {
+            return -1;
+        }
+        catch (GeneralSecurityException gse)
+        {
+            throw new RuntimeException(gse);
+        }
+    }
+}
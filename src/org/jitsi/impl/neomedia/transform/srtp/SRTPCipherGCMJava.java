@@ -0,0 +1,91 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import org.bouncycastle.crypto.*;
+import org.bouncycastle.crypto.modes.*;
+import org.bouncycastle.crypto.params.*;
+
+/**
+ * @see SRTPCipherGCM
+ * SRTPCipherGCM implementation using the BouncyCastle <tt>GCMBlockCipher</tt>
+ * on top of a <tt>BlockCipher</tt> (e.g. the one elected by
+ * {@link AES#createBlockCipher(int)}).
+ */
+public class SRTPCipherGCMJava extends SRTPCipherGCM
+{
+    private final GCMBlockCipher cipher;
+
+    /**
+     * The key to initialize {@link #cipher} with upon the next invocation of
+     * {@link #begin(boolean, byte[])}. The hash subkey is computed only when
+     * the key changes.
+     */
+    private KeyParameter key;
+
+    private final byte[] nonce = new byte[IV_LENGTH];
+
+    public SRTPCipherGCMJava(BlockCipher cipher)
+    {
+        this.cipher = new GCMBlockCipher(cipher);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void init(byte[] key)
+    {
+        if (key.length != 16 && key.length != 32)
+            throw new IllegalArgumentException("Not an AES-GCM key length");
+
+        this.key = new KeyParameter(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void begin(boolean encrypt, byte[] iv)
+    {
+        System.arraycopy(iv, 0, nonce, 0, IV_LENGTH);
+        cipher.init(encrypt, new AEADParameters(key, TAG_LENGTH * 8, nonce));
+        key = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void processAAD(byte[] data, int off, int len)
+    {
+        cipher.processAADBytes(data, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int finish(byte[] data, int off, int len)
+    {
+        int outLen = cipher.processBytes(data, off, len, data, off);
+
+        try
+        {
+            return outLen + cipher.doFinal(data, off + outLen);
+        }
+        catch (InvalidCipherTextException icte)
+        {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+/**
+ * @see SRTPCipherGCM
+ * SRTPCipherGCM implementation using OpenSSL via JNI.
+ */
+public class SRTPCipherGCMOpenSSL extends SRTPCipherGCM
+{
+    private static native boolean AES_GCM_CTX_begin(
+            long ctx,
+            boolean encrypt,
+            byte[] iv);
+
+    private static native long AES_GCM_CTX_create();
+
+    private static native void AES_GCM_CTX_destroy(long ctx);
+
+    /**
+     * @return the number of bytes written at <tt>offset</tt>, <tt>-1</tt> if
+     * the authentication of the data which is being decrypted fails or
+     * <tt>-2</tt> if OpenSSL fails otherwise.
+     */
+    private static native int AES_GCM_CTX_finish(
+            long ctx,
+            boolean encrypt,
+            byte[] inOut, int offset, int len);
+
+    private static native boolean AES_GCM_CTX_init(long ctx, byte[] key);
+
+    private static native boolean AES_GCM_CTX_processAAD(
+            long ctx,
+            byte[] data, int offset, int len);
+
+    /**
+     * the OpenSSL AES-GCM context
+     */
+    private long ctx;
+
+    /**
+     * Whether the packet which is being processed is being encrypted or
+     * decrypted.
+     */
+    private boolean encrypt;
+
+    public SRTPCipherGCMOpenSSL()
+    {
+        if (!OpenSSLWrapperLoader.isLoaded())
+            throw new RuntimeException("OpenSSL wrapper not loaded");
+
+        ctx = AES_GCM_CTX_create();
+        if (ctx == 0)
+            throw new RuntimeException("CIPHER_CTX_create");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void init(byte[] key)
+    {
+        if (key.length != 16 && key.length != 32)
+            throw new IllegalArgumentException("Not an AES-GCM key length");
+
+        if (!AES_GCM_CTX_init(ctx, key))
+            throw new RuntimeException("AES_GCM_CTX_init");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void begin(boolean encrypt, byte[] iv)
+    {
+        if (iv.length < IV_LENGTH)
+            throw new IllegalArgumentException("iv.length < IV_LENGTH");
+
+        this.encrypt = encrypt;
+        if (!AES_GCM_CTX_begin(ctx, encrypt, iv))
+            throw new RuntimeException("AES_GCM_CTX_begin");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void processAAD(byte[] data, int off, int len)
+    {
+        checkArgs(data, off, len);
+
+        if (!AES_GCM_CTX_processAAD(ctx, data, off, len))
+            throw new RuntimeException("AES_GCM_CTX_processAAD");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int finish(byte[] data, int off, int len)
+    {
+        checkArgs(data, off, encrypt ? len + TAG_LENGTH : len);
+
+        int ret = AES_GCM_CTX_finish(ctx, encrypt, data, off, len);
+
+        if (ret < -1)
+            throw new RuntimeException("AES_GCM_CTX_finish");
+        return ret;
+    }
+
+    /**
+     * Checks that a specific region lies within a specific array because the
+     * native code does not.
+     *
+     * @param data the array
+     * @param off the offset of the region
+     * @param len the length of the region
+     */
+    private static void checkArgs(byte[] data, int off, int len)
+    {
+        if (off < 0 || len < 0 || off + len > data.length)
+            throw new IllegalArgumentException("off or len out of bounds");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void finalize() throws Throwable
+    {
+        try
+        {
+            // The destroying in the finalizer is a backup as is the case with
+            // SRTPCipherCTROpenSSL.
+            if (ctx != 0)
+            {
+                AES_GCM_CTX_destroy(ctx);
+                ctx = 0;
+            }
+        }
+        finally
+        {
+            super.finalize();
+        }
+    }
+}
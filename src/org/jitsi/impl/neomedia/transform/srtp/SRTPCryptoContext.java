@@ -120,6 +120,37 @@ private static synchronized void readConfigurationServicePropertiesOnce()
             checkReplay = cfg.getBoolean(CHECK_REPLAY_PNAME, checkReplay);
     }
 
+    /**
+     * The byte arrays of the packets which are to be (de|en)crypted with a
+     * single call to {@link #cipherCtr} by the batch (reverse) transform
+     * methods.
+     */
+    private byte[][] batchData;
+
+    /**
+     * The initial values of the counters with which the packets described by
+     * {@link #batchData} are to be (de|en)crypted.
+     */
+    private byte[] batchIvs;
+
+    /**
+     * The lengths of the payloads of the packets described by
+     * {@link #batchData}.
+     */
+    private int[] batchLengths;
+
+    /**
+     * The offsets of the payloads of the packets described by
+     * {@link #batchData}.
+     */
+    private int[] batchOffsets;
+
+    /**
+     * The rollover counters guessed for the packets described by
+     * {@link #batchData}.
+     */
+    private int[] batchROCs;
+
     /**
      * For the receiver only, the rollover counter guessed from the sequence
      * number of the received packet that is currently being processed (i.e. the
@@ -434,6 +465,8 @@ synchronized public void deriveSrtpKeys(long index)
         // As last step: initialize cipher with derived encryption key.
         if (cipherF8 != null)
             cipherF8.init(encKey, saltKey);
+        if (cipherGcm != null)
+            cipherGcm.init(encKey);
         cipherCtr.init(encKey);
         Arrays.fill(encKey, (byte) 0);
     }
@@ -477,17 +510,38 @@ public void processPacketAESCM(RawPacket pkt)
         int seqNo = pkt.getSequenceNumber();
         long index = (((long) guessedROC) << 16) | seqNo;
 
-        // byte[] iv = new byte[16];
-        ivStore[0] = saltKey[0];
-        ivStore[1] = saltKey[1];
-        ivStore[2] = saltKey[2];
-        ivStore[3] = saltKey[3];
+        computeIvAESCM(ivStore, 0, ssrc, index);
+
+        int payloadOffset = pkt.getHeaderLength();
+        int payloadLength = pkt.getPayloadLength();
+
+        cipherCtr.process(
+                pkt.getBuffer(), pkt.getOffset() + payloadOffset, payloadLength,
+                ivStore);
+    }
+
+    /**
+     * Computes the initial value of the counter with which a packet is to be
+     * encrypted/decrypted using Counter Mode.
+     *
+     * @param iv the array into which the initial value is to be written
+     * @param off the offset in <tt>iv</tt> at which the initial value is to be
+     * written
+     * @param ssrc the SSRC of the packet
+     * @param index the 48 bit SRTP packet index of the packet
+     */
+    private void computeIvAESCM(byte[] iv, int off, int ssrc, long index)
+    {
+        iv[off] = saltKey[0];
+        iv[off + 1] = saltKey[1];
+        iv[off + 2] = saltKey[2];
+        iv[off + 3] = saltKey[3];
 
         int i;
 
         for (i = 4; i < 8; i++)
         {
-            ivStore[i] = (byte)
+            iv[off + i] = (byte)
                 (
                     (0xFF & (ssrc >> ((7 - i) * 8)))
                     ^
@@ -497,7 +551,7 @@ public void processPacketAESCM(RawPacket pkt)
 
         for (i = 8; i < 14; i++)
         {
-            ivStore[i] = (byte)
+            iv[off + i] = (byte)
                 (
                     (0xFF & (byte) (index >> ((13 - i) * 8)))
                     ^
@@ -505,14 +559,146 @@ public void processPacketAESCM(RawPacket pkt)
                 );
         }
 
-        ivStore[14] = ivStore[15] = 0;
+        iv[off + 14] = iv[off + 15] = 0;
+    }
 
-        int payloadOffset = pkt.getHeaderLength();
+    /**
+     * Makes sure that the arrays used by the batch (reverse) transform methods
+     * can describe a specific number of packets.
+     *
+     * @param count the number of packets
+     */
+    private void ensureBatchCapacity(int count)
+    {
+        if (batchData == null || batchData.length < count)
+        {
+            batchData = new byte[count][];
+            batchIvs = new byte[count * 16];
+            batchLengths = new int[count];
+            batchOffsets = new int[count];
+            batchROCs = new int[count];
+        }
+    }
+
+    /**
+     * Determines whether the batch (reverse) transform methods can encrypt
+     * and decrypt with a single call to {@link #cipherCtr} according to the
+     * <tt>policy</tt> of this <tt>SRTPCryptoContext</tt>.
+     *
+     * @return <tt>true</tt> if the packets are to be encrypted/decrypted using
+     * Counter Mode; otherwise, <tt>false</tt>
+     */
+    private boolean isBatchable()
+    {
+        switch (policy.getEncType())
+        {
+        case SRTPPolicy.AESCM_ENCRYPTION:
+        case SRTPPolicy.TWOFISH_ENCRYPTION:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Adds the payload of a specific packet to the batch which is to be
+     * (de|en)crypted with a single call to {@link #cipherCtr}.
+     *
+     * @param pkt the packet
+     * @param count the number of packets in the batch so far
+     * @param guessedIndex the SRTP index of <tt>pkt</tt>
+     */
+    private void addToBatch(RawPacket pkt, int count, long guessedIndex)
+    {
+        computeIvAESCM(batchIvs, count * 16, pkt.getSSRC(), guessedIndex);
+        batchData[count] = pkt.getBuffer();
+        batchOffsets[count] = pkt.getOffset() + pkt.getHeaderLength();
+        batchLengths[count] = pkt.getPayloadLength();
+        batchROCs[count] = guessedROC;
+    }
+
+    /**
+     * (De|En)crypts the batch of packets collected by
+     * {@link #addToBatch(RawPacket, int, long)} with a single call to
+     * {@link #cipherCtr}.
+     *
+     * @param count the number of packets in the batch
+     */
+    private void processBatch(int count)
+    {
+        if (count > 0)
+        {
+            try
+            {
+                cipherCtr.process(
+                        batchData, batchOffsets, batchLengths, batchIvs,
+                        count);
+            }
+            finally
+            {
+                Arrays.fill(batchData, 0, count, null);
+            }
+        }
+    }
+
+    /**
+     * Performs Galois/Counter Mode AES authenticated encryption/decryption
+     * (RFC 7714). The authentication tag is appended to the packet when
+     * encrypting and removed from it when decrypting.
+     *
+     * @param pkt the RTP packet to be encrypted/decrypted
+     * @param encrypt <tt>true</tt> to encrypt <tt>pkt</tt> or <tt>false</tt>
+     * to decrypt it
+     * @return <tt>false</tt> if <tt>pkt</tt> is to be decrypted and fails
+     * authentication; otherwise, <tt>true</tt>
+     */
+    private boolean processPacketAESGCM(RawPacket pkt, boolean encrypt)
+    {
+        int ssrc = pkt.getSSRC();
+        int seqNo = pkt.getSequenceNumber();
+        int roc = guessedROC;
+
+        /* Compute the GCM IV (refer to chapter 8.1 in RFC 7714):
+         *
+         * IV    00 00 SSRC------- ROC-------- SEQ--
+         * salt  XX XX XX XX XX XX XX XX XX XX XX XX
+         * ------------------------------------------XOR
+         *        0  1  2  3  4  5  6  7  8  9 10 11
+         */
+        ivStore[0] = saltKey[0];
+        ivStore[1] = saltKey[1];
+        ivStore[2] = (byte) ((ssrc >> 24) ^ saltKey[2]);
+        ivStore[3] = (byte) ((ssrc >> 16) ^ saltKey[3]);
+        ivStore[4] = (byte) ((ssrc >> 8) ^ saltKey[4]);
+        ivStore[5] = (byte) (ssrc ^ saltKey[5]);
+        ivStore[6] = (byte) ((roc >> 24) ^ saltKey[6]);
+        ivStore[7] = (byte) ((roc >> 16) ^ saltKey[7]);
+        ivStore[8] = (byte) ((roc >> 8) ^ saltKey[8]);
+        ivStore[9] = (byte) (roc ^ saltKey[9]);
+        ivStore[10] = (byte) ((seqNo >> 8) ^ saltKey[10]);
+        ivStore[11] = (byte) (seqNo ^ saltKey[11]);
+
+        int headerLength = pkt.getHeaderLength();
         int payloadLength = pkt.getPayloadLength();
 
-        cipherCtr.process(
-                pkt.getBuffer(), pkt.getOffset() + payloadOffset, payloadLength,
-                ivStore);
+        if (encrypt)
+            pkt.grow(SRTPCipherGCM.TAG_LENGTH);
+        else if (payloadLength < SRTPCipherGCM.TAG_LENGTH)
+            return false;
+
+        // The RTP header is the additional authenticated data.
+        byte[] buf = pkt.getBuffer();
+        int off = pkt.getOffset();
+
+        cipherGcm.begin(encrypt, ivStore);
+        cipherGcm.processAAD(buf, off, headerLength);
+
+        int len = cipherGcm.finish(buf, off + headerLength, payloadLength);
+
+        if (len < 0)
+            return false;
+        pkt.setLength(headerLength + len);
+        return true;
     }
 
     /**
@@ -587,8 +773,14 @@ synchronized public boolean reverseTransformPacket(RawPacket pkt)
         // Replay control
         if (checkReplay(seqNo, guessedIndex))
         {
-            // Authenticate the packet.
-            if (authenticatePacket(pkt))
+            // Authenticate the packet. GCM authenticates the packet while
+            // decrypting it.
+            boolean authenticated
+                = (policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION)
+                    ? processPacketAESGCM(pkt, false)
+                    : authenticatePacket(pkt);
+
+            if (authenticated)
             {
                 // If a RawPacket is flagged with Buffer.FLAG_DISCARD, then it
                 // should have been discarded earlier. Anyway, at least skip its
@@ -630,6 +822,85 @@ else if (logger.isDebugEnabled())
         return b;
     }
 
+    /**
+     * Transforms the SRTP packets in a specific range of an array into RTP
+     * packets. Equivalent to {@link #reverseTransformPacket(RawPacket)} on
+     * each of the packets in turn except that the packets which are accepted
+     * are decrypted with a single call to the cipher, which amortizes its
+     * per-call cost (e.g. a native crossing) over the whole range.
+     *
+     * @param pkts the array of packets to reverse transform. Packets which
+     * fail authentication or replay check are replaced with <tt>null</tt>.
+     * @param from the index of the first packet in <tt>pkts</tt> to reverse
+     * transform
+     * @param to the index after the last packet in <tt>pkts</tt> to reverse
+     * transform
+     */
+    synchronized public void reverseTransformPackets(
+            RawPacket[] pkts, int from, int to)
+    {
+        if (!isBatchable())
+        {
+            for (int i = from; i < to; i++)
+            {
+                RawPacket pkt = pkts[i];
+
+                if (pkt != null && !reverseTransformPacket(pkt))
+                    pkts[i] = null;
+            }
+            return;
+        }
+
+        ensureBatchCapacity(to - from);
+
+        int count = 0;
+
+        for (int i = from; i < to; i++)
+        {
+            RawPacket pkt = pkts[i];
+
+            if (pkt == null)
+                continue;
+
+            int seqNo = pkt.getSequenceNumber();
+
+            if (!seqNumSet)
+            {
+                seqNumSet = true;
+                s_l = seqNo;
+            }
+
+            // Guess the SRTP index (48 bit), see RFC 3711, 3.3.1
+            // Stores the guessed rollover counter (ROC) in this.guessedROC.
+            long guessedIndex = guessIndex(seqNo);
+
+            if (!checkReplay(seqNo, guessedIndex))
+            {
+                pkts[i] = null;
+                continue;
+            }
+            if (!authenticatePacket(pkt))
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("SRTP auth failed for SSRC " + ssrc);
+                pkts[i] = null;
+                continue;
+            }
+
+            // The decrypting does not depend on the state of this context so
+            // it may be postponed until all packets have been authenticated.
+            if ((pkt.getFlags() & (Buffer.FLAG_DISCARD | Buffer.FLAG_SILENCE))
+                    == 0)
+            {
+                addToBatch(pkt, count++, guessedIndex);
+            }
+
+            update(seqNo, guessedIndex);
+        }
+
+        processBatch(count);
+    }
+
     /**
      * Transforms an RTP packet into an SRTP packet. The method is called when a
      * normal RTP packet ready to be sent. Operations done by the transformation
@@ -678,6 +949,11 @@ synchronized public boolean transformPacket(RawPacket pkt)
         case SRTPPolicy.TWOFISHF8_ENCRYPTION:   
             processPacketAESF8(pkt);
             break;
+
+        // Encrypt and authenticate the packet using GCM.
+        case SRTPPolicy.AESGCM_ENCRYPTION:
+            processPacketAESGCM(pkt, true);
+            break;
         }
 
         /* Authenticate the packet. */
@@ -693,6 +969,84 @@ synchronized public boolean transformPacket(RawPacket pkt)
         return true;
     }
 
+    /**
+     * Transforms the RTP packets in a specific range of an array into SRTP
+     * packets. Equivalent to {@link #transformPacket(RawPacket)} on each of
+     * the packets in turn except that the packets are encrypted with a single
+     * call to the cipher, which amortizes its per-call cost (e.g. a native
+     * crossing) over the whole range.
+     *
+     * @param pkts the array of packets to transform. Packets which fail to be
+     * transformed are replaced with <tt>null</tt>.
+     * @param from the index of the first packet in <tt>pkts</tt> to transform
+     * @param to the index after the last packet in <tt>pkts</tt> to transform
+     */
+    synchronized public void transformPackets(
+            RawPacket[] pkts, int from, int to)
+    {
+        if (!isBatchable())
+        {
+            for (int i = from; i < to; i++)
+            {
+                RawPacket pkt = pkts[i];
+
+                if (pkt != null && !transformPacket(pkt))
+                    pkts[i] = null;
+            }
+            return;
+        }
+
+        ensureBatchCapacity(to - from);
+
+        int count = 0;
+
+        for (int i = from; i < to; i++)
+        {
+            RawPacket pkt = pkts[i];
+
+            if (pkt == null)
+                continue;
+
+            int seqNo = pkt.getSequenceNumber();
+
+            if (!seqNumSet)
+            {
+                seqNumSet = true;
+                s_l = seqNo;
+            }
+
+            long guessedIndex = guessIndex(seqNo);
+
+            if (!checkReplay(seqNo, guessedIndex))
+            {
+                pkts[i] = null;
+                continue;
+            }
+
+            addToBatch(pkt, count++, guessedIndex);
+            update(seqNo, guessedIndex);
+        }
+
+        processBatch(count);
+
+        /* Authenticate the packets. */
+        if (policy.getAuthType() != SRTPPolicy.NULL_AUTHENTICATION)
+        {
+            int tagLength = policy.getAuthTagLength();
+
+            for (int i = from, j = 0; i < to; i++)
+            {
+                RawPacket pkt = pkts[i];
+
+                if (pkt != null)
+                {
+                    authenticatePacketHMAC(pkt, batchROCs[j++]);
+                    pkt.append(tagStore, tagLength);
+                }
+            }
+        }
+    }
+
     /**
      * For the receiver only, updates the rollover counter (i.e. {@link #roc})
      * and highest sequence number (i.e. {@link #s_l}) in this cryptographic
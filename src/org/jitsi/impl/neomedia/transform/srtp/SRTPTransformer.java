@@ -174,6 +174,115 @@ private SRTPCryptoContext getContext(
         return context;
     }
 
+    /**
+     * Determines the end of the run of packets which starts at a specific
+     * index of an array and which have the same SSRC (and are thus processed
+     * by the same <tt>SRTPCryptoContext</tt>). <tt>null</tt> elements do not
+     * interrupt a run.
+     *
+     * @param pkts the array of packets
+     * @param from the index in <tt>pkts</tt> of the first (non-<tt>null</tt>)
+     * packet of the run
+     * @return the index after the last packet of the run
+     */
+    private static int getEndOfRun(RawPacket[] pkts, int from)
+    {
+        int ssrc = pkts[from].getSSRC();
+        int to = from + 1;
+
+        for (; to < pkts.length; to++)
+        {
+            RawPacket pkt = pkts[to];
+
+            if (pkt != null && pkt.getSSRC() != ssrc)
+                break;
+        }
+        return to;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Reverse-transforms the packets of each SSRC which are adjacent in
+     * <tt>pkts</tt> with a single call to their <tt>SRTPCryptoContext</tt>.
+     */
+    @Override
+    public RawPacket[] reverseTransform(RawPacket[] pkts)
+    {
+        if (pkts == null)
+            return pkts;
+
+        // only accept RTP version 2 (SNOM phones send weird packages when on
+        // hold, ignore them with this check (RTP Version must be equal to 2)
+        for (int i = 0; i < pkts.length; i++)
+        {
+            RawPacket pkt = pkts[i];
+
+            if (pkt != null && (pkt.readByte(0) & 0xC0) != 0x80)
+                pkts[i] = null;
+        }
+
+        for (int i = 0; i < pkts.length;)
+        {
+            RawPacket pkt = pkts[i];
+
+            if (pkt == null)
+            {
+                i++;
+                continue;
+            }
+
+            int end = getEndOfRun(pkts, i);
+            SRTPCryptoContext context
+                = getContext(
+                        pkt.getSSRC(),
+                        reverseFactory,
+                        pkt.getSequenceNumber());
+
+            if (context == null)
+                Arrays.fill(pkts, i, end, null);
+            else
+                context.reverseTransformPackets(pkts, i, end);
+            i = end;
+        }
+        return pkts;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Transforms the packets of each SSRC which are adjacent in <tt>pkts</tt>
+     * with a single call to their <tt>SRTPCryptoContext</tt>.
+     */
+    @Override
+    public RawPacket[] transform(RawPacket[] pkts)
+    {
+        if (pkts == null)
+            return pkts;
+
+        for (int i = 0; i < pkts.length;)
+        {
+            RawPacket pkt = pkts[i];
+
+            if (pkt == null)
+            {
+                i++;
+                continue;
+            }
+
+            int end = getEndOfRun(pkts, i);
+            SRTPCryptoContext context
+                = getContext(pkt.getSSRC(), forwardFactory, 0);
+
+            if (context == null)
+                Arrays.fill(pkts, i, end, null);
+            else
+                context.transformPackets(pkts, i, end);
+            i = end;
+        }
+        return pkts;
+    }
+
     /**
      * Reverse-transforms a specific packet (i.e. transforms a transformed
      * packet back).
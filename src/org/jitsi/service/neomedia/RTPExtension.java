@@ -51,6 +51,14 @@
     public static final String ABS_SEND_TIME_URN
             = "http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time";
 
+    /**
+     * The URN identifying the transport-wide congestion control sequence
+     * number RTP extension. Defined at
+     * {@link "https://tools.ietf.org/html/draft-holmer-rmcat-transport-wide-cc-extensions-01"}
+     */
+    public static final String TRANSPORT_CC_URN
+            = "http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01";
+
     /**
      * The URN which identifies the framemarking RTP extension defined at
      * {@link "https://tools.ietf.org/html/draft-ietf-avtext-framemarking-03"}
@@ -63,6 +63,14 @@
      * Defines a packet filter which allows an observer of an
      * <tt>RTPTranslator</tt> to disallow the writing of specific packets into
      * a specific destination identified by a <tt>MediaStream</tt>.
+     * <p>
+     * Implementations must be thread-safe. If the
+     * <tt>ConfigurationService</tt> property
+     * <tt>org.jitsi.impl.neomedia.rtp.translator.RTPTranslatorImpl.FAN_OUT_THREADS</tt>
+     * is positive, the writing of a packet into its destinations is fanned
+     * out to a pool of threads and, consequently, {@link #accept} may be
+     * invoked concurrently by multiple threads for different destinations.
+     * </p>
      */
     public interface WriteFilter
     {
@@ -15,6 +15,7 @@
  */
 package org.jitsi.service.neomedia;
 
+import org.jitsi.impl.neomedia.*;
 import org.jitsi.util.*;
 
 import java.util.*;
@@ -240,7 +241,7 @@ public void addExtension(byte[] extBuff, int newExtensionLen)
         byte[] newBuffer = buffer;
         if (newBuffer.length < newBuffLen)
         {
-            newBuffer = new byte[newBuffLen];
+            newBuffer = ByteArrayPool.getBuffer(newBuffLen);
         }
 
         // Copy the header, CSRC list and the leading two bytes of the
@@ -301,6 +302,8 @@ public void addExtension(byte[] extBuff, int newExtensionLen)
         System.arraycopy(extBuff, 0,
             newBuffer, newBufferOffset, newExtensionLen);
 
+        // The replaced byte[] is not returned to ByteArrayPool because this
+        // instance does not know whether it owns it.
         buffer = newBuffer;
         this.length = this.length + extraBytes;
         this.offset = 0;
@@ -1152,7 +1155,9 @@ public static long getTimestamp(byte[] buf, int off, int len)
      *
      * This will change the data buffer of this packet but not the length of the
      * valid data. Use this to grow the internal buffer to avoid buffer
-     * re-allocations when appending data.
+     * re-allocations when appending data. The new buffer is obtained from
+     * {@link ByteArrayPool}. The old one is left to whoever provided it (this
+     * instance does not know whether it may be given back to the pool).
      *
      * @param howMuch the number of bytes by which this {@code RawPacket} is to
      * grow
@@ -1164,7 +1169,7 @@ public void grow(int howMuch) {
         int newLength = length + howMuch;
 
         if (newLength > buffer.length - offset) {
-            byte[] newBuffer = new byte[newLength];
+            byte[] newBuffer = ByteArrayPool.getBuffer(newLength);
 
             System.arraycopy(buffer, offset, newBuffer, 0, length);
             offset = 0;
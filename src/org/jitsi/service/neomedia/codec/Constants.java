@@ -242,6 +242,11 @@
      */
     public static final String ULPFEC = "ulpfec";
 
+    /**
+     * The name of the flexfec RTP format (RFC8627)
+     */
+    public static final String FLEXFEC = "flexfec";
+
     /**
      * The VP8 constant
      */
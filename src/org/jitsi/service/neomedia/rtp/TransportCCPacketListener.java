@@ -0,0 +1,34 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.service.neomedia.rtp;
+
+import org.jitsi.impl.neomedia.rtcp.*;
+
+/**
+ * An interface that enables listening for RTCP transport-cc packets. It is
+ * separate from {@link RTCPPacketListener} so that the existing implementations
+ * of that interface do not have to change. An {@link RTCPPacketListener} which
+ * also implements this interface is notified about transport-cc packets too.
+ */
+public interface TransportCCPacketListener
+{
+    /**
+     * Notifies this listener that an {@link RTCPTCCPacket} has been received.
+     *
+     * @param tccPacket the received {@link RTCPTCCPacket}.
+     */
+    void tccReceived(RTCPTCCPacket tccPacket);
+}
@@ -30,6 +30,9 @@
  * further cluttering of the already overly complicated
  * {@link org.jitsi.impl.neomedia.MediaStreamStatsImpl}.
  *
+ * The {@link TrackStats} instances returned by the methods of this interface
+ * may also implement {@link TrackStatsSnapshotProvider}.
+ *
  * @author Boris Grozev
  */
 public interface MediaStreamStats2
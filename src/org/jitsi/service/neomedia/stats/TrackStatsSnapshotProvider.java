@@ -0,0 +1,40 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.service.neomedia.stats;
+
+/**
+ * An optional interface of {@link TrackStats} instances which are able to
+ * provide an immutable snapshot of their values. It is kept apart from
+ * {@link TrackStats} so that existing implementations of the latter do not
+ * have to implement it. Monitoring code which reads the statistics of many
+ * streams frequently should check whether the instances returned by
+ * {@link MediaStreamStats2} implement it, and read the snapshots instead of
+ * the live values.
+ */
+public interface TrackStatsSnapshotProvider
+{
+    /**
+     * Gets an immutable snapshot of the {@link TrackStats} which implements
+     * this interface. Implementations refresh the snapshot periodically (e.g.
+     * once per {@link TrackStats#getInterval()}) so that monitoring can read
+     * it without contending with the threads which process the packets.
+     *
+     * @return an immutable snapshot of the {@link TrackStats} which implements
+     * this interface. Implements {@link ReceiveTrackStats} (respectively
+     * {@link SendTrackStats}) if the {@link TrackStats} does.
+     */
+    TrackStats getSnapshot();
+}
@@ -43,43 +43,135 @@ public static ExecutorService newCachedThreadPool(
     {
         return
             Executors.newCachedThreadPool(
-                    new ThreadFactory()
+                    newThreadFactory(daemon, baseName, Thread.NORM_PRIORITY));
+    }
+
+    /**
+     * Creates a thread pool which runs at most a specific number of threads
+     * and queues at most a specific number of tasks when all threads are
+     * busy. Further tasks are rejected with a
+     * <tt>RejectedExecutionException</tt>. Idle threads are terminated after a
+     * minute. Optionally, the new threads are created as daemon threads and
+     * their names are based on a specific (prefix) string.
+     *
+     * @param maxThreads the maximum number of threads in the pool
+     * @param queueCapacity the maximum number of tasks waiting for a thread
+     * @param daemon <tt>true</tt> to create the new threads as daemon threads
+     * or <tt>false</tt> to create the new threads as user threads
+     * @param baseName the base/prefix to use for the names of the new threads
+     * or <tt>null</tt> to leave them with their default names
+     * @return the newly created thread pool
+     */
+    public static ExecutorService newBoundedThreadPool(
+            int maxThreads,
+            int queueCapacity,
+            boolean daemon,
+            String baseName)
+    {
+        ThreadPoolExecutor executor
+            = new ThreadPoolExecutor(
+                    maxThreads, maxThreads,
+                    60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(queueCapacity),
+                    newThreadFactory(daemon, baseName, Thread.NORM_PRIORITY));
+
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates a thread pool with a fixed number of threads which can schedule
+     * commands to run after a given delay. Optionally, the threads are created
+     * as daemon threads, their names are based on a specific (prefix) string
+     * and they run with a specific priority.
+     *
+     * @param corePoolSize the number of threads to keep in the pool
+     * @param daemon <tt>true</tt> to create the new threads as daemon threads
+     * or <tt>false</tt> to create the new threads as user threads
+     * @param baseName the base/prefix to use for the names of the new threads
+     * or <tt>null</tt> to leave them with their default names
+     * @param priority the priority to set on the new threads
+     * @return the newly created thread pool
+     */
+    public static ScheduledExecutorService newScheduledThreadPool(
+            int corePoolSize,
+            boolean daemon,
+            String baseName,
+            int priority)
+    {
+        return
+            Executors.newScheduledThreadPool(
+                    corePoolSize,
+                    newThreadFactory(daemon, baseName, priority));
+    }
+
+    /**
+     * Creates a <tt>ThreadFactory</tt> which augments the default
+     * <tt>ThreadFactory</tt> implementation to optionally create daemon
+     * threads, name them after a specific (prefix) string and run them with a
+     * specific priority.
+     *
+     * @param daemon <tt>true</tt> to create the new threads as daemon threads
+     * or <tt>false</tt> to create the new threads as user threads
+     * @param baseName the base/prefix to use for the names of the new threads
+     * or <tt>null</tt> to leave them with their default names
+     * @param priority the priority to set on the new threads
+     * @return the new <tt>ThreadFactory</tt>
+     */
+    private static ThreadFactory newThreadFactory(
+            final boolean daemon,
+            final String baseName,
+            final int priority)
+    {
+        return
+            new ThreadFactory()
+            {
+                /**
+                 * The default <tt>ThreadFactory</tt> implementation which is
+                 * augmented by this instance to create daemon
+                 * <tt>Thread</tt>s.
+                 */
+                private final ThreadFactory defaultThreadFactory
+                    = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = defaultThreadFactory.newThread(r);
+
+                    if (t != null)
                     {
-                        /**
-                         * The default <tt>ThreadFactory</tt> implementation
-                         * which is augmented by this instance to create daemon
-                         * <tt>Thread</tt>s.
-                         */
-                        private final ThreadFactory defaultThreadFactory
-                            = Executors.defaultThreadFactory();
+                        t.setDaemon(daemon);
 
-                        @Override
-                        public Thread newThread(Runnable r)
+                        /*
+                         * Additionally, make it known through the name of the
+                         * Thread that it is associated with the specified
+                         * class for debugging/informational purposes.
+                         */
+                        if ((baseName != null) && (baseName.length() != 0))
                         {
-                            Thread t = defaultThreadFactory.newThread(r);
-
-                            if (t != null)
-                            {
-                                t.setDaemon(daemon);
+                            String name = t.getName();
 
-                                /*
-                                 * Additionally, make it known through the name
-                                 * of the Thread that it is associated with the
-                                 * specified class for debugging/informational
-                                 * purposes.
-                                 */
-                                if ((baseName != null)
-                                        && (baseName.length() != 0))
-                                {
-                                    String name = t.getName();
+                            if (name == null)
+                                name = "";
+                            t.setName(baseName + "-" + name);
+                        }
 
-                                    if (name == null)
-                                        name = "";
-                                    t.setName(baseName + "-" + name);
-                                }
+                        if (t.getPriority() != priority)
+                        {
+                            try
+                            {
+                                t.setPriority(priority);
+                            }
+                            catch (IllegalArgumentException
+                                    | SecurityException e)
+                            {
+                                // Keep the default priority.
                             }
-                            return t;
                         }
-                    });
+                    }
+                    return t;
+                }
+            };
     }
 }
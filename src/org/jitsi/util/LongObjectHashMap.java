@@ -0,0 +1,317 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util;
+
+import java.util.*;
+
+/**
+ * Implements a hash map with primitive <tt>long</tt> keys (e.g. SSRCs) and
+ * non-<tt>null</tt> values which does not box its keys and does not allocate
+ * an entry per mapping. Uses open addressing with linear probing.
+ *
+ * Instances are not thread-safe. A common pattern for maps which are read on
+ * a hot path and rarely modified is to never modify an instance once it has
+ * been published and to instead publish a modified copy (obtained through
+ * {@link #LongObjectHashMap(LongObjectHashMap)}) through a <tt>volatile</tt>
+ * field.
+ *
+ * @param <V> the type of the values
+ */
+public class LongObjectHashMap<V>
+{
+    /**
+     * The default initial capacity of <tt>LongObjectHashMap</tt>.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Mixes the bits of a specific key in order to spread keys with common
+     * low bits over the table.
+     *
+     * @param key the key to hash
+     * @return the hash of <tt>key</tt>
+     */
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * The keys of the mappings. The key at index <tt>i</tt> is valid only if
+     * the value at index <tt>i</tt> of {@link #values} is not <tt>null</tt>.
+     */
+    private long[] keys;
+
+    /**
+     * The number of mappings in this map.
+     */
+    private int size;
+
+    /**
+     * The values of the mappings. A <tt>null</tt> element denotes a free slot.
+     */
+    private Object[] values;
+
+    /**
+     * Initializes a new empty <tt>LongObjectHashMap</tt>.
+     */
+    public LongObjectHashMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes a new empty <tt>LongObjectHashMap</tt> which can hold a
+     * specific number of mappings without growing.
+     *
+     * @param expectedSize the number of mappings that the new instance is
+     * expected to hold
+     */
+    public LongObjectHashMap(int expectedSize)
+    {
+        int capacity = DEFAULT_CAPACITY;
+
+        // Keep the load factor at or below 1/2.
+        while (capacity < 2 * expectedSize)
+            capacity <<= 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Initializes a new <tt>LongObjectHashMap</tt> with the same mappings as
+     * a specific <tt>LongObjectHashMap</tt>.
+     *
+     * @param map the <tt>LongObjectHashMap</tt> whose mappings are to be
+     * copied
+     */
+    public LongObjectHashMap(LongObjectHashMap<? extends V> map)
+    {
+        keys = map.keys.clone();
+        values = map.values.clone();
+        size = map.size;
+    }
+
+    /**
+     * Removes all mappings from this map.
+     */
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Determines whether this map contains a mapping for a specific key.
+     *
+     * @param key the key to check
+     * @return <tt>true</tt> if this map contains a mapping for <tt>key</tt>;
+     * otherwise, <tt>false</tt>
+     */
+    public boolean containsKey(long key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Gets the value to which a specific key is mapped.
+     *
+     * @param key the key whose value is to be returned
+     * @return the value to which <tt>key</tt> is mapped or <tt>null</tt> if
+     * this map contains no mapping for <tt>key</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        int mask = values.length - 1;
+
+        for (int i = hash(key) & mask;; i = (i + 1) & mask)
+        {
+            Object value = values[i];
+
+            if (value == null)
+                return null;
+            else if (keys[i] == key)
+                return (V) value;
+        }
+    }
+
+    /**
+     * Determines whether this map contains no mappings.
+     *
+     * @return <tt>true</tt> if this map contains no mappings; otherwise,
+     * <tt>false</tt>
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Gets the keys of the mappings of this map.
+     *
+     * @return a new array with the keys of the mappings of this map
+     */
+    public long[] keys()
+    {
+        long[] keys = new long[size];
+        int j = 0;
+
+        for (int i = 0; i < values.length; i++)
+        {
+            if (values[i] != null)
+                keys[j++] = this.keys[i];
+        }
+        return keys;
+    }
+
+    /**
+     * Maps a specific key to a specific value.
+     *
+     * @param key the key
+     * @param value the value to map <tt>key</tt> to. May not be <tt>null</tt>.
+     * @return the value to which <tt>key</tt> was previously mapped or
+     * <tt>null</tt> if there was no mapping for <tt>key</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        if (value == null)
+            throw new NullPointerException("value");
+
+        int mask = values.length - 1;
+        int i = hash(key) & mask;
+
+        for (Object v; (v = values[i]) != null; i = (i + 1) & mask)
+        {
+            if (keys[i] == key)
+            {
+                values[i] = value;
+                return (V) v;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (values.length >> 1))
+            rehash(values.length << 1);
+        return null;
+    }
+
+    /**
+     * Rebuilds the table of this map with a specific capacity.
+     *
+     * @param capacity the new capacity (a power of two)
+     */
+    private void rehash(int capacity)
+    {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int mask = capacity - 1;
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+        for (int j = 0; j < oldValues.length; j++)
+        {
+            Object value = oldValues[j];
+
+            if (value != null)
+            {
+                long key = oldKeys[j];
+                int i = hash(key) & mask;
+
+                while (values[i] != null)
+                    i = (i + 1) & mask;
+                keys[i] = key;
+                values[i] = value;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping for a specific key from this map.
+     *
+     * @param key the key whose mapping is to be removed
+     * @return the value to which <tt>key</tt> was mapped or <tt>null</tt> if
+     * there was no mapping for <tt>key</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key)
+    {
+        int mask = values.length - 1;
+        int i = hash(key) & mask;
+        Object value;
+
+        for (;; i = (i + 1) & mask)
+        {
+            value = values[i];
+            if (value == null)
+                return null;
+            else if (keys[i] == key)
+                break;
+        }
+
+        // Shift back the mappings which follow in the same cluster so that
+        // they remain reachable from their home slots.
+        values[i] = null;
+        size--;
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask)
+        {
+            int home = hash(keys[j]) & mask;
+
+            // Move the mapping at j into the hole at i unless its home slot
+            // lies cyclically in (i, j].
+            if ((j > i) ? (home <= i || home > j) : (home <= i && home > j))
+            {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = null;
+                i = j;
+            }
+        }
+        return (V) value;
+    }
+
+    /**
+     * Gets the number of mappings in this map.
+     *
+     * @return the number of mappings in this map
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the values of the mappings of this map.
+     *
+     * @return a new <tt>List</tt> with the values of the mappings of this map
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values()
+    {
+        List<V> values = new ArrayList<>(size);
+
+        for (Object value : this.values)
+        {
+            if (value != null)
+                values.add((V) value);
+        }
+        return values;
+    }
+}
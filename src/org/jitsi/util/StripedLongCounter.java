@@ -0,0 +1,162 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Implements a <tt>long</tt> counter which scales under contention by
+ * spreading concurrent updates over multiple cells (in the spirit of
+ * <tt>java.util.concurrent.atomic.LongAdder</tt>, which is not available on
+ * all the platforms that we support). Uncontended counters use a single
+ * <tt>AtomicLong</tt>; the cells are allocated only once a compare-and-set
+ * on it fails.
+ *
+ * The value returned by {@link #sum()} is not an atomic snapshot in the
+ * presence of concurrent updates, which is acceptable for statistics.
+ */
+public class StripedLongCounter
+{
+    /**
+     * The maximum number of cells of a <tt>StripedLongCounter</tt>.
+     */
+    private static final int MAX_CELLS;
+
+    static
+    {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int maxCells = 1;
+
+        while (maxCells < cpus && maxCells < 64)
+            maxCells <<= 1;
+        MAX_CELLS = maxCells;
+    }
+
+    /**
+     * Gets the index of the cell of a <tt>StripedLongCounter</tt> to be
+     * updated by the current thread.
+     *
+     * @param mask the number of cells minus one
+     * @return the index of the cell to be updated by the current thread
+     */
+    private static int cellIndex(int mask)
+    {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * The value of this counter which is updated while there is no
+     * contention.
+     */
+    private final AtomicLong base = new AtomicLong();
+
+    /**
+     * The cells which are updated once contention has been detected. Each
+     * cell occupies its own cache line so that threads updating different
+     * cells do not contend.
+     */
+    private volatile Cell[] cells;
+
+    /**
+     * Adds a specific value to this counter.
+     *
+     * @param x the value to add
+     */
+    public void add(long x)
+    {
+        Cell[] cells = this.cells;
+
+        if (cells == null)
+        {
+            long b = base.get();
+
+            if (base.compareAndSet(b, b + x))
+                return;
+            cells = inflate();
+        }
+        cells[cellIndex(cells.length - 1)].addAndGet(x);
+    }
+
+    /**
+     * Adds one to this counter.
+     */
+    public void increment()
+    {
+        add(1);
+    }
+
+    /**
+     * Initializes {@link #cells} if it has not been initialized yet.
+     *
+     * @return the value of {@link #cells}
+     */
+    private synchronized Cell[] inflate()
+    {
+        Cell[] cells = this.cells;
+
+        if (cells == null)
+        {
+            cells = new Cell[MAX_CELLS];
+            for (int i = 0; i < cells.length; i++)
+                cells[i] = new Cell();
+            this.cells = cells;
+        }
+        return cells;
+    }
+
+    /**
+     * Gets the value of this counter.
+     *
+     * @return the value of this counter
+     */
+    public long sum()
+    {
+        long sum = base.get();
+        Cell[] cells = this.cells;
+
+        if (cells != null)
+        {
+            for (Cell cell : cells)
+                sum += cell.get();
+        }
+        return sum;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return Long.toString(sum());
+    }
+
+    /**
+     * An <tt>AtomicLong</tt> padded to (most likely) occupy a cache line of
+     * its own.
+     */
+    @SuppressWarnings("unused")
+    private static class Cell
+        extends AtomicLong
+    {
+        private static final long serialVersionUID = 0L;
+
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -17,6 +17,7 @@
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
 
 import org.jitsi.util.*;
 
@@ -47,8 +48,22 @@
      * The {@code RecurringRunnable}s registered with this instance which are
      * to be invoked in {@link #thread}.
      */
-    private final List<RecurringRunnable> recurringRunnables
-        = new LinkedList<>();
+    private final Set<RecurringRunnable> recurringRunnables
+        = new LinkedHashSet<>();
+
+    /**
+     * The {@code RecurringRunnable} which {@link #thread} is currently
+     * invoking, or {@code null}. Guarded by {@link #recurringRunnables}.
+     * Allows {@link #deRegisterRecurringRunnable(RecurringRunnable)} to wait
+     * for an invocation in progress.
+     */
+    private RecurringRunnable running;
+
+    /**
+     * The {@code Thread} which is invoking {@link #running}, or {@code null}.
+     * Guarded by {@link #recurringRunnables}.
+     */
+    private Thread runningThread;
 
     /**
      * The (background) {@code Thread} which invokes
@@ -56,7 +71,7 @@
      * (in accord with their respective
      * {@link RecurringRunnable#getTimeUntilNextRun()}).
      */
-    private Thread thread;
+    private volatile Thread thread;
 
     /**
      * A {@code String} which will be added to the name of {@link #thread}.
@@ -70,6 +85,13 @@
      */
     private boolean closed = false;
 
+    /**
+     * The array into which {@link #thread} copies {@link #recurringRunnables}
+     * in order to invoke them without holding the lock on
+     * {@link #recurringRunnables}. Accessed by {@link #thread} only.
+     */
+    private RecurringRunnable[] snapshot = new RecurringRunnable[0];
+
     /**
      * Initializes a new {@link RecurringRunnableExecutor} instance.
      */
@@ -91,7 +113,10 @@ public RecurringRunnableExecutor(String name)
     /**
      * De-registers a {@code RecurringRunnable} from this {@code Executor} so
      * that its {@link RecurringRunnable#run()} is no longer invoked (by
-     * this instance).
+     * this instance). If {@link RecurringRunnable#run()} is being invoked at
+     * the time of the call (by a thread other than the calling one), waits
+     * for the invocation to return. Consequently, the
+     * {@code RecurringRunnable} is not invoked after the method returns.
      *
      * @param recurringRunnable the {@code RecurringRunnable} to
      * de-register from this instance
@@ -114,6 +139,26 @@ public boolean deRegisterRecurringRunnable(
 
                 if (removed)
                     startOrNotifyThread();
+
+                // A recurringRunnable may de-register itself from within its
+                // run() in which case there is nothing to wait for.
+                Thread currentThread = Thread.currentThread();
+                boolean interrupted = false;
+
+                while (running == recurringRunnable
+                        && !currentThread.equals(runningThread))
+                {
+                    try
+                    {
+                        recurringRunnables.wait();
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted)
+                    currentThread.interrupt();
                 return removed;
             }
         }
@@ -157,9 +202,10 @@ private boolean run()
             return false;
         }
 
-        // Wait for the recurringRunnable that should be called next, but
-        // don't block thread longer than 100 ms.
-        long minTimeToNext = 100L;
+        // Invoke the recurringRunnables without holding the lock so that
+        // registering and waking up do not wait for them. De-registering
+        // waits for the recurringRunnable being de-registered only.
+        RecurringRunnable[] snapshot;
 
         synchronized (recurringRunnables)
         {
@@ -167,69 +213,87 @@ private boolean run()
             {
                 return false;
             }
-            for (RecurringRunnable recurringRunnable
-                    : recurringRunnables)
-            {
-                long timeToNext
-                    = recurringRunnable.getTimeUntilNextRun();
+            snapshot = recurringRunnables.toArray(this.snapshot);
+        }
+        this.snapshot = snapshot;
 
-                if (minTimeToNext > timeToNext)
-                    minTimeToNext = timeToNext;
-            }
+        // Wait for the recurringRunnable that should be called next, but
+        // don't block thread longer than 100 ms.
+        long minTimeToNext = 100L;
+
+        for (RecurringRunnable recurringRunnable : snapshot)
+        {
+            if (recurringRunnable == null)
+                break;
+
+            long timeToNext = recurringRunnable.getTimeUntilNextRun();
+
+            if (minTimeToNext > timeToNext)
+                minTimeToNext = timeToNext;
         }
 
         if (minTimeToNext > 0L)
         {
-            synchronized (recurringRunnables)
+            Arrays.fill(snapshot, null);
+            // A permit left by wakeUp() or startOrNotifyThread() since the
+            // waiting time was computed makes parkNanos return immediately.
+            LockSupport.parkNanos(
+                    this,
+                    TimeUnit.MILLISECONDS.toNanos(minTimeToNext));
+            return true;
+        }
+
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            RecurringRunnable recurringRunnable = snapshot[i];
+
+            if (recurringRunnable == null)
+                break;
+            snapshot[i] = null;
+
+            long timeToNext = recurringRunnable.getTimeUntilNextRun();
+
+            if (timeToNext < 1L)
             {
-                if (recurringRunnables.isEmpty())
+                synchronized (recurringRunnables)
                 {
-                    return false;
+                    // Do not invoke a recurringRunnable which has been
+                    // de-registered since the snapshot was taken.
+                    if (!recurringRunnables.contains(recurringRunnable))
+                        continue;
+                    running = recurringRunnable;
+                    runningThread = Thread.currentThread();
                 }
                 try
                 {
-                    recurringRunnables.wait(minTimeToNext);
-                }
-                catch (InterruptedException ie)
-                {
-                    Thread.currentThread().interrupt();
+                    recurringRunnable.run();
                 }
-                return true;
-            }
-        }
-        synchronized (recurringRunnables)
-        {
-            for (RecurringRunnable recurringRunnable
-                    : recurringRunnables)
-            {
-                long timeToNext
-                    = recurringRunnable.getTimeUntilNextRun();
-
-                if (timeToNext < 1L)
+                catch (Throwable t)
                 {
-                    try
+                    if (t instanceof InterruptedException)
                     {
-                        recurringRunnable.run();
+                        Thread.currentThread().interrupt();
                     }
-                    catch (Throwable t)
+                    else if (t instanceof ThreadDeath)
                     {
-                        if (t instanceof InterruptedException)
-                        {
-                            Thread.currentThread().interrupt();
-                        }
-                        else if (t instanceof ThreadDeath)
-                        {
-                            throw (ThreadDeath) t;
-                        }
-                        else
-                        {
-                            logger.error(
-                                    "The invocation of the method "
-                                        + recurringRunnable
-                                            .getClass().getName()
-                                        + ".run() threw an exception.",
-                                    t);
-                        }
+                        throw (ThreadDeath) t;
+                    }
+                    else
+                    {
+                        logger.error(
+                                "The invocation of the method "
+                                    + recurringRunnable.getClass().getName()
+                                    + ".run() threw an exception.",
+                                t);
+                    }
+                }
+                finally
+                {
+                    synchronized (recurringRunnables)
+                    {
+                        running = null;
+                        runningThread = null;
+                        recurringRunnables.notifyAll();
                     }
                 }
             }
@@ -266,7 +330,7 @@ public boolean registerRecurringRunnable(
             }
             else
             {
-                recurringRunnables.add(0, recurringRunnable);
+                recurringRunnables.add(recurringRunnable);
 
                 // Wake the thread calling run() to update the waiting
                 // time. The waiting time for the just registered
@@ -345,13 +409,30 @@ public void run()
                     }
                 }
             }
-            else
+            else if (this.thread != null)
             {
-                recurringRunnables.notifyAll();
+                LockSupport.unpark(this.thread);
             }
         }
     }
 
+    /**
+     * Notifies this instance that the value returned by
+     * {@link RecurringRunnable#getTimeUntilNextRun()} of a registered
+     * {@code RecurringRunnable} may have decreased so that the waiting time
+     * of {@link #thread} is re-evaluated instead of allowed to expire.
+     */
+    public void wakeUp()
+    {
+        Thread thread = this.thread;
+
+        // Does not take the lock on recurringRunnables so that the threads
+        // which call the method (e.g. RTP receive threads) never wait for
+        // this instance.
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
     /**
      * Closes this {@link RecurringRunnableExecutor}, signalling its thread to
      * stop and de-registering all registered runnables.
@@ -361,8 +442,12 @@ public void close()
         synchronized (recurringRunnables)
         {
             closed = true;
-            thread = null;
-            recurringRunnables.notifyAll();
+
+            Thread thread = this.thread;
+
+            this.thread = null;
+            if (thread != null)
+                LockSupport.unpark(thread);
         }
     }
 }
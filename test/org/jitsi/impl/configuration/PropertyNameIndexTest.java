@@ -0,0 +1,104 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.configuration;
+
+import java.util.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class PropertyNameIndexTest
+{
+    private static final List<String> NAMES
+        = Arrays.asList(
+                "a.b",
+                "a.b.c",
+                "a.b.c.d",
+                "a.b.e",
+                "a.bc.f",
+                "a.c",
+                "b.c",
+                "noDots");
+
+    @Test
+    public void prefix()
+    {
+        PropertyNameIndex index = new PropertyNameIndex();
+
+        index.reset(NAMES);
+
+        assertEquals(
+                set("a.b", "a.b.c", "a.b.c.d", "a.b.e", "a.bc.f"),
+                getByPrefix(index, "a.b", false));
+        assertEquals(
+                set("a.b.c", "a.b.e"),
+                getByPrefix(index, "a.b", true));
+        assertEquals(set(), getByPrefix(index, "noDots", true));
+        assertEquals(set("noDots"), getByPrefix(index, "no", false));
+        assertEquals(new HashSet<>(NAMES), getByPrefix(index, "", false));
+    }
+
+    @Test
+    public void suffix()
+    {
+        PropertyNameIndex index = new PropertyNameIndex();
+
+        index.reset(NAMES);
+        assertEquals(set("a.b.c", "a.c", "b.c"), getBySuffix(index, "c"));
+
+        index.remove("a.c");
+        index.add("x.y.c");
+        index.add("x.y.c");
+        assertEquals(set("a.b.c", "b.c", "x.y.c"), getBySuffix(index, "c"));
+        assertEquals(set(), getBySuffix(index, "noDots"));
+
+        index.remove("a.b.c");
+        index.remove("b.c");
+        index.remove("x.y.c");
+        assertEquals(set(), getBySuffix(index, "c"));
+        assertEquals(
+                set("a.b", "a.b.c.d", "a.b.e"),
+                getByPrefix(index, "a.b.", false, "a.b"));
+    }
+
+    private static Set<String> getByPrefix(
+            PropertyNameIndex index,
+            String prefix,
+            boolean exactPrefixMatch,
+            String... extra)
+    {
+        Set<String> result = new HashSet<>(Arrays.asList(extra));
+
+        index.getByPrefix(prefix, exactPrefixMatch, result);
+        return result;
+    }
+
+    private static Set<String> getBySuffix(
+            PropertyNameIndex index,
+            String suffix)
+    {
+        List<String> result = new ArrayList<>();
+
+        index.getBySuffix(suffix, result);
+        return new HashSet<>(result);
+    }
+
+    private static Set<String> set(String... names)
+    {
+        return new HashSet<>(Arrays.asList(names));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia;
+
+import java.util.*;
+
+import org.jitsi.service.neomedia.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Tests {@link ByteArrayPool}.
+ */
+public class ByteArrayPoolTest
+{
+    static
+    {
+        // Takes effect only if ByteArrayPool has not been initialized by an
+        // earlier test in the same JVM. The tests which depend on it check
+        // ByteArrayPool.isLeakDetectionEnabled().
+        System.setProperty(
+                "org.jitsi.impl.neomedia.ByteArrayPool.ENABLE_LEAK_DETECTION",
+                "true");
+    }
+
+    @Test
+    public void testSizeClasses()
+    {
+        assertEquals(
+                ByteArrayPool.MIN_SIZE,
+                ByteArrayPool.getBuffer(1).length);
+        assertEquals(
+                ByteArrayPool.MIN_SIZE,
+                ByteArrayPool.getBuffer(ByteArrayPool.MIN_SIZE).length);
+        assertEquals(
+                2 * ByteArrayPool.MIN_SIZE,
+                ByteArrayPool.getBuffer(ByteArrayPool.MIN_SIZE + 1).length);
+        assertEquals(1024, ByteArrayPool.getBuffer(1000).length);
+        assertEquals(
+                ByteArrayPool.MAX_SIZE,
+                ByteArrayPool.getBuffer(ByteArrayPool.MAX_SIZE).length);
+
+        // Requests larger than the largest size class are allocated exactly.
+        assertEquals(
+                ByteArrayPool.MAX_SIZE + 1,
+                ByteArrayPool.getBuffer(ByteArrayPool.MAX_SIZE + 1).length);
+
+        // A returned byte[] satisfies requests of its size class only.
+        byte[] buf = ByteArrayPool.getBuffer(1000);
+
+        ByteArrayPool.returnBuffer(buf);
+        assertNotSame(buf, ByteArrayPool.getBuffer(2000));
+        assertNotSame(buf, ByteArrayPool.getBuffer(500));
+        assertSame(buf, ByteArrayPool.getBuffer(600));
+    }
+
+    @Test
+    public void testThreadLocalCache()
+        throws Exception
+    {
+        final byte[] buf = ByteArrayPool.getBuffer(1000);
+
+        ByteArrayPool.returnBuffer(buf);
+
+        // The byte[] is cached by the current thread so another thread does
+        // not get it.
+        final byte[][] other = new byte[1][];
+        Thread thread
+            = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    other[0] = ByteArrayPool.getBuffer(1000);
+                }
+            };
+
+        thread.start();
+        thread.join();
+        assertNotNull(other[0]);
+        assertNotSame(buf, other[0]);
+
+        // The current thread gets it back.
+        assertSame(buf, ByteArrayPool.getBuffer(1000));
+    }
+
+    @Test
+    public void testThreadLocalCacheOverflow()
+        throws Exception
+    {
+        // Returning more byte[]s than the thread-local cache holds makes the
+        // excess available to other threads.
+        final Set<byte[]> returned
+            = Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+
+        for (int i = 0; i < 16; i++)
+            returned.add(ByteArrayPool.getBuffer(ByteArrayPool.MAX_SIZE));
+        for (byte[] buf : returned)
+            ByteArrayPool.returnBuffer(buf);
+
+        final boolean[] found = new boolean[1];
+        Thread thread
+            = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    // Drain the size class until one of the returned byte[]s
+                    // is found or the size class is empty.
+                    for (int i = 0; i < 100000 && !found[0]; i++)
+                    {
+                        long hits = ByteArrayPool.getNumberOfHits();
+                        byte[] buf
+                            = ByteArrayPool.getBuffer(ByteArrayPool.MAX_SIZE);
+
+                        if (ByteArrayPool.getNumberOfHits() == hits)
+                            break;
+                        found[0] = returned.contains(buf);
+                    }
+                }
+            };
+
+        thread.start();
+        thread.join();
+        assertTrue(found[0]);
+    }
+
+    @Test
+    public void testDoubleReturn()
+    {
+        assumeTrue(ByteArrayPool.isLeakDetectionEnabled());
+
+        byte[] buf = ByteArrayPool.getBuffer(1000);
+
+        ByteArrayPool.returnBuffer(buf);
+
+        long discarded = ByteArrayPool.getNumberOfDiscardedReturns();
+
+        ByteArrayPool.returnBuffer(buf);
+        assertEquals(
+                discarded + 1,
+                ByteArrayPool.getNumberOfDiscardedReturns());
+
+        // The byte[] has been pooled once only so it is handed out once only.
+        byte[] buf1 = ByteArrayPool.getBuffer(1000);
+        byte[] buf2 = ByteArrayPool.getBuffer(1000);
+
+        assertNotSame(buf1, buf2);
+        assertTrue(buf1 == buf || buf2 == buf);
+    }
+
+    @Test
+    public void testUntrackedReturn()
+    {
+        assumeTrue(ByteArrayPool.isLeakDetectionEnabled());
+
+        byte[] buf = new byte[1024];
+        long discarded = ByteArrayPool.getNumberOfDiscardedReturns();
+
+        ByteArrayPool.returnBuffer(buf);
+        assertEquals(
+                discarded + 1,
+                ByteArrayPool.getNumberOfDiscardedReturns());
+        assertNotSame(buf, ByteArrayPool.getBuffer(1024));
+    }
+
+    @Test
+    public void testRawPacketGrow()
+    {
+        byte[] buf = ByteArrayPool.getBuffer(ByteArrayPool.MIN_SIZE);
+        RawPacket pkt = new RawPacket(buf, 0, 200);
+
+        pkt.grow(200);
+        assertNotSame(buf, pkt.getBuffer());
+        assertTrue(pkt.getBuffer().length >= 400);
+
+        // The replaced byte[] has not been returned to the pool because the
+        // RawPacket does not own it.
+        assertNotSame(buf, ByteArrayPool.getBuffer(ByteArrayPool.MIN_SIZE));
+
+        // The new byte[] has been obtained from the pool.
+        long discarded = ByteArrayPool.getNumberOfDiscardedReturns();
+
+        ByteArrayPool.returnBuffer(pkt.getBuffer());
+        assertEquals(
+                discarded,
+                ByteArrayPool.getNumberOfDiscardedReturns());
+    }
+}
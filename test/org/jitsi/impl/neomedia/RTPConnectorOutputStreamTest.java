@@ -0,0 +1,317 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.impl.neomedia.RTPConnectorOutputStream.PacingPriority;
+import org.jitsi.service.neomedia.*;
+import org.jitsi.service.packetlogging.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the pacing and the priority classes of the send queue of
+ * {@link RTPConnectorOutputStream}.
+ */
+public class RTPConnectorOutputStreamTest
+{
+    /**
+     * The maximum time in milliseconds to wait for packets to be sent.
+     */
+    private static final long TIMEOUT_MS = 5000;
+
+    private TestOutputStream stream;
+
+    @Before
+    public void setUp()
+    {
+        stream = new TestOutputStream();
+        stream.addTarget(InetAddress.getLoopbackAddress(), 5000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        stream.unblock();
+        stream.close();
+    }
+
+    /**
+     * Writes a packet which identifies itself by its priority and a specific
+     * number.
+     */
+    private void write(PacingPriority priority, int number, int len)
+    {
+        byte[] buf = new byte[len];
+
+        buf[0] = (byte) priority.ordinal();
+        buf[1] = (byte) (number >> 8);
+        buf[2] = (byte) number;
+        stream.write(buf, 0, len, null, priority);
+    }
+
+    /**
+     * Writes a packet which makes the send thread block until
+     * {@link TestOutputStream#unblock()} is called so that the packets
+     * written afterwards remain in the queue.
+     */
+    private void blockSendThread()
+        throws Exception
+    {
+        stream.block();
+        write(PacingPriority.AUDIO, 0, 20);
+        assertTrue(
+                stream.blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testStrictPriority()
+        throws Exception
+    {
+        blockSendThread();
+
+        write(PacingPriority.PADDING, 1, 20);
+        write(PacingPriority.VIDEO, 2, 20);
+        write(PacingPriority.RETRANSMISSION, 3, 20);
+        write(PacingPriority.VIDEO, 4, 20);
+        write(PacingPriority.AUDIO, 5, 20);
+        stream.unblock();
+
+        List<Integer> sent = stream.awaitSent(6);
+
+        // The packets of a class are sent in the order in which they were
+        // written and before the packets of the lower classes.
+        assertEquals(Arrays.asList(0, 5, 3, 2, 4, 1), numbers(sent));
+    }
+
+    @Test
+    public void testPaddingDroppedFirst()
+        throws Exception
+    {
+        int capacity = RTPConnectorOutputStream.PACKET_QUEUE_CAPACITY;
+        int paddingCount = 10;
+        int number = 1;
+
+        blockSendThread();
+
+        // Fill the queue with video and padding packets.
+        for (int i = 0; i < capacity - paddingCount; i++)
+            write(PacingPriority.VIDEO, number++, 20);
+        for (int i = 0; i < paddingCount; i++)
+            write(PacingPriority.PADDING, number++, 20);
+
+        // Each of the following packets pushes a padding packet out of the
+        // full queue.
+        for (int i = 0; i < paddingCount; i++)
+            write(PacingPriority.VIDEO, number++, 20);
+
+        // A padding packet written into a queue which is full of packets of
+        // higher priority is dropped itself.
+        write(PacingPriority.PADDING, number++, 20);
+        stream.unblock();
+
+        List<Integer> sent = stream.awaitSent(1 + capacity);
+
+        for (int packet : sent)
+        {
+            assertNotEquals(
+                    PacingPriority.PADDING.ordinal(),
+                    priority(packet));
+        }
+    }
+
+    @Test
+    public void testPacingDelay()
+        throws Exception
+    {
+        // 320 kbps times the pacing factor of 2.5 drains the queue at
+        // 100 kB/s i.e. 10 ms per packet of 1000 bytes.
+        int count = 11;
+
+        stream.setTargetBitrate(320000);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < count; i++)
+            write(PacingPriority.VIDEO, i, 1000);
+        stream.awaitSent(count);
+
+        long elapsedMs
+            = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The first packet leaves at once, each of the others waits for the
+        // previous one to drain.
+        assertTrue(
+                "Sent " + count + " packets in " + elapsedMs + " ms",
+                elapsedMs >= 90);
+    }
+
+    @Test
+    public void testAudioNotDelayedByPacing()
+        throws Exception
+    {
+        int videoCount = 20;
+
+        stream.setTargetBitrate(320000);
+        for (int i = 0; i < videoCount; i++)
+            write(PacingPriority.VIDEO, i, 1000);
+        write(PacingPriority.AUDIO, videoCount, 20);
+
+        List<Integer> sent = stream.awaitSent(videoCount + 1);
+        int audioIndex = numbers(sent).indexOf(videoCount);
+
+        // The video packets leave one every 10 ms whereas the audio packet
+        // overtakes the ones which are still queued.
+        assertTrue(
+                "Audio packet sent at index " + audioIndex,
+                audioIndex < videoCount / 2);
+    }
+
+    private static int priority(int packet)
+    {
+        return packet >> 16;
+    }
+
+    private static List<Integer> numbers(List<Integer> packets)
+    {
+        List<Integer> numbers = new ArrayList<>(packets.size());
+
+        for (int packet : packets)
+            numbers.add(packet & 0xffff);
+        return numbers;
+    }
+
+    /**
+     * An {@link RTPConnectorOutputStream} which records the packets it sends
+     * and which may be made to block the sending.
+     */
+    private static class TestOutputStream
+        extends RTPConnectorOutputStream
+    {
+        /**
+         * The priority and the number of each sent packet in the order in
+         * which the packets were sent.
+         */
+        private final List<Integer> sent = new ArrayList<>();
+
+        /**
+         * Counted down when the send thread blocks.
+         */
+        final CountDownLatch blocked = new CountDownLatch(1);
+
+        /**
+         * Counted down in order to let the blocked send thread continue.
+         */
+        private final CountDownLatch unblocked = new CountDownLatch(1);
+
+        /**
+         * Whether the next packet to be sent is to block the send thread.
+         */
+        private boolean blockNext = false;
+
+        synchronized void block()
+        {
+            blockNext = true;
+        }
+
+        void unblock()
+        {
+            unblocked.countDown();
+        }
+
+        List<Integer> awaitSent(int count)
+            throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+
+            synchronized (sent)
+            {
+                while (sent.size() < count)
+                {
+                    long timeout = deadline - System.currentTimeMillis();
+
+                    assertTrue(
+                            "Sent " + sent.size() + " of " + count
+                                + " packets",
+                            timeout > 0);
+                    sent.wait(timeout);
+                }
+                return new ArrayList<>(sent);
+            }
+        }
+
+        @Override
+        protected void doLogPacket(
+                RawPacket packet,
+                InetSocketAddress target)
+        {
+        }
+
+        @Override
+        protected PacketLoggingService getPacketLoggingService()
+        {
+            return null;
+        }
+
+        @Override
+        protected boolean isSocketValid()
+        {
+            return true;
+        }
+
+        @Override
+        protected void sendToTarget(
+                RawPacket packet,
+                InetSocketAddress target)
+        {
+            boolean block;
+
+            synchronized (this)
+            {
+                block = blockNext;
+                blockNext = false;
+            }
+            if (block)
+            {
+                blocked.countDown();
+                try
+                {
+                    unblocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            byte[] buf = packet.getBuffer();
+            int off = packet.getOffset();
+
+            synchronized (sent)
+            {
+                sent.add(
+                        (buf[off] << 16)
+                            | ((buf[off + 1] & 0xff) << 8)
+                            | (buf[off + 2] & 0xff));
+                sent.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio.silk;
+
+import java.util.*;
+import java.util.zip.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the in-band FEC (LBRR) path of the SILK encoder.
+ */
+public class SilkFecTest
+{
+    private static final int SAMPLE_RATE = 16000;
+
+    private static final int FRAME_LENGTH = 20 * SAMPLE_RATE / 1000;
+
+    private static final int FRAMES = 300;
+
+    private SKP_Silk_encoder_state_FLP enc;
+
+    private SKP_SILK_SDK_EncControlStruct encControl;
+
+    private SKP_Silk_decoder_state dec;
+
+    private SKP_SILK_SDK_DecControlStruct decControl;
+
+    @Before
+    public void setUp()
+    {
+        enc = new SKP_Silk_encoder_state_FLP();
+        encControl = new SKP_SILK_SDK_EncControlStruct();
+        EncAPI.SKP_Silk_SDK_InitEncoder(enc, encControl);
+        encControl.API_sampleRate = SAMPLE_RATE;
+        encControl.maxInternalSampleRate = SAMPLE_RATE;
+        encControl.packetSize = FRAME_LENGTH;
+        encControl.bitRate = 20000;
+        encControl.complexity = 2;
+        encControl.useInBandFEC = 1;
+        encControl.packetLossPercentage = 10;
+        encControl.useDTX = 0;
+
+        dec = new SKP_Silk_decoder_state();
+        DecAPI.SKP_Silk_SDK_InitDecoder(dec);
+        decControl = new SKP_SILK_SDK_DecControlStruct();
+        decControl.API_sampleRate = SAMPLE_RATE;
+    }
+
+    /**
+     * Fills a frame with a tone of varying pitch, noise and a periodically
+     * added overtone so that the encoder produces LBRR data.
+     */
+    private static void generate(
+            short[] in, int f,
+            Random random, double[] phase)
+    {
+        for (int i = 0; i < in.length; i++)
+        {
+            phase[0]
+                += 2 * Math.PI * (200 + 100 * Math.sin(f * 0.05))
+                    / SAMPLE_RATE;
+            in[i]
+                = (short)
+                    (6000 * Math.sin(phase[0])
+                        + random.nextGaussian() * 800
+                        + (((f / 25) % 2 == 0)
+                            ? 3000 * Math.sin(phase[0] * 3.1)
+                            : 0));
+        }
+    }
+
+    /**
+     * Encodes and decodes with in-band FEC and compares the CRCs of the
+     * encoded and decoded streams with the ones of the LBRR encoding with a
+     * deep copy of the noise shaping quantizer state.
+     */
+    @Test
+    public void fecBitstream()
+    {
+        CRC32 encCrc = new CRC32();
+        CRC32 decCrc = new CRC32();
+        Random random = new Random(42);
+        double[] phase = new double[1];
+        short[] in = new short[FRAME_LENGTH];
+        byte[] out = new byte[1250];
+        short[] nBytes = new short[1];
+        short[] pcm = new short[120 * SAMPLE_RATE / 1000];
+        short[] nSamples = new short[1];
+
+        for (int f = 0; f < FRAMES; f++)
+        {
+            generate(in, f, random, phase);
+            nBytes[0] = (short) out.length;
+
+            int ret
+                = EncAPI.SKP_Silk_SDK_Encode(
+                        enc, encControl,
+                        in, 0, in.length,
+                        out, 0, nBytes);
+
+            encCrc.update(ret);
+            encCrc.update(out, 0, nBytes[0]);
+            if (nBytes[0] > 0)
+            {
+                do
+                {
+                    nSamples[0] = (short) pcm.length;
+                    ret
+                        = DecAPI.SKP_Silk_SDK_Decode(
+                                dec, decControl,
+                                0,
+                                out, 0, nBytes[0],
+                                pcm, 0, nSamples);
+                    decCrc.update(ret);
+                    for (int i = 0; i < nSamples[0]; i++)
+                    {
+                        decCrc.update(pcm[i] & 0xFF);
+                        decCrc.update(pcm[i] >> 8);
+                    }
+                }
+                while (decControl.moreInternalDecoderFrames != 0);
+            }
+        }
+
+        assertEquals(0xd4d12e84L, encCrc.getValue());
+        assertEquals(0x8a372a1aL, decCrc.getValue());
+    }
+
+    /**
+     * Tests that the state of the LBRR noise shaping quantizer does not share
+     * arrays with, and thus does not overwrite, the state of the main one.
+     */
+    @Test
+    public void lbrrStateDoesNotAliasMainState()
+    {
+        Random random = new Random(42);
+        double[] phase = new double[1];
+        short[] in = new short[FRAME_LENGTH];
+        byte[] out = new byte[1250];
+        short[] nBytes = new short[1];
+
+        for (int f = 0; f < 50; f++)
+        {
+            generate(in, f, random, phase);
+            nBytes[0] = (short) out.length;
+            EncAPI.SKP_Silk_SDK_Encode(
+                    enc, encControl,
+                    in, 0, in.length,
+                    out, 0, nBytes);
+        }
+
+        SKP_Silk_nsq_state main = enc.sNSQ;
+        SKP_Silk_nsq_state lbrr = enc.sNSQ_LBRR;
+
+        assertNotSame(main.xq, lbrr.xq);
+        assertNotSame(main.sLTP_shp_Q10, lbrr.sLTP_shp_Q10);
+        assertNotSame(main.sLPC_Q14, lbrr.sLPC_Q14);
+        assertNotSame(main.sAR2_Q14, lbrr.sAR2_Q14);
+        assertFalse(
+                "LBRR encoding ran",
+                Arrays.equals(main.xq, lbrr.xq));
+    }
+}
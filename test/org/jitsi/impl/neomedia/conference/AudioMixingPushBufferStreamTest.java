@@ -0,0 +1,235 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.conference;
+
+import javax.media.*;
+import javax.media.format.*;
+
+import org.jitsi.util.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the mix-minus mode of {@link AudioMixingPushBufferStream} in a
+ * conference of three remote participants and the local capture device. The
+ * input is pushed the way <tt>AudioMixerPushBufferStream</tt> pushes it in
+ * mix-minus mode: the sum of all input, the input to subtract from it and the
+ * DTMF tone to add to it.
+ */
+public class AudioMixingPushBufferStreamTest
+{
+    /**
+     * The audio samples of the remote participants A, B and C and of the
+     * local capture device. Loud enough for the sums to require clipping.
+     */
+    private static final short[] A = { 1000, 20000, -20000, 30000, -7 };
+
+    private static final short[] B = { 2000, 20000, -20000, 30000, 11 };
+
+    private static final short[] C = { 3000, -5000, -20000, 0, 13 };
+
+    private static final short[] CAPTURE = { 4000, 10000, 10000, -30000, 17 };
+
+    private static final short[] DTMF_TONE = { 500, -500, 20000, 20000, 19 };
+
+    private static final int SAMPLE_COUNT = A.length;
+
+    private AudioMixingPushBufferStream stream;
+
+    @Before
+    public void setUp()
+    {
+        AudioFormat format
+            = new AudioFormat(
+                    AudioFormat.LINEAR,
+                    8000,
+                    16,
+                    1,
+                    AudioFormat.LITTLE_ENDIAN,
+                    AudioFormat.SIGNED,
+                    Format.NOT_SPECIFIED,
+                    Format.NOT_SPECIFIED,
+                    Format.byteArray);
+
+        stream
+            = new AudioMixingPushBufferStream(
+                    new AudioMixerPushBufferStream(null, format),
+                    null);
+    }
+
+    /**
+     * Sums specific audio samples and clips the sum to the range of 16-bit
+     * audio samples.
+     */
+    private static short[] clippedSum(short[]... samples)
+    {
+        short[] sum = new short[SAMPLE_COUNT];
+
+        for (int i = 0; i < SAMPLE_COUNT; i++)
+        {
+            int s = 0;
+
+            for (short[] streamSamples : samples)
+                s += streamSamples[i];
+            sum[i]
+                = (short)
+                    Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, s));
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the sum of the input of all participants and the capture device
+     * without clipping it.
+     */
+    private static int[] mix()
+    {
+        int[] mix = new int[SAMPLE_COUNT];
+
+        for (short[] samples : new short[][] { A, B, C, CAPTURE })
+        {
+            for (int i = 0; i < SAMPLE_COUNT; i++)
+                mix[i] += samples[i];
+        }
+        return mix;
+    }
+
+    /**
+     * Pushes mix-minus input to {@link #stream} and reads its output.
+     *
+     * @param minusSamples the audio samples to subtract from the sum of all
+     * input. Followed by a <tt>null</tt> element like
+     * <tt>AudioMixerPushBufferStream</tt> does.
+     * @param plusSamples the audio samples to add to the sum of all input or
+     * <tt>null</tt>
+     */
+    private short[] read(short[][] minusSamples, short[] plusSamples)
+        throws Exception
+    {
+        short[][] minus = new short[minusSamples.length + 1][];
+
+        System.arraycopy(minusSamples, 0, minus, 0, minusSamples.length);
+        stream.setInSamples(mix(), minus, plusSamples, SAMPLE_COUNT, 0);
+
+        Buffer buffer = new Buffer();
+
+        stream.read(buffer);
+        assertFalse(buffer.isDiscard());
+        assertEquals(2 * SAMPLE_COUNT, buffer.getLength());
+
+        byte[] data = (byte[]) buffer.getData();
+        short[] samples = new short[SAMPLE_COUNT];
+
+        for (int i = 0; i < SAMPLE_COUNT; i++)
+        {
+            samples[i]
+                = ArrayIOUtils.readShort(data, buffer.getOffset() + 2 * i);
+        }
+        return samples;
+    }
+
+    @Test
+    public void testEachHearsTheOthers()
+        throws Exception
+    {
+        assertArrayEquals(
+                clippedSum(B, C, CAPTURE),
+                read(new short[][] { A }, null));
+        assertArrayEquals(
+                clippedSum(A, C, CAPTURE),
+                read(new short[][] { B }, null));
+        assertArrayEquals(
+                clippedSum(A, B, CAPTURE),
+                read(new short[][] { C }, null));
+
+        // The output to the capture device's side hears all participants.
+        assertArrayEquals(
+                clippedSum(A, B, C),
+                read(new short[][] { CAPTURE }, null));
+    }
+
+    @Test
+    public void testMutedCaptureDeviceIsExcluded()
+        throws Exception
+    {
+        assertArrayEquals(
+                clippedSum(B, C),
+                read(new short[][] { A, CAPTURE }, null));
+        assertArrayEquals(
+                clippedSum(A, C),
+                read(new short[][] { CAPTURE, B }, null));
+    }
+
+    @Test
+    public void testDTMFToneReplacesCaptureDevice()
+        throws Exception
+    {
+        assertArrayEquals(
+                clippedSum(B, C, DTMF_TONE),
+                read(new short[][] { CAPTURE, A }, DTMF_TONE));
+        assertArrayEquals(
+                clippedSum(A, B, C, DTMF_TONE),
+                read(new short[][] { CAPTURE }, DTMF_TONE));
+    }
+
+    @Test
+    public void testMinusSamplesArrayIsReused()
+        throws Exception
+    {
+        short[][] minus = stream.allocateMinusSamples(3);
+
+        assertSame(minus, stream.allocateMinusSamples(2));
+        assertSame(minus, stream.allocateMinusSamples(3));
+
+        // Terminated the way AudioMixerPushBufferStream terminates it.
+        minus[0] = B;
+        minus[1] = null;
+        minus[2] = CAPTURE;
+        stream.setInSamples(mix(), minus, null, SAMPLE_COUNT, 0);
+
+        Buffer buffer = new Buffer();
+
+        stream.read(buffer);
+        assertEquals(2 * SAMPLE_COUNT, buffer.getLength());
+        assertEquals(
+                clippedSum(A, C, CAPTURE)[0],
+                ArrayIOUtils.readShort(
+                        (byte[]) buffer.getData(),
+                        buffer.getOffset()));
+
+        short[][] larger = stream.allocateMinusSamples(5);
+
+        assertNotSame(minus, larger);
+        assertTrue(larger.length >= 5);
+    }
+
+    @Test
+    public void testNothingExcluded()
+        throws Exception
+    {
+        assertArrayEquals(
+                clippedSum(A, B, C, CAPTURE),
+                read(new short[0][], null));
+
+        stream.setInSamples(mix(), null, null, SAMPLE_COUNT, 0);
+
+        Buffer buffer = new Buffer();
+
+        stream.read(buffer);
+        assertEquals(2 * SAMPLE_COUNT, buffer.getLength());
+    }
+}
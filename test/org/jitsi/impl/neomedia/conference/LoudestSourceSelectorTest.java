@@ -0,0 +1,154 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.conference;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class LoudestSourceSelectorTest
+{
+    /**
+     * The interval in milliseconds between the packets of a source.
+     */
+    private static final long PTIME = 20;
+
+    private LoudestSourceSelector selector;
+
+    private long now;
+
+    /**
+     * Sends one packet per source with the respective level and advances
+     * {@link #now} by {@link #PTIME}.
+     *
+     * @param ssrcs the sources
+     * @param levels the levels in -dBov of the packets of <tt>ssrcs</tt>
+     * @return whether each of <tt>ssrcs</tt> is selected
+     */
+    private boolean[] round(long[] ssrcs, int[] levels)
+    {
+        boolean[] selected = new boolean[ssrcs.length];
+
+        for (int i = 0; i < ssrcs.length; i++)
+            selected[i] = selector.update(ssrcs[i], levels[i], now);
+        now += PTIME;
+        return selected;
+    }
+
+    /**
+     * Runs {@link #round(long[], int[])} a specific number of times.
+     *
+     * @return whether each of <tt>ssrcs</tt> is selected after the last round
+     */
+    private boolean[] rounds(int count, long[] ssrcs, int[] levels)
+    {
+        boolean[] selected = null;
+
+        for (int i = 0; i < count; i++)
+            selected = round(ssrcs, levels);
+        return selected;
+    }
+
+    @Before
+    public void setUp()
+    {
+        now = 1000;
+    }
+
+    @Test
+    public void selectsTopN()
+    {
+        selector = new LoudestSourceSelector(2);
+
+        boolean[] selected
+            = rounds(
+                    50,
+                    new long[] { 1, 2, 3, 4 },
+                    new int[] { 60, 10, 90, 30 });
+
+        assertArrayEquals(
+                new boolean[] { false, true, false, true },
+                selected);
+    }
+
+    @Test
+    public void doesNotFlapWithinHysteresis()
+    {
+        selector = new LoudestSourceSelector(1);
+
+        long[] ssrcs = { 1, 2 };
+
+        // Source 1 is selected first.
+        rounds(50, new long[] { 1 }, new int[] { 30 });
+
+        // Source 2 is slightly louder but within the hysteresis: source 1
+        // stays selected in every round.
+        for (int i = 0; i < 100; i++)
+        {
+            assertArrayEquals(
+                    new boolean[] { true, false },
+                    round(ssrcs, new int[] { 30, 28 }));
+        }
+
+        // Source 2 becomes clearly louder and takes over.
+        assertArrayEquals(
+                new boolean[] { false, true },
+                rounds(50, ssrcs, new int[] { 30, 20 }));
+    }
+
+    @Test
+    public void evictsSilentSourceAfterTimeout()
+    {
+        selector = new LoudestSourceSelector(1);
+
+        rounds(50, new long[] { 1, 2 }, new int[] { 10, 60 });
+
+        // Source 1 stops sending. Until it times out, it keeps competing
+        // with its last level and source 2 is not selected.
+        long stop = now;
+
+        while (now - stop < 1900)
+        {
+            assertFalse(selector.update(2, 60, now));
+            now += PTIME;
+        }
+
+        // Once source 1 has timed out, source 2 is selected.
+        now = stop + 2100;
+        assertTrue(selector.update(2, 60, now));
+    }
+
+    @Test
+    public void admitsNewSourceWhenFewerThanN()
+    {
+        selector = new LoudestSourceSelector(3);
+
+        rounds(50, new long[] { 1, 2 }, new int[] { 10, 20 });
+
+        // A new source is selected with its first packet, even a quiet one,
+        // while fewer than n sources are selected. It does not wait for the
+        // next periodic selection.
+        selector.update(1, 10, now);
+        assertTrue(selector.update(3, 127, now));
+        assertArrayEquals(
+                new boolean[] { true, true, true },
+                round(new long[] { 1, 2, 3 }, new int[] { 10, 20, 127 }));
+
+        // A fourth source is not, once n sources are selected.
+        selector.update(1, 10, now);
+        assertFalse(selector.update(4, 127, now));
+    }
+}
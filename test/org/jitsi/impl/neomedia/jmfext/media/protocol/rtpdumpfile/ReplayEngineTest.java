@@ -0,0 +1,310 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.jmfext.media.protocol.rtpdumpfile;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import org.jitsi.util.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class ReplayEngineTest
+{
+    /**
+     * The number of RTP packets in the test files.
+     */
+    private static final int PACKETS = 50;
+
+    /**
+     * The SSRC of the RTP packets in the test files.
+     */
+    private static final int SSRC = 0x12345678;
+
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void deleteFiles()
+    {
+        for (File file : files)
+            file.delete();
+    }
+
+    private File write(byte[] bytes)
+        throws IOException
+    {
+        File file = File.createTempFile("ReplayEngineTest", null);
+
+        files.add(file);
+        try (FileOutputStream out = new FileOutputStream(file))
+        {
+            out.write(bytes);
+        }
+        return file;
+    }
+
+    /**
+     * Returns an RTP packet of the test stream: 20 ms of audio at 8 kHz.
+     */
+    private static byte[] rtp(int i, int ssrc)
+    {
+        ByteBuffer b = ByteBuffer.allocate(12 + 160);
+
+        b.put((byte) 0x80).put((byte) 0).putShort((short) (65530 + i));
+        b.putInt(1000 + 160 * i).putInt(ssrc);
+        return b.array();
+    }
+
+    private File writeRtpdump()
+        throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+
+        data.writeBytes("#!rtpplay1.0 127.0.0.1/5000\n");
+        data.write(new byte[RtpdumpFileReader.FILE_HEADER_LENGTH]);
+        for (int i = 0; i < PACKETS; i++)
+        {
+            byte[] rtp = rtp(i, SSRC);
+
+            data.writeShort(rtp.length + 8);
+            data.writeShort(rtp.length);
+            data.writeInt(20 * i);
+            data.write(rtp);
+
+            // RTCP is skipped.
+            data.writeShort(8 + 8);
+            data.writeShort(0);
+            data.writeInt(20 * i);
+            data.write(new byte[] { (byte) 0x80, (byte) 200, 0, 1 });
+            data.writeInt(SSRC);
+        }
+        return write(out.toByteArray());
+    }
+
+    private File writePcap()
+        throws IOException
+    {
+        ByteBuffer b = ByteBuffer.allocate(1 << 16);
+
+        // Little-endian with microsecond timestamps and Ethernet links.
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0xA1B2C3D4).putShort((short) 2).putShort((short) 4);
+        b.putInt(0).putInt(0).putInt(65535).putInt(1);
+        for (int i = 0; i < 2 * PACKETS; i++)
+        {
+            // Every other packet is of another SSRC which is not indexed.
+            byte[] rtp = rtp(i / 2, (i % 2 == 0) ? SSRC : SSRC + 1);
+            int len = 14 + 20 + 8 + rtp.length;
+
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            b.putInt(1).putInt(20000 * (i / 2)).putInt(len).putInt(len);
+            b.order(ByteOrder.BIG_ENDIAN);
+            b.put(new byte[12]).putShort((short) 0x0800);
+            b.put((byte) 0x45).put((byte) 0).putShort((short) (len - 14));
+            b.putInt(0).put((byte) 64).put((byte) 17).putShort((short) 0);
+            b.putInt(0x7F000001).putInt(0x7F000001);
+            b.putShort((short) 5000).putShort((short) 5002);
+            b.putShort((short) (8 + rtp.length)).putShort((short) 0);
+            b.put(rtp);
+        }
+        return write(Arrays.copyOf(b.array(), b.position()));
+    }
+
+    @Test
+    public void indexRtpdump()
+        throws IOException
+    {
+        checkIndex(new MappedPacketFile(writeRtpdump().getPath(), -1));
+    }
+
+    @Test
+    public void indexPcap()
+        throws IOException
+    {
+        checkIndex(new MappedPacketFile(writePcap().getPath(), -1));
+    }
+
+    private static void checkIndex(MappedPacketFile file)
+    {
+        assertEquals(PACKETS, file.getCount());
+        assertEquals(SSRC & 0xFFFFFFFFL, file.getSSRC());
+        assertEquals(172, file.getMaxLength());
+        assertEquals(20000000L * (PACKETS - 1), file.getTime(PACKETS - 1));
+        assertEquals(20000000L * PACKETS, file.getLoopDuration());
+        assertEquals(PACKETS, file.getLoopSequenceNumberDelta());
+        assertEquals(160L * PACKETS, file.getLoopTimestampDelta());
+    }
+
+    @Test
+    public void replayAsFastAsPossible()
+        throws Exception
+    {
+        MappedPacketFile file
+            = new MappedPacketFile(writeRtpdump().getPath(), -1);
+        ReplayEngine engine
+            = new ReplayEngine(ReplayEngine.AS_FAST_AS_POSSIBLE);
+        final int streams = 100;
+        final int loops = 3;
+        final Map<Long, List<long[]>> received = new HashMap<>();
+
+        for (int i = 0; i < streams; i++)
+        {
+            engine.addStream(
+                    file, i, loops,
+                    new ReplayEngine.PacketSink()
+                    {
+                        @Override
+                        public void send(byte[] buf, int off, int len)
+                        {
+                            long ssrc = RTPUtils.readUint32AsLong(buf, off + 8);
+                            List<long[]> packets = received.get(ssrc);
+
+                            if (packets == null)
+                                received.put(ssrc, packets = new ArrayList<>());
+                            packets.add(
+                                    new long[]
+                                    {
+                                        RTPUtils.readUint16AsInt(buf, off + 2),
+                                        RTPUtils.readUint32AsLong(buf, off + 4)
+                                    });
+                        }
+                    });
+        }
+        engine.start();
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (engine.getStreamCount() != 0
+                && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        engine.stop();
+
+        assertEquals(streams * loops * PACKETS, engine.getTotalPacketsSent());
+        assertEquals(streams, received.size());
+        for (List<long[]> packets : received.values())
+        {
+            assertEquals(loops * PACKETS, packets.size());
+            for (int i = 1; i < packets.size(); i++)
+            {
+                long[] prev = packets.get(i - 1);
+                long[] cur = packets.get(i);
+
+                assertEquals((prev[0] + 1) & 0xFFFF, cur[0]);
+                assertEquals((prev[1] + 160) & 0xFFFFFFFFL, cur[1]);
+            }
+        }
+    }
+
+    @Test
+    public void replayInRealTime()
+        throws Exception
+    {
+        MappedPacketFile file
+            = new MappedPacketFile(writeRtpdump().getPath(), -1);
+        ReplayEngine engine = new ReplayEngine(10);
+
+        engine.addStream(
+                file, 1, 1,
+                new ReplayEngine.PacketSink()
+                {
+                    @Override
+                    public void send(byte[] buf, int off, int len)
+                    {
+                    }
+                });
+
+        long start = System.nanoTime();
+
+        engine.start();
+        while (engine.getStreamCount() != 0)
+            Thread.sleep(1);
+
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        engine.stop();
+        // 49 intervals of 20 ms at 10x.
+        assertEquals(PACKETS, engine.getTotalPacketsSent());
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 95);
+    }
+
+    @Test
+    public void stopWaitsForSchedulerThread()
+        throws Exception
+    {
+        MappedPacketFile file
+            = new MappedPacketFile(writeRtpdump().getPath(), -1);
+        ReplayEngine engine
+            = new ReplayEngine(ReplayEngine.AS_FAST_AS_POSSIBLE);
+        final Object lock = new Object();
+        final int[] sent = new int[1];
+        final int[] concurrent = new int[2];
+
+        engine.addStream(
+                file, 1, -1,
+                new ReplayEngine.PacketSink()
+                {
+                    @Override
+                    public void send(byte[] buf, int off, int len)
+                    {
+                        synchronized (lock)
+                        {
+                            // The number of threads in send and the maximum.
+                            concurrent[0]++;
+                            concurrent[1]
+                                = Math.max(concurrent[1], concurrent[0]);
+                        }
+                        Thread.yield();
+                        synchronized (lock)
+                        {
+                            concurrent[0]--;
+                            sent[0]++;
+                        }
+                    }
+                });
+
+        for (int i = 0; i < 50; i++)
+        {
+            engine.start();
+            Thread.sleep(1);
+            engine.stop();
+
+            // No packet is sent once stop returns.
+            int sentAfterStop;
+
+            synchronized (lock)
+            {
+                sentAfterStop = sent[0];
+                assertEquals(0, concurrent[0]);
+            }
+            Thread.sleep(2);
+            synchronized (lock)
+            {
+                assertEquals(sentAfterStop, sent[0]);
+            }
+            assertEquals(sentAfterStop, engine.getTotalPacketsSent());
+        }
+        synchronized (lock)
+        {
+            assertEquals(1, concurrent[1]);
+            assertTrue(sent[0] > 0);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.kernels;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class G711KernelsTest
+{
+    /**
+     * The per-sample mu-law encoding which the ulaw <tt>JavaEncoder</tt> used
+     * before it was table-driven.
+     */
+    private static byte encodeUlaw(int sample)
+    {
+        int signBit;
+
+        if (sample >= 0)
+        {
+            signBit = 0x80;
+        }
+        else
+        {
+            sample = -sample;
+            signBit = 0x00;
+        }
+
+        int s = (132 + sample) >> 3;
+
+        return
+            (byte)
+                ((s < 0x0020) ? (signBit | (7 << 4) | (31 - (s >> 0)))
+                    : (s < 0x0040) ? (signBit | (6 << 4) | (31 - (s >> 1)))
+                    : (s < 0x0080) ? (signBit | (5 << 4) | (31 - (s >> 2)))
+                    : (s < 0x0100) ? (signBit | (4 << 4) | (31 - (s >> 3)))
+                    : (s < 0x0200) ? (signBit | (3 << 4) | (31 - (s >> 4)))
+                    : (s < 0x0400) ? (signBit | (2 << 4) | (31 - (s >> 5)))
+                    : (s < 0x0800) ? (signBit | (1 << 4) | (31 - (s >> 6)))
+                    : (s < 0x1000) ? (signBit | (0 << 4) | (31 - (s >> 7)))
+                    : (signBit | (0 << 4) | (31 - (0xfff >> 7))));
+    }
+
+    @Test
+    public void ulawEncodingMatchesPerSampleEncoding()
+    {
+        byte[] le = new byte[2 << 16];
+        byte[] be = new byte[2 << 16];
+
+        for (int i = 0; i < (1 << 16); i++)
+        {
+            le[2 * i] = be[2 * i + 1] = (byte) i;
+            le[2 * i + 1] = be[2 * i] = (byte) (i >> 8);
+        }
+
+        byte[] leOut = new byte[1 << 16];
+        byte[] beOut = new byte[1 << 16];
+
+        G711Kernels.linearToUlaw(le, 0, le.length, false, true, leOut, 0);
+        G711Kernels.linearToUlaw(be, 0, be.length, true, true, beOut, 0);
+        for (int i = 0; i < (1 << 16); i++)
+        {
+            byte expected = encodeUlaw((short) i);
+
+            assertEquals("sample " + (short) i, expected, leOut[i]);
+            assertEquals("sample " + (short) i, expected, beOut[i]);
+        }
+    }
+
+    @Test
+    public void ulawRoundTrip()
+    {
+        byte[] ulaw = new byte[256];
+        byte[] linear = new byte[512];
+        byte[] out = new byte[256];
+
+        for (int i = 0; i < ulaw.length; i++)
+            ulaw[i] = (byte) i;
+        G711Kernels.ulawToLinear(ulaw, 0, ulaw.length, linear, 0);
+        G711Kernels.linearToUlaw(linear, 0, linear.length, false, true, out, 0);
+        for (int i = 0; i < ulaw.length; i++)
+        {
+            // Negative zero encodes as positive zero.
+            byte expected = (i == 0x7F) ? (byte) 0xFF : (byte) i;
+
+            assertEquals("mu-law " + i, expected, out[i]);
+        }
+    }
+
+    @Test
+    public void alawKnownValues()
+    {
+        assertEquals((byte) 0xD5, G711Kernels.linearToAlaw(0));
+        assertEquals((byte) 0xAA, G711Kernels.linearToAlaw(Short.MAX_VALUE));
+        assertEquals((byte) 0x2A, G711Kernels.linearToAlaw(Short.MIN_VALUE));
+        assertEquals(
+                G711Kernels.linearToAlaw(-1),
+                G711Kernels.linearToAlaw(0xFFFF));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.recording;
+
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.service.neomedia.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the ring of {@link PacketBuffer} across the wraparound of the RTP
+ * sequence numbers.
+ */
+public class PacketBufferTest
+{
+    /**
+     * The capacity of the buffer of an SSRC i.e. the default of
+     * <tt>PacketBuffer.SIZE</tt>.
+     */
+    private static final int CAPACITY = 300;
+
+    private static final long SSRC = 0x12345678L;
+
+    /**
+     * The payload type which {@link PacketBuffer} buffers (VP8).
+     */
+    private static final int VP8_PAYLOAD_TYPE = 100;
+
+    private PacketBuffer packetBuffer;
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        LibJitsi.start();
+    }
+
+    @Before
+    public void setUp()
+    {
+        packetBuffer = new PacketBuffer();
+    }
+
+    private static RawPacket createPacket(int seq)
+    {
+        byte[] buf = new byte[20];
+
+        buf[0] = (byte) 0x80;
+        buf[1] = (byte) VP8_PAYLOAD_TYPE;
+        buf[2] = (byte) (seq >> 8);
+        buf[3] = (byte) seq;
+        buf[8] = (byte) (SSRC >> 24);
+        buf[9] = (byte) (SSRC >> 16);
+        buf[10] = (byte) (SSRC >> 8);
+        buf[11] = (byte) SSRC;
+        return new RawPacket(buf, 0, buf.length);
+    }
+
+    /**
+     * Passes a packet with a specific sequence number through
+     * {@link #packetBuffer} and returns the output.
+     */
+    private RawPacket[] receive(int seq)
+    {
+        return
+            packetBuffer.reverseTransform(
+                    new RawPacket[] { createPacket(seq) });
+    }
+
+    /**
+     * Asserts that the buffer of {@link #SSRC} holds packets with specific
+     * sequence numbers in order, and empties it.
+     */
+    private void assertEmptied(int... seqs)
+    {
+        RawPacket[] pkts = packetBuffer.emptyBuffer(SSRC);
+
+        assertEquals(seqs.length, pkts.length);
+        for (int i = 0; i < seqs.length; i++)
+            assertEquals(seqs[i], pkts[i].getSequenceNumber());
+        assertEquals(0, packetBuffer.emptyBuffer(SSRC).length);
+    }
+
+    @Test
+    public void ordersAcrossWraparound()
+    {
+        int[] seqs = { 65534, 1, 65530, 0, 65535, 3, 65532, 2 };
+
+        for (int seq : seqs)
+            assertNull(receive(seq)[0]);
+        assertEmptied(65530, 65532, 65534, 65535, 0, 1, 2, 3);
+    }
+
+    @Test
+    public void releasesOldestAcrossWraparoundWhenFull()
+    {
+        int start = 65536 - CAPACITY / 2;
+
+        for (int i = 0; i < CAPACITY; i++)
+            assertNull(receive((start + i) & 0xFFFF)[0]);
+
+        // The buffer is full and releases its oldest packet for every new
+        // one, in order across the wraparound.
+        for (int i = 0; i < CAPACITY; i++)
+        {
+            RawPacket[] out = receive((start + CAPACITY + i) & 0xFFFF);
+
+            assertEquals(1, out.length);
+            assertEquals((start + i) & 0xFFFF, out[0].getSequenceNumber());
+        }
+
+        int[] seqs = new int[CAPACITY];
+
+        for (int i = 0; i < CAPACITY; i++)
+            seqs[i] = (start + CAPACITY + i) & 0xFFFF;
+        assertEmptied(seqs);
+    }
+
+    @Test
+    public void skipsGapsAcrossWraparound()
+    {
+        receive(65533);
+        receive(2);
+        receive(65535);
+        receive(5);
+        assertEmptied(65533, 65535, 2, 5);
+    }
+
+    @Test
+    public void dropsDuplicates()
+    {
+        receive(65535);
+        receive(0);
+        assertNull(receive(65535)[0]);
+        assertNull(receive(0)[0]);
+        assertEmptied(65535, 0);
+    }
+
+    @Test
+    public void releasesPacketsWhichDoNotShareTheRing()
+    {
+        receive(65000);
+        receive(65001);
+
+        // Far enough ahead (across the wraparound) that the older packets
+        // cannot share the ring with it: they precede it in the output and
+        // the new packet is buffered.
+        int seq = (65001 + 8 * CAPACITY) & 0xFFFF;
+        RawPacket[] out = receive(seq);
+
+        assertEquals(3, out.length);
+        assertEquals(65000, out[0].getSequenceNumber());
+        assertEquals(65001, out[1].getSequenceNumber());
+        assertNull(out[2]);
+        assertEmptied(seq);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.recording;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class WebmWriterTest
+{
+    /**
+     * The number of frames written by the tests.
+     */
+    private static final int FRAMES = 300;
+
+    /**
+     * Every how many frames a keyframe is written.
+     */
+    private static final int KEYFRAME_INTERVAL = 50;
+
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void deleteFiles()
+    {
+        for (File file : files)
+            file.delete();
+    }
+
+    private File newFile()
+        throws IOException
+    {
+        File file = File.createTempFile("WebmWriterTest", ".webm");
+
+        files.add(file);
+        return file;
+    }
+
+    @Test
+    public void writeAndClose()
+        throws IOException
+    {
+        File file = newFile();
+        WebmWriter writer = new WebmWriter(file.getPath(), 4096);
+
+        writer.writeWebmFileHeader(640, 480);
+        for (int i = 0; i < FRAMES; i++)
+            writeFrame(writer, i);
+        writer.close();
+
+        Structure s = parse(file);
+
+        assertTrue(s.finalized);
+        assertEquals(FRAMES, s.blocks);
+        assertEquals(FRAMES / KEYFRAME_INTERVAL, s.clusters);
+        assertEquals(s.clusters, s.cuePoints);
+        assertTrue(s.hasCues);
+        assertFalse(WebmWriter.recover(file.getPath()));
+    }
+
+    @Test
+    public void recover()
+        throws IOException
+    {
+        File file = newFile();
+        File crashed = newFile();
+        WebmWriter writer = new WebmWriter(file.getPath(), 4096);
+
+        writer.writeWebmFileHeader(640, 480);
+        for (int i = 0; i < FRAMES; i++)
+            writeFrame(writer, i);
+
+        // Whatever has reached the file so far is what a crash would leave,
+        // cut in the middle of a block.
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        writer.close();
+        Files.write(
+                crashed.toPath(),
+                Arrays.copyOf(bytes, bytes.length - 100));
+
+        Structure s = parse(crashed);
+
+        assertFalse(s.finalized);
+
+        assertTrue(WebmWriter.recover(crashed.getPath()));
+        s = parse(crashed);
+        assertTrue(s.finalized);
+        assertTrue(s.hasCues);
+        assertTrue(s.blocks > 0 && s.blocks < FRAMES);
+        assertEquals(s.clusters, s.cuePoints);
+        assertFalse(WebmWriter.recover(crashed.getPath()));
+    }
+
+    @Test
+    public void flushesCompleteClusters()
+        throws IOException
+    {
+        File file = newFile();
+        WebmWriter writer = new WebmWriter(file.getPath());
+
+        writer.writeWebmFileHeader(640, 480);
+        for (int i = 0; i < FRAMES; i++)
+            writeFrame(writer, i);
+
+        // The frames fit in the buffer, yet all the Clusters but the last
+        // have been written to the file.
+        Structure s = parse(file);
+
+        writer.close();
+        assertFalse(s.finalized);
+        assertEquals(FRAMES / KEYFRAME_INTERVAL - 1, s.clusters);
+        assertEquals(FRAMES - KEYFRAME_INTERVAL, s.blocks);
+    }
+
+    @Test
+    public void boundsCuePoints()
+        throws IOException
+    {
+        File file = newFile();
+        WebmWriter writer = new WebmWriter(file.getPath());
+        int frames = 3 * WebmWriter.MAX_CUE_POINTS;
+
+        writer.writeWebmFileHeader(640, 480);
+        for (int i = 0; i < frames; i++)
+        {
+            WebmWriter.FrameDescriptor fd = new WebmWriter.FrameDescriptor();
+
+            fd.buffer = new byte[10];
+            fd.length = fd.buffer.length;
+            fd.pts = i * 33L;
+            fd.flags = WebmWriter.FLAG_FRAME_IS_KEY;
+            writer.writeFrame(fd);
+        }
+        writer.close();
+
+        Structure s = parse(file);
+
+        assertTrue(s.finalized);
+        assertEquals(frames, s.clusters);
+        assertTrue(s.cuePoints > WebmWriter.MAX_CUE_POINTS / 4);
+        assertTrue(s.cuePoints <= WebmWriter.MAX_CUE_POINTS);
+    }
+
+    private static void writeFrame(WebmWriter writer, int i)
+        throws IOException
+    {
+        WebmWriter.FrameDescriptor fd = new WebmWriter.FrameDescriptor();
+        byte[] data = new byte[100 + (i % 7) * 50];
+
+        Arrays.fill(data, (byte) i);
+        fd.buffer = data;
+        fd.offset = 0;
+        fd.length = data.length;
+        fd.pts = i * 33L;
+        fd.flags
+            = (i % KEYFRAME_INTERVAL == 0) ? WebmWriter.FLAG_FRAME_IS_KEY : 0;
+        writer.writeFrame(fd);
+    }
+
+    /**
+     * Parses a WebM file written by <tt>WebmWriter</tt>, checking that the
+     * sizes of its elements are consistent.
+     */
+    private static Structure parse(File file)
+        throws IOException
+    {
+        Structure s = new Structure();
+        Ebml.ElementHeader h = new Ebml.ElementHeader();
+
+        try (FileChannel channel
+                = new RandomAccessFile(file, "r").getChannel())
+        {
+            long size = channel.size();
+
+            assertTrue(Ebml.readHeader(channel, 0, h));
+            assertEquals(Ebml.EBML, h.id);
+
+            long position = h.headerLength + h.size;
+
+            assertTrue(Ebml.readHeader(channel, position, h));
+            assertEquals(Ebml.SEGMENT, h.id);
+            position += h.headerLength;
+            s.finalized = (h.size != Ebml.UNKNOWN);
+            if (s.finalized)
+                assertEquals(size, position + h.size);
+
+            while (position < size && Ebml.readHeader(channel, position, h))
+            {
+                long end = position + h.headerLength + h.size;
+
+                if (h.id == Ebml.CLUSTER)
+                {
+                    s.clusters++;
+                    if (h.size == Ebml.UNKNOWN)
+                        break;
+                    if (end > size)
+                        break;
+                    s.blocks += count(channel, position + h.headerLength, end,
+                            Ebml.SIMPLE_BLOCK);
+                }
+                else if (h.id == Ebml.CUES)
+                {
+                    s.hasCues = true;
+                    s.cuePoints += count(channel, position + h.headerLength,
+                            end, Ebml.CUE_POINT);
+                }
+                if (end > size)
+                    break;
+                position = end;
+            }
+            if (s.finalized)
+                assertEquals(size, position);
+        }
+        return s;
+    }
+
+    private static int count(
+            FileChannel channel,
+            long position,
+            long end,
+            int id)
+        throws IOException
+    {
+        Ebml.ElementHeader h = new Ebml.ElementHeader();
+        int count = 0;
+
+        while (position < end)
+        {
+            assertTrue(Ebml.readHeader(channel, position, h));
+            if (h.id == id)
+                count++;
+            position += h.headerLength + h.size;
+        }
+        assertEquals(end, position);
+        return count;
+    }
+
+    private static class Structure
+    {
+        int blocks;
+        int clusters;
+        int cuePoints;
+        boolean finalized;
+        boolean hasCues;
+    }
+}
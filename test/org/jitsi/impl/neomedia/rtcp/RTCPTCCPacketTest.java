@@ -0,0 +1,130 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtcp;
+
+import java.util.*;
+
+import org.jitsi.service.neomedia.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class RTCPTCCPacketTest
+{
+    /**
+     * Assembles a transport-cc packet and parses its FCI back.
+     */
+    private static RTCPTCCPacket roundTrip(RTCPTCCPacket packet)
+        throws Exception
+    {
+        RawPacket raw = packet.toRawPacket();
+        byte[] buf = raw.getBuffer();
+
+        assertEquals(0, raw.getLength() % 4);
+        assertEquals(RTCPFBPacket.RTPFB, buf[1] & 0xFF);
+        assertEquals(RTCPTCCPacket.FMT, buf[0] & 0x1F);
+        assertEquals(
+                raw.getLength() / 4 - 1,
+                (buf[2] & 0xFF) << 8 | (buf[3] & 0xFF));
+
+        RTCPTCCPacket parsed
+            = new RTCPTCCPacket(0, 0, 0, new long[0], 0);
+
+        parsed.fci = Arrays.copyOfRange(buf, 12, raw.getLength());
+        return parsed;
+    }
+
+    @Test
+    public void testRoundTrip()
+        throws Exception
+    {
+        Random random = new Random(1);
+
+        for (int iter = 0; iter < 500; iter++)
+        {
+            int count = 1 + random.nextInt(iter % 5 == 0 ? 2000 : 50);
+            long[] arrivalTimesUs = new long[count];
+            long timeUs = random.nextInt(1 << 30) * 250L;
+
+            for (int i = 0; i < count; i++)
+            {
+                int kind = random.nextInt(10);
+
+                if (kind < 2)
+                {
+                    arrivalTimesUs[i] = RTCPTCCPacket.NOT_RECEIVED;
+                }
+                else
+                {
+                    // Mostly small deltas, some large and negative ones.
+                    timeUs
+                        += kind == 9
+                            ? random.nextInt(20000) - 5000
+                            : random.nextInt(4000);
+                    arrivalTimesUs[i] = timeUs;
+                }
+            }
+
+            int baseSeq = random.nextInt(0x10000);
+            RTCPTCCPacket parsed
+                = roundTrip(
+                        new RTCPTCCPacket(
+                                1, 2, baseSeq, arrivalTimesUs, iter & 0xFF));
+            long[] parsedTimesUs = parsed.getArrivalTimesUs();
+
+            assertEquals(baseSeq, parsed.getBaseSeq());
+            assertEquals(iter & 0xFF, parsed.getFeedbackPacketCount());
+            assertEquals(count, parsedTimesUs.length);
+            for (int i = 0; i < count; i++)
+            {
+                if (arrivalTimesUs[i] == RTCPTCCPacket.NOT_RECEIVED)
+                {
+                    assertEquals(
+                            RTCPTCCPacket.NOT_RECEIVED, parsedTimesUs[i]);
+                }
+                else
+                {
+                    // The deltas have a resolution of 250us.
+                    assertTrue(
+                            Math.abs(parsedTimesUs[i] - arrivalTimesUs[i])
+                                <= 125);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRunLength()
+        throws Exception
+    {
+        long[] arrivalTimesUs = new long[1000];
+
+        Arrays.fill(arrivalTimesUs, RTCPTCCPacket.NOT_RECEIVED);
+        arrivalTimesUs[999] = 64000;
+
+        RTCPTCCPacket packet
+            = new RTCPTCCPacket(1, 2, 0xFFF0, arrivalTimesUs, 0);
+
+        // A run length chunk for the lost packets and a vector chunk for the
+        // last one, followed by a single one-byte delta.
+        assertEquals(8 + 2 + 2 + 1 + 3, packet.fci.length);
+
+        long[] parsedTimesUs = roundTrip(packet).getArrivalTimesUs();
+
+        assertEquals(RTCPTCCPacket.NOT_RECEIVED, parsedTimesUs[998]);
+        assertEquals(64000, parsedTimesUs[999]);
+    }
+}
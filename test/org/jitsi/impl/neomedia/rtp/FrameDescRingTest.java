@@ -0,0 +1,157 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link FrameDescRing}.
+ */
+public class FrameDescRingTest
+{
+    /**
+     * Asserts that a ring holds frames with specific timestamps, in order.
+     */
+    private static void assertFrames(FrameDescRing ring, long... timestamps)
+    {
+        FrameDesc frame = ring.get(timestamps[0]);
+
+        assertNotNull(frame);
+        assertNull(ring.lower(frame));
+        for (int i = 0; i < timestamps.length; i++)
+        {
+            assertNotNull(frame);
+            assertEquals(timestamps[i], frame.getTimestamp());
+            assertSame(frame, ring.get(timestamps[i]));
+            if (i > 0)
+            {
+                assertEquals(
+                        timestamps[i - 1],
+                        ring.lower(frame).getTimestamp());
+            }
+            frame = ring.higher(frame);
+        }
+        assertNull(frame);
+        assertEquals(
+                timestamps[timestamps.length - 1],
+                ring.getNewest().getTimestamp());
+    }
+
+    @Test
+    public void inOrder()
+    {
+        FrameDescRing ring = new FrameDescRing(null, 10);
+
+        assertNull(ring.get(1000));
+        assertNull(ring.getNewest());
+        for (long ts = 1000; ts <= 5000; ts += 1000)
+            assertEquals(ts, ring.put(ts, 0).getTimestamp());
+        assertFrames(ring, 1000, 2000, 3000, 4000, 5000);
+        assertNull(ring.get(1500));
+    }
+
+    @Test
+    public void outOfOrder()
+    {
+        FrameDescRing ring = new FrameDescRing(null, 10);
+
+        ring.put(3000, 0);
+        ring.put(1000, 0);
+        ring.put(5000, 0);
+        ring.put(2000, 0);
+        ring.put(4000, 0);
+        assertFrames(ring, 1000, 2000, 3000, 4000, 5000);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void duplicate()
+    {
+        FrameDescRing ring = new FrameDescRing(null, 10);
+
+        ring.put(1000, 0);
+        ring.put(2000, 0);
+        ring.put(1000, 0);
+    }
+
+    @Test
+    public void wraparound()
+    {
+        FrameDescRing ring = new FrameDescRing(null, 10);
+
+        ring.put(0xFFFFF000L, 0);
+        ring.put(0x00001000L, 0);
+        ring.put(0xFFFFF800L, 0);
+        ring.put(0x00000000L, 0);
+        ring.put(0x00000800L, 0);
+        assertFrames(
+                ring,
+                0xFFFFF000L, 0xFFFFF800L, 0x00000000L, 0x00000800L,
+                0x00001000L);
+    }
+
+    @Test
+    public void evictsOldest()
+    {
+        FrameDescRing ring = new FrameDescRing(null, 3);
+
+        // Wrap the slots of the ring around a few times.
+        for (long ts = 1; ts <= 10; ts++)
+            ring.put(ts * 1000, 0);
+        assertFrames(ring, 8000, 9000, 10000);
+        assertNull(ring.get(7000));
+
+        // An out-of-order frame which is not the oldest evicts the oldest.
+        assertNotNull(ring.put(9500, 0));
+        assertFrames(ring, 9000, 9500, 10000);
+    }
+
+    @Test
+    public void dropsFrameOlderThanAllWhenFull()
+    {
+        FrameDescRing ring = new FrameDescRing(null, 3);
+
+        ring.put(2000, 0);
+        ring.put(3000, 0);
+        ring.put(4000, 0);
+        assertNull(ring.put(1000, 0));
+        assertFrames(ring, 2000, 3000, 4000);
+
+        // There is room when the ring is not full.
+        ring = new FrameDescRing(null, 3);
+        ring.put(2000, 0);
+        ring.put(3000, 0);
+        assertNotNull(ring.put(1000, 0));
+        assertFrames(ring, 1000, 2000, 3000);
+    }
+
+    @Test
+    public void clearsOnDiscontinuity()
+    {
+        FrameDescRing ring = new FrameDescRing(null, 10);
+
+        ring.put(1000, 0);
+        ring.put(2000, 0);
+
+        long ts = 2000 + (1L << 31);
+
+        ring.put(ts, 0);
+        assertNull(ring.get(1000));
+        assertNull(ring.get(2000));
+        assertFrames(ring, ts);
+    }
+}
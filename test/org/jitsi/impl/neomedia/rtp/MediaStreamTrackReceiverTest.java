@@ -0,0 +1,171 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the lookups of {@link MediaStreamTrackReceiver} by SSRC.
+ */
+public class MediaStreamTrackReceiverTest
+{
+    private MediaStreamTrackReceiver receiver;
+
+    @Before
+    public void setUp()
+    {
+        receiver = new MediaStreamTrackReceiver(null);
+    }
+
+    /**
+     * Initializes a new {@link MediaStreamTrackDesc} with a single
+     * {@link RTPEncodingDesc} which is received by {@link #receiver}.
+     */
+    private MediaStreamTrackDesc createTrack(long primarySSRC, long rtxSSRC)
+    {
+        RTPEncodingDesc[] encodings = new RTPEncodingDesc[1];
+        MediaStreamTrackDesc track
+            = new MediaStreamTrackDesc(receiver, encodings);
+
+        encodings[0] = new RTPEncodingDesc(track, primarySSRC, rtxSSRC);
+        return track;
+    }
+
+    /**
+     * Initializes the header of an RTP packet with a specific SSRC.
+     */
+    private static byte[] createRTPPacket(long ssrc)
+    {
+        byte[] buf = new byte[12];
+
+        buf[0] = (byte) 0x80;
+        buf[8] = (byte) (ssrc >> 24);
+        buf[9] = (byte) (ssrc >> 16);
+        buf[10] = (byte) (ssrc >> 8);
+        buf[11] = (byte) ssrc;
+        return buf;
+    }
+
+    /**
+     * Asserts that {@link #receiver} looks the SSRC of a specific track up
+     * (both by SSRC and by packet) as the (first) encoding of that track.
+     */
+    private void assertFound(long ssrc, MediaStreamTrackDesc track)
+    {
+        RTPEncodingDesc encoding = track.getRTPEncodings()[0];
+        byte[] buf = createRTPPacket(ssrc);
+
+        assertSame(encoding, receiver.findRTPEncodingDesc(ssrc));
+        assertSame(
+                encoding,
+                receiver.findRTPEncodingDesc(buf, 0, buf.length));
+    }
+
+    private void assertNotFound(long ssrc)
+    {
+        byte[] buf = createRTPPacket(ssrc);
+
+        assertNull(receiver.findRTPEncodingDesc(ssrc));
+        assertNull(receiver.findRTPEncodingDesc(buf, 0, buf.length));
+        assertNull(receiver.findMediaStreamTrackDesc(ssrc));
+    }
+
+    @Test
+    public void findsByPrimaryAndRTXSSRC()
+    {
+        MediaStreamTrackDesc a = createTrack(0x1000L, 0x1001L);
+        MediaStreamTrackDesc b = createTrack(0xFFFFFFF0L, -1);
+
+        assertTrue(
+                receiver.setMediaStreamTracks(
+                        new MediaStreamTrackDesc[] { a, b }));
+
+        assertFound(0x1000L, a);
+        assertFound(0x1001L, a);
+        assertFound(0xFFFFFFF0L, b);
+        assertNotFound(0x2000L);
+
+        // A track is found by the primary SSRC of its first encoding only.
+        assertSame(a, receiver.findMediaStreamTrackDesc(0x1000L));
+        assertNull(receiver.findMediaStreamTrackDesc(0x1001L));
+        assertSame(b, receiver.findMediaStreamTrackDesc(0xFFFFFFF0L));
+    }
+
+    @Test
+    public void reindexesWhenTracksAreReplaced()
+    {
+        MediaStreamTrackDesc a = createTrack(0x1000L, 0x1001L);
+        MediaStreamTrackDesc b = createTrack(0x3000L, 0x3001L);
+
+        receiver.setMediaStreamTracks(new MediaStreamTrackDesc[] { a, b });
+
+        // The new tracks keep a (which is matched by its primary SSRC and,
+        // consequently, merged), drop b and add c.
+        MediaStreamTrackDesc newA = createTrack(0x1000L, 0x1002L);
+        MediaStreamTrackDesc c = createTrack(0x5000L, 0x5001L);
+
+        assertTrue(
+                receiver.setMediaStreamTracks(
+                        new MediaStreamTrackDesc[] { newA, c }));
+
+        MediaStreamTrackDesc[] tracks = receiver.getMediaStreamTracks();
+
+        assertSame(a, tracks[0]);
+        assertSame(c, tracks[1]);
+
+        assertFound(0x1000L, a);
+        assertFound(0x1001L, a);
+        assertNotFound(0x1002L);
+        assertNotFound(0x3000L);
+        assertNotFound(0x3001L);
+        assertFound(0x5000L, c);
+        assertFound(0x5001L, c);
+        assertSame(c, receiver.findMediaStreamTrackDesc(0x5000L));
+
+        // Setting equivalent tracks again is not a change.
+        assertFalse(
+                receiver.setMediaStreamTracks(
+                        new MediaStreamTrackDesc[]
+                            {
+                                createTrack(0x1000L, 0x1001L),
+                                createTrack(0x5000L, 0x5001L)
+                            }));
+        assertFound(0x1000L, a);
+        assertFound(0x5000L, c);
+    }
+
+    @Test
+    public void clearsWhenTracksAreRemoved()
+    {
+        MediaStreamTrackDesc a = createTrack(0x1000L, 0x1001L);
+
+        receiver.setMediaStreamTracks(new MediaStreamTrackDesc[] { a });
+        assertFound(0x1000L, a);
+
+        assertTrue(receiver.setMediaStreamTracks(null));
+        assertNull(receiver.getMediaStreamTracks());
+        assertNotFound(0x1000L);
+        assertNotFound(0x1001L);
+
+        // The index is rebuilt when tracks are added again.
+        assertTrue(
+                receiver.setMediaStreamTracks(
+                        new MediaStreamTrackDesc[] { a }));
+        assertFound(0x1001L, a);
+    }
+}
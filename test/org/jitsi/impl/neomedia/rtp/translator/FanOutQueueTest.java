@@ -0,0 +1,332 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp.translator;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.media.*;
+
+import org.jitsi.service.libjitsi.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the per-destination ordering and the overflow of {@link FanOutQueue}.
+ */
+public class FanOutQueueTest
+{
+    /**
+     * The packets written by {@link #owner} per destination, in the order in
+     * which they were written. A packet is represented by its first byte.
+     */
+    private final Map<OutputDataStreamDesc, List<Integer>> written
+        = new HashMap<>();
+
+    /**
+     * The destinations which {@link #owner} is writing into at the moment.
+     */
+    private final Set<OutputDataStreamDesc> writing
+        = Collections.newSetFromMap(
+                new ConcurrentHashMap<OutputDataStreamDesc, Boolean>());
+
+    /**
+     * The number of times {@link #owner} wrote into a destination which it
+     * was writing into already.
+     */
+    private final AtomicInteger concurrentWrites = new AtomicInteger();
+
+    /**
+     * The <tt>OutputDataStreamImpl</tt> which records the packets written by
+     * the <tt>FanOutQueue</tt>s instead of translating them.
+     */
+    private OutputDataStreamImpl owner;
+
+    /**
+     * The tasks submitted to {@link #manualExecutor} which have not been run
+     * yet.
+     */
+    private final Queue<Runnable> tasks = new LinkedList<>();
+
+    /**
+     * The <tt>Executor</tt> which runs tasks only when the test asks it to.
+     */
+    private final Executor manualExecutor
+        = new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                tasks.add(command);
+            }
+        };
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        LibJitsi.start();
+    }
+
+    @Before
+    public void setUp()
+    {
+        owner
+            = new OutputDataStreamImpl(null, true)
+            {
+                @Override
+                int writeTo(
+                        OutputDataStreamDesc s,
+                        byte[] buf, int off, int len,
+                        Format format,
+                        StreamRTPManagerDesc exclusion)
+                {
+                    if (!writing.add(s))
+                        concurrentWrites.incrementAndGet();
+                    try
+                    {
+                        // Give other writers the chance to overlap.
+                        Thread.yield();
+
+                        int packet = buf[off] & 0xFF;
+
+                        synchronized (written)
+                        {
+                            List<Integer> packets = written.get(s);
+
+                            if (packets == null)
+                            {
+                                packets = new ArrayList<>();
+                                written.put(s, packets);
+                            }
+                            packets.add(packet);
+                            written.notifyAll();
+                        }
+                        if (packet == 0xFF)
+                            throw new IllegalStateException("packet 255");
+                        return len;
+                    }
+                    finally
+                    {
+                        writing.remove(s);
+                    }
+                }
+            };
+    }
+
+    private FanOutQueue createQueue(Executor executor, int capacity)
+    {
+        return
+            new OutputDataStreamDesc(null, null, owner, executor, capacity)
+                .fanOutQueue;
+    }
+
+    private static void add(FanOutQueue queue, int packet)
+    {
+        byte[] buf = { 0, (byte) packet, 0 };
+
+        queue.add(buf, 1, 2, null, null);
+    }
+
+    private List<Integer> getWritten(FanOutQueue queue)
+    {
+        synchronized (written)
+        {
+            for (Map.Entry<OutputDataStreamDesc, List<Integer>> e
+                    : written.entrySet())
+            {
+                if (e.getKey().fanOutQueue == queue)
+                    return new ArrayList<>(e.getValue());
+            }
+            return new ArrayList<>();
+        }
+    }
+
+    private static List<Integer> range(int from, int to)
+    {
+        List<Integer> list = new ArrayList<>();
+
+        for (int i = from; i < to; i++)
+            list.add(i);
+        return list;
+    }
+
+    /**
+     * Runs the tasks submitted to {@link #manualExecutor} one by one and
+     * returns how many were run.
+     */
+    private int runTasks()
+    {
+        int count = 0;
+        Runnable task;
+
+        while ((task = tasks.poll()) != null)
+        {
+            task.run();
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void writesInOrderPerDestination()
+        throws Exception
+    {
+        final int packets = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try
+        {
+            FanOutQueue[] queues = new FanOutQueue[8];
+
+            for (int i = 0; i < queues.length; i++)
+                queues[i] = createQueue(executor, packets);
+
+            for (int p = 0; p < packets; p++)
+            {
+                for (FanOutQueue queue : queues)
+                    add(queue, p);
+            }
+
+            long deadline = System.currentTimeMillis() + 30000;
+
+            synchronized (written)
+            {
+                while (true)
+                {
+                    int total = 0;
+
+                    for (List<Integer> l : written.values())
+                        total += l.size();
+                    if (total == packets * queues.length)
+                        break;
+                    long timeout = deadline - System.currentTimeMillis();
+
+                    assertTrue(timeout > 0);
+                    written.wait(timeout);
+                }
+            }
+
+            for (FanOutQueue queue : queues)
+            {
+                assertEquals(range(0, packets), getWritten(queue));
+                assertEquals(0, queue.size());
+            }
+            // At most one task drains a queue at any time.
+            assertEquals(0, concurrentWrites.get());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void dropsOldestWhenFull()
+    {
+        FanOutQueue queue = createQueue(manualExecutor, 4);
+
+        for (int p = 0; p < 10; p++)
+            add(queue, p);
+
+        // The queue is scheduled once until it is drained.
+        assertEquals(1, tasks.size());
+        assertEquals(4, queue.size());
+
+        assertEquals(1, runTasks());
+        assertEquals(range(6, 10), getWritten(queue));
+        assertEquals(0, queue.size());
+
+        // The queue keeps working after an overflow.
+        add(queue, 10);
+        add(queue, 11);
+        runTasks();
+        assertEquals(range(6, 12), getWritten(queue));
+    }
+
+    @Test
+    public void overflowDoesNotAffectOtherDestinations()
+    {
+        FanOutQueue slow = createQueue(manualExecutor, 2);
+        FanOutQueue fast = createQueue(manualExecutor, 16);
+
+        for (int p = 0; p < 8; p++)
+        {
+            add(slow, p);
+            add(fast, p);
+        }
+        runTasks();
+        assertEquals(range(6, 8), getWritten(slow));
+        assertEquals(range(0, 8), getWritten(fast));
+    }
+
+    @Test
+    public void yieldsAfterBatch()
+    {
+        FanOutQueue queue = createQueue(manualExecutor, 100);
+
+        for (int p = 0; p < 40; p++)
+            add(queue, p);
+
+        // One task writes a batch and resubmits the queue for the rest.
+        tasks.poll().run();
+        assertEquals(range(0, 32), getWritten(queue));
+        assertEquals(8, queue.size());
+        assertEquals(1, tasks.size());
+
+        runTasks();
+        assertEquals(range(0, 40), getWritten(queue));
+    }
+
+    @Test
+    public void copiesPackets()
+    {
+        FanOutQueue queue = createQueue(manualExecutor, 4);
+        byte[] buf = { 1 };
+
+        queue.add(buf, 0, 1, null, null);
+        buf[0] = 2;
+        queue.add(buf, 0, 1, null, null);
+        runTasks();
+        assertEquals(Arrays.asList(1, 2), getWritten(queue));
+    }
+
+    @Test
+    public void continuesAfterFailedWrite()
+    {
+        FanOutQueue queue = createQueue(manualExecutor, 4);
+
+        add(queue, 1);
+        add(queue, 0xFF);
+        add(queue, 2);
+        runTasks();
+        assertEquals(Arrays.asList(1, 0xFF, 2), getWritten(queue));
+    }
+
+    @Test
+    public void discardsWhenClosed()
+    {
+        FanOutQueue queue = createQueue(manualExecutor, 4);
+
+        add(queue, 1);
+        queue.close();
+        add(queue, 2);
+        runTasks();
+        assertTrue(getWritten(queue).isEmpty());
+        assertEquals(0, queue.size());
+    }
+}
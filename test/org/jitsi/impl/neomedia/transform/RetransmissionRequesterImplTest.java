@@ -0,0 +1,152 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform;
+
+import java.util.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the window of missing packets which
+ * {@link RetransmissionRequesterImpl} keeps per SSRC.
+ */
+public class RetransmissionRequesterImplTest
+{
+    private RetransmissionRequesterImpl retransmissionRequester;
+
+    private RetransmissionRequesterImpl.Requester requester;
+
+    @Before
+    public void setUp()
+    {
+        retransmissionRequester = new RetransmissionRequesterImpl(null);
+        requester = retransmissionRequester.new Requester(0x1234L);
+    }
+
+    @After
+    public void tearDown()
+    {
+        retransmissionRequester.close();
+    }
+
+    @Test
+    public void requestsGapAndReRequests()
+    {
+        assertFalse(requester.received(10));
+        assertFalse(requester.received(11));
+        assertTrue(requester.received(15));
+
+        assertEquals(Arrays.asList(12, 13, 14), requester.getMissing(1000));
+        // The next request is not due before 150 ms have passed.
+        assertNull(requester.getMissing(1100));
+
+        // A retransmission arrives.
+        assertFalse(requester.received(13));
+        assertEquals(Arrays.asList(12, 14), requester.getMissing(1150));
+    }
+
+    @Test
+    public void requestsAcrossSequenceNumberWraparound()
+    {
+        requester.received(65533);
+        assertTrue(requester.received(2));
+
+        assertEquals(
+                Arrays.asList(65534, 65535, 0, 1),
+                sorted(requester.getMissing(1000)));
+
+        requester.received(65535);
+        requester.received(0);
+        assertEquals(
+                Arrays.asList(65534, 1),
+                sorted(requester.getMissing(1150)));
+    }
+
+    @Test
+    public void stopsAfterMaxRequests()
+    {
+        requester.received(100);
+        requester.received(102);
+
+        long now = 1000;
+
+        for (int i = 0; i < 10; i++, now += 150)
+            assertEquals(Arrays.asList(101), requester.getMissing(now));
+
+        // There is nothing left to request.
+        assertNull(requester.getMissing(now));
+    }
+
+    @Test
+    public void resetsOnLargeGap()
+    {
+        requester.received(100);
+        requester.received(102);
+        // More than MAX_MISSING packets are missing.
+        assertFalse(requester.received(300));
+        assertNull(requester.getMissing(1000));
+
+        // The state continues from the new sequence number.
+        assertTrue(requester.received(302));
+        assertEquals(Arrays.asList(301), requester.getMissing(1000));
+    }
+
+    @Test
+    public void forgetsPacketsWhichLeaveTheWindow()
+    {
+        requester.received(0);
+        assertTrue(requester.received(3));
+
+        // Advance by more than the window (512 sequence numbers) without
+        // losses and without ever sending the requests.
+        for (int seq = 4; seq <= 600; seq++)
+            assertFalse(requester.received(seq));
+
+        Collection<Integer> missing = requester.getMissing(1000);
+
+        assertTrue(missing == null || missing.isEmpty());
+    }
+
+    @Test
+    public void ignoresOldAndDuplicatePackets()
+    {
+        requester.received(1000);
+        assertFalse(requester.received(999));
+        assertFalse(requester.received(1000));
+        assertFalse(requester.received(1001));
+        assertNull(requester.getMissing(1000));
+    }
+
+    private static List<Integer> sorted(Collection<Integer> c)
+    {
+        List<Integer> list = new ArrayList<>(c);
+
+        // Sort in sequence number order, starting at 65534.
+        Collections.sort(
+                list,
+                new Comparator<Integer>()
+                {
+                    @Override
+                    public int compare(Integer a, Integer b)
+                    {
+                        return ((a + 2) & 0xFFFF) - ((b + 2) & 0xFFFF);
+                    }
+                });
+        return list;
+    }
+}
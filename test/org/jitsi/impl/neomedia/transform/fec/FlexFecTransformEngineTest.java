@@ -0,0 +1,241 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.fec;
+
+import java.util.*;
+
+import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class FlexFecTransformEngineTest
+{
+    private static final byte PT = 110;
+
+    private static final long MEDIA_SSRC = 0xCAFEBABEL;
+
+    private static final long FEC_SSRC = 0x12345678L;
+
+    @Test
+    public void maskRoundTrip()
+    {
+        int[][] bitSets
+            = {
+                { 0 },
+                { 0, 14 },
+                { 3, 15, 45 },
+                { 0, 46, 63, 64, 108 }
+            };
+        int[] lengths = { 2, 2, 6, 14 };
+
+        for (int i = 0; i < bitSets.length; i++)
+        {
+            long[] mask = new long[2];
+
+            for (int bit : bitSets[i])
+                FlexFec.set(mask, bit);
+
+            byte[] buf = new byte[14];
+
+            assertEquals(lengths[i], FlexFec.writeMask(mask, buf, 0));
+
+            long[] read = new long[2];
+
+            assertEquals(
+                    lengths[i],
+                    FlexFec.readMask(buf, 0, buf.length, read));
+            assertArrayEquals(mask, read);
+        }
+    }
+
+    @Test
+    public void recoverBurstWith2DParity()
+    {
+        FlexFecTransformEngine sender = createEngine();
+        FlexFecTransformEngine receiver = createEngine();
+
+        sender.setProtection(4, 4);
+
+        // Start close to the wrap around of the sequence numbers.
+        int firstSeq = 0xFFFA;
+        List<RawPacket> media = new ArrayList<>();
+        List<RawPacket> wire = new ArrayList<>();
+        int numFec = 0;
+
+        // Two blocks of 4x4 packets.
+        for (int i = 0; i < 32; i++)
+        {
+            RawPacket pkt = createMediaPacket((firstSeq + i) & 0xFFFF, i);
+
+            media.add(copy(pkt));
+            for (RawPacket out : sender.transform(new RawPacket[] { pkt }))
+            {
+                if (out.getSSRCAsLong() == FEC_SSRC)
+                    numFec++;
+                wire.add(out);
+            }
+        }
+        // 4 row and 4 column repair packets per block.
+        assertEquals(16, numFec);
+
+        // In the second block, lose a whole row, which only the columns can
+        // recover, and a packet of another row.
+        Set<Integer> lost = new HashSet<>();
+
+        for (int i : new int[] { 20, 21, 22, 23, 29 })
+            lost.add((firstSeq + i) & 0xFFFF);
+
+        Map<Integer, RawPacket> received = new HashMap<>();
+
+        for (RawPacket pkt : wire)
+        {
+            if (pkt.getSSRCAsLong() == FEC_SSRC
+                    || !lost.contains(pkt.getSequenceNumber()))
+            {
+                deliver(receiver, copy(pkt), received);
+            }
+        }
+
+        assertEquals(media.size(), received.size());
+        for (RawPacket expected : media)
+        {
+            RawPacket actual = received.get(expected.getSequenceNumber());
+
+            assertNotNull(actual);
+            assertArrayEquals(toBytes(expected), toBytes(actual));
+        }
+    }
+
+    @Test
+    public void dropRepairPacketsOfUnseenSsrc()
+    {
+        FlexFecTransformEngine sender = createEngine();
+
+        sender.setProtection(4, 1);
+
+        List<RawPacket> media = new ArrayList<>();
+        List<RawPacket> fec = new ArrayList<>();
+
+        // Two rows of 4 packets.
+        for (int i = 0; i < 8; i++)
+        {
+            for (RawPacket out
+                    : sender.transform(
+                            new RawPacket[] { createMediaPacket(i, i) }))
+            {
+                (out.getSSRCAsLong() == FEC_SSRC ? fec : media).add(out);
+            }
+        }
+        assertEquals(2, fec.size());
+
+        // The repair packets arrive before any media packet of the SSRC which
+        // they protect, so they do not allocate any state and are dropped.
+        FlexFecTransformEngine receiver = createEngine();
+        Map<Integer, RawPacket> received = new HashMap<>();
+
+        for (RawPacket pkt : fec)
+            deliver(receiver, copy(pkt), received);
+        for (int i = 0; i < 7; i++)
+            deliver(receiver, copy(media.get(i)), received);
+        assertEquals(7, received.size());
+
+        // Once the SSRC has been seen on the media path, repair packets are
+        // consumed.
+        receiver = createEngine();
+        received.clear();
+        for (int i = 0; i < 4; i++)
+            deliver(receiver, copy(media.get(i)), received);
+        deliver(receiver, copy(fec.get(0)), received);
+        for (int i = 4; i < 7; i++)
+            deliver(receiver, copy(media.get(i)), received);
+        deliver(receiver, copy(fec.get(1)), received);
+        assertEquals(8, received.size());
+    }
+
+    @Test
+    public void noRepairPacketsWithoutLoss()
+    {
+        FlexFecTransformEngine sender = createEngine();
+
+        for (int i = 0; i < 100; i++)
+        {
+            RawPacket[] out
+                = sender.transform(
+                        new RawPacket[] { createMediaPacket(i, i) });
+
+            assertEquals(1, out.length);
+        }
+    }
+
+    private static FlexFecTransformEngine createEngine()
+    {
+        FlexFecTransformEngine engine = new FlexFecTransformEngine(null);
+
+        engine.setIncomingPT(PT);
+        engine.setOutgoingPT(PT);
+        engine.addFecSsrc(MEDIA_SSRC, FEC_SSRC);
+        return engine;
+    }
+
+    private static void deliver(
+            FlexFecTransformEngine receiver,
+            RawPacket pkt,
+            Map<Integer, RawPacket> received)
+    {
+        RawPacket[] pkts = receiver.reverseTransform(new RawPacket[] { pkt });
+
+        for (RawPacket out : pkts)
+        {
+            if (out != null)
+            {
+                assertEquals(MEDIA_SSRC, out.getSSRCAsLong());
+                received.put(out.getSequenceNumber(), out);
+            }
+        }
+    }
+
+    private static RawPacket createMediaPacket(int seq, int i)
+    {
+        int len = RawPacket.FIXED_HEADER_SIZE + 20 + 13 * i;
+        byte[] buf = new byte[len];
+
+        buf[0] = (byte) 0x80;
+        buf[1] = (byte) (100 | (i % 4 == 3 ? 0x80 : 0));
+        RTPUtils.writeShort(buf, 2, (short) seq);
+        RTPUtils.writeInt(buf, 4, 3000 * (i / 4));
+        RTPUtils.writeInt(buf, 8, (int) MEDIA_SSRC);
+        for (int j = RawPacket.FIXED_HEADER_SIZE; j < len; j++)
+            buf[j] = (byte) (j * 31 + i);
+        return new RawPacket(buf, 0, len);
+    }
+
+    private static RawPacket copy(RawPacket pkt)
+    {
+        byte[] buf = toBytes(pkt);
+
+        return new RawPacket(buf, 0, buf.length);
+    }
+
+    private static byte[] toBytes(RawPacket pkt)
+    {
+        return Arrays.copyOfRange(
+                pkt.getBuffer(),
+                pkt.getOffset(),
+                pkt.getOffset() + pkt.getLength());
+    }
+}
@@ -0,0 +1,310 @@
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import javax.xml.bind.DatatypeConverter;
+import org.bouncycastle.crypto.engines.AESFastEngine;
+import org.jitsi.service.neomedia.RawPacket;
+import org.jitsi.util.OSUtils;
+import org.junit.Test;
+
+public class SRTPCipherGCMTest
+{
+    // RFC 7714 AEAD_AES_128_GCM and AEAD_AES_256_GCM Test vectors
+    public static final byte[] TV_Key_128 =
+        DatatypeConverter.parseHexBinary("000102030405060708090a0b0c0d0e0f");
+
+    public static final byte[] TV_Key_256 =
+        DatatypeConverter.parseHexBinary("000102030405060708090a0b0c0d0e0f"
+            + "101112131415161718191a1b1c1d1e1f");
+
+    public static final byte[] TV_Salt =
+        DatatypeConverter.parseHexBinary("517569642070726f2071756f");
+
+    // RFC 7714 chapter 16: SRTP
+    public static final byte[] TV_RTP_Plain =
+        DatatypeConverter.parseHexBinary("8040f17b8041f8d35501a0b2"
+            + "47616c6c696120657374206f6d6e6973"
+            + "2064697669736120696e207061727465"
+            + "732074726573");
+
+    public static final byte[] TV_RTP_IV =
+        DatatypeConverter.parseHexBinary("51753c6580c2726f20718414");
+
+    public static final byte[] TV_RTP_Cipher_128 =
+        DatatypeConverter.parseHexBinary("8040f17b8041f8d35501a0b2"
+            + "f24de3a3fb34de6cacba861c9d7e4bca"
+            + "be633bd50d294e6f42a5f47a51c7d19b"
+            + "36de3adf8833899d7f27beb16a9152cf"
+            + "765ee4390cce");
+
+    public static final byte[] TV_RTP_Cipher_256 =
+        DatatypeConverter.parseHexBinary("8040f17b8041f8d35501a0b2"
+            + "32b1de78a822fe12ef9f78fa332e33aa"
+            + "b18012389a58e2f3b50b2a0276ffae0f"
+            + "1ba63799b87b7aa3db36dfffd6b0f9bb"
+            + "7878d7a76c13");
+
+    // RFC 7714 chapter 17: SRTCP
+    public static final byte[] TV_RTCP_Plain =
+        DatatypeConverter.parseHexBinary("81c8000d4d617273"
+            + "4e5450314e545032525450200000042a"
+            + "0000e9304c756e61deadbeefdeadbeef"
+            + "deadbeefdeadbeefdeadbeef");
+
+    public static final byte[] TV_RTCP_IV =
+        DatatypeConverter.parseHexBinary("517524055203726f207170bb");
+
+    public static final byte[] TV_RTCP_Index =
+        DatatypeConverter.parseHexBinary("800005d4");
+
+    public static final byte[] TV_RTCP_Cipher_128 =
+        DatatypeConverter.parseHexBinary("81c8000d4d617273"
+            + "63e94885dcdab67ca727d7662f6b7e99"
+            + "7ff5c0f76c06f32dc676a5f1730d6fda"
+            + "4ce09b4686303ded0bb9275bc84aa458"
+            + "96cf4d2fc5abf87245d9eade"
+            + "800005d4");
+
+    public static final byte[] TV_RTCP_Cipher_256 =
+        DatatypeConverter.parseHexBinary("81c8000d4d617273"
+            + "d50ae4d1f5ce5d304ba297e47d470c28"
+            + "2c3ece5dbffe0a50a2eaa5c1110555be"
+            + "8415f658c61de0476f1b6fad1d1eb30c"
+            + "4446839f57ff6f6cb26ac3be"
+            + "800005d4");
+
+    // The crypto contexts derive their session keys with the key derivation
+    // function of RFC 3711 from the key and salt above used as master key and
+    // master salt. Generated with an independent implementation.
+    public static final byte[] TV_RTP_Context_128 =
+        DatatypeConverter.parseHexBinary("8040f17b8041f8d35501a0b2"
+            + "92cb0ecff0a0db188f7bff6b523933aa"
+            + "cef8ae9585ed378a627836cb2d6a731d"
+            + "6c3490d925387db18c0661762d59e50a"
+            + "d553d241535a");
+
+    public static final byte[] TV_RTP_Context_256 =
+        DatatypeConverter.parseHexBinary("8040f17b8041f8d35501a0b2"
+            + "df5b1e1f065082d0567f12496f9de28a"
+            + "c7f237738c1577d4f1a9f1b89420cd94"
+            + "a57fec994be3e31c8ef3a25e1890b801"
+            + "251d3e1293c7");
+
+    public static final byte[] TV_RTCP_Context_128 =
+        DatatypeConverter.parseHexBinary("81c8000d4d617273"
+            + "a946a22e2c0c8cfe8ebce23f11f07577"
+            + "df2afbadbf9c00339d22a00088b7b7b7"
+            + "7be8c459d2dc6604008b7aabad771192"
+            + "101c604cd02a5214220dacf0"
+            + "80000000");
+
+    public static final byte[] TV_RTCP_Context_256 =
+        DatatypeConverter.parseHexBinary("81c8000d4d617273"
+            + "d407e9625f68ece4d60bdcaa6327ca16"
+            + "4ffa329c17c5c363fc95b7db328e88d4"
+            + "158b610b162b31c1f54720066a3e9d9c"
+            + "ca72e21ff6f88bcbe69af263"
+            + "80000000");
+
+    @Test
+    public void testJavaGCMAES()
+    {
+        checkCipher(new SRTPCipherGCMJava(new AESFastEngine()));
+    }
+
+    @Test
+    public void testJCEGCMAES() throws Exception
+    {
+        checkCipher(new SRTPCipherGCMJCE());
+    }
+
+    @Test
+    public void testOpenSSLGCMAES()
+    {
+        if (!OSUtils.IS_LINUX)
+        {
+            return;
+        }
+
+        checkCipher(new SRTPCipherGCMOpenSSL());
+    }
+
+    @Test
+    public void testSRTPCryptoContextGCM()
+    {
+        checkSRTPCryptoContext(TV_Key_128, TV_RTP_Context_128);
+        checkSRTPCryptoContext(TV_Key_256, TV_RTP_Context_256);
+    }
+
+    @Test
+    public void testSRTCPCryptoContextGCM()
+    {
+        checkSRTCPCryptoContext(TV_Key_128, TV_RTCP_Context_128);
+        checkSRTCPCryptoContext(TV_Key_256, TV_RTCP_Context_256);
+    }
+
+    private static void checkCipher(SRTPCipherGCM cipher)
+    {
+        // SRTP: the RTP header is the additional authenticated data.
+        checkCipher(
+                cipher, TV_Key_128, TV_RTP_IV,
+                TV_RTP_Plain, 12, null, TV_RTP_Cipher_128);
+        checkCipher(
+                cipher, TV_Key_256, TV_RTP_IV,
+                TV_RTP_Plain, 12, null, TV_RTP_Cipher_256);
+
+        // SRTCP: the first 8 bytes of the RTCP packet and the E flag with the
+        // SRTCP index are the additional authenticated data.
+        checkCipher(
+                cipher, TV_Key_128, TV_RTCP_IV,
+                TV_RTCP_Plain, 8, TV_RTCP_Index, TV_RTCP_Cipher_128);
+        checkCipher(
+                cipher, TV_Key_256, TV_RTCP_IV,
+                TV_RTCP_Plain, 8, TV_RTCP_Index, TV_RTCP_Cipher_256);
+    }
+
+    private static void checkCipher(
+            SRTPCipherGCM cipher,
+            byte[] key,
+            byte[] iv,
+            byte[] plain,
+            int aadLength,
+            byte[] trailer,
+            byte[] expected)
+    {
+        int trailerLength = (trailer == null) ? 0 : trailer.length;
+        int cipherLength = expected.length - trailerLength;
+        byte[] data = new byte[cipherLength];
+
+        cipher.init(key);
+
+        // Encrypt.
+        System.arraycopy(plain, 0, data, 0, plain.length);
+        cipher.begin(true, iv);
+        cipher.processAAD(data, 0, aadLength);
+        if (trailer != null)
+            cipher.processAAD(trailer, 0, trailerLength);
+        assertEquals(
+                cipherLength - aadLength,
+                cipher.finish(data, aadLength, plain.length - aadLength));
+        assertArrayEquals(Arrays.copyOf(expected, cipherLength), data);
+
+        // Decrypt.
+        cipher.begin(false, iv);
+        cipher.processAAD(data, 0, aadLength);
+        if (trailer != null)
+            cipher.processAAD(trailer, 0, trailerLength);
+        assertEquals(
+                plain.length - aadLength,
+                cipher.finish(data, aadLength, cipherLength - aadLength));
+        assertArrayEquals(plain, Arrays.copyOf(data, plain.length));
+
+        // A tampered authentication tag must fail the authentication.
+        data = Arrays.copyOf(expected, cipherLength);
+        data[cipherLength - 1] ^= 1;
+        cipher.begin(false, iv);
+        cipher.processAAD(data, 0, aadLength);
+        if (trailer != null)
+            cipher.processAAD(trailer, 0, trailerLength);
+        assertEquals(
+                -1,
+                cipher.finish(data, aadLength, cipherLength - aadLength));
+    }
+
+    private static SRTPPolicy createGCMPolicy(byte[] key)
+    {
+        return
+            new SRTPPolicy(
+                    SRTPPolicy.AESGCM_ENCRYPTION, key.length,
+                    SRTPPolicy.NULL_AUTHENTICATION, 0,
+                    SRTPCipherGCM.TAG_LENGTH,
+                    TV_Salt.length);
+    }
+
+    private static SRTPCryptoContext createSRTPCryptoContext(
+            boolean sender,
+            byte[] key)
+    {
+        SRTPCryptoContext context
+            = new SRTPCryptoContext(
+                    sender, 0x5501a0b2, 0, 0,
+                    key, TV_Salt,
+                    createGCMPolicy(key));
+
+        context.deriveSrtpKeys(0);
+        return context;
+    }
+
+    private static SRTCPCryptoContext createSRTCPCryptoContext(byte[] key)
+    {
+        SRTCPCryptoContext context
+            = new SRTCPCryptoContext(
+                    0x4d617273,
+                    key, TV_Salt,
+                    createGCMPolicy(key));
+
+        context.deriveSrtcpKeys();
+        return context;
+    }
+
+    private static byte[] getData(RawPacket pkt)
+    {
+        return
+            Arrays.copyOfRange(
+                    pkt.getBuffer(),
+                    pkt.getOffset(),
+                    pkt.getOffset() + pkt.getLength());
+    }
+
+    private static void checkSRTPCryptoContext(byte[] key, byte[] expected)
+    {
+        RawPacket pkt
+            = new RawPacket(
+                    Arrays.copyOf(TV_RTP_Plain, TV_RTP_Plain.length),
+                    0,
+                    TV_RTP_Plain.length);
+
+        assertTrue(createSRTPCryptoContext(true, key).transformPacket(pkt));
+        assertArrayEquals(expected, getData(pkt));
+
+        assertTrue(
+                createSRTPCryptoContext(false, key)
+                    .reverseTransformPacket(pkt));
+        assertArrayEquals(TV_RTP_Plain, getData(pkt));
+
+        // A tampered authentication tag must fail the authentication.
+        byte[] data = Arrays.copyOf(expected, expected.length);
+
+        data[data.length - 1] ^= 1;
+        assertFalse(
+                createSRTPCryptoContext(false, key)
+                    .reverseTransformPacket(
+                            new RawPacket(data, 0, data.length)));
+    }
+
+    private static void checkSRTCPCryptoContext(byte[] key, byte[] expected)
+    {
+        RawPacket pkt
+            = new RawPacket(
+                    Arrays.copyOf(TV_RTCP_Plain, TV_RTCP_Plain.length),
+                    0,
+                    TV_RTCP_Plain.length);
+
+        createSRTCPCryptoContext(key).transformPacket(pkt);
+        assertArrayEquals(expected, getData(pkt));
+
+        assertTrue(createSRTCPCryptoContext(key).reverseTransformPacket(pkt));
+        assertArrayEquals(TV_RTCP_Plain, getData(pkt));
+
+        // A tampered authentication tag (which precedes the SRTCP index)
+        // must fail the authentication.
+        byte[] data = Arrays.copyOf(expected, expected.length);
+
+        data[data.length - 5] ^= 1;
+        assertFalse(
+                createSRTCPCryptoContext(key)
+                    .reverseTransformPacket(
+                            new RawPacket(data, 0, data.length)));
+    }
+}
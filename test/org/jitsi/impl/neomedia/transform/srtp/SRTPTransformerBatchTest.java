@@ -0,0 +1,231 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.jitsi.service.neomedia.*;
+import org.junit.*;
+
+/**
+ * Checks that the batch (array) variants of
+ * {@link SRTPTransformer#transform(RawPacket[])} and
+ * {@link SRTPTransformer#reverseTransform(RawPacket[])} produce exactly the
+ * same output as the per-packet variants for the same packets and contexts.
+ */
+public class SRTPTransformerBatchTest
+{
+    private static final long SSRC_A = 0x11223344L;
+
+    private static final long SSRC_B = 0xCAFEBABEL;
+
+    private static final int PAYLOAD_LENGTH = 160;
+
+    private final Random random = new Random(6006);
+
+    @Test
+    public void testAES128()
+    {
+        checkEquivalence(16);
+    }
+
+    @Test
+    public void testAES256()
+    {
+        checkEquivalence(32);
+    }
+
+    private void checkEquivalence(int keyLength)
+    {
+        byte[] masterKey = new byte[keyLength];
+        byte[] masterSalt = new byte[14];
+
+        random.nextBytes(masterKey);
+        random.nextBytes(masterSalt);
+
+        // Interleaved SSRCs, runs of the same SSRC, null elements and
+        // sequence numbers which roll over.
+        long[] ssrcs
+            = {
+                SSRC_A, SSRC_A, SSRC_B, SSRC_A, SSRC_B, SSRC_B, SSRC_B,
+                SSRC_A, SSRC_A, SSRC_B, SSRC_A
+            };
+        int[] seqs
+            = {
+                0xFFFD, 0xFFFE, 100, 0xFFFF, 101, 102, 103, 0, 1, 104, 2
+            };
+        RawPacket[] plain = new RawPacket[ssrcs.length + 1];
+
+        for (int i = 0; i < ssrcs.length; i++)
+            plain[i] = createRTPPacket(ssrcs[i], seqs[i]);
+        // plain[ssrcs.length] stays null.
+
+        // Transform.
+        SRTPTransformer singleSender
+            = new SRTPTransformer(createFactory(true, masterKey, masterSalt));
+        SRTPTransformer batchSender
+            = new SRTPTransformer(createFactory(true, masterKey, masterSalt));
+        RawPacket[] single = copy(plain);
+        RawPacket[] batch = copy(plain);
+
+        for (int i = 0; i < single.length; i++)
+        {
+            if (single[i] != null)
+                single[i] = singleSender.transform(single[i]);
+        }
+        batch = batchSender.transform(batch);
+        assertPacketsEqual(single, batch);
+
+        // Reverse-transform the protected packets together with replayed
+        // ones (within the same batch and from an earlier batch) and a
+        // packet with a broken authentication tag.
+        RawPacket[] protectedPkts = copy(single);
+        RawPacket tampered = copy(protectedPkts[4]);
+
+        tampered.getBuffer()[tampered.getOffset() + tampered.getLength() - 1]
+            ^= 1;
+
+        RawPacket[] first
+            = {
+                protectedPkts[0], protectedPkts[1], protectedPkts[2],
+                protectedPkts[0], tampered, protectedPkts[3]
+            };
+        RawPacket[] second
+            = {
+                protectedPkts[4], protectedPkts[5], protectedPkts[1],
+                protectedPkts[6], protectedPkts[7], null, protectedPkts[8],
+                protectedPkts[2], protectedPkts[9], protectedPkts[10],
+                protectedPkts[10]
+            };
+
+        SRTPTransformer singleReceiver
+            = new SRTPTransformer(createFactory(false, masterKey, masterSalt));
+        SRTPTransformer batchReceiver
+            = new SRTPTransformer(createFactory(false, masterKey, masterSalt));
+
+        for (RawPacket[] pkts : new RawPacket[][] { first, second })
+        {
+            single = copy(pkts);
+            batch = copy(pkts);
+            for (int i = 0; i < single.length; i++)
+            {
+                if (single[i] != null)
+                    single[i] = singleReceiver.reverseTransform(single[i]);
+            }
+            batch = batchReceiver.reverseTransform(batch);
+            assertPacketsEqual(single, batch);
+        }
+
+        // The replayed and the tampered packets were dropped and the others
+        // were restored.
+        assertNull(batch[2]);
+        assertNull(batch[7]);
+        assertNull(batch[10]);
+        assertArrayEquals(getData(plain[9]), getData(batch[8]));
+
+        singleSender.close();
+        batchSender.close();
+        singleReceiver.close();
+        batchReceiver.close();
+    }
+
+    private static SRTPContextFactory createFactory(
+            boolean sender,
+            byte[] masterKey,
+            byte[] masterSalt)
+    {
+        SRTPPolicy policy
+            = new SRTPPolicy(
+                    SRTPPolicy.AESCM_ENCRYPTION, masterKey.length,
+                    SRTPPolicy.HMACSHA1_AUTHENTICATION, 20,
+                    10,
+                    masterSalt.length);
+
+        return
+            new SRTPContextFactory(
+                    sender,
+                    masterKey, masterSalt,
+                    policy, policy);
+    }
+
+    private RawPacket createRTPPacket(long ssrc, int seq)
+    {
+        byte[] buf = new byte[12 + PAYLOAD_LENGTH + 32];
+
+        random.nextBytes(buf);
+
+        RawPacket pkt = new RawPacket(buf, 16, 12 + PAYLOAD_LENGTH);
+
+        pkt.writeByte(0, (byte) 0x80);
+        pkt.writeByte(1, (byte) 111);
+        pkt.setSequenceNumber(seq);
+        pkt.setTimestamp(seq * 960L);
+        pkt.setSSRC((int) ssrc);
+        return pkt;
+    }
+
+    private static RawPacket copy(RawPacket pkt)
+    {
+        byte[] buf = Arrays.copyOf(pkt.getBuffer(), pkt.getBuffer().length);
+
+        return new RawPacket(buf, pkt.getOffset(), pkt.getLength());
+    }
+
+    private static RawPacket[] copy(RawPacket[] pkts)
+    {
+        RawPacket[] copies = new RawPacket[pkts.length];
+
+        for (int i = 0; i < pkts.length; i++)
+        {
+            if (pkts[i] != null)
+                copies[i] = copy(pkts[i]);
+        }
+        return copies;
+    }
+
+    private static byte[] getData(RawPacket pkt)
+    {
+        return
+            Arrays.copyOfRange(
+                    pkt.getBuffer(),
+                    pkt.getOffset(),
+                    pkt.getOffset() + pkt.getLength());
+    }
+
+    private static void assertPacketsEqual(
+            RawPacket[] expected,
+            RawPacket[] actual)
+    {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+        {
+            if (expected[i] == null)
+            {
+                assertNull("packet " + i, actual[i]);
+            }
+            else
+            {
+                assertNotNull("packet " + i, actual[i]);
+                assertArrayEquals(
+                        "packet " + i,
+                        getData(expected[i]),
+                        getData(actual[i]));
+            }
+        }
+    }
+}
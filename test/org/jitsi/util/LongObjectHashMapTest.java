@@ -0,0 +1,87 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util;
+
+import java.util.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link LongObjectHashMap} against {@link HashMap}.
+ */
+public class LongObjectHashMapTest
+{
+    @Test
+    public void putGetRemove()
+    {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.put(0xffffffffL, "a"));
+        assertNull(map.put(0L, "b"));
+        assertEquals("a", map.put(0xffffffffL, "c"));
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(0xffffffffL));
+        assertEquals("b", map.get(0L));
+        assertNull(map.get(1L));
+        assertEquals("b", map.remove(0L));
+        assertNull(map.remove(0L));
+        assertFalse(map.containsKey(0L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void randomOperations()
+    {
+        Random random = new Random(42);
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+
+        for (int i = 0; i < 100000; i++)
+        {
+            // A small key space makes collisions, removals and re-insertions
+            // of the same keys frequent.
+            long key = random.nextInt(512) * 0x10000L;
+
+            if (random.nextInt(3) == 0)
+                assertEquals(expected.remove(key), map.remove(key));
+            else
+            {
+                Long value = (long) i;
+
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 512; key++)
+            assertEquals(expected.get(key * 0x10000L), map.get(key * 0x10000L));
+
+        long[] keys = map.keys();
+
+        assertEquals(expected.size(), keys.length);
+        for (long key : keys)
+            assertTrue(expected.containsKey(key));
+        assertEquals(expected.size(), map.values().size());
+
+        LongObjectHashMap<Long> copy = new LongObjectHashMap<>(map);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(expected.size(), copy.size());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util;
+
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link StripedLongCounter}.
+ */
+public class StripedLongCounterTest
+{
+    @Test
+    public void addWithoutContention()
+    {
+        StripedLongCounter counter = new StripedLongCounter();
+
+        assertEquals(0, counter.sum());
+        counter.increment();
+        counter.add(41);
+        counter.add(-2);
+        assertEquals(40, counter.sum());
+        assertEquals("40", counter.toString());
+    }
+
+    @Test
+    public void concurrentIncrementsSumExactly()
+        throws Exception
+    {
+        final int threadCount = 8;
+        final int incrementsPerThread = 200000;
+        final StripedLongCounter counter = new StripedLongCounter();
+        final CyclicBarrier start = new CyclicBarrier(threadCount);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++)
+        {
+            final int delta = i + 1;
+
+            threads[i]
+                = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            start.await();
+                        }
+                        catch (Exception e)
+                        {
+                            throw new RuntimeException(e);
+                        }
+                        for (int j = 0; j < incrementsPerThread; j++)
+                        {
+                            if (delta == 1)
+                                counter.increment();
+                            else
+                                counter.add(delta);
+                        }
+                    }
+                };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join(30000);
+            assertFalse(thread.isAlive());
+        }
+
+        // 1 + 2 + ... + threadCount per iteration.
+        long expected
+            = (long) incrementsPerThread * threadCount * (threadCount + 1) / 2;
+
+        assertEquals(expected, counter.sum());
+
+        // The cells keep counting after the contention is over.
+        counter.add(5);
+        assertEquals(expected + 5, counter.sum());
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util.concurrent;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link RecurringRunnableExecutor}.
+ */
+public class RecurringRunnableExecutorTest
+{
+    private RecurringRunnableExecutor executor;
+
+    @Before
+    public void setUp()
+    {
+        executor
+            = new RecurringRunnableExecutor(
+                    RecurringRunnableExecutorTest.class.getSimpleName());
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.close();
+    }
+
+    @Test
+    public void runsDueRunnables()
+        throws Exception
+    {
+        TestRunnable r = new TestRunnable(0);
+
+        assertTrue(executor.registerRecurringRunnable(r));
+        assertFalse(executor.registerRecurringRunnable(r));
+        assertTrue(r.awaitRuns(3));
+        assertTrue(executor.deRegisterRecurringRunnable(r));
+        assertFalse(executor.deRegisterRecurringRunnable(r));
+    }
+
+    @Test
+    public void wakeUpReevaluatesWaitingTime()
+        throws Exception
+    {
+        TestRunnable r = new TestRunnable(60000);
+
+        executor.registerRecurringRunnable(r);
+        Thread.sleep(50);
+        assertEquals(0, r.runs.get());
+
+        r.timeUntilNextRun = 0;
+        executor.wakeUp();
+        assertTrue(r.awaitRuns(1));
+    }
+
+    @Test
+    public void deRegisterWaitsForInvocationInProgress()
+        throws Exception
+    {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean runningAfterDeRegister = new AtomicBoolean();
+        final AtomicBoolean deRegistered = new AtomicBoolean();
+        final TestRunnable r
+            = new TestRunnable(0)
+            {
+                @Override
+                public void run()
+                {
+                    super.run();
+                    if (deRegistered.get())
+                        runningAfterDeRegister.set(true);
+                    entered.countDown();
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+
+        executor.registerRecurringRunnable(r);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        Thread deRegisterThread
+            = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    executor.deRegisterRecurringRunnable(r);
+                    deRegistered.set(true);
+                }
+            };
+
+        deRegisterThread.start();
+        deRegisterThread.join(200);
+        // The invocation in progress blocks the de-registration.
+        assertTrue(deRegisterThread.isAlive());
+        assertFalse(deRegistered.get());
+
+        release.countDown();
+        deRegisterThread.join(5000);
+        assertFalse(deRegisterThread.isAlive());
+        assertTrue(deRegistered.get());
+
+        int runs = r.runs.get();
+
+        Thread.sleep(100);
+        assertEquals(runs, r.runs.get());
+        assertFalse(runningAfterDeRegister.get());
+    }
+
+    @Test
+    public void deRegisterFromWithinRun()
+        throws Exception
+    {
+        final TestRunnable r
+            = new TestRunnable(0)
+            {
+                @Override
+                public void run()
+                {
+                    super.run();
+                    executor.deRegisterRecurringRunnable(this);
+                }
+            };
+
+        executor.registerRecurringRunnable(r);
+        assertTrue(r.awaitRuns(1));
+        Thread.sleep(100);
+        assertEquals(1, r.runs.get());
+    }
+
+    @Test
+    public void exceptionDoesNotStopOtherRunnables()
+        throws Exception
+    {
+        TestRunnable failing
+            = new TestRunnable(0)
+            {
+                @Override
+                public void run()
+                {
+                    super.run();
+                    throw new IllegalStateException("expected by the test");
+                }
+            };
+        TestRunnable r = new TestRunnable(0);
+
+        executor.registerRecurringRunnable(failing);
+        executor.registerRecurringRunnable(r);
+        assertTrue(r.awaitRuns(3));
+        assertTrue(failing.awaitRuns(3));
+    }
+
+    @Test
+    public void closeStopsInvocations()
+        throws Exception
+    {
+        TestRunnable r = new TestRunnable(0);
+
+        executor.registerRecurringRunnable(r);
+        assertTrue(r.awaitRuns(1));
+        executor.close();
+        Thread.sleep(50);
+
+        int runs = r.runs.get();
+
+        Thread.sleep(100);
+        assertEquals(runs, r.runs.get());
+        assertFalse(executor.registerRecurringRunnable(new TestRunnable(0)));
+    }
+
+    /**
+     * A <tt>RecurringRunnable</tt> which counts its invocations.
+     */
+    private static class TestRunnable
+        implements RecurringRunnable
+    {
+        final AtomicInteger runs = new AtomicInteger();
+
+        volatile long timeUntilNextRun;
+
+        TestRunnable(long timeUntilNextRun)
+        {
+            this.timeUntilNextRun = timeUntilNextRun;
+        }
+
+        boolean awaitRuns(int count)
+            throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (runs.get() < count)
+            {
+                if (System.currentTimeMillis() > deadline)
+                    return false;
+                Thread.sleep(5);
+            }
+            return true;
+        }
+
+        @Override
+        public long getTimeUntilNextRun()
+        {
+            return timeUntilNextRun;
+        }
+
+        @Override
+        public void run()
+        {
+            runs.incrementAndGet();
+        }
+    }
+}